@@ -17,3 +17,7 @@ CREATE TABLE IF NOT EXISTS t_alarm (
 CREATE INDEX IF NOT EXISTS idx_alarm_tenant_device ON t_alarm (tenant_id, device_id);
 CREATE INDEX IF NOT EXISTS idx_alarm_tenant_time ON t_alarm (tenant_id, alarm_time);
 CREATE INDEX IF NOT EXISTS idx_alarm_tenant_status ON t_alarm (tenant_id, alarm_status);
+
+--changeset alarm:v1.4.0_20261018
+CREATE INDEX IF NOT EXISTS idx_alarm_tenant_time_id ON t_alarm (tenant_id, alarm_time, id);
+DROP INDEX IF EXISTS idx_alarm_tenant_time;
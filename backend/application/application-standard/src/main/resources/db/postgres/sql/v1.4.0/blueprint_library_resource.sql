@@ -0,0 +1,28 @@
+--liquibase formatted sql
+
+--changeset blueprint_library_resource:v1.4.0_20261018
+CREATE TABLE t_blueprint_library_blob
+(
+    id                      BIGINT        NOT NULL,
+    hash                    VARCHAR(64)   NOT NULL,
+    content                 TEXT          NOT NULL,
+    created_at              BIGINT        NOT NULL,
+    updated_at              BIGINT        NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_blueprint_library_blob_hash UNIQUE (hash)
+);
+
+ALTER TABLE t_blueprint_library_resource ADD COLUMN content_hash VARCHAR(64);
+
+UPDATE t_blueprint_library_resource
+SET content_hash = encode(sha256(convert_to(content, 'UTF8')), 'hex');
+
+INSERT INTO t_blueprint_library_blob (id, hash, content, created_at, updated_at)
+SELECT DISTINCT ON (content_hash) id, content_hash, content, created_at, updated_at
+FROM t_blueprint_library_resource
+ORDER BY content_hash, id;
+
+ALTER TABLE t_blueprint_library_resource ALTER COLUMN content_hash SET NOT NULL;
+ALTER TABLE t_blueprint_library_resource DROP COLUMN content;
+
+CREATE INDEX idx_blueprint_library_resource_content_hash ON t_blueprint_library_resource (content_hash);
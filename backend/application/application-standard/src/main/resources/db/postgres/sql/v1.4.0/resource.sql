@@ -0,0 +1,26 @@
+--liquibase formatted sql
+
+--changeset resource:v1.4.0_20261018
+CREATE TABLE "t_resource_chunk"
+(
+    content_id              BIGINT NOT NULL,
+    chunk_index             INT    NOT NULL,
+    data                    BYTEA  NOT NULL,
+    PRIMARY KEY (content_id, chunk_index)
+);
+
+ALTER TABLE t_resource_data ADD COLUMN content_id BIGINT;
+ALTER TABLE t_resource_data ADD COLUMN chunk_size INT;
+ALTER TABLE t_resource_data ADD COLUMN etag VARCHAR(64);
+
+-- existing content becomes a single chunk of its own size
+INSERT INTO t_resource_chunk (content_id, chunk_index, data)
+SELECT id, 0, data FROM t_resource_data WHERE data IS NOT NULL AND octet_length(data) > 0;
+
+UPDATE t_resource_data
+SET content_id     = id,
+    chunk_size     = GREATEST(COALESCE(octet_length(data), 0), 1),
+    content_length = COALESCE(octet_length(data), 0),
+    etag           = md5(COALESCE(data, ''::BYTEA));
+
+ALTER TABLE t_resource_data DROP COLUMN data;
@@ -27,4 +27,11 @@ public class MetricsConstants {
     public static final String ROUTE_ROUTE_ID = "routeId";
 
     public static final String ROUTE_ROOT_ROUTE_ID = "rootRouteId";
+
+    /**
+     * metrics name for the processing time of a rule node
+     */
+    public static final String METRICS_ROUTE_NODE_LATENCY = "camel.route.node.latency";
+
+    public static final String ROUTE_NODE_ID_TAG = "nodeId";
 }
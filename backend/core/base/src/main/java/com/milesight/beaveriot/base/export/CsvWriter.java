@@ -0,0 +1,87 @@
+package com.milesight.beaveriot.base.export;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Buffered CSV writer. Values are quoted when they contain a separator, a quote or a line break, or always when
+ * {@code quoteAll} is set, and quotes inside values are doubled. Null values are written as empty fields.
+ * <p>
+ * Nothing reaches the underlying stream before {@link #flush()} or until the buffer is full.
+ */
+public class CsvWriter implements Flushable, Closeable {
+
+    public static final char SEPARATOR = ',';
+
+    public static final char QUOTE = '"';
+
+    public static final String LINE_SEPARATOR = "\n";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+
+    private final boolean quoteAll;
+
+    public CsvWriter(OutputStream outputStream, boolean quoteAll) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.quoteAll = quoteAll;
+    }
+
+    public void writeRow(List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(SEPARATOR);
+            }
+            writeValue(values.get(i));
+        }
+        writer.write(LINE_SEPARATOR);
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        String text = value.toString();
+        if (!quoteAll && !needsQuote(text)) {
+            writer.write(text);
+            return;
+        }
+
+        writer.write(QUOTE);
+        int start = 0;
+        int quoteIndex;
+        while ((quoteIndex = text.indexOf(QUOTE, start)) != -1) {
+            writer.write(text, start, quoteIndex - start + 1);
+            writer.write(QUOTE);
+            start = quoteIndex + 1;
+        }
+        writer.write(text, start, text.length() - start);
+        writer.write(QUOTE);
+    }
+
+    private static boolean needsQuote(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Flush and close the writer, the underlying stream is closed as well
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
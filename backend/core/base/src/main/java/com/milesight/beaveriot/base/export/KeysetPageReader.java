@@ -0,0 +1,22 @@
+package com.milesight.beaveriot.base.export;
+
+import java.util.List;
+
+/**
+ * Reads the rows to export page by page, in the order of a unique sort key. Each page starts right after the last row
+ * of the previous page rather than at an offset, so reading a page costs the same however deep the export is.
+ *
+ * @param <T> type of the rows
+ */
+@FunctionalInterface
+public interface KeysetPageReader<T> {
+
+    /**
+     * Read the page following the given row
+     *
+     * @param last last row of the previous page, or null for the first page
+     * @return rows of the page, an empty or null page ends the export
+     */
+    List<T> read(T last);
+
+}
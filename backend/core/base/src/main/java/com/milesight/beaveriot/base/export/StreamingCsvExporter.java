@@ -0,0 +1,119 @@
+package com.milesight.beaveriot.base.export;
+
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports rows to CSV while they are read, so that memory stays constant whatever the number of rows.
+ * <p>
+ * Rows are read page by page from a {@link KeysetPageReader} and written through a buffered {@link CsvWriter},
+ * which is flushed after each page. Writing to a client that has disconnected fails at the latest on that flush,
+ * so no page is read after the client is gone.
+ *
+ * @param <T> type of the rows
+ */
+@Slf4j
+public class StreamingCsvExporter<T> {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final List<String> headers;
+
+    private final Function<T, List<?>> rowMapper;
+
+    private final boolean quoteAll;
+
+    private StreamingCsvExporter(List<String> headers, Function<T, List<?>> rowMapper, boolean quoteAll) {
+        this.headers = headers;
+        this.rowMapper = rowMapper;
+        this.quoteAll = quoteAll;
+    }
+
+    /**
+     * @param headers   header line
+     * @param rowMapper values of a row, in the order of the headers; a null result skips the row
+     */
+    public static <T> StreamingCsvExporter<T> of(List<String> headers, Function<T, List<?>> rowMapper) {
+        return new StreamingCsvExporter<>(headers, rowMapper, false);
+    }
+
+    /**
+     * Quote every non-null value and header, not only those requiring it
+     */
+    public StreamingCsvExporter<T> quoteAll() {
+        return new StreamingCsvExporter<>(headers, rowMapper, true);
+    }
+
+    public long export(OutputStream outputStream, KeysetPageReader<T> pageReader) throws IOException {
+        return export(outputStream, pageReader, () -> false);
+    }
+
+    /**
+     * Write the header line and every page to the output stream. The stream is flushed but not closed.
+     *
+     * @param cancelled checked before reading each page, the export stops once it returns true
+     * @return number of rows written
+     */
+    public long export(OutputStream outputStream, KeysetPageReader<T> pageReader, BooleanSupplier cancelled) throws IOException {
+        CsvWriter csvWriter = new CsvWriter(outputStream, quoteAll);
+        csvWriter.writeRow(headers);
+
+        long rows = 0;
+        T last = null;
+        while (!cancelled.getAsBoolean()) {
+            List<T> page = pageReader.read(last);
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+
+            for (T row : page) {
+                List<?> values = rowMapper.apply(row);
+                if (values != null) {
+                    csvWriter.writeRow(values);
+                    rows++;
+                }
+            }
+            last = page.get(page.size() - 1);
+            csvWriter.flush();
+        }
+        csvWriter.flush();
+        return rows;
+    }
+
+    /**
+     * Export as an attachment of the response. The export ends quietly when the client disconnects.
+     *
+     * @param filename name of the CSV file
+     * @param gzip     whether to compress the file, which is then named {filename}.gz
+     */
+    public void export(HttpServletResponse response, String filename, boolean gzip, KeysetPageReader<T> pageReader) throws IOException {
+        response.setHeader(HttpHeaders.CONTENT_TYPE, gzip ? "application/gzip" : "text/csv; charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + (gzip ? filename + ".gz" : filename) + "\"");
+
+        // Headers must be set before anything is written, as the response is committed by the first flush
+        OutputStream outputStream = response.getOutputStream();
+        try {
+            if (!gzip) {
+                export(outputStream, pageReader);
+                return;
+            }
+
+            // Sync flush, so that each page is sent and a disconnected client is detected as without gzip
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE, true);
+            export(gzipOutputStream, pageReader);
+            gzipOutputStream.finish();
+        } catch (IOException e) {
+            // Reading pages does not throw IOException, so the response could not be written
+            log.info("Export of {} cancelled, the client has disconnected: {}", filename, e.getMessage());
+        }
+    }
+
+}
@@ -16,6 +16,7 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
@@ -31,6 +32,14 @@ import java.util.function.Supplier;
  */
 @Slf4j
 public class ObjectPool<T> implements DisposableBean {
+    /**
+     * Eviction checks are cheap, so all pools share one daemon thread instead of one thread per pool
+     */
+    private static final ScheduledExecutorService EVICTION_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ObjectPool-Eviction-Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
     private final PoolConfig config;
     private final Supplier<T> objectFactory;
     private final Consumer<T> objectDestructor;
@@ -39,7 +48,7 @@ public class ObjectPool<T> implements DisposableBean {
     private final AtomicInteger totalObjects;
     private final ReentrantLock lock;
     private final Condition notEmpty;
-    private final ScheduledExecutorService evictionScheduler;
+    private final ScheduledFuture<?> evictionTask;
     private final String poolName;
     private volatile boolean closed;
 
@@ -54,20 +63,28 @@ public class ObjectPool<T> implements DisposableBean {
                                             Supplier<T> objectFactory,
                                             Consumer<T> objectDestructor,
                                             Class<T> objectClass) {
-        return new ObjectPool<>(config, objectFactory, objectDestructor, objectClass);
+        return new ObjectPool<>(objectClass.getSimpleName(), config, objectFactory, objectDestructor);
+    }
+
+    public static <T> ObjectPool<T> newPool(String poolName,
+                                            PoolConfig config,
+                                            Supplier<T> objectFactory,
+                                            Consumer<T> objectDestructor) {
+        return new ObjectPool<>(poolName, config, objectFactory, objectDestructor);
     }
 
     /**
      * Create a new object pool
      *
+     * @param poolName         pool name used in logs and errors
      * @param config           pool configuration
      * @param objectFactory    factory for creating objects
      * @param objectDestructor destructor for destroying objects
      */
-    private ObjectPool(PoolConfig config,
+    private ObjectPool(String poolName,
+                       PoolConfig config,
                        Supplier<T> objectFactory,
-                       Consumer<T> objectDestructor,
-                       Class<T> objectClass) {
+                       Consumer<T> objectDestructor) {
         this.config = config;
         this.objectFactory = objectFactory;
         this.objectDestructor = objectDestructor;
@@ -77,19 +94,13 @@ public class ObjectPool<T> implements DisposableBean {
         this.lock = new ReentrantLock();
         this.notEmpty = lock.newCondition();
         this.closed = false;
-        this.poolName = objectClass.getSimpleName();
+        this.poolName = poolName;
 
         // Initialize min idle objects
         initializeMinIdleObjects();
 
-        // Start eviction scheduler
-        this.evictionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread thread = new Thread(r, "ObjectPool-Eviction-Scheduler");
-            thread.setDaemon(true);
-            return thread;
-        });
-
-        scheduleEviction();
+        // Start eviction task
+        this.evictionTask = scheduleEviction();
 
         log.debug("Pool({}) - Initialized: minIdle={}, maxTotal={}, maxIdleTime={}, evictionInterval={}", poolName,
                 config.getMinIdle(), config.getMaxTotal(), config.getMaxIdleTime(), config.getEvictionCheckInterval());
@@ -200,6 +211,20 @@ public class ObjectPool<T> implements DisposableBean {
         }
     }
 
+    /**
+     * Destroy a borrowed object instead of returning it, and let a waiting thread create a new one
+     *
+     * @param object object to invalidate
+     */
+    private void invalidateObject(T object) {
+        if (object == null) {
+            return;
+        }
+
+        destroyObject(object);
+        signalNotEmpty();
+    }
+
     /**
      * Create a new object
      * MUST be called with lock held or during initialization
@@ -272,8 +297,8 @@ public class ObjectPool<T> implements DisposableBean {
     /**
      * Schedule eviction task
      */
-    private void scheduleEviction() {
-        evictionScheduler.scheduleWithFixedDelay(
+    private ScheduledFuture<?> scheduleEviction() {
+        return EVICTION_SCHEDULER.scheduleWithFixedDelay(
                 this::evictIdleObjects,
                 config.getEvictionCheckInterval().toMillis(),
                 config.getEvictionCheckInterval().toMillis(),
@@ -391,6 +416,40 @@ public class ObjectPool<T> implements DisposableBean {
         }
     }
 
+    /**
+     * Execute an operation with a borrowed object
+     * The object is returned after use if it is still reusable, and destroyed otherwise
+     *
+     * @param operation the operation to execute
+     * @param reusable  tells whether the object can be used again after the operation
+     * @param <R>       the result type
+     * @return the operation result
+     */
+    @SneakyThrows
+    public <R> R execute(Function<T, R> operation, Predicate<T> reusable) {
+        T object = borrowObject();
+        try {
+            return operation.apply(object);
+        } finally {
+            boolean reuse;
+            try {
+                reuse = reusable.test(object);
+            } catch (RuntimeException e) {
+                log.debug("Pool({}) - Failed to check whether object is reusable", poolName, e);
+                reuse = false;
+            }
+            if (reuse) {
+                returnObject(object);
+            } else {
+                invalidateObject(object);
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
     private void close() {
         if (closed) {
             return;
@@ -399,16 +458,8 @@ public class ObjectPool<T> implements DisposableBean {
         closed = true;
         log.debug("Pool({}) - Closing ObjectPool...", poolName);
 
-        // Shutdown eviction scheduler
-        evictionScheduler.shutdown();
-        try {
-            if (!evictionScheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                evictionScheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            evictionScheduler.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
+        // Cancel eviction task
+        evictionTask.cancel(false);
 
         // Destroy all idle objects with lock held
         lock.lock();
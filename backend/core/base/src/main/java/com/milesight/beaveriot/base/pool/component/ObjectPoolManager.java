@@ -30,23 +30,49 @@ public class ObjectPoolManager {
         return getPool(config, objectFactory, null, clazz);
     }
 
-    @SuppressWarnings("unchecked")
     public <T> ObjectPool<T> getPool(PoolConfig config,
                                      Supplier<T> objectFactory,
                                      Consumer<T> objectDestructor,
                                      Class<T> objectClass) {
-        String beanName = getBeanName(objectClass.getName());
+        return getPool(objectClass.getName(), config, objectFactory, objectDestructor);
+    }
+
+    /**
+     * Get or create a pool identified by name, allowing several pools of the same object type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ObjectPool<T> getPool(String poolName,
+                                     PoolConfig config,
+                                     Supplier<T> objectFactory,
+                                     Consumer<T> objectDestructor) {
+        String beanName = getBeanName(poolName);
         if (!applicationContext.containsBean(beanName)) {
-            ObjectPool<T> pool = ObjectPool.newPool(config, objectFactory, objectDestructor, objectClass);
-            DefaultListableBeanFactory beanFactory = (DefaultListableBeanFactory) applicationContext.getBeanFactory();
-            BeanDefinitionBuilder builder = BeanDefinitionBuilder.genericBeanDefinition((Class<ObjectPool<T>>) pool.getClass(), () -> pool);
-            beanFactory.registerBeanDefinition(beanName, builder.getBeanDefinition());
+            synchronized (this) {
+                if (!applicationContext.containsBean(beanName)) {
+                    ObjectPool<T> pool = ObjectPool.newPool(poolName, config, objectFactory, objectDestructor);
+                    DefaultListableBeanFactory beanFactory = (DefaultListableBeanFactory) applicationContext.getBeanFactory();
+                    BeanDefinitionBuilder builder = BeanDefinitionBuilder.genericBeanDefinition((Class<ObjectPool<T>>) pool.getClass(), () -> pool);
+                    beanFactory.registerBeanDefinition(beanName, builder.getBeanDefinition());
+                }
+            }
         }
         return applicationContext.getBean(beanName, ObjectPool.class);
     }
 
-    private String getBeanName(String className) {
-        return Constants.OBJECT_POOL_BEAN_NAME_PREFIX + className;
+    /**
+     * Destroy the pool identified by name and all of its idle objects
+     */
+    public synchronized void removePool(String poolName) {
+        String beanName = getBeanName(poolName);
+        DefaultListableBeanFactory beanFactory = (DefaultListableBeanFactory) applicationContext.getBeanFactory();
+        if (beanFactory.containsBeanDefinition(beanName)) {
+            // removing the definition destroys the singleton through DisposableBean
+            beanFactory.removeBeanDefinition(beanName);
+        }
+    }
+
+    private String getBeanName(String poolName) {
+        return Constants.OBJECT_POOL_BEAN_NAME_PREFIX + poolName;
     }
 
     private static class Constants {
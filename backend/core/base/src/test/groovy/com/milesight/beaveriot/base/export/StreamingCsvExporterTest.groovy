@@ -0,0 +1,197 @@
+package com.milesight.beaveriot.base.export
+
+import org.springframework.http.HttpHeaders
+import org.springframework.mock.web.MockHttpServletResponse
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.zip.GZIPInputStream
+
+class StreamingCsvExporterTest extends Specification {
+
+    static final int PAGE_SIZE = 1000
+
+    static final StreamingCsvExporter<Row> EXPORTER = StreamingCsvExporter.of(["id", "name"], { Row row -> [row.id, row.name] })
+
+    static class Row {
+        long id
+        String name
+    }
+
+    /**
+     * Rows from total down to 1, read after the id of the last row like a keyset query would
+     */
+    static KeysetPageReader<Row> pageReader(long total, List<Long> cursors = null) {
+        return { Row last ->
+            cursors?.add(last?.id)
+            long from = last == null ? total : last.id - 1
+            int size = (int) Math.min(PAGE_SIZE, from)
+            return (0..<size).collect { new Row(id: from - it, name: "row " + (from - it)) }
+        } as KeysetPageReader<Row>
+    }
+
+    static long usedHeap() {
+        System.gc()
+        Runtime runtime = Runtime.getRuntime()
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+
+    def "values should be quoted only when required"() {
+        given:
+        def output = new ByteArrayOutputStream()
+        def exporter = StreamingCsvExporter.of(["a", "b,c"], { List row -> row })
+        def rows = [["plain", "with,comma"], ["with \"quote\"", null], ["line\nbreak", 1.5]]
+
+        when:
+        exporter.export(output, { last -> last == null ? rows : [] } as KeysetPageReader<List>)
+
+        then:
+        output.toString(StandardCharsets.UTF_8) == '''a,"b,c"
+plain,"with,comma"
+"with ""quote""",
+"line
+break",1.5
+'''
+    }
+
+    def "quote all should quote every non null value"() {
+        given:
+        def output = new ByteArrayOutputStream()
+        def exporter = StreamingCsvExporter.of(["a", "b"], { List row -> row }).quoteAll()
+
+        when:
+        exporter.export(output, { last -> last == null ? [["x\"y", null]] : [] } as KeysetPageReader<List>)
+
+        then:
+        output.toString(StandardCharsets.UTF_8) == '"a","b"\n"x""y",\n'
+    }
+
+    def "pages should be read after the last row of the previous page"() {
+        given:
+        def output = new ByteArrayOutputStream()
+        def cursors = []
+
+        when:
+        def rows = EXPORTER.export(output, pageReader(2500, cursors))
+
+        then:
+        rows == 2500
+        cursors == [null, 1501L, 501L, 1L]
+        def lines = output.toString(StandardCharsets.UTF_8).readLines()
+        lines.size() == 2501
+        lines[1] == "2500,row 2500"
+        lines[2500] == "1,row 1"
+    }
+
+    def "rows mapped to null should be skipped"() {
+        given:
+        def output = new ByteArrayOutputStream()
+        def exporter = StreamingCsvExporter.of(["id"], { Row row -> row.id % 2 == 0 ? [row.id] : null })
+
+        when:
+        def rows = exporter.export(output, pageReader(10))
+
+        then:
+        rows == 5
+        output.toString(StandardCharsets.UTF_8) == "id\n10\n8\n6\n4\n2\n"
+    }
+
+    def "no page should be read once cancelled"() {
+        given:
+        def pages = 0
+        def reader = pageReader(1_000_000)
+
+        when:
+        def rows = EXPORTER.export(OutputStream.nullOutputStream(), { Row last -> pages++; reader.read(last) } as KeysetPageReader<Row>, { pages >= 3 })
+
+        then:
+        rows == 3 * PAGE_SIZE
+        pages == 3
+    }
+
+    def "a disconnected client should stop the export"() {
+        given:
+        def pages = 0
+        def reader = pageReader(1_000_000)
+        def response = new MockHttpServletResponse() {
+            @Override
+            jakarta.servlet.ServletOutputStream getOutputStream() {
+                return new jakarta.servlet.ServletOutputStream() {
+                    long written
+
+                    @Override
+                    boolean isReady() {
+                        return true
+                    }
+
+                    @Override
+                    void setWriteListener(jakarta.servlet.WriteListener writeListener) {
+                    }
+
+                    @Override
+                    void write(int b) throws IOException {
+                        if (++written > 100_000) {
+                            throw new IOException("Broken pipe")
+                        }
+                    }
+                }
+            }
+        }
+
+        when:
+        EXPORTER.export(response, "rows.csv", false, { Row last -> pages++; reader.read(last) } as KeysetPageReader<Row>)
+
+        then:
+        noExceptionThrown()
+        pages < 10
+    }
+
+    def "gzip exports should be compressed and named accordingly"() {
+        given:
+        def response = new MockHttpServletResponse()
+
+        when:
+        EXPORTER.export(response, "rows.csv", true, pageReader(2500))
+
+        then:
+        response.getHeader(HttpHeaders.CONTENT_TYPE) == "application/gzip"
+        response.getHeader(HttpHeaders.CONTENT_DISPOSITION) == 'attachment; filename="rows.csv.gz"'
+        def lines = new GZIPInputStream(new ByteArrayInputStream(response.contentAsByteArray)).getText("UTF-8").readLines()
+        lines.size() == 2501
+        lines[0] == "id,name"
+        lines[2500] == "1,row 1"
+    }
+
+    def "exporting a million rows should keep the heap usage flat"() {
+        given:
+        long baseline = usedHeap()
+        long maxUsed = baseline
+        def reader = pageReader(1_000_000)
+        def output = new OutputStream() {
+            long written
+
+            @Override
+            void write(int b) {
+                written++
+            }
+
+            @Override
+            void write(byte[] b, int off, int len) {
+                written += len
+            }
+        }
+
+        when:
+        def rows = EXPORTER.export(output, { Row last ->
+            if (last != null && last.id % 100_000 == 1) {
+                maxUsed = Math.max(maxUsed, usedHeap())
+            }
+            reader.read(last)
+        } as KeysetPageReader<Row>)
+
+        then:
+        rows == 1_000_000
+        output.written > 1_000_000 * 10
+        maxUsed - baseline < 32 * 1024 * 1024
+    }
+}
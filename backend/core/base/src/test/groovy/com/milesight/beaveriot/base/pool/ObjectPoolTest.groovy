@@ -85,6 +85,53 @@ class ObjectPoolTest extends Specification {
         pool?.destroy()
     }
 
+    def "execute with reusable check should destroy objects that are not reusable"() {
+        given:
+        def destroyed = new AtomicInteger(0)
+        def config = PoolConfig.builder()
+                .minIdle(0)
+                .maxTotal(1)
+                .maxWaitTime(Duration.ofSeconds(1))
+                .build()
+        def pool = ObjectPool.newPool(config, { new StringBuilder() }, { destroyed.incrementAndGet() } as Consumer, StringBuilder.class)
+
+        when:
+        def first = pool.execute({ sb -> sb.append("dirty"); sb } as Function, { sb -> sb.length() == 0 })
+        def second = pool.execute({ sb -> sb } as Function, { sb -> sb.length() == 0 })
+        def third = pool.execute({ sb -> sb } as Function, { sb -> sb.length() == 0 })
+
+        then:
+        !first.is(second)
+        second.is(third)
+        destroyed.get() == 1
+        pool.getStatistics().totalObjects() == 1
+        pool.getStatistics().idleObjects() == 1
+
+        cleanup:
+        pool?.destroy()
+    }
+
+    def "execute with reusable check should destroy the object when the operation fails"() {
+        given:
+        def destroyed = new AtomicInteger(0)
+        def config = PoolConfig.builder()
+                .minIdle(0)
+                .maxTotal(1)
+                .build()
+        def pool = ObjectPool.newPool(config, { new StringBuilder() }, { destroyed.incrementAndGet() } as Consumer, StringBuilder.class)
+
+        when:
+        pool.execute({ sb -> throw new IllegalStateException("broken") } as Function, { sb -> throw new IllegalStateException("closed") })
+
+        then:
+        thrown(IllegalStateException)
+        destroyed.get() == 1
+        pool.getStatistics().totalObjects() == 0
+
+        cleanup:
+        pool?.destroy()
+    }
+
     // ==================== pool limit tests ====================
 
     def "pool should respect maxTotal limit and timeout when exhausted"() {
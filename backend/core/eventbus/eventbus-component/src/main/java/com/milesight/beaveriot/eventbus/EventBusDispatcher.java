@@ -36,6 +36,8 @@ public class EventBusDispatcher<T extends Event<? extends IdentityKey>> implemen
 
     private final Map<Class<T>, Map<ListenerCacheKey, List<EventInvoker<T>>>> annotationSubscribeCache = new ConcurrentHashMap<>();
     private final Map<Class<T>, Map<UniqueListenerCacheKey, EventInvoker<T>>> dynamicSubscribeCache = new ConcurrentHashMap<>();
+    private final Map<Class<?>, SubscriptionIndex<ListenerCacheKey>> annotationSubscribeIndex = new ConcurrentHashMap<>();
+    private final Map<Class<?>, SubscriptionIndex<UniqueListenerCacheKey>> dynamicSubscribeIndex = new ConcurrentHashMap<>();
     private ExecutionOptions executionOptions;
     private ListenerParameterResolver parameterResolver;
     private ApplicationContext applicationContext;
@@ -127,53 +129,42 @@ public class EventBusDispatcher<T extends Event<? extends IdentityKey>> implemen
     }
 
     private List<InvocationHolder> createInvocationHolders(T event) {
-        Map<ListenerCacheKey, List<EventInvoker<T>>> listenerCacheKeyListMap = annotationSubscribeCache.get(event.getClass());
-
         List<InvocationHolder> invocationHolders = new ArrayList<>();
 
         //invoke annotation subscribe
-        if (!ObjectUtils.isEmpty(listenerCacheKeyListMap)) {
-            List<InvocationHolder> annotationInvocationHolders = createInvocationHoldersFromMultiInvoker(listenerCacheKeyListMap, event);
-            invocationHolders.addAll(annotationInvocationHolders);
+        SubscriptionIndex<ListenerCacheKey> annotationIndex = annotationSubscribeIndex.get(event.getClass());
+        Map<ListenerCacheKey, List<EventInvoker<T>>> listenerCacheKeyListMap = annotationSubscribeCache.get(event.getClass());
+        if (annotationIndex != null && !ObjectUtils.isEmpty(listenerCacheKeyListMap)) {
+            annotationIndex.match(event.getPayloadKey()).forEach((listenerCacheKey, matchMultiKeys) -> {
+                List<EventInvoker<T>> invokers = listenerCacheKeyListMap.get(listenerCacheKey);
+                if (invokers != null && listenerCacheKey.matchEventType(event.getEventType())) {
+                    invokers.forEach(invoker -> invocationHolders.add(new InvocationHolder(invoker, matchMultiKeys, event)));
+                }
+            });
         }
 
         //invoke dynamic subscribe
-        if (dynamicSubscribeCache.containsKey(event.getClass())) {
-            List<InvocationHolder> dynamicInvocationHolders = createInvocationHoldersFromUniqueInvoker(dynamicSubscribeCache.get(event.getClass()), event);
-            invocationHolders.addAll(dynamicInvocationHolders);
-        }
-        return invocationHolders;
-    }
-
-    private List<InvocationHolder> createInvocationHoldersFromUniqueInvoker(Map<UniqueListenerCacheKey, EventInvoker<T>> uniqueListenerCacheKeyEventInvokerMap, T event) {
-        List<InvocationHolder> invocationHolders = new ArrayList<>();
-        for (Map.Entry<UniqueListenerCacheKey, EventInvoker<T>> cacheSubscribeEntry : uniqueListenerCacheKeyEventInvokerMap.entrySet()) {
-            String[] matchMultiKeys = filterMatchMultiKeys(event, cacheSubscribeEntry.getKey());
-            if (!ObjectUtils.isEmpty(matchMultiKeys)) {
-                invocationHolders.add(new InvocationHolder(cacheSubscribeEntry.getValue(), matchMultiKeys, event));
-            }
-        }
-        return invocationHolders;
-    }
-
-    private List<InvocationHolder> createInvocationHoldersFromMultiInvoker(Map<ListenerCacheKey, List<EventInvoker<T>>> listenerCacheKeyListMap, T event) {
-        List<InvocationHolder> invocationHolders = new ArrayList<>();
-        for (Map.Entry<ListenerCacheKey, List<EventInvoker<T>>> listenerCacheKeyListEntry : listenerCacheKeyListMap.entrySet()) {
-            String[] matchMultiKeys = filterMatchMultiKeys(event, listenerCacheKeyListEntry.getKey());
-            if (!ObjectUtils.isEmpty(matchMultiKeys)) {
-                invocationHolders.addAll(listenerCacheKeyListEntry.getValue().stream().map(invoker -> new InvocationHolder(invoker, matchMultiKeys, event)).toList());
-            }
+        SubscriptionIndex<UniqueListenerCacheKey> dynamicIndex = dynamicSubscribeIndex.get(event.getClass());
+        Map<UniqueListenerCacheKey, EventInvoker<T>> uniqueListenerCacheKeyEventInvokerMap = dynamicSubscribeCache.get(event.getClass());
+        if (dynamicIndex != null && !ObjectUtils.isEmpty(uniqueListenerCacheKeyEventInvokerMap)) {
+            dynamicIndex.match(event.getPayloadKey()).forEach((listenerCacheKey, matchMultiKeys) -> {
+                EventInvoker<T> invoker = uniqueListenerCacheKeyEventInvokerMap.get(listenerCacheKey);
+                if (invoker != null && listenerCacheKey.matchEventType(event.getEventType())) {
+                    invocationHolders.add(new InvocationHolder(invoker, matchMultiKeys, event));
+                }
+            });
         }
         return invocationHolders;
     }
 
     public void registerDynamicSubscribe(Class<T> eventClass, UniqueListenerCacheKey listenerCacheKey, EventInvoker<T> eventInvoker) {
         dynamicSubscribeCache.computeIfAbsent(eventClass, k -> new ConcurrentHashMap<>()).put(listenerCacheKey, eventInvoker);
+        dynamicSubscribeIndex.computeIfAbsent(eventClass, k -> new SubscriptionIndex<>()).register(listenerCacheKey.getPayloadKey(), listenerCacheKey);
     }
 
     public void deregisterDynamicSubscribe(Class<T> eventClass, UniqueListenerCacheKey listenerCacheKey) {
-        if (dynamicSubscribeCache.containsKey(eventClass)) {
-            dynamicSubscribeCache.get(eventClass).remove(listenerCacheKey);
+        if (dynamicSubscribeCache.containsKey(eventClass) && dynamicSubscribeCache.get(eventClass).remove(listenerCacheKey) != null) {
+            dynamicSubscribeIndex.get(eventClass).deregister(listenerCacheKey.getPayloadKey(), listenerCacheKey);
         }
     }
 
@@ -195,13 +186,8 @@ public class EventBusDispatcher<T extends Event<? extends IdentityKey>> implemen
         annotationSubscribeCache.computeIfAbsent(eventClass, k -> new ConcurrentHashMap<>());
 
         annotationSubscribeCache.get(eventClass).computeIfAbsent(listenerCacheKey, k -> new ArrayList<>()).add(new EventSubscribeInvoker<>(bean, executeMethod, parameterTypes, parameterResolver));
-    }
 
-    private String[] filterMatchMultiKeys(T event, ListenerCacheKey cacheKey) {
-        if (!cacheKey.matchEventType(event.getEventType())) {
-            return new String[0];
-        }
-        return cacheKey.matchMultiKeys(event.getPayloadKey());
+        annotationSubscribeIndex.computeIfAbsent(eventClass, k -> new SubscriptionIndex<>()).register(keyExpression, listenerCacheKey);
     }
 
     @Override
@@ -0,0 +1,187 @@
+package com.milesight.beaveriot.eventbus;
+
+import com.milesight.beaveriot.base.constants.StringConstant;
+import org.springframework.util.ObjectUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled index of subscriber key expressions.
+ * <p>
+ * Exact keys are kept in a hash map, wildcard patterns are stored in a trie keyed by the
+ * {@code .}-separated literal prefix of the pattern. The remaining part of a wildcard pattern
+ * (starting with the first segment that contains {@code *}) is kept on the trie node and matched
+ * against the rest of the payload key, so the semantics are identical to
+ * {@link ListenerCacheKey#matchMultiKeys(String)}, where {@code *} may span several segments. As there, the key
+ * expression is trimmed as a whole but not around its commas, and payload keys are trimmed before matching.
+ * <p>
+ * Lookups are lock-free, registration and removal are serialized and update the index incrementally.
+ */
+public class SubscriptionIndex<V> {
+
+    private static final char SEGMENT_SEPARATOR = '.';
+
+    private static final char WILDCARD = '*';
+
+    private final Map<String, Set<V>> exactSubscribers = new ConcurrentHashMap<>();
+
+    private final TrieNode<V> root = new TrieNode<>();
+
+    public synchronized void register(String keyExpression, V subscriber) {
+        for (String pattern : splitExpression(keyExpression)) {
+            if (pattern.indexOf(WILDCARD) < 0) {
+                exactSubscribers.computeIfAbsent(pattern, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+                continue;
+            }
+            TrieNode<V> node = root;
+            int start = 0;
+            int end;
+            while ((end = pattern.indexOf(SEGMENT_SEPARATOR, start)) >= 0 && !containsWildcard(pattern, start, end)) {
+                node = node.children.computeIfAbsent(pattern.substring(start, end), k -> new TrieNode<>());
+                start = end + 1;
+            }
+            node.wildcardSubscribers.computeIfAbsent(pattern.substring(start), k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+    }
+
+    public synchronized void deregister(String keyExpression, V subscriber) {
+        for (String pattern : splitExpression(keyExpression)) {
+            if (pattern.indexOf(WILDCARD) < 0) {
+                exactSubscribers.computeIfPresent(pattern, (k, subscribers) -> subscribers.remove(subscriber) && subscribers.isEmpty() ? null : subscribers);
+                continue;
+            }
+            deregisterWildcard(root, pattern, 0, subscriber);
+        }
+    }
+
+    private boolean deregisterWildcard(TrieNode<V> node, String pattern, int start, V subscriber) {
+        int end = pattern.indexOf(SEGMENT_SEPARATOR, start);
+        if (end < 0 || containsWildcard(pattern, start, end)) {
+            node.wildcardSubscribers.computeIfPresent(pattern.substring(start), (k, subscribers) -> subscribers.remove(subscriber) && subscribers.isEmpty() ? null : subscribers);
+        } else {
+            String segment = pattern.substring(start, end);
+            TrieNode<V> child = node.children.get(segment);
+            if (child != null && deregisterWildcard(child, pattern, end + 1, subscriber)) {
+                node.children.remove(segment);
+            }
+        }
+        return node.isEmpty();
+    }
+
+    /**
+     * Resolve the subscribers matching the comma-joined payload keys.
+     *
+     * @param payloadMultiKeys comma-joined payload keys
+     * @return matched subscribers, each with its matched payload keys, untrimmed, in payload order
+     */
+    public Map<V, String[]> match(String payloadMultiKeys) {
+        if (ObjectUtils.isEmpty(payloadMultiKeys)) {
+            return Collections.emptyMap();
+        }
+        Map<V, List<String>> matched = new LinkedHashMap<>();
+        Set<V> keySubscribers = new LinkedHashSet<>();
+        for (String payloadKey : payloadMultiKeys.split(StringConstant.COMMA)) {
+            String key = payloadKey.trim();
+            // the same key may hit several patterns of one subscriber
+            keySubscribers.clear();
+            Set<V> exact = exactSubscribers.get(key);
+            if (exact != null) {
+                keySubscribers.addAll(exact);
+            }
+            matchWildcard(key, keySubscribers);
+            keySubscribers.forEach(subscriber -> matched.computeIfAbsent(subscriber, k -> new ArrayList<>(1)).add(payloadKey));
+        }
+        if (matched.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<V, String[]> result = new LinkedHashMap<>(matched.size() * 2);
+        matched.forEach((subscriber, keys) -> result.put(subscriber, keys.toArray(String[]::new)));
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return exactSubscribers.isEmpty() && root.isEmpty();
+    }
+
+    private void matchWildcard(String key, Set<V> keySubscribers) {
+        TrieNode<V> node = root;
+        int start = 0;
+        while (node != null) {
+            if (!node.wildcardSubscribers.isEmpty()) {
+                for (Map.Entry<String, Set<V>> entry : node.wildcardSubscribers.entrySet()) {
+                    if (matchTail(entry.getKey(), key, start)) {
+                        keySubscribers.addAll(entry.getValue());
+                    }
+                }
+            }
+            int end = key.indexOf(SEGMENT_SEPARATOR, start);
+            if (end < 0 || node.children.isEmpty()) {
+                break;
+            }
+            node = node.children.get(key.substring(start, end));
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Glob match of {@code pattern} against {@code str} starting at {@code offset},
+     * where {@code *} matches any sequence of characters.
+     */
+    static boolean matchTail(String pattern, String str, int offset) {
+        int p = 0;
+        int s = offset;
+        int starIndex = -1;
+        int starMatch = 0;
+        while (s < str.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+                starIndex = p++;
+                starMatch = s;
+            } else if (p < pattern.length() && pattern.charAt(p) == str.charAt(s)) {
+                p++;
+                s++;
+            } else if (starIndex >= 0) {
+                p = starIndex + 1;
+                s = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    private static boolean containsWildcard(String pattern, int start, int end) {
+        int index = pattern.indexOf(WILDCARD, start);
+        return index >= 0 && index < end;
+    }
+
+    private static List<String> splitExpression(String keyExpression) {
+        List<String> patterns = new ArrayList<>();
+        for (String pattern : keyExpression.trim().split(StringConstant.COMMA)) {
+            if (!patterns.contains(pattern)) {
+                patterns.add(pattern);
+            }
+        }
+        return patterns;
+    }
+
+    private static class TrieNode<V> {
+
+        private final Map<String, TrieNode<V>> children = new ConcurrentHashMap<>();
+
+        private final Map<String, Set<V>> wildcardSubscribers = new ConcurrentHashMap<>();
+
+        private boolean isEmpty() {
+            return children.isEmpty() && wildcardSubscribers.isEmpty();
+        }
+    }
+}
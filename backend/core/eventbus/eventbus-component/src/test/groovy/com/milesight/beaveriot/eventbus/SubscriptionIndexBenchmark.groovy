@@ -0,0 +1,89 @@
+package com.milesight.beaveriot.eventbus
+
+import groovy.transform.CompileStatic
+import spock.lang.Specification
+
+/**
+ * Dispatch cost of resolving the listeners of an event against the number of listeners, the subscription index
+ * compared with the scan of every listener used before. Not part of the default test run, start it with
+ * {@code mvn test -Dtest=SubscriptionIndexBenchmark}.
+ */
+class SubscriptionIndexBenchmark extends Specification {
+
+    static final int EVENTS = 1_000
+
+    def "dispatch cost by listener count"() {
+        given:
+        println String.format("%10s %14s %14s", "listeners", "scan ns/event", "index ns/event")
+
+        expect:
+        [100, 1_000, 10_000].each { count ->
+            def keys = listenerKeys(count)
+            def index = new SubscriptionIndex<ListenerCacheKey>()
+            keys.each { index.register(it.payloadKey, it) }
+            def events = payloads(EVENTS, count)
+
+            def scan = scan(keys, events)
+            def match = match(index, events)
+            println String.format("%10d %14d %14d", count, scan[0].intdiv(EVENTS), match[0].intdiv(EVENTS))
+            assert scan[1] == match[1]
+        }
+    }
+
+    static List<ListenerCacheKey> listenerKeys(int count) {
+        (0..<count).collect { i ->
+            def expression
+            switch (i % 4) {
+                case 0: expression = "integration-${i % 50}.device.device-${i}.temperature"; break
+                case 1: expression = "integration-${i % 50}.device.device-${i}.*"; break
+                case 2: expression = "integration-${i % 50}.device.*.status,integration-${i % 50}.integration.reset-${i}"; break
+                default: expression = "integration-${i % 50}.integration.service-${i}"
+            }
+            new ListenerCacheKey(expression.toString(), null)
+        }
+    }
+
+    static List<String> payloads(int count, int listenerCount) {
+        (0..<count).collect { i ->
+            "integration-${i % 50}.device.device-${i * 7 % listenerCount}.temperature,integration-${i % 50}.device.device-${i % listenerCount}.status".toString()
+        }
+    }
+
+    /**
+     * @return nanos and number of matches of the second round
+     */
+    @CompileStatic
+    private static long[] scan(List<ListenerCacheKey> keys, List<String> events) {
+        long[] result = new long[2]
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime()
+            long matches = 0
+            for (String event : events) {
+                for (ListenerCacheKey key : keys) {
+                    if (key.matchMultiKeys(event).length > 0) {
+                        matches++
+                    }
+                }
+            }
+            result[0] = System.nanoTime() - start
+            result[1] = matches
+        }
+        return result
+    }
+
+    @CompileStatic
+    private static long[] match(SubscriptionIndex<ListenerCacheKey> index, List<String> events) {
+        long[] result = new long[2]
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime()
+            long matches = 0
+            for (String event : events) {
+                matches += index.match(event).size()
+            }
+            result[0] = System.nanoTime() - start
+            result[1] = matches
+        }
+        return result
+    }
+
+}
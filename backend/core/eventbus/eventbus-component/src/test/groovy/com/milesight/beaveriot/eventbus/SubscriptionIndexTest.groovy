@@ -0,0 +1,105 @@
+package com.milesight.beaveriot.eventbus
+
+import com.milesight.beaveriot.base.utils.KeyPatternMatcher
+import spock.lang.Specification
+
+class SubscriptionIndexTest extends Specification {
+
+    def "index should match the same keys as KeyPatternMatcher"() {
+        given:
+        def index = new SubscriptionIndex<String>()
+        index.register(pattern, "listener")
+
+        when:
+        def result = index.match(key)
+
+        then:
+        result.containsKey("listener") == KeyPatternMatcher.match(pattern, key)
+
+        where:
+        pattern                               | key
+        "*"                                   | "a.device.b.temperature"
+        "a.device.*"                          | "a.device.b.temperature"
+        "a.device.*"                          | "a.device"
+        "a.device.*"                          | "a.device."
+        "a.device.*.temperature"              | "a.device.b.temperature"
+        "a.device.*.temperature"              | "a.device.b.humidity"
+        "*.device.*"                          | "a.device.b"
+        "*.device.*"                          | "a.integration.b"
+        "a.integration.model_*"               | "a.integration.model_1.x"
+        "a.integration.model_*"               | "a.integration.mode"
+        "a.integration.connect"               | "a.integration.connect"
+        "a.integration.connect"               | "a.integration.connect.x"
+        "a.integration.connect.*,a.device.*"  | "a.device.b"
+        "a.*.b*c"                             | "a.x.y.bzc"
+        "a.*.b*c"                             | "a.x.y.bzcd"
+    }
+
+    def "match should return matched keys per subscriber in payload order"() {
+        given:
+        def index = new SubscriptionIndex<String>()
+        index.register("a.device.*", "wildcard")
+        index.register("a.device.x.temperature,a.device.*.temperature", "exact")
+
+        when:
+        def result = index.match("a.device.x.temperature,a.integration.y,a.device.x.humidity")
+
+        then:
+        result["wildcard"] as List == ["a.device.x.temperature", "a.device.x.humidity"]
+        result["exact"] as List == ["a.device.x.temperature"]
+    }
+
+    def "deregister should remove subscriber and prune empty nodes"() {
+        given:
+        def index = new SubscriptionIndex<String>()
+        index.register("a.device.*,a.integration.connect", "first")
+        index.register("a.device.*", "second")
+
+        when:
+        index.deregister("a.device.*,a.integration.connect", "first")
+
+        then:
+        index.match("a.device.x,a.integration.connect").keySet() == ["second"] as Set
+
+        when:
+        index.deregister("a.device.*", "second")
+
+        then:
+        index.isEmpty()
+        index.match("a.device.x").isEmpty()
+    }
+
+    def "index should keep the trimming of ListenerCacheKey"() {
+        given:
+        def index = new SubscriptionIndex<String>()
+        index.register(expression, "listener")
+
+        when:
+        def result = index.match(payload)
+
+        then:
+        (result["listener"] ?: new String[0]) as List == new ListenerCacheKey(expression, null).matchMultiKeys(payload) as List
+
+        where:
+        expression                     | payload
+        " a.device.* "                 | "a.device.x"
+        "a.device.x, a.device.y"       | "a.device.x,a.device.y"
+        "a.device.x, a.device.*"       | "a.device.y"
+        "a.device.x,a.device.y"        | "a.device.x , a.device.y"
+        "a.device.*"                   | " a.device.x,a.device.y "
+    }
+
+    def "dispatch over 10k listeners should resolve the same subscribers as a linear scan"() {
+        given:
+        def keys = SubscriptionIndexBenchmark.listenerKeys(10_000)
+        def index = new SubscriptionIndex<ListenerCacheKey>()
+        keys.each { index.register(it.payloadKey, it) }
+        def payloads = SubscriptionIndexBenchmark.payloads(200, keys.size())
+
+        expect:
+        payloads.every { payload ->
+            def linear = keys.collectEntries { [(it): it.matchMultiKeys(payload) as List] }.findAll { it.value }
+            index.match(payload).collectEntries { [(it.key): it.value as List] } == linear
+        }
+    }
+}
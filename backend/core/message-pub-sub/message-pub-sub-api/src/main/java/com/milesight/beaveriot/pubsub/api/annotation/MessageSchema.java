@@ -0,0 +1,18 @@
+package com.milesight.beaveriot.pubsub.api.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Schema version of a remote broadcast message, carried in the envelope of every broadcast.
+ * Increase it when fields of the message change incompatibly.
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MessageSchema {
+
+    int version() default 1;
+
+}
@@ -1,12 +1,11 @@
 package com.milesight.beaveriot.pubsub;
 
 
-import com.milesight.beaveriot.base.utils.JsonUtils;
-import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
 import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.pubsub.api.message.LocalUnicastMessage;
 import com.milesight.beaveriot.pubsub.api.message.PubSubMessage;
 import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import com.milesight.beaveriot.pubsub.envelope.MessageSerializer;
 import lombok.*;
 import lombok.extern.slf4j.*;
 import org.springframework.transaction.support.TransactionSynchronization;
@@ -24,6 +23,8 @@ public abstract class MessagePubSub {
 
     private final MessageRouter messageRouter;
 
+    private final MessageSerializer messageSerializer;
+
     public <T extends PubSubMessage> void subscribe(Class<T> clazz, Consumer<T> listener) {
         messageRouter.subscribe(clazz, listener);
     }
@@ -56,13 +57,7 @@ public abstract class MessagePubSub {
         }
 
         if (message instanceof RemoteBroadcastMessage remoteBroadcastMessage) {
-            var serializableMessage = new SerializableMessage(
-                    message.getClass().getName(),
-                    SnowflakeUtil.nextId(),
-                    System.currentTimeMillis(),
-                    JsonUtils.toJSON(remoteBroadcastMessage)
-            );
-            remoteBroadcast(JsonUtils.toJSON(serializableMessage));
+            remoteBroadcast(messageSerializer.serialize(remoteBroadcastMessage));
         } else if (message instanceof LocalUnicastMessage localUnicastMessage) {
             localPublish(localUnicastMessage);
         } else {
@@ -74,40 +69,19 @@ public abstract class MessagePubSub {
         messageRouter.dispatch(message);
     }
 
-    protected abstract void remoteBroadcast(String serializedMessage);
+    protected abstract void remoteBroadcast(byte[] serializedMessage);
 
-    protected void onRemoteBroadcastMessage(String serializedMessage) {
-        log.debug("onRemoteBroadcastMessage: {}", serializedMessage);
+    protected void onRemoteBroadcastMessage(byte[] serializedMessage) {
         try {
-            var rawMessage = JsonUtils.fromJSON(serializedMessage, SerializableMessage.class);
-            if (rawMessage == null) {
-                log.error("serializedMessage is null");
+            var message = messageSerializer.deserialize(serializedMessage);
+            if (message == null) {
                 return;
             }
-            onRemoteBroadcastMessage(rawMessage);
+            log.debug("onRemoteBroadcastMessage: {}", message);
+            messageRouter.dispatch(message);
         } catch (Exception e) {
             log.error("handle RemoteBroadcastMessage failed.", e);
         }
     }
 
-    private void onRemoteBroadcastMessage(SerializableMessage rawMessage) {
-        var className = rawMessage.className;
-        if (className == null || className.isEmpty()) {
-            log.error("className is null or empty");
-            return;
-        }
-        Class<?> clazz;
-        try {
-            clazz = Class.forName(className);
-        } catch (ClassNotFoundException e) {
-            log.error("class not found: {}", className);
-            return;
-        }
-        var message = (PubSubMessage) JsonUtils.fromJSON(rawMessage.json, clazz);
-        messageRouter.dispatch(message);
-    }
-
-    private record SerializableMessage(String className, Long id, Long timestamp, String json) {
-    }
-
 }
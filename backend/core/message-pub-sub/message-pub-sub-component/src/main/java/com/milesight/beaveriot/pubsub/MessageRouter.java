@@ -16,6 +16,7 @@ import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
@@ -26,10 +27,26 @@ public class MessageRouter implements BeanPostProcessor {
 
     private static final List<Subscription<PubSubMessage>> SUBSCRIPTIONS = new CopyOnWriteArrayList<>();
 
+    /**
+     * Subscriptions matching a message class, replaced whenever a subscription is added.
+     */
+    private static volatile Map<Class<?>, List<Subscription<PubSubMessage>>> subscriptionsByClass = new ConcurrentHashMap<>();
+
     @SuppressWarnings("unchecked")
     protected <T extends PubSubMessage> void subscribe(Class<T> clazz, Consumer<T> listener) {
         log.debug("register message subscription: {}, listener: {}", clazz.getName(), listener);
-        SUBSCRIPTIONS.add(new Subscription<>((Class<PubSubMessage>) clazz, (Consumer<PubSubMessage>) listener));
+        addSubscription(new Subscription<>((Class<PubSubMessage>) clazz, (Consumer<PubSubMessage>) listener));
+    }
+
+    private static void addSubscription(Subscription<PubSubMessage> subscription) {
+        SUBSCRIPTIONS.add(subscription);
+        subscriptionsByClass = new ConcurrentHashMap<>();
+    }
+
+    private static List<Subscription<PubSubMessage>> resolveSubscriptions(Class<?> clazz) {
+        return SUBSCRIPTIONS.stream()
+                .filter(subscription -> subscription.clazz.isAssignableFrom(clazz))
+                .toList();
     }
 
     public void dispatch(PubSubMessage message) {
@@ -44,18 +61,15 @@ public class MessageRouter implements BeanPostProcessor {
         }
 
         var clazz = message.getClass();
-        boolean subscriptionExists = false;
-        for (Subscription<PubSubMessage> subscription : SUBSCRIPTIONS) {
-            if (subscription.clazz.isAssignableFrom(clazz)) {
-                subscriptionExists = true;
-                try {
-                    subscription.listener.accept(message);
-                } catch (Exception e) {
-                    log.error("listener invoke error.", e);
-                }
+        var subscriptions = subscriptionsByClass.computeIfAbsent(clazz, MessageRouter::resolveSubscriptions);
+        for (Subscription<PubSubMessage> subscription : subscriptions) {
+            try {
+                subscription.listener.accept(message);
+            } catch (Exception e) {
+                log.error("listener invoke error.", e);
             }
         }
-        if (!subscriptionExists) {
+        if (subscriptions.isEmpty()) {
             log.warn("dispatch message failed, no subscriber found for message: {}", clazz.getName());
         }
 
@@ -84,7 +98,7 @@ public class MessageRouter implements BeanPostProcessor {
             Class<?> parameterType = method.getParameterTypes()[0];
             log.debug("register message subscription: {}, method: {}", parameterType.getName(), method);
             //noinspection unchecked
-            SUBSCRIPTIONS.add(new Subscription<>((Class<PubSubMessage>) parameterType, message -> {
+            addSubscription(new Subscription<>((Class<PubSubMessage>) parameterType, message -> {
                 try {
                     method.invoke(bean, message);
                 } catch (Exception e) {
@@ -0,0 +1,38 @@
+package com.milesight.beaveriot.pubsub.codec;
+
+import com.milesight.beaveriot.base.exception.JSONException;
+import com.milesight.beaveriot.base.utils.JsonUtils;
+
+import java.io.IOException;
+
+/**
+ * Plain JSON payloads, readable in broker traces.
+ */
+public class JsonMessageCodec implements PubSubMessageCodec {
+
+    public static final byte ID = 2;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(Object message) {
+        try {
+            return JsonUtils.getObjectMapper().writeValueAsBytes(message);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] payload, Class<T> type) {
+        try {
+            return JsonUtils.getObjectMapper().readValue(payload, type);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+}
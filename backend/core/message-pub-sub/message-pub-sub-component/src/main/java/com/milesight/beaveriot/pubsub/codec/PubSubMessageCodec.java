@@ -0,0 +1,17 @@
+package com.milesight.beaveriot.pubsub.codec;
+
+/**
+ * Encodes the payload of remote broadcast messages.
+ * <p>
+ * The id of the codec is written into every envelope, so a node decodes messages of any codec it knows regardless of
+ * the one it encodes with. Ids must be unique and must never change.
+ */
+public interface PubSubMessageCodec {
+
+    byte getId();
+
+    byte[] encode(Object message);
+
+    <T> T decode(byte[] payload, Class<T> type);
+
+}
@@ -0,0 +1,55 @@
+package com.milesight.beaveriot.pubsub.codec;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.milesight.beaveriot.base.exception.JSONException;
+
+import java.io.IOException;
+
+/**
+ * Default codec, binary Jackson Smile with the same mapping rules as {@link com.milesight.beaveriot.base.utils.JsonUtils}.
+ */
+public class SmileMessageCodec implements PubSubMessageCodec {
+
+    public static final byte ID = 1;
+
+    private final ObjectMapper objectMapper = SmileMapper.builder()
+            .addModule(new JavaTimeModule())
+            .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+            .configure(SerializationFeature.WRITE_DATES_WITH_ZONE_ID, true)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS, true)
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .build();
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(Object message) {
+        try {
+            return objectMapper.writeValueAsBytes(message);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+}
@@ -2,16 +2,41 @@ package com.milesight.beaveriot.pubsub.config;
 
 import com.milesight.beaveriot.mqtt.broker.bridge.MqttBrokerBridge;
 import com.milesight.beaveriot.pubsub.MessageRouter;
+import com.milesight.beaveriot.pubsub.codec.PubSubMessageCodec;
+import com.milesight.beaveriot.pubsub.codec.SmileMessageCodec;
+import com.milesight.beaveriot.pubsub.envelope.MessageSerializer;
+import com.milesight.beaveriot.pubsub.envelope.MessageTypeRegistry;
 import com.milesight.beaveriot.pubsub.remote.MqttBasedMessagePubSub;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class MessagePubSubConfiguration {
 
+    private static final String MESSAGE_BASE_PACKAGE = "com.milesight.beaveriot";
+
+    @Bean
+    public MessageTypeRegistry messageTypeRegistry() {
+        return MessageTypeRegistry.scan(MESSAGE_BASE_PACKAGE);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public PubSubMessageCodec pubSubMessageCodec() {
+        return new SmileMessageCodec();
+    }
+
+    @Bean
+    public MessageSerializer messageSerializer(MessageTypeRegistry messageTypeRegistry, PubSubMessageCodec pubSubMessageCodec,
+                                               @Value("${message-pub-sub.legacy-format:false}") boolean legacyFormat) {
+        return new MessageSerializer(messageTypeRegistry, pubSubMessageCodec, legacyFormat);
+    }
+
     @Bean
-    public MqttBasedMessagePubSub messagePubSub(MqttBrokerBridge mqttBrokerBridge, MessageRouter messageRouter) {
-        return new MqttBasedMessagePubSub(mqttBrokerBridge, messageRouter);
+    public MqttBasedMessagePubSub messagePubSub(MqttBrokerBridge mqttBrokerBridge, MessageRouter messageRouter, MessageSerializer messageSerializer) {
+        return new MqttBasedMessagePubSub(mqttBrokerBridge, messageRouter, messageSerializer);
     }
 
 }
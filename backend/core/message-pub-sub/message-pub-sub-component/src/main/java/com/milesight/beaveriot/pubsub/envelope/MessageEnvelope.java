@@ -0,0 +1,81 @@
+package com.milesight.beaveriot.pubsub.envelope;
+
+import org.springframework.lang.Nullable;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary frame of a remote broadcast message.
+ * <pre>
+ * magic(1) version(1) flags(1) codec(1) type id(4) [type name length(2) type name] schema version(2) id(8) timestamp(8) payload
+ * </pre>
+ * The type name is only present for types the receiver may not know by id, see {@link MessageTypeRegistry}.
+ * The magic byte is never '{', which tells envelopes apart from the JSON messages of older nodes.
+ */
+public record MessageEnvelope(byte codecId, int typeId, @Nullable String typeName, int schemaVersion,
+                              long id, long timestamp, byte[] payload) {
+
+    static final byte MAGIC = (byte) 0xBE;
+
+    static final byte VERSION = 1;
+
+    private static final byte FLAG_TYPE_NAME = 1;
+
+    private static final int HEADER_SIZE = 26;
+
+    public static boolean isEnvelope(byte[] data) {
+        return data.length > 0 && data[0] == MAGIC;
+    }
+
+    public byte[] encode() {
+        byte[] name = typeName == null ? null : typeName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (name == null ? 0 : 2 + name.length) + payload.length);
+        buffer.put(MAGIC)
+                .put(VERSION)
+                .put(name == null ? 0 : FLAG_TYPE_NAME)
+                .put(codecId)
+                .putInt(typeId);
+        if (name != null) {
+            buffer.putShort((short) name.length).put(name);
+        }
+        buffer.putShort((short) schemaVersion)
+                .putLong(id)
+                .putLong(timestamp)
+                .put(payload);
+        return buffer.array();
+    }
+
+    public static MessageEnvelope decode(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (buffer.get() != MAGIC) {
+                throw new IllegalArgumentException("not a message envelope");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported envelope version: " + version);
+            }
+
+            byte flags = buffer.get();
+            byte codecId = buffer.get();
+            int typeId = buffer.getInt();
+            String typeName = null;
+            if ((flags & FLAG_TYPE_NAME) != 0) {
+                byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(name);
+                typeName = new String(name, StandardCharsets.UTF_8);
+            }
+            int schemaVersion = Short.toUnsignedInt(buffer.getShort());
+            long id = buffer.getLong();
+            long timestamp = buffer.getLong();
+            byte[] payload = Arrays.copyOfRange(data, buffer.position(), data.length);
+            return new MessageEnvelope(codecId, typeId, typeName, schemaVersion, id, timestamp, payload);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated message envelope", e);
+        }
+    }
+
+}
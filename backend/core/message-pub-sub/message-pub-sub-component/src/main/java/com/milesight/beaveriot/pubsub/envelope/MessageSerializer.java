@@ -0,0 +1,120 @@
+package com.milesight.beaveriot.pubsub.envelope;
+
+import com.milesight.beaveriot.base.utils.JsonUtils;
+import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
+import com.milesight.beaveriot.pubsub.api.message.PubSubMessage;
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import com.milesight.beaveriot.pubsub.codec.JsonMessageCodec;
+import com.milesight.beaveriot.pubsub.codec.PubSubMessageCodec;
+import com.milesight.beaveriot.pubsub.codec.SmileMessageCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts remote broadcast messages to the bytes sent between nodes and back.
+ * <p>
+ * Messages are written as a {@link MessageEnvelope} with the payload encoded once by the configured codec. The
+ * JSON format of older nodes, a JSON document wrapping the message as a JSON string, is always readable and is
+ * written instead while {@code legacyFormat} is set, for rolling upgrades from those nodes.
+ */
+@Slf4j
+public class MessageSerializer {
+
+    private final MessageTypeRegistry typeRegistry;
+
+    private final PubSubMessageCodec codec;
+
+    private final Map<Byte, PubSubMessageCodec> codecsById = new HashMap<>();
+
+    private final boolean legacyFormat;
+
+    public MessageSerializer(MessageTypeRegistry typeRegistry, PubSubMessageCodec codec, boolean legacyFormat) {
+        this.typeRegistry = typeRegistry;
+        this.codec = codec;
+        this.legacyFormat = legacyFormat;
+        registerCodec(new SmileMessageCodec());
+        registerCodec(new JsonMessageCodec());
+        registerCodec(codec);
+    }
+
+    private void registerCodec(PubSubMessageCodec messageCodec) {
+        codecsById.put(messageCodec.getId(), messageCodec);
+    }
+
+    public byte[] serialize(RemoteBroadcastMessage message) {
+        if (legacyFormat) {
+            return serializeLegacy(message);
+        }
+
+        MessageTypeRegistry.MessageType type = typeRegistry.typeOf(message.getClass());
+        return new MessageEnvelope(
+                codec.getId(),
+                type.id(),
+                type.registered() ? null : type.type().getName(),
+                type.schemaVersion(),
+                SnowflakeUtil.nextId(),
+                System.currentTimeMillis(),
+                codec.encode(message)
+        ).encode();
+    }
+
+    byte[] serializeLegacy(RemoteBroadcastMessage message) {
+        var legacyMessage = new LegacyMessage(
+                message.getClass().getName(),
+                SnowflakeUtil.nextId(),
+                System.currentTimeMillis(),
+                JsonUtils.toJSON(message)
+        );
+        return JsonUtils.toJSON(legacyMessage).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return null if the message can not be handled by this node, the reason is logged
+     */
+    @Nullable
+    public PubSubMessage deserialize(byte[] data) {
+        if (!MessageEnvelope.isEnvelope(data)) {
+            return deserializeLegacy(data);
+        }
+
+        MessageEnvelope envelope = MessageEnvelope.decode(data);
+        MessageTypeRegistry.MessageType type = typeRegistry.resolve(envelope.typeId(), envelope.typeName());
+        if (type == null) {
+            log.error("unknown message type id: {}", envelope.typeId());
+            return null;
+        }
+        if (envelope.schemaVersion() != type.schemaVersion()) {
+            log.debug("schema version of {} differs, received {}, local {}", type.type().getName(), envelope.schemaVersion(), type.schemaVersion());
+        }
+
+        PubSubMessageCodec messageCodec = codecsById.get(envelope.codecId());
+        if (messageCodec == null) {
+            log.error("unknown message codec id: {}", envelope.codecId());
+            return null;
+        }
+        return (PubSubMessage) messageCodec.decode(envelope.payload(), type.type());
+    }
+
+    @Nullable
+    private PubSubMessage deserializeLegacy(byte[] data) {
+        var legacyMessage = JsonUtils.fromJSON(new String(data, StandardCharsets.UTF_8), LegacyMessage.class);
+        if (legacyMessage == null || legacyMessage.className() == null || legacyMessage.className().isEmpty()) {
+            log.error("className is null or empty");
+            return null;
+        }
+
+        MessageTypeRegistry.MessageType type = typeRegistry.resolve(legacyMessage.className());
+        if (type == null) {
+            return null;
+        }
+        return (PubSubMessage) JsonUtils.fromJSON(legacyMessage.json(), type.type());
+    }
+
+    private record LegacyMessage(String className, Long id, Long timestamp, String json) {
+    }
+
+}
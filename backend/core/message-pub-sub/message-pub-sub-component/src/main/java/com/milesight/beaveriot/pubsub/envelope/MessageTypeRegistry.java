@@ -0,0 +1,128 @@
+package com.milesight.beaveriot.pubsub.envelope;
+
+import com.milesight.beaveriot.pubsub.api.annotation.MessageSchema;
+import com.milesight.beaveriot.pubsub.api.message.PubSubMessage;
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ids of the remote broadcast message types.
+ * <p>
+ * The id of a type is the FNV-1a hash of its class name, so every node derives the same ids without coordination.
+ * Types found on the classpath at startup are sent by id only. Types first seen at runtime are sent with their class
+ * name as well, since other nodes may not know them by id.
+ */
+@Slf4j
+public class MessageTypeRegistry {
+
+    private final Map<Integer, MessageType> typesById = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, MessageType> typesByClass = new ConcurrentHashMap<>();
+
+    private final Map<String, MessageType> typesByName = new ConcurrentHashMap<>();
+
+    public MessageTypeRegistry(Collection<Class<?>> types) {
+        types.forEach(type -> {
+            MessageType messageType = new MessageType(typeId(type.getName()), type, schemaVersion(type), true);
+            MessageType existing = typesById.putIfAbsent(messageType.id(), messageType);
+            if (existing != null && existing.type() != type) {
+                throw new IllegalStateException("message types " + existing.type().getName() + " and "
+                        + type.getName() + " have the same id " + messageType.id());
+            }
+            typesByClass.put(type, messageType);
+            typesByName.put(type.getName(), messageType);
+        });
+        log.debug("registered {} remote broadcast message types", typesById.size());
+    }
+
+    /**
+     * Registry of the concrete {@link RemoteBroadcastMessage} types under the packages
+     */
+    public static MessageTypeRegistry scan(String... basePackages) {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AssignableTypeFilter(RemoteBroadcastMessage.class));
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (String basePackage : basePackages) {
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                try {
+                    types.add(ClassUtils.forName(candidate.getBeanClassName(), MessageTypeRegistry.class.getClassLoader()));
+                } catch (ClassNotFoundException | LinkageError e) {
+                    log.warn("skipped message type {}", candidate.getBeanClassName(), e);
+                }
+            }
+        }
+        return new MessageTypeRegistry(types);
+    }
+
+    public MessageType typeOf(Class<?> type) {
+        MessageType messageType = typesByClass.get(type);
+        if (messageType != null) {
+            return messageType;
+        }
+        return typesByClass.computeIfAbsent(type, k -> new MessageType(typeId(k.getName()), k, schemaVersion(k), false));
+    }
+
+    /**
+     * @return null if the type is unknown on this node
+     */
+    @Nullable
+    public MessageType resolve(int typeId, @Nullable String typeName) {
+        return typeName == null ? typesById.get(typeId) : resolve(typeName);
+    }
+
+    @Nullable
+    public MessageType resolve(String typeName) {
+        MessageType messageType = typesByName.get(typeName);
+        if (messageType != null) {
+            return messageType;
+        }
+        try {
+            Class<?> type = ClassUtils.forName(typeName, MessageTypeRegistry.class.getClassLoader());
+            if (!PubSubMessage.class.isAssignableFrom(type)) {
+                log.error("{} is not a message type", typeName);
+                return null;
+            }
+            return typesByName.computeIfAbsent(typeName, k -> typeOf(type));
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.error("class not found: {}", typeName);
+            return null;
+        }
+    }
+
+    static int typeId(String className) {
+        int hash = 0x811c9dc5;
+        for (byte b : className.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    private static int schemaVersion(Class<?> type) {
+        MessageSchema schema = type.getAnnotation(MessageSchema.class);
+        int version = schema == null ? 1 : schema.version();
+        if (version < 0 || version > 0xffff) {
+            throw new IllegalArgumentException("schema version of " + type.getName() + " out of range: " + version);
+        }
+        return version;
+    }
+
+    /**
+     * @param registered whether the type was found at startup, so that other nodes resolve it by id
+     */
+    public record MessageType(int id, Class<?> type, int schemaVersion, boolean registered) {
+    }
+
+}
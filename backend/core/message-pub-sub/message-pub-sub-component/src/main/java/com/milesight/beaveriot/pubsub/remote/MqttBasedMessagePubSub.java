@@ -4,6 +4,7 @@ import com.milesight.beaveriot.mqtt.broker.bridge.MqttBrokerBridge;
 import com.milesight.beaveriot.mqtt.broker.bridge.listener.MqttBroadcastListener;
 import com.milesight.beaveriot.pubsub.MessagePubSub;
 import com.milesight.beaveriot.pubsub.MessageRouter;
+import com.milesight.beaveriot.pubsub.envelope.MessageSerializer;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import jakarta.annotation.PostConstruct;
 
@@ -17,21 +18,21 @@ public class MqttBasedMessagePubSub extends MessagePubSub {
 
     private final MqttBrokerBridge mqttBrokerBridge;
 
-    public MqttBasedMessagePubSub(MqttBrokerBridge mqttBrokerBridge, MessageRouter messageRouter) {
-        super(messageRouter);
+    public MqttBasedMessagePubSub(MqttBrokerBridge mqttBrokerBridge, MessageRouter messageRouter, MessageSerializer messageSerializer) {
+        super(messageRouter, messageSerializer);
         this.mqttBrokerBridge = mqttBrokerBridge;
     }
 
     @Override
-    protected void remoteBroadcast(String message) {
-        mqttBrokerBridge.publish(INTERNAL_BROADCAST_TOPIC, message.getBytes(), MqttQoS.AT_LEAST_ONCE, true);
+    protected void remoteBroadcast(byte[] message) {
+        mqttBrokerBridge.publish(INTERNAL_BROADCAST_TOPIC, message, MqttQoS.AT_LEAST_ONCE, true);
     }
 
     @PostConstruct
     private void init() {
         mqttBrokerBridge.addListener((MqttBroadcastListener) event -> {
             if (event.getTopic().startsWith(INTERNAL_BROADCAST_TOPIC)) {
-                onRemoteBroadcastMessage(new String(event.getPayload()));
+                onRemoteBroadcastMessage(event.getPayload());
             }
         });
     }
@@ -0,0 +1,115 @@
+package com.milesight.beaveriot.pubsub.envelope
+
+import com.milesight.beaveriot.base.utils.JsonUtils
+import com.milesight.beaveriot.pubsub.api.annotation.MessageSchema
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage
+import com.milesight.beaveriot.pubsub.codec.JsonMessageCodec
+import com.milesight.beaveriot.pubsub.codec.SmileMessageCodec
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class MessageSerializerTest extends Specification {
+
+    def registry = new MessageTypeRegistry([RegisteredMessage])
+
+    def serializer = new MessageSerializer(registry, new SmileMessageCodec(), false)
+
+    def "should send registered types by id only"() {
+        given:
+        def message = new RegisteredMessage(tenantId: "t1", deviceId: 42L, keys: ["a", "b"])
+
+        when:
+        def data = serializer.serialize(message)
+        def envelope = MessageEnvelope.decode(data)
+        def decoded = serializer.deserialize(data) as RegisteredMessage
+
+        then:
+        MessageEnvelope.isEnvelope(data)
+        envelope.typeName() == null
+        envelope.typeId() == MessageTypeRegistry.typeId(RegisteredMessage.name)
+        envelope.schemaVersion() == 3
+        envelope.codecId() == SmileMessageCodec.ID
+        decoded.tenantId == "t1"
+        decoded.deviceId == 42L
+        decoded.keys == ["a", "b"]
+    }
+
+    def "should send the class name of types unknown at startup"() {
+        given:
+        def receiver = new MessageSerializer(new MessageTypeRegistry([]), new SmileMessageCodec(), false)
+
+        when:
+        def data = serializer.serialize(new UnregisteredMessage(tenantId: "t1", data: "hello"))
+        def decoded = receiver.deserialize(data) as UnregisteredMessage
+
+        then:
+        MessageEnvelope.decode(data).typeName() == UnregisteredMessage.name
+        decoded.tenantId == "t1"
+        decoded.data == "hello"
+    }
+
+    def "should drop messages of unknown type ids"() {
+        given:
+        def receiver = new MessageSerializer(new MessageTypeRegistry([]), new SmileMessageCodec(), false)
+
+        expect:
+        receiver.deserialize(serializer.serialize(new RegisteredMessage(deviceId: 1L))) == null
+    }
+
+    def "should decode payloads of any known codec"() {
+        given:
+        def sender = new MessageSerializer(registry, new JsonMessageCodec(), false)
+
+        when:
+        def data = sender.serialize(new RegisteredMessage(deviceId: 7L))
+
+        then:
+        MessageEnvelope.decode(data).codecId() == JsonMessageCodec.ID
+        (serializer.deserialize(data) as RegisteredMessage).deviceId == 7L
+    }
+
+    def "should read and write the json format of older nodes"() {
+        given:
+        def legacyData = JsonUtils.toJSON([
+                class_name: RegisteredMessage.name,
+                id        : 1L,
+                timestamp : 2L,
+                json      : JsonUtils.toJSON(new RegisteredMessage(tenantId: "t1", deviceId: 9L))
+        ]).getBytes(StandardCharsets.UTF_8)
+        def legacySender = new MessageSerializer(registry, new SmileMessageCodec(), true)
+
+        when:
+        def decoded = serializer.deserialize(legacyData) as RegisteredMessage
+        def written = legacySender.serialize(new RegisteredMessage(deviceId: 10L))
+
+        then:
+        decoded.tenantId == "t1"
+        decoded.deviceId == 9L
+        !MessageEnvelope.isEnvelope(written)
+        JsonUtils.fromJSON(new String(written, StandardCharsets.UTF_8)).get("class_name").asText() == RegisteredMessage.name
+        (serializer.deserialize(written) as RegisteredMessage).deviceId == 10L
+    }
+
+    def "should reject truncated envelopes"() {
+        given:
+        def data = serializer.serialize(new RegisteredMessage(deviceId: 1L))
+
+        when:
+        MessageEnvelope.decode(Arrays.copyOf(data, 10))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    @MessageSchema(version = 3)
+    static class RegisteredMessage extends RemoteBroadcastMessage {
+        Long deviceId
+        List<String> keys
+    }
+
+    static class UnregisteredMessage extends RemoteBroadcastMessage {
+        String data
+    }
+
+}
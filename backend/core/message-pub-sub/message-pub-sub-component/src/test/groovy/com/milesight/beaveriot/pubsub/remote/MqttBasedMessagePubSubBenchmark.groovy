@@ -0,0 +1,114 @@
+package com.milesight.beaveriot.pubsub.remote
+
+import com.milesight.beaveriot.context.mqtt.model.MqttBrokerInfo
+import com.milesight.beaveriot.mqtt.broker.bridge.MqttBrokerBridge
+import com.milesight.beaveriot.mqtt.broker.bridge.auth.MqttAcl
+import com.milesight.beaveriot.mqtt.broker.bridge.listener.MqttEventListener
+import com.milesight.beaveriot.mqtt.broker.bridge.listener.event.MqttMessageEvent
+import com.milesight.beaveriot.pubsub.MessageRouter
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage
+import com.milesight.beaveriot.pubsub.codec.SmileMessageCodec
+import com.milesight.beaveriot.pubsub.envelope.MessageSerializer
+import com.milesight.beaveriot.pubsub.envelope.MessageTypeRegistry
+import io.netty.handler.codec.mqtt.MqttQoS
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+
+/**
+ * Bytes on the wire and CPU time per broadcast of {@link MqttBasedMessagePubSub}, publish to dispatch, with the
+ * JSON format of older nodes and with the binary envelope. Not part of the default test run, start it with
+ * {@code mvn test -Dtest=MqttBasedMessagePubSubBenchmark}.
+ */
+class MqttBasedMessagePubSubBenchmark extends Specification {
+
+    static final int WARMUP = 20_000
+
+    static final int ITERATIONS = 100_000
+
+    def "compare legacy json and binary envelope"() {
+        given:
+        def message = new BenchmarkMessage(
+                tenantId: "default",
+                deviceId: 1_234_567_890L,
+                identifier: "sensor-0001",
+                keys: (1..8).collect { "default.device.sensor-0001.property_${it}".toString() },
+                timestamp: System.currentTimeMillis())
+        def registry = new MessageTypeRegistry([BenchmarkMessage])
+
+        when:
+        def legacy = run(new MessageSerializer(registry, new SmileMessageCodec(), true), message)
+        def envelope = run(new MessageSerializer(registry, new SmileMessageCodec(), false), message)
+        println String.format("%-10s %8s %14s", "format", "bytes", "cpu ns/msg")
+        println String.format("%-10s %8d %14d", "legacy", legacy.bytes, legacy.cpuNanos)
+        println String.format("%-10s %8d %14d", "envelope", envelope.bytes, envelope.cpuNanos)
+
+        then:
+        envelope.bytes < legacy.bytes
+    }
+
+    private static Map run(MessageSerializer serializer, BenchmarkMessage message) {
+        def bridge = new LoopbackBridge()
+        def pubSub = new MqttBasedMessagePubSub(bridge, new MessageRouter(), serializer)
+        pubSub.init()
+        long received = 0
+        pubSub.subscribe(BenchmarkMessage) { received++ }
+
+        WARMUP.times { pubSub.publish(message) }
+        def threadMXBean = ManagementFactory.threadMXBean
+        long start = threadMXBean.currentThreadCpuTime
+        ITERATIONS.times { pubSub.publish(message) }
+        long cpuNanos = threadMXBean.currentThreadCpuTime - start
+        assert received >= WARMUP + ITERATIONS
+        return [bytes: bridge.lastPayload.length, cpuNanos: cpuNanos.intdiv(ITERATIONS)]
+    }
+
+    static class BenchmarkMessage extends RemoteBroadcastMessage {
+        Long deviceId
+        String identifier
+        List<String> keys
+        Long timestamp
+    }
+
+    static class LoopbackBridge implements MqttBrokerBridge {
+
+        List<MqttEventListener> listeners = []
+
+        byte[] lastPayload
+
+        @Override
+        MqttBrokerInfo getBrokerInfo() { null }
+
+        @Override
+        void open() {}
+
+        @Override
+        void close() {}
+
+        @Override
+        void publish(String topic, byte[] payload, MqttQoS qos, boolean retained) {
+            lastPayload = payload
+            def event = new MqttMessageEvent(topic, payload)
+            listeners.each { it.onBroadcast(event) }
+        }
+
+        @Override
+        void addListener(MqttEventListener listener) { listeners << listener }
+
+        @Override
+        void removeListener(MqttEventListener listener) { listeners.remove(listener) }
+
+        @Override
+        void addUser(String username, String password) {}
+
+        @Override
+        void deleteUser(String username) {}
+
+        @Override
+        void addAcl(MqttAcl acl) {}
+
+        @Override
+        void deleteAcl(String username) {}
+    }
+
+}
@@ -1,11 +1,19 @@
 package com.milesight.beaveriot.rule.model.trace;
 
 import com.milesight.beaveriot.rule.enums.ExecutionStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.springframework.util.ObjectUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author leon
@@ -25,6 +33,26 @@ public class FlowTraceInfo {
 
     private List<NodeTraceInfo> traceInfos = new ArrayList<>();
 
+    /**
+     * Only keep the trace when the execution fails, the input and output of successful nodes are not captured
+     */
+    @JsonIgnore
+    private boolean errorsOnly;
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Map<String, List<NodeTraceInfo>> traceInfoIndex = new HashMap<>();
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private int indexedCount;
+
     public boolean isEmpty() {
         return ObjectUtils.isEmpty(traceInfos);
     }
@@ -35,13 +63,49 @@ public class FlowTraceInfo {
         return flowTraceInfo;
     }
 
+    public void setTraceInfos(List<NodeTraceInfo> traceInfos) {
+        this.traceInfos = traceInfos;
+        this.traceInfoIndex = new HashMap<>();
+        this.indexedCount = 0;
+        if (traceInfos != null) {
+            traceInfos.forEach(this::index);
+        }
+    }
+
+    public void addTraceInfo(NodeTraceInfo traceInfo) {
+        traceInfos.add(traceInfo);
+        index(traceInfo);
+    }
+
+    private void index(NodeTraceInfo traceInfo) {
+        traceInfoIndex.computeIfAbsent(traceInfo.getNodeId(), k -> new ArrayList<>(1)).add(traceInfo);
+        indexedCount++;
+    }
+
     public NodeTraceInfo findTraceInfo(String nodeId, String messageId) {
+        List<NodeTraceInfo> nodeTraceInfos = traceInfoIndex.get(nodeId);
+        if (nodeTraceInfos != null) {
+            for (NodeTraceInfo node : nodeTraceInfos) {
+                if (messageId.equals(node.getMessageId())) {
+                    return node;
+                }
+            }
+        }
+
+        // trace infos added to the list directly are not indexed
+        if (traceInfos.size() == indexedCount) {
+            return null;
+        }
         return traceInfos.stream()
                 .filter(node -> node.getNodeId().equals(nodeId) && messageId.equals(node.getMessageId()))
                 .findFirst()
                 .orElse(null);
     }
 
+    public boolean hasError() {
+        return status == ExecutionStatus.ERROR || traceInfos.stream().anyMatch(node -> node.getStatus() == ExecutionStatus.ERROR);
+    }
+
     public NodeTraceInfo findLastNodeTrace() {
         return ObjectUtils.isEmpty(traceInfos) ? null : traceInfos.get(traceInfos.size() - 1);
     }
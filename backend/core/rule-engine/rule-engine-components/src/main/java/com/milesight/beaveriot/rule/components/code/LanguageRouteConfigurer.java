@@ -4,32 +4,70 @@ import com.milesight.beaveriot.rule.RuleEngineRouteConfigurer;
 import com.milesight.beaveriot.rule.components.code.language.CustomizedJavaScriptLanguage;
 import com.milesight.beaveriot.rule.components.code.language.CustomizedMvelLanguage;
 import com.milesight.beaveriot.rule.components.code.language.CustomizedPythonLanguage;
+import com.milesight.beaveriot.rule.components.code.language.CustomizedJavaScriptExpression;
+import com.milesight.beaveriot.rule.components.code.language.CustomizedPythonExpression;
 import com.milesight.beaveriot.rule.components.code.language.LanguageWarmUp;
+import com.milesight.beaveriot.rule.components.code.language.ScriptContextPool;
+import com.milesight.beaveriot.rule.components.code.language.ScriptEngineProperties;
+import com.milesight.beaveriot.rule.components.code.language.module.JavaScriptJsonModule;
+import com.milesight.beaveriot.rule.components.code.language.module.PythonJsonModule;
 import groovy.lang.GroovyShell;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
 import org.apache.camel.language.groovy.GroovyShellFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * @author leon
  */
 @Component
 @Slf4j
-public class LanguageRouteConfigurer implements RuleEngineRouteConfigurer {
+public class LanguageRouteConfigurer implements RuleEngineRouteConfigurer, DisposableBean {
     public static final String WARM_UP_THREAD_NAME_PREFIX = "Language-WarmUp-";
 
+    private final ScriptEngineProperties scriptEngineProperties;
+    private final ScheduledExecutorService scriptWatchdog;
+    private final ScriptContextPool javaScriptContextPool;
+    private final ScriptContextPool pythonContextPool;
+
+    public LanguageRouteConfigurer(ScriptEngineProperties scriptEngineProperties, ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.scriptEngineProperties = scriptEngineProperties;
+        this.scriptWatchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Language-Watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.javaScriptContextPool = new ScriptContextPool(CustomizedJavaScriptExpression.LANG_ID, JavaScriptJsonModule::new,
+                scriptEngineProperties, scriptWatchdog, meterRegistry);
+        this.pythonContextPool = new ScriptContextPool(CustomizedPythonExpression.LANG_ID, PythonJsonModule::new,
+                scriptEngineProperties, scriptWatchdog, meterRegistry);
+    }
+
     @Override
     public void customizeRoute(CamelContext context) {
         bindRegistry(context, "groovyShellFactory", new CustomizedGroovyShellFactory());
-        bindRegistry(context, "mvel-language", new CustomizedMvelLanguage());
-        bindRegistry(context, "js-language", new CustomizedJavaScriptLanguage());
-        bindRegistry(context, "python-language", new CustomizedPythonLanguage());
+        bindRegistry(context, "mvel-language", new CustomizedMvelLanguage(scriptEngineProperties));
+        bindRegistry(context, "js-language", new CustomizedJavaScriptLanguage(javaScriptContextPool));
+        bindRegistry(context, "python-language", new CustomizedPythonLanguage(pythonContextPool));
+    }
+
+    @Override
+    public void destroy() {
+        scriptWatchdog.shutdownNow();
+        javaScriptContextPool.close();
+        pythonContextPool.close();
     }
 
     public void bindRegistry(CamelContext context, String name, Object lang) {
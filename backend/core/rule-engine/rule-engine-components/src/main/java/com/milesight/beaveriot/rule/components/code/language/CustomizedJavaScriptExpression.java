@@ -1,11 +1,9 @@
 package com.milesight.beaveriot.rule.components.code.language;
 
 import com.milesight.beaveriot.rule.components.code.ExpressionEvaluator;
-import com.milesight.beaveriot.rule.components.code.language.module.JavaScriptJsonModule;
 import com.milesight.beaveriot.rule.components.code.language.module.LanguageModule;
 import org.apache.camel.Exchange;
 import org.apache.camel.support.ExpressionSupport;
-import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import org.springframework.util.ObjectUtils;
@@ -17,19 +15,21 @@ import java.util.Map;
  */
 public class CustomizedJavaScriptExpression extends ExpressionSupport {
     private final String expressionString;
+    private final ScriptContextPool contextPool;
     public static final String LANG_ID = "js";
 
-    public CustomizedJavaScriptExpression(String expressionString) {
+    public CustomizedJavaScriptExpression(String expressionString, ScriptContextPool contextPool) {
         this.expressionString = expressionString;
+        this.contextPool = contextPool;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T> T evaluate(Exchange exchange, Class<T> type) {
-        try (Context cx = LanguageHelper.newContext(LANG_ID)) {
-            LanguageModule jsonModule = new JavaScriptJsonModule(cx);
+        return contextPool.execute(ScriptContextPool.partitionOf(exchange), scriptContext -> {
+            LanguageModule jsonModule = scriptContext.getJsonModule();
 
-            Value b = cx.getBindings(LANG_ID);
+            Value b = scriptContext.getBindings();
 
             b.putMember("exchange", exchange);
             b.putMember("context", exchange.getContext());
@@ -50,11 +50,11 @@ public class CustomizedJavaScriptExpression extends ExpressionSupport {
                 exchange.getIn().removeHeader(ExpressionEvaluator.HEADER_INPUT_VARIABLES);
             }
 
-            Source source = Source.create(LANG_ID, expressionString);
-            Value o = cx.eval(source);
+            Source source = contextPool.getSource(expressionString);
+            Value o = scriptContext.getContext().eval(source);
 
             return (T) LanguageHelper.convertResultValue(o, exchange, type);
-        }
+        });
     }
 
     @Override
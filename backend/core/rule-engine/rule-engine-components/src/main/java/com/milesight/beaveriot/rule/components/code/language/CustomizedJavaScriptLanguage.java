@@ -1,11 +1,8 @@
 package com.milesight.beaveriot.rule.components.code.language;
 
-import com.milesight.beaveriot.rule.components.code.language.module.JavaScriptJsonModule;
-import com.milesight.beaveriot.rule.components.code.language.module.LanguageModule;
 import org.apache.camel.Predicate;
 import org.apache.camel.spi.ScriptingLanguage;
 import org.apache.camel.support.TypedLanguageSupport;
-import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Value;
 
 import java.util.Map;
@@ -14,33 +11,38 @@ import java.util.Map;
  * @author leon
  */
 public class CustomizedJavaScriptLanguage extends TypedLanguageSupport implements ScriptingLanguage, LanguageWarmUp {
+    private final ScriptContextPool contextPool;
+
+    public CustomizedJavaScriptLanguage(ScriptContextPool contextPool) {
+        this.contextPool = contextPool;
+    }
+
     @Override
     public Predicate createPredicate(String expression) {
-        return new CustomizedJavaScriptExpression(expression);
+        return new CustomizedJavaScriptExpression(expression, contextPool);
     }
 
     @Override
     public CustomizedJavaScriptExpression createExpression(String expression) {
-        return new CustomizedJavaScriptExpression(expression);
+        return new CustomizedJavaScriptExpression(expression, contextPool);
     }
 
     @Override
     public <T> T evaluate(String script, Map<String, Object> bindings, Class<T> resultType) {
-        script = loadResource(script);
-        try (Context cx = LanguageHelper.newContext(CustomizedJavaScriptExpression.LANG_ID)) {
-            Value b = cx.getBindings(CustomizedJavaScriptExpression.LANG_ID);
+        String source = loadResource(script);
+        // no exchange to take the partition from, the script itself is used
+        return contextPool.execute(source, scriptContext -> {
+            Value b = scriptContext.getBindings();
             bindings.forEach(b::putMember);
-            Value o = cx.eval(CustomizedJavaScriptExpression.LANG_ID, script);
+            Value o = scriptContext.getContext().eval(contextPool.getSource(source));
             Object answer = o != null ? o.as(resultType) : null;
             return resultType.cast(answer);
-        }
+        });
     }
 
     @Override
     public void warmUp() {
-        try (Context cx = LanguageHelper.newContext(CustomizedJavaScriptExpression.LANG_ID)) {
-            LanguageModule jsonModule = new JavaScriptJsonModule(cx);
-            jsonModule.init();
-        }
+        // the context is created with the json module initialized and kept in the pool
+        contextPool.execute("", scriptContext -> null);
     }
 }
@@ -4,7 +4,7 @@ import com.milesight.beaveriot.rule.components.code.ExpressionEvaluator;
 import org.apache.camel.Exchange;
 import org.apache.camel.ExpressionEvaluationException;
 import org.apache.camel.ExpressionIllegalSyntaxException;
-import org.apache.camel.language.mvel.MvelExpression;
+import org.apache.camel.support.ExpressionSupport;
 import org.springframework.util.ObjectUtils;
 
 import java.io.Serializable;
@@ -14,15 +14,30 @@ import java.util.Map;
 /**
  * @author leon
  */
-public class CustomizedMvelExpression extends MvelExpression {
+public class CustomizedMvelExpression extends ExpressionSupport {
+
+    private final String expressionString;
+
+    private final Class<?> type;
 
     private final Serializable compiled;
 
     public CustomizedMvelExpression(String expressionString, Class<?> type) {
-        super(expressionString, type);
+        this(expressionString, type, compile(expressionString));
+    }
 
+    /**
+     * @param compiled the expression compiled by {@link #compile}, compiled expressions are stateless and can be shared
+     */
+    public CustomizedMvelExpression(String expressionString, Class<?> type, Serializable compiled) {
+        this.expressionString = expressionString;
+        this.type = type;
+        this.compiled = compiled;
+    }
+
+    public static Serializable compile(String expressionString) {
         try {
-            this.compiled = org.mvel2.MVEL.compileExpression(expressionString);
+            return org.mvel2.MVEL.compileExpression(expressionString);
         } catch (Exception e) {
             throw new ExpressionIllegalSyntaxException(expressionString, e);
         }
@@ -51,4 +66,18 @@ public class CustomizedMvelExpression extends MvelExpression {
             throw new ExpressionEvaluationException(this, exchange, e);
         }
     }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    @Override
+    protected String assertionFailureMessage(Exchange exchange) {
+        return this.expressionString;
+    }
+
+    @Override
+    public String toString() {
+        return "Mvel[" + this.expressionString + "]";
+    }
 }
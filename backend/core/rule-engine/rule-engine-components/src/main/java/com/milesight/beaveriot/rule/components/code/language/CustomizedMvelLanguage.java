@@ -1,20 +1,40 @@
 package com.milesight.beaveriot.rule.components.code.language;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.apache.camel.Predicate;
 import org.apache.camel.language.mvel.MvelLanguage;
 
+import java.io.Serializable;
+
 /**
  * @author leon
  */
 public class CustomizedMvelLanguage extends MvelLanguage {
 
+    /**
+     * Expressions are created for every evaluation, the compiled expressions are reused by content
+     */
+    private final Cache<String, Serializable> compiledExpressions;
+
+    public CustomizedMvelLanguage(ScriptEngineProperties properties) {
+        this.compiledExpressions = Caffeine.newBuilder()
+                .maximumSize(properties.getCompiledCacheSize())
+                .build();
+    }
+
     @Override
     public Predicate createPredicate(String expression) {
-        return new CustomizedMvelExpression(loadResource(expression), Boolean.class);
+        String expressionString = loadResource(expression);
+        return new CustomizedMvelExpression(expressionString, Boolean.class, compile(expressionString));
     }
 
     @Override
     public CustomizedMvelExpression createExpression(String expression) {
-        return new CustomizedMvelExpression(expression, Object.class);
+        return new CustomizedMvelExpression(expression, Object.class, compile(expression));
+    }
+
+    private Serializable compile(String expressionString) {
+        return compiledExpressions.get(expressionString, CustomizedMvelExpression::compile);
     }
 }
@@ -2,11 +2,9 @@ package com.milesight.beaveriot.rule.components.code.language;
 
 import com.milesight.beaveriot.rule.components.code.ExpressionEvaluator;
 import com.milesight.beaveriot.rule.components.code.language.module.LanguageModule;
-import com.milesight.beaveriot.rule.components.code.language.module.PythonJsonModule;
 import org.apache.camel.Exchange;
 import org.apache.camel.RuntimeCamelException;
 import org.apache.camel.support.ExpressionSupport;
-import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import org.springframework.util.ObjectUtils;
@@ -21,52 +19,58 @@ import java.util.Map;
 public class CustomizedPythonExpression extends ExpressionSupport {
     private static final String MAIN_FUNCTION = "main";
     private final String expressionString;
+    private final ScriptContextPool contextPool;
     public static final String LANG_ID = "python";
 
-    public CustomizedPythonExpression(String expressionString) {
+    public CustomizedPythonExpression(String expressionString, ScriptContextPool contextPool) {
         this.expressionString = expressionString;
+        this.contextPool = contextPool;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public <T> T evaluate(Exchange exchange, Class<T> type) {
-        try (Context cx = LanguageHelper.newContext(LANG_ID)) {
-            LanguageModule jsonModule = new PythonJsonModule(cx);
+        try {
+            return contextPool.execute(ScriptContextPool.partitionOf(exchange), scriptContext -> evaluate(scriptContext, exchange, type));
+        } catch (Exception e) {
+            throw new RuntimeCamelException(e.getMessage(), e);
+        }
+    }
 
-            Value b = cx.getBindings(LANG_ID); // Significant performance issue here.
+    @SuppressWarnings("unchecked")
+    private <T> T evaluate(ScriptContextPool.ScriptContext scriptContext, Exchange exchange, Class<T> type) {
+        LanguageModule jsonModule = scriptContext.getJsonModule();
 
-            b.putMember("exchange", exchange);
-            b.putMember("context", exchange.getContext());
-            b.putMember("exchangeId", exchange.getExchangeId());
-            b.putMember("message", exchange.getMessage());
-            b.putMember("headers", exchange.getMessage().getHeaders());
-            b.putMember("properties", exchange.getAllProperties());
-            b.putMember("body", jsonModule.input(exchange.getMessage().getBody()));
+        Value b = scriptContext.getBindings();
 
-            // Add input variables to the context
-            Object inputVariables = exchange.getIn().getHeader(ExpressionEvaluator.HEADER_INPUT_VARIABLES);
-            if (!ObjectUtils.isEmpty(inputVariables) && inputVariables instanceof Map) {
-                Map<String, Object> inputVariablesMap = (Map<String, Object>) inputVariables;
-                inputVariablesMap.forEach((k, v) -> {
-                    Object value = jsonModule.input(v);
-                    b.putMember(k, value);
-                });
-                exchange.getIn().removeHeader(ExpressionEvaluator.HEADER_INPUT_VARIABLES);
-            }
+        b.putMember("exchange", exchange);
+        b.putMember("context", exchange.getContext());
+        b.putMember("exchangeId", exchange.getExchangeId());
+        b.putMember("message", exchange.getMessage());
+        b.putMember("headers", exchange.getMessage().getHeaders());
+        b.putMember("properties", exchange.getAllProperties());
+        b.putMember("body", jsonModule.input(exchange.getMessage().getBody()));
 
-            Source source = Source.create(LANG_ID, expressionString);
-            Value expressionOut = cx.eval(source);
-            Value function = expressionOut.hasMembers() ? expressionOut.getMember(MAIN_FUNCTION) : null;
-            if (function == null) {
-                return (T) LanguageHelper.convertResultValue(expressionOut, exchange, type);
-            }
+        // Add input variables to the context
+        Object inputVariables = exchange.getIn().getHeader(ExpressionEvaluator.HEADER_INPUT_VARIABLES);
+        if (!ObjectUtils.isEmpty(inputVariables) && inputVariables instanceof Map) {
+            Map<String, Object> inputVariablesMap = (Map<String, Object>) inputVariables;
+            inputVariablesMap.forEach((k, v) -> {
+                Object value = jsonModule.input(v);
+                b.putMember(k, value);
+            });
+            exchange.getIn().removeHeader(ExpressionEvaluator.HEADER_INPUT_VARIABLES);
+        }
 
-            Value out = function.execute();
-            if (out != null) {
-                return (T) LanguageHelper.convertResultValue(out, exchange, type);
-            }
-        } catch (Exception e) {
-            throw new RuntimeCamelException(e.getMessage(), e);
+        Source source = contextPool.getSource(expressionString);
+        Value expressionOut = scriptContext.getContext().eval(source);
+        Value function = expressionOut.hasMembers() ? expressionOut.getMember(MAIN_FUNCTION) : null;
+        if (function == null) {
+            return (T) LanguageHelper.convertResultValue(expressionOut, exchange, type);
+        }
+
+        Value out = function.execute();
+        if (out != null) {
+            return (T) LanguageHelper.convertResultValue(out, exchange, type);
         }
         return null;
     }
@@ -1,11 +1,8 @@
 package com.milesight.beaveriot.rule.components.code.language;
 
-import com.milesight.beaveriot.rule.components.code.language.module.LanguageModule;
-import com.milesight.beaveriot.rule.components.code.language.module.PythonJsonModule;
 import org.apache.camel.Predicate;
 import org.apache.camel.spi.ScriptingLanguage;
 import org.apache.camel.support.TypedLanguageSupport;
-import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Value;
 
 import java.util.Map;
@@ -15,33 +12,37 @@ import java.util.Map;
  */
 public class CustomizedPythonLanguage extends TypedLanguageSupport implements ScriptingLanguage, LanguageWarmUp {
 
+    private final ScriptContextPool contextPool;
+
+    public CustomizedPythonLanguage(ScriptContextPool contextPool) {
+        this.contextPool = contextPool;
+    }
+
     @Override
     public Predicate createPredicate(String expression) {
-        return new CustomizedPythonExpression(expression);
+        return new CustomizedPythonExpression(expression, contextPool);
     }
 
     @Override
     public CustomizedPythonExpression createExpression(String expression) {
-        return new CustomizedPythonExpression(expression);
+        return new CustomizedPythonExpression(expression, contextPool);
     }
 
     @Override
     public <T> T evaluate(String script, Map<String, Object> bindings, Class<T> resultType) {
-        script = loadResource(script);
-        try (Context cx = LanguageHelper.newContext(CustomizedPythonExpression.LANG_ID)) {
-            Value b = cx.getBindings(CustomizedPythonExpression.LANG_ID);
+        String source = loadResource(script);
+        // no exchange to take the partition from, the script itself is used
+        return contextPool.execute(source, scriptContext -> {
+            Value b = scriptContext.getBindings();
             bindings.forEach(b::putMember);
-            Value o = cx.eval(CustomizedPythonExpression.LANG_ID, script);
+            Value o = scriptContext.getContext().eval(contextPool.getSource(source));
             Object answer = o != null ? o.as(resultType) : null;
             return resultType.cast(answer);
-        }
+        });
     }
 
     @Override
     public void warmUp() {
-        try (Context cx = LanguageHelper.newContext(CustomizedPythonExpression.LANG_ID)) {
-            LanguageModule jsonModule = new PythonJsonModule(cx);
-            jsonModule.init();
-        }
+        contextPool.execute("", scriptContext -> null);
     }
 }
@@ -0,0 +1,261 @@
+package com.milesight.beaveriot.rule.components.code.language;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.milesight.beaveriot.rule.components.code.language.module.LanguageModule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import com.milesight.beaveriot.rule.constants.ExchangeHeaders;
+import org.apache.camel.Exchange;
+import org.apache.camel.RuntimeCamelException;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.ResourceLimits;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Bounded pool of contexts of a polyglot language, all created from the shared engine of the language.
+ * <p>
+ * A context is used by one evaluation at a time. Afterwards the bindings the evaluation added are removed and the
+ * statement limit is reset. A context that cannot be reset that way, e.g. after top level declarations, after a limit
+ * was exceeded or after the execution timeout, is closed instead of being returned to the pool.
+ * <p>
+ * Changes of built-in objects, e.g. of a prototype or a builtin module, cannot be reset. Contexts are therefore
+ * partitioned, a context is only reused by the evaluations of the partition it was created for. Evaluations of a rule
+ * flow use the root flow as partition, each flow belongs to a single tenant.
+ */
+@Slf4j
+public class ScriptContextPool implements AutoCloseable {
+
+    private static final String METRIC_PREFIX = "rule.script.";
+
+    private static final Duration INTERRUPT_TIMEOUT = Duration.ofSeconds(1);
+
+    @Getter
+    private final String lang;
+
+    private final Function<Context, LanguageModule> jsonModuleFactory;
+
+    private final ScriptEngineProperties properties;
+
+    private final ScheduledExecutorService watchdog;
+
+    private final Semaphore permits;
+
+    private final Deque<ScriptContext> idleContexts = new ConcurrentLinkedDeque<>();
+
+    private final Cache<String, Source> sources;
+
+    private final Timer waitTimer;
+
+    private final Timer evalTimer;
+
+    private final Counter discardedCounter;
+
+    private final Counter evictedCounter;
+
+    private volatile boolean closed;
+
+    public ScriptContextPool(String lang, Function<Context, LanguageModule> jsonModuleFactory, ScriptEngineProperties properties,
+                             ScheduledExecutorService watchdog, MeterRegistry meterRegistry) {
+        this.lang = lang;
+        this.jsonModuleFactory = jsonModuleFactory;
+        this.properties = properties;
+        this.watchdog = watchdog;
+        this.permits = new Semaphore(Math.max(1, properties.getPoolSize()));
+        this.sources = Caffeine.newBuilder()
+                .maximumSize(properties.getCompiledCacheSize())
+                .build();
+        this.waitTimer = meterRegistry.timer(METRIC_PREFIX + "pool.wait", "lang", lang);
+        this.evalTimer = meterRegistry.timer(METRIC_PREFIX + "eval", "lang", lang);
+        this.discardedCounter = meterRegistry.counter(METRIC_PREFIX + "context.discarded", "lang", lang);
+        this.evictedCounter = meterRegistry.counter(METRIC_PREFIX + "context.evicted", "lang", lang);
+        meterRegistry.gauge(METRIC_PREFIX + "pool.idle", Tags.of("lang", lang), idleContexts, Deque::size);
+    }
+
+    /**
+     * Sources are compared by content, the engine reuses the code of an equal source across all contexts
+     */
+    public Source getSource(String script) {
+        return sources.get(script, k -> Source.create(lang, k));
+    }
+
+    /**
+     * @return the partition of the evaluations of an exchange, its root flow
+     */
+    public static String partitionOf(Exchange exchange) {
+        String flowId = exchange.getProperty(ExchangeHeaders.EXCHANGE_ROOT_FLOW_ID, exchange.getFromRouteId(), String.class);
+        return Objects.toString(flowId, "");
+    }
+
+    public <T> T execute(String partition, Function<ScriptContext, T> action) {
+        ScriptContext scriptContext = lease(partition);
+        boolean reusable = false;
+        ScheduledFuture<?> timeout = watchdog.schedule(scriptContext::interrupt, properties.getExecutionTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        long start = System.nanoTime();
+        try {
+            T result = action.apply(scriptContext);
+            reusable = true;
+            return result;
+        } catch (PolyglotException e) {
+            // errors raised by the script itself leave the context usable
+            reusable = e.isGuestException() && !e.isInterrupted() && !e.isCancelled() && !e.isResourceExhausted() && !e.isExit();
+            throw e;
+        } finally {
+            reusable &= timeout.cancel(false);
+            evalTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            release(scriptContext, reusable);
+        }
+    }
+
+    private ScriptContext lease(String partition) {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(properties.getLeaseTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new RuntimeCamelException(MessageFormat.format("No {0} script context available within {1}", lang, properties.getLeaseTimeout()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeCamelException(e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        for (ScriptContext scriptContext : idleContexts) {
+            if (scriptContext.partition.equals(partition) && idleContexts.removeFirstOccurrence(scriptContext)) {
+                return scriptContext;
+            }
+        }
+        try {
+            return new ScriptContext(lang, partition, jsonModuleFactory, properties.getStatementLimit());
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(ScriptContext scriptContext, boolean reusable) {
+        try {
+            if (reusable && !closed && scriptContext.reset()) {
+                // the most recently used context is the warmest one
+                idleContexts.offerFirst(scriptContext);
+                evictIdleContexts();
+                return;
+            }
+            discardedCounter.increment();
+            scriptContext.close();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Keep at most as many idle contexts as the pool size, closing the least recently used ones of any partition
+     */
+    private void evictIdleContexts() {
+        while (idleContexts.size() > Math.max(1, properties.getPoolSize())) {
+            ScriptContext scriptContext = idleContexts.pollLast();
+            if (scriptContext == null) {
+                return;
+            }
+            evictedCounter.increment();
+            scriptContext.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ScriptContext scriptContext;
+        while ((scriptContext = idleContexts.pollFirst()) != null) {
+            scriptContext.close();
+        }
+    }
+
+    public static class ScriptContext {
+
+        private final String partition;
+
+        @Getter
+        private final Context context;
+
+        @Getter
+        private final Value bindings;
+
+        @Getter
+        private final LanguageModule jsonModule;
+
+        private final Set<String> initialMemberKeys;
+
+        private ScriptContext(String lang, String partition, Function<Context, LanguageModule> jsonModuleFactory, long statementLimit) {
+            this.partition = partition;
+            this.context = LanguageHelper.newContext(lang, ResourceLimits.newBuilder()
+                    .statementLimit(statementLimit, null)
+                    .build());
+            try {
+                this.bindings = context.getBindings(lang);
+                this.jsonModule = jsonModuleFactory.apply(context);
+                jsonModule.init();
+                context.resetLimits();
+                this.initialMemberKeys = Set.copyOf(bindings.getMemberKeys());
+            } catch (RuntimeException e) {
+                context.close();
+                throw e;
+            }
+        }
+
+        private void interrupt() {
+            try {
+                context.interrupt(INTERRUPT_TIMEOUT);
+            } catch (TimeoutException e) {
+                log.warn("Script did not stop within {} after the execution timeout, cancelling its context", INTERRUPT_TIMEOUT);
+                context.close(true);
+            } catch (RuntimeException e) {
+                log.debug("Interrupting a script context failed: {}", e.getMessage());
+            }
+        }
+
+        private boolean reset() {
+            try {
+                for (String key : new ArrayList<>(bindings.getMemberKeys())) {
+                    if (!initialMemberKeys.contains(key) && !bindings.removeMember(key)) {
+                        return false;
+                    }
+                }
+                context.resetLimits();
+                return true;
+            } catch (RuntimeException e) {
+                // e.g. global let, const and var declarations of JavaScript cannot be removed
+                return false;
+            }
+        }
+
+        private void close() {
+            try {
+                context.close(true);
+            } catch (RuntimeException e) {
+                log.debug("Closing a script context failed: {}", e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.milesight.beaveriot.rule.components.code.language;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the pooled script contexts of code nodes
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "camel.rule.script")
+public class ScriptEngineProperties {
+
+    /**
+     * Maximum number of contexts per polyglot language, evaluations beyond it wait for a context
+     */
+    private int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Maximum time an evaluation waits for a context
+     */
+    private Duration leaseTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Maximum time of a single evaluation, the evaluation is interrupted afterwards
+     */
+    private Duration executionTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Maximum number of statements of a single evaluation
+     */
+    private long statementLimit = 2000;
+
+    /**
+     * Maximum number of parsed sources and compiled MVEL expressions kept per language
+     */
+    private long compiledCacheSize = 1000;
+
+}
@@ -0,0 +1,85 @@
+package com.milesight.beaveriot.rule.components.code.language;
+
+import com.milesight.beaveriot.rule.components.code.language.module.JavaScriptJsonModule;
+import com.milesight.beaveriot.rule.constants.ExchangeHeaders;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScriptContextPoolTest {
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ScriptEngineProperties properties = new ScriptEngineProperties();
+
+    private ScriptContextPool pool;
+
+    @BeforeEach
+    void setUp() {
+        properties.setPoolSize(2);
+        pool = new ScriptContextPool(CustomizedJavaScriptExpression.LANG_ID, JavaScriptJsonModule::new, properties, watchdog, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+        watchdog.shutdownNow();
+    }
+
+    @Test
+    void shouldNotLeakBuiltInChangesAcrossPartitions() {
+        eval("flow-a", "Array.prototype.owner = 'a'; JSON.parse = function () { return 'a'; }; 1");
+
+        assertThat(eval("flow-b", "typeof [].owner")).isEqualTo("undefined");
+        assertThat(eval("flow-b", "JSON.parse('1')")).isEqualTo(1);
+        // the context of the first partition is reused by it only
+        assertThat(eval("flow-a", "[].owner")).isEqualTo("a");
+    }
+
+    @Test
+    void shouldRemoveAddedBindingsWithinAPartition() {
+        pool.execute("flow-a", scriptContext -> {
+            scriptContext.getBindings().putMember("secret", "a");
+            return scriptContext.getContext().eval("js", "globalThis.leaked = secret");
+        });
+
+        assertThat(eval("flow-a", "typeof secret + ',' + typeof leaked")).isEqualTo("undefined,undefined");
+        assertThat(meterRegistry.counter("rule.script.context.discarded", "lang", "js").count()).isZero();
+    }
+
+    @Test
+    void shouldEvictTheLeastRecentlyUsedContextBeyondThePoolSize() {
+        eval("flow-a", "Array.prototype.owner = 'a'; 1");
+        eval("flow-b", "Array.prototype.owner = 'b'; 1");
+        eval("flow-c", "Array.prototype.owner = 'c'; 1");
+
+        assertThat(meterRegistry.counter("rule.script.context.evicted", "lang", "js").count()).isEqualTo(1);
+        assertThat(eval("flow-a", "typeof [].owner")).isEqualTo("undefined");
+        assertThat(eval("flow-c", "[].owner")).isEqualTo("c");
+    }
+
+    @Test
+    void shouldPartitionByTheRootFlowOfAnExchange() {
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        assertThat(ScriptContextPool.partitionOf(exchange)).isEmpty();
+
+        exchange.setProperty(ExchangeHeaders.EXCHANGE_ROOT_FLOW_ID, "1001");
+        assertThat(ScriptContextPool.partitionOf(exchange)).isEqualTo("1001");
+    }
+
+    private Object eval(String partition, String script) {
+        return pool.execute(partition, scriptContext -> scriptContext.getContext().eval(pool.getSource(script)).as(Object.class));
+    }
+
+}
@@ -14,6 +14,7 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.util.ObjectUtils;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -60,6 +61,30 @@ public class RuleProperties implements SmartInitializingSingleton, ApplicationCo
      */
     private String traceNodePrefix = FLOW_ID_PREFIX;
 
+    /**
+     * The trace mode of flows without their own mode. Default is FULL
+     */
+    private TraceMode traceMode = TraceMode.FULL;
+
+    /**
+     * The trace modes of single flows, the key is the flow id
+     */
+    private Map<String, TraceMode> traceFlowModes = new HashMap<>();
+
+    /**
+     * In SAMPLED mode, one of every N executions is fully traced, the others are traced as ERRORS_ONLY
+     */
+    private int traceSampleRate = 10;
+
+    /**
+     * The maximum length of the input and output of a traced node, longer values are truncated
+     */
+    private int traceBodyMaxLength = 100000;
+
+    public TraceMode getTraceMode(String flowId) {
+        return traceFlowModes.isEmpty() ? traceMode : traceFlowModes.getOrDefault(flowId, traceMode);
+    }
+
     public List<String> getComponentNames() {
         if (ObjectUtils.isEmpty(components)) {
             return List.of();
@@ -99,4 +124,20 @@ public class RuleProperties implements SmartInitializingSingleton, ApplicationCo
     public enum TraceOutputMode {
         LOGGING, EVENT, ALL
     }
+
+    public enum TraceMode {
+        /**
+         * Executions are not traced
+         */
+        OFF,
+        /**
+         * Nodes are recorded without input and output, the trace is only published when the execution fails
+         */
+        ERRORS_ONLY,
+        /**
+         * Sampled executions are traced as FULL, the others as ERRORS_ONLY
+         */
+        SAMPLED,
+        FULL
+    }
 }
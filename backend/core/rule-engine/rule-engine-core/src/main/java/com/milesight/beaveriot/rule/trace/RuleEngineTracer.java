@@ -17,6 +17,8 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * @author leon
  */
@@ -44,8 +46,19 @@ public class RuleEngineTracer extends DefaultTracer {
 
         FlowTraceInfo flowTraceInfo = (FlowTraceInfo) exchange.getProperty(ExchangeHeaders.TRACE_RESPONSE);
         if (flowTraceInfo == null) {
+            // nothing consumes the trace, or the flow is not traced
+            if (!shouldTraceByEvent()) {
+                return;
+            }
+            RuleProperties.TraceMode traceMode = ruleProperties.getTraceMode(exchange.getFromRouteId());
+            if (traceMode == RuleProperties.TraceMode.OFF) {
+                return;
+            }
+
             flowTraceInfo = new FlowTraceInfo();
             flowTraceInfo.setFlowId(exchange.getFromRouteId());
+            flowTraceInfo.setErrorsOnly(traceMode == RuleProperties.TraceMode.ERRORS_ONLY
+                    || (traceMode == RuleProperties.TraceMode.SAMPLED && !isSampled()));
             exchange.setProperty(ExchangeHeaders.TRACE_RESPONSE, flowTraceInfo);
         }
 
@@ -53,11 +66,13 @@ public class RuleEngineTracer extends DefaultTracer {
         if (route instanceof RouteDefinition routeDefinition) {
             FromDefinition input = routeDefinition.getInput();
             NodeTraceInfo nodeTraceInfo = createNodeTraceInfo(input.getId(), input.getLabel(), routeDefinition.getDescriptionText(), exchange);
-            nodeTraceInfo.setOutput(RuleNodeLogVariablesSupport.getExchangeOutputBody(exchange, nodeTraceInfo.getNodeId()));
             if (exchange.getException() != null) {
                 nodeTraceInfo.causeException(exchange.getException());
             }
-            flowTraceInfo.getTraceInfos().add(nodeTraceInfo);
+            if (shouldCaptureBody(flowTraceInfo, nodeTraceInfo)) {
+                nodeTraceInfo.setOutput(RuleNodeLogVariablesSupport.getExchangeOutputBody(exchange, nodeTraceInfo.getNodeId(), ruleProperties.getTraceBodyMaxLength()));
+            }
+            flowTraceInfo.addTraceInfo(nodeTraceInfo);
         }
     }
 
@@ -70,7 +85,7 @@ public class RuleEngineTracer extends DefaultTracer {
         if (traceContext != null && shouldTraceNodeByPrefix(node)) {
             try {
                 NodeTraceInfo nodeTraceResponse = createNodeTraceInfo(node.getId(), node.getLabel(), node.getDescriptionText(), exchange);
-                traceContext.getTraceInfos().add(nodeTraceResponse);
+                traceContext.addTraceInfo(nodeTraceResponse);
             } catch (Exception ex) {
                 log.error("Before trace node log exceptions:", ex);
             }
@@ -96,17 +111,20 @@ public class RuleEngineTracer extends DefaultTracer {
         }
 
         FlowTraceInfo traceContext = (FlowTraceInfo) exchange.getProperty(ExchangeHeaders.TRACE_RESPONSE);
-        if (traceContext != null) {
+        if (traceContext != null && shouldTraceNodeByPrefix(node)) {
             try {
                 NodeTraceInfo traceInfo = traceContext.findTraceInfo(RuleFlowIdGenerator.removeNamespacedId(exchange.getFromRouteId(), node.getId()), exchange.getIn().getMessageId());
                 if (traceInfo != null) {
-                    traceInfo.setInput(RuleNodeLogVariablesSupport.getExchangeInputBody(exchange, traceInfo.getNodeId()));
-                    traceInfo.setOutput(RuleNodeLogVariablesSupport.getExchangeOutputBody(exchange, traceInfo.getNodeId()));
                     traceInfo.setTimeCost(System.currentTimeMillis() - traceInfo.getStartTime());
                     traceInfo.setParentTraceId(exchange.getIn().getHeader(ExchangeHeaders.EXCHANGE_LATEST_TRACE_ID, String.class));
                     if (exchange.getException() != null) {
                         traceInfo.causeException(exchange.getException());
                     }
+                    if (shouldCaptureBody(traceContext, traceInfo)) {
+                        int maxLength = ruleProperties.getTraceBodyMaxLength();
+                        traceInfo.setInput(RuleNodeLogVariablesSupport.getExchangeInputBody(exchange, traceInfo.getNodeId(), maxLength));
+                        traceInfo.setOutput(RuleNodeLogVariablesSupport.getExchangeOutputBody(exchange, traceInfo.getNodeId(), maxLength));
+                    }
                 }
             } catch (Exception ex) {
                 log.error("After trace node log exceptions:", ex);
@@ -132,7 +150,7 @@ public class RuleEngineTracer extends DefaultTracer {
             }
             // if trace for test, do not publish event
             Boolean traceForTest = exchange.getProperty(ExchangeHeaders.TRACE_FOR_TEST, false, boolean.class);
-            if (Boolean.FALSE.equals(traceForTest)) {
+            if (Boolean.FALSE.equals(traceForTest) && (!flowTraceResponse.isErrorsOnly() || flowTraceResponse.hasError())) {
                 applicationEventPublisher.publishEvent(flowTraceResponse);
             }
         }
@@ -155,6 +173,22 @@ public class RuleEngineTracer extends DefaultTracer {
         }
     }
 
+    private boolean isSampled() {
+        int sampleRate = ruleProperties.getTraceSampleRate();
+        return sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    /**
+     * The input and output are only captured for failed nodes of executions traced for errors
+     */
+    private boolean shouldCaptureBody(FlowTraceInfo flowTraceInfo, NodeTraceInfo nodeTraceInfo) {
+        return !flowTraceInfo.isErrorsOnly() || nodeTraceInfo.getStatus() == ExecutionStatus.ERROR;
+    }
+
+    private boolean shouldTraceByEvent() {
+        return ruleProperties.getTraceOutputMode() != RuleProperties.TraceOutputMode.LOGGING;
+    }
+
     private boolean shouldTraceByLogging() {
         return ruleProperties.getTraceOutputMode() == RuleProperties.TraceOutputMode.ALL || ruleProperties.getTraceOutputMode() == RuleProperties.TraceOutputMode.LOGGING;
     }
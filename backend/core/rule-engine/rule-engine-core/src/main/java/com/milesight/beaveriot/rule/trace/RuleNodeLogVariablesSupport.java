@@ -15,6 +15,7 @@ import org.springframework.expression.spel.ast.PropertyOrFieldReference;
 import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.util.ObjectUtils;
 
+import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -27,8 +28,8 @@ import static com.milesight.beaveriot.rule.constants.ExchangeHeaders.EXCHANGE_CU
 @Slf4j
 public class RuleNodeLogVariablesSupport {
 
-    private static final long TRACER_BODY_MAX_LENGTH = 100000;
-    private static final String TRACER_BODY_EXCEED_MAX_WARNING = "Tracer body exceed maximum length " + TRACER_BODY_MAX_LENGTH;
+    private static final int TRACER_BODY_MAX_LENGTH = 100000;
+    private static final String TRACER_BODY_TRUNCATED_SUFFIX = "...(truncated, total length {0})";
     private static final Map<String, Map<String, LogVariables>> RULE_NODE_LOG_VARIABLES_CACHE = new ConcurrentHashMap<>();
 
     private RuleNodeLogVariablesSupport() {
@@ -51,8 +52,12 @@ public class RuleNodeLogVariablesSupport {
     }
 
     public static String getExchangeInputBody(Exchange exchange, String nodeId) {
+        return getExchangeInputBody(exchange, nodeId, TRACER_BODY_MAX_LENGTH);
+    }
+
+    public static String getExchangeInputBody(Exchange exchange, String nodeId, int maxLength) {
         if (ExchangeHeaders.containsMapProperty(exchange, EXCHANGE_CUSTOM_INPUT_LOG_VARIABLES, nodeId)) {
-            return toJSON(ExchangeHeaders.getMapProperty(exchange, EXCHANGE_CUSTOM_INPUT_LOG_VARIABLES, nodeId));
+            return toJSON(ExchangeHeaders.getMapProperty(exchange, EXCHANGE_CUSTOM_INPUT_LOG_VARIABLES, nodeId), maxLength);
         }
 
         try {
@@ -78,7 +83,7 @@ public class RuleNodeLogVariablesSupport {
                     log.warn("Unsupported SpEL node type: {}", spelNodeChild.getClass().getSimpleName());
                 }
             }
-            return toJSON(SpELExpressionHelper.resolveExpression(exchange, inputVariables));
+            return toJSON(SpELExpressionHelper.resolveExpression(exchange, inputVariables), maxLength);
         } catch (Exception ex) {
             return  causeException(ex);
         }
@@ -105,8 +110,12 @@ public class RuleNodeLogVariablesSupport {
 
 
     public static String getExchangeOutputBody(Exchange exchange, String nodeId) {
+        return getExchangeOutputBody(exchange, nodeId, TRACER_BODY_MAX_LENGTH);
+    }
+
+    public static String getExchangeOutputBody(Exchange exchange, String nodeId, int maxLength) {
         if (ExchangeHeaders.containsMapProperty(exchange, EXCHANGE_CUSTOM_OUTPUT_LOG_VARIABLES, nodeId)) {
-            return toJSON(ExchangeHeaders.getMapProperty(exchange, EXCHANGE_CUSTOM_OUTPUT_LOG_VARIABLES, nodeId));
+            return toJSON(ExchangeHeaders.getMapProperty(exchange, EXCHANGE_CUSTOM_OUTPUT_LOG_VARIABLES, nodeId), maxLength);
         }
 
         try {
@@ -121,9 +130,9 @@ public class RuleNodeLogVariablesSupport {
                     Optional<VariableNamed> definitionNamedOptional = logVariables.findOutputVariable(entry.getKey());
                     definitionNamedOptional.ifPresent(definitionNamed -> extractBody.put(definitionNamed.getName(), entry.getValue()));
                 }
-                return toJSON(extractBody);
+                return toJSON(extractBody, maxLength);
             } else {
-                return toJSON(body);
+                return toJSON(body, maxLength);
             }
         } catch (Exception ex) {
             return causeException(ex);
@@ -131,12 +140,19 @@ public class RuleNodeLogVariablesSupport {
     }
 
     protected static String toJSON(Object extractBody) {
+        return toJSON(extractBody, TRACER_BODY_MAX_LENGTH);
+    }
+
+    protected static String toJSON(Object extractBody, int maxLength) {
         try {
             if (extractBody == null) {
                 return null;
             }
             String bodyStr = JsonUtils.toJSON(extractBody);
-            return !ObjectUtils.isEmpty(bodyStr) && bodyStr.length() > TRACER_BODY_MAX_LENGTH ? TRACER_BODY_EXCEED_MAX_WARNING : bodyStr;
+            if (ObjectUtils.isEmpty(bodyStr) || bodyStr.length() <= maxLength) {
+                return bodyStr;
+            }
+            return bodyStr.substring(0, Math.max(0, maxLength)) + MessageFormat.format(TRACER_BODY_TRUNCATED_SUFFIX, String.valueOf(bodyStr.length()));
         } catch (Exception ex) {
             return causeException(ex);
         }
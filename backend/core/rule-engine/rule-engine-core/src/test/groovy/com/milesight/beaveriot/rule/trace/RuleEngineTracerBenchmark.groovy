@@ -0,0 +1,86 @@
+package com.milesight.beaveriot.rule.trace
+
+import com.milesight.beaveriot.rule.configuration.RuleProperties
+import com.milesight.beaveriot.rule.constants.ExchangeHeaders
+import groovy.transform.CompileStatic
+import org.apache.camel.NamedNode
+import org.apache.camel.impl.DefaultCamelContext
+import org.apache.camel.model.RouteDefinition
+import org.apache.camel.support.DefaultExchange
+import org.springframework.context.ApplicationEventPublisher
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+
+/**
+ * Tracing cost of an execution of a flow of ten nodes per trace mode, compared with the execution without tracer.
+ * The nodes have an input and output snapshot of about 1 KB each. Not part of the default test run, start it
+ * with {@code mvn test -Dtest=RuleEngineTracerBenchmark}.
+ */
+class RuleEngineTracerBenchmark extends Specification {
+
+    static final int NODES = 10
+
+    static final int WARM_UP = 20_000
+
+    static final int EXECUTIONS = 100_000
+
+    DefaultCamelContext camelContext = new DefaultCamelContext()
+
+    def "tracing cost by trace mode"() {
+        given:
+        def route = RuleEngineTracerTest.route()
+        def nodes = (0..<NODES).collect { RuleEngineTracerTest.node(it) as NamedNode }
+        def snapshots = (0..<NODES).collectEntries { ["node" + it, [payload: "v" * 1000]] }
+        println String.format("%12s %12s %14s %10s", "mode", "ns/exec", "bytes/exec", "published")
+
+        expect:
+        ([null] + RuleProperties.TraceMode.values().toList()).each { mode ->
+            def published = new long[1]
+            RuleEngineTracer tracer = null
+            if (mode != null) {
+                def ruleProperties = new RuleProperties()
+                ruleProperties.traceMode = mode
+                tracer = new RuleEngineTracer({ published[0]++ } as ApplicationEventPublisher, ruleProperties)
+                tracer.camelContext = camelContext
+            }
+
+            execute(tracer, route, nodes, snapshots, WARM_UP)
+            published[0] = 0
+            long allocated = allocatedBytes()
+            long start = System.nanoTime()
+            execute(tracer, route, nodes, snapshots, EXECUTIONS)
+            long nanos = System.nanoTime() - start
+            allocated = allocatedBytes() - allocated
+
+            println String.format("%12s %12d %14d %10d", mode ?: "no tracer", nanos.intdiv(EXECUTIONS), allocated.intdiv(EXECUTIONS), published[0])
+            assert mode in [RuleProperties.TraceMode.FULL, RuleProperties.TraceMode.SAMPLED] || published[0] == 0
+        }
+    }
+
+    @CompileStatic
+    private void execute(RuleEngineTracer tracer, RouteDefinition route, List<NamedNode> nodes, Map snapshots, int executions) {
+        for (int i = 0; i < executions; i++) {
+            DefaultExchange exchange = new DefaultExchange(camelContext)
+            exchange.exchangeExtension.fromRouteId = RuleEngineTracerTest.FLOW_ID
+            exchange.in.body = snapshots
+            exchange.setProperty(ExchangeHeaders.EXCHANGE_CUSTOM_INPUT_LOG_VARIABLES, snapshots)
+            exchange.setProperty(ExchangeHeaders.EXCHANGE_CUSTOM_OUTPUT_LOG_VARIABLES, snapshots)
+            if (tracer == null) {
+                continue
+            }
+
+            tracer.traceBeforeRoute(route, exchange)
+            for (NamedNode node : nodes) {
+                tracer.traceBeforeNode(node, exchange)
+                tracer.traceAfterNode(node, exchange)
+            }
+            tracer.traceAfterRoute(route, exchange)
+        }
+    }
+
+    private static long allocatedBytes() {
+        def threadMXBean = ManagementFactory.threadMXBean as com.sun.management.ThreadMXBean
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().id)
+    }
+}
@@ -0,0 +1,184 @@
+package com.milesight.beaveriot.rule.trace
+
+import com.milesight.beaveriot.rule.configuration.RuleProperties
+import com.milesight.beaveriot.rule.constants.ExchangeHeaders
+import com.milesight.beaveriot.rule.enums.ExecutionStatus
+import com.milesight.beaveriot.rule.model.trace.FlowTraceInfo
+import org.apache.camel.Exchange
+import org.apache.camel.impl.DefaultCamelContext
+import org.apache.camel.model.LogDefinition
+import org.apache.camel.model.ProcessorDefinition
+import org.apache.camel.model.RouteDefinition
+import org.apache.camel.support.DefaultExchange
+import org.springframework.context.ApplicationEventPublisher
+import spock.lang.Specification
+
+class RuleEngineTracerTest extends Specification {
+
+    static final String FLOW_ID = "1001"
+
+    static final int NODES = 3
+
+    DefaultCamelContext camelContext = new DefaultCamelContext()
+
+    RuleProperties ruleProperties = new RuleProperties()
+
+    List<Object> published = []
+
+    RuleEngineTracer tracer = new RuleEngineTracer({ published << it } as ApplicationEventPublisher, ruleProperties)
+
+    def setup() {
+        tracer.camelContext = camelContext
+    }
+
+    def "should trace an execution by the mode of its flow"() {
+        given:
+        ruleProperties.traceMode = defaultMode
+        ruleProperties.traceFlowModes = flowModes
+
+        when:
+        def trace = run(exchange())
+
+        then:
+        (trace == null) == (mode == RuleProperties.TraceMode.OFF)
+        trace == null || trace.errorsOnly == (mode == RuleProperties.TraceMode.ERRORS_ONLY)
+        trace == null || trace.traceInfos.size() == NODES + 1
+        published.size() == (mode == RuleProperties.TraceMode.FULL ? 1 : 0)
+
+        where:
+        defaultMode                          | flowModes                                        || mode
+        RuleProperties.TraceMode.FULL        | [:]                                              || RuleProperties.TraceMode.FULL
+        RuleProperties.TraceMode.OFF         | [:]                                              || RuleProperties.TraceMode.OFF
+        RuleProperties.TraceMode.ERRORS_ONLY | [:]                                              || RuleProperties.TraceMode.ERRORS_ONLY
+        RuleProperties.TraceMode.FULL        | [(FLOW_ID): RuleProperties.TraceMode.OFF]        || RuleProperties.TraceMode.OFF
+        RuleProperties.TraceMode.OFF         | [(FLOW_ID): RuleProperties.TraceMode.FULL]       || RuleProperties.TraceMode.FULL
+        RuleProperties.TraceMode.OFF         | ["2002": RuleProperties.TraceMode.FULL]          || RuleProperties.TraceMode.OFF
+    }
+
+    def "should trace sampled executions in full and the others for errors only"() {
+        given:
+        ruleProperties.traceMode = RuleProperties.TraceMode.SAMPLED
+        ruleProperties.traceSampleRate = sampleRate
+
+        when:
+        def trace = run(exchange())
+
+        then:
+        trace.errorsOnly == errorsOnly
+
+        where:
+        sampleRate        || errorsOnly
+        1                 || false
+        Integer.MAX_VALUE || true
+    }
+
+    def "should not build a trace nothing consumes"() {
+        given:
+        ruleProperties.traceOutputMode = RuleProperties.TraceOutputMode.LOGGING
+
+        when:
+        def trace = run(exchange())
+
+        then:
+        trace == null
+        published.isEmpty()
+    }
+
+    def "should only keep the input and output of failed nodes of executions traced for errors"() {
+        given:
+        ruleProperties.traceMode = RuleProperties.TraceMode.ERRORS_ONLY
+        def exchange = exchange()
+
+        when:
+        def trace = run(exchange, new IllegalStateException("boom"))
+
+        then:
+        trace.status == ExecutionStatus.ERROR
+        published == [trace]
+        with(trace.findTraceInfo("node" + (NODES - 1), exchange.in.messageId)) {
+            status == ExecutionStatus.ERROR
+            input == '"in"'
+            output == '"out"'
+        }
+        trace.findTraceInfo("node0", exchange.in.messageId).output == null
+    }
+
+    def "should not publish executions traced for errors that succeeded"() {
+        given:
+        ruleProperties.traceMode = RuleProperties.TraceMode.ERRORS_ONLY
+
+        when:
+        def trace = run(exchange())
+
+        then:
+        trace.traceInfos.every { it.input == null && it.output == null }
+        published.isEmpty()
+    }
+
+    def "should truncate snapshots longer than the maximum length"() {
+        given:
+        ruleProperties.traceBodyMaxLength = 10
+        def exchange = exchange()
+        def output = "x" * 100
+        exchange.setProperty(ExchangeHeaders.EXCHANGE_CUSTOM_OUTPUT_LOG_VARIABLES, ["node0": output])
+
+        when:
+        def trace = run(exchange)
+
+        then:
+        trace.findTraceInfo("node0", exchange.in.messageId).output == '"' + "x" * 9 + '...(truncated, total length 102)'
+        trace.findTraceInfo("node1", exchange.in.messageId).input == '"in"'
+    }
+
+    def "should keep snapshots within the maximum length"() {
+        expect:
+        RuleNodeLogVariablesSupport.toJSON(body, maxLength) == expected
+
+        where:
+        body         | maxLength || expected
+        null         | 10        || null
+        "abc"        | 5         || '"abc"'
+        [a: 1]       | 7         || '{"a":1}'
+        [a: 1]       | 6         || '{"a":1...(truncated, total length 7)'
+        "abc"        | 0         || '...(truncated, total length 5)'
+    }
+
+    private FlowTraceInfo run(Exchange exchange, Exception failure = null) {
+        def route = route()
+        tracer.traceBeforeRoute(route, exchange)
+        for (int i = 0; i < NODES; i++) {
+            def node = node(i)
+            tracer.traceBeforeNode(node, exchange)
+            if (failure != null && i == NODES - 1) {
+                exchange.exception = failure
+            }
+            tracer.traceAfterNode(node, exchange)
+        }
+        tracer.traceAfterRoute(route, exchange)
+        return exchange.getProperty(ExchangeHeaders.TRACE_RESPONSE, FlowTraceInfo)
+    }
+
+    private Exchange exchange() {
+        def exchange = new DefaultExchange(camelContext)
+        exchange.exchangeExtension.fromRouteId = FLOW_ID
+        exchange.in.body = [temperature: 20]
+        def inputs = (0..<NODES).collectEntries { ["node" + it, "in"] }
+        def outputs = (0..<NODES).collectEntries { ["node" + it, "out"] }
+        exchange.setProperty(ExchangeHeaders.EXCHANGE_CUSTOM_INPUT_LOG_VARIABLES, inputs)
+        exchange.setProperty(ExchangeHeaders.EXCHANGE_CUSTOM_OUTPUT_LOG_VARIABLES, outputs)
+        return exchange
+    }
+
+    static RouteDefinition route() {
+        def route = new RouteDefinition("direct:start")
+        route.routeId(FLOW_ID)
+        route.input.id = "flow." + FLOW_ID + ".start"
+        return route
+    }
+
+    static ProcessorDefinition node(int index) {
+        def node = new LogDefinition("node " + index)
+        node.id = "flow." + FLOW_ID + ".node" + index
+        return node
+    }
+}
@@ -0,0 +1,45 @@
+package com.milesight.beaveriot.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Transaction aware decorator that keeps the batch operations of the target visible,
+ * batch evicts are deferred to the commit like single evicts.
+ */
+public class TransactionAwareBatchableCacheDecorator extends TransactionAwareCacheDecorator implements BatchableCache {
+
+    private final BatchableCache batchableTarget;
+
+    public <T extends Cache & BatchableCache> TransactionAwareBatchableCacheDecorator(T targetCache) {
+        super(targetCache);
+        this.batchableTarget = targetCache;
+    }
+
+    @Override
+    public List<Object> multiGet(Object[] keys) {
+        return batchableTarget.multiGet(keys);
+    }
+
+    /**
+     * @return the number of evicted keys, 0 if the evict is deferred to the commit
+     */
+    @Override
+    public Long multiEvict(Object[] keys) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    batchableTarget.multiEvict(keys);
+                }
+            });
+            return 0L;
+        }
+
+        return batchableTarget.multiEvict(keys);
+    }
+}
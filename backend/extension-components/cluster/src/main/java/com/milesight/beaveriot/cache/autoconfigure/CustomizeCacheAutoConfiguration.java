@@ -1,6 +1,10 @@
 package com.milesight.beaveriot.cache.autoconfigure;
 
 import com.milesight.beaveriot.cache.redis.CustomizeRedisCacheManager;
+import com.milesight.beaveriot.cache.redis.RedisCacheInvalidationTransport;
+import com.milesight.beaveriot.cache.twolevel.NearCacheCoordinator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
@@ -14,6 +18,7 @@ import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.interceptor.BatchCacheAspect;
+import org.redisson.api.RedissonClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -38,9 +43,11 @@ public class CustomizeCacheAutoConfiguration {
     @ConditionalOnExpression("!'${spring.data.redis.host:}'.isEmpty()")
     CustomizeRedisCacheManager cacheManger(CacheProperties cacheProperties,CustomizeCacheProperties customizeCacheProperties,
                                   ObjectProvider<org.springframework.data.redis.cache.RedisCacheConfiguration> redisCacheConfiguration,
-                                  RedisConnectionFactory redisConnectionFactory, ResourceLoader resourceLoader) {
+                                  RedisConnectionFactory redisConnectionFactory, ResourceLoader resourceLoader,
+                                  ObjectProvider<NearCacheCoordinator> nearCacheCoordinator) {
         CustomizeRedisCacheManager.CustomizeRedisCacheManagerBuilder builder = CustomizeRedisCacheManager.customizeBuilder(redisConnectionFactory, customizeCacheProperties)
                 .transactionAware(true)
+                .nearCache(nearCacheCoordinator.getIfAvailable())
                 .cacheDefaults(
                         determineConfiguration(cacheProperties, customizeCacheProperties, redisCacheConfiguration, resourceLoader.getClassLoader()));
         List<String> cacheNames = cacheProperties.getCacheNames();
@@ -53,6 +60,14 @@ public class CustomizeCacheAutoConfiguration {
         return builder.build();
     }
 
+    @Bean
+    @ConditionalOnExpression("!'${spring.data.redis.host:}'.isEmpty() && ${spring.cache.near-cache.enabled:false}")
+    NearCacheCoordinator nearCacheCoordinator(CustomizeCacheProperties customizeCacheProperties, RedissonClient redissonClient,
+                                              ObjectProvider<MeterRegistry> meterRegistry) {
+        return new NearCacheCoordinator(customizeCacheProperties.getNearCache(), new RedisCacheInvalidationTransport(redissonClient),
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
     private org.springframework.data.redis.cache.RedisCacheConfiguration determineConfiguration(
             CacheProperties cacheProperties, CustomizeCacheProperties customizeCacheProperties,
             ObjectProvider<org.springframework.data.redis.cache.RedisCacheConfiguration> redisCacheConfiguration,
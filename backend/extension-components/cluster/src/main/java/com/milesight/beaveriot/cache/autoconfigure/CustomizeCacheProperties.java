@@ -7,7 +7,9 @@ import org.springframework.lang.Nullable;
 
 import java.time.Duration;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author leon
@@ -25,6 +27,11 @@ public class CustomizeCacheProperties {
 
     private Specs specs = new Specs();
 
+    /**
+     * Node local cache in front of the Redis cache
+     */
+    private NearCache nearCache = new NearCache();
+
 
     @Data
     public static class Specs {
@@ -69,4 +76,35 @@ public class CustomizeCacheProperties {
 
     }
 
+    @Data
+    public static class NearCache {
+
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of entries kept by each near cache
+         */
+        private long maximumSize = 10000;
+
+        /**
+         * Expiration time of near cache entries, keep it shorter than the TTL of the Redis cache
+         */
+        private Duration timeToLive = Duration.ofMinutes(5);
+
+        /**
+         * Caches with a near cache, all caches if empty. Support prefix matching, for example: demo:key1:*
+         */
+        private Set<String> cacheNames = new LinkedHashSet<>();
+
+        public boolean matches(String cacheName) {
+            if (cacheNames.isEmpty()) {
+                return true;
+            }
+
+            return cacheNames.stream().map(Specs::unwrapPrefixAndSubfix).anyMatch(name -> name.endsWith(StringConstant.STAR)
+                    ? cacheName.startsWith(name.substring(0, name.length() - 1))
+                    : cacheName.equals(name));
+        }
+    }
+
 }
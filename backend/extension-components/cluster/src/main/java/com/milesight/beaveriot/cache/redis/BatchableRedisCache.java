@@ -37,6 +37,13 @@ public class BatchableRedisCache extends RedisCache implements BatchableCache {
         }
     }
 
+    /**
+     * Key of the entry in Redis, including the cache prefix
+     */
+    public String cacheKey(Object key) {
+        return createCacheKey(key);
+    }
+
     private byte[][] serializeCacheKeys(Object[] keys) {
         return Arrays.stream(keys).map(key->serializeCacheKey(createCacheKey(key))).toArray(byte[][]::new);
     }
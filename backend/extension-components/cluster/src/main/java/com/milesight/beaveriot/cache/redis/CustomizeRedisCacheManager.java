@@ -1,6 +1,10 @@
 package com.milesight.beaveriot.cache.redis;
 
+import com.milesight.beaveriot.cache.TransactionAwareBatchableCacheDecorator;
 import com.milesight.beaveriot.cache.autoconfigure.CustomizeCacheProperties;
+import com.milesight.beaveriot.cache.twolevel.NearCacheCoordinator;
+import com.milesight.beaveriot.cache.twolevel.TwoLevelCache;
+import org.springframework.cache.Cache;
 import org.springframework.data.redis.cache.*;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.lang.Nullable;
@@ -16,10 +20,18 @@ public class CustomizeRedisCacheManager extends RedisCacheManager {
 
     private final RedisConnectionFactory redisConnectionFactory;
 
+    @Nullable
+    private final NearCacheCoordinator nearCacheCoordinator;
+
     public CustomizeRedisCacheManager(RedisConnectionFactory redisConnectionFactory, RedisCacheWriter redisCacheManager, RedisCacheConfiguration redisCacheConfiguration, Map<String, RedisCacheConfiguration> initialCacheConfiguration, boolean allowInFlightCacheCreation , CustomizeCacheProperties.Specs redisConfig) {
+        this(redisConnectionFactory, redisCacheManager, redisCacheConfiguration, initialCacheConfiguration, allowInFlightCacheCreation, redisConfig, null);
+    }
+
+    public CustomizeRedisCacheManager(RedisConnectionFactory redisConnectionFactory, RedisCacheWriter redisCacheManager, RedisCacheConfiguration redisCacheConfiguration, Map<String, RedisCacheConfiguration> initialCacheConfiguration, boolean allowInFlightCacheCreation , CustomizeCacheProperties.Specs redisConfig, @Nullable NearCacheCoordinator nearCacheCoordinator) {
         super(redisCacheManager, redisCacheConfiguration,initialCacheConfiguration,allowInFlightCacheCreation);
         this.redisConfig = redisConfig;
         this.redisConnectionFactory = redisConnectionFactory;
+        this.nearCacheCoordinator = nearCacheCoordinator;
     }
     
     @Override
@@ -33,6 +45,17 @@ public class CustomizeRedisCacheManager extends RedisCacheManager {
         return new BatchableRedisCache(redisConnectionFactory, name, getCacheWriter(), resolveCacheConfiguration(cacheConfig));
     }
 
+    @Override
+    protected Cache decorateCache(Cache cache) {
+        if (nearCacheCoordinator == null || !(cache instanceof BatchableRedisCache redisCache) || !nearCacheCoordinator.isEnabledFor(cache.getName())) {
+            return super.decorateCache(cache);
+        }
+
+        TwoLevelCache twoLevelCache = nearCacheCoordinator.create(cache.getName(), redisCache, redisCache::cacheKey,
+                redisConfig == null ? null : redisConfig.getMatchTimeToLive(cache.getName()));
+        return isTransactionAware() ? new TransactionAwareBatchableCacheDecorator(twoLevelCache) : twoLevelCache;
+    }
+
     private RedisCacheConfiguration resolveCacheConfiguration(@Nullable RedisCacheConfiguration cacheConfiguration) {
         return cacheConfiguration != null ? cacheConfiguration : getDefaultCacheConfiguration();
     }
@@ -65,6 +88,8 @@ public class CustomizeRedisCacheManager extends RedisCacheManager {
 
         private @Nullable RedisCacheWriter cacheWriter;
 
+        private @Nullable NearCacheCoordinator nearCacheCoordinator;
+
         private CustomizeRedisCacheManagerBuilder(RedisConnectionFactory connectionFactory, RedisCacheWriter cacheWriter, CustomizeCacheProperties redisConfig) {
             this.cacheWriter = cacheWriter;
             this.redisConfig = redisConfig;
@@ -111,6 +136,11 @@ public class CustomizeRedisCacheManager extends RedisCacheManager {
 
             return this;
         }
+        public CustomizeRedisCacheManagerBuilder nearCache(@Nullable NearCacheCoordinator nearCacheCoordinator) {
+            this.nearCacheCoordinator = nearCacheCoordinator;
+            return this;
+        }
+
         public CustomizeRedisCacheManagerBuilder transactionAware(boolean enabled) {
             this.enableTransactions = enabled;
             return this;
@@ -144,7 +174,7 @@ public class CustomizeRedisCacheManager extends RedisCacheManager {
         }
 
         private CustomizeRedisCacheManager newRedisCacheManager(RedisCacheWriter cacheWriter) {
-            return new CustomizeRedisCacheManager(connectionFactory, cacheWriter, cacheDefaults(), this.initialCaches,this.allowRuntimeCacheCreation, this.redisConfig.getSpecs());
+            return new CustomizeRedisCacheManager(connectionFactory, cacheWriter, cacheDefaults(), this.initialCaches,this.allowRuntimeCacheCreation, this.redisConfig.getSpecs(), this.nearCacheCoordinator);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.milesight.beaveriot.cache.redis;
+
+import com.milesight.beaveriot.cache.twolevel.CacheInvalidationTransport;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.connection.ConnectionListener;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cache invalidations over a single Redis pub/sub channel.
+ * <p>
+ * The subscription is restored by Redisson after a reconnect, the listener is told about the disconnect as soon as
+ * Redisson notices it.
+ */
+public class RedisCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    private static final String CHANNEL = "cache:invalidation";
+
+    private final RedissonClient redissonClient;
+
+    private final RTopic topic;
+
+    private final List<Integer> topicListenerIds = new ArrayList<>();
+
+    private final List<Integer> connectionListenerIds = new ArrayList<>();
+
+    public RedisCacheInvalidationTransport(RedissonClient redissonClient) {
+        this.redissonClient = redissonClient;
+        this.topic = redissonClient.getTopic(CHANNEL, ByteArrayCodec.INSTANCE);
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        topic.publish(message);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public synchronized void subscribe(Listener listener) {
+        topicListenerIds.add(topic.addListener(byte[].class, (channel, message) -> listener.onMessage(message)));
+        topicListenerIds.add(topic.addListener(new BaseStatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                listener.onConnectionRestored();
+            }
+
+            @Override
+            public void onUnsubscribe(String channel) {
+                listener.onConnectionLost();
+            }
+        }));
+        connectionListenerIds.add(redissonClient.getNodesGroup().addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onConnect(InetSocketAddress address) {
+                listener.onConnectionRestored();
+            }
+
+            @Override
+            public void onDisconnect(InetSocketAddress address) {
+                listener.onConnectionLost();
+            }
+        }));
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public synchronized void close() {
+        if (redissonClient.isShutdown()) {
+            return;
+        }
+
+        topic.removeListener(topicListenerIds.toArray(Integer[]::new));
+        connectionListenerIds.forEach(id -> redissonClient.getNodesGroup().removeConnectionListener(id));
+        topicListenerIds.clear();
+        connectionListenerIds.clear();
+    }
+}
@@ -0,0 +1,73 @@
+package com.milesight.beaveriot.cache.twolevel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Invalidation of near cache entries, sent by the node that changed the remote cache.
+ * <p>
+ * Encoded as: version, type, sender id, cache name, key count and keys, strings in modified UTF-8.
+ */
+public record CacheInvalidationMessage(UUID sender, Type type, String cacheName, List<String> keys) {
+
+    private static final byte VERSION = 1;
+
+    public static CacheInvalidationMessage evict(UUID sender, String cacheName, List<String> keys) {
+        return new CacheInvalidationMessage(sender, Type.EVICT, cacheName, keys);
+    }
+
+    public static CacheInvalidationMessage clear(UUID sender, String cacheName) {
+        return new CacheInvalidationMessage(sender, Type.CLEAR, cacheName, List.of());
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + cacheName.length() + keys.size() * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(type.ordinal());
+            out.writeLong(sender.getMostSignificantBits());
+            out.writeLong(sender.getLeastSignificantBits());
+            out.writeUTF(cacheName);
+            out.writeInt(keys.size());
+            for (String key : keys) {
+                out.writeUTF(key);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static CacheInvalidationMessage decode(byte[] message) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported cache invalidation message version: " + version);
+            }
+
+            Type type = Type.values()[in.readByte()];
+            UUID sender = new UUID(in.readLong(), in.readLong());
+            String cacheName = in.readUTF();
+            int keyCount = in.readInt();
+            List<String> keys = new ArrayList<>(keyCount);
+            for (int i = 0; i < keyCount; i++) {
+                keys.add(in.readUTF());
+            }
+            return new CacheInvalidationMessage(sender, type, cacheName, keys);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public enum Type {
+        EVICT,
+        CLEAR
+    }
+}
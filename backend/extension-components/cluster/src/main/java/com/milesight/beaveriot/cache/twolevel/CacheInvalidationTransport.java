@@ -0,0 +1,26 @@
+package com.milesight.beaveriot.cache.twolevel;
+
+/**
+ * Channel shared by all nodes of the cluster, carrying encoded {@link CacheInvalidationMessage}s.
+ */
+public interface CacheInvalidationTransport {
+
+    void publish(byte[] message);
+
+    void subscribe(Listener listener);
+
+    default void close() {
+    }
+
+    interface Listener {
+
+        void onMessage(byte[] message);
+
+        /**
+         * Messages may be missed from now on, near cache entries can no longer be trusted
+         */
+        void onConnectionLost();
+
+        void onConnectionRestored();
+    }
+}
@@ -0,0 +1,71 @@
+package com.milesight.beaveriot.cache.twolevel;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Transport delivering messages synchronously to the transports joined in the same JVM,
+ * used to run several cache nodes on one machine.
+ */
+public class InMemoryCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    private final Set<InMemoryCacheInvalidationTransport> channel;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean connected = true;
+
+    public InMemoryCacheInvalidationTransport() {
+        this(new CopyOnWriteArraySet<>());
+    }
+
+    private InMemoryCacheInvalidationTransport(Set<InMemoryCacheInvalidationTransport> channel) {
+        this.channel = channel;
+        channel.add(this);
+    }
+
+    /**
+     * Transport of another node on the same channel
+     */
+    public InMemoryCacheInvalidationTransport join() {
+        return new InMemoryCacheInvalidationTransport(channel);
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        if (!connected) {
+            throw new IllegalStateException("Cache invalidation transport is disconnected");
+        }
+
+        channel.forEach(peer -> peer.deliver(message));
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void disconnect() {
+        connected = false;
+        listeners.forEach(Listener::onConnectionLost);
+    }
+
+    public void reconnect() {
+        connected = true;
+        listeners.forEach(Listener::onConnectionRestored);
+    }
+
+    @Override
+    public void close() {
+        channel.remove(this);
+        listeners.clear();
+    }
+
+    private void deliver(byte[] message) {
+        if (connected) {
+            listeners.forEach(listener -> listener.onMessage(message));
+        }
+    }
+}
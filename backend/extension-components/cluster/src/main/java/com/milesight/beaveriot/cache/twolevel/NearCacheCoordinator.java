@@ -0,0 +1,162 @@
+package com.milesight.beaveriot.cache.twolevel;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.milesight.beaveriot.cache.autoconfigure.CustomizeCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Creates the {@link TwoLevelCache}s of a node and keeps their L1 coherent with the other nodes.
+ * <p>
+ * Invalidations of all caches share one transport channel. Messages sent by this node are ignored when they come
+ * back. When the transport loses its connection every L1 is flushed and bypassed until the connection is restored,
+ * because invalidations sent in between are never received.
+ */
+@Slf4j
+public class NearCacheCoordinator implements CacheInvalidationTransport.Listener, DisposableBean {
+
+    private static final String METRIC_PREFIX = "cache.near.";
+
+    private final UUID nodeId = UUID.randomUUID();
+
+    private final CustomizeCacheProperties.NearCache properties;
+
+    private final CacheInvalidationTransport transport;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    private final Counter publishFailures;
+
+    private volatile boolean connected;
+
+    public NearCacheCoordinator(CustomizeCacheProperties.NearCache properties, CacheInvalidationTransport transport, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.transport = transport;
+        this.meterRegistry = meterRegistry;
+        this.publishFailures = meterRegistry.counter(METRIC_PREFIX + "invalidation.failures");
+        try {
+            transport.subscribe(this);
+            this.connected = true;
+        } catch (Exception e) {
+            log.warn("Failed to subscribe to cache invalidations, near caches are bypassed until the connection is restored", e);
+        }
+    }
+
+    public boolean isEnabledFor(String cacheName) {
+        return properties.matches(cacheName);
+    }
+
+    public TwoLevelCache create(String cacheName, Cache remoteCache, Function<Object, String> keyConverter) {
+        return create(cacheName, remoteCache, keyConverter, null);
+    }
+
+    /**
+     * @param remoteTimeToLive TTL of the remote entries, near cache entries never live longer
+     */
+    public TwoLevelCache create(String cacheName, Cache remoteCache, Function<Object, String> keyConverter, @Nullable Duration remoteTimeToLive) {
+        Duration timeToLive = properties.getTimeToLive();
+        if (remoteTimeToLive != null && !remoteTimeToLive.isZero() && remoteTimeToLive.compareTo(timeToLive) < 0) {
+            timeToLive = remoteTimeToLive;
+        }
+
+        TwoLevelCache cache = new TwoLevelCache(cacheName, remoteCache, keyConverter, Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(timeToLive)
+                .build(), this);
+        caches.put(cacheName, cache);
+        meterRegistry.gauge(METRIC_PREFIX + "size", Tags.of("cache", cacheName), cache, TwoLevelCache::localSize);
+        return cache;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    Counter requestCounter(String cacheName, String level, String result) {
+        return meterRegistry.counter(METRIC_PREFIX + "requests", "cache", cacheName, "level", level, "result", result);
+    }
+
+    void publishEvict(String cacheName, List<String> keys) {
+        if (!keys.isEmpty()) {
+            publish(CacheInvalidationMessage.evict(nodeId, cacheName, keys));
+        }
+    }
+
+    void publishClear(String cacheName) {
+        publish(CacheInvalidationMessage.clear(nodeId, cacheName));
+    }
+
+    private void publish(CacheInvalidationMessage message) {
+        try {
+            transport.publish(message.encode());
+        } catch (Exception e) {
+            // the remote cache has been changed already, other nodes keep their entries until they expire
+            publishFailures.increment();
+            log.warn("Failed to publish invalidation of cache {}", message.cacheName(), e);
+        }
+    }
+
+    @Override
+    public void onMessage(byte[] message) {
+        CacheInvalidationMessage invalidation;
+        try {
+            invalidation = CacheInvalidationMessage.decode(message);
+        } catch (Exception e) {
+            log.warn("Ignored malformed cache invalidation message", e);
+            return;
+        }
+
+        if (nodeId.equals(invalidation.sender())) {
+            return;
+        }
+
+        TwoLevelCache cache = caches.get(invalidation.cacheName());
+        if (cache == null) {
+            return;
+        }
+
+        if (invalidation.type() == CacheInvalidationMessage.Type.CLEAR) {
+            cache.clearLocal();
+        } else {
+            cache.invalidateLocal(invalidation.keys());
+        }
+    }
+
+    @Override
+    public void onConnectionLost() {
+        if (connected) {
+            log.warn("Cache invalidation connection lost, near caches are bypassed");
+        }
+        connected = false;
+        caches.values().forEach(TwoLevelCache::clearLocal);
+    }
+
+    @Override
+    public void onConnectionRestored() {
+        // entries filled before the loss was noticed may have missed invalidations
+        caches.values().forEach(TwoLevelCache::clearLocal);
+        if (!connected) {
+            log.info("Cache invalidation connection restored");
+        }
+        connected = true;
+    }
+
+    @Override
+    public void destroy() {
+        transport.close();
+    }
+}
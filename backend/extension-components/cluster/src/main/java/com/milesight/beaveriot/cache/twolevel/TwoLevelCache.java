@@ -0,0 +1,252 @@
+package com.milesight.beaveriot.cache.twolevel;
+
+import com.milesight.beaveriot.cache.BatchableCache;
+import io.micrometer.core.instrument.Counter;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache with a node local Caffeine cache (L1) in front of the shared remote cache (L2).
+ * <p>
+ * Every change goes to L2 first and is then broadcast as an invalidation, L1 entries are only filled from reads of
+ * L2. A read that raced with an invalidation does not fill L1, so a node never keeps a value older than the last
+ * invalidation it received. While the coordinator is disconnected, L1 is bypassed.
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache implements BatchableCache {
+
+    private final String name;
+
+    private final Cache remoteCache;
+
+    private final Function<Object, String> keyConverter;
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+
+    private final NearCacheCoordinator coordinator;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final Counter localHits;
+
+    private final Counter localMisses;
+
+    private final Counter remoteHits;
+
+    private final Counter remoteMisses;
+
+    TwoLevelCache(String name, Cache remoteCache, Function<Object, String> keyConverter,
+                  com.github.benmanes.caffeine.cache.Cache<String, Object> localCache, NearCacheCoordinator coordinator) {
+        super(true);
+        this.name = name;
+        this.remoteCache = remoteCache;
+        this.keyConverter = keyConverter;
+        this.localCache = localCache;
+        this.coordinator = coordinator;
+        this.localHits = coordinator.requestCounter(name, "l1", "hit");
+        this.localMisses = coordinator.requestCounter(name, "l1", "miss");
+        this.remoteHits = coordinator.requestCounter(name, "l2", "hit");
+        this.remoteMisses = coordinator.requestCounter(name, "l2", "miss");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return localCache;
+    }
+
+    public Cache getRemoteCache() {
+        return remoteCache;
+    }
+
+    @Override
+    @Nullable
+    protected Object lookup(Object key) {
+        String localKey = keyConverter.apply(key);
+        if (coordinator.isConnected()) {
+            Object storeValue = localCache.getIfPresent(localKey);
+            if (storeValue != null) {
+                localHits.increment();
+                return storeValue;
+            }
+            localMisses.increment();
+        }
+
+        long invalidation = invalidations.get();
+        ValueWrapper wrapper = remoteCache.get(key);
+        if (wrapper == null) {
+            remoteMisses.increment();
+            return null;
+        }
+
+        remoteHits.increment();
+        Object storeValue = toStoreValue(wrapper.get());
+        fill(localKey, storeValue, invalidation);
+        return storeValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+
+        long invalidation = invalidations.get();
+        T value = remoteCache.get(key, valueLoader);
+        fill(keyConverter.apply(key), toStoreValue(value), invalidation);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, @Nullable Object value) {
+        remoteCache.put(key, value);
+        invalidate(List.of(key));
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper putIfAbsent(Object key, @Nullable Object value) {
+        ValueWrapper existing = remoteCache.putIfAbsent(key, value);
+        invalidate(List.of(key));
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remoteCache.evict(key);
+        invalidate(List.of(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = remoteCache.evictIfPresent(key);
+        invalidate(List.of(key));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        remoteCache.clear();
+        clearLocal();
+        coordinator.publishClear(name);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = remoteCache.invalidate();
+        clearLocal();
+        coordinator.publishClear(name);
+        return invalidated;
+    }
+
+    @Override
+    public List<Object> multiGet(Object[] keys) {
+        List<Object> values = new ArrayList<>(Collections.nCopies(keys.length, null));
+        List<Integer> missingIndexes = new ArrayList<>();
+        boolean connected = coordinator.isConnected();
+        for (int i = 0; i < keys.length; i++) {
+            Object storeValue = connected ? localCache.getIfPresent(keyConverter.apply(keys[i])) : null;
+            if (storeValue != null) {
+                localHits.increment();
+                values.set(i, fromStoreValue(storeValue));
+            } else {
+                if (connected) {
+                    localMisses.increment();
+                }
+                missingIndexes.add(i);
+            }
+        }
+        if (missingIndexes.isEmpty()) {
+            return values;
+        }
+
+        long invalidation = invalidations.get();
+        Object[] missingKeys = missingIndexes.stream().map(i -> keys[i]).toArray();
+        List<?> remoteValues = multiGetRemote(missingKeys);
+        for (int i = 0; i < missingKeys.length; i++) {
+            Object remoteValue = remoteValues == null ? null : remoteValues.get(i);
+            if (remoteValue == null) {
+                remoteMisses.increment();
+                continue;
+            }
+
+            remoteHits.increment();
+            fill(keyConverter.apply(missingKeys[i]), remoteValue, invalidation);
+            values.set(missingIndexes.get(i), fromStoreValue(remoteValue));
+        }
+        return values;
+    }
+
+    @Override
+    public Long multiEvict(Object[] keys) {
+        Long evicted;
+        if (remoteCache instanceof BatchableCache batchableCache) {
+            evicted = batchableCache.multiEvict(keys);
+        } else {
+            Arrays.stream(keys).forEach(remoteCache::evict);
+            evicted = (long) keys.length;
+        }
+        invalidate(Arrays.asList(keys));
+        return evicted;
+    }
+
+    /**
+     * Remote values of the keys in store form, null for a missing key
+     */
+    private List<?> multiGetRemote(Object[] keys) {
+        if (remoteCache instanceof BatchableCache batchableCache) {
+            return batchableCache.multiGet(keys);
+        }
+
+        return Arrays.stream(keys)
+                .map(remoteCache::get)
+                .map(wrapper -> wrapper == null ? null : toStoreValue(wrapper.get()))
+                .toList();
+    }
+
+    private void invalidate(List<Object> keys) {
+        List<String> localKeys = keys.stream().map(keyConverter).toList();
+        invalidateLocal(localKeys);
+        coordinator.publishEvict(name, localKeys);
+    }
+
+    private void fill(String localKey, Object storeValue, long invalidation) {
+        if (!coordinator.isConnected() || invalidations.get() != invalidation) {
+            return;
+        }
+
+        localCache.put(localKey, storeValue);
+        // an invalidation may have arrived between the check and the put
+        if (invalidations.get() != invalidation || !coordinator.isConnected()) {
+            localCache.invalidate(localKey);
+        }
+    }
+
+    void invalidateLocal(List<String> localKeys) {
+        invalidations.incrementAndGet();
+        localCache.invalidateAll(localKeys);
+    }
+
+    void clearLocal() {
+        invalidations.incrementAndGet();
+        localCache.invalidateAll();
+    }
+
+    long localSize() {
+        return localCache.estimatedSize();
+    }
+}
@@ -0,0 +1,21 @@
+package com.milesight.beaveriot.membership;
+
+import java.util.Set;
+
+/**
+ * Live members of the cluster and the ownership of keys among them.
+ * <p>
+ * Ownership is decided locally by a {@link ConsistentHashRing} over the live members, so every node
+ * agrees on the owner of a key without coordination once their member views have converged.
+ */
+public interface ClusterMembership {
+    String getLocalMemberId();
+
+    Set<String> getMembers();
+
+    String getOwner(String key);
+
+    default boolean isLocalOwner(String key) {
+        return getLocalMemberId().equals(getOwner(key));
+    }
+}
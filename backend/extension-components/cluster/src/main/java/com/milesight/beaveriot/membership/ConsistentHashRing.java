@@ -0,0 +1,72 @@
+package com.milesight.beaveriot.membership;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent hash ring with virtual nodes.
+ * When a member joins or leaves, only the keys between its virtual nodes and their predecessors move.
+ */
+public final class ConsistentHashRing {
+    private static final int DEFAULT_VIRTUAL_NODES = 160;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final Set<String> members;
+    private final long[] points;
+    private final String[] owners;
+
+    private ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        Set<String> sortedMembers = new TreeSet<>(members);
+        this.members = Set.copyOf(sortedMembers);
+        TreeMap<Long, String> ring = new TreeMap<>();
+        // members are added in sorted order so that hash collisions resolve the same way on every node
+        sortedMembers.forEach(member -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.putIfAbsent(hash(member + "#" + i), member);
+            }
+        });
+        this.points = ring.keySet().stream().mapToLong(Long::longValue).toArray();
+        this.owners = ring.values().toArray(String[]::new);
+    }
+
+    public static ConsistentHashRing of(Collection<String> members) {
+        return of(members, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public static ConsistentHashRing of(Collection<String> members, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Virtual nodes must be positive");
+        }
+        return new ConsistentHashRing(members, virtualNodes);
+    }
+
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * Get the member owning the key, or null if the ring is empty
+     */
+    public String getOwner(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    private static long hash(String value) {
+        return HASH_FUNCTION.hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+}
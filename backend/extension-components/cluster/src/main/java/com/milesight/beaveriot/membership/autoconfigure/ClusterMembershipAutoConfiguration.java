@@ -0,0 +1,25 @@
+package com.milesight.beaveriot.membership.autoconfigure;
+
+import com.milesight.beaveriot.membership.ClusterMembership;
+import com.milesight.beaveriot.membership.local.LocalClusterMembership;
+import com.milesight.beaveriot.membership.redis.RedisClusterMembership;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ClusterMembershipAutoConfiguration {
+    @Bean
+    @ConditionalOnExpression("!'${spring.data.redis.host:}'.isEmpty()")
+    public ClusterMembership redisClusterMembership(RedissonClient redissonClient) {
+        return new RedisClusterMembership(redissonClient);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean({ClusterMembership.class})
+    public ClusterMembership localClusterMembership() {
+        return new LocalClusterMembership();
+    }
+}
@@ -0,0 +1,27 @@
+package com.milesight.beaveriot.membership.local;
+
+import com.milesight.beaveriot.membership.ClusterMembership;
+
+import java.util.Set;
+
+/**
+ * Single node membership, the local node owns every key
+ */
+public class LocalClusterMembership implements ClusterMembership {
+    private static final String LOCAL_MEMBER_ID = "local";
+
+    @Override
+    public String getLocalMemberId() {
+        return LOCAL_MEMBER_ID;
+    }
+
+    @Override
+    public Set<String> getMembers() {
+        return Set.of(LOCAL_MEMBER_ID);
+    }
+
+    @Override
+    public String getOwner(String key) {
+        return LOCAL_MEMBER_ID;
+    }
+}
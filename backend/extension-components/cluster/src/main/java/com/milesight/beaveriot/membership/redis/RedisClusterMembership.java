@@ -0,0 +1,88 @@
+package com.milesight.beaveriot.membership.redis;
+
+import com.milesight.beaveriot.membership.ClusterMembership;
+import com.milesight.beaveriot.membership.ConsistentHashRing;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Membership based on heartbeats in a Redis sorted set, scored by the time of the last heartbeat.
+ * Members that miss heartbeats for {@link #MEMBER_TTL} are dropped from the ring.
+ */
+@Slf4j
+public class RedisClusterMembership implements ClusterMembership {
+    private static final String MEMBERS_KEY = "cluster:members";
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration MEMBER_TTL = Duration.ofSeconds(HEARTBEAT_INTERVAL.getSeconds() * 3);
+    private final String localMemberId;
+    private final RScoredSortedSet<String> members;
+    private final ScheduledExecutorService heartbeatExecutor;
+    private volatile ConsistentHashRing ring;
+
+    public RedisClusterMembership(RedissonClient redissonClient) {
+        this.localMemberId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+        this.members = redissonClient.getScoredSortedSet(MEMBERS_KEY, StringCodec.INSTANCE);
+        this.ring = ConsistentHashRing.of(Set.of(localMemberId));
+        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable, "cluster-membership-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        this.heartbeatExecutor.scheduleAtFixedRate(this::heartbeat, 0, HEARTBEAT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String getLocalMemberId() {
+        return localMemberId;
+    }
+
+    @Override
+    public Set<String> getMembers() {
+        return ring.getMembers();
+    }
+
+    @Override
+    public String getOwner(String key) {
+        return ring.getOwner(key);
+    }
+
+    private void heartbeat() {
+        try {
+            long now = System.currentTimeMillis();
+            long expiredBefore = now - MEMBER_TTL.toMillis();
+            members.add(now, localMemberId);
+            members.removeRangeByScore(0, true, expiredBefore, false);
+
+            Set<String> liveMembers = new HashSet<>(members.valueRange(expiredBefore, true, Double.POSITIVE_INFINITY, true));
+            liveMembers.add(localMemberId);
+            if (!liveMembers.equals(ring.getMembers())) {
+                log.info("Cluster members changed from {} to {}", ring.getMembers(), liveMembers);
+                ring = ConsistentHashRing.of(liveMembers);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to send cluster membership heartbeat of {}", localMemberId, e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        heartbeatExecutor.shutdownNow();
+        try {
+            members.remove(localMemberId);
+        } catch (Exception e) {
+            log.warn("Failed to leave cluster membership for {}", localMemberId, e);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.milesight.beaveriot.semaphore.leasing;
+
+import com.milesight.beaveriot.semaphore.DistributedSemaphore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Node local tier in front of a distributed semaphore. Permits are leased from the distributed semaphore in batches and
+ * handed out from a local bucket, so most acquires and releases never reach the distributed semaphore. A node only hands
+ * out permits it leased, the permits in use on all nodes never exceed the distributed permits. Buckets are topped up
+ * asynchronously, surplus permits and the permits of idle keys are given back, and all idle permits are given back on
+ * close. While the distributed semaphore fails, every node limits a key on its own to the permits it was initialized
+ * with.
+ */
+@Slf4j
+public class LeasingSemaphore implements DistributedSemaphore, AutoCloseable {
+    private static final String LOCAL_PERMIT_PREFIX = "leasing-local:";
+    private final DistributedSemaphore delegate;
+    private final int batchSize;
+    private final long idleTimeoutNanos;
+    private final long pollIntervalNanos;
+    private final long degradedRetryNanos;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    /**
+     * @param batchSize    number of idle permits a node keeps leased per key
+     * @param idleTimeout  idle permits of a key are given back once it was not used for this long
+     * @param pollInterval interval in which a waiting acquire asks the distributed semaphore again
+     * @param degradedRetry time the distributed semaphore is bypassed after it failed
+     */
+    public LeasingSemaphore(DistributedSemaphore delegate, int batchSize, Duration idleTimeout, Duration pollInterval, Duration degradedRetry) {
+        this.delegate = delegate;
+        this.batchSize = Math.max(1, batchSize);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.pollIntervalNanos = Math.max(1, pollInterval.toNanos());
+        this.degradedRetryNanos = degradedRetry.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leasing-semaphore");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkPeriod = Math.max(pollIntervalNanos, idleTimeoutNanos / 2);
+        this.scheduler.scheduleWithFixedDelay(this::returnIdlePermits, checkPeriod, checkPeriod, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void initPermits(String key, int permits) {
+        getBucket(key).initLocalPermits(permits);
+        try {
+            delegate.initPermits(key, permits);
+        } catch (RuntimeException e) {
+            degrade(getBucket(key), e);
+        }
+    }
+
+    @Override
+    public String acquire(String key, Duration timeout) {
+        Bucket bucket = getBucket(key);
+        bucket.touch();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            while (true) {
+                String permitId = bucket.takeIdle(0);
+                if (permitId == null && !bucket.isDegraded()) {
+                    permitId = lease(bucket);
+                }
+                if (permitId != null) {
+                    refillAsync(bucket);
+                    return permitId;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (bucket.isDegraded()) {
+                    return bucket.acquireLocal(Math.max(0, remaining)) ? LOCAL_PERMIT_PREFIX + key : null;
+                }
+                if (remaining <= 0) {
+                    return null;
+                }
+
+                // a permit released on this node wakes the wait up, permits of other nodes are only seen by asking again
+                permitId = bucket.takeIdle(Math.min(remaining, pollIntervalNanos));
+                if (permitId != null) {
+                    return permitId;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    @Override
+    public void release(String key, String permitId) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null && permitId.startsWith(LOCAL_PERMIT_PREFIX)) {
+            bucket.releaseLocal();
+            return;
+        }
+        if (bucket == null || closed) {
+            releaseRemote(key, permitId);
+            return;
+        }
+
+        bucket.touch();
+        if (!bucket.offerIdle(permitId, batchSize)) {
+            executeAsync(() -> releaseRemote(key, permitId));
+        }
+    }
+
+    public int getIdlePermits(String key) {
+        Bucket bucket = buckets.get(key);
+        return bucket == null ? 0 : bucket.idleCount();
+    }
+
+    public boolean isDegraded(String key) {
+        Bucket bucket = buckets.get(key);
+        return bucket != null && bucket.isDegraded();
+    }
+
+    private Bucket getBucket(String key) {
+        return buckets.computeIfAbsent(key, Bucket::new);
+    }
+
+    private String lease(Bucket bucket) {
+        try {
+            return delegate.acquire(bucket.key, Duration.ZERO);
+        } catch (RuntimeException e) {
+            degrade(bucket, e);
+            return null;
+        }
+    }
+
+    private void refillAsync(Bucket bucket) {
+        if (bucket.idleCount() > 0 || bucket.isDegraded() || !bucket.startRefill()) {
+            return;
+        }
+
+        executeAsync(() -> {
+            try {
+                while (!closed && bucket.idleCount() < batchSize) {
+                    String permitId = lease(bucket);
+                    if (permitId == null) {
+                        break;
+                    }
+                    if (!bucket.offerIdle(permitId, batchSize)) {
+                        releaseRemote(bucket.key, permitId);
+                        break;
+                    }
+                }
+            } finally {
+                bucket.finishRefill();
+            }
+        });
+    }
+
+    private void returnIdlePermits() {
+        long now = System.nanoTime();
+        buckets.values().forEach(bucket -> {
+            if (now - bucket.lastUsed > idleTimeoutNanos) {
+                drain(bucket);
+            }
+        });
+    }
+
+    private void drain(Bucket bucket) {
+        String permitId;
+        while ((permitId = bucket.takeIdleNow()) != null) {
+            releaseRemote(bucket.key, permitId);
+        }
+    }
+
+    private void releaseRemote(String key, String permitId) {
+        try {
+            delegate.release(key, permitId);
+        } catch (RuntimeException e) {
+            // the lease of the permit expires in the distributed semaphore
+            log.warn("Failed to give back permit of semaphore {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void degrade(Bucket bucket, RuntimeException e) {
+        if (!bucket.isDegraded()) {
+            log.warn("Distributed semaphore {} is unavailable, limiting on this node only: {}", bucket.key, e.getMessage());
+        }
+        bucket.degradedUntil = System.nanoTime() + degradedRetryNanos;
+    }
+
+    private void executeAsync(Runnable task) {
+        try {
+            scheduler.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        buckets.values().forEach(this::drain);
+    }
+
+    private static class Bucket {
+        private final String key;
+        /**
+         * Counts the permits in {@link #idle}, a permit is only taken from the deque after acquiring it here
+         */
+        private final Semaphore available = new Semaphore(0);
+        private final ConcurrentLinkedDeque<String> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicBoolean refilling = new AtomicBoolean();
+        private volatile Semaphore local = new Semaphore(0);
+        private volatile long lastUsed = System.nanoTime();
+        private volatile long degradedUntil = System.nanoTime();
+
+        private Bucket(String key) {
+            this.key = key;
+        }
+
+        private void initLocalPermits(int permits) {
+            local = new Semaphore(permits);
+        }
+
+        private void touch() {
+            lastUsed = System.nanoTime();
+        }
+
+        private boolean isDegraded() {
+            return degradedUntil - System.nanoTime() > 0;
+        }
+
+        private String takeIdle(long timeoutNanos) throws InterruptedException {
+            return available.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS) ? idle.pollLast() : null;
+        }
+
+        private String takeIdleNow() {
+            return available.tryAcquire() ? idle.pollLast() : null;
+        }
+
+        /**
+         * @return false if the bucket already holds the maximum number of idle permits
+         */
+        private synchronized boolean offerIdle(String permitId, int maxIdle) {
+            if (available.availablePermits() >= maxIdle) {
+                return false;
+            }
+            idle.offerLast(permitId);
+            available.release();
+            return true;
+        }
+
+        private int idleCount() {
+            return available.availablePermits();
+        }
+
+        private boolean acquireLocal(long timeoutNanos) throws InterruptedException {
+            return local.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void releaseLocal() {
+            local.release();
+        }
+
+        private boolean startRefill() {
+            return refilling.compareAndSet(false, true);
+        }
+
+        private void finishRefill() {
+            refilling.set(false);
+        }
+    }
+}
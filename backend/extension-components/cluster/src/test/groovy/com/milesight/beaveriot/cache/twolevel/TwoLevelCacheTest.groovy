@@ -0,0 +1,137 @@
+package com.milesight.beaveriot.cache.twolevel
+
+import com.milesight.beaveriot.cache.autoconfigure.CustomizeCacheProperties
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.cache.concurrent.ConcurrentMapCache
+import spock.lang.Specification
+
+class TwoLevelCacheTest extends Specification {
+
+    def remoteCache = new ConcurrentMapCache("demo")
+    def transportA = new InMemoryCacheInvalidationTransport()
+    def transportB = transportA.join()
+    def meterRegistry = new SimpleMeterRegistry()
+    def coordinatorA = new NearCacheCoordinator(new CustomizeCacheProperties.NearCache(), transportA, meterRegistry)
+    def coordinatorB = new NearCacheCoordinator(new CustomizeCacheProperties.NearCache(), transportB, new SimpleMeterRegistry())
+    def nodeA = coordinatorA.create("demo", remoteCache, { String.valueOf(it) })
+    def nodeB = coordinatorB.create("demo", remoteCache, { String.valueOf(it) })
+
+    def "second read should be served by the near cache"() {
+        given:
+        remoteCache.put("k1", "v1")
+
+        when:
+        def first = nodeA.get("k1")?.get()
+        remoteCache.put("k1", "changed behind the near cache")
+        def second = nodeA.get("k1")?.get()
+
+        then:
+        first == "v1"
+        second == "v1"
+        requests("l1", "hit") == 1
+        requests("l2", "hit") == 1
+    }
+
+    def "put on one node should invalidate the near cache of the other"() {
+        given:
+        nodeA.put("k1", "v1")
+        nodeB.get("k1")
+
+        when:
+        nodeA.put("k1", "v2")
+
+        then:
+        nodeB.get("k1").get() == "v2"
+        nodeA.get("k1").get() == "v2"
+    }
+
+    def "multi evict should invalidate all keys with one message"() {
+        given:
+        def published = []
+        transportB.subscribe(new CacheInvalidationTransport.Listener() {
+            void onMessage(byte[] message) { published << CacheInvalidationMessage.decode(message) }
+            void onConnectionLost() {}
+            void onConnectionRestored() {}
+        })
+        ["k1", "k2", "k3"].each { nodeA.put(it, it) }
+        nodeB.multiGet(["k1", "k2", "k3"] as Object[])
+        published.clear()
+
+        when:
+        nodeA.multiEvict(["k1", "k2"] as Object[])
+
+        then:
+        published.size() == 1
+        published[0].keys() == ["k1", "k2"]
+        nodeB.multiGet(["k1", "k2", "k3"] as Object[]) == [null, null, "k3"]
+    }
+
+    def "clear should be broadcast"() {
+        given:
+        nodeA.put("k1", "v1")
+        nodeB.get("k1")
+
+        when:
+        nodeA.clear()
+
+        then:
+        nodeB.get("k1") == null
+    }
+
+    def "cached null values should be kept as null"() {
+        given:
+        nodeA.put("k1", null)
+
+        expect:
+        nodeA.get("k1") != null
+        nodeA.get("k1").get() == null
+        nodeA.get("k1").get() == null
+    }
+
+    def "near cache should be flushed and bypassed while disconnected"() {
+        given:
+        remoteCache.put("k1", "v1")
+        nodeB.get("k1")
+
+        when:
+        transportB.disconnect()
+        remoteCache.put("k1", "v2")
+
+        then:
+        !coordinatorB.isConnected()
+        nodeB.get("k1").get() == "v2"
+        nodeB.localSize() == 0
+
+        when:
+        remoteCache.put("k1", "v3")
+        transportB.reconnect()
+
+        then:
+        coordinatorB.isConnected()
+        nodeB.get("k1").get() == "v3"
+        nodeB.localSize() == 1
+    }
+
+    def "invalidation message should survive encoding"() {
+        given:
+        def message = CacheInvalidationMessage.evict(UUID.randomUUID(), "tenant:cache", ["a", "ключ", ""])
+
+        expect:
+        CacheInvalidationMessage.decode(message.encode()) == message
+    }
+
+    def "cache names should support prefix matching"() {
+        given:
+        def properties = new CustomizeCacheProperties.NearCache(cacheNames: ["[entity:latest-value:*]", "device"] as Set)
+
+        expect:
+        properties.matches("entity:latest-value:default")
+        properties.matches("device")
+        !properties.matches("device:other")
+        new CustomizeCacheProperties.NearCache().matches("anything")
+    }
+
+    private long requests(String level, String result) {
+        return (long) meterRegistry.counter("cache.near.requests", "cache", "demo", "level", level, "result", result).count()
+    }
+}
@@ -0,0 +1,52 @@
+package com.milesight.beaveriot.membership
+
+import spock.lang.Specification
+
+class ConsistentHashRingTest extends Specification {
+
+    def "empty ring should have no owner"() {
+        expect:
+        ConsistentHashRing.of([]).getOwner("device-1") == null
+    }
+
+    def "owner should not depend on member order"() {
+        given:
+        def ring1 = ConsistentHashRing.of(["node-a", "node-b", "node-c"])
+        def ring2 = ConsistentHashRing.of(["node-c", "node-a", "node-b"])
+
+        expect:
+        (0..<1000).every { ring1.getOwner("device-$it".toString()) == ring2.getOwner("device-$it".toString()) }
+    }
+
+    def "keys should be spread over all members"() {
+        given:
+        def ring = ConsistentHashRing.of(["node-a", "node-b", "node-c"])
+
+        when:
+        def counts = (0..<30000).countBy { ring.getOwner(String.valueOf(it)) }
+
+        then:
+        counts.keySet() == ["node-a", "node-b", "node-c"] as Set
+        counts.values().every { it > 7000 && it < 13000 }
+    }
+
+    def "only keys of a removed member should move"() {
+        given:
+        def before = ConsistentHashRing.of(["node-a", "node-b", "node-c"])
+        def after = ConsistentHashRing.of(["node-a", "node-b"])
+
+        expect:
+        (0..<10000).every {
+            def key = String.valueOf(it)
+            before.getOwner(key) == "node-c" || before.getOwner(key) == after.getOwner(key)
+        }
+    }
+
+    def "virtual nodes should be positive"() {
+        when:
+        ConsistentHashRing.of(["node-a"], 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,186 @@
+package com.milesight.beaveriot.semaphore.leasing
+
+import com.milesight.beaveriot.semaphore.DistributedSemaphore
+import com.milesight.beaveriot.semaphore.local.LocalSemaphore
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class LeasingSemaphoreTest extends Specification {
+
+    static final String KEY = "workflow:semaphore:t1"
+
+    List<LeasingSemaphore> nodes = []
+
+    def cleanup() {
+        nodes.each { it.close() }
+    }
+
+    LeasingSemaphore node(DistributedSemaphore delegate, Duration idleTimeout = Duration.ofMinutes(1)) {
+        def node = new LeasingSemaphore(delegate, 2, idleTimeout, Duration.ofMillis(5), Duration.ofMinutes(1))
+        nodes << node
+        return node
+    }
+
+    def "permits in use on all nodes should never exceed the distributed permits"() {
+        given:
+        def nodeList = (1..3).collect { node(delegate) }
+        nodeList.each { it.initPermits(KEY, 5) }
+        def inUse = new AtomicInteger()
+        def maxInUse = new AtomicInteger()
+        def admitted = new AtomicInteger()
+        def executor = Executors.newFixedThreadPool(12)
+        def done = new CountDownLatch(12)
+
+        when:
+        12.times { thread ->
+            executor.execute {
+                def semaphore = nodeList[thread % nodeList.size()]
+                200.times {
+                    def permitId = semaphore.acquire(KEY, Duration.ofSeconds(5))
+                    if (permitId != null) {
+                        def current = inUse.incrementAndGet()
+                        maxInUse.accumulateAndGet(current, Math::max)
+                        Thread.yield()
+                        inUse.decrementAndGet()
+                        admitted.incrementAndGet()
+                        semaphore.release(KEY, permitId)
+                    }
+                }
+                done.countDown()
+            }
+        }
+        done.await(60, TimeUnit.SECONDS)
+        executor.shutdown()
+        nodeList.each { it.close() }
+
+        then:
+        maxInUse.get() <= 5
+        admitted.get() == 12 * 200
+        availablePermits(delegate) == 5
+
+        where:
+        delegate << [new InMemoryRedisSemaphore(), new LocalSemaphore()]
+    }
+
+    def "repeated acquires should be served from the local bucket"() {
+        given:
+        def redis = new InMemoryRedisSemaphore()
+        def semaphore = node(redis)
+        semaphore.initPermits(KEY, 5)
+
+        when:
+        100.times {
+            def permitId = semaphore.acquire(KEY, Duration.ofSeconds(1))
+            semaphore.release(KEY, permitId)
+        }
+
+        then:
+        redis.roundTrips.get() < 10
+        semaphore.getIdlePermits(KEY) <= 2
+    }
+
+    def "idle permits should be given back to the distributed semaphore"() {
+        given:
+        def redis = new InMemoryRedisSemaphore()
+        def semaphore = node(redis, Duration.ofMillis(50))
+        semaphore.initPermits(KEY, 5)
+
+        when:
+        semaphore.release(KEY, semaphore.acquire(KEY, Duration.ofSeconds(1)))
+
+        then:
+        new PollingConditions(timeout: 5).eventually {
+            assert semaphore.getIdlePermits(KEY) == 0
+            assert redis.available(KEY) == 5
+        }
+    }
+
+    def "should limit on the node only while the distributed semaphore is unavailable"() {
+        given:
+        def redis = new InMemoryRedisSemaphore()
+        def semaphore = node(redis)
+        semaphore.initPermits(KEY, 2)
+        redis.failing = true
+
+        when:
+        def first = semaphore.acquire(KEY, Duration.ofMillis(10))
+        def second = semaphore.acquire(KEY, Duration.ofMillis(10))
+        def third = semaphore.acquire(KEY, Duration.ofMillis(10))
+
+        then:
+        first != null
+        second != null
+        third == null
+        semaphore.isDegraded(KEY)
+
+        when:
+        semaphore.release(KEY, first)
+
+        then:
+        semaphore.acquire(KEY, Duration.ofMillis(10)) != null
+    }
+
+    static int availablePermits(DistributedSemaphore delegate) {
+        if (delegate instanceof InMemoryRedisSemaphore) {
+            return delegate.available(KEY)
+        }
+        int count = 0
+        while (delegate.acquire(KEY, Duration.ZERO) != null) {
+            count++
+        }
+        return count
+    }
+
+    /**
+     * Stand-in for the Redis semaphore, permits have ids and every call counts as a round trip
+     */
+    static class InMemoryRedisSemaphore implements DistributedSemaphore {
+        final Map<String, Set<String>> freePermits = new ConcurrentHashMap<>()
+        final AtomicInteger roundTrips = new AtomicInteger()
+        volatile boolean failing
+
+        @Override
+        synchronized void initPermits(String key, int permits) {
+            call()
+            freePermits.putIfAbsent(key, (1..permits).collect { UUID.randomUUID().toString() } as Set)
+        }
+
+        @Override
+        synchronized String acquire(String key, Duration timeout) {
+            call()
+            def permits = freePermits.get(key)
+            if (permits == null || permits.isEmpty()) {
+                return null
+            }
+            def permitId = permits.first()
+            permits.remove(permitId)
+            return permitId
+        }
+
+        @Override
+        synchronized void release(String key, String permitId) {
+            call()
+            if (!freePermits.get(key).add(permitId)) {
+                throw new IllegalStateException("Permit released twice: " + permitId)
+            }
+        }
+
+        synchronized int available(String key) {
+            return freePermits.get(key).size()
+        }
+
+        private void call() {
+            roundTrips.incrementAndGet()
+            if (failing) {
+                throw new IllegalStateException("Redis is unavailable")
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.milesight.beaveriot.data.api;
 
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesBucket;
 import com.milesight.beaveriot.data.model.TimeSeriesPeriodQuery;
 import com.milesight.beaveriot.data.model.TimeSeriesResult;
 import com.milesight.beaveriot.data.model.TimeSeriesTimePointQuery;
@@ -17,5 +19,10 @@ public interface TimeSeriesRepository<T> {
 
     TimeSeriesResult<T> findByPeriod(TimeSeriesPeriodQuery query);
 
+    /**
+     * Aggregate the points of the period in the storage, the result is ordered by bucket time and never paged
+     */
+    TimeSeriesResult<TimeSeriesBucket> aggregate(TimeSeriesAggregateQuery query);
+
     void save(List<T> itemList);
 }
@@ -0,0 +1,61 @@
+package com.milesight.beaveriot.data.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.Collection;
+
+/**
+ * TimeSeriesAggregateQuery class.
+ * <p>
+ * Points in [startTimestamp, endTimestamp) are grouped into buckets of {@code interval} milliseconds aligned to the
+ * epoch, or into a single bucket starting at {@code startTimestamp} when no interval is given.
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public class TimeSeriesAggregateQuery extends TimeSeriesBaseQuery {
+    private Long startTimestamp;
+
+    private Long endTimestamp;
+
+    /**
+     * Column to aggregate, points without a value in this column are skipped
+     */
+    private String valueColumn;
+
+    private TimeSeriesAggregation aggregation;
+
+    private Long interval;
+
+    @Override
+    public void validate(Collection<String> indexedKeys) {
+        super.validate(indexedKeys);
+
+        if (startTimestamp == null || endTimestamp == null) {
+            throw new IllegalArgumentException("startTimestamp and endTimestamp cannot be null");
+        }
+
+        if (valueColumn == null || valueColumn.isEmpty()) {
+            throw new IllegalArgumentException("valueColumn cannot be empty");
+        }
+
+        if (aggregation == null) {
+            throw new IllegalArgumentException("aggregation cannot be null");
+        }
+
+        if (interval != null && interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+    }
+
+    /**
+     * Start of the bucket the given time falls into
+     */
+    public long bucketOf(long timestamp) {
+        if (interval == null) {
+            return startTimestamp;
+        }
+
+        return Math.floorDiv(timestamp, interval) * interval;
+    }
+}
@@ -0,0 +1,23 @@
+package com.milesight.beaveriot.data.model;
+
+/**
+ * Aggregation applied to the points of each time bucket.
+ */
+public enum TimeSeriesAggregation {
+    /**
+     * Value of the latest point
+     */
+    LAST,
+    MIN,
+    MAX,
+    AVG,
+    SUM,
+    /**
+     * Number of points, the value of the bucket is the count as well
+     */
+    COUNT,
+    /**
+     * Number of points per distinct value, each distinct value of a time window is returned as its own bucket
+     */
+    COUNT_BY_VALUE
+}
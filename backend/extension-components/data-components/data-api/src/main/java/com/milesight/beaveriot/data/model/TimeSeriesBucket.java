@@ -0,0 +1,28 @@
+package com.milesight.beaveriot.data.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Aggregated value of one time bucket.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeSeriesBucket {
+    /**
+     * Start of the bucket
+     */
+    private Long timestamp;
+
+    /**
+     * Aggregated value, or the distinct value for {@link TimeSeriesAggregation#COUNT_BY_VALUE}
+     */
+    private Object value;
+
+    /**
+     * Number of points in the bucket
+     */
+    private Long count;
+}
@@ -1,22 +1,166 @@
 package com.milesight.beaveriot.data.jpa;
 
+import com.milesight.beaveriot.data.filterable.Filterable;
 import com.milesight.beaveriot.data.jpa.repository.BaseJpaRepository;
+import com.milesight.beaveriot.data.jpa.support.SpecificationConverter;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation;
+import com.milesight.beaveriot.data.model.TimeSeriesBucket;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.criteria.Subquery;
+import org.hibernate.query.criteria.JpaSubQuery;
+import org.hibernate.query.sqm.NodeBuilder;
+import org.hibernate.query.sqm.tree.expression.SqmLiteral;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * @author leon
  */
 public class BaseJpaRepositoryImpl<T, ID extends Serializable> extends SimpleJpaRepository<T, ID> implements BaseJpaRepository<T, ID>, Serializable {
 
+    private final transient EntityManager entityManager;
+
     public BaseJpaRepositoryImpl(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
         super(entityInformation, entityManager);
+        this.entityManager = entityManager;
     }
 
     public BaseJpaRepositoryImpl(Class<T> domainClass, EntityManager entityManager) {
         super(domainClass, entityManager);
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<TimeSeriesBucket> aggregate(String timeColumn, Consumer<Filterable> filterable, TimeSeriesAggregateQuery query) {
+        if (query.getAggregation() == TimeSeriesAggregation.LAST) {
+            return aggregateLast(timeColumn, filterable, query);
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteriaQuery = cb.createTupleQuery();
+        Root<T> root = criteriaQuery.from(getDomainClass());
+        Expression value = root.get(query.getValueColumn());
+        criteriaQuery.where(toPredicate(root, criteriaQuery, cb, filterable, value));
+
+        // the same expression instances are referenced by select and group by,
+        // dialects render the group by items as select item references
+        List<Selection<?>> selections = new ArrayList<>();
+        List<Expression<?>> groupings = new ArrayList<>();
+        Expression<Long> bucket = toBucketExpression(cb, root.get(timeColumn), query.getInterval());
+        if (bucket != null) {
+            selections.add(bucket);
+            groupings.add(bucket);
+        }
+
+        switch (query.getAggregation()) {
+            case MIN -> selections.add(cb.least(value));
+            case MAX -> selections.add(cb.greatest(value));
+            case AVG -> selections.add(cb.avg(value));
+            case SUM -> selections.add(cb.sum(value));
+            case COUNT -> selections.add(cb.count(value));
+            case COUNT_BY_VALUE -> {
+                selections.add(value);
+                groupings.add(value);
+            }
+            default -> throw new IllegalArgumentException("Unsupported aggregation: " + query.getAggregation());
+        }
+        selections.add(cb.count(value));
+
+        criteriaQuery.multiselect(selections).groupBy(groupings);
+        if (bucket != null) {
+            criteriaQuery.orderBy(cb.asc(bucket));
+        }
+
+        List<TimeSeriesBucket> buckets = new ArrayList<>();
+        int valueIndex = bucket == null ? 0 : 1;
+        for (Tuple tuple : entityManager.createQuery(criteriaQuery).getResultList()) {
+            Long count = tuple.get(valueIndex + 1, Long.class);
+            if (count == null || count == 0) {
+                continue;
+            }
+
+            Long timestamp = bucket == null ? query.getStartTimestamp() : tuple.get(0, Long.class);
+            buckets.add(new TimeSeriesBucket(timestamp, tuple.get(valueIndex), count));
+        }
+        return buckets;
+    }
+
+    /**
+     * Latest point of each bucket, read in the same statement as the bucket counts: the value at the bucket end time
+     * is selected by a subquery correlated with the aggregated end time.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<TimeSeriesBucket> aggregateLast(String timeColumn, Consumer<Filterable> filterable, TimeSeriesAggregateQuery query) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteriaQuery = cb.createTupleQuery();
+        Root<T> root = criteriaQuery.from(getDomainClass());
+        Expression<Long> time = root.get(timeColumn);
+        Expression value = root.get(query.getValueColumn());
+        criteriaQuery.where(toPredicate(root, criteriaQuery, cb, filterable, value));
+
+        Expression<Long> lastTime = cb.max(time);
+        Subquery<Object> lastValueQuery = criteriaQuery.subquery(Object.class);
+        Root<T> lastValueRoot = lastValueQuery.from(getDomainClass());
+        Expression lastValue = lastValueRoot.get(query.getValueColumn());
+        lastValueQuery.select(lastValue)
+                .where(cb.and(toPredicate(lastValueRoot, cb.createQuery(), cb, filterable, lastValue),
+                        cb.equal(lastValueRoot.get(timeColumn), lastTime)));
+        // points sharing the last time are not distinguishable, any of them is taken
+        ((JpaSubQuery<Object>) lastValueQuery).fetch(1);
+
+        Expression<Long> bucket = toBucketExpression(cb, time, query.getInterval());
+        if (bucket != null) {
+            criteriaQuery.multiselect(bucket, lastValueQuery, cb.count(value)).groupBy(bucket).orderBy(cb.asc(bucket));
+        } else {
+            criteriaQuery.multiselect(lastValueQuery, cb.count(value));
+        }
+
+        List<TimeSeriesBucket> buckets = new ArrayList<>();
+        int valueIndex = bucket == null ? 0 : 1;
+        for (Tuple tuple : entityManager.createQuery(criteriaQuery).getResultList()) {
+            Long count = tuple.get(valueIndex + 1, Long.class);
+            if (count == null || count == 0) {
+                continue;
+            }
+
+            Long timestamp = bucket == null ? query.getStartTimestamp() : tuple.get(0, Long.class);
+            buckets.add(new TimeSeriesBucket(timestamp, tuple.get(valueIndex), count));
+        }
+        return buckets;
+    }
+
+    private Predicate toPredicate(Root<T> root, CriteriaQuery<?> criteriaQuery, CriteriaBuilder cb, Consumer<Filterable> filterable, Expression<?> value) {
+        Predicate restriction = SpecificationConverter.<T>toSpecification(filterable).toPredicate(root, criteriaQuery, cb);
+        return restriction == null ? cb.isNotNull(value) : cb.and(restriction, cb.isNotNull(value));
+    }
+
+    private Expression<Long> toBucketExpression(CriteriaBuilder cb, Expression<Long> time, Long interval) {
+        if (interval == null) {
+            return null;
+        }
+
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+
+        // the width is rendered inline rather than bound: a bound width is a different parameter in select and
+        // group by, and PostgreSQL rejects the selected bucket as neither grouped nor aggregated
+        NodeBuilder nodeBuilder = (NodeBuilder) cb;
+        Expression<Long> width = new SqmLiteral<>(interval, nodeBuilder.getLongType(), nodeBuilder);
+        return cb.diff(time, cb.function("mod", Long.class, time, width));
     }
 }
@@ -3,6 +3,8 @@ package com.milesight.beaveriot.data.jpa.repository;
 import com.milesight.beaveriot.data.api.BaseRepository;
 import com.milesight.beaveriot.data.filterable.Filterable;
 import com.milesight.beaveriot.data.jpa.support.SpecificationConverter;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesBucket;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -91,4 +93,10 @@ public interface BaseJpaRepository<T,ID extends Serializable> extends JpaReposit
     default Long count(Consumer<Filterable> filterable){
         return count(SpecificationConverter.toSpecification(filterable));
     }
+
+    /**
+     * Aggregate the matched rows in the database, grouped by time bucket.
+     * Only the bucketing and aggregation settings of the query are used, the rows are selected by the filterable.
+     */
+    List<TimeSeriesBucket> aggregate(String timeColumn, Consumer<Filterable> filterable, TimeSeriesAggregateQuery query);
 }
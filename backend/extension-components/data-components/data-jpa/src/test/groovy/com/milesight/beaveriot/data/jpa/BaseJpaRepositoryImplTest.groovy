@@ -0,0 +1,185 @@
+package com.milesight.beaveriot.data.jpa
+
+import com.milesight.beaveriot.data.filterable.Filterable
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation
+import com.milesight.beaveriot.data.model.TimeSeriesBucket
+import jakarta.persistence.Entity
+import jakarta.persistence.Id
+import jakarta.persistence.Table
+import org.hibernate.SessionFactory
+import org.hibernate.cfg.AvailableSettings
+import org.hibernate.cfg.Configuration
+import org.hibernate.dialect.PostgreSQLDialect
+import spock.lang.Specification
+
+import javax.sql.DataSource
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+import java.util.function.Consumer
+
+/**
+ * The statements are rendered with the PostgreSQL dialect and captured at the JDBC boundary,
+ * the rows of each statement are fed back from {@link #rows}.
+ */
+class BaseJpaRepositoryImplTest extends Specification {
+
+    List<String> statements = []
+
+    List<List<Object>> rows = []
+
+    SessionFactory sessionFactory
+
+    BaseJpaRepositoryImpl<PointPO, Long> repository
+
+    Consumer<Filterable> filterable = { Filterable f -> f.eq("entityId", 1L) } as Consumer<Filterable>
+
+    def setup() {
+        def dataSource = Stub(DataSource) {
+            getConnection() >> connection()
+        }
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(PointPO)
+                .setProperty(AvailableSettings.DIALECT, PostgreSQLDialect.name)
+                .setProperty(AvailableSettings.ALLOW_METADATA_ON_BOOT, "false")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "none")
+                .tap { properties.put(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE, dataSource) }
+                .buildSessionFactory()
+        repository = new BaseJpaRepositoryImpl<>(PointPO, sessionFactory.openSession())
+    }
+
+    def cleanup() {
+        sessionFactory.close()
+    }
+
+    def "should inline the bucket width so that the select and group by items are equal"() {
+        given:
+        rows = [[0L, 2.5d, 3L], [60000L, 4.0d, 1L]]
+
+        when:
+        def buckets = repository.aggregate("timestamp", filterable, query(TimeSeriesAggregation.AVG, 60000L))
+
+        then:
+        statements.size() == 1
+        def sql = statements[0].toLowerCase()
+        sql.contains("%60000")
+        // only the entity id is bound
+        sql.count("?") == 1
+        sql.contains("group by")
+        buckets == [new TimeSeriesBucket(0L, 2.5d, 3L), new TimeSeriesBucket(60000L, 4.0d, 1L)]
+    }
+
+    def "should aggregate the whole range into one bucket at the start without interval"() {
+        given:
+        rows = [[10.0d, 4L]]
+
+        when:
+        def buckets = repository.aggregate("timestamp", filterable, query(TimeSeriesAggregation.MAX, null))
+
+        then:
+        statements.size() == 1
+        !statements[0].contains("%")
+        !statements[0].toLowerCase().contains("group by")
+        buckets == [new TimeSeriesBucket(1000L, 10.0d, 4L)]
+    }
+
+    def "should skip the bucket of an empty range"() {
+        given:
+        rows = [[null, 0L]]
+
+        expect:
+        repository.aggregate("timestamp", filterable, query(TimeSeriesAggregation.SUM, null)) == []
+    }
+
+    def "should read the last value of each bucket in one statement"() {
+        given:
+        rows = [[0L, 1.5d, 2L], [60000L, 7.0d, 5L]]
+
+        when:
+        def buckets = repository.aggregate("timestamp", filterable, query(TimeSeriesAggregation.LAST, 60000L))
+
+        then:
+        statements.size() == 1
+        def sql = statements[0].toLowerCase()
+        sql.count("select") == 2
+        sql.contains("=max(pp1_0.timestamp)")
+        buckets == [new TimeSeriesBucket(0L, 1.5d, 2L), new TimeSeriesBucket(60000L, 7.0d, 5L)]
+    }
+
+    def "should count points per distinct value"() {
+        given:
+        rows = [[1.0d, 2L], [2.0d, 1L]]
+
+        when:
+        def buckets = repository.aggregate("timestamp", filterable, query(TimeSeriesAggregation.COUNT_BY_VALUE, null))
+
+        then:
+        statements[0].toLowerCase().contains("group by")
+        buckets == [new TimeSeriesBucket(1000L, 1.0d, 2L), new TimeSeriesBucket(1000L, 2.0d, 1L)]
+    }
+
+    def "should reject a non-positive interval"() {
+        when:
+        repository.aggregate("timestamp", filterable, query(TimeSeriesAggregation.AVG, 0L))
+
+        then:
+        thrown(IllegalArgumentException)
+        statements.isEmpty()
+    }
+
+    private static TimeSeriesAggregateQuery query(TimeSeriesAggregation aggregation, Long interval) {
+        def query = new TimeSeriesAggregateQuery()
+        query.startTimestamp = 1000L
+        query.endTimestamp = 200000L
+        query.valueColumn = "valueDouble"
+        query.aggregation = aggregation
+        query.interval = interval
+        return query
+    }
+
+    private Connection connection() {
+        return Stub(Connection) {
+            prepareStatement(*_) >> { args ->
+                statements << (args[0] as String)
+                statement()
+            }
+        }
+    }
+
+    private PreparedStatement statement() {
+        return Stub(PreparedStatement) {
+            executeQuery() >> resultSet()
+        }
+    }
+
+    private ResultSet resultSet() {
+        int row = -1
+        Object last = null
+        def read = { int column ->
+            last = rows[row][column - 1]
+            return last
+        }
+        return Stub(ResultSet) {
+            next() >> { ++row < rows.size() }
+            wasNull() >> { last == null }
+            getLong(_ as Integer) >> { int column -> (read(column) ?: 0L) as long }
+            getDouble(_ as Integer) >> { int column -> (read(column) ?: 0d) as double }
+            getObject(_ as Integer) >> { int column -> read(column) }
+            getObject(_ as Integer, _ as Class) >> { int column, Class type -> read(column) }
+        }
+    }
+
+    @Entity
+    @Table(name = "t_point")
+    static class PointPO {
+        @Id
+        Long id
+
+        Long entityId
+
+        Long timestamp
+
+        Double valueDouble
+    }
+}
@@ -45,6 +45,19 @@ public class TimeSeriesProperty {
          */
         private int batchSize = 1000;
 
+        /**
+         * Time span deleted between two progress checkpoints, an interrupted cleanup resumes from the last checkpoint.
+         * Default: 1 hour
+         */
+        private Duration window = Duration.ofHours(1);
+
+        /**
+         * Whether to drop whole expired partitions of range partitioned tables before deleting rows.
+         * Only supported on PostgreSQL, the tables must be partitioned by their time column.
+         * Default: false
+         */
+        private boolean dropPartitions = false;
+
         /**
          * Whether to log cleanup statistics.
          * Default: true
@@ -0,0 +1,111 @@
+package com.milesight.beaveriot.data.timeseries.influxdb;
+
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation;
+import com.milesight.beaveriot.data.model.TimeSeriesBucket;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds points into time buckets as they are read.
+ * <p>
+ * Points must be accepted in ascending time order, only the state of the current bucket is kept
+ * and each bucket is emitted once a point of a later bucket arrives.
+ */
+public class DynamoDbBucketFolder {
+    private final TimeSeriesAggregateQuery query;
+    private final List<TimeSeriesBucket> buckets = new ArrayList<>();
+    private Long currentBucket;
+    private long count;
+    private Object value;
+    private boolean integral;
+    private long longSum;
+    private double doubleSum;
+    private final Map<Object, Long> valueCounts = new LinkedHashMap<>();
+
+    public DynamoDbBucketFolder(TimeSeriesAggregateQuery query) {
+        this.query = query;
+    }
+
+    public void accept(long timestamp, Object pointValue) {
+        if (pointValue == null) {
+            return;
+        }
+
+        long bucket = query.bucketOf(timestamp);
+        if (currentBucket == null || currentBucket != bucket) {
+            emit();
+            currentBucket = bucket;
+        }
+
+        count++;
+        switch (query.getAggregation()) {
+            case LAST -> value = pointValue;
+            case MIN -> value = value == null || compare(pointValue, value) < 0 ? pointValue : value;
+            case MAX -> value = value == null || compare(pointValue, value) > 0 ? pointValue : value;
+            case AVG, SUM -> add(pointValue);
+            case COUNT_BY_VALUE -> valueCounts.merge(pointValue, 1L, Long::sum);
+            default -> {
+                // counted above
+            }
+        }
+    }
+
+    public List<TimeSeriesBucket> finish() {
+        emit();
+        return buckets;
+    }
+
+    private void add(Object pointValue) {
+        if (!(pointValue instanceof Number number)) {
+            throw new IllegalArgumentException("Cannot " + query.getAggregation() + " non-numeric value: " + pointValue);
+        }
+
+        if (count == 1) {
+            integral = true;
+        }
+        if (number instanceof Long || number instanceof Integer) {
+            longSum += number.longValue();
+        } else {
+            integral = false;
+        }
+        doubleSum += number.doubleValue();
+    }
+
+    private void emit() {
+        if (currentBucket == null || count == 0) {
+            return;
+        }
+
+        TimeSeriesAggregation aggregation = query.getAggregation();
+        if (aggregation == TimeSeriesAggregation.COUNT_BY_VALUE) {
+            valueCounts.forEach((distinctValue, distinctCount) -> buckets.add(new TimeSeriesBucket(currentBucket, distinctValue, distinctCount)));
+        } else {
+            Object bucketValue = switch (aggregation) {
+                case AVG -> doubleSum / count;
+                case SUM -> integral ? (Object) longSum : (Object) doubleSum;
+                case COUNT -> count;
+                default -> value;
+            };
+            buckets.add(new TimeSeriesBucket(currentBucket, bucketValue, count));
+        }
+
+        count = 0;
+        value = null;
+        longSum = 0;
+        doubleSum = 0;
+        valueCounts.clear();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a instanceof Number na && b instanceof Number nb) {
+            return Double.compare(na.doubleValue(), nb.doubleValue());
+        }
+
+        return ((Comparable) a).compareTo(b);
+    }
+}
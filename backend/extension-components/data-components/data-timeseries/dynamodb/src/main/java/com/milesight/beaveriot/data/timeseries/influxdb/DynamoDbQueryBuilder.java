@@ -35,6 +35,7 @@ public class DynamoDbQueryBuilder {
     private TimeSeriesCursor cursor;
     private Consumer<Filterable> filter;
     private Integer limit;
+    private Collection<String> projection;
 
     public DynamoDbQueryBuilder(String tableName) {
         this.tableName = tableName;
@@ -117,6 +118,14 @@ public class DynamoDbQueryBuilder {
         return this;
     }
 
+    /**
+     * Only return the given attributes of the matched items
+     */
+    public DynamoDbQueryBuilder projection(Collection<String> projection) {
+        this.projection = projection;
+        return this;
+    }
+
     public QueryRequest build() {
         this.validateTime();
 
@@ -133,6 +142,16 @@ public class DynamoDbQueryBuilder {
             builder.filterExpression(filterExpression);
         }
 
+        if (projection != null && !projection.isEmpty()) {
+            builder.projectionExpression(projection.stream()
+                    .map(column -> {
+                        String name = StringUtils.toSnakeCase(column);
+                        expressionAttributeNames.put(placeholderName(name), name);
+                        return placeholderName(name);
+                    })
+                    .collect(Collectors.joining(", ")));
+        }
+
         builder.expressionAttributeNames(expressionAttributeNames);
         builder.expressionAttributeValues(expressionAttributeValues);
 
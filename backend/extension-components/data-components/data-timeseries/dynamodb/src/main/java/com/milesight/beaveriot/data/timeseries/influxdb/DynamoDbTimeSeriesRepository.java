@@ -2,8 +2,11 @@ package com.milesight.beaveriot.data.timeseries.influxdb;
 
 import com.milesight.beaveriot.base.utils.StringUtils;
 import com.milesight.beaveriot.data.api.TimeSeriesRepository;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesBucket;
 import com.milesight.beaveriot.data.model.TimeSeriesCursor;
 import com.milesight.beaveriot.data.model.TimeSeriesPeriodQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesQueryOrder;
 import com.milesight.beaveriot.data.model.TimeSeriesResult;
 import com.milesight.beaveriot.data.model.TimeSeriesTimePointQuery;
 import com.milesight.beaveriot.data.support.TimeSeriesDataConverter;
@@ -198,6 +201,45 @@ public class DynamoDbTimeSeriesRepository<T> implements TimeSeriesRepository<T>
         return TimeSeriesResult.of(poList, cursor);
     }
 
+    @Override
+    public TimeSeriesResult<TimeSeriesBucket> aggregate(TimeSeriesAggregateQuery query) {
+        query.validate(indexedColumns);
+        if (query.getEndTimestamp() <= query.getStartTimestamp()) {
+            return TimeSeriesResult.of();
+        }
+
+        // DynamoDB has no server side aggregation, the items are read page by page in time order and folded
+        // into buckets, only the time and value attributes of the current page are held in memory
+        String valueColumn = StringUtils.toSnakeCase(query.getValueColumn());
+        DynamoDbBucketFolder folder = new DynamoDbBucketFolder(query);
+        TimeSeriesCursor cursor = null;
+        do {
+            QueryResponse queryResponse = client.query(new DynamoDbQueryBuilder(tableName)
+                    .indexedColumns(indexedColumns)
+                    .indexedKeyValues(query.getIndexedKeyValues())
+                    .timeColumn(timeColumn)
+                    .start(query.getStartTimestamp())
+                    .end(query.getEndTimestamp() - 1)
+                    .filter(query.getFilterable())
+                    .order(TimeSeriesQueryOrder.ASC)
+                    .projection(List.of(timeColumn, valueColumn))
+                    .cursor(cursor)
+                    .build());
+
+            queryResponse.items().forEach(item -> folder.accept(
+                    Long.parseLong(item.get(timeColumn).n()),
+                    DynamoDbSupport.toValue(item.get(valueColumn))));
+
+            cursor = null;
+            if (queryResponse.hasLastEvaluatedKey()) {
+                Map<String, Object> indexedKeyValues = toIndexedKeyValues(queryResponse.lastEvaluatedKey());
+                cursor = TimeSeriesCursor.of((Long) indexedKeyValues.get(timeColumn), indexedKeyValues);
+            }
+        } while (cursor != null);
+
+        return TimeSeriesResult.of(folder.finish());
+    }
+
     @Override
     public void save(List<T> itemList) {
         if (CollectionUtils.isEmpty(itemList)) {
@@ -0,0 +1,104 @@
+package com.milesight.beaveriot.data.timeseries.influxdb
+
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation
+import com.milesight.beaveriot.data.model.TimeSeriesBucket
+import spock.lang.Specification
+
+class DynamoDbBucketFolderTest extends Specification {
+
+    def "should fold points into epoch aligned buckets"() {
+        given:
+        def folder = new DynamoDbBucketFolder(query(aggregation, 1000L))
+
+        when:
+        [[0L, 3L], [500L, 1L], [999L, 2L], [2500L, 5L]].each { folder.accept(it[0] as long, it[1]) }
+
+        then:
+        folder.finish() == [new TimeSeriesBucket(0L, first, 3L), new TimeSeriesBucket(2000L, second, 1L)]
+
+        where:
+        aggregation                 || first || second
+        TimeSeriesAggregation.LAST  || 2L    || 5L
+        TimeSeriesAggregation.MIN   || 1L    || 5L
+        TimeSeriesAggregation.MAX   || 3L    || 5L
+        TimeSeriesAggregation.SUM   || 6L    || 5L
+        TimeSeriesAggregation.AVG   || 2.0d  || 5.0d
+        TimeSeriesAggregation.COUNT || 3L    || 1L
+    }
+
+    def "should sum as a double once a point is not integral"() {
+        given:
+        def folder = new DynamoDbBucketFolder(query(TimeSeriesAggregation.SUM, null))
+
+        when:
+        folder.accept(1000L, 1L)
+        folder.accept(1500L, 0.5d)
+
+        then:
+        folder.finish() == [new TimeSeriesBucket(100L, 1.5d, 2L)]
+    }
+
+    def "should compare numbers of different types by value"() {
+        given:
+        def folder = new DynamoDbBucketFolder(query(TimeSeriesAggregation.MAX, null))
+
+        when:
+        folder.accept(1000L, 2L)
+        folder.accept(1500L, 2.5d)
+        folder.accept(1700L, 1)
+
+        then:
+        folder.finish() == [new TimeSeriesBucket(100L, 2.5d, 3L)]
+    }
+
+    def "should count each distinct value of a bucket"() {
+        given:
+        def folder = new DynamoDbBucketFolder(query(TimeSeriesAggregation.COUNT_BY_VALUE, 1000L))
+
+        when:
+        folder.accept(0L, true)
+        folder.accept(100L, false)
+        folder.accept(200L, true)
+        folder.accept(1000L, false)
+
+        then:
+        folder.finish() == [
+                new TimeSeriesBucket(0L, true, 2L),
+                new TimeSeriesBucket(0L, false, 1L),
+                new TimeSeriesBucket(1000L, false, 1L),
+        ]
+    }
+
+    def "should skip points without value and empty ranges"() {
+        given:
+        def folder = new DynamoDbBucketFolder(query(TimeSeriesAggregation.COUNT, 1000L))
+
+        when:
+        folder.accept(0L, null)
+
+        then:
+        folder.finish() == []
+    }
+
+    def "should reject averaging non-numeric values"() {
+        given:
+        def folder = new DynamoDbBucketFolder(query(TimeSeriesAggregation.AVG, null))
+
+        when:
+        folder.accept(1000L, "on")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static TimeSeriesAggregateQuery query(TimeSeriesAggregation aggregation, Long interval) {
+        def query = new TimeSeriesAggregateQuery()
+        query.startTimestamp = 100L
+        query.endTimestamp = 10000L
+        query.valueColumn = "valueLong"
+        query.aggregation = aggregation
+        query.interval = interval
+        return query
+    }
+}
@@ -8,6 +8,7 @@ import com.milesight.beaveriot.data.filterable.condition.CompositeCondition;
 import com.milesight.beaveriot.data.filterable.condition.Condition;
 import com.milesight.beaveriot.data.filterable.enums.BooleanOperator;
 import com.milesight.beaveriot.data.filterable.enums.SearchOperator;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation;
 import com.milesight.beaveriot.data.model.TimeSeriesCursor;
 import com.milesight.beaveriot.data.model.TimeSeriesQueryOrder;
 import org.springframework.data.util.Pair;
@@ -52,6 +53,12 @@ public class FluxQueryBuilder {
 
     private TimeSeriesCursor cursor;
 
+    private String aggregateField;
+
+    private TimeSeriesAggregation aggregation;
+
+    private Long aggregateInterval;
+
     public FluxQueryBuilder filter(Consumer<Filterable> filter) {
         this.filter = filter;
         return this;
@@ -114,6 +121,20 @@ public class FluxQueryBuilder {
         return this;
     }
 
+    /**
+     * Aggregate the values of the field per window instead of returning raw records.
+     * The aggregated value of each window is returned with field {@link InfluxDbConstants#AGGREGATE_VALUE_FIELD},
+     * its number of points with field {@link InfluxDbConstants#AGGREGATE_COUNT_FIELD}, both at the window start.
+     *
+     * @param interval window size in milliseconds, or null to aggregate the whole range as one window
+     */
+    public FluxQueryBuilder aggregate(String field, TimeSeriesAggregation aggregation, Long interval) {
+        this.aggregateField = field;
+        this.aggregation = aggregation;
+        this.aggregateInterval = interval;
+        return this;
+    }
+
     public FluxQueryBuilder(String bucket, String measurement) {
         this.bucket = bucket;
         this.measurement = measurement;
@@ -122,6 +143,9 @@ public class FluxQueryBuilder {
     public String build() {
         this.validateStartAndEnd();
         StringBuilder sb = new StringBuilder();
+        if (aggregation != null) {
+            sb.append("data = ");
+        }
         sb.append(String.format("from(bucket: \"%s\")\n", bucket));
         sb.append(String.format("  |> range(start: %s, stop: %s)\n", Instant.ofEpochMilli(this.start).toString(), Instant.ofEpochMilli(this.end).toString()));
         sb.append(String.format("  |> filter(fn: (r) => r[\"_measurement\"] == \"%s\"", measurement));
@@ -136,6 +160,11 @@ public class FluxQueryBuilder {
         String filterExpression = buildFilterExpression(queryFilter);
         sb.append(" and ").append(filterExpression).append(")\n");
 
+        if (aggregation != null) {
+            appendAggregation(sb);
+            return sb.toString();
+        }
+
         if (cursor != null && !cursor.getIndexedKeyValues().isEmpty()) {
             sb.append("  |> filter(fn: (r) => ").append(getSortKeyFilter()).append(")\n");
         }
@@ -152,6 +181,40 @@ public class FluxQueryBuilder {
         return sb.toString();
     }
 
+    private void appendAggregation(StringBuilder sb) {
+        sb.append(String.format("  |> filter(fn: (r) => r[\"_field\"] == \"%s\")\n", StringUtils.toSnakeCase(aggregateField)));
+        if (aggregateInterval != null) {
+            // windows are aligned to the epoch, and the "_start" column of each table becomes the window start
+            sb.append(String.format("  |> window(every: %dms)\n", aggregateInterval));
+        }
+
+        if (aggregation == TimeSeriesAggregation.COUNT_BY_VALUE) {
+            // values of any type are grouped by their string form, the first point of each group carries the original value
+            sb.append("  |> map(fn: (r) => ({r with value_key: string(v: r._value)}))\n");
+            sb.append("  |> group(columns: [\"_start\", \"value_key\"])\n");
+            sb.append(String.format("union(tables: [\n  data |> first() |> set(key: \"_field\", value: \"%s\"),\n", InfluxDbConstants.AGGREGATE_VALUE_FIELD));
+            sb.append(String.format("  data |> count() |> set(key: \"_field\", value: \"%s\")\n])\n", InfluxDbConstants.AGGREGATE_COUNT_FIELD));
+            return;
+        }
+
+        sb.append("  |> group(columns: [\"_start\"])\n");
+        sb.append(String.format("  |> sort(columns: [\"%s\"])\n", InfluxDbConstants.TIME_COLUMN));
+        sb.append(String.format("union(tables: [\n  data |> %s() |> set(key: \"_field\", value: \"%s\"),\n", toFluxFunction(aggregation), InfluxDbConstants.AGGREGATE_VALUE_FIELD));
+        sb.append(String.format("  data |> count() |> set(key: \"_field\", value: \"%s\")\n])\n", InfluxDbConstants.AGGREGATE_COUNT_FIELD));
+    }
+
+    private static String toFluxFunction(TimeSeriesAggregation aggregation) {
+        return switch (aggregation) {
+            case LAST -> "last";
+            case MIN -> "min";
+            case MAX -> "max";
+            case AVG -> "mean";
+            case SUM -> "sum";
+            case COUNT -> "count";
+            default -> throw new UnsupportedOperationException("Unsupported aggregation: " + aggregation);
+        };
+    }
+
     public String getSortKeyFilter() {
         Map<String, Object> sortKeyValues = cursor.getIndexedKeyValues();
         SearchFilter queryFilter = new SearchFilter(BooleanOperator.AND, new ArrayList<>());
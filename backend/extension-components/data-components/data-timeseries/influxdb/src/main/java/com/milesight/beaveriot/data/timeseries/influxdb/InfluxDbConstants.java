@@ -12,4 +12,10 @@ public class InfluxDbConstants {
     public static final String URL_CONFIG = CONFIG_PREFIX + ".url";
 
     public static final String TIME_COLUMN = "_time";
+
+    public static final String WINDOW_START_COLUMN = "_start";
+
+    public static final String AGGREGATE_VALUE_FIELD = "aggregate_value";
+
+    public static final String AGGREGATE_COUNT_FIELD = "aggregate_count";
 }
@@ -11,6 +11,7 @@ import com.milesight.beaveriot.data.support.TimeSeriesDataConverter;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Instant;
 import java.util.*;
 import java.util.function.Consumer;
 
@@ -123,6 +124,43 @@ public class InfluxDbTimeSeriesRepository<T> implements TimeSeriesRepository<T>
         return TimeSeriesResult.of(result, nextCursor);
     }
 
+    @Override
+    public TimeSeriesResult<TimeSeriesBucket> aggregate(TimeSeriesAggregateQuery query) {
+        query.validate(indexedColumns);
+
+        FluxQueryBuilder queryBuilder = new FluxQueryBuilder(bucket, tableName)
+                .indexedColumns(indexedColumns)
+                .indexedKeyValues(query.getIndexedKeyValues())
+                .start(query.getStartTimestamp())
+                .end(query.getEndTimestamp())
+                .filter(query.getFilterable())
+                .aggregate(query.getValueColumn(), query.getAggregation(), query.getInterval());
+
+        Map<String, TimeSeriesBucket> buckets = new HashMap<>();
+        for (FluxTable table : this.client.getQueryApi().query(queryBuilder.build())) {
+            for (FluxRecord rec : table.getRecords()) {
+                Instant windowStart = (Instant) rec.getValueByKey(InfluxDbConstants.WINDOW_START_COLUMN);
+                if (windowStart == null) {
+                    continue;
+                }
+
+                long timestamp = query.getInterval() == null ? query.getStartTimestamp() : windowStart.toEpochMilli();
+                TimeSeriesBucket timeSeriesBucket = buckets.computeIfAbsent(timestamp + "|" + rec.getValueByKey("value_key"),
+                        k -> new TimeSeriesBucket(timestamp, null, 0L));
+                if (InfluxDbConstants.AGGREGATE_COUNT_FIELD.equals(rec.getField())) {
+                    timeSeriesBucket.setCount(((Number) rec.getValue()).longValue());
+                } else {
+                    timeSeriesBucket.setValue(rec.getValue());
+                }
+            }
+        }
+
+        return TimeSeriesResult.of(buckets.values().stream()
+                .filter(b -> b.getCount() > 0)
+                .sorted(Comparator.comparing(TimeSeriesBucket::getTimestamp))
+                .toList());
+    }
+
     @Override
     public void save(List<T> itemList) {
         this.client.getWriteApi().writePoints(bucket, client.getOrgName(), itemList.stream().map(po -> {
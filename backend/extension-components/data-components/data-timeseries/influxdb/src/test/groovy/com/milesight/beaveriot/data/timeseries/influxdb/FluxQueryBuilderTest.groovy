@@ -0,0 +1,71 @@
+package com.milesight.beaveriot.data.timeseries.influxdb
+
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation
+import spock.lang.Specification
+
+class FluxQueryBuilderTest extends Specification {
+
+    def "should window the field and union the aggregate with the count"() {
+        when:
+        def flux = builder().aggregate("valueDouble", aggregation, 60000L).build()
+
+        then:
+        flux.startsWith("data = from(bucket: \"beaver\")")
+        flux.contains('|> range(start: 1970-01-01T00:00:01Z, stop: 1970-01-01T00:03:20Z)')
+        flux.contains('r["entity_id"] == "1"')
+        flux.contains('|> filter(fn: (r) => r["_field"] == "value_double")')
+        flux.contains("|> window(every: 60000ms)")
+        flux.contains('|> group(columns: ["_start"])')
+        flux.contains("data |> ${function}() |> set(key: \"_field\", value: \"aggregate_value\")")
+        flux.contains('data |> count() |> set(key: "_field", value: "aggregate_count")')
+        !flux.contains("limit(")
+
+        where:
+        aggregation                 || function
+        TimeSeriesAggregation.LAST  || "last"
+        TimeSeriesAggregation.MIN   || "min"
+        TimeSeriesAggregation.MAX   || "max"
+        TimeSeriesAggregation.AVG   || "mean"
+        TimeSeriesAggregation.SUM   || "sum"
+        TimeSeriesAggregation.COUNT || "count"
+    }
+
+    def "should aggregate the whole range as one window without interval"() {
+        when:
+        def flux = builder().aggregate("valueLong", TimeSeriesAggregation.MAX, null).build()
+
+        then:
+        !flux.contains("window(")
+        flux.contains('|> group(columns: ["_start"])')
+        flux.contains('data |> max() |> set(key: "_field", value: "aggregate_value")')
+    }
+
+    def "should count distinct values by their string form"() {
+        when:
+        def flux = builder().aggregate("valueString", TimeSeriesAggregation.COUNT_BY_VALUE, 60000L).build()
+
+        then:
+        flux.contains("|> window(every: 60000ms)")
+        flux.contains("|> map(fn: (r) => ({r with value_key: string(v: r._value)}))")
+        flux.contains('|> group(columns: ["_start", "value_key"])')
+        flux.contains('data |> first() |> set(key: "_field", value: "aggregate_value")')
+        flux.contains('data |> count() |> set(key: "_field", value: "aggregate_count")')
+    }
+
+    def "should keep the raw record query when not aggregating"() {
+        when:
+        def flux = builder().limit(10).build()
+
+        then:
+        flux.startsWith("from(bucket:")
+        !flux.contains("union(")
+        flux.contains("|> limit(n: 10)")
+    }
+
+    private static FluxQueryBuilder builder() {
+        return new FluxQueryBuilder("beaver", "entity_history")
+                .indexedKeyValues([entityId: 1L])
+                .start(1000L)
+                .end(200000L)
+    }
+}
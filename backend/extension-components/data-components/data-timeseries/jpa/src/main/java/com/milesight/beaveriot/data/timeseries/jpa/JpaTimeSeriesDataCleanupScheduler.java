@@ -2,11 +2,15 @@ package com.milesight.beaveriot.data.timeseries.jpa;
 
 import com.milesight.beaveriot.base.annotations.shedlock.DistributedLock;
 import com.milesight.beaveriot.base.annotations.shedlock.LockScope;
+import com.milesight.beaveriot.base.utils.StringUtils;
 import com.milesight.beaveriot.data.api.SupportTimeSeries;
 import com.milesight.beaveriot.data.api.TimeSeriesRepository;
 import com.milesight.beaveriot.data.timeseries.common.TimeSeriesProperty;
+import com.milesight.beaveriot.data.timeseries.jpa.retention.JpaTimeSeriesRetentionExecutor;
+import com.milesight.beaveriot.data.timeseries.jpa.retention.JpaTimeSeriesRetentionExecutor.RetentionTarget;
 import com.milesight.beaveriot.permission.helper.TenantValidationBypass;
 import jakarta.annotation.PostConstruct;
+import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,6 +19,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Field;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
@@ -36,6 +41,7 @@ public class JpaTimeSeriesDataCleanupScheduler {
 
     private final TimeSeriesProperty timeSeriesProperty;
     private final List<TimeSeriesRepository<?>> repositories;
+    private final JpaTimeSeriesRetentionExecutor retentionExecutor;
     private final Map<String, Collection<String>> categoryToTableNamesMap = new HashMap<>();
 
     @PostConstruct
@@ -62,7 +68,7 @@ public class JpaTimeSeriesDataCleanupScheduler {
     private void buildCategoryToTableNamesMap() {
         for (TimeSeriesRepository<?> timeSeriesRepository : repositories) {
             if (!(timeSeriesRepository instanceof JpaTimeSeriesRepository<?> repository)) {
-                return;
+                continue;
             }
 
             Class<?> entityClass = repository.getEntityClass();
@@ -83,10 +89,11 @@ public class JpaTimeSeriesDataCleanupScheduler {
     /**
      * Scheduled task to clean up expired time-series data.
      * Runs based on the cron expression configured in timeseries.cleanup.cron.
-     * Note: No @Transactional here - each batch deletion will be in its own transaction.
+     * Note: No @Transactional here - each chunk deletion is a statement of its own.
+     * The lock is held for the whole run, a node taking over after a crash resumes from the saved watermarks.
      */
     @Scheduled(cron = "${timeseries.cleanup.cron:0 0 2 * * ?}")
-    @DistributedLock(name = "jpa-timeseries-cleanup", lockAtLeastFor = "59s", lockAtMostFor = "59s", scope = LockScope.GLOBAL, throwOnLockFailure = false)
+    @DistributedLock(name = "jpa-timeseries-cleanup", lockAtLeastFor = "59s", lockAtMostFor = "PT6H", scope = LockScope.GLOBAL, throwOnLockFailure = false)
     public void cleanupExpiredData() {
         if (!timeSeriesProperty.getCleanup().isEnabled()) {
             return;
@@ -102,14 +109,14 @@ public class JpaTimeSeriesDataCleanupScheduler {
 
         TenantValidationBypass.run(() -> {
             long startTime = System.currentTimeMillis();
-            int totalDeleted = 0;
+            long totalDeleted = 0;
             
             for (Map.Entry<String, Duration> entry : retentionPolicies.entrySet()) {
                 String category = entry.getKey();
                 Duration retention = entry.getValue();
 
                 try {
-                    int deleted = cleanupByCategory(category, retention);
+                    long deleted = cleanupByCategory(category, retention);
                     totalDeleted += deleted;
 
                     if (timeSeriesProperty.getCleanup().isLogStatistics() && deleted > 0) {
@@ -136,7 +143,7 @@ public class JpaTimeSeriesDataCleanupScheduler {
      * @param retention the retention duration
      * @return the number of deleted records
      */
-    private int cleanupByCategory(String category, Duration retention) {
+    private long cleanupByCategory(String category, Duration retention) {
         // Resolve category to actual table names (can be multiple tables)
         Collection<String> tableNames = categoryToTableNamesMap.get(category);
 
@@ -146,8 +153,7 @@ public class JpaTimeSeriesDataCleanupScheduler {
         }
 
         long expirationTimestamp = Instant.now().minus(retention).toEpochMilli();
-        int batchSize = timeSeriesProperty.getCleanup().getBatchSize();
-        int totalDeleted = 0;
+        long totalDeleted = 0;
 
         // Clean up all tables associated with this category
         for (String tableName : tableNames) {
@@ -160,18 +166,14 @@ public class JpaTimeSeriesDataCleanupScheduler {
             }
 
             try {
-                int deleted = 0;
-                int deletedInBatch;
-
-                do {
-                    // Each batch deletion runs in its own transaction
-                    deletedInBatch = repository.deleteByTimeBefore(expirationTimestamp, batchSize);
-                    deleted += deletedInBatch;
-                } while (deletedInBatch == batchSize);
+                RetentionTarget target = new RetentionTarget(tableName,
+                        getIdColumnFromRepository(repository),
+                        StringUtils.toSnakeCase(repository.getTimeColumn()));
+                long deleted = retentionExecutor.purge(category, target, expirationTimestamp);
 
                 totalDeleted += deleted;
                 log.debug("Deleted {} records from category '{}' (table: '{}') using batch size {}",
-                        deleted, category, tableName, batchSize);
+                        deleted, category, tableName, timeSeriesProperty.getCleanup().getBatchSize());
             } catch (Exception e) {
                 log.error("Error deleting expired data from category '{}' (table: '{}'): {}",
                         category, tableName, e.getMessage(), e);
@@ -223,4 +225,22 @@ public class JpaTimeSeriesDataCleanupScheduler {
         return tableAnnotation.name();
     }
 
+    /**
+     * Extract the primary key column name from repository's entity class.
+     *
+     * @param repository the JPA time series repository
+     * @return the primary key column name
+     */
+    private String getIdColumnFromRepository(JpaTimeSeriesRepository<?> repository) {
+        for (Class<?> clazz = repository.getEntityClass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Id.class)) {
+                    return StringUtils.toSnakeCase(field.getName());
+                }
+            }
+        }
+
+        throw new IllegalArgumentException("Cannot find id column for entity class: " + repository.getEntityClass().getName());
+    }
+
 }
@@ -4,6 +4,8 @@ import com.milesight.beaveriot.base.utils.StringUtils;
 import com.milesight.beaveriot.data.api.TimeSeriesRepository;
 import com.milesight.beaveriot.data.filterable.Filterable;
 import com.milesight.beaveriot.data.jpa.repository.BaseJpaRepository;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesBucket;
 import com.milesight.beaveriot.data.model.TimeSeriesCursor;
 import com.milesight.beaveriot.data.model.TimeSeriesPeriodQuery;
 import com.milesight.beaveriot.data.model.TimeSeriesQueryOrder;
@@ -17,8 +19,6 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.core.ResolvableType;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 
@@ -40,6 +40,7 @@ public class JpaTimeSeriesRepository<T> implements TimeSeriesRepository<T> {
     private BaseJpaRepository<T, ?> jpaRepository;
     @Getter
     private final Class<T> entityClass;
+    @Getter
     private final String timeColumn;
     private final List<String> indexedColumns;
     private final TimeSeriesDataConverter converter;
@@ -146,6 +147,19 @@ public class JpaTimeSeriesRepository<T> implements TimeSeriesRepository<T> {
         return TimeSeriesResult.of(result, nextCursor);
     }
 
+    @Override
+    public TimeSeriesResult<TimeSeriesBucket> aggregate(TimeSeriesAggregateQuery query) {
+        query.validate(indexedColumns);
+        Consumer<Filterable> filterable = toIndexFilterable(query.getIndexedKeyValues());
+        filterable = filterable.andThen(fe -> fe.ge(timeColumn, query.getStartTimestamp()).lt(timeColumn, query.getEndTimestamp()));
+        if (query.getFilterable() != null) {
+            filterable = filterable.andThen(query.getFilterable());
+        }
+
+        query.setValueColumn(StringUtils.toCamelCase(query.getValueColumn()));
+        return TimeSeriesResult.of(jpaRepository.aggregate(timeColumn, filterable, query));
+    }
+
     @Override
     public void save(List<T> ditemList) {
         jpaRepository.saveAll(ditemList);
@@ -169,24 +183,4 @@ public class JpaTimeSeriesRepository<T> implements TimeSeriesRepository<T> {
         return f1 -> f1.and(f2 -> indexedKeyValues.forEach((key, value) -> f2.eq(StringUtils.toCamelCase(key), value)));
     }
 
-    /**
-     * Delete a single batch of records before the specified timestamp in a new transaction.
-     * Using REQUIRES_NEW to ensure each batch is in its own independent transaction.
-     *
-     * @param timestamp the timestamp before which data should be deleted
-     * @param limit the limit size for this deletion operation
-     * @return the number of deleted records in this batch
-     */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public int deleteByTimeBefore(long timestamp, int limit) {
-        Consumer<Filterable> filterable = fe -> fe.lt(timeColumn, timestamp);
-        List<T> toDelete = jpaRepository.findAll(filterable, PageRequest.of(0, limit)).stream().toList();
-
-        if (!toDelete.isEmpty()) {
-            jpaRepository.deleteAll(toDelete);
-        }
-
-        return toDelete.size();
-    }
-
 }
@@ -0,0 +1,171 @@
+package com.milesight.beaveriot.data.timeseries.jpa.retention;
+
+import com.milesight.beaveriot.data.timeseries.common.TimeSeriesProperty;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deletes expired rows of JPA time-series tables.
+ * <p>
+ * Expired partitions are dropped first when enabled. The remaining rows are deleted from the oldest on, in time
+ * windows of {@code timeseries.cleanup.window}, each window in chunks of {@code timeseries.cleanup.batch-size}
+ * rows with one set-based statement per chunk. The end of every finished window is saved as the watermark of the
+ * table, so a cleanup interrupted by a restart continues from there instead of scanning the deleted range again.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "timeseries.database", havingValue = "jpa")
+public class JpaTimeSeriesRetentionExecutor {
+
+    private static final String METRIC_PREFIX = "timeseries.retention.";
+
+    private static final Pattern RANGE_PARTITION_BOUND = Pattern.compile("FOR VALUES FROM \\('?(-?\\d+)'?\\) TO \\('?(-?\\d+)'?\\)");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TimeSeriesProperty timeSeriesProperty;
+
+    private final RetentionWatermarkStore watermarkStore;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicLong> watermarkGauges = new ConcurrentHashMap<>();
+
+    private volatile RetentionDialect dialect;
+
+    public JpaTimeSeriesRetentionExecutor(JdbcTemplate jdbcTemplate, TimeSeriesProperty timeSeriesProperty, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.timeSeriesProperty = timeSeriesProperty;
+        this.watermarkStore = new RetentionWatermarkStore(jdbcTemplate);
+        this.meterRegistry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+    }
+
+    /**
+     * Delete the rows of the table older than the cutoff.
+     *
+     * @return the number of rows deleted by this call, rows of dropped partitions are not counted
+     */
+    public long purge(String category, RetentionTarget target, long cutoff) {
+        Tags tags = Tags.of("category", category, "table", target.tableName());
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            if (timeSeriesProperty.getCleanup().isDropPartitions() && getDialect().supportsPartitionDrop()) {
+                dropExpiredPartitions(target, cutoff, tags);
+            }
+
+            return deleteExpiredRows(target, cutoff, tags);
+        } finally {
+            sample.stop(meterRegistry.timer(METRIC_PREFIX + "duration", tags));
+        }
+    }
+
+    private long deleteExpiredRows(RetentionTarget target, long cutoff, Tags tags) {
+        RetentionDialect currentDialect = getDialect();
+        String deleteSql = currentDialect.chunkDeleteSql(target.tableName(), target.idColumn(), target.timeColumn());
+        String minTimeSql = currentDialect.minTimeSql(target.tableName(), target.timeColumn());
+        int batchSize = timeSeriesProperty.getCleanup().getBatchSize();
+        long windowMillis = timeSeriesProperty.getCleanup().getWindow().toMillis();
+        Counter deletedCounter = meterRegistry.counter(METRIC_PREFIX + "deleted", tags);
+        AtomicLong watermarkGauge = watermarkGauges.computeIfAbsent(target.tableName(),
+                k -> meterRegistry.gauge(METRIC_PREFIX + "watermark", tags, new AtomicLong()));
+
+        RetentionWatermark watermark = watermarkStore.find(target.tableName())
+                // a later cutoff only extends the range of an unfinished run, an earlier one means the retention grew
+                .filter(w -> !w.isFinished() && w.getCutoff() <= cutoff)
+                .orElse(null);
+        long previouslyDeleted = 0;
+        Long windowStart;
+        if (watermark != null) {
+            log.info("Resuming cleanup of table '{}' from watermark {}", target.tableName(), watermark.getWatermark());
+            previouslyDeleted = watermark.getDeleted();
+            windowStart = jdbcTemplate.queryForObject(minTimeSql, Long.class, watermark.getWatermark(), cutoff);
+        } else {
+            watermark = new RetentionWatermark(target.tableName(), cutoff, Long.MIN_VALUE, 0, false, 0);
+            windowStart = jdbcTemplate.queryForObject(minTimeSql, Long.class, Long.MIN_VALUE, cutoff);
+        }
+        watermark.setCutoff(cutoff);
+
+        long deleted = 0;
+        while (windowStart != null) {
+            long windowEnd = windowStart < cutoff - windowMillis ? windowStart + windowMillis : cutoff;
+            int deletedInChunk;
+            do {
+                deletedInChunk = jdbcTemplate.update(deleteSql, windowStart, windowEnd, batchSize);
+                deleted += deletedInChunk;
+                deletedCounter.increment(deletedInChunk);
+            } while (deletedInChunk >= batchSize);
+
+            watermark.setWatermark(windowEnd);
+            watermark.setDeleted(previouslyDeleted + deleted);
+            watermarkStore.save(watermark);
+            watermarkGauge.set(windowEnd);
+
+            // skip empty windows, the next one starts at the oldest remaining row
+            windowStart = windowEnd < cutoff ? jdbcTemplate.queryForObject(minTimeSql, Long.class, windowEnd, cutoff) : null;
+        }
+
+        watermark.setWatermark(cutoff);
+        watermark.setDeleted(previouslyDeleted + deleted);
+        watermark.setFinished(true);
+        watermarkStore.save(watermark);
+        watermarkGauge.set(cutoff);
+        return deleted;
+    }
+
+    private void dropExpiredPartitions(RetentionTarget target, long cutoff, Tags tags) {
+        List<String> partitionKeys = jdbcTemplate.queryForList(
+                "SELECT pg_get_partkeydef(c.oid) FROM pg_class c WHERE c.relname = ? AND c.relkind = 'p'",
+                String.class, target.tableName());
+        String expectedPartitionKey = "range (" + target.timeColumn() + ")";
+        if (partitionKeys.isEmpty() || !expectedPartitionKey.equals(partitionKeys.get(0).replace("\"", "").toLowerCase(Locale.ROOT))) {
+            return;
+        }
+
+        List<Map<String, Object>> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound FROM pg_inherits i"
+                        + " JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ?",
+                target.tableName());
+        Counter droppedCounter = meterRegistry.counter(METRIC_PREFIX + "partitions.dropped", tags);
+        for (Map<String, Object> partition : partitions) {
+            String name = (String) partition.get("name");
+            Matcher matcher = RANGE_PARTITION_BOUND.matcher(String.valueOf(partition.get("bound")));
+            if (!matcher.find() || Long.parseLong(matcher.group(2)) > cutoff) {
+                continue;
+            }
+
+            jdbcTemplate.execute("DROP TABLE \"" + name.replace("\"", "\"\"") + "\"");
+            droppedCounter.increment();
+            log.info("Dropped expired partition '{}' of table '{}'", name, target.tableName());
+        }
+    }
+
+    private RetentionDialect getDialect() {
+        if (dialect == null) {
+            dialect = RetentionDialect.of(jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+        }
+        return dialect;
+    }
+
+    /**
+     * Table of a time-series entity, with the physical names of its primary key and time columns
+     */
+    public record RetentionTarget(String tableName, String idColumn, String timeColumn) {
+    }
+}
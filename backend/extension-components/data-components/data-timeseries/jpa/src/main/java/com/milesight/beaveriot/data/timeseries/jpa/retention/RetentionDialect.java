@@ -0,0 +1,55 @@
+package com.milesight.beaveriot.data.timeseries.jpa.retention;
+
+import java.util.Locale;
+
+/**
+ * SQL variants used by the retention cleanup.
+ */
+public enum RetentionDialect {
+    POSTGRESQL,
+    H2,
+    MYSQL,
+    OTHER;
+
+    public static RetentionDialect of(String databaseProductName) {
+        if (databaseProductName == null) {
+            return OTHER;
+        }
+
+        String name = databaseProductName.toLowerCase(Locale.ROOT);
+        if (name.contains("postgres")) {
+            return POSTGRESQL;
+        } else if (name.contains("h2")) {
+            return H2;
+        } else if (name.contains("mysql") || name.contains("mariadb")) {
+            return MYSQL;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Delete at most a limited number of the oldest rows in a time range.
+     * Parameters: range start (inclusive), range end (exclusive), limit.
+     */
+    public String chunkDeleteSql(String tableName, String idColumn, String timeColumn) {
+        if (this == MYSQL) {
+            return String.format("DELETE FROM %s WHERE %s >= ? AND %s < ? ORDER BY %s LIMIT ?",
+                    tableName, timeColumn, timeColumn, timeColumn);
+        }
+
+        // PostgreSQL has no DELETE ... LIMIT, the rows of a chunk are picked through the primary key instead
+        return String.format("DELETE FROM %s WHERE %s IN (SELECT %s FROM %s WHERE %s >= ? AND %s < ? ORDER BY %s LIMIT ?)",
+                tableName, idColumn, idColumn, tableName, timeColumn, timeColumn, timeColumn);
+    }
+
+    /**
+     * Oldest time in a range. Parameters: range start (inclusive), range end (exclusive).
+     */
+    public String minTimeSql(String tableName, String timeColumn) {
+        return String.format("SELECT MIN(%s) FROM %s WHERE %s >= ? AND %s < ?", timeColumn, tableName, timeColumn, timeColumn);
+    }
+
+    public boolean supportsPartitionDrop() {
+        return this == POSTGRESQL;
+    }
+}
@@ -0,0 +1,21 @@
+package com.milesight.beaveriot.data.timeseries.jpa.retention;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of the retention cleanup of one table.
+ * Rows older than {@link #watermark} have been deleted by the run targeting {@link #cutoff}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetentionWatermark {
+    private String tableName;
+    private long cutoff;
+    private long watermark;
+    private long deleted;
+    private boolean finished;
+    private long updatedAt;
+}
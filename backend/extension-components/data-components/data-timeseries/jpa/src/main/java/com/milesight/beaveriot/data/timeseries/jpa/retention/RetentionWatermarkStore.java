@@ -0,0 +1,44 @@
+package com.milesight.beaveriot.data.timeseries.jpa.retention;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps {@link RetentionWatermark}s in table t_timeseries_retention.
+ */
+@RequiredArgsConstructor
+public class RetentionWatermarkStore {
+
+    private static final String TABLE_NAME = "t_timeseries_retention";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<RetentionWatermark> find(String tableName) {
+        List<RetentionWatermark> watermarks = jdbcTemplate.query(
+                "SELECT table_name, cutoff, watermark, deleted, finished, updated_at FROM " + TABLE_NAME + " WHERE table_name = ?",
+                (rs, rowNum) -> new RetentionWatermark(
+                        rs.getString("table_name"),
+                        rs.getLong("cutoff"),
+                        rs.getLong("watermark"),
+                        rs.getLong("deleted"),
+                        rs.getBoolean("finished"),
+                        rs.getLong("updated_at")),
+                tableName);
+        return watermarks.stream().findFirst();
+    }
+
+    public void save(RetentionWatermark watermark) {
+        watermark.setUpdatedAt(System.currentTimeMillis());
+        int updated = jdbcTemplate.update(
+                "UPDATE " + TABLE_NAME + " SET cutoff = ?, watermark = ?, deleted = ?, finished = ?, updated_at = ? WHERE table_name = ?",
+                watermark.getCutoff(), watermark.getWatermark(), watermark.getDeleted(), watermark.isFinished(), watermark.getUpdatedAt(), watermark.getTableName());
+        if (updated == 0) {
+            jdbcTemplate.update(
+                    "INSERT INTO " + TABLE_NAME + " (table_name, cutoff, watermark, deleted, finished, updated_at) VALUES (?, ?, ?, ?, ?, ?)",
+                    watermark.getTableName(), watermark.getCutoff(), watermark.getWatermark(), watermark.getDeleted(), watermark.isFinished(), watermark.getUpdatedAt());
+        }
+    }
+}
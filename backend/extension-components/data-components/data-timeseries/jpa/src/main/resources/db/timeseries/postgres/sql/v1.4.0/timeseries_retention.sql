@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset timeseries:v1.4.0_20261017
+-- comment: Progress of the time-series retention cleanup per table, used to resume an interrupted cleanup
+CREATE TABLE IF NOT EXISTS "t_timeseries_retention"
+(
+    table_name VARCHAR(255) PRIMARY KEY,
+    cutoff     BIGINT  not null,
+    watermark  BIGINT  not null,
+    deleted    BIGINT  not null DEFAULT 0,
+    finished   BOOLEAN not null DEFAULT FALSE,
+    updated_at BIGINT  not null
+);
@@ -0,0 +1,247 @@
+package com.milesight.beaveriot.data.timeseries.jpa.retention
+
+import com.milesight.beaveriot.data.timeseries.common.TimeSeriesProperty
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.beans.factory.ObjectProvider
+import org.springframework.jdbc.core.ConnectionCallback
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.core.RowMapper
+import spock.lang.Specification
+
+import java.sql.ResultSet
+import java.time.Duration
+
+class JpaTimeSeriesRetentionExecutorTest extends Specification {
+
+    static final long HOUR = Duration.ofHours(1).toMillis()
+
+    static final JpaTimeSeriesRetentionExecutor.RetentionTarget TARGET =
+            new JpaTimeSeriesRetentionExecutor.RetentionTarget("t_entity_history", "id", "timestamp")
+
+    InMemoryJdbcTemplate jdbcTemplate = new InMemoryJdbcTemplate()
+
+    TimeSeriesProperty timeSeriesProperty = new TimeSeriesProperty()
+
+    JpaTimeSeriesRetentionExecutor executor
+
+    def setup() {
+        timeSeriesProperty.cleanup.batchSize = 2
+        timeSeriesProperty.cleanup.window = Duration.ofHours(1)
+        executor = new JpaTimeSeriesRetentionExecutor(jdbcTemplate, timeSeriesProperty, Stub(ObjectProvider) {
+            getIfAvailable(_) >> new SimpleMeterRegistry()
+        } as ObjectProvider<MeterRegistry>)
+    }
+
+    def "should delete the rows before the cutoff in bounded chunks per window"() {
+        given:
+        jdbcTemplate.times = [0L, 1L, 2L, 3L, 4L, HOUR - 1, HOUR, HOUR + 1, 2 * HOUR, 2 * HOUR + 1]
+
+        when:
+        def deleted = executor.purge("entity", TARGET, 2 * HOUR)
+
+        then:
+        deleted == 8
+        jdbcTemplate.times == [2 * HOUR, 2 * HOUR + 1]
+        jdbcTemplate.deletes.every { long start, long end, int limit -> end - start <= HOUR && end <= 2 * HOUR && limit == 2 }
+        jdbcTemplate.deletes.collect { it[0] } == [0L, 0L, 0L, 0L, HOUR, HOUR]
+        jdbcTemplate.deletes.collect { it[1] } == [HOUR, HOUR, HOUR, HOUR, 2 * HOUR, 2 * HOUR]
+        with(new RetentionWatermarkStore(jdbcTemplate).find(TARGET.tableName()).get()) {
+            finished
+            watermark == 2 * HOUR
+            cutoff == 2 * HOUR
+            it.deleted == 8
+        }
+    }
+
+    def "should skip windows without rows"() {
+        given:
+        jdbcTemplate.times = [0L, 10 * HOUR + 5]
+
+        when:
+        def deleted = executor.purge("entity", TARGET, 20 * HOUR)
+
+        then:
+        deleted == 2
+        jdbcTemplate.deletes.collect { [it[0], it[1]] } == [[0L, HOUR], [10 * HOUR + 5, 11 * HOUR + 5]]
+    }
+
+    def "should end the last window at the cutoff"() {
+        given:
+        jdbcTemplate.times = [HOUR - 1, HOUR + 10]
+
+        when:
+        executor.purge("entity", TARGET, HOUR + 10)
+
+        then:
+        jdbcTemplate.times == [HOUR + 10]
+        jdbcTemplate.deletes.collect { [it[0], it[1]] } == [[HOUR - 1, HOUR + 10]]
+    }
+
+    def "should resume an interrupted run from the last finished window"() {
+        given:
+        jdbcTemplate.times = [0L, 1L, HOUR, HOUR + 1, 2 * HOUR, 2 * HOUR + 1]
+        jdbcTemplate.failAfterDeletes = 3
+
+        when:
+        executor.purge("entity", TARGET, 3 * HOUR)
+
+        then:
+        thrown(IllegalStateException)
+        with(new RetentionWatermarkStore(jdbcTemplate).find(TARGET.tableName()).get()) {
+            !finished
+            watermark == HOUR
+            it.deleted == 2
+        }
+
+        when:
+        jdbcTemplate.failAfterDeletes = Integer.MAX_VALUE
+        jdbcTemplate.minTimeStarts.clear()
+        def deleted = executor.purge("entity", TARGET, 3 * HOUR)
+
+        then:
+        // the chunk deleted before the failure is not counted, its window is scanned again
+        deleted == 2
+        jdbcTemplate.times.isEmpty()
+        jdbcTemplate.minTimeStarts[0] == HOUR
+        with(new RetentionWatermarkStore(jdbcTemplate).find(TARGET.tableName()).get()) {
+            finished
+            it.deleted == 4
+        }
+    }
+
+    def "should start over when the watermark is finished or targets a later cutoff"() {
+        given:
+        jdbcTemplate.times = [0L, HOUR]
+        new RetentionWatermarkStore(jdbcTemplate).save(new RetentionWatermark(TARGET.tableName(), cutoff, HOUR, 5, finished, 0))
+
+        when:
+        def deleted = executor.purge("entity", TARGET, 2 * HOUR)
+
+        then:
+        deleted == 2
+        jdbcTemplate.minTimeStarts[0] == Long.MIN_VALUE
+        new RetentionWatermarkStore(jdbcTemplate).find(TARGET.tableName()).get().deleted == 2
+
+        where:
+        cutoff    | finished
+        2 * HOUR  | true
+        3 * HOUR  | false
+    }
+
+    def "should extend an unfinished run to a later cutoff"() {
+        given:
+        jdbcTemplate.times = [0L, HOUR, 2 * HOUR]
+        new RetentionWatermarkStore(jdbcTemplate).save(new RetentionWatermark(TARGET.tableName(), HOUR, HOUR, 1, false, 0))
+
+        when:
+        def deleted = executor.purge("entity", TARGET, 3 * HOUR)
+
+        then:
+        deleted == 2
+        jdbcTemplate.times == [0L]
+        jdbcTemplate.minTimeStarts[0] == HOUR
+        with(new RetentionWatermarkStore(jdbcTemplate).find(TARGET.tableName()).get()) {
+            finished
+            cutoff == 3 * HOUR
+            it.deleted == 3
+        }
+    }
+
+    def "should insert a watermark once and update it afterwards"() {
+        given:
+        def store = new RetentionWatermarkStore(jdbcTemplate)
+
+        expect:
+        store.find("t_a").isEmpty()
+
+        when:
+        store.save(new RetentionWatermark("t_a", 100L, 10L, 1, false, 0))
+        store.save(new RetentionWatermark("t_a", 100L, 50L, 3, true, 0))
+        store.save(new RetentionWatermark("t_b", 200L, 20L, 2, false, 0))
+
+        then:
+        jdbcTemplate.watermarks.size() == 2
+        with(store.find("t_a").get()) {
+            watermark == 50L
+            deleted == 3
+            finished
+            updatedAt > 0
+        }
+        store.find("t_b").get().watermark == 20L
+    }
+
+    /**
+     * Executes the retention statements against an in-memory table of row times and watermark table.
+     */
+    static class InMemoryJdbcTemplate extends JdbcTemplate {
+
+        List<Long> times = []
+
+        List<List> deletes = []
+
+        List<Long> minTimeStarts = []
+
+        int failAfterDeletes = Integer.MAX_VALUE
+
+        Map<String, Map<String, Object>> watermarks = new LinkedHashMap<>()
+
+        @Override
+        <T> T execute(ConnectionCallback<T> action) {
+            return "PostgreSQL" as T
+        }
+
+        @Override
+        <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            assert sql.startsWith("SELECT MIN(timestamp) FROM t_entity_history")
+            long start = args[0] as long
+            long end = args[1] as long
+            minTimeStarts << start
+            return times.findAll { it >= start && it < end }.min() as T
+        }
+
+        @Override
+        <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            assert sql.contains("FROM t_timeseries_retention WHERE table_name = ?")
+            def row = watermarks[args[0] as String]
+            if (row == null) {
+                return []
+            }
+            def resultSet = [
+                    getString : { String column -> row[column] },
+                    getLong   : { String column -> row[column] as long },
+                    getBoolean: { String column -> row[column] as boolean },
+            ] as ResultSet
+            return [rowMapper.mapRow(resultSet, 0)]
+        }
+
+        @Override
+        int update(String sql, Object... args) {
+            if (sql.startsWith("DELETE FROM t_entity_history")) {
+                if (deletes.size() >= failAfterDeletes) {
+                    throw new IllegalStateException("connection lost")
+                }
+                long start = args[0] as long
+                long end = args[1] as long
+                int limit = args[2] as int
+                deletes << [start, end, limit]
+                def chunk = times.findAll { it >= start && it < end }.sort().take(limit)
+                times.removeAll(chunk)
+                return chunk.size()
+            }
+
+            if (sql.startsWith("UPDATE t_timeseries_retention")) {
+                def row = watermarks[args[5] as String]
+                if (row == null) {
+                    return 0
+                }
+                row.putAll([cutoff: args[0], watermark: args[1], deleted: args[2], finished: args[3], updated_at: args[4]])
+                return 1
+            }
+
+            assert sql.startsWith("INSERT INTO t_timeseries_retention")
+            watermarks[args[0] as String] = [table_name: args[0], cutoff: args[1], watermark: args[2], deleted: args[3], finished: args[4], updated_at: args[5]]
+            return 1
+        }
+    }
+}
@@ -1,18 +1,23 @@
 package com.milesight.beaveriot.metrics.autoconfigure;
 
 import com.milesight.beaveriot.metrics.camel.CamelMicrometerRoutePolicy;
+import com.milesight.beaveriot.metrics.camel.CamelNodeMetricsInterceptStrategy;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.camel.CamelContext;
 import org.apache.camel.NamedNode;
+import org.apache.camel.Route;
 import org.apache.camel.component.micrometer.eventnotifier.MicrometerRouteEventNotifier;
 import org.apache.camel.component.micrometer.routepolicy.MicrometerRoutePolicyFactory;
 import org.apache.camel.spi.InflightRepository;
 import org.apache.camel.spi.ManagementStrategy;
 import org.apache.camel.spi.RoutePolicy;
+import org.apache.camel.support.LifecycleStrategySupport;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Collection;
+
 /**
  * @author leon
  */
@@ -47,6 +52,17 @@ public class CamelMetricsAutoConfiguration {
             camelContext.addRoutePolicyFactory(factory);
         }
 
+        if (configuration.getNodeMetrics().isEnabled()) {
+            CamelNodeMetricsInterceptStrategy strategy = new CamelNodeMetricsInterceptStrategy(meterRegistry, configuration.getNodeMetrics());
+            camelContext.getCamelContextExtension().addInterceptStrategy(strategy);
+            camelContext.addLifecycleStrategy(new LifecycleStrategySupport() {
+                @Override
+                public void onRoutesRemove(Collection<Route> routes) {
+                    routes.forEach(route -> strategy.removeRoute(route.getRouteId()));
+                }
+            });
+        }
+
         ManagementStrategy managementStrategy = camelContext.getManagementStrategy();
 
         if (configuration.isEnableRouteEventNotifier()) {
@@ -1,5 +1,6 @@
 package com.milesight.beaveriot.metrics.autoconfigure;
 
+import com.milesight.beaveriot.rule.support.RuleFlowIdGenerator;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -26,8 +27,35 @@ public class CamelMetricsConfiguration {
      */
     private ThresholdConfig thresholdConfig = new ThresholdConfig();
 
+    /**
+     * Processing time of single rule nodes
+     */
+    private NodeMetrics nodeMetrics = new NodeMetrics();
+
     @Data
     public class ThresholdConfig {
         private int exchangeRepeatMax = 5;
+
+        /**
+         * Number of root routes with the highest repeat counts reported per route
+         */
+        private int exchangeRepeatTopN = 10;
+    }
+
+    @Data
+    public static class NodeMetrics {
+        private boolean enabled = true;
+
+        /**
+         * Only nodes with ids starting with this prefix are measured
+         */
+        private String nodeIdPrefix = RuleFlowIdGenerator.FLOW_ID_PREFIX;
+
+        /**
+         * Maximum number of measured nodes, nodes beyond are not measured until others are removed
+         */
+        private int maxNodes = 2000;
+
+        private boolean percentileHistogram = true;
     }
 }
@@ -18,9 +18,9 @@ import org.apache.camel.support.RoutePolicySupport;
 import org.apache.camel.support.service.ServiceHelper;
 import org.springframework.context.ApplicationEventPublisher;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import static org.apache.camel.component.micrometer.MicrometerConstants.METRICS_REGISTRY_NAME;
@@ -41,7 +41,7 @@ public class CamelMicrometerRoutePolicy extends RoutePolicySupport implements No
     private MicrometerRoutePolicyNamingStrategy namingStrategy = MicrometerRoutePolicyNamingStrategy.DEFAULT;
     private MicrometerRoutePolicyConfiguration configuration = MicrometerRoutePolicyConfiguration.DEFAULT;
 
-    private final Map<Route, MetricsStatistics> statisticsMap = new HashMap<>();
+    private final Map<Route, MetricsStatistics> statisticsMap = new ConcurrentHashMap<>();
 
     public CamelMicrometerRoutePolicy(InflightRepository inflightRepository, ApplicationEventPublisher applicationEventPublisher, CamelMetricsConfiguration camelMetricsConfiguration) {
         this.inflightRepository = inflightRepository;
@@ -98,21 +98,7 @@ public class CamelMicrometerRoutePolicy extends RoutePolicySupport implements No
         // route is removed, so remove metrics from micrometer
         MetricsStatistics stats = statisticsMap.remove(route);
         if (stats != null) {
-            if (stats.getExchangesSucceeded() != null) {
-                meterRegistry.remove(stats.getExchangesSucceeded());
-            }
-            if (stats.getExchangesFailed() != null) {
-                meterRegistry.remove(stats.getExchangesFailed());
-            }
-            if (stats.getExchangesTotal() != null) {
-                meterRegistry.remove(stats.getExchangesTotal());
-            }
-            if (stats.getTimer() != null) {
-                meterRegistry.remove(stats.getTimer());
-            }
-            if (stats.getLongTaskTimer() != null) {
-                meterRegistry.remove(stats.getLongTaskTimer());
-            }
+            stats.close();
         }
     }
 
@@ -0,0 +1,100 @@
+package com.milesight.beaveriot.metrics.camel;
+
+import com.milesight.beaveriot.base.constants.MetricsConstants;
+import com.milesight.beaveriot.metrics.autoconfigure.CamelMetricsConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.NamedNode;
+import org.apache.camel.Processor;
+import org.apache.camel.model.ProcessorDefinitionHelper;
+import org.apache.camel.spi.InterceptStrategy;
+import org.apache.camel.support.processor.DelegateAsyncProcessor;
+import org.springframework.util.ObjectUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the processing time of rule nodes. The timer of a node is registered once when its route is built, and
+ * removed together with the route. The number of measured nodes is bounded, nodes beyond the bound are not wrapped.
+ */
+@Slf4j
+public class CamelNodeMetricsInterceptStrategy implements InterceptStrategy {
+
+    private final MeterRegistry meterRegistry;
+
+    private final CamelMetricsConfiguration.NodeMetrics nodeMetrics;
+
+    private final Map<String, List<Timer>> routeTimers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nodeCount = new AtomicInteger();
+
+    public CamelNodeMetricsInterceptStrategy(MeterRegistry meterRegistry, CamelMetricsConfiguration.NodeMetrics nodeMetrics) {
+        this.meterRegistry = meterRegistry;
+        this.nodeMetrics = nodeMetrics;
+    }
+
+    @Override
+    public Processor wrapProcessorInInterceptors(CamelContext context, NamedNode definition, Processor target, Processor nextTarget) {
+        String nodeId = definition.getId();
+        if (nodeId == null || !nodeId.startsWith(nodeMetrics.getNodeIdPrefix())) {
+            return target;
+        }
+        String routeId = ProcessorDefinitionHelper.getRouteId(definition);
+        if (ObjectUtils.isEmpty(routeId)) {
+            return target;
+        }
+        if (nodeCount.incrementAndGet() > nodeMetrics.getMaxNodes()) {
+            nodeCount.decrementAndGet();
+            log.debug("Node metrics limit {} reached, node {} is not measured", nodeMetrics.getMaxNodes(), nodeId);
+            return target;
+        }
+
+        Timer timer = Timer.builder(MetricsConstants.METRICS_ROUTE_NODE_LATENCY)
+                .tag(MetricsConstants.ROUTE_ROUTE_ID, routeId)
+                .tag(MetricsConstants.ROUTE_NODE_ID_TAG, nodeId)
+                .publishPercentileHistogram(nodeMetrics.isPercentileHistogram())
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(60))
+                .description("Processing time of rule nodes")
+                .register(meterRegistry);
+        routeTimers.computeIfAbsent(routeId, k -> new CopyOnWriteArrayList<>()).add(timer);
+        return new TimedProcessor(target, timer);
+    }
+
+    public void removeRoute(String routeId) {
+        List<Timer> timers = routeTimers.remove(routeId);
+        if (timers != null) {
+            timers.forEach(meterRegistry::remove);
+            nodeCount.addAndGet(-timers.size());
+        }
+    }
+
+    private static class TimedProcessor extends DelegateAsyncProcessor {
+
+        private final Timer timer;
+
+        private TimedProcessor(Processor processor, Timer timer) {
+            super(processor);
+            this.timer = timer;
+        }
+
+        @Override
+        public boolean process(Exchange exchange, AsyncCallback callback) {
+            long start = System.nanoTime();
+            return processor.process(exchange, doneSync -> {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                callback.done(doneSync);
+            });
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.milesight.beaveriot.metrics.camel;
+
+import io.micrometer.core.instrument.Meter;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Highest execution repeat counts of a route by root route, bounded to a fixed number of root routes. Once full, a root
+ * route replaces the tracked root route with the lowest count if its count is higher. Every tracked root route has its
+ * own meter, which is removed together with the root route.
+ */
+final class ExecutionRepeatTopN {
+
+    private final int capacity;
+
+    private final Function<String, Meter> meterRegistrar;
+
+    private final Consumer<Meter> meterRemover;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    ExecutionRepeatTopN(int capacity, Function<String, Meter> meterRegistrar, Consumer<Meter> meterRemover) {
+        this.capacity = Math.max(1, capacity);
+        this.meterRegistrar = meterRegistrar;
+        this.meterRemover = meterRemover;
+    }
+
+    /**
+     * @return true if the count is a new maximum of a tracked root route
+     */
+    boolean update(String rootRouteId, int count) {
+        Entry entry = entries.get(rootRouteId);
+        if (entry != null) {
+            return count > entry.maxCount.getAndAccumulate(count, Math::max);
+        }
+        return add(rootRouteId, count);
+    }
+
+    private synchronized boolean add(String rootRouteId, int count) {
+        Entry entry = entries.get(rootRouteId);
+        if (entry != null) {
+            return count > entry.maxCount.getAndAccumulate(count, Math::max);
+        }
+
+        if (entries.size() >= capacity) {
+            Map.Entry<String, Entry> lowest = entries.entrySet().stream()
+                    .min(Comparator.comparingInt(it -> it.getValue().maxCount.get()))
+                    .orElseThrow();
+            if (lowest.getValue().maxCount.get() >= count) {
+                return false;
+            }
+            entries.remove(lowest.getKey());
+            meterRemover.accept(lowest.getValue().meter);
+        }
+
+        entry = new Entry(new AtomicInteger(count));
+        entries.put(rootRouteId, entry);
+        entry.meter = meterRegistrar.apply(rootRouteId);
+        return true;
+    }
+
+    int get(String rootRouteId) {
+        Entry entry = entries.get(rootRouteId);
+        return entry == null ? 0 : entry.maxCount.get();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.values().forEach(entry -> meterRemover.accept(entry.meter));
+        entries.clear();
+    }
+
+    private static final class Entry {
+
+        private final AtomicInteger maxCount;
+
+        private Meter meter;
+
+        private Entry(AtomicInteger maxCount) {
+            this.maxCount = maxCount;
+        }
+    }
+}
@@ -1,10 +1,8 @@
 package com.milesight.beaveriot.metrics.camel;
 
 import com.milesight.beaveriot.base.exception.CyclicCallException;
-import com.milesight.beaveriot.context.integration.model.event.MetricsEvent;
 import com.milesight.beaveriot.metrics.autoconfigure.CamelMetricsConfiguration;
 import com.milesight.beaveriot.base.constants.MetricsConstants;
-import com.milesight.beaveriot.metrics.utils.TagUtils;
 import com.milesight.beaveriot.rule.constants.ExchangeHeaders;
 import com.milesight.beaveriot.rule.constants.RuleNodeNames;
 import io.micrometer.core.instrument.*;
@@ -18,9 +16,6 @@ import org.apache.camel.util.ObjectHelper;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.util.ObjectUtils;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.camel.component.micrometer.MicrometerConstants.DEFAULT_CAMEL_ROUTES_EXCHANGES_INFLIGHT;
@@ -42,6 +37,9 @@ public final class MetricsStatistics {
     private LongTaskTimer longTaskTimer;
     private boolean isInnerRoute;
     private CamelMetricsConfiguration camelMetricsConfiguration;
+    private final String samplePropertyName;
+    private final String longTaskPropertyName;
+    private final ExecutionRepeatTopN executionRepeatMaxCounts;
     public MetricsStatistics(InflightRepository inflightRepository, ApplicationEventPublisher applicationEventPublisher,MeterRegistry meterRegistry, Route route,
                              MicrometerRoutePolicyNamingStrategy namingStrategy,
                              MicrometerRoutePolicyConfiguration configuration,
@@ -53,12 +51,26 @@ public final class MetricsStatistics {
         this.inflightRepository = inflightRepository;
         this.applicationEventPublisher = applicationEventPublisher;
         this.camelMetricsConfiguration = camelMetricsConfiguration;
+        this.samplePropertyName = DEFAULT_CAMEL_ROUTE_POLICY_METER_NAME + "-" + route.getId();
+        this.longTaskPropertyName = samplePropertyName + "_long_task";
+        this.executionRepeatMaxCounts = new ExecutionRepeatTopN(camelMetricsConfiguration.getThresholdConfig().getExchangeRepeatTopN(),
+                this::createExecutionRepeatGauge, meterRegistry::remove);
         if (configuration.isAdditionalCounters()) {
             initAdditionalCounters();
         }
+        initTimer();
         isInnerRoute = route.getRouteId().startsWith(RuleNodeNames.innerExchangeRouteId);
     }
-    private Map<String, Integer> executionRepeatMaxCounts = new LinkedHashMap<>();
+
+    private void initTimer() {
+        Timer.Builder builder = Timer.builder(namingStrategy.getName(route))
+                .tags(namingStrategy.getTags(route).and(MetricsConstants.ROUTE_NAME_TAG, getTagValue(route.getDescription(), MetricsConstants.DEFAULT_NONE_VALUE)))
+                .description("Route performance metrics");
+        if (configuration.getTimerInitiator() != null) {
+            configuration.getTimerInitiator().accept(builder);
+        }
+        timer = builder.register(meterRegistry);
+    }
 
     private void initAdditionalCounters() {
         if (configuration.isExchangesSucceeded()) {
@@ -91,9 +103,9 @@ public final class MetricsStatistics {
 
     public void onExchangeBegin(Exchange exchange) {
         Timer.Sample sample = Timer.start(meterRegistry);
-        exchange.setProperty(propertyName(exchange), sample);
+        exchange.setProperty(samplePropertyName, sample);
         if (longTaskTimer != null) {
-            exchange.setProperty(propertyName(exchange) + "_long_task", longTaskTimer.start());
+            exchange.setProperty(longTaskPropertyName, longTaskTimer.start());
         }
 
         // add exchange execution count
@@ -103,40 +115,37 @@ public final class MetricsStatistics {
     }
 
     private void updateExecutionMaxCount(Exchange exchange) {
-        String rootFlowId = exchange.getProperty(ExchangeHeaders.EXCHANGE_ROOT_FLOW_ID, exchange.getFromRouteId(), String.class);
         AtomicInteger repeatCount = (AtomicInteger) exchange.getProperty(ExchangeHeaders.EXCHANGE_EXECUTION_REPEAT_COUNT);
         if (repeatCount == null ) {
             repeatCount = new AtomicInteger(0);
             exchange.setProperty(ExchangeHeaders.EXCHANGE_EXECUTION_REPEAT_COUNT, repeatCount);
         }
 
-        // update execution repeat max count， if repeat count > 1 report metrics
-        if (resetExecutionRepeatMaxCountIfNecessary(rootFlowId, repeatCount.incrementAndGet()) && repeatCount.get() > 1) {
-            Tags tags = namingStrategy.getExchangeStatusTags(route)
-                    .and(MetricsConstants.ROUTE_NAME_TAG, getTagValue(route.getDescription(), MetricsConstants.DEFAULT_NONE_VALUE))
-                    .and(MetricsConstants.ROUTE_ROOT_ROUTE_ID, getTagValue(rootFlowId, MetricsConstants.DEFAULT_NONE_VALUE));
-            Metrics.gauge(MetricsConstants.METRICS_EXCHANGE_EXECUTION_REPEAT_MAX,tags.stream().toList(),
-                    executionRepeatMaxCounts,  map -> map.getOrDefault(rootFlowId, 0));
-            if (repeatCount.get() >= camelMetricsConfiguration.getThresholdConfig().getExchangeRepeatMax()) {
+        // only repeated executions are tracked, the first execution of an exchange does not touch shared state
+        int count = repeatCount.incrementAndGet();
+        if (count <= 1) {
+            return;
+        }
+
+        String rootFlowId = exchange.getProperty(ExchangeHeaders.EXCHANGE_ROOT_FLOW_ID, exchange.getFromRouteId(), String.class);
+        executionRepeatMaxCounts.update(getTagValue(rootFlowId, MetricsConstants.DEFAULT_NONE_VALUE), count);
+        if (count >= camelMetricsConfiguration.getThresholdConfig().getExchangeRepeatMax()) {
+            if (exchangesTotal != null) {
                 exchangesTotal.increment();
+            }
+            if (exchangesFailed != null) {
                 exchangesFailed.increment();
-                exchange.setException(new CyclicCallException("The number of exchanges exceeds the maximum number of times, check whether there are loop calls in the flow" ));
             }
+            exchange.setException(new CyclicCallException("The number of exchanges exceeds the maximum number of times, check whether there are loop calls in the flow" ));
         }
     }
 
-    private boolean resetExecutionRepeatMaxCountIfNecessary(String rootFlowId,  int maxCount) {
-        AtomicBoolean reset = new AtomicBoolean(true);
-        if (executionRepeatMaxCounts.containsKey(rootFlowId)) {
-            executionRepeatMaxCounts.computeIfPresent(rootFlowId, (String, value) -> {
-                reset.set(maxCount > value);
-                return Math.max(value, maxCount);
-            });
-
-        } else {
-            executionRepeatMaxCounts.put(rootFlowId, maxCount);
-        }
-        return reset.get();
+    private Meter createExecutionRepeatGauge(String rootFlowId) {
+        return Gauge.builder(MetricsConstants.METRICS_EXCHANGE_EXECUTION_REPEAT_MAX, executionRepeatMaxCounts, counts -> counts.get(rootFlowId))
+                .tags(namingStrategy.getExchangeStatusTags(route)
+                        .and(MetricsConstants.ROUTE_NAME_TAG, getTagValue(route.getDescription(), MetricsConstants.DEFAULT_NONE_VALUE))
+                        .and(MetricsConstants.ROUTE_ROOT_ROUTE_ID, rootFlowId))
+                .register(meterRegistry);
     }
 
     public void onExchangeDone(Exchange exchange) {
@@ -146,21 +155,12 @@ public final class MetricsStatistics {
         }
         exchange.setProperty(ExchangeHeaders.EXCHANGE_DONE_ADVICE_FLAG, true);
 
-        Timer.Sample sample = (Timer.Sample) exchange.removeProperty(propertyName(exchange));
+        Timer.Sample sample = (Timer.Sample) exchange.removeProperty(samplePropertyName);
         if (sample != null) {
-            if (timer == null) {
-                Timer.Builder builder = Timer.builder(namingStrategy.getName(route))
-                        .tags(namingStrategy.getTags(route).and(MetricsConstants.ROUTE_NAME_TAG, getTagValue(route.getDescription(), MetricsConstants.DEFAULT_NONE_VALUE)))
-                        .description("Route performance metrics");
-                if (configuration.getTimerInitiator() != null) {
-                    configuration.getTimerInitiator().accept(builder);
-                }
-                timer = builder.register(meterRegistry);
-            }
             sample.stop(timer);
         }
         LongTaskTimer.Sample ltSampler
-                = (LongTaskTimer.Sample) exchange.removeProperty(propertyName(exchange) + "_long_task");
+                = (LongTaskTimer.Sample) exchange.removeProperty(longTaskPropertyName);
         if (ltSampler != null) {
             ltSampler.stop();
         }
@@ -184,8 +184,16 @@ public final class MetricsStatistics {
         }
     }
 
-    private String propertyName(Exchange exchange) {
-        return String.format("%s-%s-%s", DEFAULT_CAMEL_ROUTE_POLICY_METER_NAME, route.getId(), exchange.getExchangeId());
+    /**
+     * Removes all meters of the route
+     */
+    public void close() {
+        for (Meter meter : new Meter[]{exchangesSucceeded, exchangesFailed, exchangesTotal, exchangesInflight, timer, longTaskTimer}) {
+            if (meter != null) {
+                meterRegistry.remove(meter);
+            }
+        }
+        executionRepeatMaxCounts.clear();
     }
 
     private Counter createCounter(String meterName, String description) {
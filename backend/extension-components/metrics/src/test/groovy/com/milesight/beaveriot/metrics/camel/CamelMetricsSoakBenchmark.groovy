@@ -0,0 +1,121 @@
+package com.milesight.beaveriot.metrics.camel
+
+import com.milesight.beaveriot.metrics.autoconfigure.CamelMetricsConfiguration
+import com.milesight.beaveriot.rule.constants.ExchangeHeaders
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.apache.camel.AsyncCallback
+import org.apache.camel.AsyncProcessor
+import org.apache.camel.CamelContext
+import org.apache.camel.Processor
+import org.apache.camel.Route
+import org.apache.camel.model.LogDefinition
+import org.apache.camel.model.RouteDefinition
+import org.apache.camel.spi.InflightRepository
+import org.apache.camel.support.DefaultExchange
+import org.springframework.context.ApplicationEventPublisher
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Meter count and heap of the route and node metrics under repeated exchanges of many root flows, with the routes
+ * created and removed once per round. Not part of the default test run, start it with
+ * {@code mvn test -Dtest=CamelMetricsSoakBenchmark}.
+ */
+class CamelMetricsSoakBenchmark extends Specification {
+
+    static final int ROUNDS = 10
+
+    static final int EXCHANGES = 500_000
+
+    static final int THREADS = 8
+
+    static final int ROOT_FLOWS = 5000
+
+    static final int ROUTES = 2
+
+    static final int NODES = 5
+
+    CamelContext camelContext = Stub(CamelContext) {
+        getName() >> "camel-1"
+    }
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+    CamelMetricsConfiguration camelMetricsConfiguration = new CamelMetricsConfiguration()
+
+    CamelMicrometerRoutePolicy policy = new CamelMicrometerRoutePolicy(Stub(InflightRepository), Stub(ApplicationEventPublisher), camelMetricsConfiguration)
+
+    CamelNodeMetricsInterceptStrategy interceptStrategy = new CamelNodeMetricsInterceptStrategy(meterRegistry, camelMetricsConfiguration.nodeMetrics)
+
+    def setup() {
+        policy.meterRegistry = meterRegistry
+        // exchanges are repeated below the maximum, the soak measures the tracking and not the cyclic call failures
+        camelMetricsConfiguration.thresholdConfig.exchangeRepeatMax = Integer.MAX_VALUE
+    }
+
+    def "meters and heap stay bounded"() {
+        given:
+        def executor = Executors.newFixedThreadPool(THREADS)
+        println String.format("%6s %14s %14s %10s", "round", "meters (run)", "meters (idle)", "heap MB")
+        def baseline = meterRegistry.meters.size()
+        def maxRunning = 0
+
+        when:
+        (1..ROUNDS).each { round ->
+            def routes = (0..<ROUTES).collect { start("flow.route" + it) }
+            def futures = (0..<THREADS).collect { thread ->
+                executor.submit {
+                    for (int i = thread; i < EXCHANGES; i += THREADS) {
+                        def route = routes[i % ROUTES]
+                        def exchange = new DefaultExchange(camelContext)
+                        exchange.setProperty(ExchangeHeaders.EXCHANGE_ROOT_FLOW_ID, "root" + (i % ROOT_FLOWS))
+                        (1 + i % 4).times { policy.onExchangeBegin(route.route, exchange) }
+                        route.nodes.each { (it as AsyncProcessor).process(exchange, { } as AsyncCallback) }
+                        policy.onExchangeDone(route.route, exchange)
+                    }
+                }
+            }
+            futures*.get()
+            def running = meterRegistry.meters.size()
+            maxRunning = Math.max(maxRunning, running)
+
+            routes.each {
+                policy.onRemove(it.route)
+                interceptStrategy.removeRoute(it.route.routeId)
+            }
+            System.gc()
+            def runtime = Runtime.runtime
+            println String.format("%6d %14d %14d %10d", round, running, meterRegistry.meters.size(),
+                    (runtime.totalMemory() - runtime.freeMemory()).intdiv(1024 * 1024))
+        }
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+
+        then:
+        // per route: timer, inflight gauge, three counters, the top N repeat gauges and the node timers
+        maxRunning <= ROUTES * (5 + camelMetricsConfiguration.thresholdConfig.exchangeRepeatTopN + NODES)
+        meterRegistry.meters.size() == baseline
+    }
+
+    private Map start(String routeId) {
+        def route = Stub(Route) {
+            getId() >> routeId
+            getRouteId() >> routeId
+            getDescription() >> routeId
+            getCamelContext() >> camelContext
+        }
+        policy.onStart(route)
+
+        def definition = new RouteDefinition("direct:" + routeId)
+        definition.routeId(routeId)
+        def nodes = (0..<NODES).collect {
+            def node = new LogDefinition("node " + it)
+            node.id = routeId + ".node" + it
+            definition.addOutput(node)
+            interceptStrategy.wrapProcessorInInterceptors(camelContext, node, { } as Processor, null)
+        }
+        return [route: route, nodes: nodes]
+    }
+}
@@ -0,0 +1,155 @@
+package com.milesight.beaveriot.metrics.camel
+
+import com.milesight.beaveriot.base.constants.MetricsConstants
+import com.milesight.beaveriot.base.exception.CyclicCallException
+import com.milesight.beaveriot.metrics.autoconfigure.CamelMetricsConfiguration
+import com.milesight.beaveriot.rule.constants.ExchangeHeaders
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.apache.camel.CamelContext
+import org.apache.camel.Exchange
+import org.apache.camel.Route
+import org.apache.camel.spi.InflightRepository
+import org.apache.camel.support.DefaultExchange
+import org.springframework.context.ApplicationEventPublisher
+import spock.lang.Specification
+
+class CamelMicrometerRoutePolicyTest extends Specification {
+
+    CamelContext camelContext = Stub(CamelContext) {
+        getName() >> "camel-1"
+    }
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+    CamelMetricsConfiguration camelMetricsConfiguration = new CamelMetricsConfiguration()
+
+    CamelMicrometerRoutePolicy policy = new CamelMicrometerRoutePolicy(Stub(InflightRepository), Stub(ApplicationEventPublisher), camelMetricsConfiguration)
+
+    def setup() {
+        policy.meterRegistry = meterRegistry
+    }
+
+    def "should count completed and failed exchanges"() {
+        given:
+        def route = start("flow.1001")
+
+        when:
+        run(route, exchange())
+        run(route, exchange(new IllegalStateException("boom")))
+
+        then:
+        count("camel.exchanges.total") == 2
+        count("camel.exchanges.succeeded") == 1
+        count("camel.exchanges.failed") == 1
+        meterRegistry.get("camel.route.policy").timer().count() == 2
+    }
+
+    def "should fail exchanges repeated up to the maximum and count them"() {
+        given:
+        camelMetricsConfiguration.thresholdConfig.exchangeRepeatMax = 3
+        def route = start("flow.1001")
+        def exchange = exchange()
+        exchange.setProperty(ExchangeHeaders.EXCHANGE_ROOT_FLOW_ID, "1001")
+
+        when:
+        2.times { policy.onExchangeBegin(route, exchange) }
+
+        then:
+        exchange.exception == null
+        count("camel.exchanges.total") == 0
+
+        when:
+        policy.onExchangeBegin(route, exchange)
+
+        then:
+        exchange.exception instanceof CyclicCallException
+        count("camel.exchanges.total") == 1
+        count("camel.exchanges.failed") == 1
+        repeatMax("1001") == 3
+    }
+
+    def "should not track exchanges executed once"() {
+        given:
+        def route = start("flow.1001")
+
+        when:
+        run(route, exchange())
+
+        then:
+        meterRegistry.find(MetricsConstants.METRICS_EXCHANGE_EXECUTION_REPEAT_MAX).gauges().isEmpty()
+    }
+
+    def "should only report the root routes with the highest repeat counts"() {
+        given:
+        camelMetricsConfiguration.thresholdConfig.exchangeRepeatTopN = 2
+        def route = start("flow.1001")
+
+        when:
+        [a: 2, b: 4, c: 3, d: 2].each { rootFlowId, repeats ->
+            def exchange = exchange()
+            exchange.setProperty(ExchangeHeaders.EXCHANGE_ROOT_FLOW_ID, rootFlowId)
+            repeats.times { policy.onExchangeBegin(route, exchange) }
+        }
+
+        then:
+        meterRegistry.find(MetricsConstants.METRICS_EXCHANGE_EXECUTION_REPEAT_MAX).gauges()*.id*.getTag(MetricsConstants.ROUTE_ROOT_ROUTE_ID).toSet() == ["b", "c"] as Set
+        repeatMax("b") == 4
+        repeatMax("c") == 3
+    }
+
+    def "should remove all meters of a removed route"() {
+        given:
+        def route = start("flow.1001")
+        def exchange = exchange()
+        exchange.setProperty(ExchangeHeaders.EXCHANGE_ROOT_FLOW_ID, "1001")
+        2.times { policy.onExchangeBegin(route, exchange) }
+        policy.onExchangeDone(route, exchange)
+
+        when:
+        policy.onRemove(route)
+
+        then:
+        meterRegistry.meters.isEmpty()
+        policy.statisticsMap.isEmpty()
+    }
+
+    def "should not collect statistics of tracer routes"() {
+        when:
+        def route = start("tracer1001")
+        run(route, exchange())
+
+        then:
+        meterRegistry.meters.isEmpty()
+    }
+
+    private Route start(String routeId) {
+        def route = Stub(Route) {
+            getId() >> routeId
+            getRouteId() >> routeId
+            getDescription() >> routeId
+            getCamelContext() >> camelContext
+        }
+        policy.onStart(route)
+        return route
+    }
+
+    private void run(Route route, Exchange exchange) {
+        policy.onExchangeBegin(route, exchange)
+        policy.onExchangeDone(route, exchange)
+    }
+
+    private Exchange exchange(Exception failure = null) {
+        def exchange = new DefaultExchange(camelContext)
+        exchange.exception = failure
+        return exchange
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count()
+    }
+
+    private double repeatMax(String rootFlowId) {
+        return meterRegistry.get(MetricsConstants.METRICS_EXCHANGE_EXECUTION_REPEAT_MAX)
+                .tag(MetricsConstants.ROUTE_ROOT_ROUTE_ID, rootFlowId).gauge().value()
+    }
+}
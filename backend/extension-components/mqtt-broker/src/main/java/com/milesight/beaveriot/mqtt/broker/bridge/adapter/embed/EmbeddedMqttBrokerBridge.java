@@ -16,6 +16,8 @@ import io.moquette.interception.AbstractInterceptHandler;
 import io.moquette.interception.messages.InterceptConnectMessage;
 import io.moquette.interception.messages.InterceptConnectionLostMessage;
 import io.moquette.interception.messages.InterceptPublishMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.mqtt.MqttMessageBuilders;
 import io.netty.handler.codec.mqtt.MqttQoS;
@@ -23,7 +25,6 @@ import lombok.extern.slf4j.*;
 import lombok.*;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Properties;
 
@@ -62,13 +63,22 @@ public class EmbeddedMqttBrokerBridge extends AbstractMqttBrokerBridge {
                 .topicName(topic)
                 .retained(retained)
                 .qos(qos)
-                .payload(Unpooled.copiedBuffer(payload))
+                .payload(Unpooled.wrappedBuffer(payload))
                 .build();
         mqttBroker.internalPublish(message, "ADMIN");
 
         // internal publish won't trigger publish listener, so we need to trigger it manually
-        onPublish(new MqttMessageEvent(topic, payload));
-        onBroadcast(new MqttMessageEvent(topic, payload));
+        val event = new MqttMessageEvent(topic, payload);
+        onPublish(event);
+        onBroadcast(event);
+    }
+
+    /**
+     * Copy the readable bytes of the payload once, the buffer is released by moquette when the interception returns
+     * while listeners run asynchronously.
+     */
+    protected byte[] readPayload(ByteBuf payload) {
+        return ByteBufUtil.getBytes(payload);
     }
 
     @Override
@@ -96,10 +106,11 @@ public class EmbeddedMqttBrokerBridge extends AbstractMqttBrokerBridge {
         @Override
         public void onPublish(InterceptPublishMessage msg) {
             val topic = msg.getTopicName();
-            val payload = msg.getPayload().toString(StandardCharsets.UTF_8);
-            log.debug("Received on topic: '" + topic + "', content: '" + payload + "'");
-            EmbeddedMqttBrokerBridge.this.onPublish(new MqttMessageEvent(topic, payload.getBytes()));
-            EmbeddedMqttBrokerBridge.this.onBroadcast(new MqttMessageEvent(topic, payload.getBytes()));
+            val payload = readPayload(msg.getPayload());
+            log.debug("Received on topic: '{}', {} bytes", topic, payload.length);
+            val event = new MqttMessageEvent(topic, payload);
+            EmbeddedMqttBrokerBridge.this.onPublish(event);
+            EmbeddedMqttBrokerBridge.this.onBroadcast(event);
             super.onPublish(msg);
         }
 
@@ -85,7 +85,7 @@ public class EmqxMqttBrokerBridge extends AbstractMqttBrokerBridge {
                 if (!topic.startsWith("$SYS/")) {
                     EmqxMqttBrokerBridge.this.onBroadcast(new MqttMessageEvent(topic, message.getPayload()));
                 } else {
-                    val content = JsonUtils.fromJSON(new String(message.getPayload()));
+                    val content = JsonUtils.fromJSON(new String(message.getPayload(), StandardCharsets.UTF_8));
                     if (content == null) {
                         return;
                     }
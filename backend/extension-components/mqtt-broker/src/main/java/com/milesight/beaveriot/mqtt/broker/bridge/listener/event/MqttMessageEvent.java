@@ -2,14 +2,35 @@ package com.milesight.beaveriot.mqtt.broker.bridge.listener.event;
 
 import lombok.*;
 
-@Data
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message received by the broker. The payload is passed to every listener as is, binary payloads stay intact and
+ * are never copied by the bridge, so listeners must not modify it.
+ */
+@Value
 @Builder
-@NoArgsConstructor
 @AllArgsConstructor
 public class MqttMessageEvent {
 
     String topic;
 
+    @ToString.Exclude
     byte[] payload;
 
+    /**
+     * Read-only view of the payload
+     */
+    public ByteBuffer getPayloadBuffer() {
+        return ByteBuffer.wrap(payload).asReadOnlyBuffer();
+    }
+
+    /**
+     * Decode the payload as UTF-8 text, only for payloads known to be text
+     */
+    public String getPayloadAsString() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
 }
@@ -0,0 +1,90 @@
+package com.milesight.beaveriot.mqtt.broker.bridge.adapter.embed
+
+import com.milesight.beaveriot.mqtt.broker.bridge.listener.MqttPublishListener
+import io.netty.buffer.ByteBuf
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import static EmbeddedMqttBrokerBridgeTest.allowAll
+import static EmbeddedMqttBrokerBridgeTest.freePort
+import static EmbeddedMqttBrokerBridgeTest.properties
+import static EmbeddedMqttBrokerBridgeTest.start
+
+/**
+ * Bytes allocated by all threads per message while clients publish binary payloads to the embedded broker, with the
+ * single payload copy of the bridge and with the former string round trip. Not part of the default test run, start
+ * it with {@code mvn test -Dtest=EmbeddedMqttBrokerBridgeBenchmark}.
+ */
+class EmbeddedMqttBrokerBridgeBenchmark extends Specification {
+
+    static final int CLIENTS = 4
+
+    static final int MESSAGES_PER_CLIENT = 10_000
+
+    static final int PAYLOAD_SIZE = 1024
+
+    def "allocation per message under load"() {
+        when:
+        run { port -> new EmbeddedMqttBrokerBridge(allowAll(), properties(port)) } // warm up
+        def current = run { port -> new EmbeddedMqttBrokerBridge(allowAll(), properties(port)) }
+        def legacy = run { port -> new LegacyBridge(allowAll(), properties(port)) }
+        println String.format("%-10s %16s", "bridge", "bytes/message")
+        println String.format("%-10s %16d", "legacy", legacy)
+        println String.format("%-10s %16d", "current", current)
+
+        then:
+        current < legacy
+    }
+
+    private static long run(Closure<EmbeddedMqttBrokerBridge> bridgeFactory) {
+        int port = freePort()
+        def bridge = start(bridgeFactory(port))
+        try {
+            int total = CLIENTS * MESSAGES_PER_CLIENT
+            def received = new CountDownLatch(total)
+            bridge.addListener({ event -> received.countDown() } as MqttPublishListener)
+            def payload = new byte[PAYLOAD_SIZE]
+            new Random(1).nextBytes(payload)
+
+            def clients = (0..<CLIENTS).collect { new MqttTestClient(port, "load-${it}") }
+            long before = allocatedBytes()
+            def threads = clients.collect { client ->
+                Thread.start {
+                    MESSAGES_PER_CLIENT.times { client.publish("beaver-iot/user@t1/uplink/dev1", payload) }
+                    client.flush()
+                }
+            }
+            threads*.join()
+            // QoS 0, the broker may drop a few messages under load
+            received.await(30, TimeUnit.SECONDS)
+            long allocated = allocatedBytes() - before
+            long delivered = total - received.count
+            assert delivered > total * 0.99
+            clients*.close()
+            return allocated.intdiv(delivered)
+        } finally {
+            bridge.close()
+        }
+    }
+
+    private static long allocatedBytes() {
+        def threadMXBean = ManagementFactory.threadMXBean as com.sun.management.ThreadMXBean
+        return threadMXBean.getThreadAllocatedBytes(threadMXBean.allThreadIds).findAll { it > 0 }.sum() as long
+    }
+
+    static class LegacyBridge extends EmbeddedMqttBrokerBridge {
+
+        LegacyBridge(com.milesight.beaveriot.mqtt.broker.bridge.auth.MqttAuthProvider mqttAuthProvider, Properties properties) {
+            super(mqttAuthProvider, properties)
+        }
+
+        @Override
+        protected byte[] readPayload(ByteBuf payload) {
+            return EmbeddedMqttBrokerBridgeTest.legacyReadPayload(payload)
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.milesight.beaveriot.mqtt.broker.bridge.adapter.embed
+
+import com.milesight.beaveriot.mqtt.broker.bridge.AbstractMqttBrokerBridge
+import com.milesight.beaveriot.mqtt.broker.bridge.auth.MqttAuthProvider
+import com.milesight.beaveriot.mqtt.broker.bridge.listener.MqttEventListener
+import com.milesight.beaveriot.mqtt.broker.bridge.listener.event.MqttMessageEvent
+import io.netty.buffer.Unpooled
+import io.netty.handler.codec.mqtt.MqttQoS
+import org.springframework.core.task.TaskExecutor
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+import java.nio.ReadOnlyBufferException
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+class EmbeddedMqttBrokerBridgeTest extends Specification {
+
+    /**
+     * Every byte value, with sequences that are invalid in UTF-8
+     */
+    static final byte[] BINARY_PAYLOAD = ((0..255).collect { it as byte } + [0xC3, 0x28, 0xFF, 0xFE, 0x80].collect { it as byte }) as byte[]
+
+    @Shared
+    EmbeddedMqttBrokerBridge bridge
+
+    @Shared
+    MqttTestClient client
+
+    @Shared
+    LinkedBlockingQueue<MqttMessageEvent> published = new LinkedBlockingQueue<>()
+
+    @Shared
+    LinkedBlockingQueue<MqttMessageEvent> broadcast = new LinkedBlockingQueue<>()
+
+    def setupSpec() {
+        def port = freePort()
+        bridge = start(new EmbeddedMqttBrokerBridge(allowAll(), properties(port)))
+        bridge.addListener(new MqttEventListener() {
+            @Override
+            void onPublish(MqttMessageEvent event) {
+                published.add(event)
+            }
+
+            @Override
+            void onBroadcast(MqttMessageEvent event) {
+                broadcast.add(event)
+            }
+        })
+        client = new MqttTestClient(port, "test-client")
+    }
+
+    def cleanupSpec() {
+        client?.close()
+        bridge?.close()
+    }
+
+    def setup() {
+        published.clear()
+        broadcast.clear()
+    }
+
+    def "should pass binary payloads of clients unchanged"() {
+        when:
+        client.publish("beaver-iot/user@t1/uplink", BINARY_PAYLOAD)
+        client.flush()
+        def publishEvent = published.poll(5, TimeUnit.SECONDS)
+        def broadcastEvent = broadcast.poll(5, TimeUnit.SECONDS)
+
+        then:
+        publishEvent.topic == "beaver-iot/user@t1/uplink"
+        publishEvent.payload == BINARY_PAYLOAD
+        broadcastEvent.is(publishEvent)
+    }
+
+    def "should pass binary payloads of internal publishes unchanged"() {
+        when:
+        bridge.publish("beaver-iot-internal/_/broadcast", BINARY_PAYLOAD, MqttQoS.AT_MOST_ONCE, false)
+        def publishEvent = published.poll(5, TimeUnit.SECONDS)
+
+        then:
+        publishEvent.payload == BINARY_PAYLOAD
+        broadcast.poll(5, TimeUnit.SECONDS).payload == BINARY_PAYLOAD
+    }
+
+    def "should expose a read-only payload view and decode text on demand"() {
+        given:
+        def event = new MqttMessageEvent("t", "héllo".getBytes(StandardCharsets.UTF_8))
+
+        when:
+        event.payloadBuffer.put(0, 1 as byte)
+
+        then:
+        thrown(ReadOnlyBufferException)
+        event.payloadAsString == "héllo"
+    }
+
+    def "should copy the payload once instead of a string round trip"() {
+        given:
+        def payload = Unpooled.wrappedBuffer(new byte[1024])
+        def iterations = 10_000
+        // warm up both paths
+        1000.times { bridge.readPayload(payload); legacyReadPayload(payload) }
+
+        when:
+        def current = allocatedBytes { iterations.times { bridge.readPayload(payload) } }
+        def legacy = allocatedBytes { iterations.times { legacyReadPayload(payload) } }
+
+        then:
+        current < legacy / 2
+    }
+
+    /**
+     * Payload conversion of the bridge before the binary path, a string round trip done for both events
+     */
+    static byte[] legacyReadPayload(io.netty.buffer.ByteBuf payload) {
+        def text = payload.toString(StandardCharsets.UTF_8)
+        text.getBytes()
+        return text.getBytes()
+    }
+
+    static long allocatedBytes(Closure<?> work) {
+        def threadMXBean = ManagementFactory.threadMXBean as com.sun.management.ThreadMXBean
+        long threadId = Thread.currentThread().id
+        long start = threadMXBean.getThreadAllocatedBytes(threadId)
+        work()
+        return threadMXBean.getThreadAllocatedBytes(threadId) - start
+    }
+
+    static <T extends AbstractMqttBrokerBridge> T start(T bridge) {
+        def executor = AbstractMqttBrokerBridge.getDeclaredField("executor")
+        executor.accessible = true
+        executor.set(bridge, { Runnable task -> task.run() } as TaskExecutor)
+        bridge.open()
+        return bridge
+    }
+
+    static MqttAuthProvider allowAll() {
+        return [canLogin: { clientId, username, password -> true },
+                canDo   : { action, topic, clientId, username -> true }] as MqttAuthProvider
+    }
+
+    static Properties properties(int port) {
+        def properties = new Properties()
+        properties.setProperty("host", "127.0.0.1")
+        properties.setProperty("port", String.valueOf(port))
+        properties.setProperty("websocket_port", "disabled")
+        properties.setProperty("allow_anonymous", "true")
+        properties.setProperty("persistence_enabled", "false")
+        properties.setProperty("telemetry_enabled", "false")
+        properties.setProperty("netty.mqtt.message_size", "1048576")
+        return properties
+    }
+
+    static int freePort() {
+        new ServerSocket(0).withCloseable { it.localPort }
+    }
+
+}
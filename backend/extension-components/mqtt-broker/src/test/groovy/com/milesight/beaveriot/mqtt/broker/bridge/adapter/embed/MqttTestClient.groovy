@@ -0,0 +1,71 @@
+package com.milesight.beaveriot.mqtt.broker.bridge.adapter.embed
+
+import java.nio.charset.StandardCharsets
+
+/**
+ * Minimal MQTT 3.1.1 client publishing with QoS 0, the embedded moquette broker does not accept MQTT 5 clients.
+ */
+class MqttTestClient implements Closeable {
+
+    private final Socket socket
+
+    private final OutputStream output
+
+    MqttTestClient(int port, String clientId) {
+        socket = new Socket("127.0.0.1", port)
+        socket.tcpNoDelay = true
+        output = new BufferedOutputStream(socket.outputStream)
+
+        def variableHeader = new ByteArrayOutputStream()
+        writeString(variableHeader, "MQTT")
+        variableHeader.write(4) // protocol level 3.1.1
+        variableHeader.write(0x02) // clean session
+        variableHeader.write(0)
+        variableHeader.write(60) // keep alive
+        writeString(variableHeader, clientId)
+        writePacket(0x10, variableHeader.toByteArray())
+        output.flush()
+
+        def connack = socket.inputStream.readNBytes(4)
+        if (connack.length != 4 || connack[0] != (byte) 0x20 || connack[3] != 0) {
+            throw new IOException("connection refused: ${connack}")
+        }
+    }
+
+    void publish(String topic, byte[] payload) {
+        def body = new ByteArrayOutputStream(payload.length + topic.length() + 2)
+        writeString(body, topic)
+        body.write(payload)
+        writePacket(0x30, body.toByteArray())
+    }
+
+    void flush() {
+        output.flush()
+    }
+
+    @Override
+    void close() {
+        writePacket(0xE0, new byte[0])
+        output.flush()
+        socket.close()
+    }
+
+    private void writePacket(int type, byte[] body) {
+        output.write(type)
+        int remaining = body.length
+        do {
+            int digit = remaining % 128
+            remaining = remaining.intdiv(128)
+            output.write(remaining > 0 ? digit | 0x80 : digit)
+        } while (remaining > 0)
+        output.write(body)
+    }
+
+    private static void writeString(OutputStream out, String value) {
+        def bytes = value.getBytes(StandardCharsets.UTF_8)
+        out.write(bytes.length >> 8)
+        out.write(bytes.length & 0xFF)
+        out.write(bytes)
+    }
+
+}
@@ -53,24 +53,26 @@ public class ResourceStorage {
      * Upload resource
      */
     public void upload(String objKey, String contentType, byte[] data) {
+        upload(objKey, contentType, new ByteArrayInputStream(data), data.length);
+    }
+
+    /**
+     * Upload resource from a stream, which is not closed
+     */
+    public void upload(String objKey, String contentType, InputStream contentInput, long contentLength) {
         PutResourceRequest request = new PutResourceRequest();
         request.setObjectKey(objKey);
         request.setContentType(contentType);
-        request.setContentInput(new ByteArrayInputStream(data));
-        request.setContentLength((long) data.length);
+        request.setContentInput(contentInput);
+        request.setContentLength(contentLength);
         resourceAdapter.putResource(request);
     }
 
     /**
-     * Get resource
+     * Get resource, the returned stream must be closed
      */
     public InputStream get(String objKey) {
-        byte[] data = resourceAdapter.get(objKey);
-        if (data == null) {
-            return null;
-        }
-
-        return new ByteArrayInputStream(data);
+        return resourceAdapter.get(objKey);
     }
 
     /**
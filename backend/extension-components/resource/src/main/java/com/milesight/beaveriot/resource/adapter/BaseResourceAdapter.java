@@ -3,6 +3,7 @@ package com.milesight.beaveriot.resource.adapter;
 import com.milesight.beaveriot.resource.model.PutResourceRequest;
 import com.milesight.beaveriot.resource.model.ResourceStat;
 
+import java.io.InputStream;
 import java.net.URL;
 
 /**
@@ -18,7 +19,12 @@ public interface BaseResourceAdapter {
 
     ResourceStat stat(String objKey);
 
-    byte[] get(String objKey);
+    /**
+     * Open the content of a resource, the caller is responsible for closing it
+     *
+     * @return content stream, or null if the resource does not exist
+     */
+    InputStream get(String objKey);
 
     void delete(String objKey);
 
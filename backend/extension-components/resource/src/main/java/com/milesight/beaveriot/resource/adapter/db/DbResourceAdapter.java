@@ -3,10 +3,11 @@ package com.milesight.beaveriot.resource.adapter.db;
 import com.milesight.beaveriot.resource.adapter.BaseResourceAdapter;
 import com.milesight.beaveriot.resource.adapter.db.service.DbResourceConstants;
 import com.milesight.beaveriot.resource.adapter.db.service.DbResourceService;
+import com.milesight.beaveriot.resource.adapter.db.service.po.DbResourceDataPO;
 import com.milesight.beaveriot.resource.model.PutResourceRequest;
 import com.milesight.beaveriot.resource.model.ResourceStat;
-import lombok.SneakyThrows;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 
@@ -34,8 +35,13 @@ public class DbResourceAdapter implements BaseResourceAdapter {
     }
 
     @Override
-    public byte[] get(String objKey) {
-        return resourceService.getResource(objKey).getData();
+    public InputStream get(String objKey) {
+        DbResourceDataPO resourceData = resourceService.getResource(objKey);
+        if (resourceData == null) {
+            return null;
+        }
+
+        return resourceService.getContent(resourceData).getInputStream();
     }
 
     @Override
@@ -44,9 +50,8 @@ public class DbResourceAdapter implements BaseResourceAdapter {
     }
 
     @Override
-    @SneakyThrows
     public void putResource(PutResourceRequest request) {
-        resourceService.putResource(request.getObjectKey(), request.getContentType(), request.getContentInput().readAllBytes());
+        resourceService.putResource(request.getObjectKey(), request.getContentType(), request.getContentInput(), Long.MAX_VALUE);
     }
 
     @Override
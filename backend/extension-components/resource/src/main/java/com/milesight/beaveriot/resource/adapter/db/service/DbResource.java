@@ -0,0 +1,43 @@
+package com.milesight.beaveriot.resource.adapter.db.service;
+
+import com.milesight.beaveriot.resource.adapter.db.service.po.DbResourceDataPO;
+import com.milesight.beaveriot.resource.adapter.db.service.repository.DbResourceChunkStore;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.InputStream;
+
+/**
+ * Content of a db resource as a Spring {@link org.springframework.core.io.Resource}, so that it can be returned by
+ * controllers with range support. Every call to {@link #getInputStream()} reads the chunks anew.
+ */
+public class DbResource extends AbstractResource {
+
+    private final DbResourceDataPO resourceData;
+
+    private final DbResourceChunkStore chunkStore;
+
+    public DbResource(DbResourceDataPO resourceData, DbResourceChunkStore chunkStore) {
+        this.resourceData = resourceData;
+        this.chunkStore = chunkStore;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new DbResourceInputStream(chunkStore, resourceData.getContentId(), resourceData.getChunkSize(), resourceData.getContentLength());
+    }
+
+    @Override
+    public long contentLength() {
+        return resourceData.getContentLength();
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return "db resource [" + resourceData.getObjKey() + "]";
+    }
+}
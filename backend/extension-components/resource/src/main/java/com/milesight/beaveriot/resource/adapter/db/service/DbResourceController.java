@@ -3,17 +3,23 @@ package com.milesight.beaveriot.resource.adapter.db.service;
 import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.resource.adapter.db.service.po.DbResourceDataPO;
-import com.milesight.beaveriot.resource.config.ResourceConstants;
-import jakarta.servlet.http.HttpServletResponse;
+import com.milesight.beaveriot.resource.config.ResourceSettings;
+import jakarta.servlet.http.HttpServletRequest;
 import com.milesight.beaveriot.base.response.ResponseBody;
 import com.milesight.beaveriot.base.response.ResponseBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+
 /**
  * DbResourceController class.
+ * <p>
+ * Content is streamed in both directions. Downloads carry an ETag, so that If-None-Match is answered with 304, and
+ * Range requests are answered with 206 by Spring from the {@link DbResource} returned.
  *
  * @author simon
  * @date 2025/4/7
@@ -24,6 +30,9 @@ public class DbResourceController {
     @Autowired
     DbResourceService resourceService;
 
+    @Autowired
+    ResourceSettings resourceSettings;
+
     private String getFullKey(String keyScope, String keyIdentifier) {
         return keyScope + "/" + keyIdentifier;
     }
@@ -33,21 +42,21 @@ public class DbResourceController {
             @PathVariable("keyScope") String keyScope,
             @PathVariable("keyIdentifier") String keyIdentifier,
             @RequestHeader("Content-Type") String contentType,
-            @RequestBody byte[] fileData
-    ) {
-        if (fileData.length > ResourceConstants.MAX_FILE_SIZE) {
+            HttpServletRequest request
+    ) throws IOException {
+        long maxFileSize = resourceSettings.getMaxFileSize().toBytes();
+        if (request.getContentLengthLong() > maxFileSize) {
             throw ServiceException.with(ErrorCode.DATA_TOO_LARGE.getErrorCode(), "file too large").build();
         }
 
-        resourceService.putResource(getFullKey(keyScope, keyIdentifier), contentType, fileData);
+        resourceService.putResource(getFullKey(keyScope, keyIdentifier), contentType, request.getInputStream(), maxFileSize);
         return ResponseBuilder.success();
     }
 
     @GetMapping("/{keyScope}/{keyIdentifier}")
-    public ResponseEntity<byte[]> getResource(
+    public ResponseEntity<Resource> getResource(
             @PathVariable("keyScope") String keyScope,
-            @PathVariable("keyIdentifier") String keyIdentifier,
-            HttpServletResponse response
+            @PathVariable("keyIdentifier") String keyIdentifier
     ) {
         DbResourceDataPO resourceDataPO = resourceService.getResource(getFullKey(keyScope, keyIdentifier));
         if (resourceDataPO == null) {
@@ -59,6 +68,7 @@ public class DbResourceController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.valueOf(resourceDataPO.getContentType()))
-                .body(resourceDataPO.getData());
+                .eTag(resourceDataPO.getEtag())
+                .body(resourceService.getContent(resourceDataPO));
     }
 }
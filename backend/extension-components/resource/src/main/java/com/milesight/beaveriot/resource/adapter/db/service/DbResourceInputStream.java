@@ -0,0 +1,99 @@
+package com.milesight.beaveriot.resource.adapter.db.service;
+
+import com.milesight.beaveriot.resource.adapter.db.service.repository.DbResourceChunkStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the chunks of a db resource one at a time. Skipping does not load the chunks skipped over, so range requests
+ * only read the chunks they cover.
+ */
+class DbResourceInputStream extends InputStream {
+
+    private final DbResourceChunkStore chunkStore;
+
+    private final long contentId;
+
+    private final int chunkSize;
+
+    private final long contentLength;
+
+    private long position;
+
+    private int chunkIndex = -1;
+
+    private byte[] chunk;
+
+    DbResourceInputStream(DbResourceChunkStore chunkStore, long contentId, int chunkSize, long contentLength) {
+        this.chunkStore = chunkStore;
+        this.contentId = contentId;
+        this.chunkSize = chunkSize;
+        this.contentLength = contentLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= contentLength) {
+            return -1;
+        }
+
+        int offset = loadChunk();
+        position++;
+        return chunk[offset] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= contentLength) {
+            return -1;
+        }
+
+        int offset = loadChunk();
+        int n = (int) Math.min(Math.min(len, chunk.length - offset), contentLength - position);
+        System.arraycopy(chunk, offset, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, contentLength - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        if (chunk == null || position / chunkSize != chunkIndex) {
+            return 0;
+        }
+        return (int) Math.min(chunk.length - position % chunkSize, contentLength - position);
+    }
+
+    @Override
+    public void close() {
+        chunk = null;
+    }
+
+    private int loadChunk() throws IOException {
+        int index = (int) (position / chunkSize);
+        if (index != chunkIndex) {
+            chunk = null;
+            chunk = chunkStore.find(contentId, index);
+            if (chunk == null) {
+                throw new IOException("Chunk " + index + " of resource content " + contentId + " not found");
+            }
+            chunkIndex = index;
+        }
+
+        int offset = (int) (position % chunkSize);
+        if (offset >= chunk.length) {
+            throw new IOException("Chunk " + index + " of resource content " + contentId + " is truncated");
+        }
+        return offset;
+    }
+}
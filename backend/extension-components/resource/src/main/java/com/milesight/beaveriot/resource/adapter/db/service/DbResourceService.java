@@ -7,10 +7,11 @@ import com.milesight.beaveriot.context.constants.CacheKeyConstants;
 import com.milesight.beaveriot.resource.adapter.db.service.model.DbResourceBasicProjection;
 import com.milesight.beaveriot.resource.adapter.db.service.po.DbResourceDataPO;
 import com.milesight.beaveriot.resource.adapter.db.service.model.DbResourceDataPreSignData;
+import com.milesight.beaveriot.resource.adapter.db.service.repository.DbResourceChunkStore;
 import com.milesight.beaveriot.resource.adapter.db.service.repository.DbResourceDataRepository;
-import com.milesight.beaveriot.resource.config.ResourceConstants;
 import com.milesight.beaveriot.resource.config.ResourceSettings;
 import com.milesight.beaveriot.resource.model.ResourceStat;
+import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
@@ -19,10 +20,10 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.util.HashMap;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * DbResourceService class.
@@ -41,6 +42,9 @@ public class DbResourceService {
     @Autowired
     CacheManager cacheManager;
 
+    @Autowired
+    DbResourceChunkStore chunkStore;
+
     public DbResourceDataPreSignData getPreSignData(String objKey) {
         Cache cache = cacheManager.getCache(CacheKeyConstants.PRE_SIGN_CACHE_NAME);
         assert cache != null;
@@ -74,8 +78,16 @@ public class DbResourceService {
         return preSignPO.getExpiredAt() >= System.currentTimeMillis();
     }
 
+    /**
+     * Store the content of a resource chunk by chunk, only one chunk is held in memory at a time.
+     * The content replaces the previous one once it is completely stored.
+     *
+     * @param contentInput content, not closed
+     * @param maxLength    the upload fails once the content exceeds it
+     */
+    @SneakyThrows
     @CacheEvict(cacheNames = CacheKeyConstants.RESOURCE_DATA_CACHE_NAME, key = "#p0")
-    public void putResource(String objKey, String contentType, byte[] data) {
+    public void putResource(String objKey, String contentType, InputStream contentInput, long maxLength) {
         if (!validateSign(objKey)) {
             throw ServiceException
                     .with(ErrorCode.PARAMETER_VALIDATION_FAILED)
@@ -83,11 +95,36 @@ public class DbResourceService {
                     .build();
         }
 
+        long contentId = SnowflakeUtil.nextId();
+        int chunkSize = (int) resourceSettings.getDb().getChunkSize().toBytes();
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        byte[] buffer = new byte[chunkSize];
+        long contentLength = 0;
+        int chunkIndex = 0;
+        try {
+            int length;
+            while ((length = contentInput.readNBytes(buffer, 0, chunkSize)) > 0) {
+                contentLength += length;
+                if (contentLength > maxLength) {
+                    throw ServiceException.with(ErrorCode.DATA_TOO_LARGE.getErrorCode(), "file too large").build();
+                }
+
+                digest.update(buffer, 0, length);
+                chunkStore.insert(contentId, chunkIndex++, buffer, length);
+            }
+        } catch (Exception e) {
+            chunkStore.delete(contentId);
+            throw e;
+        }
+
         DbResourceDataPO resourceDataPO = resourceDataRepository.findByObjKey(objKey).orElse(null);
+        Long previousContentId = null;
         if (resourceDataPO == null) {
             resourceDataPO = new DbResourceDataPO();
             resourceDataPO.setId(SnowflakeUtil.nextId());
             resourceDataPO.setObjKey(objKey);
+        } else {
+            previousContentId = resourceDataPO.getContentId();
         }
 
         if (!StringUtils.hasText(contentType)) {
@@ -96,9 +133,15 @@ public class DbResourceService {
             resourceDataPO.setContentType(contentType);
         }
 
-        resourceDataPO.setContentLength((long) data.length);
-        resourceDataPO.setData(data);
+        resourceDataPO.setContentLength(contentLength);
+        resourceDataPO.setContentId(contentId);
+        resourceDataPO.setChunkSize(chunkSize);
+        resourceDataPO.setEtag(HexFormat.of().formatHex(digest.digest()));
         resourceDataRepository.save(resourceDataPO);
+
+        if (previousContentId != null) {
+            chunkStore.delete(previousContentId);
+        }
     }
 
     public ResourceStat statResource(String objKey) {
@@ -114,13 +157,21 @@ public class DbResourceService {
         return stat;
     }
 
+    /**
+     * Get the metadata of a resource, see {@link #getContent} for its content
+     */
     @Cacheable(cacheNames = CacheKeyConstants.RESOURCE_DATA_CACHE_NAME, key = "#p0")
     public DbResourceDataPO getResource(String objKey) {
         return resourceDataRepository.findByObjKey(objKey).orElse(null);
     }
 
+    public DbResource getContent(DbResourceDataPO resourceData) {
+        return new DbResource(resourceData, chunkStore);
+    }
+
+    @CacheEvict(cacheNames = CacheKeyConstants.RESOURCE_DATA_CACHE_NAME, key = "#p0")
     public void deleteResource(String objKey) {
-        DbResourceDataPO resourceData = getResource(objKey);
+        DbResourceDataPO resourceData = resourceDataRepository.findByObjKey(objKey).orElse(null);
         if (resourceData == null) {
             return;
         }
@@ -130,5 +181,8 @@ public class DbResourceService {
         cache.evict(objKey);
 
         resourceDataRepository.delete(resourceData);
+        if (resourceData.getContentId() != null) {
+            chunkStore.delete(resourceData.getContentId());
+        }
     }
 }
@@ -31,8 +31,17 @@ public class DbResourceDataPO {
     @Column(name = "content_length")
     private Long contentLength;
 
-    @Column(name = "data")
-    private byte[] data;
+    /**
+     * Id of the chunks in t_resource_chunk, a new one is assigned on every upload
+     */
+    @Column(name = "content_id")
+    private Long contentId;
+
+    @Column(name = "chunk_size")
+    private Integer chunkSize;
+
+    @Column(name = "etag", length = 64)
+    private String etag;
 
     @Column(name = "created_at")
     @CreatedDate
@@ -0,0 +1,40 @@
+package com.milesight.beaveriot.resource.adapter.db.service.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+/**
+ * Keeps the content of db resources in table t_resource_chunk, one row per chunk.
+ */
+@Component
+@RequiredArgsConstructor
+public class DbResourceChunkStore {
+
+    private static final String TABLE_NAME = "t_resource_chunk";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insert(long contentId, int chunkIndex, byte[] buffer, int length) {
+        jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (content_id, chunk_index, data) VALUES (?, ?, ?)", ps -> {
+            ps.setLong(1, contentId);
+            ps.setInt(2, chunkIndex);
+            ps.setBinaryStream(3, new ByteArrayInputStream(buffer, 0, length), length);
+        });
+    }
+
+    public byte[] find(long contentId, int chunkIndex) {
+        List<byte[]> chunks = jdbcTemplate.query(
+                "SELECT data FROM " + TABLE_NAME + " WHERE content_id = ? AND chunk_index = ?",
+                (rs, rowNum) -> rs.getBytes(1),
+                contentId, chunkIndex);
+        return chunks.isEmpty() ? null : chunks.get(0);
+    }
+
+    public void delete(long contentId) {
+        jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE content_id = ?", contentId);
+    }
+}
@@ -0,0 +1,218 @@
+package com.milesight.beaveriot.resource.adapter.local;
+
+import com.milesight.beaveriot.base.enums.ErrorCode;
+import com.milesight.beaveriot.base.exception.ServiceException;
+import com.milesight.beaveriot.base.utils.JsonUtils;
+import com.milesight.beaveriot.context.constants.CacheKeyConstants;
+import com.milesight.beaveriot.resource.adapter.BaseResourceAdapter;
+import com.milesight.beaveriot.resource.adapter.db.service.DbResourceConstants;
+import com.milesight.beaveriot.resource.adapter.db.service.model.DbResourceDataPreSignData;
+import com.milesight.beaveriot.resource.config.ResourceSettings;
+import com.milesight.beaveriot.resource.model.PutResourceRequest;
+import com.milesight.beaveriot.resource.model.ResourceStat;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Keeps resources in a directory of the local file system, for single node deployments without an S3 service.
+ * <p>
+ * The content of a resource is kept at data/{objKey} under the root path, and its content type and ETag at
+ * meta/{objKey}.json. Uploads are written to a temporary file first and moved in place once complete.
+ */
+@Slf4j
+public class LocalResourceAdapter implements BaseResourceAdapter {
+    public static final String RESOURCE_URL_PREFIX = "local-resource";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path dataPath;
+
+    private final Path metaPath;
+
+    private final Duration preSignExpire;
+
+    private final CacheManager cacheManager;
+
+    @SneakyThrows
+    public LocalResourceAdapter(ResourceSettings settings, CacheManager cacheManager) {
+        Path rootPath = Path.of(settings.getLocal().getRootPath()).toAbsolutePath().normalize();
+        this.dataPath = Files.createDirectories(rootPath.resolve("data"));
+        this.metaPath = Files.createDirectories(rootPath.resolve("meta"));
+        this.preSignExpire = settings.getPreSignExpire();
+        this.cacheManager = cacheManager;
+    }
+
+    private Cache getPreSignCache() {
+        Cache cache = cacheManager.getCache(CacheKeyConstants.PRE_SIGN_CACHE_NAME);
+        assert cache != null;
+        return cache;
+    }
+
+    private Path resolve(Path basePath, String objKey) {
+        Path path = basePath.resolve(objKey).normalize();
+        if (!path.startsWith(basePath) || path.equals(basePath)) {
+            throw new IllegalArgumentException("Invalid object key: " + objKey);
+        }
+        return path;
+    }
+
+    private Path resolveData(String objKey) {
+        return resolve(dataPath, objKey);
+    }
+
+    private Path resolveMeta(String objKey) {
+        return resolve(metaPath, objKey + ".json");
+    }
+
+    @Override
+    public String generatePutResourcePreSign(String objKey) {
+        DbResourceDataPreSignData preSignData = new DbResourceDataPreSignData();
+        preSignData.setObjKey(objKey);
+        preSignData.setExpiredAt(System.currentTimeMillis() + preSignExpire.toMillis());
+        getPreSignCache().put(objKey, preSignData);
+        return resolveResourceUrl(objKey);
+    }
+
+    public boolean validateSign(String objKey) {
+        DbResourceDataPreSignData preSignData = getPreSignCache().get(objKey, DbResourceDataPreSignData.class);
+        return preSignData != null && preSignData.getExpiredAt() >= System.currentTimeMillis();
+    }
+
+    @Override
+    public String resolveResourceUrl(String objKey) {
+        return "/" + RESOURCE_URL_PREFIX + "/" + objKey;
+    }
+
+    /**
+     * Get the metadata of a resource
+     *
+     * @return metadata, or null if the resource does not exist
+     */
+    public LocalResourceMetadata getMetadata(String objKey) {
+        try {
+            return JsonUtils.fromJSON(Files.readString(resolveMeta(objKey), StandardCharsets.UTF_8), LocalResourceMetadata.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Read metadata of local resource {} error: {}", objKey, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get the file of a resource
+     *
+     * @return file, or null if the resource does not exist
+     */
+    public Path getFile(String objKey) {
+        Path path = resolveData(objKey);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    @Override
+    public ResourceStat stat(String objKey) {
+        LocalResourceMetadata metadata = getMetadata(objKey);
+        Path path = getFile(objKey);
+        if (metadata == null || path == null) {
+            return null;
+        }
+
+        try {
+            ResourceStat stat = new ResourceStat();
+            stat.setSize(Files.size(path));
+            stat.setContentType(metadata.getContentType());
+            return stat;
+        } catch (IOException e) {
+            log.info("Get obj " + objKey + " error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public InputStream get(String objKey) {
+        Path path = getFile(objKey);
+        if (path == null) {
+            return null;
+        }
+
+        try {
+            return Files.newInputStream(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public void delete(String objKey) {
+        getPreSignCache().evict(objKey);
+        Files.deleteIfExists(resolveData(objKey));
+        Files.deleteIfExists(resolveMeta(objKey));
+    }
+
+    @Override
+    public void putResource(PutResourceRequest request) {
+        write(request.getObjectKey(), request.getContentType(), request.getContentInput(), Long.MAX_VALUE);
+    }
+
+    /**
+     * Write the content of a resource, replacing the previous one once it is completely written
+     *
+     * @param contentInput content, not closed
+     * @param maxLength    the upload fails once the content exceeds it
+     */
+    @SneakyThrows
+    public void write(String objKey, String contentType, InputStream contentInput, long maxLength) {
+        Path path = resolveData(objKey);
+        Path meta = resolveMeta(objKey);
+        Files.createDirectories(path.getParent());
+        Files.createDirectories(meta.getParent());
+
+        Path tempFile = Files.createTempFile(path.getParent(), ".upload-", ".tmp");
+        Path tempMeta = Files.createTempFile(meta.getParent(), ".upload-", ".tmp");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long contentLength = 0;
+            try (OutputStream output = Files.newOutputStream(tempFile)) {
+                int length;
+                while ((length = contentInput.read(buffer)) != -1) {
+                    contentLength += length;
+                    if (contentLength > maxLength) {
+                        throw ServiceException.with(ErrorCode.DATA_TOO_LARGE.getErrorCode(), "file too large").build();
+                    }
+
+                    digest.update(buffer, 0, length);
+                    output.write(buffer, 0, length);
+                }
+            }
+
+            LocalResourceMetadata metadata = new LocalResourceMetadata();
+            metadata.setContentType(StringUtils.hasText(contentType) ? contentType : DbResourceConstants.RESOURCE_DEFAULT_CONTENT_TYPE);
+            metadata.setEtag(HexFormat.of().formatHex(digest.digest()));
+            Files.writeString(tempMeta, JsonUtils.toJSON(metadata), StandardCharsets.UTF_8);
+            // the ETag is replaced after the content, so that it never describes content not yet readable
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tempMeta, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+            Files.deleteIfExists(tempMeta);
+        }
+    }
+}
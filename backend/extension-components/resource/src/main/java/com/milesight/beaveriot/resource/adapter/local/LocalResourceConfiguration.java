@@ -0,0 +1,20 @@
+package com.milesight.beaveriot.resource.adapter.local;
+
+import com.milesight.beaveriot.resource.config.ResourceSettings;
+import com.milesight.beaveriot.resource.config.ResourceStorageType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * LocalResourceConfiguration class.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "resource", name = "storage", havingValue = ResourceStorageType.LOCAL)
+public class LocalResourceConfiguration {
+    @Bean(name = "localResourceAdapter")
+    public LocalResourceAdapter localResourceAdapter(ResourceSettings resourceSettings, CacheManager cacheManager) {
+        return new LocalResourceAdapter(resourceSettings, cacheManager);
+    }
+}
@@ -0,0 +1,84 @@
+package com.milesight.beaveriot.resource.adapter.local;
+
+import com.milesight.beaveriot.base.enums.ErrorCode;
+import com.milesight.beaveriot.base.exception.ServiceException;
+import com.milesight.beaveriot.base.response.ResponseBody;
+import com.milesight.beaveriot.base.response.ResponseBuilder;
+import com.milesight.beaveriot.resource.config.ResourceSettings;
+import com.milesight.beaveriot.resource.config.ResourceStorageType;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * LocalResourceController class, the counterpart of the db resource controller for {@link LocalResourceAdapter}.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "resource", name = "storage", havingValue = ResourceStorageType.LOCAL)
+@RequestMapping(LocalResourceAdapter.RESOURCE_URL_PREFIX)
+public class LocalResourceController {
+    private final LocalResourceAdapter resourceAdapter;
+
+    private final ResourceSettings resourceSettings;
+
+    public LocalResourceController(LocalResourceAdapter resourceAdapter, ResourceSettings resourceSettings) {
+        this.resourceAdapter = resourceAdapter;
+        this.resourceSettings = resourceSettings;
+    }
+
+    private String getFullKey(String keyScope, String keyIdentifier) {
+        return keyScope + "/" + keyIdentifier;
+    }
+
+    @PutMapping("/{keyScope}/{keyIdentifier}")
+    public ResponseBody<Void> putResource(
+            @PathVariable("keyScope") String keyScope,
+            @PathVariable("keyIdentifier") String keyIdentifier,
+            @RequestHeader("Content-Type") String contentType,
+            HttpServletRequest request
+    ) throws IOException {
+        String objKey = getFullKey(keyScope, keyIdentifier);
+        if (!resourceAdapter.validateSign(objKey)) {
+            throw ServiceException
+                    .with(ErrorCode.PARAMETER_VALIDATION_FAILED)
+                    .detailMessage("Invalid pre sign.")
+                    .build();
+        }
+
+        long maxFileSize = resourceSettings.getMaxFileSize().toBytes();
+        if (request.getContentLengthLong() > maxFileSize) {
+            throw ServiceException.with(ErrorCode.DATA_TOO_LARGE.getErrorCode(), "file too large").build();
+        }
+
+        resourceAdapter.write(objKey, contentType, request.getInputStream(), maxFileSize);
+        return ResponseBuilder.success();
+    }
+
+    @GetMapping("/{keyScope}/{keyIdentifier}")
+    public ResponseEntity<Resource> getResource(
+            @PathVariable("keyScope") String keyScope,
+            @PathVariable("keyIdentifier") String keyIdentifier
+    ) {
+        String objKey = getFullKey(keyScope, keyIdentifier);
+        LocalResourceMetadata metadata = resourceAdapter.getMetadata(objKey);
+        Path path = resourceAdapter.getFile(objKey);
+        if (metadata == null || path == null) {
+            return ResponseEntity
+                    .notFound()
+                    .build();
+        }
+
+        return ResponseEntity
+                .ok()
+                .contentType(MediaType.valueOf(metadata.getContentType()))
+                .eTag(metadata.getEtag())
+                .body(new FileSystemResource(path));
+    }
+}
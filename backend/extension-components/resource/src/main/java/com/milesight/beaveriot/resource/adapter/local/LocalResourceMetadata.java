@@ -0,0 +1,13 @@
+package com.milesight.beaveriot.resource.adapter.local;
+
+import lombok.Data;
+
+/**
+ * LocalResourceMetadata class, kept as json beside the content of a local resource.
+ */
+@Data
+public class LocalResourceMetadata {
+    private String contentType;
+
+    private String etag;
+}
@@ -11,6 +11,7 @@ import io.minio.http.Method;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.InputStream;
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
@@ -95,13 +96,12 @@ public class S3ResourceAdapter implements BaseResourceAdapter {
 
     @Override
     @SneakyThrows
-    public byte[] get(String objKey) {
+    public InputStream get(String objKey) {
         GetObjectArgs getObjectArgs = GetObjectArgs.builder()
                 .bucket(bucketName)
                 .object(objKey)
                 .build();
-        GetObjectResponse getObjectResponse = s3Client.getObject(getObjectArgs);
-        return getObjectResponse.readAllBytes();
+        return s3Client.getObject(getObjectArgs);
     }
 
     @Override
@@ -3,6 +3,7 @@ package com.milesight.beaveriot.resource.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 
@@ -21,8 +22,14 @@ public class ResourceSettings {
 
     private Duration preSignExpire;
 
+    private DataSize maxFileSize = DataSize.ofBytes(ResourceConstants.MAX_FILE_SIZE);
+
     private S3 s3;
 
+    private Db db = new Db();
+
+    private Local local = new Local();
+
     @Data
     public static class S3 {
         private String endpoint;
@@ -35,4 +42,17 @@ public class ResourceSettings {
 
         private String bucket;
     }
+
+    @Data
+    public static class Db {
+        /**
+         * Size of the chunks the content is stored in, changing it only affects content uploaded afterward
+         */
+        private DataSize chunkSize = DataSize.ofMegabytes(1);
+    }
+
+    @Data
+    public static class Local {
+        private String rootPath = "data/resource";
+    }
 }
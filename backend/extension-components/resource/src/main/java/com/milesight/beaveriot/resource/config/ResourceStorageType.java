@@ -12,4 +12,6 @@ public class ResourceStorageType {
     public static final String S3 = "s3";
 
     public static final String DB = "db";
+
+    public static final String LOCAL = "local";
 }
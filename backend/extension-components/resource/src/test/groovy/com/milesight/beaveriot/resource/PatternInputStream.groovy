@@ -0,0 +1,54 @@
+package com.milesight.beaveriot.resource
+
+import groovy.transform.CompileStatic
+
+/**
+ * Generates content of any length without holding it, byte n of the content is {@link #byteAt(long)}.
+ */
+@CompileStatic
+class PatternInputStream extends InputStream {
+
+    final long length
+
+    long position
+
+    PatternInputStream(long length) {
+        this.length = length
+    }
+
+    static byte byteAt(long position) {
+        return (byte) (position * 31 + (position >>> 11))
+    }
+
+    static byte[] bytes(long from, int length) {
+        def bytes = new byte[length]
+        for (int i = 0; i < length; i++) {
+            bytes[i] = byteAt(from + i)
+        }
+        return bytes
+    }
+
+    @Override
+    int read() {
+        return position < length ? byteAt(position++) & 0xff : -1
+    }
+
+    @Override
+    int read(byte[] b, int off, int len) {
+        if (position >= length) {
+            return -1
+        }
+        int n = (int) Math.min(len, length - position)
+        for (int i = 0; i < n; i++) {
+            b[off + i] = byteAt(position + i)
+        }
+        position += n
+        return n
+    }
+
+    static long usedHeap() {
+        System.gc()
+        def runtime = Runtime.getRuntime()
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+}
@@ -0,0 +1,287 @@
+package com.milesight.beaveriot.resource.adapter.db.service
+
+import com.milesight.beaveriot.base.exception.ServiceException
+import com.milesight.beaveriot.resource.PatternInputStream
+import com.milesight.beaveriot.resource.adapter.db.service.po.DbResourceDataPO
+import com.milesight.beaveriot.resource.adapter.db.service.repository.DbResourceChunkStore
+import com.milesight.beaveriot.resource.adapter.db.service.repository.DbResourceDataRepository
+import com.milesight.beaveriot.resource.config.ResourceSettings
+import groovy.transform.CompileStatic
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager
+import org.springframework.http.HttpHeaders
+import org.springframework.test.web.servlet.MockMvc
+import org.springframework.test.web.servlet.setup.MockMvcBuilders
+import org.springframework.util.unit.DataSize
+import spock.lang.Specification
+
+import java.security.MessageDigest
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put
+
+class DbResourceServiceTest extends Specification {
+
+    static final String KEY = "beaver-iot-public/test-file"
+
+    static final long LARGE_CONTENT_LENGTH = DataSize.ofMegabytes(512).toBytes() + 12345
+
+    static final long MAX_HEAP_GROWTH = DataSize.ofMegabytes(64).toBytes()
+
+    DbResourceDataRepository repository = Mock()
+
+    PatternChunkStore chunkStore = new PatternChunkStore()
+
+    ResourceSettings settings = new ResourceSettings(preSignExpire: Duration.ofMinutes(15))
+
+    DbResourceService service = new DbResourceService(
+            resourceDataRepository: repository,
+            resourceSettings: settings,
+            cacheManager: new ConcurrentMapCacheManager(),
+            chunkStore: chunkStore)
+
+    DbResourceDataPO stored
+
+    def setup() {
+        repository.findByObjKey(KEY) >> { Optional.ofNullable(stored) }
+        repository.save(_) >> { DbResourceDataPO po -> stored = po }
+    }
+
+    static String md5(InputStream input) {
+        def digest = MessageDigest.getInstance("MD5")
+        def buffer = new byte[8192]
+        int length
+        while ((length = input.read(buffer)) != -1) {
+            digest.update(buffer, 0, length)
+        }
+        return HexFormat.of().formatHex(digest.digest())
+    }
+
+    def "large uploads should be stored chunk by chunk with flat heap usage"() {
+        given:
+        service.preSign(KEY)
+        long baseline = PatternInputStream.usedHeap()
+        long maxUsed = baseline
+        chunkStore.onChunk = { int chunkIndex ->
+            if (chunkIndex % 64 == 0) {
+                maxUsed = Math.max(maxUsed, PatternInputStream.usedHeap())
+            }
+        }
+
+        when:
+        service.putResource(KEY, "application/octet-stream", new PatternInputStream(LARGE_CONTENT_LENGTH), Long.MAX_VALUE)
+
+        then:
+        stored.contentLength == LARGE_CONTENT_LENGTH
+        stored.chunkSize == DataSize.ofMegabytes(1).toBytes()
+        chunkStore.chunkCount(stored.contentId) == 513
+        stored.etag == md5(new PatternInputStream(LARGE_CONTENT_LENGTH))
+        maxUsed - baseline < MAX_HEAP_GROWTH
+    }
+
+    def "large downloads should be read chunk by chunk with flat heap usage"() {
+        given:
+        service.preSign(KEY)
+        service.putResource(KEY, null, new PatternInputStream(LARGE_CONTENT_LENGTH), Long.MAX_VALUE)
+        long baseline = PatternInputStream.usedHeap()
+        long maxUsed = baseline
+        chunkStore.onFind = { int chunkIndex ->
+            if (chunkIndex % 64 == 0) {
+                maxUsed = Math.max(maxUsed, PatternInputStream.usedHeap())
+            }
+        }
+
+        when:
+        def resource = service.getContent(service.getResource(KEY))
+        def etag = resource.getInputStream().withCloseable { md5(it) }
+
+        then:
+        stored.contentType == DbResourceConstants.RESOURCE_DEFAULT_CONTENT_TYPE
+        resource.contentLength() == LARGE_CONTENT_LENGTH
+        etag == stored.etag
+        chunkStore.finds == 513
+        maxUsed - baseline < MAX_HEAP_GROWTH
+    }
+
+    def "skipping should only read the chunks needed"() {
+        given:
+        service.preSign(KEY)
+        service.putResource(KEY, null, new PatternInputStream(LARGE_CONTENT_LENGTH), Long.MAX_VALUE)
+        long offset = DataSize.ofMegabytes(300).toBytes() - 5
+
+        when:
+        def input = service.getContent(stored).getInputStream()
+        def skipped = input.skip(offset)
+        def bytes = input.readNBytes(10)
+
+        then:
+        skipped == offset
+        bytes == PatternInputStream.bytes(offset, 10)
+        chunkStore.finds == 2
+
+        when:
+        input.skip(LARGE_CONTENT_LENGTH)
+
+        then:
+        input.read() == -1
+    }
+
+    def "uploads exceeding the max length should fail and leave no chunks"() {
+        given:
+        service.preSign(KEY)
+
+        when:
+        service.putResource(KEY, null, new PatternInputStream(DataSize.ofMegabytes(3).toBytes()), DataSize.ofMegabytes(2).toBytes())
+
+        then:
+        thrown(ServiceException)
+        stored == null
+        chunkStore.deleted.size() == 1
+        chunkStore.chunkCount(chunkStore.deleted[0]) == 0
+    }
+
+    def "uploads without pre sign should be rejected"() {
+        when:
+        service.putResource(KEY, null, new PatternInputStream(10), Long.MAX_VALUE)
+
+        then:
+        thrown(ServiceException)
+        chunkStore.inserts == 0
+    }
+
+    def "replacing the content should delete the previous chunks"() {
+        given:
+        service.preSign(KEY)
+        service.putResource(KEY, null, new PatternInputStream(100), Long.MAX_VALUE)
+        def previous = stored.contentId
+        def previousEtag = stored.etag
+
+        when:
+        service.putResource(KEY, "text/plain", new PatternInputStream(200), Long.MAX_VALUE)
+
+        then:
+        stored.contentId != previous
+        stored.etag != previousEtag
+        stored.contentType == "text/plain"
+        chunkStore.deleted == [previous]
+
+        when:
+        service.deleteResource(KEY)
+
+        then:
+        1 * repository.delete(stored)
+        chunkStore.deleted == [previous, stored.contentId]
+    }
+
+    def "downloads should support range and conditional requests"() {
+        given:
+        settings.db.chunkSize = DataSize.ofBytes(1024)
+        settings.maxFileSize = DataSize.ofBytes(4096)
+        def controller = new DbResourceController(resourceService: service, resourceSettings: settings)
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build()
+        service.preSign(KEY)
+
+        when:
+        def uploaded = mockMvc.perform(put("/db-resource/" + KEY)
+                .contentType("image/png")
+                .content(PatternInputStream.bytes(0, 3000)))
+                .andReturn().response
+
+        then:
+        uploaded.status == 200
+        stored.contentType == "image/png"
+        chunkStore.chunkCount(stored.contentId) == 3
+
+        when:
+        def full = mockMvc.perform(get("/db-resource/" + KEY)).andReturn().response
+
+        then:
+        full.status == 200
+        full.contentType == "image/png"
+        full.getHeader(HttpHeaders.ETAG) == "\"" + stored.etag + "\""
+        full.contentAsByteArray == PatternInputStream.bytes(0, 3000)
+
+        when:
+        chunkStore.finds = 0
+        def notModified = mockMvc.perform(get("/db-resource/" + KEY)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + stored.etag + "\""))
+                .andReturn().response
+
+        then:
+        notModified.status == 304
+        notModified.contentAsByteArray.length == 0
+        chunkStore.finds == 0
+
+        when:
+        def partial = mockMvc.perform(get("/db-resource/" + KEY)
+                .header(HttpHeaders.RANGE, "bytes=1500-2099"))
+                .andReturn().response
+
+        then:
+        partial.status == 206
+        partial.getHeader(HttpHeaders.CONTENT_RANGE) == "bytes 1500-2099/3000"
+        partial.contentAsByteArray == PatternInputStream.bytes(1500, 600)
+        chunkStore.finds == 2
+    }
+
+    /**
+     * Checks the chunks inserted against the pattern and generates them again when found, so that no content is held.
+     */
+    @CompileStatic
+    static class PatternChunkStore extends DbResourceChunkStore {
+
+        Map<Long, Integer> chunkCounts = new ConcurrentHashMap<>()
+
+        Map<Long, Integer> chunkSizes = new ConcurrentHashMap<>()
+
+        Map<Long, Long> contentLengths = new ConcurrentHashMap<>()
+
+        List<Long> deleted = []
+
+        int inserts
+
+        int finds
+
+        Closure onChunk
+
+        Closure onFind
+
+        PatternChunkStore() {
+            super(null)
+        }
+
+        @Override
+        void insert(long contentId, int chunkIndex, byte[] buffer, int length) {
+            assert chunkCount(contentId) == chunkIndex
+            long from = (long) chunkIndex * buffer.length
+            assert Arrays.equals(buffer, 0, length, PatternInputStream.bytes(from, length), 0, length)
+            inserts++
+            chunkCounts[contentId] = chunkIndex + 1
+            chunkSizes[contentId] = buffer.length
+            contentLengths[contentId] = from + length
+            onChunk?.call(chunkIndex)
+        }
+
+        @Override
+        byte[] find(long contentId, int chunkIndex) {
+            finds++
+            onFind?.call(chunkIndex)
+            if (chunkIndex >= chunkCount(contentId)) {
+                return null
+            }
+            long from = (long) chunkIndex * chunkSizes[contentId]
+            return PatternInputStream.bytes(from, (int) Math.min(chunkSizes[contentId], contentLengths[contentId] - from))
+        }
+
+        @Override
+        void delete(long contentId) {
+            chunkCounts.remove(contentId)
+            deleted << contentId
+        }
+
+        int chunkCount(long contentId) {
+            return chunkCounts.getOrDefault(contentId, 0)
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.milesight.beaveriot.resource.adapter.local
+
+import com.milesight.beaveriot.base.exception.ServiceException
+import com.milesight.beaveriot.resource.PatternInputStream
+import com.milesight.beaveriot.resource.config.ResourceSettings
+import com.milesight.beaveriot.resource.model.PutResourceRequest
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager
+import org.springframework.http.HttpHeaders
+import org.springframework.test.web.servlet.MockMvc
+import org.springframework.test.web.servlet.setup.MockMvcBuilders
+import org.springframework.util.FileSystemUtils
+import org.springframework.util.unit.DataSize
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.security.MessageDigest
+import java.time.Duration
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put
+
+class LocalResourceAdapterTest extends Specification {
+
+    static final String KEY = "beaver-iot-public/test-file"
+
+    Path rootPath = Files.createTempDirectory("local-resource")
+
+    ResourceSettings settings = new ResourceSettings(
+            preSignExpire: Duration.ofMinutes(15),
+            local: new ResourceSettings.Local(rootPath: rootPath.toString()))
+
+    LocalResourceAdapter adapter = new LocalResourceAdapter(settings, new ConcurrentMapCacheManager())
+
+    def cleanup() {
+        FileSystemUtils.deleteRecursively(rootPath)
+    }
+
+    static String md5(InputStream input) {
+        def digest = MessageDigest.getInstance("MD5")
+        def buffer = new byte[8192]
+        int length
+        while ((length = input.read(buffer)) != -1) {
+            digest.update(buffer, 0, length)
+        }
+        return HexFormat.of().formatHex(digest.digest())
+    }
+
+    def "large resources should be written and read as streams with flat heap usage"() {
+        given:
+        long contentLength = DataSize.ofMegabytes(256).toBytes() + 7
+        def request = new PutResourceRequest(objectKey: KEY, contentType: "video/mp4",
+                contentInput: new PatternInputStream(contentLength), contentLength: contentLength)
+        long baseline = PatternInputStream.usedHeap()
+
+        when:
+        adapter.putResource(request)
+        long afterWrite = PatternInputStream.usedHeap()
+        def etag = adapter.get(KEY).withCloseable { md5(it) }
+        long afterRead = PatternInputStream.usedHeap()
+
+        then:
+        adapter.stat(KEY).size == contentLength
+        adapter.stat(KEY).contentType == "video/mp4"
+        adapter.getMetadata(KEY).etag == etag
+        etag == md5(new PatternInputStream(contentLength))
+        afterWrite - baseline < DataSize.ofMegabytes(64).toBytes()
+        afterRead - baseline < DataSize.ofMegabytes(64).toBytes()
+        Files.list(rootPath.resolve("data/beaver-iot-public")).count() == 1
+    }
+
+    def "failed uploads should keep the previous content"() {
+        given:
+        adapter.write(KEY, "text/plain", new PatternInputStream(100), Long.MAX_VALUE)
+        def etag = adapter.getMetadata(KEY).etag
+
+        when:
+        adapter.write(KEY, "text/plain", new PatternInputStream(300), 200)
+
+        then:
+        thrown(ServiceException)
+        adapter.getMetadata(KEY).etag == etag
+        adapter.stat(KEY).size == 100
+        Files.list(rootPath.resolve("data/beaver-iot-public")).count() == 1
+    }
+
+    def "keys outside of the root path should be rejected"() {
+        when:
+        adapter.get("../../etc/passwd")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "deleted and unknown resources should not be found"() {
+        given:
+        adapter.write(KEY, null, new PatternInputStream(10), Long.MAX_VALUE)
+
+        when:
+        adapter.delete(KEY)
+
+        then:
+        adapter.get(KEY) == null
+        adapter.stat(KEY) == null
+        adapter.getMetadata(KEY) == null
+        adapter.get("beaver-iot-public/unknown") == null
+    }
+
+    def "downloads should support range and conditional requests"() {
+        given:
+        settings.maxFileSize = DataSize.ofBytes(4096)
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new LocalResourceController(adapter, settings)).build()
+        def url = adapter.generatePutResourcePreSign(KEY)
+
+        when:
+        def uploaded = mockMvc.perform(put(url).contentType("image/png").content(PatternInputStream.bytes(0, 3000)))
+                .andReturn().response
+        def etag = "\"" + adapter.getMetadata(KEY).etag + "\""
+
+        then:
+        uploaded.status == 200
+
+        when:
+        def full = mockMvc.perform(get(url)).andReturn().response
+
+        then:
+        full.status == 200
+        full.contentType == "image/png"
+        full.getHeader(HttpHeaders.ETAG) == etag
+        full.contentAsByteArray == PatternInputStream.bytes(0, 3000)
+
+        when:
+        def notModified = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn().response
+
+        then:
+        notModified.status == 304
+
+        when:
+        def partial = mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=-100")).andReturn().response
+
+        then:
+        partial.status == 206
+        partial.getHeader(HttpHeaders.CONTENT_RANGE) == "bytes 2900-2999/3000"
+        partial.contentAsByteArray == PatternInputStream.bytes(2900, 100)
+    }
+}
@@ -5,14 +5,18 @@ import com.google.common.cache.CacheBuilder;
 import com.milesight.beaveriot.base.annotations.shedlock.DistributedLock;
 import com.milesight.beaveriot.base.annotations.shedlock.LockScope;
 import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.membership.ClusterMembership;
 import com.milesight.beaveriot.pubsub.MessagePubSub;
 import com.milesight.beaveriot.pubsub.api.annotation.MessageListener;
+import com.milesight.beaveriot.scheduler.core.callback.ScheduledTaskCallbackDirectory;
 import com.milesight.beaveriot.scheduler.core.model.ScheduledTask;
 import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskCallbackTerminatedEvent;
 import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskCancelledEvent;
 import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskRemoteTriggeredEvent;
 import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskUpdatedEvent;
+import com.milesight.beaveriot.scheduler.core.shard.ScheduledTaskShardDispatcher;
 import io.netty.util.HashedWheelTimer;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -20,18 +24,22 @@ import net.javacrumbs.shedlock.core.LockProvider;
 import net.javacrumbs.shedlock.spring.aop.ScopedLockConfiguration;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -51,8 +59,9 @@ public class ScheduledTaskExecutor {
             .expireAfterWrite(1, TimeUnit.MINUTES)
             .concurrencyLevel(4)
             .build();
-    private static final ExecutorService taskExecutor = new ThreadPoolExecutor(1, 20, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
-    private static final HashedWheelTimer hashedWheelTimer = new HashedWheelTimer(Executors.defaultThreadFactory(), 1000, TimeUnit.MILLISECONDS, 512, true, -1, taskExecutor);
+    // an executor with an unbounded queue never grows beyond its core threads, so the core threads time out instead
+    private static final ExecutorService taskExecutor = newTaskExecutor(20);
+    private static final HashedWheelTimer hashedWheelTimer = new HashedWheelTimer(Executors.defaultThreadFactory(), 100, TimeUnit.MILLISECONDS, 512, true, -1, taskExecutor);
     private final AtomicBoolean running = new AtomicBoolean(true);
 
     @Autowired
@@ -67,6 +76,20 @@ public class ScheduledTaskExecutor {
     @Autowired
     private LockProvider lockProvider;
 
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private ScheduledTaskCallbackDirectory scheduledTaskCallbackDirectory;
+
+    private ScheduledTaskShardDispatcher shardDispatcher;
+
+    private static ExecutorService newTaskExecutor(int threads) {
+        val executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private static long nowEpochSecond() {
         return System.currentTimeMillis() / 1000;
     }
@@ -75,49 +98,23 @@ public class ScheduledTaskExecutor {
         taskIds.forEach(taskId -> cancelledTaskIds.put(taskId, taskKey));
     }
 
-    @Transactional
-    @Scheduled(cron = "0 * * * * *")
-    @DistributedLock(name = "scheduler", lockAtLeastFor = "59s", lockAtMostFor = "59s", scope = LockScope.GLOBAL, throwOnLockFailure = false)
+    @PostConstruct
+    protected void init() {
+        shardDispatcher = new ScheduledTaskShardDispatcher(clusterMembership, scheduler, this::runClaimedTask,
+                hashedWheelTimer, PRE_FETCH_RANGE, MAX_ATTEMPTS, 500);
+    }
+
+    /**
+     * Preload the upcoming tasks of the shards owned by this node, the interval must be shorter than the pre-fetch range
+     */
+    @Scheduled(fixedDelayString = "${scheduler.scan-interval:10s}")
     public void runTasks() {
         if (!running.get()) {
             log.warn("scheduler is not running");
             return;
         }
 
-        val currentDateTime = ZonedDateTime.now()
-                .withSecond(0)
-                .withNano(0);
-        val currentEpochSecond = currentDateTime.toEpochSecond();
-        log.info("run scheduled tasks: {}", currentEpochSecond);
-
-        scheduler.scanScheduledTasksByChunk(0L, currentEpochSecond + PRE_FETCH_RANGE, 500, tasks -> {
-            tasks = tasks.stream()
-                    // filter out tasks that are running
-                    .filter(t -> t.getAttempts() == 0 || t.getExecutionEpochSecond() < currentEpochSecond - PRE_FETCH_RANGE)
-                    .toList();
-
-            log.info("{} available tasks found", tasks.size());
-
-            val failedTaskIds = new ArrayList<Long>();
-            val runningTaskIds = new ArrayList<Long>();
-            tasks.forEach(task -> {
-                if (task.getAttempts() >= MAX_ATTEMPTS) {
-                    log.info("scheduled task '{}' was failed after {} attempts", task.getId(), task.getAttempts());
-                    failedTaskIds.add(task.getId());
-                    return;
-                }
-                runningTaskIds.add(task.getId());
-                task.setAttempts(task.getAttempts() + 1);
-                runTask(currentDateTime, task);
-            });
-
-            if (!failedTaskIds.isEmpty()) {
-                markAsFailed(failedTaskIds);
-            }
-            if (!runningTaskIds.isEmpty()) {
-                markAsRunning(runningTaskIds);
-            }
-        });
+        shardDispatcher.preload();
     }
 
     @Transactional
@@ -128,28 +125,11 @@ public class ScheduledTaskExecutor {
     }
 
 
-    private void markAsRunning(ArrayList<Long> runningTaskIds) {
-        scheduledTaskRepository.increaseAttemptsByIds(runningTaskIds);
-    }
-
-    private void markAsFailed(ArrayList<Long> failedTaskIds) {
-        scheduledTaskRepository.updateTriggeredAtAndAttemptsByIds(failedTaskIds, nowEpochSecond());
-    }
-
-    public void runTask(ZonedDateTime taskExecutionDateTime, ScheduledTask task) {
-        val now = nowEpochSecond();
-        val delay = task.getExecutionEpochSecond() - now;
-        try {
-            if (delay <= 1) {
-                log.debug("run scheduled task immediately '{}'({})", task.getTaskKey(), task.getId());
-                taskExecutor.submit(() -> doRunTask(taskExecutionDateTime, task));
-            } else {
-                log.debug("scheduled task '{}'({}) will be executed after {} seconds", task.getTaskKey(), task.getId(), delay);
-                hashedWheelTimer.newTimeout(timeout -> taskExecutor.submit(() -> doRunTask(taskExecutionDateTime.plusSeconds(delay), task)), delay, TimeUnit.SECONDS);
-            }
-        } catch (Exception e) {
-            log.error("submit task failed: '{}'", task.getTaskKey(), e);
-        }
+    private void runClaimedTask(ScheduledTask task) {
+        // overdue tasks run at the current time, which decides whether they expired and when they run next
+        val executionEpochSecond = Math.max(task.getExecutionEpochSecond(), nowEpochSecond());
+        val taskExecutionDateTime = ZonedDateTime.ofInstant(Instant.ofEpochSecond(executionEpochSecond), ZoneId.systemDefault());
+        doRunTask(taskExecutionDateTime, task);
     }
 
     private void doRunTask(ZonedDateTime taskExecutionDateTime, ScheduledTask task) {
@@ -164,14 +144,24 @@ public class ScheduledTaskExecutor {
                 triggerTaskCallback(task, taskExecutionDateTime, callback);
             } else {
                 // the callback may be registered on other nodes
-                log.debug("scheduled task callback was not found in local: '{}'", task.getTaskKey());
-                messagePubSub.publish(new ScheduledTaskRemoteTriggeredEvent(task, taskExecutionDateTime));
+                val targetMemberId = selectCallbackHost(task.getTaskKey());
+                log.debug("scheduled task callback was not found in local: '{}', send to: {}", task.getTaskKey(), targetMemberId);
+                messagePubSub.publish(new ScheduledTaskRemoteTriggeredEvent(task, taskExecutionDateTime, targetMemberId));
             }
         } catch (Exception e) {
             log.error("execute task '{}' failed", task.getTaskKey(), e);
         }
     }
 
+    @Nullable
+    private String selectCallbackHost(String taskKey) {
+        val hosts = new ArrayList<>(scheduledTaskCallbackDirectory.getCallbackHosts(taskKey));
+        if (hosts.isEmpty()) {
+            return null;
+        }
+        return hosts.get(ThreadLocalRandom.current().nextInt(hosts.size()));
+    }
+
     private void markAsTriggered(ScheduledTask task) {
         scheduledTaskRepository.updateTriggeredAtByIds(List.of(task.getId()), nowEpochSecond());
     }
@@ -180,12 +170,28 @@ public class ScheduledTaskExecutor {
     public void onRemoteTriggered(ScheduledTaskRemoteTriggeredEvent scheduledTaskRemoteTriggeredEvent) {
         val scheduledTask = scheduledTaskRemoteTriggeredEvent.getScheduledTask();
         val taskExecutionDateTime = scheduledTaskRemoteTriggeredEvent.getTaskExecutionDateTime();
+        val targetMemberId = scheduledTaskRemoteTriggeredEvent.getTargetMemberId();
+        if (targetMemberId != null && !targetMemberId.equals(clusterMembership.getLocalMemberId())) {
+            return;
+        }
         val callback = scheduler.getCallback(scheduledTask.getTaskKey());
         if (callback == null) {
             log.info("scheduled task callback was not found: '{}'", scheduledTask.getTaskKey());
             return;
         }
 
+        if (targetMemberId != null) {
+            // the task was claimed by the sender and routed to this node only
+            taskExecutor.submit(() -> {
+                try {
+                    triggerTaskCallback(scheduledTask, taskExecutionDateTime, callback);
+                } catch (Exception e) {
+                    log.error("execute task '{}' failed", scheduledTask.getTaskKey(), e);
+                }
+            });
+            return;
+        }
+
         taskExecutor.submit(() -> {
             // ensure only one node can run the task
             val lockConfiguration = ScopedLockConfiguration.builder(LockScope.GLOBAL)
@@ -246,8 +252,8 @@ public class ScheduledTaskExecutor {
     public void onScheduledTaskUpdated(ScheduledTaskUpdatedEvent scheduledTaskUpdatedEvent) {
         val scheduledTask = scheduledTaskUpdatedEvent.getScheduledTask();
         if (scheduledTask.getAttempts() > 0) {
-            // run task immediately
-            runTask(ZonedDateTime.now(), scheduledTask);
+            // due within the pre-fetch range, run it on the owner of its shard
+            shardDispatcher.offer(scheduledTask);
         }
         val taskIds = scheduledTaskUpdatedEvent.getPreviousTaskIds();
         if (!CollectionUtils.isEmpty(taskIds)) {
@@ -272,6 +278,7 @@ public class ScheduledTaskExecutor {
     @PreDestroy
     protected void onDestroy() {
         running.set(false);
+        shardDispatcher.clear();
         hashedWheelTimer.stop();
         taskExecutor.shutdown();
     }
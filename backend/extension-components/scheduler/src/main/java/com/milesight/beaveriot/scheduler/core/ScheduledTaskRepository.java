@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 
@@ -22,6 +23,14 @@ public interface ScheduledTaskRepository extends BaseJpaRepository<ScheduledTask
     @Query("select t from ScheduledTaskPO t where t.executionEpochSecond >= :startEpochSecond and t.executionEpochSecond < :endEpochSecond and t.triggeredAt = 0")
     Page<ScheduledTaskPO> findAllTasksByExecutionEpochSecondBetween(@Param("startEpochSecond") Long startEpochSecond, @Param("endEpochSecond") Long endEpochSecond, Pageable pageable);
 
+    @Query("select t from ScheduledTaskPO t where t.shard in :shards and t.executionEpochSecond < :endEpochSecond and t.triggeredAt = 0")
+    Page<ScheduledTaskPO> findAllTasksByShardInAndExecutionEpochSecondBefore(@Param("shards") Collection<Integer> shards, @Param("endEpochSecond") Long endEpochSecond, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("update ScheduledTaskPO t set t.attempts = t.attempts + 1 where t.id = :id and t.attempts = :attempts and t.triggeredAt = 0")
+    int increaseAttemptsByIdAndAttempts(@Param("id") Long id, @Param("attempts") Integer attempts);
+
     @Modifying
     @Transactional
     @Query("update ScheduledTaskPO t set t.attempts = t.attempts + 1 where t.id in :ids")
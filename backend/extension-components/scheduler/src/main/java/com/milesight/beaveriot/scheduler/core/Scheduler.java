@@ -14,6 +14,7 @@ import com.milesight.beaveriot.base.utils.JsonUtils;
 import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
 import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.pubsub.MessagePubSub;
+import com.milesight.beaveriot.scheduler.core.callback.ScheduledTaskCallbackDirectory;
 import com.milesight.beaveriot.scheduler.core.model.ScheduleRule;
 import com.milesight.beaveriot.scheduler.core.model.ScheduleSettings;
 import com.milesight.beaveriot.scheduler.core.model.ScheduleSettingsPO;
@@ -23,11 +24,14 @@ import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskCallbackTermina
 import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskCancelledEvent;
 import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskPO;
 import com.milesight.beaveriot.scheduler.core.model.ScheduledTaskUpdatedEvent;
+import com.milesight.beaveriot.scheduler.core.shard.ScheduledTaskShards;
+import com.milesight.beaveriot.scheduler.core.shard.ScheduledTaskStore;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.springframework.aop.framework.AopContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -40,6 +44,7 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -51,7 +56,7 @@ import java.util.stream.Collectors;
 
 @Slf4j
 @Component
-public class Scheduler {
+public class Scheduler implements ScheduledTaskStore {
 
     private static final Map<String, ScheduledTaskCallback> taskKeyToRunner = new ConcurrentHashMap<>();
 
@@ -66,15 +71,29 @@ public class Scheduler {
     @Autowired
     private MessagePubSub messagePubSub;
 
+    @Autowired
+    private ScheduledTaskCallbackDirectory scheduledTaskCallbackDirectory;
+
     public void scanScheduledTasksByChunk(Long startEpochSecondInclusive, Long endEpochSecondExclusive, Integer chunkSize,
                                           Consumer<List<ScheduledTask>> chunkConsumer) {
+        scanScheduledTasksByChunk(chunkSize, chunkConsumer, pageable -> scheduledTaskRepository.findAllTasksByExecutionEpochSecondBetween(
+                startEpochSecondInclusive, endEpochSecondExclusive, pageable));
+    }
+
+    @Override
+    public void scanScheduledTasksByChunk(Collection<Integer> shards, Long endEpochSecondExclusive, Integer chunkSize,
+                                          Consumer<List<ScheduledTask>> chunkConsumer) {
+        scanScheduledTasksByChunk(chunkSize, chunkConsumer, pageable -> scheduledTaskRepository.findAllTasksByShardInAndExecutionEpochSecondBefore(
+                shards, endEpochSecondExclusive, pageable));
+    }
+
+    private void scanScheduledTasksByChunk(Integer chunkSize, Consumer<List<ScheduledTask>> chunkConsumer,
+                                           Function<Pageable, Page<ScheduledTaskPO>> pageLoader) {
         Pageable pageable = PageRequest.of(0, chunkSize, Sort.by(Sort.Direction.ASC, "executionEpochSecond"));
         while (!pageable.isUnpaged()) {
-            log.debug("scan scheduled tasks, chunk number: {}, chunk size: {}, start: {}, end: {}",
-                    pageable.getPageNumber(), pageable.getPageSize(), startEpochSecondInclusive, endEpochSecondExclusive);
+            log.debug("scan scheduled tasks, chunk number: {}, chunk size: {}", pageable.getPageNumber(), pageable.getPageSize());
 
-            val page = scheduledTaskRepository.findAllTasksByExecutionEpochSecondBetween(
-                    startEpochSecondInclusive, endEpochSecondExclusive, pageable);
+            val page = pageLoader.apply(pageable);
             val taskKeys = page.getContent().stream()
                     .map(ScheduledTaskPO::getTaskKey)
                     .collect(Collectors.toSet());
@@ -89,6 +108,16 @@ public class Scheduler {
         }
     }
 
+    @Override
+    public boolean claim(Long taskId, Integer attempts) {
+        return scheduledTaskRepository.increaseAttemptsByIdAndAttempts(taskId, attempts) > 0;
+    }
+
+    @Override
+    public void markAsFailed(List<Long> taskIds) {
+        scheduledTaskRepository.updateTriggeredAtAndAttemptsByIds(taskIds, System.currentTimeMillis() / 1000);
+    }
+
     private ScheduledTask buildScheduledTask(ScheduledTaskPO taskPO, ScheduleSettingsPO scheduleSettingsPO) {
         val scheduledTask = convertToScheduledTask(taskPO);
         scheduledTask.setScheduleSettings(convertToScheduleSettings(scheduleSettingsPO));
@@ -104,6 +133,7 @@ public class Scheduler {
         scheduledTask.setAttempts(taskPO.getAttempts());
         scheduledTask.setIteration(taskPO.getIteration());
         scheduledTask.setTriggeredAt(taskPO.getTriggeredAt());
+        scheduledTask.setShard(taskPO.getShard());
         return scheduledTask;
     }
 
@@ -162,6 +192,7 @@ public class Scheduler {
 
         var scheduleTaskPO = new ScheduledTaskPO();
         scheduleTaskPO.setId(SnowflakeUtil.nextId());
+        scheduleTaskPO.setShard(ScheduledTaskShards.shardOf(scheduleTaskPO.getId()));
         scheduleTaskPO.setTaskKey(taskKey);
         scheduleTaskPO.setExecutionEpochSecond(nextExecutionEpochSecond);
         scheduleTaskPO.setTriggeredAt(0L);
@@ -253,8 +284,10 @@ public class Scheduler {
             log.debug("schedule task '{}' next execution {} already exists", previousTask.getTaskKey(), nextExecutionEpochSecond);
         } else {
             log.debug("schedule task '{}' create next execution: {}", previousTask.getTaskKey(), nextExecutionEpochSecond);
+            val taskId = SnowflakeUtil.nextId();
             taskPO = scheduledTaskRepository.save(ScheduledTaskPO.builder()
-                    .id(SnowflakeUtil.nextId())
+                    .id(taskId)
+                    .shard(ScheduledTaskShards.shardOf(taskId))
                     .taskKey(previousTask.getTaskKey())
                     .executionEpochSecond(nextExecutionEpochSecond)
                     .attempts(shouldFireNow(nextExecutionEpochSecond, currentDateTime) ? 1 : 0)
@@ -405,6 +438,7 @@ public class Scheduler {
             log.info("callback for schedule task '{}' was updated", taskKey);
         } else {
             log.info("callback for schedule task '{}' was registered", taskKey);
+            scheduledTaskCallbackDirectory.addLocalCallback(taskKey);
         }
     }
 
@@ -414,7 +448,9 @@ public class Scheduler {
 
     public void removeCallback(String taskKey) {
         log.info("remove callback for schedule task '{}'", taskKey);
-        taskKeyToRunner.remove(taskKey);
+        if (taskKeyToRunner.remove(taskKey) != null) {
+            scheduledTaskCallbackDirectory.removeLocalCallback(taskKey);
+        }
     }
 
     @Transactional
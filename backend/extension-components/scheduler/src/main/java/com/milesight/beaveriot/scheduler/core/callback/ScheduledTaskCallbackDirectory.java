@@ -0,0 +1,19 @@
+package com.milesight.beaveriot.scheduler.core.callback;
+
+import java.util.Set;
+
+/**
+ * Cluster wide view of the nodes hosting the callback of a scheduled task, used to send a claimed task to one of its
+ * hosts instead of broadcasting it to every node.
+ */
+public interface ScheduledTaskCallbackDirectory {
+
+    void addLocalCallback(String taskKey);
+
+    void removeLocalCallback(String taskKey);
+
+    /**
+     * Get the live members hosting the callback of the task, empty if unknown
+     */
+    Set<String> getCallbackHosts(String taskKey);
+}
@@ -0,0 +1,26 @@
+package com.milesight.beaveriot.scheduler.core.callback;
+
+import com.milesight.beaveriot.membership.ClusterMembership;
+import com.milesight.beaveriot.scheduler.core.callback.local.LocalScheduledTaskCallbackDirectory;
+import com.milesight.beaveriot.scheduler.core.callback.redis.RedisScheduledTaskCallbackDirectory;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ScheduledTaskCallbackDirectoryConfiguration {
+
+    @Bean
+    @ConditionalOnExpression("!'${spring.data.redis.host:}'.isEmpty()")
+    public ScheduledTaskCallbackDirectory redisScheduledTaskCallbackDirectory(RedissonClient redissonClient, ClusterMembership clusterMembership) {
+        return new RedisScheduledTaskCallbackDirectory(redissonClient, clusterMembership);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean({ScheduledTaskCallbackDirectory.class})
+    public ScheduledTaskCallbackDirectory localScheduledTaskCallbackDirectory() {
+        return new LocalScheduledTaskCallbackDirectory();
+    }
+}
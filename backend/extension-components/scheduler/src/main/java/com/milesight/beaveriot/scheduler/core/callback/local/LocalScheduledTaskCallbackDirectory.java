@@ -0,0 +1,26 @@
+package com.milesight.beaveriot.scheduler.core.callback.local;
+
+import com.milesight.beaveriot.scheduler.core.callback.ScheduledTaskCallbackDirectory;
+
+import java.util.Set;
+
+/**
+ * Single node directory, there are no other nodes to send tasks to
+ */
+public class LocalScheduledTaskCallbackDirectory implements ScheduledTaskCallbackDirectory {
+
+    @Override
+    public void addLocalCallback(String taskKey) {
+        // nothing to share
+    }
+
+    @Override
+    public void removeLocalCallback(String taskKey) {
+        // nothing to share
+    }
+
+    @Override
+    public Set<String> getCallbackHosts(String taskKey) {
+        return Set.of();
+    }
+}
@@ -0,0 +1,66 @@
+package com.milesight.beaveriot.scheduler.core.callback.redis;
+
+import com.milesight.beaveriot.membership.ClusterMembership;
+import com.milesight.beaveriot.scheduler.core.callback.ScheduledTaskCallbackDirectory;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RSetMultimap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Callback hosts in a Redis set multimap keyed by task key. Members that left the cluster are skipped by reads and
+ * removed from the task they were read for.
+ */
+@Slf4j
+public class RedisScheduledTaskCallbackDirectory implements ScheduledTaskCallbackDirectory {
+
+    private static final String CALLBACK_HOSTS_KEY = "scheduler:callback-hosts";
+
+    private final ClusterMembership clusterMembership;
+
+    private final RSetMultimap<String, String> callbackHosts;
+
+    public RedisScheduledTaskCallbackDirectory(RedissonClient redissonClient, ClusterMembership clusterMembership) {
+        this.clusterMembership = clusterMembership;
+        this.callbackHosts = redissonClient.getSetMultimap(CALLBACK_HOSTS_KEY, StringCodec.INSTANCE);
+    }
+
+    @Override
+    public void addLocalCallback(String taskKey) {
+        try {
+            callbackHosts.put(taskKey, clusterMembership.getLocalMemberId());
+        } catch (Exception e) {
+            log.warn("add callback host of scheduled task '{}' failed: {}", taskKey, e.getMessage());
+        }
+    }
+
+    @Override
+    public void removeLocalCallback(String taskKey) {
+        try {
+            callbackHosts.remove(taskKey, clusterMembership.getLocalMemberId());
+        } catch (Exception e) {
+            log.warn("remove callback host of scheduled task '{}' failed: {}", taskKey, e.getMessage());
+        }
+    }
+
+    @Override
+    public Set<String> getCallbackHosts(String taskKey) {
+        try {
+            Set<String> hosts = new HashSet<>(callbackHosts.getAll(taskKey));
+            Set<String> liveMembers = clusterMembership.getMembers();
+            Set<String> leftMembers = new HashSet<>(hosts);
+            leftMembers.removeAll(liveMembers);
+            if (!leftMembers.isEmpty()) {
+                hosts.removeAll(leftMembers);
+                callbackHosts.get(taskKey).removeAllAsync(leftMembers);
+            }
+            return hosts;
+        } catch (Exception e) {
+            log.warn("get callback hosts of scheduled task '{}' failed: {}", taskKey, e.getMessage());
+            return Set.of();
+        }
+    }
+}
@@ -35,4 +35,12 @@ public class ScheduledTask {
     @NonNull
     private Long triggeredAt;
 
+    /**
+     * Shard stored with the task, null if unknown
+     *
+     * @see com.milesight.beaveriot.scheduler.core.shard.ScheduledTaskShards#shardOf(ScheduledTask)
+     */
+    @Nullable
+    private Integer shard;
+
 }
@@ -45,6 +45,13 @@ public class ScheduledTaskPO {
     @NonNegative
     private Long triggeredAt;
 
+    /**
+     * @see com.milesight.beaveriot.scheduler.core.shard.ScheduledTaskShards#shardOf(long)
+     */
+    @NonNull
+    @NonNegative
+    private Integer shard;
+
     @CreatedDate
     private Long createdAt;
 
@@ -22,4 +22,10 @@ public class ScheduledTaskRemoteTriggeredEvent extends RemoteBroadcastMessage {
 
     private ZonedDateTime taskExecutionDateTime;
 
+    /**
+     * Member hosting the callback which should run the claimed task, every member with the callback races for the
+     * task if it is null
+     */
+    private String targetMemberId;
+
 }
@@ -0,0 +1,167 @@
+package com.milesight.beaveriot.scheduler.core.shard;
+
+import com.milesight.beaveriot.membership.ClusterMembership;
+import com.milesight.beaveriot.scheduler.core.model.ScheduledTask;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Preloads the upcoming tasks of the shards owned by this node into a local timer and claims each task when it is due.
+ * <p>
+ * A shard is owned by the node the cluster hash ring assigns its key to, so ownership follows the live members and
+ * lapses with the heartbeats of a node. Nodes whose views of the ring differ for a moment may preload the same task,
+ * but only the node whose claim succeeds triggers it.
+ */
+@Slf4j
+public class ScheduledTaskShardDispatcher {
+
+    private final ClusterMembership clusterMembership;
+
+    private final ScheduledTaskStore scheduledTaskStore;
+
+    private final Consumer<ScheduledTask> taskTrigger;
+
+    private final Timer timer;
+
+    private final long preloadRangeSeconds;
+
+    private final int maxAttempts;
+
+    private final int chunkSize;
+
+    private final Map<Long, PreloadedTask> preloadedTasks = new ConcurrentHashMap<>();
+
+    /**
+     * @param taskTrigger         triggers a claimed task
+     * @param preloadRangeSeconds tasks due within this range are preloaded, claimed tasks are retried once they are
+     *                            overdue by this range
+     */
+    public ScheduledTaskShardDispatcher(ClusterMembership clusterMembership, ScheduledTaskStore scheduledTaskStore,
+                                        Consumer<ScheduledTask> taskTrigger, Timer timer,
+                                        long preloadRangeSeconds, int maxAttempts, int chunkSize) {
+        this.clusterMembership = clusterMembership;
+        this.scheduledTaskStore = scheduledTaskStore;
+        this.taskTrigger = taskTrigger;
+        this.timer = timer;
+        this.preloadRangeSeconds = preloadRangeSeconds;
+        this.maxAttempts = maxAttempts;
+        this.chunkSize = chunkSize;
+    }
+
+    public Set<Integer> getOwnedShards() {
+        return IntStream.range(0, ScheduledTaskShards.SHARD_COUNT)
+                .filter(shard -> clusterMembership.isLocalOwner(ScheduledTaskShards.shardKey(shard)))
+                .boxed()
+                .collect(Collectors.toSet());
+    }
+
+    public int getPreloadedTaskCount() {
+        return preloadedTasks.size();
+    }
+
+    /**
+     * Preload the tasks of the owned shards which are due within the preload range
+     */
+    public void preload() {
+        val ownedShards = getOwnedShards();
+        // give up the tasks of shards that moved to other nodes, and forget tasks that were fired already
+        preloadedTasks.forEach((taskId, preloadedTask) -> {
+            val timeout = preloadedTask.timeout();
+            if (timeout.isExpired() || timeout.isCancelled() || !ownedShards.contains(preloadedTask.shard())) {
+                if (preloadedTasks.remove(taskId, preloadedTask)) {
+                    timeout.cancel();
+                }
+            }
+        });
+        if (ownedShards.isEmpty()) {
+            return;
+        }
+
+        val nowEpochSecond = System.currentTimeMillis() / 1000;
+        val failedTaskIds = new ArrayList<Long>();
+        scheduledTaskStore.scanScheduledTasksByChunk(ownedShards, nowEpochSecond + preloadRangeSeconds, chunkSize, tasks -> tasks.forEach(task -> {
+            if (task.getAttempts() > 0 && task.getExecutionEpochSecond() >= nowEpochSecond - preloadRangeSeconds) {
+                // claimed recently, the claiming node is still running it
+                return;
+            }
+            if (task.getAttempts() >= maxAttempts) {
+                log.info("scheduled task '{}' was failed after {} attempts", task.getId(), task.getAttempts());
+                failedTaskIds.add(task.getId());
+                return;
+            }
+            schedule(task);
+        }));
+
+        if (!failedTaskIds.isEmpty()) {
+            scheduledTaskStore.markAsFailed(failedTaskIds);
+        }
+        log.debug("{} scheduled tasks preloaded for {} shards", preloadedTasks.size(), ownedShards.size());
+    }
+
+    /**
+     * Schedule a task which is due within the preload range if this node owns its shard
+     *
+     * @return false if the task belongs to another node
+     */
+    public boolean offer(ScheduledTask task) {
+        if (!clusterMembership.isLocalOwner(ScheduledTaskShards.shardKey(ScheduledTaskShards.shardOf(task)))) {
+            return false;
+        }
+        schedule(task);
+        return true;
+    }
+
+    private void schedule(ScheduledTask task) {
+        preloadedTasks.computeIfAbsent(task.getId(), taskId -> {
+            val delayMillis = Math.max(0, task.getExecutionEpochSecond() * 1000 - System.currentTimeMillis());
+            log.debug("scheduled task '{}'({}) will be executed after {} ms", task.getTaskKey(), taskId, delayMillis);
+            return new PreloadedTask(ScheduledTaskShards.shardOf(task),
+                    timer.newTimeout(timeout -> fire(task, timeout), delayMillis, TimeUnit.MILLISECONDS));
+        });
+    }
+
+    private void fire(ScheduledTask task, Timeout timeout) {
+        preloadedTasks.computeIfPresent(task.getId(), (taskId, preloadedTask) -> preloadedTask.timeout() == timeout ? null : preloadedTask);
+
+        boolean claimed;
+        try {
+            claimed = scheduledTaskStore.claim(task.getId(), task.getAttempts());
+        } catch (Exception e) {
+            log.error("claim scheduled task '{}'({}) failed", task.getTaskKey(), task.getId(), e);
+            return;
+        }
+        if (!claimed) {
+            log.debug("scheduled task '{}'({}) was claimed by another node", task.getTaskKey(), task.getId());
+            return;
+        }
+
+        task.setAttempts(task.getAttempts() + 1);
+        try {
+            taskTrigger.accept(task);
+        } catch (Exception e) {
+            log.error("trigger scheduled task '{}'({}) failed", task.getTaskKey(), task.getId(), e);
+        }
+    }
+
+    /**
+     * Cancel all preloaded tasks
+     */
+    public void clear() {
+        preloadedTasks.values().forEach(preloadedTask -> preloadedTask.timeout().cancel());
+        preloadedTasks.clear();
+    }
+
+    private record PreloadedTask(int shard, Timeout timeout) {
+    }
+}
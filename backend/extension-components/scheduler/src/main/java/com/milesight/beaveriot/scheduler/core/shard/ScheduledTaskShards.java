@@ -0,0 +1,38 @@
+package com.milesight.beaveriot.scheduler.core.shard;
+
+import com.milesight.beaveriot.scheduler.core.model.ScheduledTask;
+
+/**
+ * Partitioning of scheduled tasks into a fixed number of shards. The shard of a task is derived from the timestamp
+ * bits of its snowflake id, since the low bits of ids created at low rates hardly vary.
+ */
+public final class ScheduledTaskShards {
+
+    public static final int SHARD_COUNT = 64;
+
+    private static final int SNOWFLAKE_TIMESTAMP_SHIFT = 22;
+
+    private static final String SHARD_KEY_PREFIX = "scheduled-task-shard:";
+
+    private ScheduledTaskShards() {
+    }
+
+    public static int shardOf(long taskId) {
+        return (int) Math.floorMod(taskId >>> SNOWFLAKE_TIMESTAMP_SHIFT, SHARD_COUNT);
+    }
+
+    /**
+     * Shard the task is stored in. Tasks written by nodes without sharding are stored in shard 0 whatever their id, so
+     * they are scanned by the owner of shard 0.
+     */
+    public static int shardOf(ScheduledTask task) {
+        return task.getShard() != null ? task.getShard() : shardOf(task.getId());
+    }
+
+    /**
+     * Key of the shard in the cluster hash ring
+     */
+    public static String shardKey(int shard) {
+        return SHARD_KEY_PREFIX + shard;
+    }
+}
@@ -0,0 +1,25 @@
+package com.milesight.beaveriot.scheduler.core.shard;
+
+import com.milesight.beaveriot.scheduler.core.model.ScheduledTask;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface ScheduledTaskStore {
+
+    /**
+     * Scan the untriggered tasks of the shards which are due before the given time
+     */
+    void scanScheduledTasksByChunk(Collection<Integer> shards, Long endEpochSecondExclusive, Integer chunkSize,
+                                   Consumer<List<ScheduledTask>> chunkConsumer);
+
+    /**
+     * Claim the task by increasing its attempts, only one of the nodes claiming the same attempt succeeds
+     *
+     * @return true if the task was claimed by this call
+     */
+    boolean claim(Long taskId, Integer attempts);
+
+    void markAsFailed(List<Long> taskIds);
+}
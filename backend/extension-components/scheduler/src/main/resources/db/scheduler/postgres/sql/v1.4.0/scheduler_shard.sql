@@ -0,0 +1,9 @@
+--liquibase formatted sql
+
+--changeset scheduler:v1.4.0_20261017
+-- comment: Shard of a scheduled task, derived from the timestamp bits of its snowflake id, see ScheduledTaskShards
+ALTER TABLE "t_scheduled_task"
+    ADD COLUMN shard INTEGER not null DEFAULT 0;
+UPDATE "t_scheduled_task"
+    SET shard = MOD(id / 4194304, 64);
+CREATE INDEX idx_shard_time ON "t_scheduled_task" (shard, triggered_at, execution_epoch_second);
@@ -0,0 +1,275 @@
+package com.milesight.beaveriot.scheduler.core.shard
+
+import com.milesight.beaveriot.membership.ClusterMembership
+import com.milesight.beaveriot.membership.ConsistentHashRing
+import com.milesight.beaveriot.scheduler.core.model.ScheduleRule
+import com.milesight.beaveriot.scheduler.core.model.ScheduleSettings
+import com.milesight.beaveriot.scheduler.core.model.ScheduleType
+import com.milesight.beaveriot.scheduler.core.model.ScheduledTask
+import io.netty.util.HashedWheelTimer
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+import java.util.function.Consumer
+
+class ScheduledTaskShardDispatcherTest extends Specification {
+
+    InMemoryTaskStore store = new InMemoryTaskStore()
+
+    Map<Long, AtomicInteger> triggerCounts = new ConcurrentHashMap<>()
+
+    Map<String, Node> nodes = [:]
+
+    def cleanup() {
+        nodes.values().each { it.stop() }
+    }
+
+    Node node(String memberId, AtomicReference<ConsistentHashRing> ring) {
+        def node = new Node(memberId, ring, store, triggerCounts)
+        nodes[memberId] = node
+        return node
+    }
+
+    static AtomicReference<ConsistentHashRing> ring(String... members) {
+        return new AtomicReference<>(ConsistentHashRing.of(members as List))
+    }
+
+    static long taskId(int i) {
+        // spread the timestamp bits the shard is derived from
+        return ((long) i << 22) | 1
+    }
+
+    def "owned shards of all nodes should partition the shards"() {
+        given:
+        def sharedRing = ring("a", "b", "c")
+        def dispatchers = ["a", "b", "c"].collect { node(it, sharedRing).dispatcher }
+
+        expect:
+        def owned = dispatchers.collect { it.getOwnedShards() }
+        owned.every { !it.isEmpty() }
+        owned.sum { it.size() } == ScheduledTaskShards.SHARD_COUNT
+        owned.flatten() as Set == (0..<ScheduledTaskShards.SHARD_COUNT) as Set
+    }
+
+    def "every task should be triggered once by the node owning its shard"() {
+        given:
+        def sharedRing = ring("a", "b", "c")
+        def nodeList = ["a", "b", "c"].collect { node(it, sharedRing) }
+        def dueAt = System.currentTimeMillis() / 1000 + 2 as long
+        (0..<300).each { store.add(taskId(it), dueAt + (it % 2), 0) }
+
+        when:
+        nodeList.each { it.dispatcher.preload() }
+
+        then:
+        nodeList.sum { it.dispatcher.getPreloadedTaskCount() } == 300
+        new PollingConditions(timeout: 10).eventually {
+            assert triggerCounts.size() == 300
+        }
+        triggerCounts.values().every { it.get() == 1 }
+        nodeList.every { node ->
+            node.triggeredTaskIds.every { node.dispatcher.getOwnedShards().contains(ScheduledTaskShards.shardOf(it)) }
+        }
+    }
+
+    def "tasks should be triggered once while nodes disagree on the owners"() {
+        given:
+        def a = node("a", ring("a"))
+        def b = node("b", ring("a", "b", "c"))
+        def c = node("c", ring("a", "b", "c"))
+        def dueAt = System.currentTimeMillis() / 1000 + 2 as long
+        (0..<200).each { store.add(taskId(it), dueAt, 0) }
+
+        when:
+        [a, b, c].each { it.dispatcher.preload() }
+
+        then:
+        a.dispatcher.getPreloadedTaskCount() == 200
+        new PollingConditions(timeout: 10).eventually {
+            assert triggerCounts.size() == 200
+        }
+        triggerCounts.values().every { it.get() == 1 }
+        store.claimConflicts.get() > 0
+    }
+
+    def "shards of a node that left should be taken over by the remaining nodes"() {
+        given:
+        def sharedRing = ring("a", "b", "c")
+        def a = node("a", sharedRing)
+        def b = node("b", sharedRing)
+        def c = node("c", sharedRing)
+        def dueAt = System.currentTimeMillis() / 1000 + 3 as long
+        (0..<300).each { store.add(taskId(it), dueAt, 0) }
+        [a, b, c].each { it.dispatcher.preload() }
+
+        when:
+        c.stop()
+        sharedRing.set(ConsistentHashRing.of(["a", "b"]))
+        [a, b].each { it.dispatcher.preload() }
+
+        then:
+        new PollingConditions(timeout: 10).eventually {
+            assert triggerCounts.size() == 300
+        }
+        triggerCounts.values().every { it.get() == 1 }
+        c.triggeredTaskIds.isEmpty()
+    }
+
+    def "tasks claimed by a node that died should be retried once they are overdue"() {
+        given:
+        def a = node("a", ring("a"))
+        def overdue = System.currentTimeMillis() / 1000 - 120 as long
+        store.add(taskId(1), overdue, 1)
+        store.add(taskId(2), overdue, 3)
+        store.add(taskId(3), System.currentTimeMillis() / 1000 as long, 1)
+
+        when:
+        a.dispatcher.preload()
+
+        then:
+        new PollingConditions(timeout: 5).eventually {
+            assert triggerCounts.keySet() == [taskId(1)] as Set
+        }
+        store.tasks[taskId(1)].attempts == 2
+        store.failedTaskIds == [taskId(2)]
+        // the recently claimed task is left to the node running it
+        a.dispatcher.getPreloadedTaskCount() == 0
+    }
+
+    def "offered tasks should only be scheduled by the owner of their shard"() {
+        given:
+        def sharedRing = ring("a", "b")
+        def a = node("a", sharedRing)
+        def b = node("b", sharedRing)
+        def task = store.add(taskId(7), System.currentTimeMillis() / 1000 as long, 1)
+
+        when:
+        def offeredTo = [a, b].findAll { it.dispatcher.offer(store.copy(task.id)) }
+
+        then:
+        offeredTo.size() == 1
+        offeredTo[0].memberId == sharedRing.get().getOwner(ScheduledTaskShards.shardKey(ScheduledTaskShards.shardOf(task.id)))
+        new PollingConditions(timeout: 5).eventually {
+            assert triggerCounts[task.id]?.get() == 1
+        }
+    }
+
+    def "tasks stored in shard 0 by nodes without sharding should be run by the owner of shard 0"() {
+        given:
+        def sharedRing = ring("a", "b", "c")
+        def nodeList = ["a", "b", "c"].collect { node(it, sharedRing) }
+        def dueAt = System.currentTimeMillis() / 1000 + 2 as long
+        (1..<50).each { store.add(taskId(it), dueAt, 0, 0) }
+        def owner = nodeList.find { it.dispatcher.getOwnedShards().contains(0) }
+
+        when:
+        nodeList.each { it.dispatcher.preload() }
+        // a later scan keeps the tasks although their ids belong to other shards
+        owner.dispatcher.preload()
+
+        then:
+        owner.dispatcher.getPreloadedTaskCount() == 49
+        new PollingConditions(timeout: 10).eventually {
+            assert triggerCounts.size() == 49
+        }
+        triggerCounts.values().every { it.get() == 1 }
+        owner.triggeredTaskIds.size() == 49
+    }
+
+    static class Node {
+        final String memberId
+        final HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS)
+        final ScheduledTaskShardDispatcher dispatcher
+        final Set<Long> triggeredTaskIds = ConcurrentHashMap.newKeySet()
+
+        Node(String memberId, AtomicReference<ConsistentHashRing> ring, InMemoryTaskStore store, Map<Long, AtomicInteger> triggerCounts) {
+            this.memberId = memberId
+            def membership = new ClusterMembership() {
+                @Override
+                String getLocalMemberId() { memberId }
+
+                @Override
+                Set<String> getMembers() { ring.get().getMembers() }
+
+                @Override
+                String getOwner(String key) { ring.get().getOwner(key) }
+            }
+            Consumer<ScheduledTask> trigger = { ScheduledTask task ->
+                triggeredTaskIds << task.id
+                triggerCounts.computeIfAbsent(task.id, { new AtomicInteger() }).incrementAndGet()
+                store.markAsTriggered(task.id)
+            }
+            this.dispatcher = new ScheduledTaskShardDispatcher(membership, store, trigger, timer, 60, 3, 50)
+        }
+
+        void stop() {
+            timer.stop()
+        }
+    }
+
+    /**
+     * Stand-in for the task table, claims compare the attempts like the update statement does
+     */
+    static class InMemoryTaskStore implements ScheduledTaskStore {
+        static final ScheduleSettings SETTINGS = new ScheduleSettings(ScheduleType.ONCE, new ScheduleRule(), null)
+        final Map<Long, ScheduledTask> tasks = new ConcurrentHashMap<>()
+        final List<Long> failedTaskIds = []
+        final AtomicInteger claimConflicts = new AtomicInteger()
+
+        ScheduledTask add(long id, long executionEpochSecond, int attempts, Integer shard = ScheduledTaskShards.shardOf(id)) {
+            def task = ScheduledTask.builder()
+                    .id(id)
+                    .taskKey("task-" + id)
+                    .scheduleSettings(SETTINGS)
+                    .executionEpochSecond(executionEpochSecond)
+                    .attempts(attempts)
+                    .iteration(0)
+                    .triggeredAt(0L)
+                    .shard(shard)
+                    .build()
+            tasks[id] = task
+            return task
+        }
+
+        synchronized ScheduledTask copy(long id) {
+            def task = tasks[id]
+            return new ScheduledTask(task.id, task.executionEpochSecond, task.taskKey, SETTINGS, null, task.attempts, task.iteration, task.triggeredAt, task.shard)
+        }
+
+        @Override
+        synchronized void scanScheduledTasksByChunk(Collection<Integer> shards, Long endEpochSecondExclusive, Integer chunkSize,
+                                                    Consumer<List<ScheduledTask>> chunkConsumer) {
+            tasks.values()
+                    .findAll { shards.contains(it.shard) && it.executionEpochSecond < endEpochSecondExclusive && it.triggeredAt == 0 }
+                    .sort { it.executionEpochSecond }
+                    .collect { copy(it.id) }
+                    .collate(chunkSize)
+                    .each { chunkConsumer.accept(it) }
+        }
+
+        @Override
+        synchronized boolean claim(Long taskId, Integer attempts) {
+            def task = tasks[taskId]
+            if (task == null || task.attempts != attempts || task.triggeredAt != 0) {
+                claimConflicts.incrementAndGet()
+                return false
+            }
+            task.attempts = attempts + 1
+            return true
+        }
+
+        @Override
+        synchronized void markAsFailed(List<Long> taskIds) {
+            failedTaskIds.addAll(taskIds)
+            taskIds.each { tasks[it].triggeredAt = System.currentTimeMillis() / 1000 as long }
+        }
+
+        synchronized void markAsTriggered(long taskId) {
+            tasks[taskId].triggeredAt = System.currentTimeMillis() / 1000 as long
+        }
+    }
+}
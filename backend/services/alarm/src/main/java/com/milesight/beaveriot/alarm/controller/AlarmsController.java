@@ -47,6 +47,7 @@ public class AlarmsController {
             @RequestParam(name = "alarm_status", required = false) List<Boolean> alarmStatus,
             @RequestParam(required = false) String keyword,
             @RequestParam(required = false) String timezone,
+            @RequestParam(required = false) Boolean gzip,
             HttpServletResponse response) throws IOException {
         AlarmExportRequest req = new AlarmExportRequest();
         req.setStartTimestamp(startTimestamp);
@@ -55,6 +56,7 @@ public class AlarmsController {
         req.setAlarmStatus(alarmStatus != null ? alarmStatus : List.of());
         req.setKeyword(keyword);
         req.setTimezone(timezone);
+        req.setGzip(gzip);
         alarmService.export(req, response);
     }
 
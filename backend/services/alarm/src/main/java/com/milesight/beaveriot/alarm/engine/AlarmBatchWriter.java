@@ -0,0 +1,195 @@
+package com.milesight.beaveriot.alarm.engine;
+
+import com.milesight.beaveriot.alarm.po.AlarmPO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes raised and cleared alarms in batches. Evaluating threads queue the alarms and return, a single flusher
+ * collects them for one flush interval and writes them in queue order with batch statements. When the queue stays full
+ * for the offer timeout, the evaluating thread writes its alarm itself.
+ * <p>
+ * A queued alarm with a false status clears the raised alarms of its device and entity instead of being inserted.
+ */
+@Slf4j
+@Component
+public class AlarmBatchWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO t_alarm (tenant_id, device_id, alarm_time, alarm_content, alarm_status, "
+            + "latitude, longitude, address, entity_key, source, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String CLEAR_SQL = "UPDATE t_alarm SET alarm_status = false WHERE tenant_id = ? AND device_id = ? "
+            + "AND entity_key = ? AND source = ? AND alarm_status = true";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AlarmRuleEngineProperties properties;
+
+    private final BlockingQueue<AlarmPO> queue;
+
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    public AlarmBatchWriter(JdbcTemplate jdbcTemplate, AlarmRuleEngineProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.flusher = new Thread(this::runFlusher, "alarm-batch-writer");
+        this.flusher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
+    }
+
+    public void submit(AlarmPO alarm) {
+        try {
+            if (running && queue.offer(alarm, properties.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            write(List.of(alarm));
+        } catch (Exception e) {
+            log.error("Failed to write alarm of device {} and entity {}", alarm.getDeviceId(), alarm.getEntityKey(), e);
+        }
+    }
+
+    /**
+     * Clear the raised alarms of the entity of a device, after the alarms submitted before
+     */
+    public void submitClear(String tenantId, Long deviceId, String entityKey, String source) {
+        AlarmPO clear = new AlarmPO();
+        clear.setTenantId(tenantId);
+        clear.setDeviceId(deviceId);
+        clear.setEntityKey(entityKey);
+        clear.setSource(source);
+        clear.setAlarmStatus(false);
+        submit(clear);
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void runFlusher() {
+        List<AlarmPO> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // woken up by destroy, the queue is drained by the loop condition
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    write(batch);
+                } catch (Exception e) {
+                    log.error("Failed to write {} alarms", batch.size(), e);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<AlarmPO> batch) throws InterruptedException {
+        AlarmPO first = queue.poll(properties.getFlushInterval().toMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+
+        batch.add(first);
+        long deadline = System.nanoTime() + properties.getFlushInterval().toNanos();
+        int maxBatchSize = properties.getMaxBatchSize();
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0 || !running) {
+                return;
+            }
+
+            AlarmPO next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Write consecutive raised and cleared alarms with one batch statement each, keeping their order
+     */
+    private void write(List<AlarmPO> alarms) {
+        int from = 0;
+        for (int i = 1; i <= alarms.size(); i++) {
+            if (i < alarms.size() && alarms.get(i).getAlarmStatus().equals(alarms.get(from).getAlarmStatus())) {
+                continue;
+            }
+            List<AlarmPO> run = alarms.subList(from, i);
+            if (Boolean.TRUE.equals(run.get(0).getAlarmStatus())) {
+                insert(run);
+            } else {
+                clear(run);
+            }
+            from = i;
+        }
+    }
+
+    private void clear(List<AlarmPO> alarms) {
+        List<Object[]> args = new ArrayList<>(alarms.size());
+        alarms.forEach(alarm -> args.add(new Object[]{
+                alarm.getTenantId(),
+                alarm.getDeviceId(),
+                alarm.getEntityKey(),
+                alarm.getSource()
+        }));
+        jdbcTemplate.batchUpdate(CLEAR_SQL, args);
+    }
+
+    private void insert(List<AlarmPO> alarms) {
+        List<Object[]> args = new ArrayList<>(alarms.size());
+        alarms.forEach(alarm -> args.add(new Object[]{
+                alarm.getTenantId(),
+                alarm.getDeviceId(),
+                alarm.getAlarmTime(),
+                alarm.getAlarmContent(),
+                alarm.getAlarmStatus(),
+                alarm.getLatitude(),
+                alarm.getLongitude(),
+                alarm.getAddress(),
+                alarm.getEntityKey(),
+                alarm.getSource(),
+                alarm.getCreatedAt()
+        }));
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(properties.getFlushInterval().toMillis() + TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!queue.isEmpty()) {
+            log.warn("{} alarms were not written before shutdown", queue.size());
+        }
+    }
+}
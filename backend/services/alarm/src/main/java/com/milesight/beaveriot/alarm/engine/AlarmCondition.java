@@ -0,0 +1,105 @@
+package com.milesight.beaveriot.alarm.engine;
+
+import java.util.Locale;
+
+/**
+ * Condition of an alarm rule, parsed once when the rule is compiled.
+ */
+@FunctionalInterface
+public interface AlarmCondition {
+
+    boolean test(Object value);
+
+    /**
+     * @throws IllegalArgumentException if the operator is unknown or the condition value does not suit it
+     */
+    static AlarmCondition compile(String op, String conditionValue) {
+        if (op == null) {
+            throw new IllegalArgumentException("condition operator is missing");
+        }
+        String operand = conditionValue == null ? "" : conditionValue.trim();
+        switch (op.toLowerCase(Locale.ROOT)) {
+            case "gt": {
+                double threshold = parseNumber(operand);
+                return value -> toNumber(value) > threshold;
+            }
+            case "gte": {
+                double threshold = parseNumber(operand);
+                return value -> toNumber(value) >= threshold;
+            }
+            case "lt": {
+                double threshold = parseNumber(operand);
+                return value -> toNumber(value) < threshold;
+            }
+            case "lte": {
+                double threshold = parseNumber(operand);
+                return value -> toNumber(value) <= threshold;
+            }
+            case "eq":
+                return equalTo(operand);
+            case "neq": {
+                AlarmCondition equalTo = equalTo(operand);
+                return value -> value != null && !equalTo.test(value);
+            }
+            case "between": {
+                String[] bounds = operand.split(",");
+                if (bounds.length != 2) {
+                    throw new IllegalArgumentException("condition value of between must be 'min, max': " + operand);
+                }
+                double min = parseNumber(bounds[0].trim());
+                double max = parseNumber(bounds[1].trim());
+                if (min > max) {
+                    throw new IllegalArgumentException("condition value of between has min greater than max: " + operand);
+                }
+                return value -> {
+                    double number = toNumber(value);
+                    return number >= min && number <= max;
+                };
+            }
+            case "is_not_empty":
+                return value -> value != null && !value.toString().isEmpty();
+            default:
+                throw new IllegalArgumentException("unknown condition operator: " + op);
+        }
+    }
+
+    private static AlarmCondition equalTo(String operand) {
+        double number = tryParseNumber(operand);
+        if (Double.isNaN(number)) {
+            return value -> value != null && operand.equalsIgnoreCase(value.toString());
+        }
+        return value -> value instanceof Boolean ? operand.equalsIgnoreCase(value.toString()) : toNumber(value) == number;
+    }
+
+    private static double parseNumber(String operand) {
+        double number = tryParseNumber(operand);
+        if (Double.isNaN(number)) {
+            throw new IllegalArgumentException("condition value is not a number: " + operand);
+        }
+        return number;
+    }
+
+    private static double tryParseNumber(String text) {
+        if (text.isEmpty()) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * @return NaN if the value is not a number, every comparison with it is false
+     */
+    private static double toNumber(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String text) {
+            return tryParseNumber(text.trim());
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,258 @@
+package com.milesight.beaveriot.alarm.engine;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.milesight.beaveriot.alarm.model.event.AlarmRuleChangedEvent;
+import com.milesight.beaveriot.alarm.po.AlarmPO;
+import com.milesight.beaveriot.alarm.po.AlarmRulePO;
+import com.milesight.beaveriot.alarm.repository.AlarmRuleRepository;
+import com.milesight.beaveriot.base.utils.JsonUtils;
+import com.milesight.beaveriot.base.utils.TransactionUtils;
+import com.milesight.beaveriot.context.constants.ExchangeContextKeys;
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent;
+import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.device.facade.IDeviceFacade;
+import com.milesight.beaveriot.eventbus.annotations.EventSubscribe;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates the enabled alarm rules against incoming entity values.
+ * <p>
+ * Rules are compiled into an {@link AlarmRuleIndex} when the application starts and whenever a rule changes, so an
+ * incoming value costs one lookup by tenant and entity key plus the conditions of the rules watching that entity of
+ * that device. Only the transition of a device into the condition of a rule raises an alarm, see
+ * {@link CompiledAlarmRule.Target#evaluate}, and its transition out of it clears the raised alarms. Both are written
+ * by the {@link AlarmBatchWriter}.
+ */
+@Slf4j
+@Component
+public class AlarmRuleEngine implements CommandLineRunner {
+
+    public static final String ALARM_SOURCE = "ALARM_RULE";
+
+    private static final TypeReference<List<Long>> LONG_LIST = new TypeReference<>() {};
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private static final int ALARM_CONTENT_MAX_LENGTH = 1024;
+
+    private final AlarmRuleRepository alarmRuleRepository;
+
+    private final IDeviceFacade deviceFacade;
+
+    private final MessagePubSub messagePubSub;
+
+    private final AlarmBatchWriter alarmBatchWriter;
+
+    private final AlarmRuleEngineProperties properties;
+
+    private final AlarmRuleIndex index = new AlarmRuleIndex();
+
+    public AlarmRuleEngine(AlarmRuleRepository alarmRuleRepository, IDeviceFacade deviceFacade, MessagePubSub messagePubSub,
+                           AlarmBatchWriter alarmBatchWriter, AlarmRuleEngineProperties properties) {
+        this.alarmRuleRepository = alarmRuleRepository;
+        this.deviceFacade = deviceFacade;
+        this.messagePubSub = messagePubSub;
+        this.alarmBatchWriter = alarmBatchWriter;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (properties.isEnabled()) {
+            loadRules();
+        }
+    }
+
+    /**
+     * Compile the enabled rules of all tenants
+     */
+    public void loadRules() {
+        index.clear();
+        int pageNumber = 0;
+        Page<AlarmRulePO> page;
+        do {
+            page = alarmRuleRepository.findAllIgnoreTenant(f -> f.eq(AlarmRulePO.Fields.enabled, true)
+                            .eq(AlarmRulePO.Fields.actionRaiseAlarm, true),
+                    PageRequest.of(pageNumber++, LOAD_PAGE_SIZE, Sort.by(AlarmRulePO.Fields.id)));
+
+            Map<String, List<AlarmRulePO>> rulesByTenant = new LinkedHashMap<>();
+            page.forEach(po -> rulesByTenant.computeIfAbsent(po.getTenantId(), k -> new ArrayList<>()).add(po));
+            rulesByTenant.forEach((tenantId, pos) -> {
+                try {
+                    TenantContext.setTenantId(tenantId);
+                    compile(pos).forEach(index::put);
+                } catch (Exception e) {
+                    log.error("Failed to load {} alarm rules of tenant {}", pos.size(), tenantId, e);
+                } finally {
+                    TenantContext.clear();
+                }
+            });
+        } while (page.hasNext());
+        log.info("{} alarm rules loaded", index.getRuleCount());
+    }
+
+    /**
+     * Recompile the rules once the current transaction commits, and have the other nodes reload them.
+     * Must be called in the tenant context of the rules.
+     *
+     * @param pos the changed rules, deleted rules are not given
+     */
+    public void reloadAfterCommit(Collection<Long> ruleIds, Collection<AlarmRulePO> pos) {
+        if (ruleIds.isEmpty()) {
+            return;
+        }
+        List<CompiledAlarmRule> compiled = properties.isEnabled() ? compile(pos) : List.of();
+        TransactionUtils.executeAfterCommit(() -> apply(ruleIds, compiled));
+        messagePubSub.publishAfterCommit(new AlarmRuleChangedEvent(TenantContext.getTenantId(), List.copyOf(ruleIds)));
+    }
+
+    /**
+     * Reload the rules from the database, in the tenant context of the rules
+     */
+    public void reload(Collection<Long> ruleIds) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        List<AlarmRulePO> pos = alarmRuleRepository.findAllById(ruleIds);
+        apply(ruleIds, compile(pos));
+    }
+
+    /**
+     * Replace the changed rules in place, so their devices keep the debounce state
+     */
+    private void apply(Collection<Long> ruleIds, List<CompiledAlarmRule> compiled) {
+        Set<Long> compiledIds = compiled.stream().map(CompiledAlarmRule::getId).collect(Collectors.toSet());
+        ruleIds.stream().filter(ruleId -> !compiledIds.contains(ruleId)).forEach(index::remove);
+        compiled.forEach(index::put);
+    }
+
+    private List<CompiledAlarmRule> compile(Collection<AlarmRulePO> pos) {
+        List<AlarmRulePO> enabled = pos.stream()
+                .filter(po -> Boolean.TRUE.equals(po.getEnabled()) && Boolean.TRUE.equals(po.getActionRaiseAlarm()))
+                .toList();
+        List<List<Long>> deviceIdsOfRules = enabled.stream().map(this::parseDeviceIds).toList();
+        Map<Long, String> deviceKeys = resolveDeviceKeys(deviceIdsOfRules.stream()
+                .flatMap(List::stream)
+                .distinct()
+                .toList());
+
+        List<CompiledAlarmRule> compiled = new ArrayList<>(enabled.size());
+        for (int i = 0; i < enabled.size(); i++) {
+            AlarmRulePO po = enabled.get(i);
+            CompiledAlarmRule rule;
+            try {
+                rule = new CompiledAlarmRule(po.getId(), po.getTenantId(), po.getName(), po.getEntityKey(),
+                        po.getConditionOp(), po.getConditionValue());
+            } catch (IllegalArgumentException e) {
+                log.warn("Alarm rule {} is skipped: {}", po.getId(), e.getMessage());
+                continue;
+            }
+            deviceIdsOfRules.get(i).forEach(deviceId -> {
+                String deviceKey = deviceKeys.get(deviceId);
+                if (deviceKey != null) {
+                    rule.addTarget(deviceId, deviceKey);
+                }
+            });
+            compiled.add(rule);
+        }
+        return compiled;
+    }
+
+    private List<Long> parseDeviceIds(AlarmRulePO po) {
+        try {
+            List<Long> deviceIds = JsonUtils.fromJSON(po.getDeviceIds(), LONG_LIST);
+            return deviceIds == null ? List.of() : deviceIds.stream().filter(Objects::nonNull).toList();
+        } catch (Exception e) {
+            log.warn("Failed to parse device ids of alarm rule {}: {}", po.getId(), po.getDeviceIds());
+            return List.of();
+        }
+    }
+
+    private Map<Long, String> resolveDeviceKeys(List<Long> deviceIds) {
+        Map<Long, String> deviceKeys = new HashMap<>();
+        for (int from = 0; from < deviceIds.size(); from += LOAD_PAGE_SIZE) {
+            deviceFacade.findIdAndKeyByIds(deviceIds.subList(from, Math.min(from + LOAD_PAGE_SIZE, deviceIds.size())))
+                    .forEach(device -> deviceKeys.put(device.getId(), device.getKey()));
+        }
+        return deviceKeys;
+    }
+
+    @EventSubscribe(payloadKeyExpression = "*")
+    public void onExchange(ExchangeEvent event) {
+        if (!properties.isEnabled() || ExchangeEvent.EventType.CALL_SERVICE.equals(event.getEventType())) {
+            return;
+        }
+        evaluate(event.getPayload());
+    }
+
+    /**
+     * Evaluate the values of a payload against the rules watching them
+     */
+    public void evaluate(ExchangePayload payload) {
+        String tenantId = Optional.ofNullable((String) payload.getContext(ExchangeContextKeys.SOURCE_TENANT_ID))
+                .filter(StringUtils::hasText)
+                .or(TenantContext::tryGetTenantId)
+                .orElse(null);
+        if (tenantId == null || !index.hasTenant(tenantId)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        payload.getAllPayloads().forEach((entityKey, value) -> {
+            CompiledAlarmRule.Target[] targets = index.find(tenantId, entityKey);
+            for (CompiledAlarmRule.Target target : targets) {
+                switch (target.evaluate(value, now, properties)) {
+                    case RAISED -> alarmBatchWriter.submit(toAlarm(target, value, now));
+                    case CLEARED -> {
+                        // the alarms of the entity are cleared once no rule watching it holds its condition
+                        if (Arrays.stream(targets).noneMatch(CompiledAlarmRule.Target::isActive)) {
+                            alarmBatchWriter.submitClear(target.getRule().getTenantId(), target.getDeviceId(), target.getEntityKey(), ALARM_SOURCE);
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        });
+    }
+
+    private AlarmPO toAlarm(CompiledAlarmRule.Target target, Object value, long now) {
+        CompiledAlarmRule rule = target.getRule();
+        String content = String.format("%s: %s %s %s, current value: %s", rule.getName(), rule.getEntityKey(),
+                rule.getConditionOp(), Objects.toString(rule.getConditionValue(), ""), value);
+        AlarmPO alarm = new AlarmPO();
+        alarm.setTenantId(rule.getTenantId());
+        alarm.setDeviceId(target.getDeviceId());
+        alarm.setAlarmTime(now);
+        alarm.setAlarmContent(content.length() > ALARM_CONTENT_MAX_LENGTH ? content.substring(0, ALARM_CONTENT_MAX_LENGTH) : content);
+        alarm.setAlarmStatus(true);
+        alarm.setEntityKey(target.getEntityKey());
+        alarm.setSource(ALARM_SOURCE);
+        alarm.setCreatedAt(now);
+        return alarm;
+    }
+
+    public int getRuleCount() {
+        return index.getRuleCount();
+    }
+}
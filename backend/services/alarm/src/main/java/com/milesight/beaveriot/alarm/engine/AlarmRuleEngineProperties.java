@@ -0,0 +1,53 @@
+package com.milesight.beaveriot.alarm.engine;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "alarm.rule-engine")
+public class AlarmRuleEngineProperties {
+
+    /**
+     * Enabled alarm rules are evaluated against incoming entity values
+     */
+    private boolean enabled = true;
+
+    /**
+     * Number of consecutive matching values of a device before its alarm is raised
+     */
+    private int raiseAfter = 1;
+
+    /**
+     * Number of consecutive values not matching before a raised condition of a device is cleared
+     */
+    private int clearAfter = 1;
+
+    /**
+     * Minimum time between two alarms of the same rule and device, a condition flapping faster raises only once
+     */
+    private Duration minRaiseInterval = Duration.ofMinutes(1);
+
+    /**
+     * Maximum number of alarms waiting to be written
+     */
+    private int capacity = 10000;
+
+    /**
+     * Time the writer keeps collecting alarms before inserting them
+     */
+    private Duration flushInterval = Duration.ofMillis(500);
+
+    /**
+     * Maximum number of alarms inserted by one batch
+     */
+    private int maxBatchSize = 500;
+
+    /**
+     * Time an evaluating thread waits for free capacity, the alarm is inserted synchronously afterwards
+     */
+    private Duration offerTimeout = Duration.ofMillis(200);
+}
@@ -0,0 +1,95 @@
+package com.milesight.beaveriot.alarm.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled alarm rules by tenant and watched entity key. The watched key of a rule target is the key of the entity of
+ * one device, so a lookup by tenant and entity key finds the targets of exactly that device.
+ * <p>
+ * Lookups are lock free. Changes are serialized and replace the target arrays they touch.
+ */
+public class AlarmRuleIndex {
+
+    private static final CompiledAlarmRule.Target[] NO_TARGETS = new CompiledAlarmRule.Target[0];
+
+    private final Map<String, Map<String, CompiledAlarmRule.Target[]>> targetsByTenant = new ConcurrentHashMap<>();
+
+    private final Map<Long, CompiledAlarmRule> rules = new ConcurrentHashMap<>();
+
+    /**
+     * @return the targets watching the entity, empty if there are none
+     */
+    public CompiledAlarmRule.Target[] find(String tenantId, String entityKey) {
+        Map<String, CompiledAlarmRule.Target[]> targetsByKey = targetsByTenant.get(tenantId);
+        if (targetsByKey == null) {
+            return NO_TARGETS;
+        }
+        CompiledAlarmRule.Target[] targets = targetsByKey.get(entityKey);
+        return targets == null ? NO_TARGETS : targets;
+    }
+
+    public boolean hasTenant(String tenantId) {
+        return targetsByTenant.containsKey(tenantId);
+    }
+
+    /**
+     * Add the rule, replacing an earlier version of it. The targets of the rule keep the debounce state of the same
+     * device in the earlier version.
+     */
+    public synchronized void put(CompiledAlarmRule rule) {
+        CompiledAlarmRule previous = rules.get(rule.getId());
+        if (previous != null) {
+            Map<Long, CompiledAlarmRule.Target> previousTargets = new HashMap<>();
+            previous.getTargets().forEach(target -> previousTargets.put(target.getDeviceId(), target));
+            rule.getTargets().forEach(target -> {
+                CompiledAlarmRule.Target previousTarget = previousTargets.get(target.getDeviceId());
+                if (previousTarget != null && previousTarget.getEntityKey().equals(target.getEntityKey())) {
+                    target.inherit(previousTarget);
+                }
+            });
+        }
+        remove(rule.getId());
+        rules.put(rule.getId(), rule);
+        if (rule.getTargets().isEmpty()) {
+            return;
+        }
+        Map<String, CompiledAlarmRule.Target[]> targetsByKey = targetsByTenant.computeIfAbsent(rule.getTenantId(), k -> new ConcurrentHashMap<>());
+        rule.getTargets().forEach(target -> targetsByKey.merge(target.getEntityKey(), new CompiledAlarmRule.Target[]{target}, (existing, added) -> {
+            CompiledAlarmRule.Target[] merged = Arrays.copyOf(existing, existing.length + 1);
+            merged[existing.length] = added[0];
+            return merged;
+        }));
+    }
+
+    public synchronized void remove(Long ruleId) {
+        CompiledAlarmRule rule = rules.remove(ruleId);
+        if (rule == null) {
+            return;
+        }
+        Map<String, CompiledAlarmRule.Target[]> targetsByKey = targetsByTenant.get(rule.getTenantId());
+        if (targetsByKey == null) {
+            return;
+        }
+        rule.getTargets().forEach(target -> targetsByKey.computeIfPresent(target.getEntityKey(), (key, existing) -> {
+            CompiledAlarmRule.Target[] remaining = Arrays.stream(existing)
+                    .filter(it -> it.getRule() != rule)
+                    .toArray(CompiledAlarmRule.Target[]::new);
+            return remaining.length == 0 ? null : remaining;
+        }));
+        if (targetsByKey.isEmpty()) {
+            targetsByTenant.remove(rule.getTenantId());
+        }
+    }
+
+    public synchronized void clear() {
+        rules.clear();
+        targetsByTenant.clear();
+    }
+
+    public int getRuleCount() {
+        return rules.size();
+    }
+}
@@ -0,0 +1,136 @@
+package com.milesight.beaveriot.alarm.engine;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An enabled alarm rule with its condition parsed and its devices resolved to the keys of the watched entity.
+ */
+@Getter
+public class CompiledAlarmRule {
+
+    private final Long id;
+
+    private final String tenantId;
+
+    private final String name;
+
+    private final String entityKey;
+
+    private final String conditionOp;
+
+    private final String conditionValue;
+
+    private final AlarmCondition condition;
+
+    private final List<Target> targets = new ArrayList<>();
+
+    public CompiledAlarmRule(Long id, String tenantId, String name, String entityKey,
+                             String conditionOp, String conditionValue) {
+        this.id = id;
+        this.tenantId = tenantId;
+        this.name = name;
+        this.entityKey = entityKey;
+        this.conditionOp = conditionOp;
+        this.conditionValue = conditionValue;
+        this.condition = AlarmCondition.compile(conditionOp, conditionValue);
+    }
+
+    /**
+     * Watch the rule entity of a device
+     *
+     * @param deviceKey key of the device, the watched entity key is the device key followed by the rule entity key
+     */
+    public void addTarget(Long deviceId, String deviceKey) {
+        String key = entityKey.startsWith(deviceKey + ".") ? entityKey : deviceKey + "." + entityKey;
+        targets.add(new Target(this, deviceId, key));
+    }
+
+    public List<Target> getTargets() {
+        return Collections.unmodifiableList(targets);
+    }
+
+    /**
+     * The rule applied to one device. Keeps the debounce state of the device, so consecutive values only raise an
+     * alarm on the transition into the condition.
+     */
+    @Getter
+    public static class Target {
+
+        private final CompiledAlarmRule rule;
+
+        private final Long deviceId;
+
+        private final String entityKey;
+
+        private int matches;
+
+        private int misses;
+
+        private boolean active;
+
+        private long lastRaisedAt = Long.MIN_VALUE;
+
+        private Target(CompiledAlarmRule rule, Long deviceId, String entityKey) {
+            this.rule = rule;
+            this.deviceId = deviceId;
+            this.entityKey = entityKey;
+        }
+
+        /**
+         * @return the transition of the device caused by the value
+         */
+        public synchronized Transition evaluate(Object value, long now, AlarmRuleEngineProperties properties) {
+            if (!rule.condition.test(value)) {
+                matches = 0;
+                if (active && ++misses >= properties.getClearAfter()) {
+                    active = false;
+                    misses = 0;
+                    return Transition.CLEARED;
+                }
+                return Transition.NONE;
+            }
+
+            misses = 0;
+            if (active || ++matches < properties.getRaiseAfter()) {
+                return Transition.NONE;
+            }
+            active = true;
+            matches = 0;
+            if (lastRaisedAt != Long.MIN_VALUE && now - lastRaisedAt < properties.getMinRaiseInterval().toMillis()) {
+                return Transition.NONE;
+            }
+            lastRaisedAt = now;
+            return Transition.RAISED;
+        }
+
+        /**
+         * Take over the debounce state of the same device in an earlier version of the rule
+         */
+        void inherit(Target previous) {
+            synchronized (previous) {
+                synchronized (this) {
+                    matches = previous.matches;
+                    misses = previous.misses;
+                    active = previous.active;
+                    lastRaisedAt = previous.lastRaisedAt;
+                }
+            }
+        }
+    }
+
+    public enum Transition {
+        NONE,
+        /**
+         * The device moved into the condition, an alarm is raised
+         */
+        RAISED,
+        /**
+         * The device left the condition, its raised alarms are cleared
+         */
+        CLEARED
+    }
+}
@@ -0,0 +1,25 @@
+package com.milesight.beaveriot.alarm.listener;
+
+import com.milesight.beaveriot.alarm.engine.AlarmRuleEngine;
+import com.milesight.beaveriot.alarm.model.event.AlarmRuleChangedEvent;
+import com.milesight.beaveriot.pubsub.api.annotation.MessageListener;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AlarmRuleMessageListener {
+
+    private final AlarmRuleEngine alarmRuleEngine;
+
+    @MessageListener
+    public void onAlarmRuleChangedEvent(AlarmRuleChangedEvent event) {
+        if (event.isSelfInstance() || event.getRuleIds() == null) {
+            return;
+        }
+        log.debug("Received alarm rule changed event: {}", event);
+        alarmRuleEngine.reload(event.getRuleIds());
+    }
+}
@@ -0,0 +1,35 @@
+package com.milesight.beaveriot.alarm.model.event;
+
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Alarm rules of a tenant were created, updated or deleted, other nodes reload them from the database.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class AlarmRuleChangedEvent extends RemoteBroadcastMessage {
+
+    public static final String INSTANCE_UUID = UUID.randomUUID().toString();
+
+    private List<Long> ruleIds;
+
+    private String instanceId;
+
+    public AlarmRuleChangedEvent() {
+    }
+
+    public AlarmRuleChangedEvent(String tenantId, List<Long> ruleIds) {
+        this.tenantId = tenantId;
+        this.ruleIds = ruleIds;
+        this.instanceId = INSTANCE_UUID;
+    }
+
+    public boolean isSelfInstance() {
+        return INSTANCE_UUID.equals(instanceId);
+    }
+}
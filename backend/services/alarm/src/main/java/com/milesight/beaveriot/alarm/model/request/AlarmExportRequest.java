@@ -14,4 +14,5 @@ public class AlarmExportRequest {
     private Long endTimestamp;
     private List<Boolean> alarmStatus = new ArrayList<>();
     private String timezone;
+    private Boolean gzip;
 }
@@ -1,9 +1,19 @@
 package com.milesight.beaveriot.alarm.repository;
 
 import com.milesight.beaveriot.alarm.po.AlarmRulePO;
+import com.milesight.beaveriot.data.filterable.Filterable;
 import com.milesight.beaveriot.data.jpa.repository.BaseJpaRepository;
 import com.milesight.beaveriot.permission.aspect.Tenant;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.function.Consumer;
 
 @Tenant
 public interface AlarmRuleRepository extends BaseJpaRepository<AlarmRulePO, Long> {
+
+    @Tenant(enable = false)
+    default Page<AlarmRulePO> findAllIgnoreTenant(Consumer<Filterable> filterable, Pageable pageable) {
+        return findAll(filterable, pageable);
+    }
 }
@@ -3,6 +3,7 @@ package com.milesight.beaveriot.alarm.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.milesight.beaveriot.alarm.engine.AlarmRuleEngine;
 import com.milesight.beaveriot.alarm.model.request.AlarmRuleCreateRequest;
 import com.milesight.beaveriot.alarm.model.request.AlarmRuleUpdateRequest;
 import com.milesight.beaveriot.alarm.model.response.AlarmRuleResponse;
@@ -36,6 +37,7 @@ public class AlarmRuleService {
 
     private final AlarmRuleRepository alarmRuleRepository;
     private final IDeviceFacade deviceFacade;
+    private final AlarmRuleEngine alarmRuleEngine;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public Page<AlarmRuleResponse> list(int pageNumber, int pageSize) {
@@ -82,6 +84,7 @@ public class AlarmRuleService {
         po.setCreatedAt(now);
         po.setUpdatedAt(now);
         po = alarmRuleRepository.save(po);
+        alarmRuleEngine.reloadAfterCommit(List.of(po.getId()), List.of(po));
         return get(po.getId());
     }
 
@@ -101,6 +104,7 @@ public class AlarmRuleService {
         po.setEnabled(req.getEnabled() != null ? req.getEnabled() : true);
         po.setUpdatedAt(now);
         alarmRuleRepository.save(po);
+        alarmRuleEngine.reloadAfterCommit(List.of(id), List.of(po));
         return get(id);
     }
 
@@ -110,16 +114,20 @@ public class AlarmRuleService {
             throw ServiceException.with(ErrorCode.DATA_NO_FOUND).detailMessage("Alarm rule not found: " + id).build();
         }
         alarmRuleRepository.deleteById(id);
+        alarmRuleEngine.reloadAfterCommit(List.of(id), List.of());
     }
 
     @Transactional
     public void batchDelete(List<Long> ids) {
         if (ids == null || ids.isEmpty()) return;
+        List<Long> deletedIds = new ArrayList<>();
         ids.forEach(id -> {
             if (alarmRuleRepository.existsById(id)) {
                 alarmRuleRepository.deleteById(id);
+                deletedIds.add(id);
             }
         });
+        alarmRuleEngine.reloadAfterCommit(deletedIds, List.of());
     }
 
     private List<Long> parseDeviceIds(String json) {
@@ -7,6 +7,7 @@ import com.milesight.beaveriot.alarm.po.AlarmPO;
 import com.milesight.beaveriot.alarm.repository.AlarmRepository;
 import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
+import com.milesight.beaveriot.base.export.StreamingCsvExporter;
 import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.device.dto.DeviceNameDTO;
 import com.milesight.beaveriot.device.facade.IDeviceFacade;
@@ -22,15 +23,15 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -40,8 +41,26 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AlarmService {
 
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    private static final int EXPORT_DEVICE_NAME_CACHE_SIZE = 1000;
+    private static final Sort EXPORT_SORT = Sort.by(Sort.Direction.DESC, AlarmPO.Fields.alarmTime, AlarmPO.Fields.id);
+    private static final StreamingCsvExporter<AlarmExportRow> ALARM_EXPORTER = StreamingCsvExporter.of(
+            List.of("id", "alarm_status", "alarm_time", "alarm_content", "latitude", "longitude", "address", "device_id", "device_name"),
+            row -> Arrays.asList(
+                    row.alarm().getId(),
+                    row.alarm().getAlarmStatus(),
+                    row.alarm().getAlarmTime(),
+                    row.alarm().getAlarmContent(),
+                    row.alarm().getLatitude(),
+                    row.alarm().getLongitude(),
+                    row.alarm().getAddress(),
+                    row.alarm().getDeviceId(),
+                    row.deviceName()
+            ));
+
     private final AlarmRepository alarmRepository;
     private final IDeviceFacade deviceFacade;
+    private final EntityManager entityManager;
 
     public Page<AlarmDetailResponse> search(AlarmSearchRequest request) {
         Specification<AlarmPO> spec = buildSpecification(
@@ -72,35 +91,52 @@ public class AlarmService {
                 request.getAlarmStatus(),
                 request.getKeyword()
         );
-        Sort sort = Sort.by(Sort.Direction.DESC, AlarmPO.Fields.alarmTime);
-        List<AlarmPO> list = alarmRepository.findAll(spec, sort);
+        Map<Long, String> deviceNameCache = lruMap(EXPORT_DEVICE_NAME_CACHE_SIZE);
 
-        Map<Long, String> deviceNameMap = resolveDeviceNames(
-                list.stream().map(AlarmPO::getDeviceId).distinct().toList()
+        String filename = "Alarms_" + ZonedDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME) + ".csv";
+        ALARM_EXPORTER.export(response, filename, Boolean.TRUE.equals(request.getGzip()),
+                last -> readExportPage(spec, last, deviceNameCache));
+    }
+
+    /**
+     * Read the alarms following the last exported one, in the order of (alarm_time, id) descending.
+     * The alarms read are detached, so that the persistence context does not grow with the export.
+     */
+    private List<AlarmExportRow> readExportPage(Specification<AlarmPO> spec, AlarmExportRow last, Map<Long, String> deviceNameCache) {
+        Specification<AlarmPO> pageSpec = last == null ? spec : spec.and(after(last.alarm()));
+        List<AlarmPO> alarms = alarmRepository.findBy(pageSpec, query -> query.sortBy(EXPORT_SORT).limit(EXPORT_PAGE_SIZE).all());
+        alarms.forEach(entityManager::detach);
+
+        List<Long> unknownDeviceIds = alarms.stream()
+                .map(AlarmPO::getDeviceId)
+                .distinct()
+                .filter(deviceId -> !deviceNameCache.containsKey(deviceId))
+                .toList();
+        Map<Long, String> resolvedDeviceNames = resolveDeviceNames(unknownDeviceIds);
+        unknownDeviceIds.forEach(deviceId -> deviceNameCache.put(deviceId, resolvedDeviceNames.getOrDefault(deviceId, "")));
+
+        return alarms.stream()
+                .map(po -> new AlarmExportRow(po, resolvedDeviceNames.getOrDefault(po.getDeviceId(), deviceNameCache.getOrDefault(po.getDeviceId(), ""))))
+                .toList();
+    }
+
+    private static Specification<AlarmPO> after(AlarmPO last) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get(AlarmPO.Fields.alarmTime), last.getAlarmTime()),
+                cb.and(
+                        cb.equal(root.get(AlarmPO.Fields.alarmTime), last.getAlarmTime()),
+                        cb.lessThan(root.get(AlarmPO.Fields.id), last.getId())
+                )
         );
+    }
 
-        String filename = "Alarms_" + ZonedDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME) + ".csv";
-        response.setHeader("Content-Type", "text/csv; charset=UTF-8");
-        response.setHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
-
-        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8))) {
-            writer.println("id,alarm_status,alarm_time,alarm_content,latitude,longitude,address,device_id,device_name");
-            for (AlarmPO po : list) {
-                String name = deviceNameMap.getOrDefault(po.getDeviceId(), "");
-                String content = escapeCsv(po.getAlarmContent());
-                String addr = escapeCsv(po.getAddress());
-                writer.printf("%d,%s,%d,\"%s\",%s,%s,\"%s\",%d,\"%s\"%n",
-                        po.getId(),
-                        po.getAlarmStatus(),
-                        po.getAlarmTime(),
-                        content,
-                        po.getLatitude() != null ? po.getLatitude() : "",
-                        po.getLongitude() != null ? po.getLongitude() : "",
-                        addr,
-                        po.getDeviceId(),
-                        escapeCsv(name));
+    private static <K, V> Map<K, V> lruMap(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
             }
-        }
+        };
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -163,8 +199,6 @@ public class AlarmService {
                 .build();
     }
 
-    private static String escapeCsv(String value) {
-        if (value == null) return "";
-        return value.replace("\"", "\"\"");
+    private record AlarmExportRow(AlarmPO alarm, String deviceName) {
     }
 }
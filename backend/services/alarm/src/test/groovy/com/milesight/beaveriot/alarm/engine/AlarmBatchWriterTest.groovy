@@ -0,0 +1,133 @@
+package com.milesight.beaveriot.alarm.engine
+
+import com.milesight.beaveriot.alarm.po.AlarmPO
+import org.springframework.jdbc.core.JdbcTemplate
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+
+class AlarmBatchWriterTest extends Specification {
+
+    AlarmRuleEngineProperties properties = new AlarmRuleEngineProperties(flushInterval: Duration.ofMillis(50), offerTimeout: Duration.ofMillis(10))
+
+    List<List> statements = new CopyOnWriteArrayList<>()
+
+    JdbcTemplate jdbcTemplate = Stub() {
+        batchUpdate(_ as String, _ as List) >> { String sql, List<Object[]> args ->
+            statements << [sql.split(" ")[0], args.collect { it[1] }]
+            return new int[args.size()]
+        }
+    }
+
+    AlarmBatchWriter writer
+
+    def cleanup() {
+        writer?.destroy()
+    }
+
+    static AlarmPO alarm(Long deviceId) {
+        def alarm = new AlarmPO()
+        alarm.tenantId = "default"
+        alarm.deviceId = deviceId
+        alarm.entityKey = "device-" + deviceId + ".temperature"
+        alarm.source = AlarmRuleEngine.ALARM_SOURCE
+        return alarm
+    }
+
+    def "should insert queued alarms in batches"() {
+        given:
+        properties.maxBatchSize = 3
+        writer = new AlarmBatchWriter(jdbcTemplate, properties)
+
+        when:
+        (1L..5L).each { writer.submit(alarm(it)) }
+        writer.start()
+
+        then:
+        new PollingConditions(timeout: 5).eventually {
+            assert statements == [["INSERT", [1L, 2L, 3L]], ["INSERT", [4L, 5L]]]
+        }
+        writer.pendingCount == 0
+    }
+
+    def "should write raised and cleared alarms in queue order"() {
+        given:
+        writer = new AlarmBatchWriter(jdbcTemplate, properties)
+
+        when:
+        writer.submit(alarm(1L))
+        writer.submit(alarm(2L))
+        writer.submitClear("default", 1L, "device-1.temperature", AlarmRuleEngine.ALARM_SOURCE)
+        writer.submit(alarm(1L))
+        writer.start()
+
+        then:
+        new PollingConditions(timeout: 5).eventually {
+            assert statements == [["INSERT", [1L, 2L]], ["UPDATE", [1L]], ["INSERT", [1L]]]
+        }
+    }
+
+    def "should insert synchronously while the queue stays full"() {
+        given:
+        properties.capacity = 2
+        writer = new AlarmBatchWriter(jdbcTemplate, properties)
+
+        when: "the flusher is not running yet"
+        (1L..3L).each { writer.submit(alarm(it)) }
+
+        then:
+        statements == [["INSERT", [3L]]]
+        writer.pendingCount == 2
+    }
+
+    def "should keep going after a failed write"() {
+        given:
+        def calls = 0
+        def failing = Stub(JdbcTemplate) {
+            batchUpdate(_ as String, _ as List) >> { String sql, List<Object[]> args ->
+                if (calls++ == 0) {
+                    throw new IllegalStateException("boom")
+                }
+                statements << [sql.split(" ")[0], args.collect { it[1] }]
+                return new int[args.size()]
+            }
+        }
+        writer = new AlarmBatchWriter(failing, properties)
+        writer.start()
+
+        when:
+        writer.submit(alarm(1L))
+        new PollingConditions(timeout: 5).eventually {
+            assert calls == 1
+        }
+        writer.submit(alarm(2L))
+
+        then:
+        new PollingConditions(timeout: 5).eventually {
+            assert statements == [["INSERT", [2L]]]
+        }
+    }
+
+    def "should drain the queue on shutdown and write later alarms synchronously"() {
+        given:
+        properties.flushInterval = Duration.ofSeconds(5)
+        writer = new AlarmBatchWriter(jdbcTemplate, properties)
+        writer.start()
+
+        when:
+        (1L..3L).each { writer.submit(alarm(it)) }
+        writer.destroy()
+
+        then:
+        statements.collectMany { it[1] } == [1L, 2L, 3L]
+        writer.pendingCount == 0
+
+        when:
+        writer.submit(alarm(4L))
+
+        then:
+        statements.last() == ["INSERT", [4L]]
+    }
+}
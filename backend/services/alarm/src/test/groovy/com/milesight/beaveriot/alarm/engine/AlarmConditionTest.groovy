@@ -0,0 +1,77 @@
+package com.milesight.beaveriot.alarm.engine
+
+import spock.lang.Specification
+
+class AlarmConditionTest extends Specification {
+
+    def "#op #conditionValue should be #expected for #value"() {
+        expect:
+        AlarmCondition.compile(op, conditionValue).test(value) == expected
+
+        where:
+        op             | conditionValue | value   || expected
+        "gt"           | "10"           | 11      || true
+        "gt"           | "10"           | 10      || false
+        "gt"           | "10"           | "10.5"  || true
+        "gt"           | "10"           | "abc"   || false
+        "gt"           | "10"           | null    || false
+        "GT"           | " 10 "         | 11      || true
+        "gte"          | "10"           | 10      || true
+        "gte"          | "10"           | 9.99    || false
+        "lt"           | "-1.5"         | -2      || true
+        "lt"           | "-1.5"         | -1.5    || false
+        "lte"          | "0"            | 0       || true
+        "lte"          | "0"            | 0.1     || false
+        "eq"           | "1"            | 1       || true
+        "eq"           | "1"            | 1.0d    || true
+        "eq"           | "1"            | "1"     || true
+        "eq"           | "1"            | 2       || false
+        "eq"           | "true"         | true    || true
+        "eq"           | "TRUE"         | true    || true
+        "eq"           | "true"         | false   || false
+        "eq"           | "1"            | true    || false
+        "eq"           | "open"         | "OPEN"  || true
+        "eq"           | "open"         | "close" || false
+        "eq"           | "open"         | null    || false
+        "eq"           | ""             | ""      || true
+        "eq"           | null           | ""      || true
+        "neq"          | "1"            | 2       || true
+        "neq"          | "1"            | 1       || false
+        "neq"          | "open"         | "close" || true
+        "neq"          | "open"         | null    || false
+        "between"      | "1, 5"         | 1       || true
+        "between"      | "1, 5"         | 5       || true
+        "between"      | "1, 5"         | 3.3     || true
+        "between"      | "1, 5"         | 0.99    || false
+        "between"      | "1, 5"         | 5.01    || false
+        "between"      | "1, 5"         | "4"     || true
+        "between"      | "1, 5"         | "x"     || false
+        "between"      | "2,2"          | 2       || true
+        "between"      | "-5,-1"        | -3      || true
+        "is_not_empty" | null           | "a"     || true
+        "is_not_empty" | null           | 0       || true
+        "is_not_empty" | null           | ""      || false
+        "is_not_empty" | null           | null    || false
+    }
+
+    def "should reject #op #conditionValue"() {
+        when:
+        AlarmCondition.compile(op, conditionValue)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        op        | conditionValue
+        null      | "1"
+        "like"    | "1"
+        "gt"      | "abc"
+        "gte"     | null
+        "lt"      | ""
+        "lte"     | "1,2"
+        "between" | "1"
+        "between" | "1,2,3"
+        "between" | "a,2"
+        "between" | "5,1"
+    }
+}
@@ -0,0 +1,131 @@
+package com.milesight.beaveriot.alarm.engine
+
+import com.milesight.beaveriot.alarm.model.event.AlarmRuleChangedEvent
+import com.milesight.beaveriot.alarm.po.AlarmPO
+import com.milesight.beaveriot.alarm.po.AlarmRulePO
+import com.milesight.beaveriot.alarm.repository.AlarmRuleRepository
+import com.milesight.beaveriot.context.integration.model.ExchangePayload
+import com.milesight.beaveriot.context.security.TenantContext
+import com.milesight.beaveriot.device.dto.DeviceIdKeyDTO
+import com.milesight.beaveriot.device.facade.IDeviceFacade
+import com.milesight.beaveriot.pubsub.MessagePubSub
+import spock.lang.Specification
+
+import java.time.Duration
+
+class AlarmRuleEngineTest extends Specification {
+
+    AlarmRuleRepository alarmRuleRepository = Mock()
+
+    IDeviceFacade deviceFacade = Stub() {
+        findIdAndKeyByIds(_) >> { args -> args[0].collect { Long id -> new DeviceIdKeyDTO(id, "device-" + id) } }
+    }
+
+    MessagePubSub messagePubSub = Mock()
+
+    AlarmBatchWriter alarmBatchWriter = Mock()
+
+    AlarmRuleEngineProperties properties = new AlarmRuleEngineProperties(minRaiseInterval: Duration.ZERO)
+
+    AlarmRuleEngine engine = new AlarmRuleEngine(alarmRuleRepository, deviceFacade, messagePubSub, alarmBatchWriter, properties)
+
+    def setup() {
+        TenantContext.setTenantId("default")
+    }
+
+    def cleanup() {
+        TenantContext.clear()
+    }
+
+    static AlarmRulePO rulePO(Long id, String op, String value, String deviceIds = "[1]") {
+        def po = new AlarmRulePO()
+        po.id = id
+        po.tenantId = "default"
+        po.name = "rule " + id
+        po.entityKey = "temperature"
+        po.conditionOp = op
+        po.conditionValue = value
+        po.deviceIds = deviceIds
+        return po
+    }
+
+    def "should raise an alarm on the transition into the condition and clear it on the transition out of it"() {
+        given:
+        engine.reloadAfterCommit([1L], [rulePO(1L, "gt", "30")])
+
+        when:
+        evaluate(31)
+        evaluate(32)
+
+        then:
+        1 * alarmBatchWriter.submit({ AlarmPO alarm ->
+            alarm.deviceId == 1L && alarm.entityKey == "device-1.temperature" && alarm.alarmStatus && alarm.source == AlarmRuleEngine.ALARM_SOURCE
+        })
+
+        when:
+        evaluate(20)
+
+        then:
+        1 * alarmBatchWriter.submitClear("default", 1L, "device-1.temperature", AlarmRuleEngine.ALARM_SOURCE)
+        0 * alarmBatchWriter._
+    }
+
+    def "should not clear the alarms of an entity while another rule holds its condition"() {
+        given:
+        engine.reloadAfterCommit([1L, 2L], [rulePO(1L, "gt", "30"), rulePO(2L, "gt", "20")])
+        evaluate(31)
+
+        when:
+        evaluate(25)
+
+        then:
+        0 * alarmBatchWriter.submitClear(*_)
+
+        when:
+        evaluate(10)
+
+        then:
+        1 * alarmBatchWriter.submitClear("default", 1L, "device-1.temperature", AlarmRuleEngine.ALARM_SOURCE)
+    }
+
+    def "reloaded rules should keep the debounce state of their devices"() {
+        given:
+        engine.reloadAfterCommit([1L], [rulePO(1L, "gt", "30", "[1, 2]")])
+        evaluate(31)
+
+        when: "the rule is updated on this node and on another node"
+        engine.reloadAfterCommit([1L], [rulePO(1L, "gt", "25", "[1, 2]")])
+        alarmRuleRepository.findAllById([1L]) >> [rulePO(1L, "gt", "26", "[1, 2]")]
+        engine.reload([1L])
+        evaluate(31)
+
+        then:
+        0 * alarmBatchWriter.submit(_)
+        1 * messagePubSub.publishAfterCommit({ AlarmRuleChangedEvent event -> event.ruleIds == [1L] })
+    }
+
+    def "should drop deleted and disabled rules"() {
+        given:
+        engine.reloadAfterCommit([1L, 2L], [rulePO(1L, "gt", "30"), rulePO(2L, "lt", "0")])
+        def disabled = rulePO(2L, "lt", "0")
+        disabled.enabled = false
+
+        when:
+        engine.reloadAfterCommit([1L, 2L], [disabled])
+
+        then:
+        engine.ruleCount == 0
+    }
+
+    def "should skip rules with invalid conditions"() {
+        when:
+        engine.reloadAfterCommit([1L, 2L], [rulePO(1L, "gt", "abc"), rulePO(2L, "between", "1,5")])
+
+        then:
+        engine.ruleCount == 1
+    }
+
+    private void evaluate(Object value) {
+        engine.evaluate(ExchangePayload.create("device-1.temperature", value))
+    }
+}
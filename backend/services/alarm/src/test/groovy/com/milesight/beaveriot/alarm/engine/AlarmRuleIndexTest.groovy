@@ -0,0 +1,124 @@
+package com.milesight.beaveriot.alarm.engine
+
+import spock.lang.Specification
+
+import java.time.Duration
+
+class AlarmRuleIndexTest extends Specification {
+
+    AlarmRuleIndex index = new AlarmRuleIndex()
+
+    static CompiledAlarmRule rule(Long id, String tenantId = "default", String entityKey = "temperature", String threshold = "30", Map<Long, String> devices = [1L: "device-1"]) {
+        def rule = new CompiledAlarmRule(id, tenantId, "rule " + id, entityKey, "gt", threshold)
+        devices.each { deviceId, deviceKey -> rule.addTarget(deviceId, deviceKey) }
+        return rule
+    }
+
+    def "should find the targets by tenant and watched entity"() {
+        given:
+        index.put(rule(1L, "default", "temperature", "30", [1L: "device-1", 2L: "device-2"]))
+        index.put(rule(2L, "default", "temperature"))
+        index.put(rule(3L, "other", "temperature"))
+
+        expect:
+        index.find("default", "device-1.temperature")*.rule*.id == [1L, 2L]
+        index.find("default", "device-2.temperature")*.rule*.id == [1L]
+        index.find("other", "device-1.temperature")*.rule*.id == [3L]
+        index.find("default", "device-1.humidity").length == 0
+        index.find("unknown", "device-1.temperature").length == 0
+        index.hasTenant("default")
+        index.ruleCount == 3
+    }
+
+    def "should keep rules without targets"() {
+        when:
+        index.put(rule(1L, "default", "temperature", "30", [:]))
+
+        then:
+        index.ruleCount == 1
+        !index.hasTenant("default")
+    }
+
+    def "should replace an earlier version of a rule"() {
+        given:
+        index.put(rule(1L, "default", "temperature", "30", [1L: "device-1", 2L: "device-2"]))
+
+        when:
+        index.put(rule(1L, "default", "humidity", "80", [2L: "device-2"]))
+
+        then:
+        index.ruleCount == 1
+        index.find("default", "device-1.temperature").length == 0
+        index.find("default", "device-2.temperature").length == 0
+        index.find("default", "device-2.humidity")*.rule*.conditionValue == ["80"]
+    }
+
+    def "replaced rules should keep the debounce state of their devices"() {
+        given:
+        def properties = new AlarmRuleEngineProperties(minRaiseInterval: Duration.ZERO)
+        index.put(rule(1L, "default", "temperature", "30", [1L: "device-1", 2L: "device-2"]))
+        index.find("default", "device-1.temperature")[0].evaluate(31, 0, properties)
+
+        when:
+        index.put(rule(1L, "default", "temperature", "25", [1L: "device-1", 2L: "device-2"]))
+
+        then:
+        index.find("default", "device-1.temperature")[0].active
+        !index.find("default", "device-2.temperature")[0].active
+
+        when: "the watched entity changes"
+        index.put(rule(1L, "default", "humidity", "25", [1L: "device-1"]))
+
+        then:
+        !index.find("default", "device-1.humidity")[0].active
+    }
+
+    def "should remove a rule and drop empty tenants"() {
+        given:
+        index.put(rule(1L))
+        index.put(rule(2L))
+
+        when:
+        index.remove(1L)
+
+        then:
+        index.find("default", "device-1.temperature")*.rule*.id == [2L]
+        index.ruleCount == 1
+
+        when:
+        index.remove(2L)
+        index.remove(3L)
+
+        then:
+        index.find("default", "device-1.temperature").length == 0
+        !index.hasTenant("default")
+        index.ruleCount == 0
+    }
+
+    def "should not change the targets found before a change"() {
+        given:
+        index.put(rule(1L))
+        def found = index.find("default", "device-1.temperature")
+
+        when:
+        index.put(rule(2L))
+        index.remove(1L)
+
+        then:
+        found*.rule*.id == [1L]
+    }
+
+    def "should clear all rules"() {
+        given:
+        index.put(rule(1L))
+        index.put(rule(2L, "other"))
+
+        when:
+        index.clear()
+
+        then:
+        index.ruleCount == 0
+        !index.hasTenant("default")
+        !index.hasTenant("other")
+    }
+}
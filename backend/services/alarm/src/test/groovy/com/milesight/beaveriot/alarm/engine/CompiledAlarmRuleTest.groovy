@@ -0,0 +1,109 @@
+package com.milesight.beaveriot.alarm.engine
+
+import spock.lang.Specification
+
+import java.time.Duration
+
+import static com.milesight.beaveriot.alarm.engine.CompiledAlarmRule.Transition.CLEARED
+import static com.milesight.beaveriot.alarm.engine.CompiledAlarmRule.Transition.NONE
+import static com.milesight.beaveriot.alarm.engine.CompiledAlarmRule.Transition.RAISED
+
+class CompiledAlarmRuleTest extends Specification {
+
+    AlarmRuleEngineProperties properties = new AlarmRuleEngineProperties(minRaiseInterval: Duration.ZERO)
+
+    CompiledAlarmRule.Target target = rule().with { it.addTarget(1L, "device-1"); it }.targets[0]
+
+    static CompiledAlarmRule rule(String entityKey = "temperature") {
+        return new CompiledAlarmRule(10L, "default", "too hot", entityKey, "gt", "30")
+    }
+
+    def "should watch the rule entity of the device"() {
+        given:
+        def rule = rule(entityKey)
+
+        when:
+        rule.addTarget(1L, "device-1")
+
+        then:
+        rule.targets*.entityKey == [expected]
+
+        where:
+        entityKey                   || expected
+        "temperature"               || "device-1.temperature"
+        "device-1.temperature"      || "device-1.temperature"
+        "props.temperature"         || "device-1.props.temperature"
+    }
+
+    def "should raise on the transition into the condition and clear on the transition out of it"() {
+        expect:
+        [31, 32, 20, 20, 35].collect { evaluate(it) } == [RAISED, NONE, CLEARED, NONE, RAISED]
+    }
+
+    def "should raise after #raiseAfter consecutive matches"() {
+        given:
+        properties.raiseAfter = raiseAfter
+
+        expect:
+        values.collect { evaluate(it) } == expected
+
+        where:
+        raiseAfter | values               || expected
+        1          | [31]                 || [RAISED]
+        3          | [31, 31, 31]         || [NONE, NONE, RAISED]
+        3          | [31, 31, 20, 31, 31] || [NONE, NONE, NONE, NONE, NONE]
+        2          | [31, 20, 31, 31, 31] || [NONE, NONE, NONE, RAISED, NONE]
+    }
+
+    def "should clear after #clearAfter consecutive misses"() {
+        given:
+        properties.clearAfter = clearAfter
+
+        expect:
+        values.collect { evaluate(it) } == expected
+
+        where:
+        clearAfter | values                   || expected
+        1          | [31, 20]                 || [RAISED, CLEARED]
+        2          | [31, 20, 31, 20]         || [RAISED, NONE, NONE, NONE]
+        2          | [31, 20, 20, 20]         || [RAISED, NONE, CLEARED, NONE]
+        3          | [31, 20, 20, 31, 35, 20] || [RAISED, NONE, NONE, NONE, NONE, NONE]
+    }
+
+    def "should not count misses before a raise"() {
+        expect:
+        [20, 20, 20].collect { evaluate(it) } == [NONE, NONE, NONE]
+        !target.active
+    }
+
+    def "should not raise again within the minimum raise interval"() {
+        given:
+        properties.minRaiseInterval = Duration.ofMinutes(1)
+
+        expect:
+        target.evaluate(31, 0, properties) == RAISED
+        target.evaluate(20, 1_000, properties) == CLEARED
+        // the device is in the condition again, but the alarm is suppressed
+        target.evaluate(31, 2_000, properties) == NONE
+        target.active
+        target.evaluate(20, 3_000, properties) == CLEARED
+        target.evaluate(31, 60_000, properties) == RAISED
+    }
+
+    def "should take over the debounce state of an earlier version of the rule"() {
+        given:
+        properties.raiseAfter = 2
+        evaluate(31)
+        def newer = rule().with { it.addTarget(1L, "device-1"); it }.targets[0]
+
+        when:
+        newer.inherit(target)
+
+        then:
+        newer.evaluate(31, 0, properties) == RAISED
+    }
+
+    private CompiledAlarmRule.Transition evaluate(Object value) {
+        return target.evaluate(value, System.currentTimeMillis(), properties)
+    }
+}
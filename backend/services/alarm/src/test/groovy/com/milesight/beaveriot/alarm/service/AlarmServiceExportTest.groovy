@@ -0,0 +1,208 @@
+package com.milesight.beaveriot.alarm.service
+
+import com.milesight.beaveriot.alarm.model.request.AlarmExportRequest
+import com.milesight.beaveriot.alarm.po.AlarmPO
+import com.milesight.beaveriot.alarm.repository.AlarmRepository
+import com.milesight.beaveriot.context.security.TenantContext
+import com.milesight.beaveriot.device.dto.DeviceNameDTO
+import com.milesight.beaveriot.device.facade.IDeviceFacade
+import jakarta.persistence.EntityManager
+import jakarta.persistence.criteria.CriteriaBuilder
+import jakarta.persistence.criteria.CriteriaQuery
+import jakarta.persistence.criteria.Path
+import jakarta.persistence.criteria.Predicate
+import jakarta.persistence.criteria.Root
+import jakarta.servlet.ServletOutputStream
+import jakarta.servlet.WriteListener
+import org.springframework.data.jpa.domain.Specification
+import org.springframework.mock.web.MockHttpServletResponse
+import spock.lang.Specification as Spec
+
+import java.nio.charset.StandardCharsets
+
+class AlarmServiceExportTest extends Spec {
+
+    static final int PAGE_SIZE = 1000
+
+    AlarmRepository alarmRepository = Mock()
+
+    IDeviceFacade deviceFacade = Mock()
+
+    EntityManager entityManager = Mock()
+
+    AlarmService alarmService = new AlarmService(alarmRepository, deviceFacade, entityManager)
+
+    List<Specification<AlarmPO>> pageSpecs = []
+
+    def setup() {
+        TenantContext.setTenantId("default")
+    }
+
+    def cleanup() {
+        TenantContext.clear()
+    }
+
+    static long usedHeap() {
+        System.gc()
+        Runtime runtime = Runtime.getRuntime()
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+
+    /**
+     * Serve alarms from total down to 1 in pages, the nth call returning the nth page
+     */
+    void serveAlarms(long total, Closure<Long> deviceIdOf) {
+        alarmRepository.findBy(_ as Specification, _) >> { Specification<AlarmPO> spec, fn ->
+            pageSpecs << spec
+            long from = total - (long) (pageSpecs.size() - 1) * PAGE_SIZE
+            int size = (int) Math.max(0, Math.min(PAGE_SIZE, from))
+            return (0..<size).collect {
+                long id = from - it
+                new AlarmPO(id: id, tenantId: "default", deviceId: deviceIdOf(id), alarmTime: id * 1000,
+                        alarmStatus: true, alarmContent: "alarm, \"" + id + "\"")
+            }
+        }
+        deviceFacade.getDeviceNameByIds(_) >> { args ->
+            (args[0] as List<Long>).collect { DeviceNameDTO.builder().id(it).name("device " + it).build() }
+        }
+    }
+
+    def "alarms should be exported as csv with device names"() {
+        given:
+        serveAlarms(3, { it % 2 })
+        def response = new MockHttpServletResponse()
+
+        when:
+        alarmService.export(new AlarmExportRequest(), response)
+
+        then:
+        response.getHeader("Content-Type") == "text/csv; charset=UTF-8"
+        response.contentAsString == '''id,alarm_status,alarm_time,alarm_content,latitude,longitude,address,device_id,device_name
+3,true,3000,"alarm, ""3""",,,,1,device 1
+2,true,2000,"alarm, ""2""",,,,0,device 0
+1,true,1000,"alarm, ""1""",,,,1,device 1
+'''
+    }
+
+    def "pages after the first should start after the last alarm exported"() {
+        given:
+        serveAlarms(1500, { 1L })
+        // recording criteria, as the generic signatures of CriteriaBuilder cannot be mocked
+        def calls = []
+        def paths = [:].withDefault { String name -> [toString: { name }] as Path }
+        Root root = [get: { String name -> paths[name] }] as Root
+        CriteriaBuilder cb = [
+                equal   : { x, y -> calls << ["equal", x.toString(), y]; [:] as Predicate },
+                lessThan: { x, y -> calls << ["lessThan", x.toString(), y]; [:] as Predicate },
+                and     : { Object... args -> [:] as Predicate },
+                or      : { Object... args -> [:] as Predicate },
+        ] as CriteriaBuilder
+
+        when:
+        alarmService.export(new AlarmExportRequest(), new MockHttpServletResponse())
+
+        then:
+        pageSpecs.size() == 3
+
+        when:
+        pageSpecs[1].toPredicate(root, [:] as CriteriaQuery, cb)
+
+        then:
+        calls == [
+                ["equal", AlarmPO.Fields.tenantId, "default"],
+                ["lessThan", AlarmPO.Fields.alarmTime, 501_000L],
+                ["equal", AlarmPO.Fields.alarmTime, 501_000L],
+                ["lessThan", AlarmPO.Fields.id, 501L],
+        ]
+    }
+
+    def "device names should be resolved per page only for devices not cached"() {
+        given:
+        def resolved = []
+        alarmRepository.findBy(_ as Specification, _) >> { Specification<AlarmPO> spec, fn ->
+            pageSpecs << spec
+            return pageSpecs.size() > 3 ? [] : (0..<PAGE_SIZE).collect {
+                long id = 10_000 - pageSpecs.size() * PAGE_SIZE - it
+                new AlarmPO(id: id, deviceId: id % 20, alarmTime: id, alarmStatus: false)
+            }
+        }
+        deviceFacade.getDeviceNameByIds(_) >> { args ->
+            List<Long> deviceIds = args[0]
+            resolved.addAll(deviceIds)
+            deviceIds.findAll { it != 7L }.collect { DeviceNameDTO.builder().id(it).name("device " + it).build() }
+        }
+        def response = new MockHttpServletResponse()
+
+        when:
+        alarmService.export(new AlarmExportRequest(), response)
+
+        then:
+        resolved.sort() == (0L..<20L).toList()
+        def lines = response.contentAsString.readLines()
+        lines.size() == 3 * PAGE_SIZE + 1
+        lines.findAll { it.endsWith(",7,") }.size() == 3 * PAGE_SIZE / 20
+        lines.findAll { it.endsWith(",8,device 8") }.size() == 3 * PAGE_SIZE / 20
+        3 * PAGE_SIZE * entityManager.detach(_)
+    }
+
+    def "gzip exports should be named accordingly"() {
+        given:
+        serveAlarms(10, { 1L })
+        def response = new MockHttpServletResponse()
+
+        when:
+        alarmService.export(new AlarmExportRequest(gzip: true), response)
+
+        then:
+        response.getHeader("Content-Type") == "application/gzip"
+        response.getHeader("Content-Disposition").endsWith('.csv.gz"')
+        new java.util.zip.GZIPInputStream(new ByteArrayInputStream(response.contentAsByteArray)).getText("UTF-8").readLines().size() == 11
+    }
+
+    def "exporting a million alarms should keep the heap usage flat"() {
+        given:
+        // Spock mocks keep their invocations, detaching a million alarms must not be recorded
+        alarmService = new AlarmService(alarmRepository, deviceFacade, [detach: { }] as EntityManager)
+        serveAlarms(1_000_000, { it % 5000 })
+        long written = 0
+        long maxUsed = 0
+        def response = new MockHttpServletResponse() {
+            @Override
+            ServletOutputStream getOutputStream() {
+                return new ServletOutputStream() {
+                    @Override
+                    boolean isReady() {
+                        return true
+                    }
+
+                    @Override
+                    void setWriteListener(WriteListener writeListener) {
+                    }
+
+                    @Override
+                    void write(int b) {
+                        written++
+                    }
+
+                    @Override
+                    void write(byte[] b, int off, int len) {
+                        written += len
+                        if (written % 8_000_000 < len) {
+                            maxUsed = Math.max(maxUsed, usedHeap())
+                        }
+                    }
+                }
+            }
+        }
+        long baseline = usedHeap()
+
+        when:
+        alarmService.export(new AlarmExportRequest(), response)
+
+        then:
+        pageSpecs.size() == 1_000_000 / PAGE_SIZE + 1
+        written > 1_000_000 * 40
+        maxUsed > 0
+        maxUsed - baseline < 32 * 1024 * 1024
+    }
+}
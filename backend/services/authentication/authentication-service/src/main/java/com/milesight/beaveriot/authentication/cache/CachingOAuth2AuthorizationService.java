@@ -0,0 +1,155 @@
+package com.milesight.beaveriot.authentication.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.milesight.beaveriot.authentication.config.OAuth2Properties;
+import com.milesight.beaveriot.authentication.provider.CustomOAuth2AuthorizationService;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
+import com.milesight.beaveriot.pubsub.api.annotation.MessageListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the authorizations found by access token in front of another authorization service, since every
+ * authenticated request looks its access token up.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the access token and expire with the token. Saving or removing an
+ * authorization evicts its entries on all nodes through {@link MessagePubSub}. A lookup racing with an eviction is
+ * returned but not cached.
+ */
+@Slf4j
+public class CachingOAuth2AuthorizationService implements CustomOAuth2AuthorizationService {
+
+    public static final String CACHE_NAME = "oauth2.access_token";
+
+    private final CustomOAuth2AuthorizationService delegate;
+
+    private final MessagePubSub messagePubSub;
+
+    private final Cache<String, OAuth2Authorization> authorizations;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public CachingOAuth2AuthorizationService(CustomOAuth2AuthorizationService delegate, MessagePubSub messagePubSub,
+                                             OAuth2Properties.TokenCache properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.messagePubSub = messagePubSub;
+        long timeToLiveNanos = properties.getTimeToLive().toNanos();
+        this.authorizations = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new Expiry<String, OAuth2Authorization>() {
+                    @Override
+                    public long expireAfterCreate(String key, OAuth2Authorization value, long currentTime) {
+                        Instant expiresAt = Objects.requireNonNull(value.getAccessToken()).getToken().getExpiresAt();
+                        if (expiresAt == null) {
+                            return timeToLiveNanos;
+                        }
+                        long untilExpiry = TimeUnit.MILLISECONDS.toNanos(expiresAt.toEpochMilli() - System.currentTimeMillis());
+                        return Math.max(0, Math.min(timeToLiveNanos, untilExpiry));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, OAuth2Authorization value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, OAuth2Authorization value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, authorizations, CACHE_NAME);
+    }
+
+    @Nullable
+    @Override
+    public OAuth2Authorization findByToken(String token, @Nullable OAuth2TokenType tokenType) {
+        if (!OAuth2TokenType.ACCESS_TOKEN.equals(tokenType)) {
+            return delegate.findByToken(token, tokenType);
+        }
+
+        Assert.hasText(token, "token cannot be empty");
+        String key = hash(token);
+        OAuth2Authorization authorization = authorizations.getIfPresent(key);
+        if (authorization != null) {
+            return authorization;
+        }
+
+        long loadedGeneration = generation.get();
+        authorization = delegate.findByToken(token, tokenType);
+        if (authorization != null && authorization.getAccessToken() != null && generation.get() == loadedGeneration) {
+            authorizations.put(key, authorization);
+        }
+        return authorization;
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        delegate.save(authorization);
+        invalidate(OAuth2AuthorizationInvalidationEvent.ofAuthorization(authorization.getId()));
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        delegate.remove(authorization);
+        invalidate(OAuth2AuthorizationInvalidationEvent.ofAuthorization(authorization.getId()));
+    }
+
+    /**
+     * Runs on every login. The delegates only remove the authorizations of the principal whose access token expired,
+     * which are never served from the cache since entries expire with their access token, so nothing is evicted.
+     */
+    @Override
+    public void removeByPrincipalName(String principalName) {
+        delegate.removeByPrincipalName(principalName);
+    }
+
+    @Nullable
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return delegate.findById(id);
+    }
+
+    private void invalidate(OAuth2AuthorizationInvalidationEvent event) {
+        onInvalidation(event);
+        messagePubSub.publishAfterCommit(event);
+    }
+
+    @MessageListener
+    public void onInvalidation(OAuth2AuthorizationInvalidationEvent event) {
+        if (event.getAuthorizationId() == null) {
+            return;
+        }
+
+        generation.incrementAndGet();
+        authorizations.asMap().values().removeIf(authorization -> event.getAuthorizationId().equals(authorization.getId()));
+        log.debug("Invalidated cached access tokens: {}", event);
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.milesight.beaveriot.authentication.cache;
+
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * An authorization was saved or removed. Cached access tokens of it must not be used anymore.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class OAuth2AuthorizationInvalidationEvent extends RemoteBroadcastMessage {
+
+    private String authorizationId;
+
+    public static OAuth2AuthorizationInvalidationEvent ofAuthorization(String authorizationId) {
+        OAuth2AuthorizationInvalidationEvent event = new OAuth2AuthorizationInvalidationEvent();
+        event.setAuthorizationId(authorizationId);
+        return event;
+    }
+
+}
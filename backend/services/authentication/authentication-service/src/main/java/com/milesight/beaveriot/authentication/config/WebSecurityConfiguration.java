@@ -1,5 +1,6 @@
 package com.milesight.beaveriot.authentication.config;
 
+import com.milesight.beaveriot.authentication.cache.CachingOAuth2AuthorizationService;
 import com.milesight.beaveriot.authentication.converter.CustomAuthenticationManagerResolver;
 import com.milesight.beaveriot.authentication.exception.CustomAuthenticationHandler;
 import com.milesight.beaveriot.authentication.exception.CustomOAuth2AccessDeniedHandler;
@@ -8,12 +9,16 @@ import com.milesight.beaveriot.authentication.filter.SecurityUserContextCleanupF
 import com.milesight.beaveriot.authentication.handler.CustomOAuth2AccessTokenResponseHandler;
 import com.milesight.beaveriot.authentication.provider.*;
 import com.milesight.beaveriot.authentication.util.OAuth2EndpointUtils;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
 import com.milesight.beaveriot.user.facade.IUserFacade;
 import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -74,6 +79,10 @@ public class WebSecurityConfiguration {
     OAuth2Properties oAuth2Properties;
     @Autowired
     IUserFacade userFacade;
+    @Autowired
+    MessagePubSub messagePubSub;
+    @Autowired
+    ObjectProvider<MeterRegistry> meterRegistryProvider;
 
     /**
      * Whitelist (ignore-urls) istekleri için permitAll.
@@ -174,7 +183,12 @@ public class WebSecurityConfiguration {
     @Bean
     public CustomOAuth2AuthorizationService authorizationService() {
 //        return new InMemoryOAuth2AuthorizationService();
-        return new CustomJdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository());
+        CustomOAuth2AuthorizationService authorizationService = new CustomJdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository());
+        if (!oAuth2Properties.getTokenCache().isEnabled()) {
+            return authorizationService;
+        }
+        return new CachingOAuth2AuthorizationService(authorizationService, messagePubSub, oAuth2Properties.getTokenCache(),
+                meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new));
     }
 
     @Bean
@@ -14,12 +14,14 @@ import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
 import org.springframework.util.Assert;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Rewrite InCacheOAuth2Authorization Service
@@ -38,20 +40,26 @@ public class CustomInMemoryOAuth2AuthorizationService implements CustomOAuth2Aut
      * but the access token request is not yet initiated.
      */
     private Map<String, OAuth2Authorization> initializedAuthorizations = Collections
-            .synchronizedMap(new CustomInMemoryOAuth2AuthorizationService.MaxSizeHashMap<>(this.maxInitializedAuthorizations));
+            .synchronizedMap(new CustomInMemoryOAuth2AuthorizationService.MaxSizeHashMap<>(this.maxInitializedAuthorizations, this::onInitializedEvicted));
 
     /*
      * Stores "completed" authorizations, where an access token has been granted.
      */
     private final Map<String, OAuth2Authorization> authorizations = new ConcurrentHashMap<>();
 
+    /*
+     * Ids of the stored authorizations by the values of their tokens, so a token is found without scanning all
+     * authorizations. Every candidate is checked against the stored authorization before it is returned.
+     */
+    private final Map<String, String> authorizationIdsByToken = new ConcurrentHashMap<>();
+
     /*
      * Constructor used for testing only.
      */
     CustomInMemoryOAuth2AuthorizationService(int maxInitializedAuthorizations) {
         this.maxInitializedAuthorizations = maxInitializedAuthorizations;
         this.initializedAuthorizations = Collections
-                .synchronizedMap(new CustomInMemoryOAuth2AuthorizationService.MaxSizeHashMap<>(this.maxInitializedAuthorizations));
+                .synchronizedMap(new CustomInMemoryOAuth2AuthorizationService.MaxSizeHashMap<>(this.maxInitializedAuthorizations, this::onInitializedEvicted));
     }
 
     /**
@@ -84,26 +92,36 @@ public class CustomInMemoryOAuth2AuthorizationService implements CustomOAuth2Aut
             Assert.isTrue(!this.authorizations.containsKey(authorization.getId()),
                     "The authorization must be unique. Found duplicate identifier: " + authorization.getId());
             this.authorizations.put(authorization.getId(), authorization);
+            index(authorization);
         });
     }
 
     @Override
-    public void save(OAuth2Authorization authorization) {
+    public synchronized void save(OAuth2Authorization authorization) {
         Assert.notNull(authorization, "authorization cannot be null");
+        OAuth2Authorization replaced;
         if (isComplete(authorization)) {
-            this.authorizations.put(authorization.getId(), authorization);
+            replaced = this.authorizations.put(authorization.getId(), authorization);
         } else {
-            this.initializedAuthorizations.put(authorization.getId(), authorization);
+            replaced = this.initializedAuthorizations.put(authorization.getId(), authorization);
+        }
+        index(authorization);
+        if (replaced != null) {
+            unindex(replaced, storedVersions(authorization.getId()));
         }
     }
 
     @Override
-    public void remove(OAuth2Authorization authorization) {
+    public synchronized void remove(OAuth2Authorization authorization) {
         Assert.notNull(authorization, "authorization cannot be null");
+        boolean removed;
         if (isComplete(authorization)) {
-            this.authorizations.remove(authorization.getId(), authorization);
+            removed = this.authorizations.remove(authorization.getId(), authorization);
         } else {
-            this.initializedAuthorizations.remove(authorization.getId(), authorization);
+            removed = this.initializedAuthorizations.remove(authorization.getId(), authorization);
+        }
+        if (removed) {
+            unindex(authorization, storedVersions(authorization.getId()));
         }
     }
 
@@ -119,19 +137,78 @@ public class CustomInMemoryOAuth2AuthorizationService implements CustomOAuth2Aut
     @Override
     public OAuth2Authorization findByToken(String token, @Nullable OAuth2TokenType tokenType) {
         Assert.hasText(token, "token cannot be empty");
-        for (OAuth2Authorization authorization : this.authorizations.values()) {
-            if (hasToken(authorization, token, tokenType)) {
-                return authorization;
-            }
+        String id = this.authorizationIdsByToken.get(token);
+        if (id == null) {
+            return null;
         }
-        for (OAuth2Authorization authorization : this.initializedAuthorizations.values()) {
-            if (hasToken(authorization, token, tokenType)) {
-                return authorization;
-            }
+        OAuth2Authorization authorization = this.authorizations.get(id);
+        if (authorization != null && hasToken(authorization, token, tokenType)) {
+            return authorization;
+        }
+        authorization = this.initializedAuthorizations.get(id);
+        if (authorization != null && hasToken(authorization, token, tokenType)) {
+            return authorization;
         }
         return null;
     }
 
+    private void index(OAuth2Authorization authorization) {
+        tokenValues(authorization).forEach(token -> this.authorizationIdsByToken.put(token, authorization.getId()));
+    }
+
+    /**
+     * Remove the tokens of an authorization which none of the remaining versions of it has
+     */
+    private void unindex(OAuth2Authorization authorization, List<OAuth2Authorization> remainingVersions) {
+        tokenValues(authorization).forEach(token -> {
+            if (remainingVersions.stream().noneMatch(remaining -> hasToken(remaining, token, null))) {
+                this.authorizationIdsByToken.remove(token, authorization.getId());
+            }
+        });
+    }
+
+    private List<OAuth2Authorization> storedVersions(String id) {
+        List<OAuth2Authorization> versions = new ArrayList<>(2);
+        OAuth2Authorization authorization = this.authorizations.get(id);
+        if (authorization != null) {
+            versions.add(authorization);
+        }
+        authorization = this.initializedAuthorizations.get(id);
+        if (authorization != null) {
+            versions.add(authorization);
+        }
+        return versions;
+    }
+
+    /*
+     * Called by the initialized authorizations before the eldest one is dropped, so only the completed version counts.
+     */
+    private void onInitializedEvicted(OAuth2Authorization authorization) {
+        OAuth2Authorization completed = this.authorizations.get(authorization.getId());
+        unindex(authorization, completed == null ? List.of() : List.of(completed));
+    }
+
+    private static List<String> tokenValues(OAuth2Authorization authorization) {
+        List<String> values = new ArrayList<>();
+        Object state = authorization.getAttribute(OAuth2ParameterNames.STATE);
+        if (state instanceof String stateValue) {
+            values.add(stateValue);
+        }
+        addTokenValue(values, authorization.getToken(OAuth2AuthorizationCode.class));
+        addTokenValue(values, authorization.getToken(OAuth2AccessToken.class));
+        addTokenValue(values, authorization.getToken(OidcIdToken.class));
+        addTokenValue(values, authorization.getToken(OAuth2RefreshToken.class));
+        addTokenValue(values, authorization.getToken(OAuth2DeviceCode.class));
+        addTokenValue(values, authorization.getToken(OAuth2UserCode.class));
+        return values;
+    }
+
+    private static void addTokenValue(List<String> values, @Nullable OAuth2Authorization.Token<?> token) {
+        if (token != null && token.getToken().getTokenValue() != null) {
+            values.add(token.getToken().getTokenValue());
+        }
+    }
+
     private static boolean isComplete(OAuth2Authorization authorization) {
         return authorization.getAccessToken() != null;
     }
@@ -212,19 +289,26 @@ public class CustomInMemoryOAuth2AuthorizationService implements CustomOAuth2Aut
 
         private final int maxSize;
 
-        private MaxSizeHashMap(int maxSize) {
+        private final Consumer<V> evictionListener;
+
+        private MaxSizeHashMap(int maxSize, Consumer<V> evictionListener) {
             this.maxSize = maxSize;
+            this.evictionListener = evictionListener;
         }
 
         @Override
         protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-            return size() > this.maxSize;
+            if (size() > this.maxSize) {
+                this.evictionListener.accept(eldest.getValue());
+                return true;
+            }
+            return false;
         }
 
     }
 
     @Override
-    public void removeByPrincipalName(String principalName) {
+    public synchronized void removeByPrincipalName(String principalName) {
         //FIXME Temporarily allow the same user to generate multiple valid tokens
         Assert.notNull(principalName, "principalName cannot be null");
 //        Map<String, OAuth2Authorization> removedAuthorizations = new ConcurrentHashMap<>();
@@ -245,7 +329,11 @@ public class CustomInMemoryOAuth2AuthorizationService implements CustomOAuth2Aut
                 removedAuthorizations.put(authorization.getId(), authorization);
             }
         }
-        removedAuthorizations.forEach(this.authorizations::remove);
+        removedAuthorizations.forEach((id, authorization) -> {
+            if (this.authorizations.remove(id, authorization)) {
+                unindex(authorization, storedVersions(id));
+            }
+        });
     }
 
 }
@@ -0,0 +1,204 @@
+package com.milesight.beaveriot.authentication.cache
+
+import com.milesight.beaveriot.authentication.config.OAuth2Properties
+import com.milesight.beaveriot.authentication.provider.CustomInMemoryOAuth2AuthorizationService
+import com.milesight.beaveriot.authentication.provider.CustomOAuth2AuthorizationService
+import com.milesight.beaveriot.pubsub.MessagePubSub
+import com.milesight.beaveriot.pubsub.api.message.PubSubMessage
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.security.oauth2.core.AuthorizationGrantType
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod
+import org.springframework.security.oauth2.core.OAuth2AccessToken
+import org.springframework.security.oauth2.core.OAuth2RefreshToken
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient
+import spock.lang.Specification
+
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class CachingOAuth2AuthorizationServiceTest extends Specification {
+
+    static final RegisteredClient CLIENT = RegisteredClient.withId("default")
+            .clientId("iab")
+            .clientSecret("{noop}secret")
+            .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_POST)
+            .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+            .build()
+
+    CountingAuthorizationService store = new CountingAuthorizationService()
+
+    LoopbackMessagePubSub messagePubSub = new LoopbackMessagePubSub()
+
+    Map<String, SimpleMeterRegistry> registries = [:]
+
+    CachingOAuth2AuthorizationService node(String name, Duration timeToLive = Duration.ofMinutes(10)) {
+        def properties = new OAuth2Properties.TokenCache(timeToLive: timeToLive)
+        def registry = new SimpleMeterRegistry()
+        registries[name] = registry
+        def node = new CachingOAuth2AuthorizationService(store, messagePubSub, properties, registry)
+        messagePubSub.nodes << node
+        return node
+    }
+
+    static OAuth2Authorization authorization(String id, String principal, String accessToken,
+                                             Instant expiresAt = Instant.now().plus(Duration.ofHours(1))) {
+        return OAuth2Authorization.withRegisteredClient(CLIENT)
+                .id(id)
+                .principalName(principal)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, accessToken, Instant.now().minusSeconds(60), expiresAt))
+                .refreshToken(new OAuth2RefreshToken("refresh-" + accessToken, Instant.now()))
+                .build()
+    }
+
+    double gets(String node, String result) {
+        return registries[node].get("cache.gets").tag("result", result).functionCounter().count()
+    }
+
+    def "repeated lookups of an access token should hit the cache"() {
+        given:
+        def node = node("a")
+        store.save(authorization("1", "alice", "token-1"))
+
+        when:
+        def found = (1..10).collect { node.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN) }
+
+        then:
+        found.every { it.id == "1" }
+        store.accessTokenLookups.get() == 1
+        gets("a", "miss") == 1
+        gets("a", "hit") == 9
+    }
+
+    def "unknown tokens and other token types should not be cached"() {
+        given:
+        def node = node("a")
+        store.save(authorization("1", "alice", "token-1"))
+
+        when:
+        def unknown = (1..3).collect { node.findByToken("unknown", OAuth2TokenType.ACCESS_TOKEN) }
+        def refreshed = (1..3).collect { node.findByToken("refresh-token-1", OAuth2TokenType.REFRESH_TOKEN) }
+
+        then:
+        unknown.every { it == null }
+        refreshed.every { it.id == "1" }
+        store.accessTokenLookups.get() == 3
+        gets("a", "hit") == 0
+    }
+
+    def "saving an authorization should evict its access tokens on every node"() {
+        given:
+        def a = node("a")
+        def b = node("b")
+        store.save(authorization("1", "alice", "token-1"))
+        a.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN)
+        b.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN)
+
+        when: "node b rotates the tokens of the authorization"
+        b.save(authorization("1", "alice", "token-2"))
+
+        then:
+        a.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN) == null
+        b.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN) == null
+        a.findByToken("token-2", OAuth2TokenType.ACCESS_TOKEN).id == "1"
+    }
+
+    def "removing the expired authorizations of a principal on login should keep its cached tokens"() {
+        given:
+        def a = node("a")
+        def b = node("b")
+        store.save(authorization("1", "alice", "token-1"))
+        store.save(authorization("2", "alice", "token-2", Instant.now().minusSeconds(1)))
+        a.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN)
+
+        when:
+        b.removeByPrincipalName("alice")
+
+        then:
+        store.findById("2") == null
+        a.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN).id == "1"
+        gets("a", "hit") == 1
+        messagePubSub.published == 0
+    }
+
+    def "entries should not outlive their access token"() {
+        given:
+        def node = node("a")
+        store.save(authorization("1", "alice", "token-1", Instant.now().minusSeconds(1)))
+
+        when:
+        (1..3).each { node.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN) }
+
+        then:
+        store.accessTokenLookups.get() == 3
+        gets("a", "hit") == 0
+    }
+
+    def "concurrent lookups should only reach the store once per token"() {
+        given:
+        def node = node("a")
+        int tokens = 200
+        int threads = 8
+        int rounds = 500
+        (0..<tokens).each { store.save(authorization("$it", "user-$it", "token-$it")) }
+        def executor = Executors.newFixedThreadPool(threads)
+
+        when: "each thread looks up its own share of the tokens"
+        (0..<threads).each { thread ->
+            executor.submit {
+                rounds.times {
+                    (thread..<tokens).step(threads).each { node.findByToken("token-$it", OAuth2TokenType.ACCESS_TOKEN) }
+                }
+            }
+        }
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+
+        then:
+        store.accessTokenLookups.get() == tokens
+        gets("a", "miss") == tokens
+        gets("a", "hit") == tokens * rounds - tokens
+    }
+
+    static class CountingAuthorizationService implements CustomOAuth2AuthorizationService {
+
+        @Delegate
+        CustomInMemoryOAuth2AuthorizationService delegate = new CustomInMemoryOAuth2AuthorizationService()
+
+        AtomicInteger accessTokenLookups = new AtomicInteger()
+
+        @Override
+        OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+            if (tokenType == OAuth2TokenType.ACCESS_TOKEN) {
+                accessTokenLookups.incrementAndGet()
+            }
+            return delegate.findByToken(token, tokenType)
+        }
+    }
+
+    static class LoopbackMessagePubSub extends MessagePubSub {
+
+        List<CachingOAuth2AuthorizationService> nodes = []
+
+        int published
+
+        LoopbackMessagePubSub() {
+            super(null, null)
+        }
+
+        @Override
+        void publishAfterCommit(PubSubMessage message) {
+            published++
+            nodes.each { it.onInvalidation(message as OAuth2AuthorizationInvalidationEvent) }
+        }
+
+        @Override
+        protected void remoteBroadcast(byte[] serializedMessage) {
+        }
+    }
+}
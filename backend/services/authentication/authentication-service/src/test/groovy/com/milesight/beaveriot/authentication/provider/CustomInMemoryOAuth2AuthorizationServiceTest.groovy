@@ -0,0 +1,106 @@
+package com.milesight.beaveriot.authentication.provider
+
+import org.springframework.security.oauth2.core.AuthorizationGrantType
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod
+import org.springframework.security.oauth2.core.OAuth2AccessToken
+import org.springframework.security.oauth2.core.OAuth2RefreshToken
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient
+import spock.lang.Specification
+
+import java.time.Duration
+import java.time.Instant
+
+class CustomInMemoryOAuth2AuthorizationServiceTest extends Specification {
+
+    static final RegisteredClient CLIENT = RegisteredClient.withId("default")
+            .clientId("iab")
+            .clientSecret("{noop}secret")
+            .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_POST)
+            .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+            .build()
+
+    static OAuth2Authorization completed(String id, String principal, String accessToken,
+                                         Instant expiresAt = Instant.now().plus(Duration.ofHours(1))) {
+        return OAuth2Authorization.withRegisteredClient(CLIENT)
+                .id(id)
+                .principalName(principal)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, accessToken, Instant.now().minusSeconds(60), expiresAt))
+                .refreshToken(new OAuth2RefreshToken("refresh-" + accessToken, Instant.now()))
+                .build()
+    }
+
+    static OAuth2Authorization initialized(String id, String state) {
+        return OAuth2Authorization.withRegisteredClient(CLIENT)
+                .id(id)
+                .principalName("alice")
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .attribute(OAuth2ParameterNames.STATE, state)
+                .build()
+    }
+
+    def "tokens should be found by value and type"() {
+        given:
+        def service = new CustomInMemoryOAuth2AuthorizationService(completed("1", "alice", "token-1"))
+        service.save(completed("2", "bob", "token-2"))
+
+        expect:
+        service.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN).id == "1"
+        service.findByToken("token-2", null).id == "2"
+        service.findByToken("refresh-token-2", OAuth2TokenType.REFRESH_TOKEN).id == "2"
+        service.findByToken("token-2", OAuth2TokenType.REFRESH_TOKEN) == null
+        service.findByToken("unknown", OAuth2TokenType.ACCESS_TOKEN) == null
+    }
+
+    def "replaced and removed tokens should not be found"() {
+        given:
+        def service = new CustomInMemoryOAuth2AuthorizationService()
+        service.save(completed("1", "alice", "token-1"))
+
+        when:
+        def rotated = completed("1", "alice", "token-2")
+        service.save(rotated)
+
+        then:
+        service.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN) == null
+        service.findByToken("refresh-token-1", OAuth2TokenType.REFRESH_TOKEN) == null
+        service.findByToken("token-2", OAuth2TokenType.ACCESS_TOKEN).is(rotated)
+
+        when:
+        service.remove(rotated)
+
+        then:
+        service.findByToken("token-2", OAuth2TokenType.ACCESS_TOKEN) == null
+        service.authorizationIdsByToken.isEmpty()
+    }
+
+    def "expired authorizations removed by principal should not be found"() {
+        given:
+        def service = new CustomInMemoryOAuth2AuthorizationService()
+        service.save(completed("1", "alice", "expired", Instant.now().minusSeconds(1)))
+        service.save(completed("2", "alice", "valid"))
+
+        when:
+        service.removeByPrincipalName("alice")
+
+        then:
+        service.findByToken("expired", OAuth2TokenType.ACCESS_TOKEN) == null
+        service.findByToken("valid", OAuth2TokenType.ACCESS_TOKEN).id == "2"
+    }
+
+    def "evicted initialized authorizations should leave the index"() {
+        given:
+        def service = new CustomInMemoryOAuth2AuthorizationService(2)
+
+        when:
+        (1..3).each { service.save(initialized("$it", "state-$it")) }
+
+        then:
+        service.findByToken("state-1", new OAuth2TokenType(OAuth2ParameterNames.STATE)) == null
+        service.findByToken("state-3", new OAuth2TokenType(OAuth2ParameterNames.STATE)).id == "3"
+        service.authorizationIdsByToken.keySet() == ["state-2", "state-3"] as Set
+    }
+}
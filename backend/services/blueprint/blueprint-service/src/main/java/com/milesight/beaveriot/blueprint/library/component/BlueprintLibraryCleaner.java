@@ -72,6 +72,7 @@ public class BlueprintLibraryCleaner {
             blueprintLibrarySubscriptionService.deleteByLibraryIdAndLibraryVersionIgnoreTenant(libraryId, libraryVersion);
             blueprintLibraryResourceService.deleteAllByLibraryIdAndLibraryVersion(libraryId, libraryVersion);
             blueprintLibraryVersionService.deleteByLibraryIdAndLibraryVersion(libraryId, libraryVersion);
+            blueprintLibraryResourceService.deleteUnreferencedBlobs();
 
             BlueprintLibrary blueprintLibrary = blueprintLibraryService.findById(libraryId);
             long existVersionCount = blueprintLibraryVersionService.countByLibraryId(libraryId);
@@ -12,7 +12,6 @@ import com.milesight.beaveriot.blueprint.library.model.BlueprintLibraryManifest;
 import com.milesight.beaveriot.blueprint.library.model.BlueprintLibraryResource;
 import com.milesight.beaveriot.blueprint.library.service.BlueprintLibraryResourceService;
 import com.milesight.beaveriot.blueprint.library.service.BlueprintLibraryService;
-import com.milesight.beaveriot.blueprint.library.support.YamlConverter;
 import com.milesight.beaveriot.blueprint.model.BlueprintDeviceCodec;
 import com.milesight.beaveriot.context.integration.model.BlueprintDeviceModel;
 import com.milesight.beaveriot.context.integration.model.BlueprintDeviceVendor;
@@ -140,8 +139,7 @@ public class BlueprintLibraryResourceResolver implements IBlueprintLibraryResour
             return Collections.emptyList();
         }
 
-        String vendorsContent = getResourceContent(blueprintLibrary, manifest.getDeviceVendorIndex());
-        BlueprintDeviceVendors vendors = YamlConverter.from(vendorsContent, BlueprintDeviceVendors.class);
+        BlueprintDeviceVendors vendors = getParsedResource(blueprintLibrary, manifest.getDeviceVendorIndex(), BlueprintDeviceVendors.class);
         if (vendors == null) {
             return Collections.emptyList();
         }
@@ -165,8 +163,7 @@ public class BlueprintLibraryResourceResolver implements IBlueprintLibraryResour
         }
 
         String resourcePath = buildResourcePath(vendorDef.getWorkDir(), vendorDef.getModelIndex());
-        String devicesContent = getResourceContent(blueprintLibrary, resourcePath);
-        BlueprintDeviceModels deviceModels = YamlConverter.from(devicesContent, BlueprintDeviceModels.class);
+        BlueprintDeviceModels deviceModels = getParsedResource(blueprintLibrary, resourcePath, BlueprintDeviceModels.class);
         if (deviceModels == null) {
             return Collections.emptyList();
         }
@@ -187,8 +184,8 @@ public class BlueprintLibraryResourceResolver implements IBlueprintLibraryResour
     }
 
     public BlueprintDeviceCodecs getBlueprintDeviceCodecs(BlueprintLibrary blueprintLibrary, String vendorId, String codecRelativePath) {
-        String codecsContent = getResourceContent(blueprintLibrary, vendorId, codecRelativePath);
-        return YamlConverter.from(codecsContent, BlueprintDeviceCodecs.class);
+        String workDir = getWorkDirByVendor(blueprintLibrary, vendorId);
+        return getParsedResource(blueprintLibrary, buildResourcePath(workDir, codecRelativePath), BlueprintDeviceCodecs.class);
     }
 
     public BlueprintDeviceCodec getBlueprintDeviceCodec(String vendorId, String codecRelativePath, String codecId) {
@@ -259,11 +256,14 @@ public class BlueprintLibraryResourceResolver implements IBlueprintLibraryResour
     }
 
     private BlueprintLibraryManifest getManifest(BlueprintLibrary blueprintLibrary) {
-        String content = getResourceContent(blueprintLibrary, Constants.PATH_MANIFEST);
-        if (content == null) {
-            return null;
-        }
-        return YamlConverter.from(content, BlueprintLibraryManifest.class);
+        return getParsedResource(blueprintLibrary, Constants.PATH_MANIFEST, BlueprintLibraryManifest.class);
+    }
+
+    /**
+     * Parsed resources are cached by content hash and shared, they must not be modified
+     */
+    private <T> T getParsedResource(BlueprintLibrary blueprintLibrary, String resourcePath, Class<T> type) {
+        return blueprintLibraryResourceService.getParsedResource(getResource(blueprintLibrary, resourcePath), type);
     }
 
     public String getResourceContent(String resourcePath) {
@@ -272,18 +272,22 @@ public class BlueprintLibraryResourceResolver implements IBlueprintLibraryResour
 
     @Override
     public String getResourceContent(BlueprintLibrary blueprintLibrary, String resourcePath) {
+        BlueprintLibraryResource blueprintLibraryResource = getResource(blueprintLibrary, resourcePath);
+        if (blueprintLibraryResource == null) {
+            return null;
+        }
+
+        return blueprintLibraryResource.getContent();
+    }
+
+    private BlueprintLibraryResource getResource(BlueprintLibrary blueprintLibrary, String resourcePath) {
         if (blueprintLibrary == null) {
             throw ServiceException.with(BlueprintLibraryErrorCode.BLUEPRINT_LIBRARY_NULL).build();
         }
 
         Assert.hasText(resourcePath, "'resourcePath' cannot be empty.");
 
-        BlueprintLibraryResource blueprintLibraryResource = blueprintLibraryResourceService.getResource(blueprintLibrary.getId(), blueprintLibrary.getCurrentVersion(), resourcePath);
-        if (blueprintLibraryResource == null) {
-            return null;
-        }
-
-        return blueprintLibraryResource.getContent();
+        return blueprintLibraryResourceService.getResource(blueprintLibrary.getId(), blueprintLibrary.getCurrentVersion(), resourcePath);
     }
 
     public static class Constants {
@@ -15,17 +15,19 @@ import com.milesight.beaveriot.context.model.BlueprintLibrary;
 import com.milesight.beaveriot.context.model.BlueprintLibrarySourceType;
 import com.milesight.beaveriot.context.model.BlueprintLibrarySyncStatus;
 import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.devicetemplate.facade.ICodecExecutorFacade;
 import com.milesight.beaveriot.user.facade.ITenantFacade;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.io.InputStream;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 /**
@@ -35,6 +37,7 @@ import java.util.function.Consumer;
 @Slf4j
 @Service
 public class BlueprintLibrarySyncer {
+    private static final int BLOB_BATCH_SIZE = 100;
     private final BlueprintLibraryAddressService blueprintLibraryAddressService;
     private final BlueprintLibraryService blueprintLibraryService;
     private final BlueprintLibraryVersionService blueprintLibraryVersionService;
@@ -43,6 +46,7 @@ public class BlueprintLibrarySyncer {
     private final BlueprintLibraryResourceResolver blueprintLibraryResourceResolver;
     private final ITenantFacade tenantFacade;
     private final ApplicationProperties applicationProperties;
+    private final ICodecExecutorFacade codecExecutorFacade;
     private final List<Consumer<BlueprintLibrary>> listeners;
     private static final ExecutorService listenerExecutor = Executors.newCachedThreadPool();
 
@@ -53,7 +57,8 @@ public class BlueprintLibrarySyncer {
                                   BlueprintLibraryResourceService blueprintLibraryResourceService,
                                   BlueprintLibraryResourceResolver blueprintLibraryResourceResolver,
                                   ITenantFacade tenantFacade,
-                                  ApplicationProperties applicationProperties) {
+                                  ApplicationProperties applicationProperties,
+                                  @Lazy ICodecExecutorFacade codecExecutorFacade) {
         this.blueprintLibraryAddressService = blueprintLibraryAddressService;
         this.blueprintLibraryService = blueprintLibraryService;
         this.blueprintLibraryVersionService = blueprintLibraryVersionService;
@@ -62,6 +67,7 @@ public class BlueprintLibrarySyncer {
         this.blueprintLibraryResourceResolver = blueprintLibraryResourceResolver;
         this.tenantFacade = tenantFacade;
         this.applicationProperties = applicationProperties;
+        this.codecExecutorFacade = codecExecutorFacade;
         this.listeners = new CopyOnWriteArrayList<>();
     }
 
@@ -165,10 +171,9 @@ public class BlueprintLibrarySyncer {
             throw ServiceException.with(BlueprintLibraryErrorCode.BLUEPRINT_LIBRARY_ZIP_URL_EMPTY).build();
         }
 
-        List<BlueprintLibraryResource> blueprintLibraryResources = new ArrayList<>();
         try {
             try (InputStream inputStream = blueprintLibraryAddress.getDataInputStream()) {
-                syncBlueprintLibraryResources(inputStream, blueprintLibrary, manifest, blueprintLibraryAddress, blueprintLibraryResources);
+                syncBlueprintLibraryResources(inputStream, blueprintLibrary, manifest, blueprintLibraryAddress);
             }
 
             notifyListeners(blueprintLibrary);
@@ -185,29 +190,44 @@ public class BlueprintLibrarySyncer {
 
     private void syncBlueprintLibraryResources(InputStream inputStream, BlueprintLibrary blueprintLibrary,
                                                BlueprintLibraryManifest manifest,
-                                               BlueprintLibraryAddress blueprintLibraryAddress,
-                                               List<BlueprintLibraryResource> blueprintLibraryResources) {
+                                               BlueprintLibraryAddress blueprintLibraryAddress) {
+        // Only the path to hash manifest is kept for the whole zip, contents are written in batches as they are read
+        Map<String, String> hashesByPath = new LinkedHashMap<>();
+        Map<String, String> pendingBlobs = new HashMap<>();
+        AtomicReference<RuntimeException> saveBlobsError = new AtomicReference<>();
         boolean isSuccess = ZipInputStreamScanner.scan(inputStream, (relativePath, content) -> {
-            BlueprintLibraryResource blueprintLibraryResource = BlueprintLibraryResource.builder()
-                    .path(relativePath)
-                    .content(content)
-                    .libraryId(blueprintLibrary.getId())
-                    .libraryVersion(manifest.getVersion())
-                    .build();
-            blueprintLibraryResources.add(blueprintLibraryResource);
+            String contentHash = BlueprintLibraryResourceService.hash(content);
+            hashesByPath.put(relativePath, contentHash);
+            pendingBlobs.putIfAbsent(contentHash, content);
+            if (pendingBlobs.size() >= BLOB_BATCH_SIZE) {
+                try {
+                    blueprintLibraryResourceService.saveBlobs(pendingBlobs);
+                } catch (RuntimeException e) {
+                    saveBlobsError.set(e);
+                    return false;
+                }
+                pendingBlobs.clear();
+            }
             return true;
         });
 
+        if (saveBlobsError.get() != null) {
+            throw saveBlobsError.get();
+        }
+
         if (!isSuccess) {
             throw ServiceException.with(BlueprintLibraryErrorCode.BLUEPRINT_LIBRARY_RESOURCES_FETCH_FAILED).build();
         }
 
-        if (blueprintLibraryResources.isEmpty()) {
+        if (hashesByPath.isEmpty()) {
             throw ServiceException.with(BlueprintLibraryErrorCode.BLUEPRINT_LIBRARY_RESOURCES_FETCH_FAILED).build();
         }
 
-        blueprintLibraryResourceService.deleteAllByLibraryIdAndLibraryVersion(blueprintLibrary.getId(), manifest.getVersion());
-        blueprintLibraryResourceService.batchSave(blueprintLibraryResources);
+        blueprintLibraryResourceService.saveBlobs(pendingBlobs);
+        if (blueprintLibraryResourceService.saveManifest(blueprintLibrary.getId(), manifest.getVersion(), hashesByPath)) {
+            // Codec chains of the same version may have been built from the replaced resources
+            codecExecutorFacade.evictDeviceCodecExecutors(blueprintLibrary.getId(), manifest.getVersion());
+        }
 
         BlueprintLibrary oldBlueprintLibrary = BlueprintLibrary.clone(blueprintLibrary);
         blueprintLibrary.setCurrentVersion(manifest.getVersion());
@@ -8,6 +8,7 @@ import com.milesight.beaveriot.context.model.BlueprintLibrarySourceType;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 
@@ -22,6 +23,7 @@ public class BlueprintLibraryConfig {
     private Duration syncFrequency;
     private BlueprintLibraryAddressProperties defaultAddress;
     private Duration cleanFrequency;
+    private ResourceCache resourceCache = new ResourceCache();
 
     public BlueprintLibraryAddress getDefaultBlueprintLibraryAddress() {
         BlueprintLibraryAddress defaultBlueprintLibraryAddress = BlueprintLibraryAddress.of(defaultAddress.getType(), defaultAddress.getUrl(), defaultAddress.getBranch(), BlueprintLibrarySourceType.DEFAULT.name());
@@ -30,4 +32,20 @@ public class BlueprintLibraryConfig {
         }
         return defaultBlueprintLibraryAddress;
     }
-}
\ No newline at end of file
+
+    @Data
+    public static class ResourceCache {
+        /**
+         * Number of library versions whose path to hash manifest is kept in memory
+         */
+        private int maxVersions = 8;
+        /**
+         * Approximate size of the resource contents kept in memory
+         */
+        private DataSize maxContentSize = DataSize.ofMegabytes(32);
+        /**
+         * Number of parsed resources (manifests, vendors, models, codecs) kept in memory
+         */
+        private int maxParsedResources = 2000;
+    }
+}
@@ -12,6 +12,7 @@ import lombok.Data;
 public class BlueprintLibraryResource {
     private String path;
     private String content;
+    private String contentHash;
     private Long libraryId;
     private String libraryVersion;
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.milesight.beaveriot.blueprint.library.model;
+
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlueprintLibraryResourceCacheInvalidationEvent extends RemoteBroadcastMessage {
+
+    private Long libraryId;
+
+    private String libraryVersion;
+
+}
@@ -0,0 +1,38 @@
+package com.milesight.beaveriot.blueprint.library.po;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.experimental.FieldNameConstants;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+/**
+ * Content of blueprint library resources, stored once per SHA-256 hash and shared by all paths and versions
+ * referring to it. updated_at is refreshed whenever a synced version refers to the blob again.
+ */
+@Data
+@Entity
+@FieldNameConstants
+@Table(name = "t_blueprint_library_blob")
+@EntityListeners(AuditingEntityListener.class)
+public class BlueprintLibraryBlobPO {
+
+    @Id
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "hash")
+    private String hash;
+
+    @Column(name = "content")
+    private String content;
+
+    @Column(name = "created_at")
+    @CreatedDate
+    private Long createdAt;
+
+    @Column(name = "updated_at")
+    @LastModifiedDate
+    private Long updatedAt;
+}
@@ -27,8 +27,8 @@ public class BlueprintLibraryResourcePO {
     @Column(name = "path")
     private String path;
 
-    @Column(name = "content")
-    private String content;
+    @Column(name = "content_hash")
+    private String contentHash;
 
     @Column(name = "library_id")
     private Long libraryId;
@@ -0,0 +1,34 @@
+package com.milesight.beaveriot.blueprint.library.repository;
+
+import com.milesight.beaveriot.blueprint.library.po.BlueprintLibraryBlobPO;
+import com.milesight.beaveriot.data.jpa.repository.BaseJpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface BlueprintLibraryBlobRepository extends BaseJpaRepository<BlueprintLibraryBlobPO, Long> {
+    BlueprintLibraryBlobPO findByHash(String hash);
+
+    @Query("SELECT b.hash FROM BlueprintLibraryBlobPO b WHERE b.hash IN :hashes")
+    List<String> findHashesByHashIn(@Param("hashes") Collection<String> hashes);
+
+    /**
+     * Insert a blob unless a blob of the same hash exists, which another sync may have inserted concurrently
+     */
+    @Modifying
+    @Query(value = "INSERT INTO t_blueprint_library_blob (id, hash, content, created_at, updated_at) " +
+            "VALUES (:id, :hash, :content, :createdAt, :createdAt) ON CONFLICT (hash) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("id") Long id, @Param("hash") String hash, @Param("content") String content, @Param("createdAt") Long createdAt);
+
+    @Modifying
+    @Query("UPDATE BlueprintLibraryBlobPO b SET b.updatedAt = :updatedAt WHERE b.hash IN :hashes")
+    int touchByHashIn(@Param("hashes") Collection<String> hashes, @Param("updatedAt") Long updatedAt);
+
+    @Modifying
+    @Query("DELETE FROM BlueprintLibraryBlobPO b WHERE b.updatedAt < :updatedBefore " +
+            "AND NOT EXISTS (SELECT 1 FROM BlueprintLibraryResourcePO r WHERE r.contentHash = b.hash)")
+    int deleteUnreferencedByUpdatedAtBefore(@Param("updatedBefore") Long updatedBefore);
+}
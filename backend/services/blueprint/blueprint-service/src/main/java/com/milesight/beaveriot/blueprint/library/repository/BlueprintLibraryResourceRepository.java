@@ -3,11 +3,13 @@ package com.milesight.beaveriot.blueprint.library.repository;
 import com.milesight.beaveriot.blueprint.library.po.BlueprintLibraryResourcePO;
 import com.milesight.beaveriot.data.jpa.repository.BaseJpaRepository;
 
+import java.util.List;
+
 /**
  * author: Luxb
  * create: 2025/9/1 9:40
  **/
 public interface BlueprintLibraryResourceRepository extends BaseJpaRepository<BlueprintLibraryResourcePO, Long> {
     void deleteAllByLibraryIdAndLibraryVersion(Long libraryId, String libraryVersion);
-    BlueprintLibraryResourcePO findByLibraryIdAndLibraryVersionAndPath(Long libraryId, String libraryVersion, String resourcePath);
+    List<BlueprintLibraryResourcePO> findAllByLibraryIdAndLibraryVersion(Long libraryId, String libraryVersion);
 }
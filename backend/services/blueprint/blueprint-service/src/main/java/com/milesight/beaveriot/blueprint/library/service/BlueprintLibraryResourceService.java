@@ -1,98 +1,231 @@
 package com.milesight.beaveriot.blueprint.library.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
+import com.milesight.beaveriot.blueprint.library.config.BlueprintLibraryConfig;
 import com.milesight.beaveriot.blueprint.library.model.BlueprintLibraryResource;
+import com.milesight.beaveriot.blueprint.library.model.BlueprintLibraryResourceCacheInvalidationEvent;
+import com.milesight.beaveriot.blueprint.library.po.BlueprintLibraryBlobPO;
 import com.milesight.beaveriot.blueprint.library.po.BlueprintLibraryResourcePO;
+import com.milesight.beaveriot.blueprint.library.repository.BlueprintLibraryBlobRepository;
 import com.milesight.beaveriot.blueprint.library.repository.BlueprintLibraryResourceRepository;
+import com.milesight.beaveriot.blueprint.library.support.YamlConverter;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
+import com.milesight.beaveriot.pubsub.api.annotation.MessageListener;
+import lombok.SneakyThrows;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
 
 /**
+ * Resources are stored by content: each distinct content is a blob keyed by its SHA-256 hash, and each version of a
+ * library only keeps the path to hash manifest, so files unchanged between versions are stored once.
+ * <p>
+ * The manifests of recently used versions, the contents and the parsed resources are kept in bounded in-memory caches.
+ * Blobs are immutable, so the content and parsed caches are keyed by hash and never need to be evicted.
+ * <p>
  * author: Luxb
  * create: 2025/9/1 17:17
  **/
 @Service
 public class BlueprintLibraryResourceService {
     private static final int BLUEPRINT_LIBRARY_RESOURCE_BATCH_SIZE = 100;
+    /**
+     * Unreferenced blobs are only deleted once no sync has referred to them for this long, so that a blob found
+     * existing by a running sync is not deleted before the sync saves its manifest
+     */
+    private static final Duration BLOB_RETENTION = Duration.ofDays(1);
     private final BlueprintLibraryResourceRepository blueprintLibraryResourceRepository;
+    private final BlueprintLibraryBlobRepository blueprintLibraryBlobRepository;
+    private final Cache<VersionKey, Map<String, String>> manifestCache;
+    private final Cache<String, String> contentCache;
+    private final Cache<ParsedKey, Object> parsedCache;
+    private final MessagePubSub messagePubSub;
 
-    public BlueprintLibraryResourceService(BlueprintLibraryResourceRepository blueprintLibraryResourceRepository) {
+    public BlueprintLibraryResourceService(BlueprintLibraryResourceRepository blueprintLibraryResourceRepository,
+                                           BlueprintLibraryBlobRepository blueprintLibraryBlobRepository,
+                                           BlueprintLibraryConfig blueprintLibraryConfig,
+                                           MessagePubSub messagePubSub) {
         this.blueprintLibraryResourceRepository = blueprintLibraryResourceRepository;
+        this.blueprintLibraryBlobRepository = blueprintLibraryBlobRepository;
+        this.messagePubSub = messagePubSub;
+
+        BlueprintLibraryConfig.ResourceCache resourceCache = blueprintLibraryConfig.getResourceCache();
+        this.manifestCache = Caffeine.newBuilder()
+                .maximumSize(resourceCache.getMaxVersions())
+                .build();
+        this.contentCache = Caffeine.newBuilder()
+                .maximumWeight(resourceCache.getMaxContentSize().toBytes())
+                .weigher((String hash, String content) -> content.getBytes(StandardCharsets.UTF_8).length)
+                .build();
+        this.parsedCache = Caffeine.newBuilder()
+                .maximumSize(resourceCache.getMaxParsedResources())
+                .build();
+    }
+
+    @SneakyThrows
+    public static String hash(String content) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
     }
 
+    /**
+     * Save the blobs not stored yet, and mark the others as referenced again
+     *
+     * @param contentsByHash contents keyed by {@link #hash(String)}
+     */
     @Transactional(rollbackFor = Throwable.class)
-    public void batchSave(List<BlueprintLibraryResource> blueprintLibraryResources) {
-        int batchSize = BLUEPRINT_LIBRARY_RESOURCE_BATCH_SIZE;
-        int parallelism = Runtime.getRuntime().availableProcessors();
-        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
-
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
-
-        for (int i = 0; i < blueprintLibraryResources.size(); i += batchSize) {
-            int toIndex = Math.min(i + batchSize, blueprintLibraryResources.size());
-            List<BlueprintLibraryResource> subList = new ArrayList<>(blueprintLibraryResources.subList(i, toIndex));
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() ->
-                    blueprintLibraryResourceRepository.saveAll(subList.stream().map(this::convertModelToPO).toList()), executor);
-            futures.add(future);
+    public void saveBlobs(Map<String, String> contentsByHash) {
+        if (contentsByHash.isEmpty()) {
+            return;
         }
 
-        try {
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-        } finally {
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
+        long now = System.currentTimeMillis();
+        Set<String> existingHashes = new HashSet<>(blueprintLibraryBlobRepository.findHashesByHashIn(contentsByHash.keySet()));
+        if (!existingHashes.isEmpty()) {
+            blueprintLibraryBlobRepository.touchByHashIn(existingHashes, now);
+        }
+
+        // Syncs of other libraries may insert the same blobs meanwhile, a blob inserted by them is kept as it is
+        contentsByHash.forEach((hash, content) -> {
+            if (!existingHashes.contains(hash)) {
+                blueprintLibraryBlobRepository.insertIfAbsent(SnowflakeUtil.nextId(), hash, content, now);
             }
+        });
+    }
+
+    /**
+     * Replace the path to hash manifest of a version, the blobs referred to must have been saved by {@link #saveBlobs(Map)}
+     *
+     * @return false if the version already had the same manifest
+     */
+    @Transactional(rollbackFor = Throwable.class)
+    public boolean saveManifest(Long libraryId, String libraryVersion, Map<String, String> hashesByPath) {
+        if (hashesByPath.equals(loadManifest(libraryId, libraryVersion))) {
+            return false;
         }
+
+        blueprintLibraryResourceRepository.deleteAllByLibraryIdAndLibraryVersion(libraryId, libraryVersion);
+        blueprintLibraryResourceRepository.flush();
+
+        List<BlueprintLibraryResourcePO> blueprintLibraryResourcePOs = hashesByPath.entrySet().stream()
+                .map(entry -> convertModelToPO(BlueprintLibraryResource.builder()
+                        .path(entry.getKey())
+                        .contentHash(entry.getValue())
+                        .libraryId(libraryId)
+                        .libraryVersion(libraryVersion)
+                        .build()))
+                .toList();
+        for (int i = 0; i < blueprintLibraryResourcePOs.size(); i += BLUEPRINT_LIBRARY_RESOURCE_BATCH_SIZE) {
+            int toIndex = Math.min(i + BLUEPRINT_LIBRARY_RESOURCE_BATCH_SIZE, blueprintLibraryResourcePOs.size());
+            blueprintLibraryResourceRepository.saveAll(blueprintLibraryResourcePOs.subList(i, toIndex));
+        }
+
+        invalidateManifest(libraryId, libraryVersion);
+        return true;
     }
 
     public BlueprintLibraryResource getResource(Long libraryId, String libraryVersion, String resourcePath) {
-        BlueprintLibraryResourcePO blueprintLibraryResourcePO = blueprintLibraryResourceRepository.findByLibraryIdAndLibraryVersionAndPath(libraryId, libraryVersion, resourcePath);
-        if (blueprintLibraryResourcePO == null) {
+        Map<String, String> manifest = manifestCache.get(new VersionKey(libraryId, libraryVersion),
+                key -> {
+                    Map<String, String> hashesByPath = loadManifest(key.libraryId(), key.libraryVersion());
+                    // A version without resources is not cached, as its resources may be being synced
+                    return hashesByPath.isEmpty() ? null : hashesByPath;
+                });
+        if (manifest == null) {
+            return null;
+        }
+
+        String contentHash = manifest.get(resourcePath);
+        if (contentHash == null) {
+            return null;
+        }
+
+        String content = contentCache.get(contentHash, hash -> {
+            BlueprintLibraryBlobPO blueprintLibraryBlobPO = blueprintLibraryBlobRepository.findByHash(hash);
+            return blueprintLibraryBlobPO == null ? null : blueprintLibraryBlobPO.getContent();
+        });
+        if (content == null) {
             return null;
         }
 
-        return convertPOToModel(blueprintLibraryResourcePO);
+        return BlueprintLibraryResource.builder()
+                .path(resourcePath)
+                .content(content)
+                .contentHash(contentHash)
+                .libraryId(libraryId)
+                .libraryVersion(libraryVersion)
+                .build();
+    }
+
+    /**
+     * Parse the YAML content of a resource. The result is cached by content hash and shared, it must not be modified.
+     */
+    public <T> T getParsedResource(BlueprintLibraryResource blueprintLibraryResource, Class<T> type) {
+        if (blueprintLibraryResource == null) {
+            return null;
+        }
+
+        Object parsed = parsedCache.get(new ParsedKey(blueprintLibraryResource.getContentHash(), type),
+                key -> YamlConverter.from(blueprintLibraryResource.getContent(), type));
+        return type.cast(parsed);
     }
 
     @Transactional(rollbackFor = Exception.class)
     public void deleteAllByLibraryIdAndLibraryVersion(Long libraryId, String libraryVersion) {
         blueprintLibraryResourceRepository.deleteAllByLibraryIdAndLibraryVersion(libraryId, libraryVersion);
+        invalidateManifest(libraryId, libraryVersion);
+    }
+
+    /**
+     * The manifest of a version may be cached by every node, all of them evict it once the change is committed
+     */
+    private void invalidateManifest(Long libraryId, String libraryVersion) {
+        messagePubSub.publishAfterCommit(BlueprintLibraryResourceCacheInvalidationEvent.builder()
+                .libraryId(libraryId)
+                .libraryVersion(libraryVersion)
+                .build());
+    }
+
+    @MessageListener
+    public void onBlueprintLibraryResourceCacheInvalidation(BlueprintLibraryResourceCacheInvalidationEvent event) {
+        manifestCache.invalidate(new VersionKey(event.getLibraryId(), event.getLibraryVersion()));
+    }
+
+    /**
+     * Delete the blobs no longer referred to by any version
+     *
+     * @return number of blobs deleted
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int deleteUnreferencedBlobs() {
+        return blueprintLibraryBlobRepository.deleteUnreferencedByUpdatedAtBefore(System.currentTimeMillis() - BLOB_RETENTION.toMillis());
+    }
+
+    private Map<String, String> loadManifest(Long libraryId, String libraryVersion) {
+        return blueprintLibraryResourceRepository.findAllByLibraryIdAndLibraryVersion(libraryId, libraryVersion).stream()
+                .collect(Collectors.toUnmodifiableMap(BlueprintLibraryResourcePO::getPath, BlueprintLibraryResourcePO::getContentHash));
     }
 
     public BlueprintLibraryResourcePO convertModelToPO(BlueprintLibraryResource blueprintLibraryResource) {
         BlueprintLibraryResourcePO blueprintLibraryResourcePO = new BlueprintLibraryResourcePO();
-        long id;
-        if (blueprintLibraryResourcePO.getId() == null) {
-            id = SnowflakeUtil.nextId();
-        } else {
-            id = blueprintLibraryResourcePO.getId();
-        }
-        blueprintLibraryResourcePO.setId(id);
+        blueprintLibraryResourcePO.setId(SnowflakeUtil.nextId());
         blueprintLibraryResourcePO.setPath(blueprintLibraryResource.getPath());
-        blueprintLibraryResourcePO.setContent(blueprintLibraryResource.getContent());
+        blueprintLibraryResourcePO.setContentHash(blueprintLibraryResource.getContentHash());
         blueprintLibraryResourcePO.setLibraryId(blueprintLibraryResource.getLibraryId());
         blueprintLibraryResourcePO.setLibraryVersion(blueprintLibraryResource.getLibraryVersion());
         return blueprintLibraryResourcePO;
     }
 
-    public BlueprintLibraryResource convertPOToModel(BlueprintLibraryResourcePO blueprintLibraryResourcePO) {
-        return BlueprintLibraryResource.builder()
-                .path(blueprintLibraryResourcePO.getPath())
-                .content(blueprintLibraryResourcePO.getContent())
-                .libraryId(blueprintLibraryResourcePO.getLibraryId())
-                .libraryVersion(blueprintLibraryResourcePO.getLibraryVersion())
-                .build();
+    private record VersionKey(Long libraryId, String libraryVersion) {
+    }
+
+    private record ParsedKey(String contentHash, Class<?> type) {
     }
 }
@@ -0,0 +1,140 @@
+package com.milesight.beaveriot.blueprint.library.service
+
+import com.milesight.beaveriot.blueprint.library.config.BlueprintLibraryConfig
+import com.milesight.beaveriot.blueprint.library.model.BlueprintLibraryResourceCacheInvalidationEvent
+import com.milesight.beaveriot.blueprint.library.po.BlueprintLibraryBlobPO
+import com.milesight.beaveriot.blueprint.library.po.BlueprintLibraryResourcePO
+import com.milesight.beaveriot.blueprint.library.repository.BlueprintLibraryBlobRepository
+import com.milesight.beaveriot.blueprint.library.repository.BlueprintLibraryResourceRepository
+import com.milesight.beaveriot.pubsub.MessagePubSub
+import spock.lang.Specification
+
+import java.time.Duration
+
+class BlueprintLibraryResourceServiceTest extends Specification {
+
+    static final Long LIBRARY_ID = 1L
+
+    static final String LIBRARY_VERSION = "1.0.0"
+
+    BlueprintLibraryResourceRepository resourceRepository = Mock()
+
+    BlueprintLibraryBlobRepository blobRepository = Mock()
+
+    MessagePubSub messagePubSub = Mock()
+
+    BlueprintLibraryResourceService service = new BlueprintLibraryResourceService(resourceRepository, blobRepository,
+            new BlueprintLibraryConfig(), messagePubSub)
+
+    def "should hash the same content to the same blob"() {
+        expect:
+        BlueprintLibraryResourceService.hash("vendor: milesight") == BlueprintLibraryResourceService.hash("vendor: milesight")
+        BlueprintLibraryResourceService.hash("vendor: milesight") != BlueprintLibraryResourceService.hash("vendor: other")
+        BlueprintLibraryResourceService.hash("vendor: milesight").length() == 64
+    }
+
+    def "should only insert the blobs not stored yet and mark the others as referenced again"() {
+        given:
+        def contentsByHash = ["a", "b", "c"].collectEntries { [BlueprintLibraryResourceService.hash(it), it] }
+        def existingHash = BlueprintLibraryResourceService.hash("a")
+
+        when:
+        service.saveBlobs(contentsByHash)
+
+        then:
+        1 * blobRepository.findHashesByHashIn(contentsByHash.keySet()) >> [existingHash]
+        1 * blobRepository.touchByHashIn([existingHash] as Set, _ as Long)
+        1 * blobRepository.insertIfAbsent(_ as Long, BlueprintLibraryResourceService.hash("b"), "b", _ as Long)
+        1 * blobRepository.insertIfAbsent(_ as Long, BlueprintLibraryResourceService.hash("c"), "c", _ as Long)
+        0 * blobRepository._
+    }
+
+    def "should not touch the database without blobs"() {
+        when:
+        service.saveBlobs([:])
+
+        then:
+        0 * blobRepository._
+    }
+
+    def "should keep an unchanged manifest"() {
+        given:
+        resourceRepository.findAllByLibraryIdAndLibraryVersion(LIBRARY_ID, LIBRARY_VERSION) >> [resource("a.yaml", "hash-a")]
+
+        when:
+        def saved = service.saveManifest(LIBRARY_ID, LIBRARY_VERSION, ["a.yaml": "hash-a"])
+
+        then:
+        !saved
+        0 * resourceRepository.deleteAllByLibraryIdAndLibraryVersion(_, _)
+        0 * resourceRepository.saveAll(_)
+        0 * messagePubSub._
+    }
+
+    def "should replace a changed manifest and invalidate it on all nodes"() {
+        given:
+        resourceRepository.findAllByLibraryIdAndLibraryVersion(LIBRARY_ID, LIBRARY_VERSION) >> [resource("a.yaml", "hash-a")]
+
+        when:
+        def saved = service.saveManifest(LIBRARY_ID, LIBRARY_VERSION, ["a.yaml": "hash-b"])
+
+        then:
+        saved
+        1 * resourceRepository.deleteAllByLibraryIdAndLibraryVersion(LIBRARY_ID, LIBRARY_VERSION)
+        1 * resourceRepository.saveAll({ it*.contentHash == ["hash-b"] })
+        1 * messagePubSub.publishAfterCommit({ BlueprintLibraryResourceCacheInvalidationEvent event ->
+            event.libraryId == LIBRARY_ID && event.libraryVersion == LIBRARY_VERSION
+        })
+    }
+
+    def "should reload a cached manifest once it is invalidated"() {
+        given:
+        def blob = new BlueprintLibraryBlobPO(hash: "hash-a", content: "a: 1")
+        blobRepository.findByHash("hash-a") >> blob
+
+        when:
+        service.getResource(LIBRARY_ID, LIBRARY_VERSION, "a.yaml")
+        service.getResource(LIBRARY_ID, LIBRARY_VERSION, "a.yaml")
+
+        then:
+        1 * resourceRepository.findAllByLibraryIdAndLibraryVersion(LIBRARY_ID, LIBRARY_VERSION) >> [resource("a.yaml", "hash-a")]
+
+        when:
+        service.onBlueprintLibraryResourceCacheInvalidation(new BlueprintLibraryResourceCacheInvalidationEvent(LIBRARY_ID, LIBRARY_VERSION))
+        def reloaded = service.getResource(LIBRARY_ID, LIBRARY_VERSION, "a.yaml")
+
+        then:
+        1 * resourceRepository.findAllByLibraryIdAndLibraryVersion(LIBRARY_ID, LIBRARY_VERSION) >> [resource("a.yaml", "hash-a")]
+        reloaded.content == "a: 1"
+    }
+
+    def "should invalidate the manifest of a deleted version on all nodes"() {
+        when:
+        service.deleteAllByLibraryIdAndLibraryVersion(LIBRARY_ID, LIBRARY_VERSION)
+
+        then:
+        1 * resourceRepository.deleteAllByLibraryIdAndLibraryVersion(LIBRARY_ID, LIBRARY_VERSION)
+        1 * messagePubSub.publishAfterCommit({ BlueprintLibraryResourceCacheInvalidationEvent event ->
+            event.libraryId == LIBRARY_ID && event.libraryVersion == LIBRARY_VERSION
+        })
+    }
+
+    def "should only delete unreferenced blobs no sync has referred to within the retention"() {
+        given:
+        Long updatedBefore = null
+
+        when:
+        long start = System.currentTimeMillis()
+        service.deleteUnreferencedBlobs()
+        long end = System.currentTimeMillis()
+
+        then:
+        1 * blobRepository.deleteUnreferencedByUpdatedAtBefore(_ as Long) >> { Long cutoff -> updatedBefore = cutoff; 0 }
+        updatedBefore >= start - Duration.ofDays(1).toMillis()
+        updatedBefore <= end - Duration.ofDays(1).toMillis()
+    }
+
+    private static BlueprintLibraryResourcePO resource(String path, String contentHash) {
+        return new BlueprintLibraryResourcePO(path: path, contentHash: contentHash, libraryId: LIBRARY_ID, libraryVersion: LIBRARY_VERSION)
+    }
+}
@@ -110,7 +110,11 @@ public class CredentialsService implements CredentialsServiceProvider {
                 .createdBy(operatorId)
                 .updatedBy(operatorId)
                 .build());
-        publishCredentialsChangeEvent(CredentialsChangeEvent.Operation.ADD, convertPOToDTO(credentialsPO), System.currentTimeMillis());
+        val currentMillis = System.currentTimeMillis();
+        val credentials = convertPOToDTO(credentialsPO);
+        publishCredentialsChangeEvent(CredentialsChangeEvent.Operation.ADD, credentials, currentMillis);
+        // other nodes may remember the access key as unknown
+        publishCredentialsCacheInvalidationEvent(credentials, currentMillis);
         return convertPOToResponse(credentialsPO);
     }
 
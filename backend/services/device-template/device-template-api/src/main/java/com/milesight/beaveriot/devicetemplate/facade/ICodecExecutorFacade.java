@@ -8,4 +8,5 @@ import com.milesight.beaveriot.context.model.BlueprintLibrary;
  **/
 public interface ICodecExecutorFacade {
     IDeviceCodecExecutorFacade getDeviceCodecExecutor(BlueprintLibrary blueprintLibrary, String vendor, String model);
+    void evictDeviceCodecExecutors(Long blueprintLibraryId, String blueprintLibraryVersion);
 }
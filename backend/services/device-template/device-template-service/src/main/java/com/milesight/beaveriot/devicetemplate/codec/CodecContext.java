@@ -0,0 +1,308 @@
+package com.milesight.beaveriot.devicetemplate.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * A GraalJS context with the codec script already evaluated, borrowed from a per-codec pool.
+ * A context is only ever used by one thread at a time.
+ * <p>
+ * Messages used to get a fresh context each, so a codec could keep state in globals or patch built-ins without
+ * affecting the next message. Once the script is evaluated, the built-in objects are frozen and a snapshot of the
+ * global scope of the script is taken, which {@link #reset()} restores after each message. Changes nested deeper than
+ * the properties of the objects of the script are not undone.
+ **/
+public class CodecContext {
+    private static final JsonNodeFactory NODE_FACTORY = JsonNodeFactory.instance;
+    private static final String OBJECT_FACTORY_SCRIPT = "(function() { return {}; })";
+    private static final String ARRAY_FACTORY_SCRIPT = "(function() { return []; })";
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+    /**
+     * Lists the global bindings and the built-in objects, before the script is evaluated
+     */
+    private static final String INTRINSICS_SCRIPT = """
+            (function () {
+                const keys = Reflect.ownKeys(globalThis);
+                const values = new Set();
+                for (const key of keys) {
+                    const value = Reflect.getOwnPropertyDescriptor(globalThis, key).value;
+                    if (value !== globalThis && value !== null && (typeof value === 'object' || typeof value === 'function')) {
+                        values.add(value);
+                        if (typeof value === 'function' && value.prototype !== null && typeof value.prototype === 'object') {
+                            values.add(value.prototype);
+                        }
+                    }
+                }
+                for (const value of Array.from(values)) {
+                    const prototype = Object.getPrototypeOf(value);
+                    if (prototype !== null) {
+                        values.add(prototype);
+                    }
+                }
+                return { keys, values };
+            })()
+            """;
+    /**
+     * Freezes the built-in objects and global bindings once the script is evaluated, so that polyfills of the script
+     * still apply. Properties that objects commonly override, such as {@code toString}, are turned into accessors first,
+     * so that assigning them on an instance still works although the prototype is frozen.
+     * <p>
+     * Then snapshots the global bindings of the script, its let and const bindings, which are read and written by the
+     * given functions, and the own properties of the objects and functions they refer to. The returned function
+     * restores all of them, and tells whether it could.
+     */
+    private static final String GLOBAL_GUARD_SCRIPT = """
+            (function (intrinsics, readLexicals, writeLexicals) {
+                const is = Object.is, ownKeys = Reflect.ownKeys, getDescriptor = Reflect.getOwnPropertyDescriptor;
+                const overridable = ['constructor', 'toString', 'toLocaleString', 'valueOf', 'toJSON', 'name', 'message'];
+                for (const intrinsic of intrinsics.values) {
+                    for (const key of overridable) {
+                        const descriptor = getDescriptor(intrinsic, key);
+                        if (descriptor && 'value' in descriptor && descriptor.configurable && typeof intrinsic !== 'function') {
+                            const value = descriptor.value;
+                            Object.defineProperty(intrinsic, key, {
+                                get() { return value; },
+                                set(newValue) {
+                                    if (this === intrinsic) {
+                                        throw new TypeError('Cannot assign to read only property ' + key);
+                                    }
+                                    Object.defineProperty(this, key, { value: newValue, writable: true, enumerable: true, configurable: true });
+                                },
+                                enumerable: descriptor.enumerable,
+                                configurable: false
+                            });
+                        }
+                    }
+                    Object.freeze(intrinsic);
+                }
+                for (const key of intrinsics.keys) {
+                    const descriptor = getDescriptor(globalThis, key);
+                    if (descriptor.configurable || descriptor.writable) {
+                        Object.defineProperty(globalThis, key, { configurable: false, ...('value' in descriptor ? { writable: false } : {}) });
+                    }
+                }
+                const isObject = value => value !== null && (typeof value === 'object' || typeof value === 'function');
+                const roots = [];
+                const addRoot = value => {
+                    if (isObject(value) && !intrinsics.values.has(value) && value !== globalThis && !roots.includes(value)) {
+                        roots.push(value);
+                        const prototype = typeof value === 'function' ? getDescriptor(value, 'prototype') : undefined;
+                        if (prototype) {
+                            addRoot(prototype.value);
+                        }
+                    }
+                };
+                const snapshot = (object, keys) => {
+                    // properties that are neither writable nor configurable cannot change
+                    const mutableKeys = keys.filter(key => {
+                        const descriptor = getDescriptor(object, key);
+                        return descriptor.configurable || descriptor.writable !== false;
+                    });
+                    return { object, keys, mutableKeys, descriptors: mutableKeys.map(key => getDescriptor(object, key)) };
+                };
+                const globalKeys = ownKeys(globalThis);
+                const scriptKeys = globalKeys.filter(key => !intrinsics.keys.includes(key));
+                const snapshots = [snapshot(globalThis, scriptKeys)];
+                scriptKeys.forEach(key => addRoot(getDescriptor(globalThis, key).value));
+                const lexicals = readLexicals();
+                lexicals.forEach(addRoot);
+                for (const root of roots) {
+                    snapshots.push(snapshot(root, ownKeys(root)));
+                }
+                const extensible = roots.map(Object.isExtensible);
+                const same = (a, b) => is(a.value, b.value) && is(a.get, b.get) && is(a.set, b.set)
+                        && a.writable === b.writable && a.enumerable === b.enumerable && a.configurable === b.configurable;
+                const removeAdded = (object, keys) => {
+                    for (const key of ownKeys(object)) {
+                        if (!keys.includes(key) && !Reflect.deleteProperty(object, key)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+                return function () {
+                    if (ownKeys(globalThis).length !== globalKeys.length && !removeAdded(globalThis, globalKeys)) {
+                        return false;
+                    }
+                    for (let i = 0; i < roots.length; i++) {
+                        if (Object.isExtensible(roots[i]) !== extensible[i]) {
+                            return false;
+                        }
+                    }
+                    for (let i = 0; i < snapshots.length; i++) {
+                        const { object, keys, mutableKeys, descriptors } = snapshots[i];
+                        if (i > 0 && extensible[i - 1] && ownKeys(object).length !== keys.length && !removeAdded(object, keys)) {
+                            return false;
+                        }
+                        for (let j = 0; j < mutableKeys.length; j++) {
+                            const descriptor = getDescriptor(object, mutableKeys[j]);
+                            if ((!descriptor || !same(descriptor, descriptors[j])) && !Reflect.defineProperty(object, mutableKeys[j], descriptors[j])) {
+                                return false;
+                            }
+                        }
+                    }
+                    const current = readLexicals();
+                    for (let i = 0; i < lexicals.length; i++) {
+                        if (!is(current[i], lexicals[i])) {
+                            try {
+                                writeLexicals(lexicals);
+                            } catch (e) {
+                                return false;
+                            }
+                            break;
+                        }
+                    }
+                    return true;
+                };
+            })
+            """;
+
+    private final Context context;
+    private final Value bindings;
+    private final Value objectFactory;
+    private final Value arrayFactory;
+    private final Value nullValue;
+    private final Value globalGuard;
+    private final Map<String, Value> functions = new ConcurrentHashMap<>();
+
+    CodecContext(Context context, Source source, String languageId) {
+        this.context = context;
+        Value intrinsics = context.eval(languageId, INTRINSICS_SCRIPT);
+        context.eval(source);
+        this.bindings = context.getBindings(languageId);
+        this.objectFactory = context.eval(languageId, OBJECT_FACTORY_SCRIPT);
+        this.arrayFactory = context.eval(languageId, ARRAY_FACTORY_SCRIPT);
+        this.nullValue = context.eval(languageId, "null");
+        List<String> lexicalNames = getLexicalNames(languageId);
+        StringBuilder writeLexicals = new StringBuilder("(values => {");
+        for (int i = 0; i < lexicalNames.size(); i++) {
+            // const bindings never change, so they are never assigned
+            writeLexicals.append(" if (!Object.is(").append(lexicalNames.get(i)).append(", values[").append(i).append("])) { ")
+                    .append(lexicalNames.get(i)).append(" = values[").append(i).append("]; }");
+        }
+        writeLexicals.append(" })");
+        this.globalGuard = context.eval(languageId, GLOBAL_GUARD_SCRIPT).execute(intrinsics,
+                context.eval(languageId, "(() => [" + String.join(", ", lexicalNames) + "])"),
+                context.eval(languageId, writeLexicals.toString()));
+    }
+
+    private List<String> getLexicalNames(String languageId) {
+        Value globalObject = context.eval(languageId, "globalThis");
+        List<String> lexicalNames = new ArrayList<>();
+        for (String key : bindings.getMemberKeys()) {
+            if (!globalObject.hasMember(key) && IDENTIFIER.matcher(key).matches()) {
+                lexicalNames.add(key);
+            }
+        }
+        return lexicalNames;
+    }
+
+    public Value getFunction(String entry) {
+        return functions.computeIfAbsent(entry, bindings::getMember);
+    }
+
+    /**
+     * Undo the changes the last message made to the global scope of the script
+     *
+     * @return false if they could not be undone, then the context must not be reused
+     */
+    public boolean reset() {
+        return globalGuard.execute().asBoolean();
+    }
+
+    public Value toValue(JsonNode jsonNode) {
+        if (jsonNode.isObject()) {
+            Value jsObject = objectFactory.execute();
+            jsonNode.fields().forEachRemaining(field -> jsObject.putMember(field.getKey(), toValue(field.getValue())));
+            return jsObject;
+        } else if (jsonNode.isArray()) {
+            Value jsArray = arrayFactory.execute();
+            for (int i = 0; i < jsonNode.size(); i++) {
+                jsArray.setArrayElement(i, toValue(jsonNode.get(i)));
+            }
+            return jsArray;
+        } else if (jsonNode.isTextual()) {
+            return context.asValue(jsonNode.asText());
+        } else if (jsonNode.isNumber()) {
+            return context.asValue(jsonNode.numberValue());
+        } else if (jsonNode.isBoolean()) {
+            return context.asValue(jsonNode.asBoolean());
+        } else if (jsonNode.isNull()) {
+            return nullValue;
+        } else {
+            return context.asValue(jsonNode.toString());
+        }
+    }
+
+    public JsonNode toJsonNode(Value value) {
+        if (value == null || value.isNull()) {
+            return NODE_FACTORY.nullNode();
+        } else if (value.isHostObject() && value.asHostObject() instanceof JsonNode jsonNode) {
+            return jsonNode;
+        } else if (value.isBoolean()) {
+            return NODE_FACTORY.booleanNode(value.asBoolean());
+        } else if (value.isNumber()) {
+            if (value.fitsInInt()) {
+                return NODE_FACTORY.numberNode(value.asInt());
+            } else if (value.fitsInLong()) {
+                return NODE_FACTORY.numberNode(value.asLong());
+            }
+            return NODE_FACTORY.numberNode(value.asDouble());
+        } else if (value.isString()) {
+            return NODE_FACTORY.textNode(value.asString());
+        } else if (value.hasArrayElements()) {
+            long size = value.getArraySize();
+            ArrayNode arrayNode = NODE_FACTORY.arrayNode((int) size);
+            for (long i = 0; i < size; i++) {
+                arrayNode.add(toJsonNode(value.getArrayElement(i)));
+            }
+            return arrayNode;
+        } else if (value.hasHashEntries()) {
+            ObjectNode objectNode = NODE_FACTORY.objectNode();
+            Value keys = value.getHashKeysIterator();
+            while (keys.hasIteratorNextElement()) {
+                Value key = keys.getIteratorNextElement();
+                objectNode.set(key.isString() ? key.asString() : key.toString(), toJsonNode(value.getHashValue(key)));
+            }
+            return objectNode;
+        } else if (value.hasMembers() && !value.canExecute()) {
+            ObjectNode objectNode = NODE_FACTORY.objectNode();
+            for (String key : value.getMemberKeys()) {
+                Value member = value.getMember(key);
+                // functions are dropped, as they would be by JSON serialization
+                if (member != null && !member.canExecute()) {
+                    objectNode.set(key, toJsonNode(member));
+                }
+            }
+            return objectNode;
+        }
+        return NODE_FACTORY.textNode(value.toString());
+    }
+
+    public byte[] toBytes(Value value) {
+        if (value.isHostObject() && value.asHostObject() instanceof byte[] bytes) {
+            return bytes;
+        }
+        int size = (int) value.getArraySize();
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) value.getArrayElement(i).asInt();
+        }
+        return bytes;
+    }
+
+    void close() {
+        context.close();
+    }
+}
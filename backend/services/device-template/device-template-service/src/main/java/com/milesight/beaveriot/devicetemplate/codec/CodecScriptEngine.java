@@ -0,0 +1,145 @@
+package com.milesight.beaveriot.devicetemplate.codec;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.milesight.beaveriot.base.pool.ObjectPool;
+import com.milesight.beaveriot.base.pool.PoolConfig;
+import com.milesight.beaveriot.base.pool.component.ObjectPoolManager;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.Source;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Shared GraalJS engine for codec scripts.
+ * <p>
+ * Each distinct codec script is compiled into one cached {@link Source} and gets its own bounded pool of
+ * initialized {@link CodecContext}s, so the parsing and JIT work of the shared engine survives across messages.
+ * Idle contexts are evicted by the pool, and the pool of a script that has not been executed for a while is destroyed,
+ * so the pools of replaced codec versions do not pile up.
+ **/
+@Slf4j
+@Component
+public class CodecScriptEngine implements DisposableBean {
+    private static final String LANGUAGE_ID = "js";
+    private static final String POOL_NAME_PREFIX = "codec-context:";
+    private static final Duration POOL_EXPIRE_AFTER_ACCESS = Duration.ofMinutes(30);
+    private static final HostAccess HOST_ACCESS = HostAccess.newBuilder()
+            .allowArrayAccess(true)
+            .allowMapAccess(true)
+            .allowListAccess(true)
+            .build();
+    private static final PoolConfig POOL_CONFIG = PoolConfig.builder()
+            .minIdle(0)
+            .maxTotal(Math.max(2, Runtime.getRuntime().availableProcessors()))
+            .maxIdleTime(Duration.ofMinutes(10))
+            .evictionCheckInterval(Duration.ofMinutes(1))
+            .maxWaitTime(Duration.ofSeconds(30))
+            .build();
+
+    private final Engine engine = Engine.newBuilder(LANGUAGE_ID)
+            .option("engine.WarnInterpreterOnly", "false")
+            .build();
+    private final ObjectPoolManager objectPoolManager;
+    private final Cache<String, ObjectPool<CodecContext>> contextPools;
+
+    public CodecScriptEngine(ObjectPoolManager objectPoolManager) {
+        this(objectPoolManager, POOL_EXPIRE_AFTER_ACCESS);
+    }
+
+    CodecScriptEngine(ObjectPoolManager objectPoolManager, Duration poolExpireAfterAccess) {
+        this.objectPoolManager = objectPoolManager;
+        this.contextPools = CacheBuilder.newBuilder()
+                .expireAfterAccess(poolExpireAfterAccess)
+                .removalListener((RemovalNotification<String, ObjectPool<CodecContext>> notification) -> {
+                    log.debug("Remove codec context pool for script {}", notification.getKey());
+                    objectPoolManager.removePool(POOL_NAME_PREFIX + notification.getKey());
+                })
+                .build();
+    }
+
+    /**
+     * Hash the code once, the returned script is what executors keep and pass to {@link #execute}
+     */
+    public CodecScript compile(String code) {
+        return new CodecScript(DigestUtils.sha256Hex(code), code);
+    }
+
+    /**
+     * Run the operation with a context of the script. The context is reset afterwards, and destroyed instead of being
+     * reused for the next message if that fails.
+     */
+    public <R> R execute(CodecScript script, Function<CodecContext, R> operation) {
+        while (true) {
+            ObjectPool<CodecContext> contextPool = getContextPool(script);
+            try {
+                return contextPool.execute(operation, CodecContext::reset);
+            } catch (IllegalStateException e) {
+                // the pool expired and was closed between lookup and borrow, the next lookup creates a new one
+                if (!contextPool.isClosed()) {
+                    throw e;
+                }
+                contextPools.asMap().remove(script.hash(), contextPool);
+            }
+        }
+    }
+
+    ObjectPool<CodecContext> getContextPool(CodecScript script) {
+        try {
+            return contextPools.get(script.hash(), () -> {
+                Source source = Source.newBuilder(LANGUAGE_ID, script.code(), "codec-" + script.hash() + ".js")
+                        .cached(true)
+                        .buildLiteral();
+                // fail fast on broken scripts, the pool itself only logs creation failures and waits for a free object
+                newCodecContext(source).close();
+                log.debug("Create codec context pool for script {}", script.hash());
+                return objectPoolManager.getPool(POOL_NAME_PREFIX + script.hash(),
+                        POOL_CONFIG,
+                        () -> newCodecContext(source),
+                        CodecContext::close);
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private CodecContext newCodecContext(Source source) {
+        Context context = Context.newBuilder(LANGUAGE_ID)
+                .allowHostAccess(HOST_ACCESS)
+                .engine(engine)
+                .build();
+        try {
+            return new CodecContext(context, source, LANGUAGE_ID);
+        } catch (RuntimeException e) {
+            context.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        contextPools.invalidateAll();
+        contextPools.cleanUp();
+        engine.close();
+    }
+
+    public record CodecScript(String hash, String code) {
+        @Override
+        public String toString() {
+            return "CodecScript[" + hash + "]";
+        }
+    }
+}
@@ -9,12 +9,14 @@ import com.milesight.beaveriot.context.api.DeviceTemplateParserProvider;
 import com.milesight.beaveriot.context.model.DeviceTemplateModel;
 import com.milesight.beaveriot.devicetemplate.codec.Argument;
 import com.milesight.beaveriot.devicetemplate.codec.CodecExecutor;
+import com.milesight.beaveriot.devicetemplate.codec.CodecScriptEngine;
 import com.milesight.beaveriot.devicetemplate.codec.chain.CodecExecutorChain;
 import com.milesight.beaveriot.devicetemplate.codec.chain.CodecExecutorDecoderChain;
 import com.milesight.beaveriot.devicetemplate.codec.chain.CodecExecutorEncoderChain;
 import com.milesight.beaveriot.devicetemplate.codec.enums.CodecErrorCode;
 import com.milesight.beaveriot.devicetemplate.facade.ICodecExecutorFacade;
 import com.milesight.beaveriot.devicetemplate.facade.IDeviceCodecExecutorFacade;
+import com.milesight.beaveriot.devicetemplate.parser.CompiledDeviceTemplateCache;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -28,10 +30,14 @@ import java.util.function.Supplier;
 public class CodecExecutorService implements ICodecExecutorFacade {
     private final IBlueprintLibraryResourceResolverFacade blueprintLibraryResourceResolverFacade;
     private final DeviceTemplateParserProvider deviceTemplateParserProvider;
+    private final CodecScriptEngine codecScriptEngine;
+    private final CompiledDeviceTemplateCache compiledDeviceTemplateCache;
 
-    public CodecExecutorService(IBlueprintLibraryResourceResolverFacade blueprintLibraryResourceResolverFacade, DeviceTemplateParserProvider deviceTemplateParserProvider) {
+    public CodecExecutorService(IBlueprintLibraryResourceResolverFacade blueprintLibraryResourceResolverFacade, DeviceTemplateParserProvider deviceTemplateParserProvider, CodecScriptEngine codecScriptEngine, CompiledDeviceTemplateCache compiledDeviceTemplateCache) {
         this.blueprintLibraryResourceResolverFacade = blueprintLibraryResourceResolverFacade;
         this.deviceTemplateParserProvider = deviceTemplateParserProvider;
+        this.codecScriptEngine = codecScriptEngine;
+        this.compiledDeviceTemplateCache = compiledDeviceTemplateCache;
     }
 
     @Override
@@ -79,6 +85,11 @@ public class CodecExecutorService implements ICodecExecutorFacade {
         return DeviceCodecExecutorService.of(decoderChain, encoderChain);
     }
 
+    @Override
+    public void evictDeviceCodecExecutors(Long blueprintLibraryId, String blueprintLibraryVersion) {
+        compiledDeviceTemplateCache.invalidateBlueprintLibrary(blueprintLibraryId, blueprintLibraryVersion);
+    }
+
     private <T extends CodecExecutorChain> T createCodecExecutorChain(BlueprintLibrary blueprintLibrary, String vendor, Supplier<T> chainBuilder, List<BlueprintDeviceCodec.Codec> chain) {
         T codecExecutorChain = chainBuilder.get();
         for (BlueprintDeviceCodec.Codec codec : chain) {
@@ -88,9 +99,10 @@ public class CodecExecutorService implements ICodecExecutorFacade {
             }
 
             codecExecutorChain.addExecutor(CodecExecutor.builder()
-                    .code(code)
+                    .script(codecScriptEngine.compile(code))
                     .entry(codec.getEntry())
                     .arguments(convertArgument(codec.getArgs()))
+                    .scriptEngine(codecScriptEngine)
                     .build());
         }
 
@@ -0,0 +1,27 @@
+package com.milesight.beaveriot.devicetemplate.model;
+
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceTemplateCacheInvalidationEvent extends RemoteBroadcastMessage {
+
+    private List<Long> deviceTemplateIds;
+
+    private Long blueprintLibraryId;
+
+    private String blueprintLibraryVersion;
+
+}
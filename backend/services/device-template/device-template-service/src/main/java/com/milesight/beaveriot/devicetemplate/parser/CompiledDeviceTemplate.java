@@ -0,0 +1,83 @@
+package com.milesight.beaveriot.devicetemplate.parser;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.milesight.beaveriot.base.utils.YamlUtils;
+import com.milesight.beaveriot.context.integration.model.config.EntityConfig;
+import com.milesight.beaveriot.context.model.DeviceTemplateModel;
+import com.milesight.beaveriot.devicetemplate.facade.IDeviceCodecExecutorFacade;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * A validated and parsed device template, shared by every message of the devices using it.
+ * Instances must be treated as read-only.
+ */
+@Getter
+public class CompiledDeviceTemplate {
+    private static final TypeReference<List<EntityConfig>> ENTITY_CONFIGS_TYPE = new TypeReference<>() {};
+
+    private final Long deviceTemplateId;
+    private final Long blueprintLibraryId;
+    private final String blueprintLibraryVersion;
+    private final DeviceTemplateModel model;
+    @Getter(AccessLevel.NONE)
+    private final JsonNode initialEntitiesNode;
+    private final Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap;
+    private final String deviceIdKey;
+    private final String deviceNameKey;
+    @Getter(AccessLevel.NONE)
+    private volatile Optional<IDeviceCodecExecutorFacade> codecExecutor;
+
+    public CompiledDeviceTemplate(Long deviceTemplateId,
+                                  Long blueprintLibraryId,
+                                  String blueprintLibraryVersion,
+                                  DeviceTemplateModel model,
+                                  JsonNode initialEntitiesNode,
+                                  Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap,
+                                  String deviceIdKey,
+                                  String deviceNameKey) {
+        this.deviceTemplateId = deviceTemplateId;
+        this.blueprintLibraryId = blueprintLibraryId;
+        this.blueprintLibraryVersion = blueprintLibraryVersion;
+        this.model = model;
+        this.initialEntitiesNode = initialEntitiesNode;
+        this.flatJsonInputDescriptionMap = Map.copyOf(flatJsonInputDescriptionMap);
+        this.deviceIdKey = deviceIdKey;
+        this.deviceNameKey = deviceNameKey;
+    }
+
+    /**
+     * Entities built from the configs are modified per device, so every call binds a fresh copy
+     * from the YAML tree instead of handing out the configs of the shared model.
+     */
+    public List<EntityConfig> newInitialEntities() {
+        if (initialEntitiesNode == null || initialEntitiesNode.isNull()) {
+            return null;
+        }
+        return YamlUtils.getObjectMapper().convertValue(initialEntitiesNode, ENTITY_CONFIGS_TYPE);
+    }
+
+    /**
+     * The codec chain is only needed by byte payloads, so it is resolved on first use.
+     * A template without codec resolves to null.
+     */
+    public IDeviceCodecExecutorFacade getCodecExecutor(Supplier<IDeviceCodecExecutorFacade> loader) {
+        Optional<IDeviceCodecExecutorFacade> current = codecExecutor;
+        if (current == null) {
+            current = Optional.ofNullable(loader.get());
+            codecExecutor = current;
+        }
+        return current.orElse(null);
+    }
+
+    public boolean isFromBlueprintLibrary(Long libraryId, String libraryVersion) {
+        return libraryId.equals(blueprintLibraryId)
+                && (libraryVersion == null || libraryVersion.equals(blueprintLibraryVersion));
+    }
+}
@@ -0,0 +1,116 @@
+package com.milesight.beaveriot.devicetemplate.parser;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.milesight.beaveriot.context.integration.model.DeviceTemplate;
+import com.milesight.beaveriot.devicetemplate.model.DeviceTemplateCacheInvalidationEvent;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
+import com.milesight.beaveriot.pubsub.api.annotation.MessageListener;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Bounded local cache of compiled device templates.
+ * <p>
+ * Entries are keyed by template id, blueprint library version, vendor, model and the last modification time of the
+ * template, so an updated template is not served from a stale entry without hashing its content on every message.
+ * Changes are still broadcast to all nodes to drop entries replaced within the same millisecond, to release the memory
+ * of replaced entries and to drop codec chains of re-synced blueprint libraries. A template without modification time
+ * is keyed by the hash of its content instead.
+ */
+@Slf4j
+@Component
+public class CompiledDeviceTemplateCache {
+    private static final long MAXIMUM_SIZE = 2048;
+    private static final Duration EXPIRE_AFTER_ACCESS = Duration.ofHours(1);
+
+    private final Cache<String, CompiledDeviceTemplate> cache = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterAccess(EXPIRE_AFTER_ACCESS)
+            .build();
+    private final MessagePubSub messagePubSub;
+
+    public CompiledDeviceTemplateCache(MessagePubSub messagePubSub) {
+        this.messagePubSub = messagePubSub;
+    }
+
+    /**
+     * Get the compiled template, compiling it on cache miss.
+     * Compilation failures are not cached and are thrown to the caller as is.
+     */
+    public CompiledDeviceTemplate get(DeviceTemplate deviceTemplate, Function<DeviceTemplate, CompiledDeviceTemplate> compiler) {
+        if (deviceTemplate.getId() == null || deviceTemplate.getContent() == null) {
+            return compiler.apply(deviceTemplate);
+        }
+
+        String cacheKey = getCacheKey(deviceTemplate);
+        CompiledDeviceTemplate compiledDeviceTemplate = cache.getIfPresent(cacheKey);
+        if (compiledDeviceTemplate == null) {
+            compiledDeviceTemplate = compiler.apply(deviceTemplate);
+            cache.put(cacheKey, compiledDeviceTemplate);
+        }
+        return compiledDeviceTemplate;
+    }
+
+    public void invalidateDeviceTemplates(List<Long> deviceTemplateIds) {
+        if (CollectionUtils.isEmpty(deviceTemplateIds)) {
+            return;
+        }
+
+        messagePubSub.publishAfterCommit(DeviceTemplateCacheInvalidationEvent.builder()
+                .deviceTemplateIds(deviceTemplateIds)
+                .build());
+    }
+
+    public void invalidateBlueprintLibrary(Long blueprintLibraryId, String blueprintLibraryVersion) {
+        if (blueprintLibraryId == null) {
+            return;
+        }
+
+        messagePubSub.publishAfterCommit(DeviceTemplateCacheInvalidationEvent.builder()
+                .blueprintLibraryId(blueprintLibraryId)
+                .blueprintLibraryVersion(blueprintLibraryVersion)
+                .build());
+    }
+
+    @MessageListener
+    public void onDeviceTemplateCacheInvalidation(DeviceTemplateCacheInvalidationEvent event) {
+        log.debug("Received device template cache invalidation event: {}", event);
+        if (!CollectionUtils.isEmpty(event.getDeviceTemplateIds())) {
+            evictDeviceTemplates(event.getDeviceTemplateIds());
+        }
+
+        if (event.getBlueprintLibraryId() != null) {
+            evictBlueprintLibrary(event.getBlueprintLibraryId(), event.getBlueprintLibraryVersion());
+        }
+    }
+
+    void evictDeviceTemplates(Collection<Long> deviceTemplateIds) {
+        Set<Long> ids = new HashSet<>(deviceTemplateIds);
+        cache.asMap().values().removeIf(compiledDeviceTemplate -> ids.contains(compiledDeviceTemplate.getDeviceTemplateId()));
+    }
+
+    void evictBlueprintLibrary(Long blueprintLibraryId, String blueprintLibraryVersion) {
+        cache.asMap().values().removeIf(compiledDeviceTemplate -> compiledDeviceTemplate.isFromBlueprintLibrary(blueprintLibraryId, blueprintLibraryVersion));
+    }
+
+    private String getCacheKey(DeviceTemplate deviceTemplate) {
+        return deviceTemplate.getId()
+                + ":" + deviceTemplate.getBlueprintLibraryId()
+                + "@" + deviceTemplate.getBlueprintLibraryVersion()
+                + ":" + deviceTemplate.getVendor()
+                + ":" + deviceTemplate.getModel()
+                + ":" + (deviceTemplate.getUpdatedAt() != null
+                ? deviceTemplate.getUpdatedAt().toString()
+                : DigestUtils.sha256Hex(deviceTemplate.getContent()));
+    }
+}
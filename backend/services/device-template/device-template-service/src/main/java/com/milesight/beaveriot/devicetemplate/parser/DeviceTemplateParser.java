@@ -79,6 +79,7 @@ import java.util.function.BiFunction;
 @Slf4j
 @Service
 public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
+    private static final String INITIAL_ENTITIES_FIELD = "initial_entities";
     private static JsonSchema schema;
     private static String defaultContent;
     private final IntegrationServiceProvider integrationServiceProvider;
@@ -91,6 +92,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
     private final EntityServiceProvider entityServiceProvider;
     private final ICodecExecutorFacade codecExecutorFacade;
     private final MergedResourceBundleMessageSource messageSource;
+    private final CompiledDeviceTemplateCache compiledDeviceTemplateCache;
 
     static {
         initSchema();
@@ -129,7 +131,8 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
                                 IBlueprintFacade blueprintFacade,
                                 EntityServiceProvider entityServiceProvider,
                                 @Lazy ICodecExecutorFacade codecExecutorFacade,
-                                MergedResourceBundleMessageSource messageSource) {
+                                MergedResourceBundleMessageSource messageSource,
+                                CompiledDeviceTemplateCache compiledDeviceTemplateCache) {
         this.integrationServiceProvider = integrationServiceProvider;
         this.deviceServiceProvider = deviceServiceProvider;
         this.deviceTemplateService = deviceTemplateService;
@@ -140,6 +143,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         this.entityServiceProvider = entityServiceProvider;
         this.codecExecutorFacade = codecExecutorFacade;
         this.messageSource = messageSource;
+        this.compiledDeviceTemplateCache = compiledDeviceTemplateCache;
     }
 
     @Override
@@ -311,13 +315,11 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
             deviceTemplate = deviceTemplateService.findByKey(deviceTemplateKey);
         }
 
-        String deviceTemplateContent = getContentAndValidateDeviceTemplate(integration, deviceTemplate);
-        DeviceTemplateModel deviceTemplateModel = parse(deviceTemplateContent);
+        CompiledDeviceTemplate compiledDeviceTemplate = getCompiledDeviceTemplate(integration, deviceTemplate);
+        DeviceTemplateModel deviceTemplateModel = compiledDeviceTemplate.getModel();
         JsonNode jsonNode;
-        BlueprintLibrary blueprintLibrary = null;
         if (data instanceof byte[] byteData) {
-            blueprintLibrary = getBlueprintLibrary(deviceTemplate);
-            IDeviceCodecExecutorFacade deviceCodecExecutorFacade = codecExecutorFacade.getDeviceCodecExecutor(blueprintLibrary, deviceTemplate.getVendor(), deviceTemplate.getModel());
+            IDeviceCodecExecutorFacade deviceCodecExecutorFacade = getDeviceCodecExecutor(compiledDeviceTemplate, deviceTemplate);
             if (deviceCodecExecutorFacade == null) {
                 throw ServiceException.with(ServerErrorCode.DEVICE_DATA_DECODE_FAILED.getErrorCode(), ServerErrorCode.DEVICE_DATA_DECODE_FAILED.getErrorMessage()).build();
             }
@@ -337,14 +339,13 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         Map<String, JsonNode> flatJsonDataMap = new HashMap<>();
         flattenJsonData(jsonNode, flatJsonDataMap, "");
 
-        Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap = new HashMap<>();
-        flattenJsonInputDescription(deviceTemplateModel.getDefinition().getInput().getProperties(), flatJsonInputDescriptionMap, "");
+        Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap = compiledDeviceTemplate.getFlatJsonInputDescriptionMap();
 
-        String deviceIdKey = getDeviceIdKey(flatJsonInputDescriptionMap);
+        String deviceIdKey = compiledDeviceTemplate.getDeviceIdKey();
         if (deviceIdKey != null && flatJsonDataMap.get(deviceIdKey) == null && deviceIdentifier != null) {
             flatJsonDataMap.put(deviceIdKey, JsonUtils.getObjectMapper().valueToTree(deviceIdentifier));
         }
-        String deviceNameKey = getDeviceNameKey(flatJsonInputDescriptionMap);
+        String deviceNameKey = compiledDeviceTemplate.getDeviceNameKey();
         if (deviceNameKey != null && flatJsonDataMap.get(deviceNameKey) == null && deviceName != null) {
             flatJsonDataMap.put(deviceNameKey, JsonUtils.getObjectMapper().valueToTree(deviceName));
         }
@@ -359,7 +360,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
             deviceName = (deviceNameKey == null || flatJsonDataMap.get(deviceNameKey) == null) ? deviceIdentifier : flatJsonDataMap.get(deviceNameKey).asText();
 
             // Build device and device entities
-            device = buildDeviceAndDeviceEntities(integration, deviceIdentifier, deviceName, deviceTemplate, deviceTemplateModel);
+            device = buildDeviceAndDeviceEntities(integration, deviceIdentifier, deviceName, deviceTemplate, compiledDeviceTemplate);
 
             Device existDevice = deviceServiceProvider.findByKey(device.getKey());
             if (existDevice != null) {
@@ -372,6 +373,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
                 // Save device
                 deviceServiceProvider.save(device);
 
+                BlueprintLibrary blueprintLibrary = data instanceof byte[] ? getBlueprintLibrary(deviceTemplate) : null;
                 createDeviceBlueprint(device, blueprintLibrary, deviceTemplate.getVendor(), deviceTemplateModel, BlueprintCreationStrategy.OPTIONAL);
                 result.setDeviceAutoSaved(true);
             }
@@ -388,6 +390,10 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         return result;
     }
 
+    private IDeviceCodecExecutorFacade getDeviceCodecExecutor(CompiledDeviceTemplate compiledDeviceTemplate, DeviceTemplate deviceTemplate) {
+        return compiledDeviceTemplate.getCodecExecutor(() -> codecExecutorFacade.getDeviceCodecExecutor(getBlueprintLibrary(deviceTemplate), deviceTemplate.getVendor(), deviceTemplate.getModel()));
+    }
+
     private BlueprintLibrary getBlueprintLibrary(DeviceTemplate deviceTemplate) {
         BlueprintLibrary blueprintLibrary = blueprintLibraryFacade.findById(deviceTemplate.getBlueprintLibraryId());
         if (blueprintLibrary == null) {
@@ -486,16 +492,15 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
             }
 
             DeviceTemplate deviceTemplate = deviceTemplateService.findByKey(deviceTemplateKey);
-            String deviceTemplateContent = getContentAndValidateDeviceTemplate(null, deviceTemplate);
-            DeviceTemplateModel deviceTemplateModel = parse(deviceTemplateContent);
+            CompiledDeviceTemplate compiledDeviceTemplate = getCompiledDeviceTemplate(null, deviceTemplate);
+            DeviceTemplateModel deviceTemplateModel = compiledDeviceTemplate.getModel();
             if (deviceTemplateModel.getDefinition().getOutput() == null) {
                 throw ServiceException.with(ServerErrorCode.DEVICE_TEMPLATE_DEFINITION_OUTPUT_NOT_FOUND.getErrorCode(), ServerErrorCode.DEVICE_TEMPLATE_DEFINITION_OUTPUT_NOT_FOUND.getErrorMessage()).build();
             }
 
             JsonNode outputData = buildJsonNode(deviceTemplateModel.getDefinition().getOutput(), deviceKey, payload);
 
-            BlueprintLibrary blueprintLibrary = getBlueprintLibrary(deviceTemplate);
-            IDeviceCodecExecutorFacade deviceCodecExecutorFacade = codecExecutorFacade.getDeviceCodecExecutor(blueprintLibrary, deviceTemplate.getVendor(), deviceTemplate.getModel());
+            IDeviceCodecExecutorFacade deviceCodecExecutorFacade = getDeviceCodecExecutor(compiledDeviceTemplate, deviceTemplate);
             if (deviceCodecExecutorFacade == null) {
                 result.setOutput(outputData);
                 return result;
@@ -610,14 +615,15 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
                                boolean shouldSaveDevice,
                                BiFunction<Device, Map<String, Object>, Boolean> beforeSaveDevice,
                                BlueprintCreationStrategy strategy) {
-        String deviceTemplateContent = getContentAndValidateDeviceTemplate(integration, deviceTemplate);
-
-        DeviceTemplateModel deviceTemplateModel = parse(deviceTemplateContent);
+        CompiledDeviceTemplate compiledDeviceTemplate = getCompiledDeviceTemplate(integration, deviceTemplate);
+        DeviceTemplateModel deviceTemplateModel = compiledDeviceTemplate.getModel();
 
         // Build device and device entities
-        Device device = buildDeviceAndDeviceEntities(integration, deviceIdentifier, deviceName, deviceTemplate, deviceTemplateModel);
+        Device device = buildDeviceAndDeviceEntities(integration, deviceIdentifier, deviceName, deviceTemplate, compiledDeviceTemplate);
 
-        if (beforeSaveDevice != null && !beforeSaveDevice.apply(device, deviceTemplateModel.getMetadata())) {
+        // The model is shared through the compiled template cache, hand out a copy of the metadata
+        Map<String, Object> metadata = deviceTemplateModel.getMetadata() == null ? null : new HashMap<>(deviceTemplateModel.getMetadata());
+        if (beforeSaveDevice != null && !beforeSaveDevice.apply(device, metadata)) {
             return null;
         }
 
@@ -639,12 +645,12 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         return device;
     }
 
-    private Device buildDeviceAndDeviceEntities(String integration, String deviceIdentifier, String deviceName, DeviceTemplate deviceTemplate, DeviceTemplateModel deviceTemplateModel) {
+    private Device buildDeviceAndDeviceEntities(String integration, String deviceIdentifier, String deviceName, DeviceTemplate deviceTemplate, CompiledDeviceTemplate compiledDeviceTemplate) {
         // Build device
         Device device = buildDevice(integration, deviceIdentifier, deviceName, deviceTemplate.getKey());
 
         // Build device entities
-        List<Entity> deviceEntities = buildDeviceEntities(integration, device.getKey(), deviceTemplateModel.getInitialEntities());
+        List<Entity> deviceEntities = buildDeviceEntities(integration, device.getKey(), compiledDeviceTemplate.newInitialEntities());
         device.setEntities(deviceEntities);
         return device;
     }
@@ -781,7 +787,7 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
         return deviceTemplate;
     }
 
-    private String getContentAndValidateDeviceTemplate(String integration, DeviceTemplate deviceTemplate) {
+    private CompiledDeviceTemplate getCompiledDeviceTemplate(String integration, DeviceTemplate deviceTemplate) {
         if (integration != null && integrationServiceProvider.getIntegration(integration) == null) {
             throw ServiceException.with(ServerErrorCode.INTEGRATION_NOT_FOUND.getErrorCode(), ServerErrorCode.INTEGRATION_NOT_FOUND.getErrorMessage()).build();
         }
@@ -790,12 +796,26 @@ public class DeviceTemplateParser implements IDeviceTemplateParserFacade {
             throw ServiceException.with(ServerErrorCode.DEVICE_TEMPLATE_NOT_FOUND.getErrorCode(), ServerErrorCode.DEVICE_TEMPLATE_NOT_FOUND.getErrorMessage()).build();
         }
 
+        return compiledDeviceTemplateCache.get(deviceTemplate, this::compile);
+    }
+
+    private CompiledDeviceTemplate compile(DeviceTemplate deviceTemplate) {
         String content = deviceTemplate.getContent();
-        if (!validate(content)) {
-            return null;
-        }
+        validate(content);
+        DeviceTemplateModel deviceTemplateModel = parse(content);
+        JsonNode initialEntitiesNode = YamlUtils.fromYAML(content).get(INITIAL_ENTITIES_FIELD);
+
+        Map<String, DeviceTemplateModel.Definition.InputJsonObject> flatJsonInputDescriptionMap = new HashMap<>();
+        flattenJsonInputDescription(deviceTemplateModel.getDefinition().getInput().getProperties(), flatJsonInputDescriptionMap, "");
 
-        return content;
+        return new CompiledDeviceTemplate(deviceTemplate.getId(),
+                deviceTemplate.getBlueprintLibraryId(),
+                deviceTemplate.getBlueprintLibraryVersion(),
+                deviceTemplateModel,
+                initialEntitiesNode,
+                flatJsonInputDescriptionMap,
+                getDeviceIdKey(flatJsonInputDescriptionMap),
+                getDeviceNameKey(flatJsonInputDescriptionMap));
     }
 
     public DeviceTemplateModel parse(String deviceTemplateContent) {
@@ -15,6 +15,7 @@ import com.milesight.beaveriot.context.security.SecurityUserContext;
 import com.milesight.beaveriot.data.filterable.Filterable;
 import com.milesight.beaveriot.devicetemplate.dto.DeviceTemplateDTO;
 import com.milesight.beaveriot.devicetemplate.facade.IDeviceTemplateFacade;
+import com.milesight.beaveriot.devicetemplate.parser.CompiledDeviceTemplateCache;
 import com.milesight.beaveriot.devicetemplate.po.DeviceTemplatePO;
 import com.milesight.beaveriot.devicetemplate.repository.DeviceTemplateRepository;
 import com.milesight.beaveriot.devicetemplate.support.DeviceTemplateConverter;
@@ -41,13 +42,15 @@ public class DeviceTemplateService implements IDeviceTemplateFacade {
     private final IntegrationServiceProvider integrationServiceProvider;
     private final DeviceServiceProvider deviceServiceProvider;
     private final EntityServiceProvider entityServiceProvider;
+    private final CompiledDeviceTemplateCache compiledDeviceTemplateCache;
 
-    public DeviceTemplateService(DeviceTemplateRepository deviceTemplateRepository, DeviceTemplateConverter deviceTemplateConverter, @Lazy IntegrationServiceProvider integrationServiceProvider, @Lazy DeviceServiceProvider deviceServiceProvider, @Lazy EntityServiceProvider entityServiceProvider) {
+    public DeviceTemplateService(DeviceTemplateRepository deviceTemplateRepository, DeviceTemplateConverter deviceTemplateConverter, @Lazy IntegrationServiceProvider integrationServiceProvider, @Lazy DeviceServiceProvider deviceServiceProvider, @Lazy EntityServiceProvider entityServiceProvider, CompiledDeviceTemplateCache compiledDeviceTemplateCache) {
         this.deviceTemplateRepository = deviceTemplateRepository;
         this.deviceTemplateConverter = deviceTemplateConverter;
         this.integrationServiceProvider = integrationServiceProvider;
         this.deviceServiceProvider = deviceServiceProvider;
         this.entityServiceProvider = entityServiceProvider;
+        this.compiledDeviceTemplateCache = compiledDeviceTemplateCache;
     }
 
     @Override
@@ -133,6 +136,7 @@ public class DeviceTemplateService implements IDeviceTemplateFacade {
             deviceTemplatePO = deviceTemplateRepository.save(deviceTemplatePO);
         } else if (shouldUpdate) {
             deviceTemplatePO = deviceTemplateRepository.save(deviceTemplatePO);
+            compiledDeviceTemplateCache.invalidateDeviceTemplates(List.of(deviceTemplatePO.getId()));
         }
 
         deviceTemplate.setId(deviceTemplatePO.getId());
@@ -404,10 +408,13 @@ public class DeviceTemplateService implements IDeviceTemplateFacade {
         deviceTemplateRepository.deleteById(deviceTemplate.getId());
 
         deviceServiceProvider.deleteByDeviceTemplateKey(deviceTemplate.getKey());
+
+        compiledDeviceTemplateCache.invalidateDeviceTemplates(List.of(deviceTemplate.getId()));
     }
 
     @Transactional(rollbackFor = Exception.class)
     public void deleteDeviceTemplateByIdInIgnoreTenant(List<Long> ids) {
         deviceTemplateRepository.deleteByIdInIgnoreTenant(ids);
+        compiledDeviceTemplateCache.invalidateDeviceTemplates(ids);
     }
 }
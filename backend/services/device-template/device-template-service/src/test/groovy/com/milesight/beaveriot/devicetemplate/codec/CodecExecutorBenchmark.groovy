@@ -0,0 +1,91 @@
+package com.milesight.beaveriot.devicetemplate.codec
+
+import com.milesight.beaveriot.base.pool.component.ObjectPoolManager
+import org.graalvm.polyglot.Context
+import org.graalvm.polyglot.Engine
+import org.graalvm.polyglot.Source
+import org.springframework.context.support.GenericApplicationContext
+import spock.lang.Specification
+
+/**
+ * Decode latency of a codec script with a context built per message, as before the pool, and with pooled contexts,
+ * including the check of the global scope after each message. Not part of the default test run, start it with
+ * {@code mvn test -Dtest=CodecExecutorBenchmark}.
+ */
+class CodecExecutorBenchmark extends Specification {
+
+    static final int WARMUP = 200
+
+    static final int MESSAGES = 2_000
+
+    static final String CODE = '''
+        function readUInt16LE(bytes) { return (bytes[1] << 8) + bytes[0]; }
+        function decode(bytes) {
+            var decoded = {};
+            for (var i = 0; i < bytes.length;) {
+                var channel = bytes[i++];
+                var type = bytes[i++];
+                if (channel === 0x01 && type === 0x75) {
+                    decoded.battery = bytes[i];
+                    i += 1;
+                } else if (channel === 0x03 && type === 0x67) {
+                    decoded.temperature = readUInt16LE(bytes.slice(i, i + 2)) / 10;
+                    i += 2;
+                } else if (channel === 0x04 && type === 0x68) {
+                    decoded.humidity = bytes[i] / 2;
+                    i += 1;
+                } else {
+                    break;
+                }
+            }
+            return decoded;
+        }
+        '''
+
+    static final byte[] PAYLOAD = [0x01, 0x75, 0x5C, 0x03, 0x67, 0x34, 0x01, 0x04, 0x68, 0x65] as byte[]
+
+    def "decode latency with fresh and pooled contexts"() {
+        given:
+        def applicationContext = new GenericApplicationContext()
+        applicationContext.refresh()
+        def engine = new CodecScriptEngine(new ObjectPoolManager(applicationContext))
+        def executor = CodecExecutor.builder()
+                .script(engine.compile(CODE))
+                .entry("decode")
+                .arguments([Argument.of("bytes", true)])
+                .scriptEngine(engine)
+                .build()
+        def sharedEngine = Engine.newBuilder("js").option("engine.WarnInterpreterOnly", "false").build()
+        def source = Source.create("js", CODE)
+
+        when:
+        WARMUP.times { fresh(sharedEngine, source) }
+        def freshNanos = time { fresh(sharedEngine, source) }
+        WARMUP.times { executor.execute(PAYLOAD, null) }
+        def pooledNanos = time { executor.execute(PAYLOAD, null) }
+        println String.format("%-8s %14s", "context", "us/message")
+        println String.format("%-8s %14d", "fresh", (freshNanos / MESSAGES / 1000) as long)
+        println String.format("%-8s %14d", "pooled", (pooledNanos / MESSAGES / 1000) as long)
+
+        then:
+        pooledNanos < freshNanos
+
+        cleanup:
+        engine.destroy()
+        sharedEngine.close()
+        applicationContext.close()
+    }
+
+    private static void fresh(Engine sharedEngine, Source source) {
+        try (def context = Context.newBuilder("js").engine(sharedEngine).build()) {
+            context.eval(source)
+            context.getBindings("js").getMember("decode").execute(PAYLOAD.collect { it & 0xFF } as int[])
+        }
+    }
+
+    private static long time(Closure action) {
+        long start = System.nanoTime()
+        MESSAGES.times { action() }
+        return System.nanoTime() - start
+    }
+}
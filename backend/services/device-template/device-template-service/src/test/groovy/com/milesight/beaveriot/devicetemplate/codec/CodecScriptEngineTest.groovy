@@ -0,0 +1,193 @@
+package com.milesight.beaveriot.devicetemplate.codec
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.milesight.beaveriot.base.pool.component.ObjectPoolManager
+import org.graalvm.polyglot.PolyglotException
+import org.springframework.context.support.GenericApplicationContext
+import spock.lang.Specification
+
+import java.time.Duration
+
+class CodecScriptEngineTest extends Specification {
+
+    GenericApplicationContext applicationContext
+
+    ObjectPoolManager objectPoolManager
+
+    CodecScriptEngine engine
+
+    def setup() {
+        applicationContext = new GenericApplicationContext()
+        applicationContext.refresh()
+        objectPoolManager = new ObjectPoolManager(applicationContext)
+        engine = new CodecScriptEngine(objectPoolManager)
+    }
+
+    def cleanup() {
+        engine.destroy()
+        applicationContext.close()
+    }
+
+    def "decode should convert the payload and the result"() {
+        given:
+        def executor = executor('''
+            function decode(bytes, options) {
+                return { sum: bytes[0] + bytes[1], unit: options.unit, items: [1, 'a', null] };
+            }
+            ''')
+
+        when:
+        def result = executor.execute([1, 2] as byte[], [options: CodecExecutor.JSON.readTree('{"unit":"C"}')]) as JsonNode
+
+        then:
+        result.toString() == '{"sum":3,"unit":"C","items":[1,"a",null]}'
+    }
+
+    def "contexts left unchanged by a message should be reused"() {
+        given:
+        def script = engine.compile('function decode(bytes) { return { size: bytes.length }; }')
+        def executor = executor(script)
+
+        when:
+        5.times { executor.execute([1] as byte[], null) }
+
+        then:
+        with(engine.getContextPool(script).getStatistics()) {
+            totalObjects() == 1
+            idleObjects() == 1
+        }
+    }
+
+    def "state kept by a message should not be visible to the next message"() {
+        given:
+        def script = engine.compile(code)
+        def executor = executor(script)
+
+        when:
+        def results = (1..3).collect { (executor.execute([1] as byte[], null) as JsonNode).toString() }
+
+        then:
+        results.unique() == [expected]
+        engine.getContextPool(script).getStatistics().totalObjects() == 1
+
+        where:
+        code                                                                                                | expected
+        'var count = 0; function decode(bytes) { count++; return { count: count }; }'                      | '{"count":1}'
+        'let count = 0; function decode(bytes) { count++; return { count: count }; }'                      | '{"count":1}'
+        'const seen = []; function decode(bytes) { seen.push(1); return { count: seen.length }; }'         | '{"count":1}'
+        'function decode(bytes) { const patched = ({}).patched === true; Object.prototype.patched = true; return { patched: patched }; }' | '{"patched":false}'
+        'function decode(bytes) { const patched = JSON.parse("1") === 2; JSON.parse = () => 2; return { patched: patched }; }'            | '{"patched":false}'
+        'function decode(bytes) { const patched = [1].map(x => x).length === 0; Array.prototype.map = () => []; return { patched: patched }; }' | '{"patched":false}'
+        'function decode(bytes) { const leaked = typeof helper !== "undefined"; globalThis.helper = 1; return { leaked: leaked }; }'       | '{"leaked":false}'
+        'function decode(bytes) { const leaked = typeof decoded !== "undefined"; decoded = {}; return { leaked: leaked }; }'              | '{"leaked":false}'
+        'function decode(bytes) { decode.calls = (decode.calls || 0) + 1; return { count: decode.calls }; }'                              | '{"count":1}'
+    }
+
+    def "a context whose changes cannot be undone should not be reused"() {
+        given:
+        def script = engine.compile('const table = { a: 1 }; function decode(bytes) { const frozen = Object.isFrozen(table); Object.freeze(table); return { frozen: frozen }; }')
+        def executor = executor(script)
+
+        when:
+        def results = (1..3).collect { (executor.execute([1] as byte[], null) as JsonNode).toString() }
+
+        then:
+        results.unique() == ['{"frozen":false}']
+        engine.getContextPool(script).getStatistics().totalObjects() == 0
+    }
+
+    def "built-in properties should still be overridable on instances"() {
+        given:
+        def executor = executor('''
+            function decode(bytes) {
+                const value = {};
+                value.toString = () => 'custom';
+                const error = new Error();
+                error.name = 'DecodeError';
+                return { value: String(value), error: error.name, patched: (() => { try { Object.prototype.toString = null; return true; } catch (e) { return false; } })() };
+            }
+            ''')
+
+        when:
+        def results = (1..2).collect { (executor.execute([1] as byte[], null) as JsonNode).toString() }
+
+        then:
+        results.unique() == ['{"value":"custom","error":"DecodeError","patched":false}']
+    }
+
+    def "a message failing in the script should not break the next message"() {
+        given:
+        def executor = executor('function decode(bytes) { if (bytes[0] === 0) { throw new Error("bad payload"); } return { ok: true }; }')
+
+        when:
+        executor.execute([0] as byte[], null)
+
+        then:
+        thrown(PolyglotException)
+
+        when:
+        def result = executor.execute([1] as byte[], null) as JsonNode
+
+        then:
+        result.toString() == '{"ok":true}'
+    }
+
+    def "a broken script should fail when its pool is created"() {
+        when:
+        engine.getContextPool(engine.compile('function decode( {'))
+
+        then:
+        thrown(PolyglotException)
+    }
+
+    def "the pool of a script not executed for a while should be destroyed"() {
+        given:
+        engine = new CodecScriptEngine(objectPoolManager, Duration.ofMillis(50))
+        def script = engine.compile('function decode(bytes) { return {}; }')
+        executor(script).execute([1] as byte[], null)
+        def pool = engine.getContextPool(script)
+
+        when:
+        sleep(100)
+        engine.contextPools.cleanUp()
+
+        then:
+        pool.isClosed()
+        !applicationContext.containsBean("object-pool:codec-context:" + script.hash())
+
+        when:
+        def result = executor(script).execute([1] as byte[], null) as JsonNode
+
+        then:
+        result.toString() == '{}'
+        !engine.getContextPool(script).is(pool)
+    }
+
+    def "a pool closed after lookup should be replaced"() {
+        given:
+        def script = engine.compile('function decode(bytes) { return { ok: true }; }')
+        def pool = engine.getContextPool(script)
+        objectPoolManager.removePool("codec-context:" + script.hash())
+
+        when:
+        def result = executor(script).execute([1] as byte[], null) as JsonNode
+
+        then:
+        pool.isClosed()
+        result.toString() == '{"ok":true}'
+        !engine.getContextPool(script).is(pool)
+    }
+
+    private CodecExecutor executor(String code) {
+        executor(engine.compile(code))
+    }
+
+    private CodecExecutor executor(CodecScriptEngine.CodecScript script) {
+        CodecExecutor.builder()
+                .script(script)
+                .entry("decode")
+                .arguments([Argument.of("bytes", true), Argument.of("options")])
+                .scriptEngine(engine)
+                .build()
+    }
+}
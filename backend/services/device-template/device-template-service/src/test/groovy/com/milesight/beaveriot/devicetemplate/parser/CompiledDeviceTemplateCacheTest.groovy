@@ -0,0 +1,151 @@
+package com.milesight.beaveriot.devicetemplate.parser
+
+import com.milesight.beaveriot.context.integration.model.DeviceTemplate
+import com.milesight.beaveriot.devicetemplate.model.DeviceTemplateCacheInvalidationEvent
+import com.milesight.beaveriot.pubsub.MessagePubSub
+import spock.lang.Specification
+
+import java.util.function.Function
+
+class CompiledDeviceTemplateCacheTest extends Specification {
+
+    MessagePubSub messagePubSub = Mock()
+
+    CompiledDeviceTemplateCache cache = new CompiledDeviceTemplateCache(messagePubSub)
+
+    int compilations = 0
+
+    Function<DeviceTemplate, CompiledDeviceTemplate> compiler = { DeviceTemplate deviceTemplate ->
+        compilations++
+        new CompiledDeviceTemplate(deviceTemplate.id, deviceTemplate.blueprintLibraryId, deviceTemplate.blueprintLibraryVersion,
+                null, null, [:], "devEUI", "name")
+    } as Function
+
+    def "should compile a template once while its modification time is unchanged"() {
+        when:
+        def first = cache.get(template(1L, 100L, "a"), compiler)
+        def second = cache.get(template(1L, 100L, "a"), compiler)
+
+        then:
+        first.is(second)
+        compilations == 1
+    }
+
+    def "should recompile a template once its modification time changes"() {
+        given:
+        def first = cache.get(template(1L, 100L, "a"), compiler)
+
+        when:
+        def second = cache.get(template(1L, 200L, "b"), compiler)
+
+        then:
+        !first.is(second)
+        compilations == 2
+    }
+
+    def "should key a template without modification time by its content"() {
+        when:
+        cache.get(template(1L, null, "a"), compiler)
+        cache.get(template(1L, null, "a"), compiler)
+        cache.get(template(1L, null, "b"), compiler)
+
+        then:
+        compilations == 2
+    }
+
+    def "should not cache a template without id or content"() {
+        when:
+        cache.get(template(null, 100L, "a"), compiler)
+        cache.get(template(null, 100L, "a"), compiler)
+        cache.get(template(1L, 100L, null), compiler)
+        cache.get(template(1L, 100L, null), compiler)
+
+        then:
+        compilations == 4
+    }
+
+    def "should not cache a failed compilation"() {
+        given:
+        def failing = { throw new IllegalArgumentException("invalid") } as Function
+
+        when:
+        cache.get(template(1L, 100L, "a"), failing)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        cache.get(template(1L, 100L, "a"), compiler)
+
+        then:
+        compilations == 1
+    }
+
+    def "should evict the templates named by an invalidation event"() {
+        given:
+        cache.get(template(1L, 100L, "a"), compiler)
+        cache.get(template(2L, 100L, "a"), compiler)
+
+        when:
+        cache.onDeviceTemplateCacheInvalidation(DeviceTemplateCacheInvalidationEvent.builder()
+                .deviceTemplateIds([1L])
+                .build())
+        cache.get(template(1L, 100L, "a"), compiler)
+        cache.get(template(2L, 100L, "a"), compiler)
+
+        then:
+        compilations == 3
+    }
+
+    def "should evict the templates of an invalidated blueprint library version"() {
+        given:
+        cache.get(template(1L, 100L, "a", 10L, "v1"), compiler)
+        cache.get(template(2L, 100L, "a", 10L, "v2"), compiler)
+        cache.get(template(3L, 100L, "a", 11L, "v1"), compiler)
+
+        when:
+        cache.onDeviceTemplateCacheInvalidation(DeviceTemplateCacheInvalidationEvent.builder()
+                .blueprintLibraryId(10L)
+                .blueprintLibraryVersion(version)
+                .build())
+        cache.get(template(1L, 100L, "a", 10L, "v1"), compiler)
+        cache.get(template(2L, 100L, "a", 10L, "v2"), compiler)
+        cache.get(template(3L, 100L, "a", 11L, "v1"), compiler)
+
+        then:
+        compilations == expectedCompilations
+
+        where:
+        version || expectedCompilations
+        "v1"    || 4
+        null    || 5
+    }
+
+    def "should broadcast invalidations after commit"() {
+        when:
+        cache.invalidateDeviceTemplates([1L, 2L])
+        cache.invalidateDeviceTemplates([])
+        cache.invalidateBlueprintLibrary(10L, "v1")
+        cache.invalidateBlueprintLibrary(null, "v1")
+
+        then:
+        1 * messagePubSub.publishAfterCommit({ DeviceTemplateCacheInvalidationEvent event -> event.deviceTemplateIds == [1L, 2L] })
+        1 * messagePubSub.publishAfterCommit({ DeviceTemplateCacheInvalidationEvent event ->
+            event.blueprintLibraryId == 10L && event.blueprintLibraryVersion == "v1"
+        })
+        0 * messagePubSub._
+    }
+
+    private static DeviceTemplate template(Long id, Long updatedAt, String content, Long blueprintLibraryId = null,
+                                           String blueprintLibraryVersion = null) {
+        def deviceTemplate = new DeviceTemplate()
+        deviceTemplate.id = id
+        deviceTemplate.updatedAt = updatedAt
+        deviceTemplate.content = content
+        deviceTemplate.vendor = "milesight"
+        deviceTemplate.model = "em300"
+        deviceTemplate.blueprintLibraryId = blueprintLibraryId
+        deviceTemplate.blueprintLibraryVersion = blueprintLibraryVersion
+        return deviceTemplate
+    }
+}
@@ -38,6 +38,7 @@ import com.milesight.beaveriot.devicetemplate.facade.IDeviceTemplateFacade;
 import com.milesight.beaveriot.entitytemplate.facade.IEntityTemplateFacade;
 import com.milesight.beaveriot.eventbus.EventBus;
 import com.milesight.beaveriot.permission.aspect.IntegrationPermission;
+import com.milesight.beaveriot.permission.facade.IPermissionFacade;
 import com.milesight.beaveriot.user.dto.UserDTO;
 import com.milesight.beaveriot.user.enums.ResourceType;
 import com.milesight.beaveriot.user.facade.IUserFacade;
@@ -112,6 +113,10 @@ public class DeviceService implements IDeviceFacade, IDeviceResponseFacade {
     @Autowired
     private IEntityTemplateFacade entityTemplateFacade;
 
+    @Lazy
+    @Autowired
+    private IPermissionFacade permissionFacade;
+
     @Lazy
     @Autowired
     private DeviceService self;
@@ -600,12 +605,13 @@ public class DeviceService implements IDeviceFacade, IDeviceResponseFacade {
 
     @CacheEvict(cacheNames = CacheKeyConstants.INTEGRATION_ID_TO_DEVICE, key = "T(com.milesight.beaveriot.context.security.TenantContext).getTenantId()+':'+#p0")
     public void evictIntegrationIdToDeviceCache(String integrationId) {
-        // do nothing
+        // devices of integrations are part of the data permissions
+        permissionFacade.evictDataPermissions();
     }
 
     @BatchCacheEvict(cacheNames = CacheKeyConstants.INTEGRATION_ID_TO_DEVICE, keyPrefix = CacheKeyConstants.TENANT_PREFIX)
     public void evictIntegrationIdToDeviceCache(@CacheKeys Collection<String> integrationIds) {
-        // do nothing
+        permissionFacade.evictDataPermissions();
     }
 
     public void moveDeviceToGroup(MoveDeviceToGroupRequest request) {
@@ -5,6 +5,6 @@ package com.milesight.beaveriot.device.status.constants;
  * create: 2025/9/22 9:53
  **/
 public class DeviceStatusConstants {
-    public static final String DELAYED_QUEUE_NAME = "device-status";
+    public static final String LAST_SEEN_KEY = "device:status:last-seen";
     public static final String IDENTIFIER_DEVICE_STATUS = "@status";
 }
@@ -0,0 +1,19 @@
+package com.milesight.beaveriot.device.status.detector;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Time of the latest uplink of each device.
+ * {@link #touch} is on the uplink hot path and must not block on remote calls.
+ */
+public interface DeviceLastSeenRegistry {
+    void touch(Long deviceId, long timestamp);
+
+    /**
+     * Get the latest known uplink times, devices never seen are absent from the result
+     */
+    Map<Long, Long> getLastSeen(Collection<Long> deviceIds);
+
+    void remove(Long deviceId);
+}
@@ -0,0 +1,257 @@
+package com.milesight.beaveriot.device.status.detector;
+
+import com.milesight.beaveriot.context.integration.model.DeviceStatus;
+import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.device.status.model.DeviceStatusTrackingEvent;
+import com.milesight.beaveriot.membership.ClusterMembership;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
+import com.milesight.beaveriot.pubsub.api.annotation.MessageListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Detects devices that stopped sending uplinks.
+ * <p>
+ * Every node tracks the offline timeout of every device in a {@link DeviceOfflineTimingWheel}, but only the owner of
+ * a device, chosen by consistent hash over the live cluster members, acts when its deadline passes. The owner
+ * re-checks the shared last seen time first, so uplinks received by other nodes keep the device online without any
+ * coordination on the uplink path.
+ * <p>
+ * Status transitions are broadcast with {@link DeviceStatusTrackingEvent}. Every node keeps the devices it knows to
+ * be online, so an uplink of such a device only records its last seen time.
+ */
+@Slf4j
+@Component
+public class DeviceOfflineDetector {
+    private static final int SHARD_COUNT = 16;
+    private static final int WHEEL_SIZE = 512;
+    private static final Duration TICK_DURATION = Duration.ofSeconds(1);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+    private final ClusterMembership clusterMembership;
+    private final DeviceLastSeenRegistry deviceLastSeenRegistry;
+    private final MessagePubSub messagePubSub;
+    private final DeviceOfflineTimingWheel timingWheel;
+    private final Map<Long, TrackedDevice> trackedDevices;
+    private final Set<Long> onlineDevices;
+    private final ExecutorService offlineExecutor;
+    private final ScheduledExecutorService tickExecutor;
+    private volatile Consumer<Long> offlineHandler;
+
+    public DeviceOfflineDetector(ClusterMembership clusterMembership,
+                                 DeviceLastSeenRegistry deviceLastSeenRegistry,
+                                 MessagePubSub messagePubSub) {
+        this.clusterMembership = clusterMembership;
+        this.deviceLastSeenRegistry = deviceLastSeenRegistry;
+        this.messagePubSub = messagePubSub;
+        this.timingWheel = new DeviceOfflineTimingWheel(SHARD_COUNT, WHEEL_SIZE, TICK_DURATION, System.currentTimeMillis());
+        this.trackedDevices = new ConcurrentHashMap<>();
+        this.onlineDevices = ConcurrentHashMap.newKeySet();
+        this.offlineExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread t = new Thread(runnable, "device-offline-handler");
+            t.setDaemon(true);
+            return t;
+        });
+        this.tickExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable, "device-offline-ticker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        tickExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                tick(System.currentTimeMillis());
+            } catch (Exception e) {
+                log.error("Error occurred while detecting offline devices", e);
+            }
+        }, TICK_DURATION.toMillis(), TICK_DURATION.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void setOfflineHandler(Consumer<Long> offlineHandler) {
+        this.offlineHandler = offlineHandler;
+    }
+
+    /**
+     * Record an uplink of the device.
+     *
+     * @return true if the device is known to be online already and nothing else has to be done
+     */
+    public boolean heartbeat(Long deviceId) {
+        deviceLastSeenRegistry.touch(deviceId, System.currentTimeMillis());
+        return onlineDevices.contains(deviceId);
+    }
+
+    /**
+     * Start tracking the device on this node only, its deadline starts from now
+     */
+    public void track(Long deviceId, Duration offlineTimeout) {
+        long now = System.currentTimeMillis();
+        trackedDevices.put(deviceId, new TrackedDevice(offlineTimeout.toMillis(), now, TenantContext.tryGetTenantId().orElse(null)));
+        timingWheel.schedule(deviceId, now + offlineTimeout.toMillis());
+    }
+
+    public void untrack(Long deviceId) {
+        trackedDevices.remove(deviceId);
+        timingWheel.cancel(deviceId);
+    }
+
+    public boolean isTracked(Long deviceId) {
+        return trackedDevices.containsKey(deviceId);
+    }
+
+    public boolean isOnline(Long deviceId) {
+        return onlineDevices.contains(deviceId);
+    }
+
+    /**
+     * The device status has been set to online, a null timeout means the device never goes offline by itself
+     */
+    public void markOnline(Long deviceId, Duration offlineTimeout) {
+        publish(DeviceStatusTrackingEvent.builder()
+                .deviceId(deviceId)
+                .status(DeviceStatus.ONLINE)
+                .offlineTimeoutMillis(offlineTimeout == null ? null : offlineTimeout.toMillis())
+                .build());
+    }
+
+    public void markOffline(Long deviceId) {
+        publish(DeviceStatusTrackingEvent.builder()
+                .deviceId(deviceId)
+                .status(DeviceStatus.OFFLINE)
+                .build());
+    }
+
+    public void remove(Long deviceId) {
+        publish(DeviceStatusTrackingEvent.builder()
+                .deviceId(deviceId)
+                .build());
+    }
+
+    @MessageListener
+    public void onDeviceStatusTracking(DeviceStatusTrackingEvent event) {
+        log.debug("Received device status tracking event: {}", event);
+        apply(event);
+    }
+
+    private void publish(DeviceStatusTrackingEvent event) {
+        // applied locally at once, the broadcast also comes back to this node and is applied again
+        apply(event);
+        messagePubSub.publishAfterCommit(event);
+    }
+
+    private void apply(DeviceStatusTrackingEvent event) {
+        Long deviceId = event.getDeviceId();
+        if (deviceId == null) {
+            return;
+        }
+
+        if (event.getStatus() == DeviceStatus.ONLINE) {
+            onlineDevices.add(deviceId);
+            if (event.getOfflineTimeoutMillis() != null) {
+                track(deviceId, Duration.ofMillis(event.getOfflineTimeoutMillis()));
+            } else {
+                untrack(deviceId);
+            }
+        } else {
+            onlineDevices.remove(deviceId);
+            untrack(deviceId);
+            if (event.getStatus() == null) {
+                deviceLastSeenRegistry.remove(deviceId);
+            }
+        }
+    }
+
+    void tick(long now) {
+        List<Long> dueDeviceIds = timingWheel.advance(now);
+        if (dueDeviceIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> ownedDeviceIds = new ArrayList<>();
+        dueDeviceIds.forEach(deviceId -> {
+            TrackedDevice trackedDevice = trackedDevices.get(deviceId);
+            if (trackedDevice == null) {
+                return;
+            }
+
+            if (clusterMembership.isLocalOwner(String.valueOf(deviceId))) {
+                ownedDeviceIds.add(deviceId);
+            } else {
+                // kept so that the device is still tracked here if its owner leaves the cluster
+                timingWheel.schedule(deviceId, now + trackedDevice.timeoutMillis());
+            }
+        });
+        if (ownedDeviceIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Long> lastSeen;
+        try {
+            lastSeen = deviceLastSeenRegistry.getLastSeen(ownedDeviceIds);
+        } catch (Exception e) {
+            log.warn("Failed to get last seen time of {} devices, retry later", ownedDeviceIds.size(), e);
+            ownedDeviceIds.forEach(deviceId -> timingWheel.schedule(deviceId, now + RETRY_DELAY.toMillis()));
+            return;
+        }
+
+        ownedDeviceIds.forEach(deviceId -> {
+            TrackedDevice trackedDevice = trackedDevices.get(deviceId);
+            if (trackedDevice == null) {
+                return;
+            }
+
+            long deadline = Math.max(trackedDevice.trackedAt(), lastSeen.getOrDefault(deviceId, 0L)) + trackedDevice.timeoutMillis();
+            if (deadline > now) {
+                timingWheel.schedule(deviceId, deadline);
+                return;
+            }
+
+            // checked again after another timeout in case the handler does not bring the device offline
+            timingWheel.schedule(deviceId, now + trackedDevice.timeoutMillis());
+            offlineExecutor.execute(() -> handleOffline(deviceId, trackedDevice.tenantId()));
+        });
+    }
+
+    private void handleOffline(Long deviceId, String tenantId) {
+        Consumer<Long> handler = offlineHandler;
+        if (handler == null) {
+            return;
+        }
+
+        try {
+            if (tenantId != null) {
+                TenantContext.setTenantId(tenantId);
+            }
+            handler.accept(deviceId);
+        } catch (Exception e) {
+            log.error("Error occurred while handling offline device {}", deviceId, e);
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        tickExecutor.shutdownNow();
+        offlineExecutor.shutdown();
+    }
+
+    private record TrackedDevice(long timeoutMillis, long trackedAt, String tenantId) {
+    }
+}
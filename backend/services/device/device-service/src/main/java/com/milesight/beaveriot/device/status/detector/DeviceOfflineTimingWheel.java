@@ -0,0 +1,148 @@
+package com.milesight.beaveriot.device.status.detector;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Hashed timing wheel of device offline deadlines, sharded by device id.
+ * <p>
+ * Each shard keeps the latest deadline of its devices in a concurrent map and buckets device ids by the tick of their
+ * deadline. Pushing a deadline further out is a single map write: the device stays in its old bucket and is moved to
+ * the right one when that bucket fires. Deadlines beyond one wheel revolution are parked in the last bucket and moved
+ * on the same way.
+ * <p>
+ * {@link #schedule} and {@link #cancel} are lock-free and can be called from any thread,
+ * {@link #advance} is expected to be called by a single ticker thread.
+ */
+public class DeviceOfflineTimingWheel {
+    private final long tickMillis;
+    private final int wheelMask;
+    private final int shardMask;
+    private final Shard[] shards;
+    private volatile long currentTick;
+
+    public DeviceOfflineTimingWheel(int shardCount, int wheelSize, Duration tickDuration, long startMillis) {
+        this(shardCount, wheelSize, tickDuration, startMillis, ConcurrentHashMap::new);
+    }
+
+    DeviceOfflineTimingWheel(int shardCount, int wheelSize, Duration tickDuration, long startMillis,
+                             Supplier<Map<Long, Long>> deadlinesFactory) {
+        if (Integer.bitCount(shardCount) != 1 || Integer.bitCount(wheelSize) != 1 || wheelSize < 2) {
+            throw new IllegalArgumentException("Shard count and wheel size must be powers of two, wheel size at least 2");
+        }
+        if (tickDuration.toMillis() <= 0) {
+            throw new IllegalArgumentException("Tick duration must be at least one millisecond");
+        }
+
+        this.tickMillis = tickDuration.toMillis();
+        this.wheelMask = wheelSize - 1;
+        this.shardMask = shardCount - 1;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(wheelSize, deadlinesFactory.get());
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    public void schedule(Long deviceId, long deadlineMillis) {
+        Shard shard = shardOf(deviceId);
+        Long previousDeadline = shard.deadlines.put(deviceId, deadlineMillis);
+        // a later deadline is picked up lazily when the old bucket fires, only an earlier one needs a new bucket
+        if (previousDeadline == null || deadlineMillis < previousDeadline) {
+            shard.bucket(bucketTick(deadlineMillis, currentTick)).add(deviceId);
+        }
+    }
+
+    public void cancel(Long deviceId) {
+        shardOf(deviceId).deadlines.remove(deviceId);
+    }
+
+    public boolean contains(Long deviceId) {
+        return shardOf(deviceId).deadlines.containsKey(deviceId);
+    }
+
+    public Long getDeadline(Long deviceId) {
+        return shardOf(deviceId).deadlines.get(deviceId);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.deadlines.size();
+        }
+        return size;
+    }
+
+    /**
+     * Fire all buckets up to the given time.
+     *
+     * @return ids of the devices whose deadline has passed, they are no longer scheduled
+     */
+    public synchronized List<Long> advance(long nowMillis) {
+        List<Long> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            long tick = ++currentTick;
+            for (Shard shard : shards) {
+                Queue<Long> bucket = shard.bucket(tick);
+                Long deviceId;
+                while ((deviceId = bucket.poll()) != null) {
+                    fire(shard, deviceId, tick, nowMillis, expired);
+                }
+            }
+        }
+        return expired;
+    }
+
+    private void fire(Shard shard, Long deviceId, long tick, long nowMillis, List<Long> expired) {
+        Long deadline;
+        while ((deadline = shard.deadlines.get(deviceId)) != null) {
+            if (deadline > nowMillis) {
+                shard.bucket(bucketTick(deadline, tick)).add(deviceId);
+                return;
+            }
+            if (shard.deadlines.remove(deviceId, deadline)) {
+                expired.add(deviceId);
+                return;
+            }
+            // the device was rescheduled meanwhile, a later deadline is not bucketed by schedule so it must be here
+        }
+    }
+
+    private long bucketTick(long deadlineMillis, long fromTick) {
+        long deadlineTick = deadlineMillis / tickMillis;
+        if (deadlineTick <= fromTick) {
+            return fromTick + 1;
+        }
+        return Math.min(deadlineTick, fromTick + wheelMask);
+    }
+
+    private Shard shardOf(Long deviceId) {
+        long hash = deviceId * 0x9E3779B97F4A7C15L;
+        return shards[(int) (hash >>> 32) & shardMask];
+    }
+
+    private class Shard {
+        private final Map<Long, Long> deadlines;
+        private final Queue<Long>[] buckets;
+
+        @SuppressWarnings("unchecked")
+        private Shard(int wheelSize, Map<Long, Long> deadlines) {
+            this.deadlines = deadlines;
+            buckets = new Queue[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new ConcurrentLinkedQueue<>();
+            }
+        }
+
+        private Queue<Long> bucket(long tick) {
+            return buckets[(int) (tick & wheelMask)];
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.milesight.beaveriot.device.status.detector;
+
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class DeviceStatusDetectorConfiguration {
+    @Bean
+    @ConditionalOnExpression("!'${spring.data.redis.host:}'.isEmpty()")
+    public DeviceLastSeenRegistry redisDeviceLastSeenRegistry(RedissonClient redissonClient) {
+        return new RedisDeviceLastSeenRegistry(redissonClient);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean({DeviceLastSeenRegistry.class})
+    public DeviceLastSeenRegistry localDeviceLastSeenRegistry() {
+        return new LocalDeviceLastSeenRegistry();
+    }
+}
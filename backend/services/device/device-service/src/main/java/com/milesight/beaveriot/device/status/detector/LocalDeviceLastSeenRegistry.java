@@ -0,0 +1,32 @@
+package com.milesight.beaveriot.device.status.detector;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class LocalDeviceLastSeenRegistry implements DeviceLastSeenRegistry {
+    private final Map<Long, Long> lastSeen = new ConcurrentHashMap<>();
+
+    @Override
+    public void touch(Long deviceId, long timestamp) {
+        lastSeen.put(deviceId, timestamp);
+    }
+
+    @Override
+    public Map<Long, Long> getLastSeen(Collection<Long> deviceIds) {
+        Map<Long, Long> result = new HashMap<>();
+        deviceIds.forEach(deviceId -> {
+            Long timestamp = lastSeen.get(deviceId);
+            if (timestamp != null) {
+                result.put(deviceId, timestamp);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void remove(Long deviceId) {
+        lastSeen.remove(deviceId);
+    }
+}
@@ -0,0 +1,98 @@
+package com.milesight.beaveriot.device.status.detector;
+
+import com.milesight.beaveriot.device.status.constants.DeviceStatusConstants;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Last seen registry shared by the cluster through a Redis hash.
+ * <p>
+ * Uplinks only update node local maps, the changed entries are written to Redis in one batch per
+ * {@link #FLUSH_INTERVAL}. Readers merge the shared entries with the local ones, so the owner of a device
+ * sees uplinks received by other nodes at most one flush interval late.
+ */
+@Slf4j
+public class RedisDeviceLastSeenRegistry implements DeviceLastSeenRegistry {
+    private static final Duration FLUSH_INTERVAL = Duration.ofSeconds(1);
+    private final RMap<Long, Long> sharedLastSeen;
+    private final Map<Long, Long> localLastSeen = new ConcurrentHashMap<>();
+    private final Map<Long, Long> pendingLastSeen = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushExecutor;
+
+    public RedisDeviceLastSeenRegistry(RedissonClient redissonClient) {
+        this.sharedLastSeen = redissonClient.getMap(DeviceStatusConstants.LAST_SEEN_KEY, LongCodec.INSTANCE);
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable, "device-last-seen-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        this.flushExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL.toMillis(), FLUSH_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void touch(Long deviceId, long timestamp) {
+        localLastSeen.put(deviceId, timestamp);
+        pendingLastSeen.put(deviceId, timestamp);
+    }
+
+    @Override
+    public Map<Long, Long> getLastSeen(Collection<Long> deviceIds) {
+        Map<Long, Long> result = new HashMap<>(sharedLastSeen.getAll(new HashSet<>(deviceIds)));
+        deviceIds.forEach(deviceId -> {
+            Long timestamp = localLastSeen.get(deviceId);
+            if (timestamp != null) {
+                result.merge(deviceId, timestamp, Math::max);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void remove(Long deviceId) {
+        localLastSeen.remove(deviceId);
+        pendingLastSeen.remove(deviceId);
+        sharedLastSeen.fastRemoveAsync(deviceId);
+    }
+
+    private void flush() {
+        if (pendingLastSeen.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Long> batch = new HashMap<>(pendingLastSeen);
+        batch.forEach(pendingLastSeen::remove);
+        try {
+            sharedLastSeen.putAll(batch);
+        } catch (Exception e) {
+            log.warn("Failed to flush last seen time of {} devices", batch.size(), e);
+            batch.forEach(pendingLastSeen::putIfAbsent);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushExecutor.shutdown();
+        try {
+            if (!flushExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                flushExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flushExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
@@ -0,0 +1,30 @@
+package com.milesight.beaveriot.device.status.model;
+
+import com.milesight.beaveriot.context.integration.model.DeviceStatus;
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Broadcast on device status transitions so that every node updates its offline detection state.
+ * A null status means the device is no longer tracked.
+ */
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceStatusTrackingEvent extends RemoteBroadcastMessage {
+
+    private Long deviceId;
+
+    private DeviceStatus status;
+
+    private Long offlineTimeoutMillis;
+
+}
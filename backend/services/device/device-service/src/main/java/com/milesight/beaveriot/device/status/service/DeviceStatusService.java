@@ -5,10 +5,9 @@ import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.context.api.*;
 import com.milesight.beaveriot.context.integration.model.*;
-import com.milesight.beaveriot.context.model.delayedqueue.DelayedQueue;
-import com.milesight.beaveriot.context.model.delayedqueue.DelayedTask;
 import com.milesight.beaveriot.context.support.SpringContext;
 import com.milesight.beaveriot.device.status.constants.DeviceStatusConstants;
+import com.milesight.beaveriot.device.status.detector.DeviceOfflineDetector;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -33,19 +32,20 @@ public class DeviceStatusService {
     private final EntityServiceProvider entityServiceProvider;
     private final EntityValueServiceProvider entityValueServiceProvider;
     private final Map<String, DeviceStatusConfig> integrationDeviceStatusConfigs;
-    private final DelayedQueue<Void> delayedQueue;
+    private final DeviceOfflineDetector deviceOfflineDetector;
 
     public DeviceStatusService(DeviceServiceProvider deviceServiceProvider,
                                EntityTemplateServiceProvider entityTemplateServiceProvider,
                                EntityServiceProvider entityServiceProvider,
                                EntityValueServiceProvider entityValueServiceProvider,
-                               DelayedQueueServiceProvider delayedQueueServiceProvider) {
+                               DeviceOfflineDetector deviceOfflineDetector) {
         this.deviceServiceProvider = deviceServiceProvider;
         this.entityTemplateServiceProvider = entityTemplateServiceProvider;
         this.entityServiceProvider = entityServiceProvider;
         this.entityValueServiceProvider = entityValueServiceProvider;
         this.integrationDeviceStatusConfigs = new ConcurrentHashMap<>();
-        this.delayedQueue = delayedQueueServiceProvider.getDelayedQueue(DeviceStatusConstants.DELAYED_QUEUE_NAME);
+        this.deviceOfflineDetector = deviceOfflineDetector;
+        deviceOfflineDetector.setOfflineHandler(this::handleOfflineTimeout);
     }
 
     public void register(String integrationId, DeviceStatusConfig config) {
@@ -55,7 +55,6 @@ public class DeviceStatusService {
             if (!CollectionUtils.isEmpty(devices)) {
                 initDevices(devices, config);
             }
-            delayedQueue.registerConsumer(integrationId, this::consumeDelayedTask);
         }
     }
 
@@ -64,14 +63,22 @@ public class DeviceStatusService {
             return;
         }
 
-        cancelDelayedTask(device.getId());
+        deviceOfflineDetector.remove(device.getId());
     }
 
+    /**
+     * Called on every uplink. Devices already known to be online only have their last seen time recorded,
+     * without taking the lock or reading the status value.
+     */
     public void online(Device device) {
         if (device == null) {
             return;
         }
 
+        if (deviceOfflineDetector.heartbeat(device.getId())) {
+            return;
+        }
+
         AvailableDeviceData availableDeviceData = getAvailableDeviceDataByDevice(device);
         self().handleStatus(device.getId(), availableDeviceData, DeviceStatusOperation.ONLINE);
     }
@@ -128,8 +135,13 @@ public class DeviceStatusService {
     public void handleStatus(Long deviceId,
                              AvailableDeviceData availableDeviceData,
                              DeviceStatusOperation operation) {
+        if (availableDeviceData == null) {
+            deviceOfflineDetector.remove(deviceId);
+            return;
+        }
+
         if (availableDeviceData.getDeviceStatusConfig() == null) {
-            cancelDelayedTask(deviceId);
+            deviceOfflineDetector.untrack(deviceId);
         }
 
         if (operation == DeviceStatusOperation.ONLINE) {
@@ -145,7 +157,7 @@ public class DeviceStatusService {
             devices.forEach(device -> {
                 Duration offlineDuration = getDeviceOfflineDuration(device, config);
                 if (offlineDuration != null) {
-                    offerDelayedTask(device, offlineDuration);
+                    deviceOfflineDetector.track(device.getId(), offlineDuration);
                 }
             });
         } else {
@@ -160,8 +172,8 @@ public class DeviceStatusService {
 
                 batchDevices.forEach(device -> {
                     Duration offlineDuration = deviceOfflineTimeoutMap.get(device.getId());
-                    if (offlineDuration != null) {
-                        offerDelayedTask(device, offlineDuration);
+                    if (offlineDuration != null && offlineDuration.toSeconds() > 0) {
+                        deviceOfflineDetector.track(device.getId(), offlineDuration);
                     }
                 });
             }
@@ -176,11 +188,8 @@ public class DeviceStatusService {
 
         DeviceStatusConfig config = availableDeviceData.getDeviceStatusConfig();
         Consumer<Device> onlineListener = Optional.ofNullable(config).map(DeviceStatusConfig::getOnlineListener).orElse(null);
-        updateDeviceStatusToOnline(device, onlineListener);
-
-        Duration offlineDuration = getDeviceOfflineDuration(device, config);
-        if (offlineDuration != null) {
-            offerDelayedTask(device, offlineDuration);
+        if (updateDeviceStatusToOnline(device, onlineListener)) {
+            deviceOfflineDetector.markOnline(device.getId(), getDeviceOfflineDuration(device, config));
         }
     }
 
@@ -192,30 +201,30 @@ public class DeviceStatusService {
 
         DeviceStatusConfig config = availableDeviceData.getDeviceStatusConfig();
         Consumer<Device> offlineListener = Optional.ofNullable(config).map(DeviceStatusConfig::getOfflineListener).orElse(null);
-        updateDeviceStatusToOffline(device, offlineListener);
-    }
-
-    private void offerDelayedTask(Device device, Duration offlineDuration) {
-        delayedQueue.offer(DelayedTask.of(String.valueOf(device.getId()), device.getIntegrationId(), null, offlineDuration));
+        if (updateDeviceStatusToOffline(device, offlineListener)) {
+            deviceOfflineDetector.markOffline(device.getId());
+        } else {
+            deviceOfflineDetector.untrack(device.getId());
+        }
     }
 
-    private void consumeDelayedTask(DelayedTask<Void> task) {
-        Long deviceId = Long.valueOf(task.getId());
+    private void handleOfflineTimeout(Long deviceId) {
         AvailableDeviceData availableDeviceData = getAvailableDeviceDataByDeviceId(deviceId);
         self().handleStatus(deviceId, availableDeviceData, DeviceStatusOperation.OFFLINE);
     }
 
-    private void cancelDelayedTask(Long deviceId) {
-        delayedQueue.cancel(String.valueOf(deviceId));
-    }
-
-    private DeviceStatusService self() {
+    protected DeviceStatusService self() {
         return SpringContext.getBean(DeviceStatusService.class);
     }
 
     protected AvailableDeviceData getAvailableDeviceDataByDeviceId(Long deviceId) {
         Device device = deviceServiceProvider.findById(deviceId);
-        return getAvailableDeviceDataByDevice(device);
+        if (device == null) {
+            return null;
+        }
+
+        AvailableDeviceData availableDeviceData = getAvailableDeviceDataByDevice(device);
+        return availableDeviceData.getDeviceStatusConfig() == null ? null : availableDeviceData;
     }
 
     protected AvailableDeviceData getAvailableDeviceDataByDevice(Device device) {
@@ -235,19 +244,22 @@ public class DeviceStatusService {
                 .orElse(null);
     }
 
-    private void updateDeviceStatusToOnline(Device device, Consumer<Device> onlineListener) {
-        updateDeviceStatus(device, DeviceStatus.ONLINE.name(), onlineListener);
+    private boolean updateDeviceStatusToOnline(Device device, Consumer<Device> onlineListener) {
+        return updateDeviceStatus(device, DeviceStatus.ONLINE.name(), onlineListener) != null;
     }
 
-    private void updateDeviceStatusToOffline(Device device, Consumer<Device> offlineListener) {
-        updateDeviceStatus(device, DeviceStatus.OFFLINE.name(), offlineListener);
+    private boolean updateDeviceStatusToOffline(Device device, Consumer<Device> offlineListener) {
+        return Boolean.TRUE.equals(updateDeviceStatus(device, DeviceStatus.OFFLINE.name(), offlineListener));
     }
 
-    private void updateDeviceStatus(Device device, String deviceStatus, Consumer<Device> statusChangedListener) {
+    /**
+     * @return true if the status has been changed, false if it is unchanged, null if the device no longer exists
+     */
+    private Boolean updateDeviceStatus(Device device, String deviceStatus, Consumer<Device> statusChangedListener) {
         String statusEntityKey = getStatusEntityKey(device);
         if (entityServiceProvider.findByKey(statusEntityKey) == null) {
             if (!deviceServiceProvider.existsById(device.getId())) {
-                return;
+                return null;
             }
 
             EntityTemplate entityTemplate = entityTemplateServiceProvider.findByKey(DeviceStatusConstants.IDENTIFIER_DEVICE_STATUS);
@@ -260,7 +272,7 @@ public class DeviceStatusService {
 
         String existValue = (String) entityValueServiceProvider.findValueByKey(statusEntityKey);
         if (existValue == null && deviceStatus.equals(DeviceStatus.OFFLINE.name()) || deviceStatus.equals(existValue)) {
-            return;
+            return false;
         }
 
         ExchangePayload payload = ExchangePayload.create(statusEntityKey, deviceStatus);
@@ -271,6 +283,7 @@ public class DeviceStatusService {
         } else {
             deviceOfflineCallback(device, statusChangedListener);
         }
+        return true;
     }
 
     private void deviceOnlineCallback(Device device, Consumer<Device> onlineListener) {
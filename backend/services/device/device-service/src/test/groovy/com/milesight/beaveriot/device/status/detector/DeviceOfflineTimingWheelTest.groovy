@@ -0,0 +1,105 @@
+package com.milesight.beaveriot.device.status.detector
+
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+
+class DeviceOfflineTimingWheelTest extends Specification {
+
+    static final long TICK = 10
+
+    static final int WHEEL_SIZE = 8
+
+    DeviceOfflineTimingWheel wheel = new DeviceOfflineTimingWheel(4, WHEEL_SIZE, Duration.ofMillis(TICK), 0)
+
+    def "should expire a device once its deadline has passed"() {
+        given:
+        wheel.schedule(1L, 25)
+
+        expect:
+        wheel.advance(20) == []
+        wheel.advance(30) == [1L]
+        !wheel.contains(1L)
+        wheel.size() == 0
+    }
+
+    def "should pick up a later deadline when the old bucket fires"() {
+        given:
+        wheel.schedule(1L, 25)
+
+        when:
+        wheel.schedule(1L, 55)
+
+        then:
+        wheel.getDeadline(1L) == 55
+        wheel.advance(30) == []
+        wheel.contains(1L)
+        wheel.advance(50) == []
+        wheel.advance(60) == [1L]
+    }
+
+    def "should put an earlier deadline into a new bucket"() {
+        given:
+        wheel.schedule(1L, 55)
+
+        when:
+        wheel.schedule(1L, 25)
+
+        then:
+        wheel.advance(30) == [1L]
+        // the entry left in the bucket of the old deadline is skipped
+        wheel.advance(60) == []
+    }
+
+    def "should move deadlines beyond one revolution on until they are due"() {
+        given:
+        long deadline = TICK * WHEEL_SIZE * 3 + 5
+        wheel.schedule(1L, deadline)
+
+        expect:
+        (1..WHEEL_SIZE * 3).every { wheel.advance(it * TICK).isEmpty() }
+        wheel.contains(1L)
+        wheel.advance(deadline + TICK) == [1L]
+    }
+
+    def "should not expire a cancelled device"() {
+        given:
+        wheel.schedule(1L, 25)
+
+        when:
+        wheel.cancel(1L)
+
+        then:
+        wheel.advance(100) == []
+        !wheel.contains(1L)
+    }
+
+    def "should keep a device rescheduled while its expired deadline is being fired"() {
+        given:
+        DeviceOfflineTimingWheel racingWheel = null
+        Runnable interleaved = null
+        // runs the concurrent schedule between the read of the expired deadline and its removal
+        def deadlines = new ConcurrentHashMap<Long, Long>() {
+            @Override
+            boolean remove(Object key, Object value) {
+                if (interleaved != null) {
+                    def action = interleaved
+                    interleaved = null
+                    action.run()
+                }
+                return super.remove(key, value)
+            }
+        }
+        racingWheel = new DeviceOfflineTimingWheel(1, WHEEL_SIZE, Duration.ofMillis(TICK), 0, { deadlines })
+        racingWheel.schedule(1L, 5)
+        interleaved = { racingWheel.schedule(1L, 55) }
+
+        expect:
+        racingWheel.advance(10) == []
+        racingWheel.getDeadline(1L) == 55
+        racingWheel.advance(50) == []
+        racingWheel.advance(60) == [1L]
+        !racingWheel.contains(1L)
+    }
+}
@@ -2,10 +2,15 @@ package com.milesight.beaveriot.device.status.service
 
 import com.milesight.beaveriot.context.api.*
 import com.milesight.beaveriot.context.integration.model.*
-import com.milesight.beaveriot.context.model.delayedqueue.DelayedQueue
 import com.milesight.beaveriot.device.status.constants.DeviceStatusConstants
+import com.milesight.beaveriot.device.status.detector.DeviceOfflineDetector
+import com.milesight.beaveriot.device.status.detector.LocalDeviceLastSeenRegistry
+import com.milesight.beaveriot.device.status.model.DeviceStatusTrackingEvent
+import com.milesight.beaveriot.membership.local.LocalClusterMembership
+import com.milesight.beaveriot.pubsub.MessagePubSub
 import spock.lang.Specification
 import spock.lang.Unroll
+import spock.util.concurrent.PollingConditions
 
 import java.time.Duration
 
@@ -19,8 +24,9 @@ class DeviceStatusServiceTest extends Specification {
     EntityTemplateServiceProvider entityTemplateServiceProvider
     EntityServiceProvider entityServiceProvider
     EntityValueServiceProvider entityValueServiceProvider
-    DelayedQueueServiceProvider delayedQueueServiceProvider
-    DelayedQueue<Void> delayedQueue
+    MessagePubSub messagePubSub
+    LocalDeviceLastSeenRegistry deviceLastSeenRegistry
+    DeviceOfflineDetector deviceOfflineDetector
     DeviceStatusService deviceStatusService
 
     def setup() {
@@ -28,22 +34,28 @@ class DeviceStatusServiceTest extends Specification {
         entityTemplateServiceProvider = Mock(EntityTemplateServiceProvider)
         entityServiceProvider = Mock(EntityServiceProvider)
         entityValueServiceProvider = Mock(EntityValueServiceProvider)
-        delayedQueueServiceProvider = Mock(DelayedQueueServiceProvider)
-        delayedQueue = Mock(DelayedQueue)
-        delayedQueueServiceProvider.getDelayedQueue(DeviceStatusConstants.DELAYED_QUEUE_NAME) >> delayedQueue
+        deviceServiceProvider.existsById(_) >> true
+        messagePubSub = Mock(MessagePubSub)
+        deviceLastSeenRegistry = new LocalDeviceLastSeenRegistry()
+        deviceOfflineDetector = new DeviceOfflineDetector(new LocalClusterMembership(), deviceLastSeenRegistry, messagePubSub)
 
-        deviceStatusService = new DeviceStatusService(
+        deviceStatusService = Spy(DeviceStatusService, constructorArgs: [
                 deviceServiceProvider,
                 entityTemplateServiceProvider,
                 entityServiceProvider,
                 entityValueServiceProvider,
-                delayedQueueServiceProvider
-        )
+                deviceOfflineDetector
+        ])
+        deviceStatusService.self() >> { deviceStatusService }
+    }
+
+    def cleanup() {
+        deviceOfflineDetector.destroy()
     }
 
     // ==================== register tests ====================
 
-    def "register should register consumer and init devices when config is provided"() {
+    def "register should track devices when config is provided"() {
         given:
         def integrationId = "test-integration"
         def device = createDevice(1L, integrationId, "device-1")
@@ -56,8 +68,8 @@ class DeviceStatusServiceTest extends Specification {
         deviceStatusService.register(integrationId, config)
 
         then:
-        1 * delayedQueue.registerConsumer(integrationId, _)
-        1 * delayedQueue.offer(_)
+        deviceOfflineDetector.isTracked(1L)
+        !deviceOfflineDetector.isOnline(1L)
     }
 
     def "register should do nothing when config is null"() {
@@ -69,11 +81,9 @@ class DeviceStatusServiceTest extends Specification {
 
         then:
         0 * deviceServiceProvider.findAll(_)
-        0 * delayedQueue.registerConsumer(_, _)
-        0 * delayedQueue.offer(_)
     }
 
-    def "register should only register consumer when devices list is empty"() {
+    def "register should track nothing when devices list is empty"() {
         given:
         def integrationId = "test-integration"
         def config = DeviceStatusConfig.builder()
@@ -85,8 +95,7 @@ class DeviceStatusServiceTest extends Specification {
         deviceStatusService.register(integrationId, config)
 
         then:
-        1 * delayedQueue.registerConsumer(integrationId, _)
-        0 * delayedQueue.offer(_)
+        !deviceOfflineDetector.isTracked(1L)
     }
 
     def "register should use batchOfflineTimeoutFetcher when provided"() {
@@ -105,21 +114,23 @@ class DeviceStatusServiceTest extends Specification {
         deviceStatusService.register(integrationId, config)
 
         then:
-        1 * delayedQueue.registerConsumer(integrationId, _)
-        2 * delayedQueue.offer(_)
+        deviceOfflineDetector.isTracked(1L)
+        deviceOfflineDetector.isTracked(2L)
     }
 
     // ==================== deregister tests ====================
 
-    def "deregister should cancel delayed task for device"() {
+    def "deregister should stop tracking device on all nodes"() {
         given:
         def device = createDevice(1L, "test-integration", "device-1")
+        deviceOfflineDetector.track(1L, Duration.ofMinutes(5))
 
         when:
         deviceStatusService.deregister(device)
 
         then:
-        1 * delayedQueue.cancel("1")
+        !deviceOfflineDetector.isTracked(1L)
+        1 * messagePubSub.publishAfterCommit({ it.deviceId == 1L && it.status == null })
     }
 
     // ==================== online tests ====================
@@ -253,15 +264,16 @@ class DeviceStatusServiceTest extends Specification {
 
     // ==================== handleStatus tests ====================
 
-    def "handleStatus should cancel delayed task when availableDeviceData is null"() {
+    def "handleStatus should stop tracking device when availableDeviceData is null"() {
         given:
         def deviceId = 1L
+        deviceOfflineDetector.track(deviceId, Duration.ofMinutes(5))
 
         when:
         deviceStatusService.handleStatus(deviceId, null, DeviceStatusService.DeviceStatusOperation.ONLINE)
 
         then:
-        1 * delayedQueue.cancel("1")
+        !deviceOfflineDetector.isTracked(deviceId)
     }
 
     def "handleStatus should handle online operation"() {
@@ -282,7 +294,8 @@ class DeviceStatusServiceTest extends Specification {
 
         then:
         1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
-        1 * delayedQueue.offer(_)
+        deviceOfflineDetector.isTracked(1L)
+        deviceOfflineDetector.isOnline(1L)
     }
 
     def "handleStatus should handle offline operation"() {
@@ -455,7 +468,7 @@ class DeviceStatusServiceTest extends Specification {
 
         then:
         1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
-        0 * delayedQueue.offer(_)
+        !deviceOfflineDetector.isTracked(1L)
     }
 
     def "should skip delayed task when offline duration is zero or negative"() {
@@ -476,7 +489,84 @@ class DeviceStatusServiceTest extends Specification {
 
         then:
         1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
-        0 * delayedQueue.offer(_)
+        !deviceOfflineDetector.isTracked(1L)
+    }
+
+    // ==================== offline detection tests ====================
+
+    def "online should only record last seen time for devices known online"() {
+        given:
+        def device = createDevice(1L, "test-integration", "device-1")
+        def statusEntityKey = getDeviceStatusEntityKey(device)
+        entityServiceProvider.findByKey(statusEntityKey) >> Mock(Entity)
+        entityValueServiceProvider.findValueByKey(statusEntityKey) >> "OFFLINE"
+        deviceStatusService.online(device)
+
+        when:
+        deviceStatusService.online(device)
+
+        then:
+        0 * deviceStatusService.handleStatus(_, _, _)
+        0 * entityValueServiceProvider.findValueByKey(_)
+        0 * entityValueServiceProvider.saveValuesAndPublishSync(_)
+        deviceLastSeenRegistry.getLastSeen([1L]).containsKey(1L)
+    }
+
+    def "offline event from other node should make the next uplink check the status again"() {
+        given:
+        def device = createDevice(1L, "test-integration", "device-1")
+        def statusEntityKey = getDeviceStatusEntityKey(device)
+        entityServiceProvider.findByKey(statusEntityKey) >> Mock(Entity)
+        entityValueServiceProvider.findValueByKey(statusEntityKey) >> "OFFLINE"
+        deviceStatusService.online(device)
+
+        when:
+        deviceOfflineDetector.onDeviceStatusTracking(new DeviceStatusTrackingEvent(1L, DeviceStatus.OFFLINE, null))
+        deviceStatusService.online(device)
+
+        then:
+        1 * entityValueServiceProvider.saveValuesAndPublishSync(_)
+    }
+
+    def "device should go offline when offline timeout passes without uplink"() {
+        given:
+        def integrationId = "test-integration"
+        def device = createDevice(1L, integrationId, "device-1")
+        def statusEntityKey = getDeviceStatusEntityKey(device)
+        def offlineListenerCalled = false
+        def config = DeviceStatusConfig.builder()
+                .offlineTimeoutFetcher({ d -> Duration.ofMinutes(5) })
+                .offlineListener({ d -> offlineListenerCalled = true })
+                .build()
+        deviceServiceProvider.findAll(integrationId) >> [device]
+        deviceServiceProvider.findById(1L) >> device
+        entityServiceProvider.findByKey(statusEntityKey) >> Mock(Entity)
+        entityValueServiceProvider.findValueByKey(statusEntityKey) >> "ONLINE"
+        deviceStatusService.register(integrationId, config)
+
+        when:
+        deviceOfflineDetector.tick(System.currentTimeMillis() + Duration.ofMinutes(6).toMillis())
+
+        then:
+        new PollingConditions(timeout: 5).eventually {
+            assert offlineListenerCalled
+            assert !deviceOfflineDetector.isTracked(1L)
+        }
+    }
+
+    def "recent uplink should postpone offline detection"() {
+        given:
+        def now = System.currentTimeMillis()
+        deviceOfflineDetector.setOfflineHandler({ id -> throw new IllegalStateException("should not go offline") })
+        deviceOfflineDetector.track(1L, Duration.ofMinutes(5))
+        deviceLastSeenRegistry.touch(1L, now + Duration.ofMinutes(2).toMillis())
+
+        when:
+        deviceOfflineDetector.tick(now + Duration.ofMinutes(6).toMillis())
+
+        then:
+        deviceOfflineDetector.isTracked(1L)
+        0 * deviceServiceProvider.findById(_)
     }
 
     // ==================== helper methods ====================
@@ -1,13 +1,14 @@
 package com.milesight.beaveriot.entity.exporter;
 
 
+import com.milesight.beaveriot.base.export.CsvWriter;
+import com.milesight.beaveriot.base.export.StreamingCsvExporter;
 import com.milesight.beaveriot.base.utils.StringUtils;
 import lombok.*;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Field;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
@@ -20,16 +21,11 @@ import java.util.function.Function;
  */
 public class CsvExporter<T> {
 
-    public static final String SEPARATOR = ",";
+    private final List<String> headers = new ArrayList<>();
 
-    public static final String CSV_VALUE_FORMAT = "\"%s\"";
-
-    private final String headerLine;
-
-    private final List<Function<T, String>> fieldsGetter = new ArrayList<>();
+    private final List<Function<T, Object>> fieldsGetter = new ArrayList<>();
 
     private CsvExporter(Class<T> model) {
-        val headerLineBuilder = new StringBuilder();
         forEachField(model, field -> {
             val fieldAnno = field.getAnnotation(ExportField.class);
             if (fieldAnno == null) {
@@ -39,18 +35,10 @@ public class CsvExporter<T> {
             if (StringUtils.isEmpty(header)) {
                 header = field.getName();
             }
-            header = String.format(CSV_VALUE_FORMAT, header);
-            if (headerLineBuilder.isEmpty()) {
-                headerLineBuilder.append(header);
-            } else {
-                headerLineBuilder.append(SEPARATOR);
-                headerLineBuilder.append(header);
-            }
+            headers.add(header);
             field.setAccessible(true);
-            fieldsGetter.add(obj -> getStringValue(obj, field));
+            fieldsGetter.add(obj -> getValue(obj, field));
         });
-        headerLineBuilder.append("\n");
-        headerLine = headerLineBuilder.toString();
     }
 
     public static <T> CsvExporter<T> newInstance(Class<T> model) {
@@ -68,29 +56,43 @@ public class CsvExporter<T> {
     }
 
     @SneakyThrows
-    private String getStringValue(T obj, Field field) {
-        val value = field.get(obj);
-        return value == null ? "" : String.format(CSV_VALUE_FORMAT, value);
+    private Object getValue(T obj, Field field) {
+        return field.get(obj);
+    }
+
+    private List<Object> getValues(T obj) {
+        val values = new ArrayList<>(fieldsGetter.size());
+        fieldsGetter.forEach(getter -> values.add(getter.apply(obj)));
+        return values;
     }
 
     public void export(OutputStream outputStream, ChunkIterator<T> chunkIterator) throws IOException {
-        outputStream.write(headerLine.getBytes(StandardCharsets.UTF_8));
+        val csvWriter = new CsvWriter(outputStream, true);
+        csvWriter.writeRow(headers);
         int i = 0;
         var chunk = chunkIterator.get(i++);
         while (chunk != null && !chunk.isEmpty()) {
-            val content = chunk;
-            for (T t : content) {
+            for (T t : chunk) {
                 if (t == null) {
                     continue;
                 }
-                val values = new ArrayList<String>();
-                fieldsGetter.forEach(getter -> values.add(getter.apply(t)));
-                val line = String.join(SEPARATOR, values) + "\n";
-                outputStream.write(line.getBytes(StandardCharsets.UTF_8));
+                csvWriter.writeRow(getValues(t));
             }
             chunk = chunkIterator.get(i++);
         }
+        csvWriter.flush();
+    }
 
+    /**
+     * Get a streaming exporter writing the same columns, for rows read in keyset pages
+     *
+     * @param converter converts a row to the model, a null result skips the row
+     */
+    public <R> StreamingCsvExporter<R> streaming(Function<R, T> converter) {
+        return StreamingCsvExporter.<R>of(headers, row -> {
+            val t = converter.apply(row);
+            return t == null ? null : getValues(t);
+        }).quoteAll();
     }
 
 }
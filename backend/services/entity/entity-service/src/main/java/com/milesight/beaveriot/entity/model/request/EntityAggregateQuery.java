@@ -14,5 +14,9 @@ public class EntityAggregateQuery {
     private AggregateType aggregateType;
     private Long startTimestamp;
     private Long endTimestamp;
+    /**
+     * Bucket size in milliseconds for chart data, no buckets are returned if absent
+     */
+    private Long interval;
 
 }
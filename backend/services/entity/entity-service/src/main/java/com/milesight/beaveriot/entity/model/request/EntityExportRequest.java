@@ -38,4 +38,10 @@ public class EntityExportRequest {
      */
     private String timeZone;
 
+    /**
+     * Whether to compress the exported file with gzip. <br>
+     * Default: false
+     */
+    private Boolean gzip;
+
 }
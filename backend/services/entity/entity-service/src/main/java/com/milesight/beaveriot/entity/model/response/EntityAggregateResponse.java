@@ -18,6 +18,7 @@ public class EntityAggregateResponse {
     private Object value;
     private EntityValueType valueType;
     private List<CountResult> countResult;
+    private List<BucketResult> buckets;
 
     @Getter
     @Builder
@@ -33,4 +34,18 @@ public class EntityAggregateResponse {
         }
     }
 
+    @Getter
+    @Builder
+    public static class BucketResult implements Serializable {
+        private Long timestamp;
+        private Object value;
+        private Long count;
+
+        public BucketResult(Long timestamp, Object value, Long count) {
+            this.timestamp = timestamp;
+            this.value = value;
+            this.count = count;
+        }
+    }
+
 }
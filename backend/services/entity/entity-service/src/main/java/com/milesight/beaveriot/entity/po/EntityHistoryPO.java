@@ -47,6 +47,24 @@ public class EntityHistoryPO {
     private Long updatedAt;
     private String updatedBy;
 
+    /**
+     * Field holding the history values of the given value type, null if values of the type are not kept in history
+     */
+    public static String getValueField(EntityValueType valueType) {
+        if (valueType == null) {
+            return null;
+        }
+
+        return switch (valueType) {
+            case BOOLEAN -> Fields.valueBoolean;
+            case LONG -> Fields.valueLong;
+            case STRING -> Fields.valueString;
+            case DOUBLE -> Fields.valueDouble;
+            case BINARY -> Fields.valueBinary;
+            default -> null;
+        };
+    }
+
     public void setValue(EntityValueType valueType, Object value) {
         if (value == null) {
             return;
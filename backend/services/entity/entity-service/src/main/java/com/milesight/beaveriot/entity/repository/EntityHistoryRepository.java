@@ -10,7 +10,6 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.repository.query.Param;
 
@@ -36,13 +35,6 @@ public interface EntityHistoryRepository extends BaseJpaRepository<EntityHistory
             Pageable pageable
     );
 
-    Slice<EntityHistoryPO> findSliceByEntityIdInAndTimestampBetween(
-            Collection<Long> entityIds,
-            Long startTimestamp,
-            Long endTimestamp,
-            Pageable pageable
-    );
-
     default List<EntityHistoryPO> findByUnionUnique(EntityManager entityManager, List<EntityHistoryUnionQuery> queries) {
         String dynamicQuery = generateDynamicQuery(queries);
         Query query = entityManager.createNativeQuery(dynamicQuery, EntityHistoryPO.class);
@@ -3,6 +3,7 @@ package com.milesight.beaveriot.entity.repository;
 import com.milesight.beaveriot.data.jpa.repository.BaseJpaRepository;
 import com.milesight.beaveriot.entity.po.EntityLatestPO;
 import com.milesight.beaveriot.permission.aspect.Tenant;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
@@ -14,4 +15,7 @@ import java.util.List;
 @Tenant
 public interface EntityLatestRepository extends BaseJpaRepository<EntityLatestPO, Long> {
     List<EntityLatestPO> findByEntityIdIn(@Param("entityIds") List<Long> entityIds);
+
+    @Query("SELECT r.entityId, r.id FROM EntityLatestPO r WHERE r.entityId IN :entityIds")
+    List<Object[]> findIdsByEntityIdIn(@Param("entityIds") List<Long> entityIds);
 }
@@ -2,15 +2,12 @@ package com.milesight.beaveriot.entity.service;
 
 import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
-import com.milesight.beaveriot.base.page.GenericPageRequest;
-import com.milesight.beaveriot.base.page.Sorts;
 import com.milesight.beaveriot.entity.dto.EntityResponse;
 import com.milesight.beaveriot.entity.exporter.CsvExporter;
 import com.milesight.beaveriot.entity.model.dto.EntityExportData;
 import com.milesight.beaveriot.entity.model.request.EntityExportRequest;
 import com.milesight.beaveriot.entity.model.request.EntityHistoryQuery;
 import com.milesight.beaveriot.entity.model.response.EntityHistoryResponse;
-import com.milesight.beaveriot.entity.po.EntityHistoryPO;
 import com.milesight.beaveriot.entity.po.EntityPO;
 import com.milesight.beaveriot.permission.aspect.OperationPermission;
 import com.milesight.beaveriot.permission.enums.OperationPermissionCode;
@@ -28,7 +25,6 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Comparator;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -87,46 +83,35 @@ public class EntityExportService {
                     .build();
         }
         val zoneId = StringUtils.hasText(entityExportRequest.getTimeZone()) ? ZoneId.of(entityExportRequest.getTimeZone()) : ZoneId.systemDefault();
-        val outputStream = httpServletResponse.getOutputStream();
-        exporter.export(outputStream, i -> {
-            val query = new GenericPageRequest();
-            query.setPageNumber(i + 1);
-            query.sort(new Sorts().desc(EntityHistoryPO.Fields.timestamp).asc(EntityHistoryPO.Fields.entityId));
-            return entityValueService.historySearchSlice(availableEntityIds, startTime, endTime, query)
-                    .stream()
-                    .map(historyResponse -> {
-                        val entityResponse = entityIdToPO.get(historyResponse.getEntityId());
-                        if (entityResponse == null) {
-                            return null;
-                        }
-
-                        val dateTime = getDateTime(historyResponse, zoneId);
-                        val entityExportData = new EntityExportData();
-                        entityExportData.setUpdateTime(dateTime);
-                        entityExportData.setEntityName(entityResponse.getEntityName());
-                        entityExportData.setEntityIdentifier(entityResponse.getEntityKey());
-                        entityExportData.setIntegrationName(entityResponse.getIntegrationName());
-                        entityExportData.setDeviceName(entityResponse.getDeviceName());
-
-                        val value = String.valueOf(historyResponse.getValue());
-                        @SuppressWarnings({"unchecked"})
-                        val mappedValue = Optional.ofNullable(entityResponse.getEntityValueAttribute())
-                                .map(v -> (Map<String, String>) v.get("enum"))
-                                .map(v -> v.get(value))
-                                .orElse(value);
-                        entityExportData.setValue(mappedValue);
-
-                        return entityExportData;
-                    })
-                    .filter(Objects::nonNull)
-                    .sorted(Comparator.comparing(EntityExportData::getUpdateTime).reversed()
-                            .thenComparing(EntityExportData::getEntityIdentifier))
-                    .toList();
+        val historyExporter = exporter.<EntityHistoryResponse>streaming(historyResponse -> {
+            val entityResponse = entityIdToPO.get(historyResponse.getEntityId());
+            if (entityResponse == null) {
+                return null;
+            }
+
+            val dateTime = getDateTime(historyResponse, zoneId);
+            val entityExportData = new EntityExportData();
+            entityExportData.setUpdateTime(dateTime);
+            entityExportData.setEntityName(entityResponse.getEntityName());
+            entityExportData.setEntityIdentifier(entityResponse.getEntityKey());
+            entityExportData.setIntegrationName(entityResponse.getIntegrationName());
+            entityExportData.setDeviceName(entityResponse.getDeviceName());
+
+            val value = String.valueOf(historyResponse.getValue());
+            @SuppressWarnings({"unchecked"})
+            val mappedValue = Optional.ofNullable(entityResponse.getEntityValueAttribute())
+                    .map(v -> (Map<String, String>) v.get("enum"))
+                    .map(v -> v.get(value))
+                    .orElse(value);
+            entityExportData.setValue(mappedValue);
+
+            return entityExportData;
         });
 
         val nowDateTime = ZonedDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
-        httpServletResponse.setHeader("Content-Type", "text/csv");
-        httpServletResponse.setHeader("Content-Disposition", String.format("attachment; filename=EntityData_%s.csv", nowDateTime));
+        historyExporter.export(httpServletResponse, String.format("EntityData_%s.csv", nowDateTime),
+                Boolean.TRUE.equals(entityExportRequest.getGzip()),
+                last -> entityValueService.historySearchAfter(availableEntityIds, startTime, endTime, last));
     }
 
 }
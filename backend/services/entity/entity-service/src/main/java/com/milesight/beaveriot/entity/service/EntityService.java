@@ -411,6 +411,17 @@ public class EntityService implements EntityServiceProvider {
 
         entityRepository.saveAll(entityPOList);
 
+        // entity permissions are derived from the attach targets of the entities
+        boolean attachTargetChanged = entityPOList.stream().anyMatch(entityPO -> {
+            EntityPO dataEntityPO = dataEntityKeyMap.get(entityPO.getKey());
+            return dataEntityPO == null
+                    || !Objects.equals(dataEntityPO.getAttachTarget(), entityPO.getAttachTarget())
+                    || !Objects.equals(dataEntityPO.getAttachTargetId(), entityPO.getAttachTargetId());
+        });
+        if (attachTargetChanged) {
+            permissionFacade.evictDataPermissions();
+        }
+
         entityList.forEach(entity -> {
             boolean isCreate = dataEntityKeyMap.get(entity.getKey()) == null;
             if (isCreate) {
@@ -7,6 +7,7 @@ import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.base.page.GenericPageRequest;
 import com.milesight.beaveriot.base.page.Sorts;
+import com.milesight.beaveriot.base.utils.TransactionUtils;
 import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
 import com.milesight.beaveriot.context.api.EntityValueServiceProvider;
 import com.milesight.beaveriot.context.constants.CacheKeyConstants;
@@ -18,6 +19,11 @@ import com.milesight.beaveriot.context.integration.model.Entity;
 import com.milesight.beaveriot.context.integration.model.ExchangePayload;
 import com.milesight.beaveriot.context.integration.proxy.MapExchangePayloadProxy;
 import com.milesight.beaveriot.context.security.SecurityUserContext;
+import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.data.filterable.Filterable;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery;
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation;
+import com.milesight.beaveriot.data.model.TimeSeriesBucket;
 import com.milesight.beaveriot.entity.enums.AggregateType;
 import com.milesight.beaveriot.entity.model.dto.EntityHistoryUnionQuery;
 import com.milesight.beaveriot.entity.model.request.EntityAggregateQuery;
@@ -31,6 +37,8 @@ import com.milesight.beaveriot.entity.po.EntityPO;
 import com.milesight.beaveriot.entity.repository.EntityHistoryRepository;
 import com.milesight.beaveriot.entity.repository.EntityLatestRepository;
 import com.milesight.beaveriot.entity.repository.EntityRepository;
+import com.milesight.beaveriot.entity.writebehind.EntityValueWrite;
+import com.milesight.beaveriot.entity.writebehind.EntityValueWriteBehindPipeline;
 import com.milesight.beaveriot.eventbus.api.EventResponse;
 import jakarta.persistence.EntityManager;
 import lombok.Data;
@@ -40,7 +48,8 @@ import org.springframework.aop.framework.AopContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -51,6 +60,7 @@ import org.springframework.util.StringUtils;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -72,6 +82,8 @@ public class EntityValueService implements EntityValueServiceProvider {
     private EntityManager entityManager;
     @Autowired
     private GenericExchangeFlowExecutor genericExchangeFlowExecutor;
+    @Autowired(required = false)
+    private EntityValueWriteBehindPipeline entityValueWriteBehindPipeline;
 
     private final Comparator<byte[]> byteArrayComparator = (a, b) -> {
         if (a == b) return 0;
@@ -108,6 +120,13 @@ public class EntityValueService implements EntityValueServiceProvider {
     @Override
     @Transactional
     public Map<String, Pair<Long, Long>> saveValues(ExchangePayload exchange, long timestamp) {
+        if (entityValueWriteBehindPipeline != null) {
+            Map<String, Pair<Long, Long>> submittedIds = submitValues(exchange, timestamp);
+            if (submittedIds != null) {
+                return submittedIds;
+            }
+        }
+
         Map<String, Pair<Long, Long>> entityKeyLatestIdAndHistoryIds = new HashMap<>();
 
         // Save event entities， only save history
@@ -135,6 +154,90 @@ public class EntityValueService implements EntityValueServiceProvider {
         return entityKeyLatestIdAndHistoryIds;
     }
 
+    /**
+     * Queue the values to the write-behind pipeline once the transaction has committed.
+     * An entity that already has a latest value keeps the id of its row, the upsert does not replace it.
+     *
+     * @return null if the values have to be saved synchronously
+     */
+    private Map<String, Pair<Long, Long>> submitValues(ExchangePayload exchange, long timestamp) {
+        String tenantId = TenantContext.tryGetTenantId().orElse(null);
+        if (tenantId == null || exchange.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Entity> entityKeyMap = exchange.getExchangeEntities();
+        Map<Long, Long> existingLatestIds = findLatestIds(entityKeyMap.values());
+        String operatorId = SecurityUserContext.getUserId() == null ? null : SecurityUserContext.getUserId().toString();
+        long now = System.currentTimeMillis();
+        Map<String, Pair<Long, Long>> entityKeyLatestIdAndHistoryIds = new HashMap<>();
+        List<EntityValueWrite> writes = new ArrayList<>();
+        exchange.forEach((entityKey, payload) -> {
+            Entity entity = entityKeyMap.get(entityKey);
+            if (entity == null || entity.getType() == null) {
+                return;
+            }
+
+            ValueStoreMod valueStoreMod = entity.getValueStoreMod();
+            EntityLatestPO entityLatestPO = null;
+            if (entity.getType() == EntityType.PROPERTY && valueStoreMod != ValueStoreMod.NONE && valueStoreMod != ValueStoreMod.HISTORY) {
+                entityLatestPO = new EntityLatestPO();
+                entityLatestPO.setId(existingLatestIds.computeIfAbsent(entity.getId(), id -> SnowflakeUtil.nextId()));
+                entityLatestPO.setTenantId(tenantId);
+                entityLatestPO.setEntityId(entity.getId());
+                entityLatestPO.setValue(entity.getValueType(), payload);
+                entityLatestPO.setTimestamp(timestamp);
+                entityLatestPO.setUpdatedAt(now);
+            }
+
+            EntityHistoryPO entityHistoryPO = null;
+            if (valueStoreMod != ValueStoreMod.NONE && valueStoreMod != ValueStoreMod.LATEST) {
+                entityHistoryPO = new EntityHistoryPO();
+                entityHistoryPO.setId(SnowflakeUtil.nextId());
+                entityHistoryPO.setTenantId(tenantId);
+                entityHistoryPO.setEntityId(entity.getId());
+                entityHistoryPO.setValue(entity.getValueType(), payload);
+                entityHistoryPO.setTimestamp(timestamp);
+                entityHistoryPO.setCreatedAt(now);
+                entityHistoryPO.setCreatedBy(operatorId);
+                entityHistoryPO.setUpdatedAt(now);
+                entityHistoryPO.setUpdatedBy(operatorId);
+            }
+
+            if (entityLatestPO == null && entityHistoryPO == null) {
+                return;
+            }
+
+            writes.add(new EntityValueWrite(tenantId, entityKey, entityLatestPO, entityHistoryPO));
+            Long historyId = entityHistoryPO == null ? -1L : entityHistoryPO.getId();
+            if (entity.getType() == EntityType.PROPERTY) {
+                if (entityLatestPO != null) {
+                    entityKeyLatestIdAndHistoryIds.put(entityKey, Pair.of(entityLatestPO.getId(), historyId));
+                }
+            } else {
+                entityKeyLatestIdAndHistoryIds.put(entityKey, Pair.of(-1L, historyId));
+            }
+        });
+
+        // queued values are visible to the flusher at once, they must not be written if the transaction rolls back
+        TransactionUtils.executeAfterCommit(() -> entityValueWriteBehindPipeline.submitOrWrite(writes));
+        return entityKeyLatestIdAndHistoryIds;
+    }
+
+    private Map<Long, Long> findLatestIds(Collection<Entity> entities) {
+        List<Long> entityIds = entities.stream()
+                .filter(entity -> entity.getType() == EntityType.PROPERTY && entity.getId() != null)
+                .map(Entity::getId)
+                .distinct()
+                .toList();
+        if (entityIds.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        return entityLatestRepository.findIdsByEntityIdIn(entityIds).stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> (Long) row[1], (a, b) -> a, HashMap::new));
+    }
+
     @Override
     public Map<String, Pair<Long, Long>> saveValues(ExchangePayload exchangePayload) {
         return self().saveValues(exchangePayload, exchangePayload.getTimestamp());
@@ -499,214 +602,181 @@ public class EntityValueService implements EntityValueServiceProvider {
         return entityHistoryPage.map(this::convertToHistoryResponse);
     }
 
-    public List<EntityHistoryResponse> historySearchSlice(List<Long> entityIdList, Long startTimestamp, Long endTimestamp, GenericPageRequest pageRequest) {
+    /**
+     * Search the history following the given one, in the order of (timestamp desc, entity id, id) used by exports.
+     * The history read is detached, so that the persistence context does not grow over the pages.
+     *
+     * @param last last history of the previous page, or null for the first page
+     */
+    public List<EntityHistoryResponse> historySearchAfter(List<Long> entityIdList, Long startTimestamp, Long endTimestamp, EntityHistoryResponse last) {
         if (CollectionUtils.isEmpty(entityIdList)) {
             return List.of();
         }
 
-        if (pageRequest.getSort().getOrders().isEmpty()) {
-            pageRequest.sort(new Sorts().desc(EntityHistoryPO.Fields.timestamp));
-        }
-
-        if (entityIdList.size() > 1) {
-            // bitmap heap scan
-            pageRequest.pageSize(50000);
-        } else {
-            // index scan
-            pageRequest.pageSize(1000);
-        }
-
-        Slice<EntityHistoryPO> entityHistorySlice = entityHistoryRepository.findSliceByEntityIdInAndTimestampBetween(
-                entityIdList,
-                startTimestamp,
-                endTimestamp,
-                pageRequest.toPageable()
+        // bitmap heap scan for several entities, index scan for one
+        int pageSize = entityIdList.size() > 1 ? 50000 : 1000;
+        Specification<EntityHistoryPO> spec = (root, query, cb) -> cb.and(
+                root.get(EntityHistoryPO.Fields.entityId).in(entityIdList),
+                cb.between(root.get(EntityHistoryPO.Fields.timestamp), startTimestamp, endTimestamp)
         );
-        if (entityHistorySlice == null || !entityHistorySlice.hasContent()) {
-            return List.of();
-        }
-
-        return entityHistorySlice.getContent().stream()
+        if (last != null) {
+            long lastTimestamp = Long.parseLong(last.getTimestamp());
+            long lastEntityId = Long.parseLong(last.getEntityId());
+            long lastId = Long.parseLong(last.getId());
+            spec = spec.and((root, query, cb) -> cb.or(
+                    cb.lessThan(root.get(EntityHistoryPO.Fields.timestamp), lastTimestamp),
+                    cb.and(
+                            cb.equal(root.get(EntityHistoryPO.Fields.timestamp), lastTimestamp),
+                            cb.or(
+                                    cb.greaterThan(root.get(EntityHistoryPO.Fields.entityId), lastEntityId),
+                                    cb.and(
+                                            cb.equal(root.get(EntityHistoryPO.Fields.entityId), lastEntityId),
+                                            cb.greaterThan(root.get(EntityHistoryPO.Fields.id), lastId)
+                                    )
+                            )
+                    )
+            ));
+        }
+
+        Sort sort = Sort.by(Sort.Order.desc(EntityHistoryPO.Fields.timestamp),
+                Sort.Order.asc(EntityHistoryPO.Fields.entityId),
+                Sort.Order.asc(EntityHistoryPO.Fields.id));
+        List<EntityHistoryPO> entityHistoryPOList = entityHistoryRepository.findBy(spec, q -> q.sortBy(sort).limit(pageSize).all());
+        entityHistoryPOList.forEach(entityManager::detach);
+        return entityHistoryPOList.stream()
                 .map(this::convertToHistoryResponse)
                 .toList();
     }
 
     public EntityAggregateResponse historyAggregate(EntityAggregateQuery entityAggregateQuery) {
         EntityAggregateResponse entityAggregateResponse = new EntityAggregateResponse();
-        Long entityIdWithPermission = entityRepository.findOneWithDataPermission(f -> f.eq(EntityPO.Fields.id, entityAggregateQuery.getEntityId()))
-                .map(EntityPO::getId).orElse(null);
-        if (entityIdWithPermission == null) {
+        EntityPO entityPO = entityRepository.findOneWithDataPermission(f -> f.eq(EntityPO.Fields.id, entityAggregateQuery.getEntityId()))
+                .orElse(null);
+        if (entityPO == null) {
             return entityAggregateResponse;
         }
 
-        List<EntityHistoryPO> entityHistoryPOList = entityHistoryRepository.findAll(filter -> filter.eq(EntityHistoryPO.Fields.entityId, entityIdWithPermission)
-                        .ge(EntityHistoryPO.Fields.timestamp, entityAggregateQuery.getStartTimestamp())
-                        .le(EntityHistoryPO.Fields.timestamp, entityAggregateQuery.getEndTimestamp()))
-                .stream().sorted(Comparator.comparingLong(EntityHistoryPO::getTimestamp)).toList();
-        if (entityHistoryPOList.isEmpty()) {
+        EntityValueType valueType = entityPO.getValueType();
+        String valueField = EntityHistoryPO.getValueField(valueType);
+        if (valueField == null) {
             return entityAggregateResponse;
         }
 
         AggregateType aggregateType = entityAggregateQuery.getAggregateType();
-        EntityHistoryPO oneEntityHistoryPO = entityHistoryPOList.get(0);
-        switch (aggregateType) {
-            case LAST:
-                EntityHistoryPO lastEntityHistoryPO = entityHistoryPOList.get(entityHistoryPOList.size() - 1);
-                if (lastEntityHistoryPO.getValueBoolean() != null) {
-                    entityAggregateResponse.setValue(lastEntityHistoryPO.getValueBoolean());
-                    entityAggregateResponse.setValueType(EntityValueType.BOOLEAN);
-                } else if (lastEntityHistoryPO.getValueLong() != null) {
-                    entityAggregateResponse.setValue(lastEntityHistoryPO.getValueLong().toString());
-                    entityAggregateResponse.setValueType(EntityValueType.LONG);
-                } else if (lastEntityHistoryPO.getValueDouble() != null) {
-                    entityAggregateResponse.setValue(lastEntityHistoryPO.getValueDouble());
-                    entityAggregateResponse.setValueType(EntityValueType.DOUBLE);
-                } else if (lastEntityHistoryPO.getValueString() != null) {
-                    entityAggregateResponse.setValue(lastEntityHistoryPO.getValueString());
-                    entityAggregateResponse.setValueType(EntityValueType.STRING);
-                } else if (lastEntityHistoryPO.getValueBinary() != null) {
-                    entityAggregateResponse.setValue(lastEntityHistoryPO.getValueBinary());
-                    entityAggregateResponse.setValueType(EntityValueType.BINARY);
-                }
-                break;
-            case MIN:
-                if (oneEntityHistoryPO.getValueBoolean() != null) {
-                    EntityHistoryPO minEntityHistoryPO = entityHistoryPOList.stream().min(Comparator.comparing(EntityHistoryPO::getValueBoolean)).get();
-                    entityAggregateResponse.setValue(minEntityHistoryPO.getValueBoolean());
-                    entityAggregateResponse.setValueType(EntityValueType.BOOLEAN);
-                } else if (oneEntityHistoryPO.getValueLong() != null) {
-                    EntityHistoryPO minEntityHistoryPO = entityHistoryPOList.stream().min(Comparator.comparing(EntityHistoryPO::getValueLong)).get();
-                    entityAggregateResponse.setValue(minEntityHistoryPO.getValueLong().toString());
-                    entityAggregateResponse.setValueType(EntityValueType.LONG);
-                } else if (oneEntityHistoryPO.getValueDouble() != null) {
-                    EntityHistoryPO minEntityHistoryPO = entityHistoryPOList.stream().min(Comparator.comparing(EntityHistoryPO::getValueDouble)).get();
-                    entityAggregateResponse.setValue(minEntityHistoryPO.getValueDouble());
-                    entityAggregateResponse.setValueType(EntityValueType.DOUBLE);
-                } else if (oneEntityHistoryPO.getValueString() != null) {
-                    EntityHistoryPO minEntityHistoryPO = entityHistoryPOList.stream().min(Comparator.comparing(EntityHistoryPO::getValueString)).get();
-                    entityAggregateResponse.setValue(minEntityHistoryPO.getValueString());
-                    entityAggregateResponse.setValueType(EntityValueType.STRING);
-                } else if (oneEntityHistoryPO.getValueBinary() != null) {
-                    EntityHistoryPO minEntityHistoryPO = entityHistoryPOList.stream().min(Comparator.comparing(EntityHistoryPO::getValueBinary, byteArrayComparator)).get();
-                    entityAggregateResponse.setValue(minEntityHistoryPO.getValueBinary());
-                    entityAggregateResponse.setValueType(EntityValueType.BINARY);
-                }
-                break;
-            case MAX:
-                if (oneEntityHistoryPO.getValueBoolean() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream().max(Comparator.comparing(EntityHistoryPO::getValueBoolean)).get().getValueBoolean());
-                    entityAggregateResponse.setValueType(EntityValueType.BOOLEAN);
-                } else if (oneEntityHistoryPO.getValueLong() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream().max(Comparator.comparing(EntityHistoryPO::getValueLong)).get().getValueLong().toString());
-                    entityAggregateResponse.setValueType(EntityValueType.LONG);
-                } else if (oneEntityHistoryPO.getValueDouble() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream().max(Comparator.comparing(EntityHistoryPO::getValueDouble)).get().getValueDouble());
-                    entityAggregateResponse.setValueType(EntityValueType.DOUBLE);
-                } else if (oneEntityHistoryPO.getValueString() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream().max(Comparator.comparing(EntityHistoryPO::getValueString)).get().getValueString());
-                    entityAggregateResponse.setValueType(EntityValueType.STRING);
-                } else if (oneEntityHistoryPO.getValueBinary() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream().max(Comparator.comparing(EntityHistoryPO::getValueBinary, byteArrayComparator)).get().getValueBinary());
-                    entityAggregateResponse.setValueType(EntityValueType.BINARY);
-                }
-                break;
-            case AVG:
-                if (oneEntityHistoryPO.getValueBoolean() != null) {
-                    throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
-                } else if (oneEntityHistoryPO.getValueLong() != null) {
-                    OptionalDouble average = entityHistoryPOList.stream()
-                            .mapToLong(EntityHistoryPO::getValueLong)
-                            .average();
-                    if (average.isPresent()) {
-                        String averageAsString = String.valueOf(average.getAsDouble());
-                        entityAggregateResponse.setValue(averageAsString);
-                    } else {
-                        entityAggregateResponse.setValue("0");
-                    }
-                    entityAggregateResponse.setValueType(EntityValueType.LONG);
-                } else if (oneEntityHistoryPO.getValueDouble() != null) {
-                    BigDecimal sum = entityHistoryPOList.stream()
-                            .filter(Objects::nonNull)
-                            .filter(t -> t.getValueDouble() != null)
-                            .map(t -> BigDecimal.valueOf(t.getValueDouble()))
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    BigDecimal count = new BigDecimal(entityHistoryPOList.size());
-                    BigDecimal avg = sum.divide(count, 8, RoundingMode.HALF_EVEN);
-                    entityAggregateResponse.setValue(avg.doubleValue());
-                    entityAggregateResponse.setValueType(EntityValueType.DOUBLE);
-                } else if (oneEntityHistoryPO.getValueString() != null) {
-                    throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
-                } else if (oneEntityHistoryPO.getValueBinary() != null) {
-                    throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
-                }
-                break;
-            case SUM:
-                if (oneEntityHistoryPO.getValueBoolean() != null) {
-                    throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
-                } else if (oneEntityHistoryPO.getValueLong() != null) {
-                    long sum = entityHistoryPOList.stream()
-                            .mapToLong(EntityHistoryPO::getValueLong)
-                            .sum();
-                    String sumAsString = String.valueOf(sum);
-                    entityAggregateResponse.setValue(sumAsString);
-                    entityAggregateResponse.setValueType(EntityValueType.LONG);
-                } else if (oneEntityHistoryPO.getValueDouble() != null) {
-                    entityAggregateResponse.setValue(entityHistoryPOList.stream()
-                            .filter(Objects::nonNull)
-                            .filter(t -> t.getValueDouble() != null)
-                            .map(t -> BigDecimal.valueOf(t.getValueDouble()))
-                            .reduce(BigDecimal.ZERO, BigDecimal::add)
-                            .doubleValue());
-                    entityAggregateResponse.setValueType(EntityValueType.DOUBLE);
-                } else if (oneEntityHistoryPO.getValueString() != null) {
-                    throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
-                } else if (oneEntityHistoryPO.getValueBinary() != null) {
-                    throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
-                }
-                break;
-            case COUNT:
-                break;
-            default:
-                throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
+        if (aggregateType == null || entityAggregateQuery.getStartTimestamp() == null || entityAggregateQuery.getEndTimestamp() == null
+                || (entityAggregateQuery.getInterval() != null && entityAggregateQuery.getInterval() <= 0)) {
+            throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
+        }
+
+        if ((aggregateType == AggregateType.AVG || aggregateType == AggregateType.SUM)
+                && valueType != EntityValueType.LONG && valueType != EntityValueType.DOUBLE) {
+            throw ServiceException.with(ErrorCode.PARAMETER_VALIDATION_FAILED).build();
         }
+
         if (aggregateType == AggregateType.COUNT) {
-            List<EntityAggregateResponse.CountResult> countResult = new ArrayList<>();
-            if (oneEntityHistoryPO.getValueBoolean() != null) {
-                Map<Boolean, Integer> entityHistoryPOGroup = entityHistoryPOList.stream().collect(Collectors.groupingBy(EntityHistoryPO::getValueBoolean, Collectors.collectingAndThen(
-                        Collectors.counting(),
-                        Long::intValue
-                )));
-                entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.BOOLEAN, value)));
-            } else if (oneEntityHistoryPO.getValueLong() != null) {
-                Map<String, Integer> entityHistoryPOGroup = entityHistoryPOList.stream().collect(Collectors.groupingBy(t -> t.getValueLong().toString(), Collectors.collectingAndThen(
-                        Collectors.counting(),
-                        Long::intValue
-                )));
-                entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.LONG, value)));
-            } else if (oneEntityHistoryPO.getValueDouble() != null) {
-                Map<Double, Integer> entityHistoryPOGroup = entityHistoryPOList.stream().collect(Collectors.groupingBy(EntityHistoryPO::getValueDouble, Collectors.collectingAndThen(
-                        Collectors.counting(),
-                        Long::intValue
-                )));
-                entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.DOUBLE, value)));
-            } else if (oneEntityHistoryPO.getValueString() != null) {
-                Map<String, Integer> entityHistoryPOGroup = entityHistoryPOList.stream().collect(Collectors.groupingBy(EntityHistoryPO::getValueString, Collectors.collectingAndThen(
-                        Collectors.counting(),
-                        Long::intValue
-                )));
-                entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.STRING, value)));
-            } else if (oneEntityHistoryPO.getValueBinary() != null) {
-                Map<byte[], Integer> entityHistoryPOGroup = entityHistoryPOList.stream().collect(Collectors.groupingBy(EntityHistoryPO::getValueBinary, Collectors.collectingAndThen(
-                        Collectors.counting(),
-                        Long::intValue
-                )));
-                entityHistoryPOGroup.forEach((key, value) -> countResult.add(new EntityAggregateResponse.CountResult(key, EntityValueType.BINARY, value)));
+            List<TimeSeriesBucket> buckets = aggregateHistory(entityPO.getId(), valueField, TimeSeriesAggregation.COUNT_BY_VALUE, null, entityAggregateQuery);
+            if (buckets.isEmpty()) {
+                return entityAggregateResponse;
+            }
+
+            entityAggregateResponse.setCountResult(buckets.stream()
+                    .map(bucket -> new EntityAggregateResponse.CountResult(formatAggregateValue(valueType, bucket.getValue()), valueType, Math.toIntExact(bucket.getCount())))
+                    .toList());
+        } else {
+            List<TimeSeriesBucket> buckets = aggregateHistory(entityPO.getId(), valueField, toTimeSeriesAggregation(aggregateType), null, entityAggregateQuery);
+            if (buckets.isEmpty()) {
+                return entityAggregateResponse;
             }
-            entityAggregateResponse.setCountResult(countResult);
+
+            entityAggregateResponse.setValue(toAggregateResponseValue(valueType, aggregateType, buckets.get(0)));
+            entityAggregateResponse.setValueType(valueType);
+        }
+
+        if (entityAggregateQuery.getInterval() != null) {
+            TimeSeriesAggregation bucketAggregation = aggregateType == AggregateType.COUNT ? TimeSeriesAggregation.COUNT : toTimeSeriesAggregation(aggregateType);
+            entityAggregateResponse.setBuckets(aggregateHistory(entityPO.getId(), valueField, bucketAggregation, entityAggregateQuery.getInterval(), entityAggregateQuery).stream()
+                    .map(bucket -> new EntityAggregateResponse.BucketResult(
+                            bucket.getTimestamp(),
+                            aggregateType == AggregateType.COUNT ? bucket.getCount() : toAggregateResponseValue(valueType, aggregateType, bucket),
+                            bucket.getCount()))
+                    .toList());
         }
         return entityAggregateResponse;
     }
 
+    private List<TimeSeriesBucket> aggregateHistory(Long entityId, String valueField, TimeSeriesAggregation aggregation, Long interval, EntityAggregateQuery entityAggregateQuery) {
+        TimeSeriesAggregateQuery query = new TimeSeriesAggregateQuery();
+        query.setIndexedKeyValues(Map.of(EntityHistoryPO.Fields.entityId, entityId));
+        query.setStartTimestamp(entityAggregateQuery.getStartTimestamp());
+        // the end of an entity aggregate query is inclusive
+        query.setEndTimestamp(entityAggregateQuery.getEndTimestamp() + 1);
+        query.setValueColumn(valueField);
+        query.setInterval(interval);
+
+        boolean foldMinMax = (aggregation == TimeSeriesAggregation.MIN || aggregation == TimeSeriesAggregation.MAX)
+                && (EntityHistoryPO.Fields.valueBoolean.equals(valueField) || EntityHistoryPO.Fields.valueBinary.equals(valueField));
+        // databases do not order booleans and binaries in MIN and MAX, the distinct values are counted instead and the extreme is picked here
+        query.setAggregation(foldMinMax ? TimeSeriesAggregation.COUNT_BY_VALUE : aggregation);
+
+        Consumer<Filterable> filterable = f -> f.eq(EntityHistoryPO.Fields.entityId, entityId)
+                .ge(EntityHistoryPO.Fields.timestamp, query.getStartTimestamp())
+                .lt(EntityHistoryPO.Fields.timestamp, query.getEndTimestamp());
+        List<TimeSeriesBucket> buckets = entityHistoryRepository.aggregate(EntityHistoryPO.Fields.timestamp, filterable, query);
+        if (!foldMinMax) {
+            return buckets;
+        }
+
+        Comparator<Object> comparator = EntityHistoryPO.Fields.valueBinary.equals(valueField)
+                ? (a, b) -> byteArrayComparator.compare((byte[]) a, (byte[]) b)
+                : (a, b) -> Boolean.compare((Boolean) a, (Boolean) b);
+        Map<Long, TimeSeriesBucket> extremes = new TreeMap<>();
+        buckets.forEach(bucket -> extremes.merge(bucket.getTimestamp(), bucket, (current, next) -> {
+            int compared = comparator.compare(next.getValue(), current.getValue());
+            boolean replace = aggregation == TimeSeriesAggregation.MIN ? compared < 0 : compared > 0;
+            long count = current.getCount() + next.getCount();
+            TimeSeriesBucket merged = replace ? next : current;
+            return new TimeSeriesBucket(merged.getTimestamp(), merged.getValue(), count);
+        }));
+        return new ArrayList<>(extremes.values());
+    }
+
+    private TimeSeriesAggregation toTimeSeriesAggregation(AggregateType aggregateType) {
+        return switch (aggregateType) {
+            case LAST -> TimeSeriesAggregation.LAST;
+            case MIN -> TimeSeriesAggregation.MIN;
+            case MAX -> TimeSeriesAggregation.MAX;
+            case AVG -> TimeSeriesAggregation.AVG;
+            case SUM -> TimeSeriesAggregation.SUM;
+            case COUNT -> TimeSeriesAggregation.COUNT;
+        };
+    }
+
+    private Object toAggregateResponseValue(EntityValueType valueType, AggregateType aggregateType, TimeSeriesBucket bucket) {
+        Object value = bucket.getValue();
+        if (aggregateType == AggregateType.AVG && value instanceof Number average) {
+            if (valueType == EntityValueType.LONG) {
+                return String.valueOf(average.doubleValue());
+            }
+
+            return BigDecimal.valueOf(average.doubleValue()).setScale(8, RoundingMode.HALF_EVEN).doubleValue();
+        }
+
+        return formatAggregateValue(valueType, value);
+    }
+
+    private Object formatAggregateValue(EntityValueType valueType, Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        return switch (valueType) {
+            // long values are returned as strings to keep their precision in javascript
+            case LONG -> String.valueOf(((Number) value).longValue());
+            case DOUBLE -> ((Number) value).doubleValue();
+            default -> value;
+        };
+    }
+
     public EntityLatestResponse getEntityStatus(Long entityId) {
         return self().batchGetEntityStatus(List.of(entityId)).get(entityId.toString());
     }
@@ -0,0 +1,67 @@
+package com.milesight.beaveriot.entity.writebehind;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Multi-row statements writing entity values, the parameters of every row follow the column lists below.
+ */
+public enum EntityValueUpsertDialect {
+
+    POSTGRESQL,
+    H2;
+
+    static final List<String> LATEST_COLUMNS = List.of("id", "tenant_id", "entity_id", "value_long", "value_double",
+            "value_boolean", "value_string", "value_binary", "timestamp", "updated_at");
+
+    static final List<String> HISTORY_COLUMNS = List.of("id", "tenant_id", "entity_id", "value_long", "value_double",
+            "value_boolean", "value_string", "value_binary", "timestamp", "created_at", "created_by", "updated_at", "updated_by");
+
+    // H2 cannot derive the types of parameters inside a VALUES table
+    private static final String H2_LATEST_ROW = "(CAST(? AS BIGINT), CAST(? AS VARCHAR), CAST(? AS BIGINT), CAST(? AS BIGINT), "
+            + "CAST(? AS DOUBLE PRECISION), CAST(? AS BOOLEAN), CAST(? AS VARCHAR), CAST(? AS VARBINARY), CAST(? AS BIGINT), CAST(? AS BIGINT))";
+
+    private static final List<String> LATEST_VALUE_COLUMNS = LATEST_COLUMNS.subList(3, LATEST_COLUMNS.size());
+
+    public static EntityValueUpsertDialect of(String databaseProductName) {
+        if (databaseProductName != null && databaseProductName.toLowerCase(Locale.ROOT).contains("h2")) {
+            return H2;
+        }
+        return POSTGRESQL;
+    }
+
+    /**
+     * Insert the latest values, an existing row of the entity is only replaced by a newer value
+     */
+    public String latestUpsertSql(int rows) {
+        String columns = String.join(", ", LATEST_COLUMNS);
+        if (this == H2) {
+            return "MERGE INTO t_entity_latest t USING (VALUES " + String.join(", ", Collections.nCopies(rows, H2_LATEST_ROW)) + ") "
+                    + "AS s(" + columns + ") ON t.entity_id = s.entity_id "
+                    + "WHEN MATCHED AND t.timestamp < s.timestamp THEN UPDATE SET "
+                    + LATEST_VALUE_COLUMNS.stream().map(c -> c + " = s." + c).collect(Collectors.joining(", ")) + " "
+                    + "WHEN NOT MATCHED THEN INSERT (" + columns + ") VALUES ("
+                    + LATEST_COLUMNS.stream().map(c -> "s." + c).collect(Collectors.joining(", ")) + ")";
+        }
+
+        return "INSERT INTO t_entity_latest (" + columns + ") VALUES " + rowPlaceholders(rows, LATEST_COLUMNS.size()) + " "
+                + "ON CONFLICT (entity_id) DO UPDATE SET "
+                + LATEST_VALUE_COLUMNS.stream().map(c -> c + " = EXCLUDED." + c).collect(Collectors.joining(", ")) + " "
+                + "WHERE t_entity_latest.timestamp < EXCLUDED.timestamp";
+    }
+
+    /**
+     * Insert history rows, every row is kept
+     */
+    public String historyInsertSql(int rows) {
+        return "INSERT INTO t_entity_history (" + String.join(", ", HISTORY_COLUMNS) + ") VALUES "
+                + rowPlaceholders(rows, HISTORY_COLUMNS.size());
+    }
+
+    private static String rowPlaceholders(int rows, int columns) {
+        String row = "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+        return String.join(", ", Collections.nCopies(rows, row));
+    }
+}
@@ -0,0 +1,10 @@
+package com.milesight.beaveriot.entity.writebehind;
+
+import com.milesight.beaveriot.entity.po.EntityHistoryPO;
+import com.milesight.beaveriot.entity.po.EntityLatestPO;
+
+/**
+ * Value of one entity waiting to be written, either the latest value or a history row may be absent.
+ */
+public record EntityValueWrite(String tenantId, String entityKey, EntityLatestPO latest, EntityHistoryPO history) {
+}
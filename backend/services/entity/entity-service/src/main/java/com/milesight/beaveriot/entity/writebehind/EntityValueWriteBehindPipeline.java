@@ -0,0 +1,420 @@
+package com.milesight.beaveriot.entity.writebehind;
+
+import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.entity.po.EntityHistoryPO;
+import com.milesight.beaveriot.entity.po.EntityLatestPO;
+import com.milesight.beaveriot.entity.service.EntityValueService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Write-behind pipeline of entity values.
+ * <p>
+ * Saving threads put the values of a payload into a bounded queue and return. A single flusher collects the
+ * payloads of one flush interval, keeps only the newest latest value of every entity but all history rows, and writes
+ * them with multi-row statements. The latest value cache of the written entities is evicted after every flush.
+ * <p>
+ * A failed statement is retried with backoff, then its rows are written one by one so that a single invalid row
+ * only drops itself. Rows not written because the database is unavailable are kept and written by the next flush.
+ * <p>
+ * When the queue stays full for the offer timeout, {@link #submitOrWrite} writes the values on the calling thread,
+ * so a slow database throttles the producers instead of growing the queue.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "entity.value.write-behind", name = "enabled", havingValue = "true")
+public class EntityValueWriteBehindPipeline {
+
+    private static final String METRIC_PREFIX = "entity.value.write_behind.";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityValueWriteBehindProperties properties;
+
+    private final ObjectProvider<EntityValueService> entityValueService;
+
+    private final BlockingQueue<List<EntityValueWrite>> queue;
+
+    private final Timer backpressureTimer;
+
+    private final Counter rejectedCounter;
+
+    private final Timer flushTimer;
+
+    private final Counter flushedLatestCounter;
+
+    private final Counter flushedHistoryCounter;
+
+    private final Counter failedCounter;
+
+    private final Counter droppedCounter;
+
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    private volatile EntityValueUpsertDialect dialect;
+
+    /**
+     * Values of previous flushes not written yet, only accessed by the flusher
+     */
+    private List<EntityValueWrite> retained = new ArrayList<>();
+
+    public EntityValueWriteBehindPipeline(JdbcTemplate jdbcTemplate,
+                                          EntityValueWriteBehindProperties properties,
+                                          ObjectProvider<EntityValueService> entityValueService,
+                                          ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.entityValueService = entityValueService;
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        meterRegistry.gaugeCollectionSize(METRIC_PREFIX + "queue.size", List.of(), queue);
+        this.backpressureTimer = meterRegistry.timer(METRIC_PREFIX + "backpressure");
+        this.rejectedCounter = meterRegistry.counter(METRIC_PREFIX + "rejected");
+        this.flushTimer = meterRegistry.timer(METRIC_PREFIX + "flush.latency");
+        this.flushedLatestCounter = meterRegistry.counter(METRIC_PREFIX + "flushed", "type", "latest");
+        this.flushedHistoryCounter = meterRegistry.counter(METRIC_PREFIX + "flushed", "type", "history");
+        this.failedCounter = meterRegistry.counter(METRIC_PREFIX + "failed");
+        this.droppedCounter = meterRegistry.counter(METRIC_PREFIX + "dropped");
+        meterRegistry.gauge(METRIC_PREFIX + "retained", this, pipeline -> pipeline.retained.size());
+
+        this.flusher = new Thread(this::runFlusher, "entity-value-write-behind");
+        this.flusher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
+    }
+
+    /**
+     * Queue the values of one payload, or write them on the calling thread if the queue has no free capacity
+     * within the offer timeout.
+     */
+    public void submitOrWrite(List<EntityValueWrite> writes) {
+        if (submit(writes)) {
+            return;
+        }
+
+        CoalescedWrites coalesced = coalesce(List.of(writes));
+        List<EntityValueWrite> unwritten;
+        try {
+            unwritten = write(coalesced);
+        } catch (Exception e) {
+            log.error("Failed to write {} entity values", writes.size(), e);
+            unwritten = writes;
+        }
+        if (!unwritten.isEmpty()) {
+            droppedCounter.increment(unwritten.size());
+            log.error("Dropped {} entity values not written on the saving thread", unwritten.size());
+        }
+        evictLatestValues(coalesced.latestKeysByTenant());
+    }
+
+    /**
+     * Queue the values of one payload.
+     *
+     * @return false if the queue had no free capacity within the offer timeout, nothing has been queued then
+     */
+    boolean submit(List<EntityValueWrite> writes) {
+        if (writes.isEmpty()) {
+            return true;
+        }
+
+        if (running && queue.offer(writes)) {
+            return true;
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (running && queue.offer(writes, properties.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            backpressureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        rejectedCounter.increment();
+        return false;
+    }
+
+    private void runFlusher() {
+        List<List<EntityValueWrite>> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // woken up by destroy, the queue is drained by the loop condition
+            }
+
+            if (!batch.isEmpty() || !retained.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<List<EntityValueWrite>> batch) throws InterruptedException {
+        List<EntityValueWrite> first = queue.poll(properties.getFlushInterval().toMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+
+        batch.add(first);
+        long deadline = System.nanoTime() + properties.getFlushInterval().toNanos();
+        int maxBatchSize = properties.getMaxBatchSize();
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0 || !running) {
+                return;
+            }
+
+            List<EntityValueWrite> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    void flush(List<List<EntityValueWrite>> batch) {
+        if (!retained.isEmpty()) {
+            // older than the collected values, coalescing lets a collected latest value of the same entity win
+            batch.add(0, retained);
+            retained = new ArrayList<>();
+        }
+
+        CoalescedWrites coalesced = coalesce(batch);
+        long start = System.nanoTime();
+        try {
+            retain(write(coalesced));
+        } catch (Exception e) {
+            log.error("Failed to flush {} latest values and {} history rows", coalesced.latest().size(), coalesced.history().size(), e);
+            retain(toWrites(coalesced, coalesced.latest(), coalesced.history()));
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        // also evicted after a failure, values cached while the payloads were waiting may be stale
+        evictLatestValues(coalesced.latestKeysByTenant());
+    }
+
+    /**
+     * @return the values not written because the database is unavailable
+     */
+    private List<EntityValueWrite> write(CoalescedWrites coalesced) {
+        EntityValueUpsertDialect currentDialect = getDialect();
+        List<EntityLatestPO> unwrittenLatest = writeRows(coalesced.latest(), currentDialect::latestUpsertSql, this::toLatestArgs, false);
+        List<EntityHistoryPO> unwrittenHistory = writeRows(coalesced.history(), currentDialect::historyInsertSql, this::toHistoryArgs, true);
+        flushedLatestCounter.increment(coalesced.latest().size() - unwrittenLatest.size());
+        flushedHistoryCounter.increment(coalesced.history().size() - unwrittenHistory.size());
+        if (unwrittenLatest.isEmpty() && unwrittenHistory.isEmpty()) {
+            return List.of();
+        }
+
+        failedCounter.increment();
+        log.warn("Failed to write {} latest values and {} history rows, retrying with the next flush", unwrittenLatest.size(), unwrittenHistory.size());
+        return toWrites(coalesced, unwrittenLatest, unwrittenHistory);
+    }
+
+    private <T> List<T> writeRows(List<T> rows, IntFunction<String> sql, Function<T, List<Object>> toArgs, boolean insertOnly) {
+        int rowsPerStatement = properties.getRowsPerStatement();
+        for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+            List<T> chunk = rows.subList(from, Math.min(from + rowsPerStatement, rows.size()));
+            List<Object> args = new ArrayList<>();
+            chunk.forEach(row -> args.addAll(toArgs.apply(row)));
+            try {
+                updateWithRetry(sql.apply(chunk.size()), args.toArray());
+            } catch (DataAccessException e) {
+                log.warn("Failed to write {} rows in one statement, writing them one by one", chunk.size(), e);
+                int unwrittenFrom = writeOneByOne(chunk, sql.apply(1), toArgs, insertOnly);
+                if (unwrittenFrom < chunk.size()) {
+                    // the database is unavailable, the following chunks are not tried either
+                    return new ArrayList<>(rows.subList(from + unwrittenFrom, rows.size()));
+                }
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * @return the index of the first row not written because the database is unavailable, or the size of the rows
+     */
+    private <T> int writeOneByOne(List<T> rows, String sql, Function<T, List<Object>> toArgs, boolean insertOnly) {
+        for (int i = 0; i < rows.size(); i++) {
+            try {
+                jdbcTemplate.update(sql, toArgs.apply(rows.get(i)).toArray());
+            } catch (DuplicateKeyException e) {
+                if (!insertOnly) {
+                    drop(rows.get(i), e);
+                }
+                // otherwise the row has been inserted by a statement that failed afterwards
+            } catch (DataIntegrityViolationException e) {
+                drop(rows.get(i), e);
+            } catch (DataAccessException e) {
+                return i;
+            }
+        }
+        return rows.size();
+    }
+
+    private void updateWithRetry(String sql, Object[] args) {
+        long backoffMillis = properties.getRetryBackoff().toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                jdbcTemplate.update(sql, args);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // a row of the statement is invalid, retrying the same statement cannot succeed
+                throw e;
+            } catch (DataAccessException e) {
+                if (attempt >= properties.getRetryAttempts()) {
+                    throw e;
+                }
+
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interruptedException) {
+                    // interrupted by destroy, the rows are written one by one without waiting
+                    throw e;
+                }
+                backoffMillis *= 2;
+            }
+        }
+    }
+
+    private void drop(Object row, Exception e) {
+        droppedCounter.increment();
+        log.error("Dropped invalid entity value row {}", row, e);
+    }
+
+    private void retain(List<EntityValueWrite> unwritten) {
+        retained.addAll(unwritten);
+        int excess = retained.size() - properties.getMaxRetainedValues();
+        if (excess > 0) {
+            retained.subList(0, excess).clear();
+            droppedCounter.increment(excess);
+            log.error("Dropped the {} oldest entity values kept for the next flush", excess);
+        }
+    }
+
+    private List<EntityValueWrite> toWrites(CoalescedWrites coalesced, List<EntityLatestPO> latest, List<EntityHistoryPO> history) {
+        List<EntityValueWrite> writes = new ArrayList<>(latest.size() + history.size());
+        latest.forEach(po -> writes.add(new EntityValueWrite(po.getTenantId(), coalesced.latestKeys().get(po.getEntityId()), po, null)));
+        history.forEach(po -> writes.add(new EntityValueWrite(po.getTenantId(), null, null, po)));
+        return writes;
+    }
+
+    private List<Object> toLatestArgs(EntityLatestPO po) {
+        return Arrays.asList(po.getId(), po.getTenantId(), po.getEntityId(), po.getValueLong(), po.getValueDouble(),
+                po.getValueBoolean(), po.getValueString(), po.getValueBinary(), po.getTimestamp(), po.getUpdatedAt());
+    }
+
+    private List<Object> toHistoryArgs(EntityHistoryPO po) {
+        return Arrays.asList(po.getId(), po.getTenantId(), po.getEntityId(), po.getValueLong(), po.getValueDouble(),
+                po.getValueBoolean(), po.getValueString(), po.getValueBinary(), po.getTimestamp(), po.getCreatedAt(),
+                po.getCreatedBy(), po.getUpdatedAt(), po.getUpdatedBy());
+    }
+
+    private void evictLatestValues(Map<String, Set<String>> keysByTenant) {
+        EntityValueService service = entityValueService.getIfAvailable();
+        if (service == null) {
+            return;
+        }
+
+        keysByTenant.forEach((tenantId, keys) -> {
+            try {
+                TenantContext.setTenantId(tenantId);
+                service.evictLatestValues(keys);
+            } catch (Exception e) {
+                log.warn("Failed to evict latest values of {} entities of tenant {}", keys.size(), tenantId, e);
+            } finally {
+                TenantContext.clear();
+            }
+        });
+    }
+
+    private EntityValueUpsertDialect getDialect() {
+        if (dialect == null) {
+            dialect = EntityValueUpsertDialect.of(jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+        }
+        return dialect;
+    }
+
+    /**
+     * Merge the payloads of one flush, the newest latest value of an entity wins, on equal timestamps the later one.
+     */
+    static CoalescedWrites coalesce(Collection<List<EntityValueWrite>> batch) {
+        Map<Long, EntityLatestPO> latestByEntityId = new LinkedHashMap<>();
+        List<EntityHistoryPO> history = new ArrayList<>();
+        Map<String, Set<String>> latestKeysByTenant = new HashMap<>();
+        Map<Long, String> latestKeys = new HashMap<>();
+        batch.forEach(writes -> writes.forEach(write -> {
+            if (write.history() != null) {
+                history.add(write.history());
+            }
+
+            EntityLatestPO latest = write.latest();
+            if (latest == null) {
+                return;
+            }
+
+            latestByEntityId.merge(latest.getEntityId(), latest, (a, b) -> b.getTimestamp() >= a.getTimestamp() ? b : a);
+            latestKeysByTenant.computeIfAbsent(write.tenantId(), k -> new LinkedHashSet<>()).add(write.entityKey());
+            latestKeys.put(latest.getEntityId(), write.entityKey());
+        }));
+        return new CoalescedWrites(new ArrayList<>(latestByEntityId.values()), history, latestKeysByTenant, latestKeys);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(properties.getFlushInterval().toMillis() + TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!queue.isEmpty() || !retained.isEmpty()) {
+            log.warn("{} entity value payloads and {} retained values were not flushed before shutdown", queue.size(), retained.size());
+        }
+    }
+
+    record CoalescedWrites(List<EntityLatestPO> latest, List<EntityHistoryPO> history, Map<String, Set<String>> latestKeysByTenant,
+                           Map<Long, String> latestKeys) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.milesight.beaveriot.entity.writebehind;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "entity.value.write-behind")
+public class EntityValueWriteBehindProperties {
+
+    /**
+     * Entity values are written by a background flusher instead of the saving thread.
+     * Values accepted but not flushed yet are lost if the process dies.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of payloads waiting for the flusher
+     */
+    private int capacity = 10000;
+
+    /**
+     * Time the flusher keeps collecting payloads before writing them
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /**
+     * Maximum number of payloads written by one flush
+     */
+    private int maxBatchSize = 2000;
+
+    /**
+     * Maximum number of rows of one insert statement
+     */
+    private int rowsPerStatement = 500;
+
+    /**
+     * Time a saving thread waits for free capacity, the payload is written synchronously afterwards
+     */
+    private Duration offerTimeout = Duration.ofSeconds(1);
+
+    /**
+     * Attempts of one insert statement before its rows are written one by one
+     */
+    private int retryAttempts = 3;
+
+    /**
+     * Wait before the second attempt of a statement, doubled for every further attempt
+     */
+    private Duration retryBackoff = Duration.ofMillis(100);
+
+    /**
+     * Maximum number of values kept for the next flush while the database is unavailable, the oldest are dropped beyond
+     */
+    private int maxRetainedValues = 100000;
+}
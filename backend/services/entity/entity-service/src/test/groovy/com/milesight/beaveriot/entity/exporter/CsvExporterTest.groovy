@@ -1,6 +1,6 @@
 package com.milesight.beaveriot.entity.exporter
 
-
+import com.milesight.beaveriot.base.export.KeysetPageReader
 import spock.lang.Specification
 
 import java.nio.charset.StandardCharsets
@@ -33,6 +33,27 @@ class CsvExporterTest extends Specification {
 """
     }
 
+    def test_streaming_export_csv_data() {
+        given:
+        def outputStream = new ByteArrayOutputStream()
+        def pageReader = { Integer last ->
+            def from = last == null ? 4 : last - 1
+            return from > 0 ? [from, from - 1] : []
+        } as KeysetPageReader<Integer>
+
+        when:
+        CsvExporter.newInstance(TestExportCsvData)
+                .streaming({ Integer i -> i == 2 ? null : new TestExportCsvData(field: "a \"" + i + "\"", splitByComma: null) })
+                .export(outputStream, pageReader)
+
+        then:
+        outputStream.toString(StandardCharsets.UTF_8) == '''"field","split,by,comma","parent_property"
+"a ""4""",,"0"
+"a ""3""",,"0"
+"a ""1""",,"0"
+'''
+    }
+
     class TestExportCsvData extends TestParentExportCsvData {
 
         @ExportField
@@ -0,0 +1,245 @@
+package com.milesight.beaveriot.entity.service
+
+import com.milesight.beaveriot.base.exception.ServiceException
+import com.milesight.beaveriot.context.constants.ExchangeContextKeys
+import com.milesight.beaveriot.context.integration.enums.EntityType
+import com.milesight.beaveriot.context.integration.enums.EntityValueType
+import com.milesight.beaveriot.context.integration.enums.ValueStoreMod
+import com.milesight.beaveriot.context.integration.model.Entity
+import com.milesight.beaveriot.context.integration.model.ExchangePayload
+import com.milesight.beaveriot.context.security.TenantContext
+import com.milesight.beaveriot.data.model.TimeSeriesAggregateQuery
+import com.milesight.beaveriot.data.model.TimeSeriesAggregation
+import com.milesight.beaveriot.data.model.TimeSeriesBucket
+import com.milesight.beaveriot.entity.enums.AggregateType
+import com.milesight.beaveriot.entity.model.request.EntityAggregateQuery
+import com.milesight.beaveriot.entity.po.EntityPO
+import com.milesight.beaveriot.entity.repository.EntityHistoryRepository
+import com.milesight.beaveriot.entity.repository.EntityLatestRepository
+import com.milesight.beaveriot.entity.repository.EntityRepository
+import com.milesight.beaveriot.entity.writebehind.EntityValueWrite
+import com.milesight.beaveriot.entity.writebehind.EntityValueWriteBehindPipeline
+import org.springframework.transaction.support.TransactionSynchronization
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.Specification
+
+class EntityValueServiceTest extends Specification {
+
+    EntityRepository entityRepository = Mock()
+
+    EntityHistoryRepository entityHistoryRepository = Mock()
+
+    EntityLatestRepository entityLatestRepository = Mock()
+
+    EntityValueWriteBehindPipeline entityValueWriteBehindPipeline = Mock()
+
+    EntityValueService entityValueService = new EntityValueService()
+
+    List<TimeSeriesAggregateQuery> aggregateQueries = []
+
+    def setup() {
+        entityValueService.@entityRepository = entityRepository
+        entityValueService.@entityHistoryRepository = entityHistoryRepository
+        entityValueService.@entityLatestRepository = entityLatestRepository
+    }
+
+    def cleanup() {
+        TenantContext.clear()
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization()
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false)
+    }
+
+    def "should keep the id of an existing latest value row when writing behind"() {
+        given:
+        writeBehind()
+        entityLatestRepository.findIdsByEntityIdIn([1L, 2L]) >> [[1L, 100L] as Object[]]
+        def a = property(1L, "a")
+        def b = property(2L, "b")
+        def c = event(3L, "c")
+        List<EntityValueWrite> submitted = null
+
+        when:
+        def ids = entityValueService.saveValues(exchange(a, b, c), 1000L)
+
+        then:
+        1 * entityValueWriteBehindPipeline.submitOrWrite(_) >> { args -> submitted = args[0] }
+        ids[a.key].first == 100L
+        ids[b.key].first != 100L && ids[b.key].first > 0
+        ids[c.key].first == -1L
+        submitted.find { it.entityKey() == a.key }.latest().id == 100L
+        submitted.collectEntries { [it.entityKey(), it.history().id] } == ids.collectEntries { key, value -> [key, value.second] }
+    }
+
+    def "should submit the values only after the transaction has committed"() {
+        given:
+        writeBehind()
+        entityLatestRepository.findIdsByEntityIdIn(_) >> []
+        TransactionSynchronizationManager.initSynchronization()
+        TransactionSynchronizationManager.setActualTransactionActive(true)
+
+        when:
+        entityValueService.saveValues(exchange(property(1L, "a")), 1000L)
+
+        then:
+        0 * entityValueWriteBehindPipeline._
+
+        when:
+        TransactionSynchronizationManager.synchronizations*.afterCompletion(status)
+
+        then:
+        submits * entityValueWriteBehindPipeline.submitOrWrite(_)
+
+        where:
+        status                                       || submits
+        TransactionSynchronization.STATUS_COMMITTED   || 1
+        TransactionSynchronization.STATUS_ROLLED_BACK || 0
+    }
+
+    def "should aggregate the inclusive range in the database and bucket it when an interval is given"() {
+        given:
+        entity(EntityValueType.LONG)
+        aggregate([new TimeSeriesBucket(1000L, 2.5d, 4L)], [new TimeSeriesBucket(0L, 2.0d, 3L), new TimeSeriesBucket(60000L, 4.0d, 1L)])
+
+        when:
+        def response = entityValueService.historyAggregate(query(AggregateType.AVG, 60000L))
+
+        then:
+        response.value == "2.5"
+        response.valueType == EntityValueType.LONG
+        response.buckets*.timestamp == [0L, 60000L]
+        response.buckets*.value == ["2.0", "4.0"]
+        response.buckets*.count == [3L, 1L]
+        aggregateQueries*.aggregation == [TimeSeriesAggregation.AVG, TimeSeriesAggregation.AVG]
+        aggregateQueries*.interval == [null, 60000L]
+        aggregateQueries.every { it.startTimestamp == 1000L && it.endTimestamp == 100001L && it.valueColumn == "valueLong" }
+    }
+
+    def "should count per value over the range and per bucket"() {
+        given:
+        entity(EntityValueType.STRING)
+        aggregate([new TimeSeriesBucket(1000L, "on", 2L), new TimeSeriesBucket(1000L, "off", 1L)], [new TimeSeriesBucket(0L, 3L, 3L)])
+
+        when:
+        def response = entityValueService.historyAggregate(query(AggregateType.COUNT, 60000L))
+
+        then:
+        response.countResult*.value == ["on", "off"]
+        response.countResult*.count == [2, 1]
+        response.buckets*.value == [3L]
+        aggregateQueries*.aggregation == [TimeSeriesAggregation.COUNT_BY_VALUE, TimeSeriesAggregation.COUNT]
+    }
+
+    def "should pick the extreme of booleans from the counts per value"() {
+        given:
+        entity(EntityValueType.BOOLEAN)
+        aggregate([new TimeSeriesBucket(1000L, false, 2L), new TimeSeriesBucket(1000L, true, 1L)])
+
+        when:
+        def response = entityValueService.historyAggregate(query(aggregateType, null))
+
+        then:
+        response.value == expected
+        aggregateQueries*.aggregation == [TimeSeriesAggregation.COUNT_BY_VALUE]
+
+        where:
+        aggregateType     || expected
+        AggregateType.MAX || true
+        AggregateType.MIN || false
+    }
+
+    def "should return an empty response when nothing is aggregated"() {
+        given:
+        entity(EntityValueType.DOUBLE)
+        aggregate([])
+
+        when:
+        def response = entityValueService.historyAggregate(query(AggregateType.MAX, 60000L))
+
+        then:
+        response.value == null
+        response.buckets == null
+        aggregateQueries.size() == 1
+    }
+
+    def "should return an empty response for an entity out of permission"() {
+        given:
+        entityRepository.findOneWithDataPermission(_) >> Optional.empty()
+
+        when:
+        def response = entityValueService.historyAggregate(query(AggregateType.LAST, null))
+
+        then:
+        response.value == null
+        0 * entityHistoryRepository._
+    }
+
+    def "should reject invalid aggregations"() {
+        given:
+        entity(valueType)
+
+        when:
+        entityValueService.historyAggregate(query(aggregateType, interval))
+
+        then:
+        thrown(ServiceException)
+        0 * entityHistoryRepository._
+
+        where:
+        valueType               | aggregateType     | interval
+        EntityValueType.STRING  | AggregateType.AVG | null
+        EntityValueType.BOOLEAN | AggregateType.SUM | null
+        EntityValueType.LONG    | AggregateType.MAX | 0L
+        EntityValueType.LONG    | null              | null
+    }
+
+    private void writeBehind() {
+        TenantContext.setTenantId("t1")
+        entityValueService.@entityValueWriteBehindPipeline = entityValueWriteBehindPipeline
+    }
+
+    private static ExchangePayload exchange(Entity... entities) {
+        def exchange = ExchangePayload.create(entities.collectEntries { [it.key, 1L] })
+        exchange.putContext(ExchangeContextKeys.EXCHANGE_ENTITIES, entities.collectEntries { [it.key, it] })
+        return exchange
+    }
+
+    private static Entity property(Long id, String identifier) {
+        return entity(id, identifier, EntityType.PROPERTY)
+    }
+
+    private static Entity event(Long id, String identifier) {
+        return entity(id, identifier, EntityType.EVENT)
+    }
+
+    private static Entity entity(Long id, String identifier, EntityType type) {
+        return new Entity(id: id, integrationId: "demo", identifier: identifier, type: type,
+                valueType: EntityValueType.LONG, valueStoreMod: ValueStoreMod.ALL)
+    }
+
+    private void entity(EntityValueType valueType) {
+        def entityPO = new EntityPO()
+        entityPO.id = 1L
+        entityPO.valueType = valueType
+        entityRepository.findOneWithDataPermission(_) >> Optional.of(entityPO)
+    }
+
+    private void aggregate(List<TimeSeriesBucket>... results) {
+        def remaining = results.toList()
+        entityHistoryRepository.aggregate("timestamp", _, _) >> { String timeColumn, consumer, TimeSeriesAggregateQuery query ->
+            aggregateQueries << query
+            remaining.remove(0)
+        }
+    }
+
+    private static EntityAggregateQuery query(AggregateType aggregateType, Long interval) {
+        def query = new EntityAggregateQuery()
+        query.entityId = 1L
+        query.aggregateType = aggregateType
+        query.startTimestamp = 1000L
+        query.endTimestamp = 100000L
+        query.interval = interval
+        return query
+    }
+}
@@ -0,0 +1,229 @@
+package com.milesight.beaveriot.entity.writebehind
+
+import com.milesight.beaveriot.entity.po.EntityHistoryPO
+import com.milesight.beaveriot.entity.po.EntityLatestPO
+import com.milesight.beaveriot.entity.service.EntityValueService
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.beans.factory.ObjectProvider
+import org.springframework.dao.DataAccessResourceFailureException
+import org.springframework.dao.DataIntegrityViolationException
+import org.springframework.dao.DuplicateKeyException
+import org.springframework.jdbc.core.ConnectionCallback
+import org.springframework.jdbc.core.JdbcTemplate
+import spock.lang.Specification
+
+import java.time.Duration
+
+class EntityValueWriteBehindPipelineTest extends Specification {
+
+    RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate()
+
+    EntityValueWriteBehindProperties properties = new EntityValueWriteBehindProperties(retryBackoff: Duration.ofMillis(1))
+
+    EntityValueWriteBehindPipeline pipeline
+
+    def test_coalesce_keeps_newest_latest_value_and_all_history_rows() {
+        given:
+        def batch = [
+                [write("t1", "a", 1L, 100L), write("t1", "b", 2L, 100L)],
+                [write("t1", "a", 1L, 300L)],
+                [write("t1", "a", 1L, 200L), write("t2", "c", 3L, 100L)],
+        ]
+
+        when:
+        def coalesced = EntityValueWriteBehindPipeline.coalesce(batch)
+
+        then:
+        coalesced.latest().collectEntries { [it.entityId, it.timestamp] } == [1L: 300L, 2L: 100L, 3L: 100L]
+        coalesced.history().collect { it.timestamp } == [100L, 100L, 300L, 200L, 100L]
+        coalesced.latestKeysByTenant() == ["t1": ["a", "b"] as Set, "t2": ["c"] as Set]
+    }
+
+    def test_coalesce_prefers_later_payload_on_equal_timestamp() {
+        given:
+        def first = write("t1", "a", 1L, 100L)
+        first.latest().valueLong = 1L
+        def second = write("t1", "a", 1L, 100L)
+        second.latest().valueLong = 2L
+
+        when:
+        def coalesced = EntityValueWriteBehindPipeline.coalesce([[first], [second]])
+
+        then:
+        coalesced.latest()*.valueLong == [2L]
+    }
+
+    def test_coalesce_skips_history_only_writes_for_cache_eviction() {
+        when:
+        def coalesced = EntityValueWriteBehindPipeline.coalesce([[new EntityValueWrite("t1", "e", null, history(4L, 100L))]])
+
+        then:
+        coalesced.latest().isEmpty()
+        coalesced.history().size() == 1
+        coalesced.latestKeysByTenant().isEmpty()
+    }
+
+    def test_upsert_statements() {
+        expect:
+        EntityValueUpsertDialect.POSTGRESQL.latestUpsertSql(2).count("?") == 20
+        EntityValueUpsertDialect.POSTGRESQL.latestUpsertSql(1).endsWith("WHERE t_entity_latest.timestamp < EXCLUDED.timestamp")
+        EntityValueUpsertDialect.H2.latestUpsertSql(3).count("?") == 30
+        EntityValueUpsertDialect.H2.latestUpsertSql(1).startsWith("MERGE INTO t_entity_latest")
+        EntityValueUpsertDialect.H2.historyInsertSql(2).count("?") == 26
+        EntityValueUpsertDialect.of("H2") == EntityValueUpsertDialect.H2
+        EntityValueUpsertDialect.of("PostgreSQL") == EntityValueUpsertDialect.POSTGRESQL
+    }
+
+    def test_flush_retries_failed_statement_with_backoff() {
+        given:
+        createPipeline()
+        jdbcTemplate.failure = { String sql, List<Long> entityIds, int call -> call <= 2 ? new DataAccessResourceFailureException("timeout") : null }
+
+        when:
+        pipeline.flush([[latestOnly("t1", "a", 1L, 100L), latestOnly("t1", "b", 2L, 100L)]])
+
+        then:
+        jdbcTemplate.calls.size() == 3
+        jdbcTemplate.written == [1L, 2L]
+        pipeline.@retained.isEmpty()
+    }
+
+    def test_flush_writes_rows_one_by_one_and_drops_only_invalid_row() {
+        given:
+        createPipeline()
+        jdbcTemplate.failure = { String sql, List<Long> entityIds, int call ->
+            entityIds.contains(2L) ? new DataIntegrityViolationException("value too long") : null
+        }
+
+        when:
+        pipeline.flush([[latestOnly("t1", "a", 1L, 100L), latestOnly("t1", "b", 2L, 100L), latestOnly("t1", "c", 3L, 100L)]])
+
+        then:
+        // the invalid statement is not retried
+        jdbcTemplate.calls*.entityIds == [[1L, 2L, 3L], [1L], [2L], [3L]]
+        jdbcTemplate.written == [1L, 3L]
+        pipeline.@retained.isEmpty()
+    }
+
+    def test_flush_keeps_values_while_database_is_unavailable() {
+        given:
+        createPipeline()
+        jdbcTemplate.failure = { String sql, List<Long> entityIds, int call -> new DataAccessResourceFailureException("connection refused") }
+
+        when:
+        pipeline.flush([[write("t1", "a", 1L, 100L), write("t1", "b", 2L, 100L)]])
+
+        then:
+        jdbcTemplate.written.isEmpty()
+        pipeline.@retained*.entityKey() == ["a", "b", null, null]
+
+        when:
+        jdbcTemplate.failure = null
+        jdbcTemplate.calls.clear()
+        pipeline.flush([[write("t1", "a", 1L, 200L)]])
+
+        then:
+        def latest = jdbcTemplate.calls.find { it.sql.startsWith("INSERT INTO t_entity_latest") }
+        latest.entityIds == [1L, 2L]
+        // the newer collected value of an entity replaces its retained one
+        latest.args[8] == 200L
+        jdbcTemplate.calls.find { it.sql.startsWith("INSERT INTO t_entity_history") }.entityIds == [1L, 2L, 1L]
+        pipeline.@retained.isEmpty()
+    }
+
+    def test_flush_counts_duplicate_history_row_as_written() {
+        given:
+        createPipeline()
+        jdbcTemplate.failure = { String sql, List<Long> entityIds, int call ->
+            entityIds.contains(1L) ? new DuplicateKeyException("duplicate key") : null
+        }
+
+        when:
+        pipeline.flush([[historyOnly("t1", 1L, 100L), historyOnly("t1", 2L, 100L)]])
+
+        then:
+        jdbcTemplate.written == [2L]
+        pipeline.@retained.isEmpty()
+    }
+
+    def test_flush_drops_oldest_retained_values_beyond_limit() {
+        given:
+        properties.maxRetainedValues = 2
+        createPipeline()
+        jdbcTemplate.failure = { String sql, List<Long> entityIds, int call -> new DataAccessResourceFailureException("connection refused") }
+
+        when:
+        pipeline.flush([[latestOnly("t1", "a", 1L, 100L), latestOnly("t1", "b", 2L, 100L), latestOnly("t1", "c", 3L, 100L)]])
+
+        then:
+        pipeline.@retained*.entityKey() == ["b", "c"]
+    }
+
+    def test_submit_or_write_writes_on_calling_thread_when_queue_is_full() {
+        given:
+        properties.capacity = 1
+        properties.offerTimeout = Duration.ofMillis(1)
+        createPipeline()
+
+        when:
+        pipeline.submitOrWrite([latestOnly("t1", "a", 1L, 100L)])
+        pipeline.submitOrWrite([latestOnly("t1", "b", 2L, 100L)])
+
+        then:
+        jdbcTemplate.written == [2L]
+    }
+
+    private void createPipeline() {
+        pipeline = new EntityValueWriteBehindPipeline(jdbcTemplate, properties,
+                Stub(ObjectProvider) { getIfAvailable() >> null } as ObjectProvider<EntityValueService>,
+                Stub(ObjectProvider) { getIfAvailable(_) >> new SimpleMeterRegistry() } as ObjectProvider<MeterRegistry>)
+    }
+
+    private static EntityValueWrite latestOnly(String tenantId, String key, Long entityId, Long timestamp) {
+        return new EntityValueWrite(tenantId, key, new EntityLatestPO(entityId: entityId, timestamp: timestamp), null)
+    }
+
+    private static EntityValueWrite historyOnly(String tenantId, Long entityId, Long timestamp) {
+        return new EntityValueWrite(tenantId, null, null, history(entityId, timestamp))
+    }
+
+    private static EntityValueWrite write(String tenantId, String key, Long entityId, Long timestamp) {
+        def latest = new EntityLatestPO(entityId: entityId, timestamp: timestamp)
+        return new EntityValueWrite(tenantId, key, latest, history(entityId, timestamp))
+    }
+
+    private static EntityHistoryPO history(Long entityId, Long timestamp) {
+        return new EntityHistoryPO(entityId: entityId, timestamp: timestamp)
+    }
+
+    /**
+     * Records the write statements, a statement fails with the exception returned by {@link #failure}.
+     */
+    static class RecordingJdbcTemplate extends JdbcTemplate {
+
+        Closure<Exception> failure
+
+        List<Map> calls = []
+
+        List<Long> written = []
+
+        @Override
+        <T> T execute(ConnectionCallback<T> action) {
+            return "PostgreSQL" as T
+        }
+
+        @Override
+        int update(String sql, Object... args) {
+            int columns = sql.startsWith("INSERT INTO t_entity_latest") ? 10 : 13
+            List<Long> entityIds = (0..<args.length.intdiv(columns)).collect { args[it * columns + 2] as Long }
+            calls << [sql: sql, entityIds: entityIds, args: args.toList()]
+            def exception = failure?.call(sql, entityIds, calls.size())
+            if (exception != null) {
+                throw exception
+            }
+            written.addAll(entityIds)
+            return entityIds.size()
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.milesight.beaveriot.mqtt.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Login and topic permission state of MQTT usernames.
+ * <p>
+ * A login loads the secret of its username once and keeps only its SHA-256 digest, concurrent logins of the same
+ * username wait for that one load. Unknown usernames are remembered for the shorter negative TTL. A client that
+ * failed to log in as a username too often within the failure window is rejected without any verification until the
+ * window ends. Failures are counted per client id and username, so failing clients cannot lock out the other clients
+ * of a username.
+ * <p>
+ * Topic permissions are cached for usernames that logged in or are used by a connected client, and expire when the
+ * username is not used for the ACL TTL.
+ * <p>
+ * Entries are dropped by {@link #invalidate} whenever the credentials of a username change, the TTLs only bound how
+ * long a missed change is visible.
+ */
+@Slf4j
+@Component
+public class MqttAuthCache {
+
+    private static final String METRIC_PREFIX = "mqtt.auth.";
+
+    private static final byte[] NOT_FOUND = new byte[0];
+
+    private final MqttAuthCacheProperties properties;
+
+    private final Cache<String, byte[]> digests;
+
+    private final Cache<FailureKey, AtomicInteger> failures;
+
+    private final Cache<String, MqttUserAcl> acls;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter rejectedInvalid;
+
+    private final Counter rejectedRateLimited;
+
+    public MqttAuthCache(MqttAuthCacheProperties properties, ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.properties = properties;
+        this.digests = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new DigestExpiry(properties.getCredentialsTtl(), properties.getNegativeTtl()))
+                .build();
+        // the window starts with the first failure, later failures do not extend it
+        this.failures = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getFailureWindow())
+                .build();
+        this.acls = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterAccess(properties.getAclTtl())
+                .build();
+
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.hits = meterRegistry.counter(METRIC_PREFIX + "cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter(METRIC_PREFIX + "cache.requests", "result", "miss");
+        this.rejectedInvalid = meterRegistry.counter(METRIC_PREFIX + "login.rejected", "reason", "invalid");
+        this.rejectedRateLimited = meterRegistry.counter(METRIC_PREFIX + "login.rejected", "reason", "rate_limited");
+        meterRegistry.gauge(METRIC_PREFIX + "cache.size", digests, Cache::estimatedSize);
+    }
+
+    /**
+     * @param secretLoader loads the current secret of a username, empty if the username does not exist
+     */
+    public boolean verify(String clientId, String username, String password, Function<String, Optional<String>> secretLoader) {
+        if (!properties.isEnabled()) {
+            return secretLoader.apply(username).map(password::equals).orElse(false);
+        }
+
+        FailureKey failureKey = new FailureKey(clientId, username);
+        AtomicInteger failureCount = failures.getIfPresent(failureKey);
+        if (failureCount != null && failureCount.get() >= properties.getMaxFailures()) {
+            rejectedRateLimited.increment();
+            return false;
+        }
+
+        boolean[] loaded = new boolean[1];
+        byte[] digest = digests.get(username, key -> {
+            loaded[0] = true;
+            return secretLoader.apply(key).map(MqttAuthCache::digest).orElse(NOT_FOUND);
+        });
+        (loaded[0] ? misses : hits).increment();
+
+        if (digest != NOT_FOUND && MessageDigest.isEqual(digest, digest(password))) {
+            if (failureCount != null) {
+                failures.invalidate(failureKey);
+            }
+            return true;
+        }
+
+        rejectedInvalid.increment();
+        failures.get(failureKey, key -> new AtomicInteger()).incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Topic permissions of a username that has logged in, the broker only authorizes topics of connected clients
+     */
+    public MqttUserAcl getAcl(String topicPrefix, String username) {
+        return acls.get(username, key -> MqttUserAcl.parse(topicPrefix, key));
+    }
+
+    /**
+     * Cache the topic permissions of a username once its login succeeded
+     */
+    public void putAcl(String username, MqttUserAcl acl) {
+        acls.put(username, acl);
+    }
+
+    /**
+     * Forget the credentials and failed logins of the username
+     */
+    public void invalidate(@Nullable String username) {
+        if (username == null) {
+            return;
+        }
+
+        digests.invalidate(username);
+        failures.asMap().keySet().removeIf(key -> key.username().equals(username));
+        log.debug("Invalidated cached MQTT credentials of {}", username);
+    }
+
+    private static byte[] digest(String secret) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record FailureKey(@Nullable String clientId, String username) {
+    }
+
+    private record DigestExpiry(Duration ttl, Duration negativeTtl) implements Expiry<String, byte[]> {
+
+        @Override
+        public long expireAfterCreate(String key, byte[] value, long currentTime) {
+            return (value == NOT_FOUND ? negativeTtl : ttl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, byte[] value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, byte[] value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.milesight.beaveriot.mqtt.auth;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "mqtt.auth.cache")
+public class MqttAuthCacheProperties {
+
+    /**
+     * Verify MQTT logins against cached credentials instead of loading them on every CONNECT
+     */
+    private boolean enabled = true;
+
+    /**
+     * Time a loaded credential is trusted, changes are also applied immediately through credentials events
+     */
+    private Duration credentialsTtl = Duration.ofMinutes(1);
+
+    /**
+     * Time an unknown username is remembered as unknown
+     */
+    private Duration negativeTtl = Duration.ofSeconds(10);
+
+    /**
+     * Maximum number of cached usernames
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * Time the topic permissions of a username are kept after it was last used
+     */
+    private Duration aclTtl = Duration.ofMinutes(10);
+
+    /**
+     * Failed logins of a client as a username within the failure window after which its logins are rejected without
+     * verification
+     */
+    private int maxFailures = 5;
+
+    private Duration failureWindow = Duration.ofSeconds(30);
+
+}
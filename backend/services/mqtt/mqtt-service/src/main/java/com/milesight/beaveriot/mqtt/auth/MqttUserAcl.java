@@ -0,0 +1,44 @@
+package com.milesight.beaveriot.mqtt.auth;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Topic permissions of an MQTT username, parsed once per username.
+ * <p>
+ * A username of the form {@code name@tenant} may only use topics under {@code <prefix>/name@tenant}. Usernames without
+ * a tenant are internal and unrestricted.
+ *
+ * @param tenantId    null for internal usernames
+ * @param topicPrefix null if the username is malformed and may use no topic
+ */
+public record MqttUserAcl(@Nullable String tenantId, @Nullable String topicPrefix) {
+
+    public static MqttUserAcl parse(String topicPrefix, String username) {
+        int separator = username.indexOf('@');
+        if (separator < 0) {
+            return new MqttUserAcl(null, null);
+        }
+
+        int end = username.indexOf('@', separator + 1);
+        String tenantId = username.substring(separator + 1, end < 0 ? username.length() : end);
+        if (tenantId.isEmpty() || username.indexOf('/') >= 0) {
+            return new MqttUserAcl(tenantId, null);
+        }
+        return new MqttUserAcl(tenantId, topicPrefix + "/" + username);
+    }
+
+    public boolean isInternal() {
+        return tenantId == null;
+    }
+
+    public boolean allows(String topic) {
+        if (isInternal()) {
+            return true;
+        }
+        if (topicPrefix == null || !topic.startsWith(topicPrefix)) {
+            return false;
+        }
+        return topic.length() == topicPrefix.length() || topic.charAt(topicPrefix.length()) == '/';
+    }
+
+}
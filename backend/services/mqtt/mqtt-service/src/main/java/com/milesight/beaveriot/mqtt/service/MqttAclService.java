@@ -6,8 +6,11 @@ import com.milesight.beaveriot.context.integration.enums.CredentialsType;
 import com.milesight.beaveriot.context.integration.model.Credentials;
 import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.context.util.SecretUtils;
+import com.milesight.beaveriot.credentials.api.model.CredentialsCacheInvalidationEvent;
 import com.milesight.beaveriot.credentials.api.model.CredentialsChangeEvent;
 import com.milesight.beaveriot.mqtt.api.MqttAdminPubSubServiceProvider;
+import com.milesight.beaveriot.mqtt.auth.MqttAuthCache;
+import com.milesight.beaveriot.mqtt.auth.MqttUserAcl;
 import com.milesight.beaveriot.mqtt.broker.bridge.MqttBrokerBridge;
 import com.milesight.beaveriot.mqtt.broker.bridge.auth.MqttAcl;
 import com.milesight.beaveriot.mqtt.broker.bridge.auth.MqttAction;
@@ -21,7 +24,6 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Objects;
 
 @Slf4j
 @Service
@@ -39,6 +41,9 @@ public class MqttAclService implements MqttAuthProvider {
     @Autowired
     private MqttBrokerBridge mqttBrokerBridge;
 
+    @Autowired
+    private MqttAuthCache mqttAuthCache;
+
     @MessageListener
     public void onCredentialsChange(CredentialsChangeEvent event) {
         val credentials = event.getCredentials();
@@ -46,6 +51,8 @@ public class MqttAclService implements MqttAuthProvider {
             return;
         }
 
+        mqttAuthCache.invalidate(credentials.getAccessKey());
+
         val usernameTokens = credentials.getAccessKey().split("@");
         if (usernameTokens.length != 2 || usernameTokens[0].isEmpty() || usernameTokens[1].isEmpty()) {
             throw new IllegalArgumentException("Invalid MQTT username");
@@ -91,39 +98,44 @@ public class MqttAclService implements MqttAuthProvider {
         }
     }
 
+    /**
+     * Drop the cached credentials of other nodes, the change event is only delivered on the node of the change
+     */
+    @MessageListener
+    public void onCredentialsCacheInvalidation(CredentialsCacheInvalidationEvent event) {
+        val credentials = event.getCredentials();
+        if (CREDENTIALS_TYPE.equalsIgnoreCase(credentials.getCredentialsType())) {
+            mqttAuthCache.invalidate(credentials.getAccessKey());
+        }
+    }
+
     @Override
     public boolean canDo(MqttAction action, String topic, String clientId, String username) {
-        val tenantId = getTenantIdFromUsername(username);
-        if (tenantId == null) {
+        val acl = mqttAuthCache.getAcl(DEFAULT_TOPIC_PREFIX, username);
+        if (acl.isInternal()) {
             return true;
         }
-        TenantContext.setTenantId(tenantId);
-        val topicTokens = topic.split("/");
-        if (topicTokens.length < 2 || !Objects.equals(topicTokens[1], username)) {
+        if (!acl.allows(topic)) {
             return false;
         }
-        val topicPrefix = topicTokens[0];
-        return DEFAULT_TOPIC_PREFIX.equals(topicPrefix);
+        TenantContext.setTenantId(acl.tenantId());
+        return true;
     }
 
     @Override
     public boolean canLogin(String clientId, String username, String password) {
-        val tenantId = getTenantIdFromUsername(username);
-        if (tenantId == null) {
+        // not cached before the login succeeds, unknown usernames must not fill the cache
+        val acl = MqttUserAcl.parse(DEFAULT_TOPIC_PREFIX, username);
+        if (acl.isInternal() || acl.tenantId().isEmpty()) {
             return false;
         }
-        TenantContext.setTenantId(tenantId);
-        return credentialsServiceProvider.getCredentials(CREDENTIALS_TYPE, username)
-                .map(Credentials::getAccessSecret)
-                .map(password::equals)
-                .orElse(false);
-    }
-
-    private String getTenantIdFromUsername(String username) {
-        if (username.indexOf('@') < 0) {
-            return null;
+        TenantContext.setTenantId(acl.tenantId());
+        if (!mqttAuthCache.verify(clientId, username, password, key -> credentialsServiceProvider.getCredentials(CREDENTIALS_TYPE, key)
+                .map(Credentials::getAccessSecret))) {
+            return false;
         }
-        return username.split("@")[1];
+        mqttAuthCache.putAcl(username, acl);
+        return true;
     }
 
     public WebMqttCredentials getOrInitWebMqttCredentials() {
@@ -33,7 +33,7 @@ import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
-import java.util.Objects;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -49,9 +49,9 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
     /**
      * Topic Subscribers
      * <p>
-     * username -> topic -> callback -> isSharedSubscription
+     * topic filter levels -> callback, shared and non-shared subscriptions
      */
-    private static final ConcurrentHashMap<String, ConcurrentHashMap<Topic, ConcurrentHashMap<MqttMessageListener, Boolean>>> subscribers = new ConcurrentHashMap<>();
+    private static final MqttTopicTrie<MqttMessageListener> subscribers = new MqttTopicTrie<>();
 
     /**
      * Subscriber Index
@@ -94,7 +94,7 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
         }
 
         val topic = new Topic(event.getTopic());
-        val topicTokens = topic.getTokens().stream().map(Token::toString).toList();
+        val topicTokens = getTopicLevels(topic);
         if (topicTokens.size() < 2) {
             return;
         }
@@ -112,30 +112,29 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
         val mqttMessage = new MqttMessage(event.getTopic(), topicSubPath,
                 topicChannel, publisherUsername, tenantId, topicTokens, event.getPayload());
 
-        subscribers.forEach((subscriberUsername, topicSubscribers) -> {
-            if (!publisherUsername.equals(subscriberUsername) && !SINGLE_LEVEL_WILDCARD.equals(subscriberUsername)) {
-                return;
-            }
-            topicSubscribers.forEach((subscriptionTopic, callbacks) ->
-                    callbacks.forEach((listener, sharedSubscription) -> {
-                        if (Objects.equals(!broadcast, sharedSubscription)
-                                && topic.match(subscriptionTopic)) {
-                            try {
-                                executor.execute(() -> {
-                                    try {
-                                        listener.accept(mqttMessage);
-                                    } catch (Exception e) {
-                                        log.warn("failed to handle the message. topic: '{}'.", subscriptionTopic, e);
-                                    } finally {
-                                        TenantContext.clear();
-                                    }
-                                });
-                            } catch (Exception e) {
-                                log.error("executor error.", e);
-                            }
-                        }
-                    }));
-        });
+        val subscriptions = subscribers.match(topicTokens, !broadcast);
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+
+        // one task per message, the listeners share the tenant of the publisher
+        val callerTenantId = TenantContext.tryGetTenantId().orElse(null);
+        try {
+            executor.execute(() -> subscriptions.forEach(subscription -> {
+                try {
+                    if (callerTenantId != null) {
+                        TenantContext.setTenantId(callerTenantId);
+                    }
+                    subscription.subscriber().accept(mqttMessage);
+                } catch (Exception e) {
+                    log.warn("failed to handle the message. topic: '{}'.", subscription.filter(), e);
+                } finally {
+                    TenantContext.clear();
+                }
+            }));
+        } catch (Exception e) {
+            log.error("executor error.", e);
+        }
     }
 
     private boolean runWithLockIfServiceNotReady(Runnable job) {
@@ -244,10 +243,8 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
         val topicName = getFullTopicName(topicPrefix, username, topicSubPath);
         val topic = new Topic(topicName);
         log.info("subscribe topic: '{}'", topic);
-        val subscribersForUsername = subscribers.computeIfAbsent(username, k -> new ConcurrentHashMap<>());
-        val subscribersForTopic = subscribersForUsername.computeIfAbsent(topic, k -> new ConcurrentHashMap<>());
         synchronized (subscriberIndex) {
-            subscribersForTopic.put(listener, shared);
+            subscribers.put(getTopicLevels(topic), listener, shared);
             subscriberIndex.computeIfAbsent(listener, k -> new ConcurrentHashMap<>()).put(topic, shared);
         }
     }
@@ -303,23 +300,8 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
                 return;
             }
             topics.forEach((topic, shared) -> {
-                val username = getUsernameFromTopic(topic);
-                val subscribersForUsername = subscribers.get(username);
-                if (subscribersForUsername == null) {
-                    return;
-                }
-                val subscribersForTopic = subscribersForUsername.get(topic);
-                if (subscribersForTopic == null) {
-                    return;
-                }
                 log.info("unsubscribe from topic: '{}', listener: {}", topic, listener);
-                subscribersForTopic.remove(listener);
-                if (subscribersForTopic.isEmpty()) {
-                    subscribersForUsername.remove(topic);
-                }
-                if (subscribersForUsername.isEmpty()) {
-                    subscribers.remove(username);
-                }
+                subscribers.remove(getTopicLevels(topic), listener);
             });
             subscriberIndex.remove(listener);
         }
@@ -356,16 +338,8 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
     public void unsubscribe(String topicPrefix, String username, String topicSubPath) {
         val topic = new Topic(getFullTopicName(topicPrefix, username, topicSubPath));
         log.info("unsubscribe from topic: '{}'", topic);
-        val subscribersForUsername = subscribers.get(username);
-        if (subscribersForUsername == null) {
-            return;
-        }
-        var subscribersForTopic = subscribersForUsername.get(topic);
-        if (subscribersForTopic == null) {
-            return;
-        }
         synchronized (subscriberIndex) {
-            subscribersForTopic.forEach((listener, shared) -> {
+            subscribers.removeAll(getTopicLevels(topic)).forEach(listener -> {
                 val topics = subscriberIndex.get(listener);
                 if (topics == null) {
                     return;
@@ -375,10 +349,6 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
                     subscriberIndex.remove(listener);
                 }
             });
-            subscribersForUsername.remove(topic);
-            if (subscribersForUsername.isEmpty()) {
-                subscribers.remove(username);
-            }
         }
     }
 
@@ -406,6 +376,10 @@ public class MqttPubSubService implements MqttAdminPubSubServiceProvider, Comman
         return topic.getTokens().get(1).toString();
     }
 
+    private static List<String> getTopicLevels(Topic topic) {
+        return topic.getTokens().stream().map(Token::toString).toList();
+    }
+
     public MqttBrokerInfo getMqttBrokerInfo() {
         return mqttBrokerBridge.getBrokerInfo();
     }
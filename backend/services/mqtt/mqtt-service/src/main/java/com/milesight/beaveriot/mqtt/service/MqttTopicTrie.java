@@ -0,0 +1,192 @@
+package com.milesight.beaveriot.mqtt.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Subscribers indexed by the levels of their topic filters, with MQTT {@code +} and {@code #} wildcards.
+ * <p>
+ * A lookup only walks the branches matching the topic and never locks. Changes are serialized, and the subscribers
+ * of a filter are an immutable list replaced on every change, so a lookup sees either all or none of a change to a
+ * filter. Shared and non-shared subscribers of a filter are kept apart, a lookup only visits the requested kind.
+ * <p>
+ * Matching follows moquette's {@code Topic.match}: {@code +} matches exactly one level, {@code #} matches the rest of
+ * the topic including no level at all.
+ */
+public class MqttTopicTrie<T> {
+
+    static final String SINGLE_LEVEL_WILDCARD = "+";
+
+    static final String MULTI_LEVEL_WILDCARD = "#";
+
+    private final Node<T> root = new Node<>(null, null, "");
+
+    /**
+     * Subscribe to the filter, replacing the sharing of an existing subscription of the subscriber
+     */
+    public synchronized void put(List<String> filter, T subscriber, boolean shared) {
+        Node<T> node = root;
+        for (String level : filter) {
+            Node<T> parent = node;
+            node = parent.children.computeIfAbsent(level, k -> new Node<>(parent, k, parent == root ? k : parent.filter + "/" + k));
+        }
+
+        node.remove(subscriber, !shared);
+        node.add(subscriber, shared);
+    }
+
+    /**
+     * @return false if the subscriber was not subscribed to the filter
+     */
+    public synchronized boolean remove(List<String> filter, T subscriber) {
+        Node<T> node = find(filter);
+        if (node == null) {
+            return false;
+        }
+
+        boolean removed = node.remove(subscriber, true) | node.remove(subscriber, false);
+        prune(node);
+        return removed;
+    }
+
+    /**
+     * Remove every subscriber of the filter
+     *
+     * @return the removed subscribers
+     */
+    public synchronized List<T> removeAll(List<String> filter) {
+        Node<T> node = find(filter);
+        if (node == null) {
+            return List.of();
+        }
+
+        List<T> removed = new ArrayList<>(node.shared.size() + node.unshared.size());
+        node.shared.forEach(subscription -> removed.add(subscription.subscriber()));
+        node.unshared.forEach(subscription -> removed.add(subscription.subscriber()));
+        node.shared = List.of();
+        node.unshared = List.of();
+        prune(node);
+        return removed;
+    }
+
+    /**
+     * Subscriptions whose filter matches the topic levels, one per matching filter and subscriber
+     */
+    public List<Subscription<T>> match(List<String> topic, boolean shared) {
+        List<Subscription<T>> matches = new ArrayList<>();
+        match(root, topic, 0, shared, matches);
+        return matches;
+    }
+
+    public boolean isEmpty() {
+        return root.children.isEmpty();
+    }
+
+    private static <T> void match(Node<T> node, List<String> topic, int level, boolean shared, List<Subscription<T>> matches) {
+        Node<T> multiLevel = node.children.get(MULTI_LEVEL_WILDCARD);
+        if (multiLevel != null) {
+            matches.addAll(multiLevel.subscriptions(shared));
+        }
+
+        if (level == topic.size()) {
+            matches.addAll(node.subscriptions(shared));
+            return;
+        }
+
+        Node<T> exact = node.children.get(topic.get(level));
+        if (exact != null) {
+            match(exact, topic, level + 1, shared, matches);
+        }
+
+        Node<T> singleLevel = node.children.get(SINGLE_LEVEL_WILDCARD);
+        if (singleLevel != null && singleLevel != exact) {
+            match(singleLevel, topic, level + 1, shared, matches);
+        }
+    }
+
+    private Node<T> find(List<String> filter) {
+        Node<T> node = root;
+        for (String level : filter) {
+            node = node.children.get(level);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private void prune(Node<T> node) {
+        while (node.parent != null && node.isEmpty()) {
+            node.parent.children.remove(node.level, node);
+            node = node.parent;
+        }
+    }
+
+    public record Subscription<T>(String filter, T subscriber) {
+    }
+
+    private static class Node<T> {
+
+        private final Node<T> parent;
+
+        private final String level;
+
+        private final String filter;
+
+        private final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+
+        private volatile List<Subscription<T>> shared = List.of();
+
+        private volatile List<Subscription<T>> unshared = List.of();
+
+        private Node(Node<T> parent, String level, String filter) {
+            this.parent = parent;
+            this.level = level;
+            this.filter = filter;
+        }
+
+        private List<Subscription<T>> subscriptions(boolean isShared) {
+            return isShared ? shared : unshared;
+        }
+
+        private void add(T subscriber, boolean isShared) {
+            List<Subscription<T>> current = subscriptions(isShared);
+            if (current.stream().anyMatch(subscription -> subscription.subscriber().equals(subscriber))) {
+                return;
+            }
+
+            List<Subscription<T>> updated = new ArrayList<>(current.size() + 1);
+            updated.addAll(current);
+            updated.add(new Subscription<>(filter, subscriber));
+            set(List.copyOf(updated), isShared);
+        }
+
+        private boolean remove(T subscriber, boolean isShared) {
+            List<Subscription<T>> current = subscriptions(isShared);
+            List<Subscription<T>> updated = current.stream()
+                    .filter(subscription -> !subscription.subscriber().equals(subscriber))
+                    .toList();
+            if (updated.size() == current.size()) {
+                return false;
+            }
+
+            set(updated, isShared);
+            return true;
+        }
+
+        private void set(List<Subscription<T>> subscriptions, boolean isShared) {
+            if (isShared) {
+                shared = subscriptions;
+            } else {
+                unshared = subscriptions;
+            }
+        }
+
+        private boolean isEmpty() {
+            return shared.isEmpty() && unshared.isEmpty() && children.isEmpty();
+        }
+    }
+
+}
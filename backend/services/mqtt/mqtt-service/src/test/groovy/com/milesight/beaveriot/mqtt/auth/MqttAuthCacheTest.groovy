@@ -0,0 +1,211 @@
+package com.milesight.beaveriot.mqtt.auth
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.beans.factory.ObjectProvider
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Function
+
+class MqttAuthCacheTest extends Specification {
+
+    def meterRegistry = new SimpleMeterRegistry()
+
+    def "should load credentials once per username during a reconnect storm"() {
+        given:
+        def cache = newCache(new MqttAuthCacheProperties())
+        def secrets = (0..<50).collectEntries { ["device-$it@tenant" as String, "secret-$it" as String] }
+        def lookups = new ConcurrentHashMap<String, AtomicInteger>()
+        def loader = { String username ->
+            lookups.computeIfAbsent(username, { new AtomicInteger() }).incrementAndGet()
+            Thread.sleep(5)
+            Optional.ofNullable(secrets[username])
+        } as Function<String, Optional<String>>
+
+        def usernames = secrets.keySet() as List<String>
+        def executor = Executors.newFixedThreadPool(64)
+        def start = new CountDownLatch(1)
+        def accepted = new AtomicInteger()
+
+        when:
+        def futures = (0..<5000).collect { i ->
+            def username = usernames[i % usernames.size()]
+            executor.submit {
+                start.await()
+                if (cache.verify("client", username, secrets[username], loader)) {
+                    accepted.incrementAndGet()
+                }
+            }
+        }
+        start.countDown()
+        futures*.get(30, TimeUnit.SECONDS)
+        executor.shutdown()
+
+        then:
+        accepted.get() == 5000
+        lookups.size() == 50
+        lookups.values().every { it.get() == 1 }
+        meterRegistry.counter("mqtt.auth.cache.requests", "result", "miss").count() == 50
+    }
+
+    def "should reject wrong passwords and rate limit repeated failures"() {
+        given:
+        def properties = new MqttAuthCacheProperties(maxFailures: 3)
+        def cache = newCache(properties)
+        def lookups = new AtomicInteger()
+        def loader = { String username ->
+            lookups.incrementAndGet()
+            Optional.of("secret")
+        } as Function<String, Optional<String>>
+
+        expect:
+        !cache.verify("client", "user@t1", "wrong", loader)
+        !cache.verify("client", "user@t1", "wrong", loader)
+        !cache.verify("client", "user@t1", "wrong", loader)
+        // blocked even with the right password until the window ends
+        !cache.verify("client", "user@t1", "secret", loader)
+        cache.verify("client", "user@t2", "secret", loader)
+        meterRegistry.counter("mqtt.auth.login.rejected", "reason", "rate_limited").count() == 1
+        meterRegistry.counter("mqtt.auth.login.rejected", "reason", "invalid").count() == 3
+
+        when:
+        cache.invalidate("user@t1")
+
+        then:
+        cache.verify("client", "user@t1", "secret", loader)
+        lookups.get() == 3
+    }
+
+    def "should not lock out the other clients of a username"() {
+        given:
+        def cache = newCache(new MqttAuthCacheProperties(maxFailures: 2))
+        def loader = { String username -> Optional.of("secret") } as Function<String, Optional<String>>
+
+        expect:
+        (1..10).every { !cache.verify("attacker", "user@t1", "wrong", loader) }
+        !cache.verify("attacker", "user@t1", "secret", loader)
+        cache.verify("device", "user@t1", "secret", loader)
+
+        when:
+        cache.invalidate("user@t1")
+
+        then:
+        cache.verify("attacker", "user@t1", "secret", loader)
+    }
+
+    def "should expire topic permissions not used for the ACL TTL"() {
+        given:
+        def cache = newCache(new MqttAuthCacheProperties(aclTtl: Duration.ofMillis(50)))
+        cache.putAcl("user@t1", MqttUserAcl.parse("cached", "user@t1"))
+
+        expect:
+        cache.getAcl("parsed", "user@t1").topicPrefix() == "cached/user@t1"
+
+        when:
+        Thread.sleep(100)
+
+        then:
+        cache.getAcl("parsed", "user@t1").topicPrefix() == "parsed/user@t1"
+    }
+
+    def "should remember unknown usernames until invalidated"() {
+        given:
+        def cache = newCache(new MqttAuthCacheProperties(negativeTtl: Duration.ofMinutes(1), maxFailures: 100))
+        def secret = null
+        def lookups = new AtomicInteger()
+        def loader = { String username ->
+            lookups.incrementAndGet()
+            Optional.ofNullable(secret)
+        } as Function<String, Optional<String>>
+
+        when:
+        def before = (1..10).collect { cache.verify("client", "new@t1", "secret", loader) }
+        secret = "secret"
+        def cached = cache.verify("client", "new@t1", "secret", loader)
+        cache.invalidate("new@t1")
+        def after = cache.verify("client", "new@t1", "secret", loader)
+
+        then:
+        before.every { !it }
+        !cached
+        after
+        lookups.get() == 2
+    }
+
+    def "should reload a changed secret after invalidation"() {
+        given:
+        def cache = newCache(new MqttAuthCacheProperties())
+        def secret = "old"
+        def loader = { String username -> Optional.of(secret) } as Function<String, Optional<String>>
+
+        expect:
+        cache.verify("client", "user@t1", "old", loader)
+
+        when:
+        secret = "new"
+
+        then:
+        cache.verify("client", "user@t1", "old", loader)
+
+        when:
+        cache.invalidate("user@t1")
+
+        then:
+        !cache.verify("client", "user@t1", "old", loader)
+        cache.verify("client", "user@t1", "new", loader)
+    }
+
+    def "should pass every lookup through when disabled"() {
+        given:
+        def cache = newCache(new MqttAuthCacheProperties(enabled: false))
+        def lookups = new AtomicInteger()
+        def loader = { String username ->
+            lookups.incrementAndGet()
+            Optional.of("secret")
+        } as Function<String, Optional<String>>
+
+        expect:
+        (1..10).every { cache.verify("client", "user@t1", "secret", loader) }
+        lookups.get() == 10
+    }
+
+    def "should allow the same topics as splitting the topic"() {
+        given:
+        def usernames = ["user@t1", "user@t1@x", "other@t1", "a/b@t1", "internal"]
+        def topics = ["beaver-iot/user@t1", "beaver-iot/user@t1/", "beaver-iot/user@t1/uplink", "beaver-iot/user@t1/uplink/+",
+                      "beaver-iot/user@t1x/uplink", "beaver-iot/user@t1@x/downlink", "beaver-iot/a/b@t1/uplink",
+                      "beaver-iot/other@t1", "beaver-iot", "beaver-iot/", "other/user@t1", "#", "beaver-iot/+/uplink"]
+
+        expect:
+        usernames.each { username ->
+            def acl = MqttUserAcl.parse("beaver-iot", username)
+            topics.each { topic ->
+                assert acl.allows(topic) == splitAllows(username, topic): "$username -> $topic"
+            }
+        }
+        MqttUserAcl.parse("beaver-iot", "user@t1@x").tenantId() == "t1"
+        MqttUserAcl.parse("beaver-iot", "internal").isInternal()
+        !MqttUserAcl.parse("beaver-iot", "user@").allows("beaver-iot/user@")
+    }
+
+    static boolean splitAllows(String username, String topic) {
+        if (username.indexOf('@') < 0) {
+            return true
+        }
+        def tokens = topic.split("/")
+        return tokens.length >= 2 && tokens[1] == username && tokens[0] == "beaver-iot"
+    }
+
+    MqttAuthCache newCache(MqttAuthCacheProperties properties) {
+        def provider = Stub(ObjectProvider) {
+            getIfAvailable(_) >> meterRegistry
+        }
+        return new MqttAuthCache(properties, provider)
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.milesight.beaveriot.mqtt.service
+
+import com.milesight.beaveriot.context.api.CredentialsServiceProvider
+import com.milesight.beaveriot.context.integration.model.Credentials
+import com.milesight.beaveriot.context.security.TenantContext
+import com.milesight.beaveriot.mqtt.auth.MqttAuthCache
+import com.milesight.beaveriot.mqtt.auth.MqttAuthCacheProperties
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.beans.factory.ObjectProvider
+import spock.lang.Specification
+
+class MqttAclServiceTest extends Specification {
+
+    CredentialsServiceProvider credentialsServiceProvider = Stub() {
+        getCredentials(MqttAclService.CREDENTIALS_TYPE, "user@t1") >> Optional.of(Credentials.builder().accessSecret("secret").build())
+    }
+
+    MqttAuthCache mqttAuthCache = new MqttAuthCache(new MqttAuthCacheProperties(), Stub(ObjectProvider) {
+        getIfAvailable(_) >> new SimpleMeterRegistry()
+    })
+
+    MqttAclService mqttAclService = new MqttAclService()
+
+    def setup() {
+        mqttAclService.@credentialsServiceProvider = credentialsServiceProvider
+        mqttAclService.@mqttAuthCache = mqttAuthCache
+    }
+
+    def cleanup() {
+        TenantContext.clear()
+    }
+
+    def "should not cache the topic permissions of a failed login"() {
+        expect:
+        !mqttAclService.canLogin("client", username, password)
+        // a permission parsed on a cache miss has the given prefix instead of the default one
+        mqttAuthCache.getAcl("probe", username).topicPrefix() == "probe/" + username
+
+        where:
+        username     | password
+        "user@t1"    | "wrong"
+        "unknown@t1" | "secret"
+    }
+
+    def "should cache the topic permissions of a successful login"() {
+        expect:
+        mqttAclService.canLogin("client", "user@t1", "secret")
+        mqttAuthCache.getAcl("probe", "user@t1").topicPrefix() == "beaver-iot/user@t1"
+    }
+}
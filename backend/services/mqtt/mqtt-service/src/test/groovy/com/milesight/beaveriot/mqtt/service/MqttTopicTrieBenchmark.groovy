@@ -0,0 +1,79 @@
+package com.milesight.beaveriot.mqtt.service
+
+import groovy.transform.CompileStatic
+import io.moquette.broker.subscriptions.Topic
+import spock.lang.Specification
+
+/**
+ * Publish latency of subscriber matching against the number of subscriptions, the trie compared with the scan of
+ * every subscription used before. Not part of the default test run, start it with
+ * {@code mvn test -Dtest=MqttTopicTrieBenchmark}.
+ */
+class MqttTopicTrieBenchmark extends Specification {
+
+    static final int PUBLISHES = 1_000
+
+    def "publish latency by subscription count"() {
+        given:
+        def random = new Random(1)
+        println String.format("%14s %16s %16s", "subscriptions", "scan ns/publish", "trie ns/publish")
+
+        expect:
+        [100, 1_000, 10_000, 50_000].each { count ->
+            def filters = (0..<count).collect { i ->
+                // mostly per device filters, some per integration wildcards
+                i % 20 == 0 ? "beaver-iot/+/integration-${i}/#".toString() : "beaver-iot/user@t${i % 50}/uplink/dev${i}".toString()
+            }
+            def trie = new MqttTopicTrie<String>()
+            filters.each { trie.put(MqttTopicTrieTest.levels(it), it, true) }
+
+            def topics = (0..<PUBLISHES).collect {
+                int i = random.nextInt(count)
+                "beaver-iot/user@t${i % 50}/uplink/dev${i}".toString()
+            }
+
+            def scan = scan(filters.collect { new Topic(it) }, topics.collect { new Topic(it) })
+            def match = match(trie, topics.collect { MqttTopicTrieTest.levels(it) })
+            println String.format("%14d %16d %16d", count, scan[0].intdiv(PUBLISHES), match[0].intdiv(PUBLISHES))
+            assert scan[1] == match[1]
+        }
+    }
+
+    /**
+     * @return nanos and number of matches of the second round
+     */
+    @CompileStatic
+    private static long[] scan(List<Topic> subscriptions, List<Topic> topics) {
+        long[] result = new long[2]
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime()
+            long matches = 0
+            for (Topic topic : topics) {
+                for (Topic subscription : subscriptions) {
+                    if (topic.match(subscription)) {
+                        matches++
+                    }
+                }
+            }
+            result[0] = System.nanoTime() - start
+            result[1] = matches
+        }
+        return result
+    }
+
+    @CompileStatic
+    private static long[] match(MqttTopicTrie<String> trie, List<List<String>> topics) {
+        long[] result = new long[2]
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime()
+            long matches = 0
+            for (List<String> topic : topics) {
+                matches += trie.match(topic, true).size()
+            }
+            result[0] = System.nanoTime() - start
+            result[1] = matches
+        }
+        return result
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.milesight.beaveriot.mqtt.service
+
+import io.moquette.broker.subscriptions.Token
+import io.moquette.broker.subscriptions.Topic
+import spock.lang.Specification
+
+class MqttTopicTrieTest extends Specification {
+
+    static final List<String> FILTERS = [
+            "beaver-iot/user@t1/uplink",
+            "beaver-iot/user@t1/uplink/+",
+            "beaver-iot/user@t1/#",
+            "beaver-iot/+/uplink/#",
+            "beaver-iot/+/+/+",
+            "beaver-iot/user@t2/uplink/dev1",
+            "beaver-iot/#",
+            "#",
+            "+/+",
+            "beaver-iot/user@t1//x",
+    ]
+
+    static final List<String> TOPICS = [
+            "beaver-iot/user@t1/uplink",
+            "beaver-iot/user@t1/uplink/dev1",
+            "beaver-iot/user@t2/uplink/dev1",
+            "beaver-iot/user@t2/uplink/dev1/extra",
+            "beaver-iot/user@t1",
+            "beaver-iot",
+            "beaver-iot/user@t1//x",
+            "other/user@t1/uplink",
+    ]
+
+    def "should match like moquette topics"() {
+        given:
+        def trie = new MqttTopicTrie<String>()
+        FILTERS.each { trie.put(levels(it), it, true) }
+
+        expect:
+        TOPICS.each { topic ->
+            def expected = FILTERS.findAll { new Topic(topic).match(new Topic(it)) } as Set
+            def actual = trie.match(levels(topic), true).collect { it.subscriber() } as Set
+            assert actual == expected: topic
+        }
+    }
+
+    def "should keep shared and non-shared subscriptions apart"() {
+        given:
+        def trie = new MqttTopicTrie<String>()
+        trie.put(levels("a/+"), "shared", true)
+        trie.put(levels("a/+"), "broadcast", false)
+
+        expect:
+        trie.match(levels("a/b"), true)*.subscriber() == ["shared"]
+        trie.match(levels("a/b"), false)*.subscriber() == ["broadcast"]
+        trie.match(levels("a/b"), true)*.filter() == ["a/+"]
+
+        when: "subscribing again changes the sharing"
+        trie.put(levels("a/+"), "shared", false)
+
+        then:
+        trie.match(levels("a/b"), true).isEmpty()
+        trie.match(levels("a/b"), false)*.subscriber() as Set == ["shared", "broadcast"] as Set
+    }
+
+    def "should remove subscriptions and prune empty branches"() {
+        given:
+        def trie = new MqttTopicTrie<String>()
+        trie.put(levels("a/b/c"), "l1", true)
+        trie.put(levels("a/b/c"), "l2", true)
+        trie.put(levels("a/+"), "l1", false)
+
+        when:
+        def removed = trie.remove(levels("a/b/c"), "l1")
+
+        then:
+        removed
+        !trie.remove(levels("a/b/c"), "l1")
+        trie.match(levels("a/b/c"), true)*.subscriber() == ["l2"]
+
+        when:
+        def removedAll = trie.removeAll(levels("a/b/c"))
+        trie.remove(levels("a/+"), "l1")
+
+        then:
+        removedAll == ["l2"]
+        trie.isEmpty()
+    }
+
+    static List<String> levels(String topic) {
+        new Topic(topic).tokens.collect { Token token -> token.toString() }
+    }
+
+}
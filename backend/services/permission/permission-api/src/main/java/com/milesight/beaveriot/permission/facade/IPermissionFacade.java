@@ -17,4 +17,10 @@ public interface IPermissionFacade {
     void checkDataPermission(DataPermissionType type, String id);
 
     void checkAdminPermission();
+
+    /**
+     * Evict the cached data permissions of all users of the current tenant, call it when roles, role resources,
+     * integration devices or entity attach targets change
+     */
+    void evictDataPermissions();
 }
@@ -0,0 +1,73 @@
+package com.milesight.beaveriot.permission.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.milesight.beaveriot.permission.dto.PermissionDTO;
+import com.milesight.beaveriot.permission.enums.DataPermissionType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Node local cache of the data permissions of users, the ids a user may access through roles, resources, integration
+ * devices and entity attach targets.
+ * <p>
+ * Entries are keyed by the permission generation of their tenant. Any change of roles, resources or devices of a tenant
+ * increments the generation, so every permission of the tenant is computed again on the next access. A computation
+ * racing with an increment is stored under the old generation and never read.
+ */
+@Slf4j
+@Component
+public class DataPermissionCache {
+
+    private final DataPermissionCacheProperties properties;
+
+    private final Cache<Key, PermissionDTO> permissions;
+
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public DataPermissionCache(DataPermissionCacheProperties properties) {
+        this.properties = properties;
+        this.permissions = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .build();
+    }
+
+    /**
+     * @return a permission shared by all callers, it must not be modified
+     */
+    public PermissionDTO get(String tenantId, Long userId, DataPermissionType type, Supplier<PermissionDTO> loader) {
+        if (!properties.isEnabled()) {
+            return loader.get();
+        }
+
+        long generation = generations.computeIfAbsent(tenantId, k -> new AtomicLong()).get();
+        return permissions.get(new Key(tenantId, userId, type, generation), key -> freeze(loader.get()));
+    }
+
+    public void invalidate(String tenantId) {
+        generations.computeIfAbsent(tenantId, k -> new AtomicLong()).incrementAndGet();
+        log.debug("Invalidated data permissions of tenant {}", tenantId);
+    }
+
+    private static PermissionDTO freeze(PermissionDTO permissionDTO) {
+        if (permissionDTO == null) {
+            return null;
+        }
+
+        PermissionDTO frozen = new PermissionDTO();
+        frozen.setHaveAllPermissions(permissionDTO.isHaveAllPermissions());
+        frozen.setIds(permissionDTO.getIds() == null ? List.of() : List.copyOf(permissionDTO.getIds()));
+        return frozen;
+    }
+
+    private record Key(String tenantId, Long userId, DataPermissionType type, long generation) {
+    }
+
+}
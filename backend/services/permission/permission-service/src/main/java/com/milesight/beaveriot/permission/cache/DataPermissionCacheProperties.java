@@ -0,0 +1,23 @@
+package com.milesight.beaveriot.permission.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "permission.data-permission-cache")
+public class DataPermissionCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Upper bound for changes that are not followed by an eviction, e.g. entities attached to another target
+     */
+    private Duration timeToLive = Duration.ofMinutes(5);
+
+    private long maximumSize = 10_000;
+
+}
@@ -0,0 +1,20 @@
+package com.milesight.beaveriot.permission.cache;
+
+import com.milesight.beaveriot.pubsub.api.message.RemoteBroadcastMessage;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Data permissions of the tenant of the message have changed
+ */
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class DataPermissionInvalidationEvent extends RemoteBroadcastMessage {
+
+    public DataPermissionInvalidationEvent(String tenantId) {
+        super(tenantId);
+    }
+
+}
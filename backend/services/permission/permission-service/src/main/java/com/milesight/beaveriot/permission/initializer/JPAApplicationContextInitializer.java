@@ -1,6 +1,7 @@
 package com.milesight.beaveriot.permission.initializer;
 
 import com.milesight.beaveriot.permission.inspector.DataAspectStatementInspector;
+import com.milesight.beaveriot.permission.inspector.DataIdArrayConnectionProvider;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -20,6 +21,10 @@ public class JPAApplicationContextInitializer implements ApplicationContextIniti
 
     String JPA_STATEMENT_INSPECTOR_KEY = "spring.jpa.properties.hibernate.session_factory.statement_inspector";
 
+    String JPA_CONNECTION_PROVIDER_KEY = "spring.jpa.properties.hibernate.connection.provider_class";
+
+    String DATASOURCE_URL_KEY = "spring.datasource.url";
+
     @Override
     public void initialize(ConfigurableApplicationContext applicationContext) {
 
@@ -33,6 +38,15 @@ public class JPAApplicationContextInitializer implements ApplicationContextIniti
                 log.info("Enable JPA DataAspect function, and dynamically add JPA STATEMENT_INSPECTOR");
                 System.setProperty(JPA_STATEMENT_INSPECTOR_KEY, DataAspectStatementInspector.class.getName());
             }
+            String datasourceUrl = applicationContext.getEnvironment().getProperty(DATASOURCE_URL_KEY);
+            if (datasourceUrl != null && datasourceUrl.startsWith("jdbc:postgresql:")) {
+                if (StringUtils.hasText(applicationContext.getEnvironment().getProperty(JPA_CONNECTION_PROVIDER_KEY))) {
+                    log.warn("The existing connection provider configuration, data permission ids are not bound as arrays");
+                } else {
+                    System.setProperty(JPA_CONNECTION_PROVIDER_KEY, DataIdArrayConnectionProvider.class.getName());
+                    DataAspectStatementInspector.setArrayParameterEnabled(true);
+                }
+            }
         }
 
     }
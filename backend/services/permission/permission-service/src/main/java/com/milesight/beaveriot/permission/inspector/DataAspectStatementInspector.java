@@ -43,6 +43,23 @@ public class DataAspectStatementInspector implements StatementInspector {
     private static final String TENANT_ID_COLUMN_PLACEHOLDER = "${TENANT_ID_COL}";
     private static final String TENANT_ID_VALUE_PLACEHOLDER = "${TENANT_ID_VALUE}";
     private static final String DATA_ID_COLUMN_PLACEHOLDER = "${DATA_ID_COL}";
+    private static final String DATA_ID_VALUES_PLACEHOLDER = "IN ()";
+
+    /**
+     * On PostgreSQL, id lists longer than this are bound as a single array parameter
+     */
+    static final int ARRAY_PARAMETER_THRESHOLD = 32;
+
+    private static volatile boolean arrayParameterEnabled;
+
+    /**
+     * Rendered conditions of data id lists. Data permissions are cached and shared, so the same list is rendered only
+     * once for all statements of all requests using it. Keys are compared by identity.
+     */
+    private static final Cache<List<String>, RenderedDataIds> renderedDataIdsCache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(1000)
+            .build();
 
     private static final Cache<String, SqlInfo> sqlTemplateCache = CacheBuilder.newBuilder()
             .initialCapacity(1000)
@@ -78,6 +95,7 @@ public class DataAspectStatementInspector implements StatementInspector {
     @Override
     @SneakyThrows
     public String inspect(String sql) {
+        DataIdArrayParameter.clear();
         SqlInfo cachedSql = sqlTemplateCache.getIfPresent(sql);
         if (cachedSql == null) {
             Statement statement = CCJSqlParserUtil.parse(sql, jsqlParserExecutor, null);
@@ -107,28 +125,58 @@ public class DataAspectStatementInspector implements StatementInspector {
         DataAspectContext.DataPermissionContext dataPermissionContext = DataAspectContext.getDataPermissionContext(tableName);
         if (dataPermissionContext != null && !CollectionUtils.isEmpty(dataPermissionContext.getDataIds())) {
             String columnName = tableAlias + "." + dataPermissionContext.getDataColumnName();
-            String dataIdListString = ColumnDataType.STRING.equals(dataPermissionContext.getDataType())
-                    ? concatStringTypeColumnData(dataPermissionContext.getDataIds())
-                    : String.join(",", dataPermissionContext.getDataIds());
+            List<String> dataIds = dataPermissionContext.getDataIds();
+            String dataIdCondition = renderedDataIdsCache.get(dataIds, RenderedDataIds::new)
+                    .get(dataIds, dataPermissionContext.getDataType());
+            if (dataIdCondition.equals(DataIdArrayParameter.NUMBER_CONDITION) || dataIdCondition.equals(DataIdArrayParameter.STRING_CONDITION)) {
+                DataIdArrayParameter.set(dataIds, ColumnDataType.STRING.equals(dataPermissionContext.getDataType()));
+            }
             sqlTemplate = sqlTemplate.replace(DATA_ID_COLUMN_PLACEHOLDER, columnName)
-                    .replace("IN ()", "IN (" + dataIdListString + ")");
+                    .replace(DATA_ID_VALUES_PLACEHOLDER, dataIdCondition);
         } else {
             sqlTemplate = sqlTemplate.replace(DATA_ID_COLUMN_PLACEHOLDER, "1")
-                    .replace("IN ()", "= 1");
+                    .replace(DATA_ID_VALUES_PLACEHOLDER, "= 1");
         }
 
         return sqlTemplate;
     }
 
-    private static String concatStringTypeColumnData(List<String> data) {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < data.size(); i++) {
-            stringBuilder.append("'").append(data.get(i)).append("'");
-            if (i != data.size() - 1) {
-                stringBuilder.append(",");
+    /**
+     * Enable binding long id lists as array parameters, it requires the {@link DataIdArrayConnectionProvider}
+     */
+    public static void setArrayParameterEnabled(boolean arrayParameterEnabled) {
+        DataAspectStatementInspector.arrayParameterEnabled = arrayParameterEnabled;
+    }
+
+    /**
+     * Condition restricting a column to the ids, following the column in the statement.
+     * <p>
+     * PostgreSQL turns an {@code IN} list into {@code = ANY} of an array anyway, but parses every item of the list as an
+     * expression first. A single array parameter keeps long lists cheap to parse, and the statement text is the same
+     * for every list, so it is planned and cached once.
+     */
+    static String renderDataIdCondition(List<String> dataIds, ColumnDataType dataType, boolean useArrayParameter) {
+        boolean isString = ColumnDataType.STRING.equals(dataType);
+        if (useArrayParameter && dataIds.size() > ARRAY_PARAMETER_THRESHOLD) {
+            return isString ? DataIdArrayParameter.STRING_CONDITION : DataIdArrayParameter.NUMBER_CONDITION;
+        }
+
+        StringBuilder stringBuilder = new StringBuilder("IN (");
+        for (int i = 0; i < dataIds.size(); i++) {
+            if (i > 0) {
+                stringBuilder.append(',');
+            }
+            if (isString) {
+                stringBuilder.append('\'').append(escapeStringLiteral(dataIds.get(i))).append('\'');
+            } else {
+                stringBuilder.append(dataIds.get(i));
             }
         }
-        return stringBuilder.toString();
+        return stringBuilder.append(')').toString();
+    }
+
+    private static String escapeStringLiteral(String value) {
+        return value.replace("'", "''");
     }
 
     private void doTenantInspect(Statement statement) {
@@ -262,6 +310,30 @@ public class DataAspectStatementInspector implements StatementInspector {
     private record SqlInfo(String tableName, String tableAlias, String sqlTemplate) {
     }
 
+    /**
+     * Must not reference its id list, the list would never be weakly reachable otherwise
+     */
+    private static class RenderedDataIds {
+
+        private volatile String numberCondition;
+
+        private volatile String stringCondition;
+
+        private String get(List<String> dataIds, ColumnDataType dataType) {
+            boolean isString = ColumnDataType.STRING.equals(dataType);
+            String condition = isString ? stringCondition : numberCondition;
+            if (condition == null) {
+                condition = renderDataIdCondition(dataIds, dataType, arrayParameterEnabled);
+                if (isString) {
+                    stringCondition = condition;
+                } else {
+                    numberCondition = condition;
+                }
+            }
+            return condition;
+        }
+    }
+
     private record TableInfo(String tableName, String alias) {
     }
 
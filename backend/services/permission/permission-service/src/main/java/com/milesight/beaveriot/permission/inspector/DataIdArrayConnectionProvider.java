@@ -0,0 +1,20 @@
+package com.milesight.beaveriot.permission.inspector;
+
+import org.hibernate.engine.jdbc.connections.internal.DatasourceConnectionProviderImpl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connection provider of the data source, binding the data id arrays of inspected statements
+ *
+ * @see DataIdArrayParameter
+ */
+public class DataIdArrayConnectionProvider extends DatasourceConnectionProviderImpl {
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return DataIdArrayParameter.wrap(super.getConnection());
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.milesight.beaveriot.permission.inspector;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Binds a long data id list as a single array parameter on PostgreSQL.
+ * <p>
+ * The statement inspector renders the condition with a parameter of its own and leaves the ids to the statement
+ * prepared next on the same thread, Hibernate prepares a statement right after inspecting it. Hibernate binds its
+ * parameters by their position without that parameter, so the positions from it on are shifted by one.
+ */
+final class DataIdArrayParameter {
+
+    static final String NUMBER_CONDITION = "= ANY (CAST(? AS bigint[]))";
+
+    static final String STRING_CONDITION = "= ANY (CAST(? AS text[]))";
+
+    private static final ThreadLocal<Pending> PENDING = new ThreadLocal<>();
+
+    private DataIdArrayParameter() {
+    }
+
+    static void set(List<String> dataIds, boolean isString) {
+        PENDING.set(new Pending(dataIds, isString));
+    }
+
+    static void clear() {
+        PENDING.remove();
+    }
+
+    /**
+     * Wrap a connection to bind the ids of the inspected statement when it is prepared
+     */
+    static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(DataIdArrayParameter.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    /**
+     * @return the 1-based position of the array parameter in the statement, or -1 if it has none
+     */
+    static int parameterIndex(String sql, String condition) {
+        int conditionStart = sql.indexOf(condition);
+        if (conditionStart < 0) {
+            return -1;
+        }
+
+        // question marks in quoted literals and identifiers are no parameters
+        int parameters = 0;
+        char quote = 0;
+        for (int i = 0; i < conditionStart; i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '?') {
+                parameters++;
+            }
+        }
+        return parameters + 1;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private record Pending(List<String> dataIds, boolean isString) {
+
+        private String condition() {
+            return isString ? STRING_CONDITION : NUMBER_CONDITION;
+        }
+
+        private void bind(Connection connection, PreparedStatement statement, int index) throws SQLException {
+            Object[] elements = isString
+                    ? dataIds.toArray(new String[0])
+                    : dataIds.stream().map(Long::valueOf).toArray(Long[]::new);
+            statement.setArray(index, connection.createArrayOf(isString ? "text" : "bigint", elements));
+        }
+    }
+
+    private record ConnectionHandler(Connection connection) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = DataIdArrayParameter.invoke(connection, method, args);
+            Pending pending = PENDING.get();
+            if (pending == null || !(result instanceof PreparedStatement statement)
+                    || !method.getName().startsWith("prepare") || !(args[0] instanceof String sql)) {
+                return result;
+            }
+
+            int index = parameterIndex(sql, pending.condition());
+            if (index < 0) {
+                return result;
+            }
+
+            PENDING.remove();
+            pending.bind(connection, statement, index);
+            return Proxy.newProxyInstance(DataIdArrayParameter.class.getClassLoader(),
+                    new Class<?>[]{method.getReturnType()}, new StatementHandler(connection, statement, pending, index));
+        }
+    }
+
+    private record StatementHandler(Connection connection, PreparedStatement statement, Pending pending,
+                                    int index) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (method.getName().startsWith("set") && parameterTypes.length >= 2 && parameterTypes[0] == int.class) {
+                int position = (int) args[0];
+                args[0] = position < index ? position : position + 1;
+            }
+
+            Object result = DataIdArrayParameter.invoke(statement, method, args);
+            if (method.getName().equals("clearParameters")) {
+                pending.bind(connection, statement, index);
+            }
+            return result;
+        }
+    }
+
+}
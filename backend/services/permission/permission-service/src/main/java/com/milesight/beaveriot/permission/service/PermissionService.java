@@ -2,12 +2,18 @@ package com.milesight.beaveriot.permission.service;
 
 import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
+import com.milesight.beaveriot.base.utils.TransactionUtils;
 import com.milesight.beaveriot.context.security.SecurityUserContext;
+import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.permission.cache.DataPermissionCache;
+import com.milesight.beaveriot.permission.cache.DataPermissionInvalidationEvent;
 import com.milesight.beaveriot.permission.dto.PermissionDTO;
 import com.milesight.beaveriot.permission.enums.DataPermissionType;
 import com.milesight.beaveriot.permission.enums.OperationPermissionCode;
 import com.milesight.beaveriot.permission.facade.IPermissionFacade;
 import com.milesight.beaveriot.permission.helper.TemporaryPermission;
+import com.milesight.beaveriot.pubsub.MessagePubSub;
+import com.milesight.beaveriot.pubsub.api.annotation.MessageListener;
 import com.milesight.beaveriot.user.dto.MenuDTO;
 import com.milesight.beaveriot.user.facade.IUserFacade;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -49,6 +55,13 @@ public class PermissionService implements IPermissionFacade {
     @Autowired
     WorkflowPermissionService workflowPermissionService;
 
+    @Autowired
+    DataPermissionCache dataPermissionCache;
+
+    @Lazy
+    @Autowired
+    MessagePubSub messagePubSub;
+
     private Long getContextUserId() {
         Long userId = SecurityUserContext.getUserId();
         if (userId == null) {
@@ -98,12 +111,13 @@ public class PermissionService implements IPermissionFacade {
 
     public PermissionDTO getDataPermission(DataPermissionType type) {
         Long userId = getContextUserId();
-        PermissionDTO permissionDTO = switch (type) {
-            case ENTITY -> entityPermissionService.getEntityPermission(userId);
-            case DEVICE -> devicePermissionService.getDevicePermission(userId);
-            case DASHBOARD -> dashboardPermissionService.getDashboardPermission(userId);
-            case WORKFLOW -> workflowPermissionService.getWorkflowPermission(userId);
-        };
+        PermissionDTO permissionDTO;
+        // entity permissions depend on the menu permissions, which may be granted temporarily
+        if (type == DataPermissionType.ENTITY && TemporaryPermission.contains(OperationPermissionCode.ENTITY_CUSTOM_VIEW)) {
+            permissionDTO = loadDataPermission(type, userId);
+        } else {
+            permissionDTO = dataPermissionCache.get(TenantContext.getTenantId(), userId, type, () -> loadDataPermission(type, userId));
+        }
 
         if (permissionDTO == null) {
             throw ServiceException.with(ErrorCode.PARAMETER_SYNTAX_ERROR).detailMessage("unknown data permission type").build();
@@ -116,12 +130,39 @@ public class PermissionService implements IPermissionFacade {
             if (ids != null && !ids.isEmpty()) {
                 newIds.addAll(ids);
             }
-            permissionDTO.setIds(newIds);
+            // the cached permission is shared
+            PermissionDTO temporaryPermissionDTO = new PermissionDTO();
+            temporaryPermissionDTO.setHaveAllPermissions(permissionDTO.isHaveAllPermissions());
+            temporaryPermissionDTO.setIds(newIds);
+            permissionDTO = temporaryPermissionDTO;
         }
 
         return permissionDTO;
     }
 
+    private PermissionDTO loadDataPermission(DataPermissionType type, Long userId) {
+        return switch (type) {
+            case ENTITY -> entityPermissionService.getEntityPermission(userId);
+            case DEVICE -> devicePermissionService.getDevicePermission(userId);
+            case DASHBOARD -> dashboardPermissionService.getDashboardPermission(userId);
+            case WORKFLOW -> workflowPermissionService.getWorkflowPermission(userId);
+        };
+    }
+
+    @Override
+    public void evictDataPermissions() {
+        String tenantId = TenantContext.getTenantId();
+        dataPermissionCache.invalidate(tenantId);
+        // permissions loaded before the commit may still see the old data
+        TransactionUtils.executeAfterCompletion(() -> dataPermissionCache.invalidate(tenantId));
+        messagePubSub.publishAfterCommit(new DataPermissionInvalidationEvent(tenantId));
+    }
+
+    @MessageListener
+    public void onDataPermissionInvalidation(DataPermissionInvalidationEvent event) {
+        dataPermissionCache.invalidate(event.getTenantId());
+    }
+
     @Override
     public void checkDataPermission(DataPermissionType type, String id) {
         PermissionDTO permissionDTO = getDataPermission(type);
@@ -0,0 +1,65 @@
+package com.milesight.beaveriot.permission.cache
+
+import com.milesight.beaveriot.permission.dto.PermissionDTO
+import com.milesight.beaveriot.permission.enums.DataPermissionType
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
+
+class DataPermissionCacheTest extends Specification {
+
+    def "should share a frozen permission until the tenant is invalidated"() {
+        given:
+        def cache = new DataPermissionCache(new DataPermissionCacheProperties())
+        def loads = new AtomicInteger()
+        def ids = ["1", "2"]
+        def loader = {
+            loads.incrementAndGet()
+            new PermissionDTO(ids: new ArrayList<>(ids))
+        } as Supplier<PermissionDTO>
+
+        when:
+        def first = cache.get("t1", 1L, DataPermissionType.DEVICE, loader)
+        def second = cache.get("t1", 1L, DataPermissionType.DEVICE, loader)
+        cache.get("t1", 1L, DataPermissionType.DASHBOARD, loader)
+        cache.get("t1", 2L, DataPermissionType.DEVICE, loader)
+        cache.get("t2", 1L, DataPermissionType.DEVICE, loader)
+
+        then:
+        first.is(second)
+        first.ids == ["1", "2"]
+        loads.get() == 4
+
+        when:
+        first.ids.add("3")
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        ids = ["1", "2", "3"]
+        cache.invalidate("t1")
+        def reloaded = cache.get("t1", 1L, DataPermissionType.DEVICE, loader)
+        cache.get("t2", 1L, DataPermissionType.DEVICE, loader)
+
+        then:
+        reloaded.ids == ["1", "2", "3"]
+        loads.get() == 5
+    }
+
+    def "should load every permission when disabled"() {
+        given:
+        def cache = new DataPermissionCache(new DataPermissionCacheProperties(enabled: false))
+        def loads = new AtomicInteger()
+        def loader = {
+            loads.incrementAndGet()
+            new PermissionDTO(haveAllPermissions: true)
+        } as Supplier<PermissionDTO>
+
+        expect:
+        (1..3).every { cache.get("t1", 1L, DataPermissionType.ENTITY, loader).haveAllPermissions }
+        loads.get() == 3
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.milesight.beaveriot.permission.inspector
+
+import com.milesight.beaveriot.permission.enums.ColumnDataType
+import spock.lang.Specification
+
+class DataAspectStatementInspectorTest extends Specification {
+
+    def "should render short id lists as in lists"() {
+        expect:
+        DataAspectStatementInspector.renderDataIdCondition(["1", "2", "3"], ColumnDataType.NUMBER, usePostgresArray) == "IN (1,2,3)"
+        DataAspectStatementInspector.renderDataIdCondition(["a", "b'c"], ColumnDataType.STRING, usePostgresArray) == "IN ('a','b''c')"
+
+        where:
+        usePostgresArray << [true, false]
+    }
+
+    def "should render long id lists as a single array parameter on postgres"() {
+        given:
+        def numberIds = (1..DataAspectStatementInspector.ARRAY_PARAMETER_THRESHOLD + 1).collect { it as String }
+        def stringIds = ["a", "b'c"] + numberIds
+
+        expect:
+        DataAspectStatementInspector.renderDataIdCondition(numberIds, ColumnDataType.NUMBER, true) == "= ANY (CAST(? AS bigint[]))"
+        DataAspectStatementInspector.renderDataIdCondition(stringIds, ColumnDataType.STRING, true) == "= ANY (CAST(? AS text[]))"
+        DataAspectStatementInspector.renderDataIdCondition(numberIds, ColumnDataType.NUMBER, false) ==
+                "IN (" + numberIds.join(",") + ")"
+        DataAspectStatementInspector.renderDataIdCondition(numberIds.subList(0, DataAspectStatementInspector.ARRAY_PARAMETER_THRESHOLD), ColumnDataType.NUMBER, true)
+                .startsWith("IN (")
+    }
+
+}
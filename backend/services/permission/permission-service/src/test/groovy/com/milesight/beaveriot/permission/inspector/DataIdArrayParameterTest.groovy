@@ -0,0 +1,99 @@
+package com.milesight.beaveriot.permission.inspector
+
+import spock.lang.Specification
+
+import java.sql.Array
+import java.sql.Connection
+import java.sql.PreparedStatement
+
+class DataIdArrayParameterTest extends Specification {
+
+    static final String SQL = "select e.id from t_entity e where (e.name = ? and e.key <> '?') and e.tenant_id = 't1' " +
+            "and e.id " + DataIdArrayParameter.NUMBER_CONDITION + " and e.type = ?"
+
+    Array array = Stub()
+
+    PreparedStatement statement = Mock()
+
+    Connection connection = Mock()
+
+    def cleanup() {
+        DataIdArrayParameter.clear()
+    }
+
+    def "should bind the ids of the inspected statement and shift the following parameters"() {
+        given:
+        DataIdArrayParameter.set(["1", "2", "3"], false)
+
+        when:
+        def prepared = DataIdArrayParameter.wrap(connection).prepareStatement(SQL)
+        prepared.setString(1, "name")
+        prepared.setString(2, "type")
+
+        then:
+        1 * connection.prepareStatement(SQL) >> statement
+        1 * connection.createArrayOf("bigint", [1L, 2L, 3L] as Long[]) >> array
+        1 * statement.setArray(2, array)
+        1 * statement.setString(1, "name")
+        1 * statement.setString(3, "type")
+
+        when:
+        prepared.clearParameters()
+
+        then:
+        1 * statement.clearParameters()
+        1 * connection.createArrayOf("bigint", _) >> array
+        1 * statement.setArray(2, array)
+    }
+
+    def "should bind string ids as a text array"() {
+        given:
+        def sql = "select * from t where t.key " + DataIdArrayParameter.STRING_CONDITION
+        DataIdArrayParameter.set(["a", "b'c"], true)
+
+        when:
+        DataIdArrayParameter.wrap(connection).prepareStatement(sql)
+
+        then:
+        1 * connection.prepareStatement(sql) >> statement
+        1 * connection.createArrayOf("text", ["a", "b'c"] as String[]) >> array
+        1 * statement.setArray(1, array)
+    }
+
+    def "should leave statements without the array parameter alone"() {
+        given:
+        DataIdArrayParameter.set(["1"], false)
+        def sql = "select * from t where t.id = ?"
+
+        when:
+        def prepared = DataIdArrayParameter.wrap(connection).prepareStatement(sql)
+
+        then:
+        1 * connection.prepareStatement(sql) >> statement
+        prepared.is(statement)
+        0 * connection.createArrayOf(*_)
+    }
+
+    def "should bind the ids to the next prepared statement only"() {
+        given:
+        DataIdArrayParameter.set(["1"], false)
+        connection.prepareStatement(_) >> statement
+        connection.createArrayOf(*_) >> array
+        def wrapped = DataIdArrayParameter.wrap(connection)
+
+        when:
+        wrapped.prepareStatement(SQL)
+        wrapped.prepareStatement(SQL)
+
+        then:
+        1 * statement.setArray(2, array)
+    }
+
+    def "should count only the parameters outside quotes"() {
+        expect:
+        DataIdArrayParameter.parameterIndex(SQL, DataIdArrayParameter.NUMBER_CONDITION) == 2
+        DataIdArrayParameter.parameterIndex('select "a?" from t where b = \'x\'\'?\' and c ' + DataIdArrayParameter.NUMBER_CONDITION,
+                DataIdArrayParameter.NUMBER_CONDITION) == 1
+        DataIdArrayParameter.parameterIndex("select 1", DataIdArrayParameter.NUMBER_CONDITION) == -1
+    }
+}
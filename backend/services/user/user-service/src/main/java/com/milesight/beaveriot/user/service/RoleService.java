@@ -19,6 +19,7 @@ import com.milesight.beaveriot.data.util.PageConverter;
 import com.milesight.beaveriot.device.dto.DeviceNameDTO;
 import com.milesight.beaveriot.device.facade.IDeviceFacade;
 import com.milesight.beaveriot.entity.facade.IEntityFacade;
+import com.milesight.beaveriot.permission.facade.IPermissionFacade;
 import com.milesight.beaveriot.user.constants.UserConstants;
 import com.milesight.beaveriot.user.enums.ResourceType;
 import com.milesight.beaveriot.user.enums.UserErrorCode;
@@ -110,6 +111,10 @@ public class RoleService {
     @Autowired
     private IntegrationServiceProvider integrationServiceProvider;
 
+    @Lazy
+    @Autowired
+    private IPermissionFacade permissionFacade;
+
     @Lazy
     @Autowired
     private RoleService self;
@@ -764,7 +769,7 @@ public class RoleService {
 
     @BatchCacheEvict(cacheNames = CacheKeyConstants.USER_ID_TO_MENUS, keyPrefix = TENANT_PREFIX)
     public void evictUserMenusCache(@CacheKeys Collection<Long> userIds) {
-        // do nothing
+        permissionFacade.evictDataPermissions();
     }
 
 
@@ -877,12 +882,12 @@ public class RoleService {
 
     @BatchCacheEvict(cacheNames = CacheKeyConstants.USER_ID_TO_ROLES, keyPrefix = TENANT_PREFIX)
     public void evictUserRolesCache(@CacheKeys Collection<Long> userIds) {
-        // do nothing
+        permissionFacade.evictDataPermissions();
     }
 
     @BatchCacheEvict(cacheNames = CacheKeyConstants.ROLE_ID_TO_USERS, keyPrefix = TENANT_PREFIX)
     public void evictRoleUsersCache(@CacheKeys Collection<Long> roleIds) {
-        // do nothing
+        permissionFacade.evictDataPermissions();
     }
 
     @Transactional(rollbackFor = Throwable.class)
@@ -914,7 +919,7 @@ public class RoleService {
 
     @CacheEvict(cacheNames = CacheKeyConstants.ROLE_ID_TO_USERS, key = "T(com.milesight.beaveriot.context.security.TenantContext).getTenantId()+':'+#p0")
     public void evictUserRolesCacheByRoleId(Long roleId) {
-        // do nothing
+        permissionFacade.evictDataPermissions();
     }
 
     public List<RoleResourcePO> getRoleResourcePOsByRoleId(Long roleId) {
@@ -956,7 +961,7 @@ public class RoleService {
 
     @BatchCacheEvict(cacheNames = CacheKeyConstants.ROLE_ID_TO_RESOURCES, keyPrefix = TENANT_PREFIX)
     public void evictRoleResourcesCache(@CacheKeys Collection<Long> roleIds) {
-        // do nothing
+        permissionFacade.evictDataPermissions();
     }
 
     public Long getSuperAdminRoleId() {
@@ -4,7 +4,6 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.milesight.beaveriot.base.enums.ErrorCode;
 import com.milesight.beaveriot.base.exception.ServiceException;
 import com.milesight.beaveriot.base.page.Sorts;
-import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
 import com.milesight.beaveriot.rule.manager.model.request.SearchWorkflowLogsRequest;
 import com.milesight.beaveriot.rule.manager.model.response.WorkflowLogDetailResponse;
 import com.milesight.beaveriot.rule.manager.model.response.WorkflowLogResponse;
@@ -13,7 +12,8 @@ import com.milesight.beaveriot.rule.manager.po.WorkflowLogPO;
 import com.milesight.beaveriot.rule.manager.po.WorkflowPO;
 import com.milesight.beaveriot.rule.manager.repository.WorkflowLogDataRepository;
 import com.milesight.beaveriot.rule.manager.repository.WorkflowLogRepository;
-import com.milesight.beaveriot.rule.manager.repository.WorkflowRepository;
+import com.milesight.beaveriot.rule.manager.support.WorkflowLogDataCodec;
+import com.milesight.beaveriot.rule.manager.support.WorkflowLogSink;
 import com.milesight.beaveriot.rule.model.trace.FlowTraceInfo;
 import com.milesight.beaveriot.rule.model.trace.NodeTraceInfo;
 import com.milesight.beaveriot.rule.support.JsonHelper;
@@ -21,7 +21,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -33,15 +32,15 @@ public class WorkflowLogService {
     @Autowired
     WorkflowService workflowService;
 
-    @Autowired
-    WorkflowRepository workflowRepository;
-
     @Autowired
     WorkflowLogRepository workflowLogRepository;
 
     @Autowired
     WorkflowLogDataRepository workflowLogDataRepository;
 
+    @Autowired
+    WorkflowLogSink workflowLogSink;
+
     public Page<WorkflowLogResponse> searchLogs(Long flowId, SearchWorkflowLogsRequest request) {
         if (request.getSort().getOrders().isEmpty()) {
             request.sort(new Sorts().desc(WorkflowPO.Fields.id));
@@ -83,7 +82,7 @@ public class WorkflowLogService {
                 .startTime(wl.getStartTime())
                 .version(wl.getVersion())
                 .message(wl.getMessage())
-                .traceInfo(JsonHelper.fromJSON(wld.getData(), new TypeReference<List<NodeTraceInfo>>() {}))
+                .traceInfo(JsonHelper.fromJSON(WorkflowLogDataCodec.decode(wld.getData()), new TypeReference<List<NodeTraceInfo>>() {}))
                 .build();
     }
 
@@ -96,7 +95,6 @@ public class WorkflowLogService {
     }
 
     @EventListener
-    @Async
     public void onFlowLogEvent(FlowTraceInfo event) {
         Long flowId = null;
         try {
@@ -106,29 +104,6 @@ public class WorkflowLogService {
             return;
         }
 
-        WorkflowPO workflowPO = workflowRepository.findById(flowId).orElse(null);
-        if (workflowPO == null) {
-            log.error("Cannot find flow {}", flowId);
-            return;
-        }
-
-        WorkflowLogPO workflowLogPO = new WorkflowLogPO();
-        workflowLogPO.setId(SnowflakeUtil.nextId());
-        workflowLogPO.setStatus(event.getStatus().toString());
-        workflowLogPO.setFlowId(flowId);
-        workflowLogPO.setStartTime(event.getStartTime());
-        workflowLogPO.setTimeCost((int) event.getTimeCost());
-        workflowLogPO.setTenantId(workflowPO.getTenantId());
-        workflowLogPO.setUserId(workflowPO.getUserId());
-        workflowLogPO.setMessage(event.getMessage());
-        // BUG: Versions may be inconsistent
-        workflowLogPO.setVersion(workflowPO.getVersion());
-
-        workflowLogPO = workflowLogRepository.save(workflowLogPO);
-
-        WorkflowLogDataPO workflowLogDataPO = new WorkflowLogDataPO();
-        workflowLogDataPO.setId(workflowLogPO.getId());
-        workflowLogDataPO.setData(JsonHelper.toJSON(event.getTraceInfos()));
-        workflowLogDataRepository.save(workflowLogDataPO);
+        workflowLogSink.submit(flowId, event);
     }
 }
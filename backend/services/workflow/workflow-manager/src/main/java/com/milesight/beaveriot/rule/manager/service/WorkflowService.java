@@ -38,6 +38,7 @@ import com.milesight.beaveriot.rule.manager.po.WorkflowHistoryPO;
 import com.milesight.beaveriot.rule.manager.po.WorkflowPO;
 import com.milesight.beaveriot.rule.manager.repository.WorkflowHistoryRepository;
 import com.milesight.beaveriot.rule.manager.repository.WorkflowRepository;
+import com.milesight.beaveriot.rule.manager.support.WorkflowLogSink;
 import com.milesight.beaveriot.rule.manager.support.WorkflowTenantCache;
 import com.milesight.beaveriot.rule.model.RuleLanguage;
 import com.milesight.beaveriot.rule.model.flow.config.RuleEdgeConfig;
@@ -86,6 +87,9 @@ public class WorkflowService {
 
     @Autowired
     MessagePubSub messagePubSub;
+
+    @Autowired
+    WorkflowLogSink workflowLogSink;
     private final AtomicBoolean workflowPrepared = new AtomicBoolean(true);
 
     @Async
@@ -230,6 +234,7 @@ public class WorkflowService {
             workflowRepository.deleteAll(removeSuccess);
             workflowHistoryRepository.deleteByFlowIdIn(removeSuccessIds);
             removeSuccessIds.stream().map(Object::toString).forEach(WorkflowTenantCache.INSTANCE::remove);
+            removeSuccessIds.stream().map(Object::toString).forEach(workflowLogSink::evictWorkflow);
         }
 
         if (!removeFailure.isEmpty()) {
@@ -273,6 +278,7 @@ public class WorkflowService {
         TenantContext.setTenantId(tenantId);
         ruleEngineLifecycleManager.deployFlow(ruleFlowConfig);
         WorkflowTenantCache.INSTANCE.put(deployEvent.getId().toString(), tenantId);
+        workflowLogSink.evictWorkflow(deployEvent.getId().toString());
     }
 
     public void removeFlowAndNotify(WorkflowPO workflowPO) {
@@ -284,6 +290,7 @@ public class WorkflowService {
     public void removeFlow(BaseWorkflowEvent removeEvent) {
         ruleEngineLifecycleManager.removeFlow(removeEvent.getId().toString());
         WorkflowTenantCache.INSTANCE.remove(removeEvent.getId().toString());
+        workflowLogSink.evictWorkflow(removeEvent.getId().toString());
     }
 
     public void disableFlowImmediately(Long flowId) {
@@ -2,15 +2,24 @@ package com.milesight.beaveriot.rule.manager.support;
 
 import com.google.common.collect.Maps;
 import com.milesight.beaveriot.semaphore.DistributedSemaphore;
+import com.milesight.beaveriot.semaphore.leasing.LeasingSemaphore;
+import com.milesight.beaveriot.semaphore.local.LocalSemaphore;
 import com.milesight.beaveriot.user.dto.TenantDTO;
 import com.milesight.beaveriot.user.facade.IUserFacade;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * author: Luxb
@@ -20,24 +29,49 @@ import java.util.Map;
 @Component
 public class TenantWorkflowRateLimiter {
     private static final int DEFAULT_SEMAPHORE_SIZE = 5;
+    private static final String METRIC_PREFIX = "workflow.rate_limit.";
     private final WorkflowRateLimitConfig workflowRateLimitConfig;
     private Map<String, Integer> tenantTypeSemaphorePermitsMap;
     private final IUserFacade userFacade;
     private final DistributedSemaphore distributedSemaphore;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TenantMeters> tenantMeters = Maps.newConcurrentMap();
 
-    public TenantWorkflowRateLimiter(WorkflowRateLimitConfig workflowRateLimitConfig, IUserFacade userFacade, DistributedSemaphore distributedSemaphore) {
+    public TenantWorkflowRateLimiter(WorkflowRateLimitConfig workflowRateLimitConfig, IUserFacade userFacade, DistributedSemaphore distributedSemaphore, ObjectProvider<MeterRegistry> meterRegistryProvider) {
         this.workflowRateLimitConfig = workflowRateLimitConfig;
         this.userFacade = userFacade;
-        this.distributedSemaphore = distributedSemaphore;
+        this.distributedSemaphore = createSemaphore(workflowRateLimitConfig, distributedSemaphore);
+        this.meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
         initTenantTypeSemaphorePermitsMap();
         initTenantSemaphore();
     }
 
+    private static DistributedSemaphore createSemaphore(WorkflowRateLimitConfig workflowRateLimitConfig, DistributedSemaphore distributedSemaphore) {
+        WorkflowRateLimitConfig.Lease lease = workflowRateLimitConfig.getLease();
+        // a local semaphore is already node local
+        if (!workflowRateLimitConfig.isEnabled() || !lease.isEnabled() || distributedSemaphore instanceof LocalSemaphore) {
+            return distributedSemaphore;
+        }
+        return new LeasingSemaphore(distributedSemaphore, lease.getBatchSize(), lease.getIdleTimeout(), lease.getPollInterval(), lease.getDegradedRetry());
+    }
+
     public String acquire(String tenantId) {
         if (!workflowRateLimitConfig.isEnabled()) {
             return "";
         }
-        return distributedSemaphore.acquire(getKey(tenantId), Duration.ofMillis(workflowRateLimitConfig.getTimeout()));
+        TenantMeters meters = tenantMeters.computeIfAbsent(tenantId, this::createTenantMeters);
+        long start = System.nanoTime();
+        String permitId = distributedSemaphore.acquire(getKey(tenantId), Duration.ofMillis(workflowRateLimitConfig.getTimeout()));
+        meters.waitTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        (permitId != null ? meters.admitted() : meters.rejected()).increment();
+        return permitId;
+    }
+
+    private TenantMeters createTenantMeters(String tenantId) {
+        return new TenantMeters(
+                meterRegistry.counter(METRIC_PREFIX + "admission", "tenant", tenantId, "result", "admitted"),
+                meterRegistry.counter(METRIC_PREFIX + "admission", "tenant", tenantId, "result", "rejected"),
+                meterRegistry.timer(METRIC_PREFIX + "wait", "tenant", tenantId));
     }
 
     public void release(String tenantId, String permitId) {
@@ -83,6 +117,16 @@ public class TenantWorkflowRateLimiter {
         return tenantTypeSemaphorePermitsMap.getOrDefault(tenantType.name().toLowerCase(), DEFAULT_SEMAPHORE_SIZE);
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (distributedSemaphore instanceof LeasingSemaphore leasingSemaphore) {
+            leasingSemaphore.close();
+        }
+    }
+
+    private record TenantMeters(Counter admitted, Counter rejected, Timer waitTimer) {
+    }
+
     public enum TenantType {
         DEFAULT
     }
@@ -0,0 +1,49 @@
+package com.milesight.beaveriot.rule.manager.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stored form of the trace data of a flow log. Large traces are gzip compressed and kept as base64 text with a prefix,
+ * a JSON array never starts with it, so logs written before compression was introduced are read unchanged.
+ **/
+public class WorkflowLogDataCodec {
+    private static final String GZIP_PREFIX = "gz:";
+
+    private WorkflowLogDataCodec() {
+    }
+
+    public static String encode(String json, int compressThreshold) {
+        if (json == null || compressThreshold < 0 || json.length() <= compressThreshold) {
+            return json;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String encoded = GZIP_PREFIX + Base64.getEncoder().encodeToString(out.toByteArray());
+        return encoded.length() < json.length() ? encoded : json;
+    }
+
+    public static String decode(String data) {
+        if (data == null || !data.startsWith(GZIP_PREFIX)) {
+            return data;
+        }
+
+        byte[] compressed = Base64.getDecoder().decode(data.substring(GZIP_PREFIX.length()));
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.milesight.beaveriot.rule.manager.support;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "workflow.log")
+public class WorkflowLogProperties {
+    /**
+     * Maximum number of flow logs waiting to be written, further logs are dropped
+     */
+    private int capacity = 10000;
+    private Duration flushInterval = Duration.ofSeconds(1);
+    /**
+     * Maximum number of flow logs written by one flush
+     */
+    private int maxBatchSize = 1000;
+    private int rowsPerStatement = 200;
+    /**
+     * Attempts of a failed insert statement before its rows are written one by one
+     */
+    private int retryAttempts = 3;
+    /**
+     * Wait before the first retry, doubled for every further retry
+     */
+    private Duration retryBackoff = Duration.ofMillis(100);
+    /**
+     * Time an error log waits for free capacity, successful logs are dropped at once when the queue is full
+     */
+    private Duration errorOfferTimeout = Duration.ofSeconds(1);
+    /**
+     * Trace data longer than this is stored gzip compressed, a negative value disables compression
+     */
+    private int compressThreshold = 2048;
+    /**
+     * Workflow version, tenant and user are cached for this long, deploying or removing a workflow evicts them
+     */
+    private Duration metadataTtl = Duration.ofMinutes(10);
+    private Sampling sampling = new Sampling();
+
+    @Data
+    public static class Sampling {
+        /**
+         * Keep one of every N successful executions, failed executions are always kept
+         */
+        private int successRate = 1;
+        /**
+         * Success rates of single workflows by workflow id
+         */
+        private Map<String, Integer> flows = new HashMap<>();
+
+        public int getSuccessRate(Long flowId) {
+            return Math.max(1, flows.getOrDefault(String.valueOf(flowId), successRate));
+        }
+    }
+}
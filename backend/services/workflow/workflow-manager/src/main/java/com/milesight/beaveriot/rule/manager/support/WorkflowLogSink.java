@@ -0,0 +1,399 @@
+package com.milesight.beaveriot.rule.manager.support;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.milesight.beaveriot.base.utils.snowflake.SnowflakeUtil;
+import com.milesight.beaveriot.rule.enums.ExecutionStatus;
+import com.milesight.beaveriot.rule.manager.po.WorkflowPO;
+import com.milesight.beaveriot.rule.manager.repository.WorkflowRepository;
+import com.milesight.beaveriot.rule.model.trace.FlowTraceInfo;
+import com.milesight.beaveriot.rule.support.JsonHelper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Asynchronous writer of flow logs. Executions are sampled and queued by the tracing thread, a single flusher resolves
+ * the workflows from a cache, serializes and compresses the traces and writes logs and trace data with multi-row
+ * inserts once per flush interval. A full queue drops successful logs at once, failed ones after a short wait.
+ * <p>
+ * Failed statements are retried with a backoff. Rows still not written are kept for the next flush if they belong
+ * to a failed execution or complete a log already written, other rows are dropped.
+ **/
+@Slf4j
+@Component
+public class WorkflowLogSink {
+    private static final String METRIC_PREFIX = "workflow.log.";
+    private static final List<String> LOG_COLUMNS = List.of("id", "flow_id", "version", "start_time", "time_cost",
+            "status", "message", "tenant_id", "user_id", "created_at");
+    private static final List<String> LOG_DATA_COLUMNS = List.of("id", "data", "created_at");
+    private static final int MESSAGE_MAX_LENGTH = 1000;
+    private final JdbcTemplate jdbcTemplate;
+    private final WorkflowRepository workflowRepository;
+    private final WorkflowLogProperties properties;
+    private final BlockingQueue<FlowTraceInfo> queue;
+    private final Cache<Long, Optional<WorkflowMetadata>> workflowMetadata;
+    private final Cache<Long, AtomicLong> successCounters;
+    private final Counter sampledOutCounter;
+    private final Counter droppedSuccessCounter;
+    private final Counter droppedErrorCounter;
+    private final Counter flushedCounter;
+    private final Counter failedCounter;
+    private final Timer flushTimer;
+    private final Thread flusher;
+    private volatile boolean running = true;
+    // accessed by the flusher only
+    private List<LogRow> retainedLogRows = new ArrayList<>();
+    private List<LogRow> retainedLogDataRows = new ArrayList<>();
+
+    public WorkflowLogSink(JdbcTemplate jdbcTemplate,
+                           WorkflowRepository workflowRepository,
+                           WorkflowLogProperties properties,
+                           ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.workflowRepository = workflowRepository;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.workflowMetadata = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(properties.getMetadataTtl())
+                .build();
+        this.successCounters = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        meterRegistry.gaugeCollectionSize(METRIC_PREFIX + "queue.size", List.of(), queue);
+        this.sampledOutCounter = meterRegistry.counter(METRIC_PREFIX + "sampled_out");
+        this.droppedSuccessCounter = meterRegistry.counter(METRIC_PREFIX + "dropped", "status", ExecutionStatus.SUCCESS.name());
+        this.droppedErrorCounter = meterRegistry.counter(METRIC_PREFIX + "dropped", "status", ExecutionStatus.ERROR.name());
+        this.flushedCounter = meterRegistry.counter(METRIC_PREFIX + "flushed");
+        this.failedCounter = meterRegistry.counter(METRIC_PREFIX + "failed");
+        this.flushTimer = meterRegistry.timer(METRIC_PREFIX + "flush.latency");
+        meterRegistry.gauge(METRIC_PREFIX + "retained", this, sink -> sink.retainedLogRows.size() + sink.retainedLogDataRows.size());
+
+        this.flusher = new Thread(this::runFlusher, "workflow-log-sink");
+        this.flusher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
+    }
+
+    public void submit(Long flowId, FlowTraceInfo traceInfo) {
+        boolean isError = traceInfo.getStatus() == ExecutionStatus.ERROR;
+        if (!isError && !isSampled(flowId)) {
+            sampledOutCounter.increment();
+            return;
+        }
+
+        if (running && queue.offer(traceInfo)) {
+            return;
+        }
+
+        if (isError) {
+            try {
+                if (running && queue.offer(traceInfo, properties.getErrorOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            droppedErrorCounter.increment();
+        } else {
+            droppedSuccessCounter.increment();
+        }
+    }
+
+    private boolean isSampled(Long flowId) {
+        int successRate = properties.getSampling().getSuccessRate(flowId);
+        if (successRate <= 1) {
+            return true;
+        }
+        return successCounters.get(flowId, k -> new AtomicLong()).getAndIncrement() % successRate == 0;
+    }
+
+    public void evictWorkflow(String flowId) {
+        try {
+            workflowMetadata.invalidate(Long.valueOf(flowId));
+        } catch (NumberFormatException e) {
+            // not a persisted workflow
+        }
+    }
+
+    private void runFlusher() {
+        List<FlowTraceInfo> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // woken up by destroy, the queue is drained by the loop condition
+            }
+
+            if (!batch.isEmpty() || !retainedLogRows.isEmpty() || !retainedLogDataRows.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<FlowTraceInfo> batch) throws InterruptedException {
+        FlowTraceInfo first = queue.poll(properties.getFlushInterval().toMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+
+        batch.add(first);
+        long deadline = System.nanoTime() + properties.getFlushInterval().toNanos();
+        int maxBatchSize = properties.getMaxBatchSize();
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0 || !running) {
+                return;
+            }
+
+            FlowTraceInfo next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    void flush(List<FlowTraceInfo> batch) {
+        long start = System.nanoTime();
+        List<LogRow> logRows = retainedLogRows;
+        List<LogRow> logDataRows = retainedLogDataRows;
+        retainedLogRows = new ArrayList<>();
+        retainedLogDataRows = new ArrayList<>();
+        try {
+            List<LogRow> batchLogRows = new ArrayList<>(batch.size());
+            List<LogRow> batchLogDataRows = new ArrayList<>(batch.size());
+            toRows(batch, logRows.size(), batchLogRows, batchLogDataRows);
+            logRows.addAll(batchLogRows);
+            logDataRows.addAll(batchLogDataRows);
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("Failed to prepare {} flow logs", batch.size(), e);
+            requeueErrors(batch);
+        }
+
+        try {
+            int writtenLogs = insert("t_flow_log", LOG_COLUMNS, logRows);
+            flushedCounter.increment(writtenLogs);
+            if (writtenLogs < logRows.size()) {
+                // the trace data is written after the logs, none of it has been tried
+                retain(retainedLogRows, logRows.subList(writtenLogs, logRows.size()), LogRow::error);
+                retain(retainedLogDataRows, logDataRows, row -> row.error() || row.logWritten(writtenLogs));
+                return;
+            }
+
+            int writtenLogData = insert("t_flow_log_data", LOG_DATA_COLUMNS, logDataRows);
+            retain(retainedLogDataRows, logDataRows.subList(writtenLogData, logDataRows.size()), row -> true);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void toRows(List<FlowTraceInfo> batch, int firstIndex, List<LogRow> logRows, List<LogRow> logDataRows) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<Long, WorkflowMetadata> metadata = loadWorkflowMetadata(batch);
+        long now = System.currentTimeMillis();
+        for (FlowTraceInfo traceInfo : batch) {
+            Long flowId = Long.valueOf(traceInfo.getFlowId());
+            WorkflowMetadata workflow = metadata.get(flowId);
+            if (workflow == null) {
+                log.error("Cannot find flow {}", flowId);
+                continue;
+            }
+
+            long id = SnowflakeUtil.nextId();
+            boolean error = traceInfo.getStatus() == ExecutionStatus.ERROR;
+            int index = firstIndex + logRows.size();
+            // BUG: Versions may be inconsistent
+            logRows.add(new LogRow(new Object[]{id, flowId, workflow.version(), traceInfo.getStartTime(), (int) traceInfo.getTimeCost(),
+                    traceInfo.getStatus().toString(), truncate(traceInfo.getMessage()), workflow.tenantId(), workflow.userId(), now},
+                    error, index));
+            String data = WorkflowLogDataCodec.encode(JsonHelper.toJSON(traceInfo.getTraceInfos()), properties.getCompressThreshold());
+            logDataRows.add(new LogRow(new Object[]{id, data, now}, error, index));
+        }
+    }
+
+    private void requeueErrors(List<FlowTraceInfo> batch) {
+        for (FlowTraceInfo traceInfo : batch) {
+            if (traceInfo.getStatus() == ExecutionStatus.ERROR && !queue.offer(traceInfo)) {
+                droppedErrorCounter.increment();
+            }
+        }
+    }
+
+    private void retain(List<LogRow> retained, List<LogRow> unwritten, Predicate<LogRow> kept) {
+        if (unwritten.isEmpty()) {
+            return;
+        }
+
+        int dropped = 0;
+        for (LogRow row : unwritten) {
+            if (kept.test(row) && retained.size() < properties.getCapacity()) {
+                retained.add(row.retained());
+            } else {
+                dropped++;
+                (row.error() ? droppedErrorCounter : droppedSuccessCounter).increment();
+            }
+        }
+        failedCounter.increment();
+        log.error("Failed to write {} flow log rows, {} of them are kept for the next flush", unwritten.size(), unwritten.size() - dropped);
+    }
+
+    private Map<Long, WorkflowMetadata> loadWorkflowMetadata(List<FlowTraceInfo> batch) {
+        Set<Long> flowIds = new LinkedHashSet<>();
+        batch.forEach(traceInfo -> flowIds.add(Long.valueOf(traceInfo.getFlowId())));
+        Map<Long, Optional<WorkflowMetadata>> cached = workflowMetadata.getAll(flowIds, missingIds -> {
+            Map<Long, Optional<WorkflowMetadata>> loaded = new HashMap<>();
+            missingIds.forEach(flowId -> loaded.put(flowId, Optional.empty()));
+            workflowRepository.findByIdInIgnoreTenant(new ArrayList<>(missingIds))
+                    .forEach(workflowPO -> loaded.put(workflowPO.getId(), Optional.of(WorkflowMetadata.of(workflowPO))));
+            return loaded;
+        });
+
+        Map<Long, WorkflowMetadata> metadata = new HashMap<>();
+        cached.forEach((flowId, workflow) -> workflow.ifPresent(w -> metadata.put(flowId, w)));
+        return metadata;
+    }
+
+    /**
+     * @return the index of the first row not written because the database is unavailable, or the size of the rows
+     */
+    private int insert(String table, List<String> columns, List<LogRow> rows) {
+        String row = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        int rowsPerStatement = Math.max(1, properties.getRowsPerStatement());
+        for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+            List<LogRow> chunk = rows.subList(from, Math.min(from + rowsPerStatement, rows.size()));
+            List<Object> args = new ArrayList<>(chunk.size() * columns.size());
+            chunk.forEach(values -> Collections.addAll(args, values.values()));
+            try {
+                updateWithRetry(insertSql(table, columns, Collections.nCopies(chunk.size(), row)), args.toArray());
+            } catch (DataAccessException e) {
+                log.warn("Failed to write {} rows of {} in one statement, writing them one by one", chunk.size(), table, e);
+                int unwrittenFrom = insertOneByOne(insertSql(table, columns, List.of(row)), chunk);
+                if (unwrittenFrom < chunk.size()) {
+                    return from + unwrittenFrom;
+                }
+            }
+        }
+        return rows.size();
+    }
+
+    private int insertOneByOne(String sql, List<LogRow> rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            try {
+                jdbcTemplate.update(sql, rows.get(i).values());
+            } catch (DuplicateKeyException e) {
+                // written by a statement reported as failed
+            } catch (DataIntegrityViolationException e) {
+                (rows.get(i).error() ? droppedErrorCounter : droppedSuccessCounter).increment();
+                log.error("Dropped invalid flow log row {}", rows.get(i).values()[0], e);
+            } catch (DataAccessException e) {
+                return i;
+            }
+        }
+        return rows.size();
+    }
+
+    private void updateWithRetry(String sql, Object[] args) {
+        long backoffMillis = properties.getRetryBackoff().toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                jdbcTemplate.update(sql, args);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // a row of the statement is invalid, retrying the same statement cannot succeed
+                throw e;
+            } catch (DataAccessException e) {
+                if (attempt >= properties.getRetryAttempts()) {
+                    throw e;
+                }
+
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interruptedException) {
+                    // interrupted by destroy, the rows are written one by one without waiting
+                    throw e;
+                }
+                backoffMillis *= 2;
+            }
+        }
+    }
+
+    private static String insertSql(String table, List<String> columns, List<String> rows) {
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES " + String.join(", ", rows);
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > MESSAGE_MAX_LENGTH ? message.substring(0, MESSAGE_MAX_LENGTH) : message;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(properties.getFlushInterval().toMillis() + TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!queue.isEmpty() || !retainedLogRows.isEmpty()) {
+            log.warn("{} flow logs and {} retained rows were not written before shutdown", queue.size(), retainedLogRows.size());
+        }
+    }
+
+    /**
+     * @param index position of the log among the rows of its flush, negative once the log has been written
+     */
+    private record LogRow(Object[] values, boolean error, int index) {
+        private boolean logWritten(int writtenLogs) {
+            return index < writtenLogs;
+        }
+
+        private LogRow retained() {
+            return new LogRow(values, error, -1);
+        }
+    }
+
+    private record WorkflowMetadata(Integer version, String tenantId, Long userId) {
+        private static WorkflowMetadata of(WorkflowPO workflowPO) {
+            return new WorkflowMetadata(workflowPO.getVersion(), workflowPO.getTenantId(), workflowPO.getUserId());
+        }
+    }
+}
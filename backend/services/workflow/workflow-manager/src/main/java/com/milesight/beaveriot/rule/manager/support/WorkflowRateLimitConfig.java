@@ -4,6 +4,7 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.Map;
 
 /**
@@ -17,4 +18,23 @@ public class WorkflowRateLimitConfig {
     private boolean enabled = false;
     private long timeout = 5000;
     private Map<String, Integer> tenantConcurrency;
+    private Lease lease = new Lease();
+
+    /**
+     * Permits leased in batches from the distributed semaphore into a node local bucket
+     */
+    @Data
+    public static class Lease {
+        private boolean enabled = true;
+        /**
+         * Idle permits a node keeps per tenant, they are not available to other nodes
+         */
+        private int batchSize = 2;
+        private Duration idleTimeout = Duration.ofSeconds(2);
+        private Duration pollInterval = Duration.ofMillis(100);
+        /**
+         * Time a node limits on its own after the distributed semaphore failed
+         */
+        private Duration degradedRetry = Duration.ofSeconds(30);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.milesight.beaveriot.rule.manager.support
+
+import spock.lang.Specification
+
+class WorkflowLogDataCodecTest extends Specification {
+
+    def "should read back what it stores"() {
+        when:
+        def encoded = WorkflowLogDataCodec.encode(json, threshold)
+
+        then:
+        encoded.startsWith("gz:") == compressed
+        WorkflowLogDataCodec.decode(encoded) == json
+
+        where:
+        json                                                                     | threshold || compressed
+        '[' + (1..200).collect { '{"nodeId":"n' + it + '","status":"SUCCESS"}' }.join(',') + ']' | 100 || true
+        '[{"nodeId":"中文","input":"' + ('é' * 2000) + '"}]'                         | 100       || true
+        '[{"nodeId":"n1"}]'                                                      | 100       || false
+        '[' + (1..200).collect { '{"nodeId":"n' + it + '"}' }.join(',') + ']'      | -1        || false
+        ''                                                                       | 0         || false
+    }
+
+    def "should keep data that does not get shorter by compression"() {
+        given:
+        def bytes = new byte[3000]
+        new Random(1).nextBytes(bytes)
+        def json = '["' + Base64.encoder.encodeToString(bytes) + '"]'
+
+        expect:
+        WorkflowLogDataCodec.encode(json, 10) == json
+    }
+
+    def "should read data stored without compression unchanged"() {
+        expect:
+        WorkflowLogDataCodec.decode(data) == data
+
+        where:
+        data << [null, '[]', '[{"nodeId":"gz:1"}]']
+    }
+}
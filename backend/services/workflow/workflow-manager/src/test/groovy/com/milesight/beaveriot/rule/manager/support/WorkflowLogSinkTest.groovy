@@ -0,0 +1,185 @@
+package com.milesight.beaveriot.rule.manager.support
+
+import com.milesight.beaveriot.rule.enums.ExecutionStatus
+import com.milesight.beaveriot.rule.manager.po.WorkflowPO
+import com.milesight.beaveriot.rule.manager.repository.WorkflowRepository
+import com.milesight.beaveriot.rule.model.trace.FlowTraceInfo
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.beans.factory.ObjectProvider
+import org.springframework.dao.DataAccessResourceFailureException
+import org.springframework.dao.DataIntegrityViolationException
+import org.springframework.dao.DuplicateKeyException
+import org.springframework.jdbc.core.JdbcTemplate
+import spock.lang.Specification
+
+import java.time.Duration
+
+class WorkflowLogSinkTest extends Specification {
+
+    RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate()
+
+    WorkflowRepository workflowRepository = Stub()
+
+    WorkflowLogProperties properties = new WorkflowLogProperties(rowsPerStatement: 2, retryBackoff: Duration.ofMillis(1))
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+    WorkflowLogSink sink
+
+    def setup() {
+        workflowRepository.findByIdInIgnoreTenant(_) >> { List<Long> ids -> ids.collect { workflow(it) } }
+        sink = new WorkflowLogSink(jdbcTemplate, workflowRepository, properties, Stub(ObjectProvider) {
+            getIfAvailable(_) >> meterRegistry
+        } as ObjectProvider<MeterRegistry>)
+    }
+
+    def "should write logs and trace data in multi-row statements"() {
+        when:
+        sink.flush([trace(ExecutionStatus.SUCCESS), trace(ExecutionStatus.ERROR), trace(ExecutionStatus.SUCCESS)])
+
+        then:
+        jdbcTemplate.calls*.table == ["t_flow_log", "t_flow_log", "t_flow_log_data", "t_flow_log_data"]
+        jdbcTemplate.calls*.ids*.size() == [2, 1, 2, 1]
+        jdbcTemplate.written["t_flow_log"] == jdbcTemplate.written["t_flow_log_data"]
+        meterRegistry.counter("workflow.log.flushed").count() == 3
+    }
+
+    def "should retry a failed statement with backoff"() {
+        given:
+        jdbcTemplate.failure = { String table, List<Long> ids, int call -> call <= 2 ? new DataAccessResourceFailureException("down") : null }
+
+        when:
+        sink.flush([trace(ExecutionStatus.SUCCESS)])
+
+        then:
+        jdbcTemplate.calls.size() == 4
+        jdbcTemplate.written["t_flow_log"].size() == 1
+        jdbcTemplate.written["t_flow_log_data"].size() == 1
+        meterRegistry.counter("workflow.log.failed").count() == 0
+    }
+
+    def "should keep error logs for the next flush while the database is unavailable"() {
+        given:
+        jdbcTemplate.failure = { String table, List<Long> ids, int call -> new DataAccessResourceFailureException("down") }
+
+        when:
+        sink.flush([trace(ExecutionStatus.SUCCESS), trace(ExecutionStatus.ERROR)])
+
+        then:
+        jdbcTemplate.written.isEmpty()
+        meterRegistry.counter("workflow.log.dropped", "status", "SUCCESS").count() == 2
+        meterRegistry.counter("workflow.log.dropped", "status", "ERROR").count() == 0
+
+        when:
+        jdbcTemplate.failure = null
+        sink.flush([])
+
+        then:
+        jdbcTemplate.written["t_flow_log"].size() == 1
+        jdbcTemplate.written["t_flow_log_data"] == jdbcTemplate.written["t_flow_log"]
+        jdbcTemplate.args["t_flow_log"][0][5] == "ERROR"
+    }
+
+    def "should keep the trace data of written logs when writing it fails"() {
+        given:
+        jdbcTemplate.failure = { String table, List<Long> ids, int call -> table == "t_flow_log_data" ? new DataAccessResourceFailureException("down") : null }
+
+        when:
+        sink.flush([trace(ExecutionStatus.SUCCESS), trace(ExecutionStatus.SUCCESS), trace(ExecutionStatus.ERROR)])
+
+        then:
+        jdbcTemplate.written["t_flow_log"].size() == 3
+        !jdbcTemplate.written.containsKey("t_flow_log_data")
+
+        when:
+        jdbcTemplate.failure = null
+        sink.flush([])
+
+        then:
+        jdbcTemplate.written["t_flow_log_data"] == jdbcTemplate.written["t_flow_log"]
+        meterRegistry.counter("workflow.log.flushed").count() == 3
+    }
+
+    def "should write the rows of a statement with an invalid row one by one"() {
+        given:
+        jdbcTemplate.failure = { String table, List<Long> ids, int call ->
+            switch (call) {
+                case 1: return new DataIntegrityViolationException("value too long")
+                // inserted by a statement reported as failed
+                case 2: return new DuplicateKeyException("duplicate key")
+                case 3: return new DataIntegrityViolationException("value too long")
+                default: return null
+            }
+        }
+
+        when:
+        sink.flush([trace(ExecutionStatus.SUCCESS), trace(ExecutionStatus.ERROR)])
+
+        then:
+        jdbcTemplate.calls*.ids*.size() == [2, 1, 1, 2]
+        meterRegistry.counter("workflow.log.dropped", "status", "SUCCESS").count() == 0
+        meterRegistry.counter("workflow.log.dropped", "status", "ERROR").count() == 1
+        jdbcTemplate.written["t_flow_log_data"].size() == 2
+    }
+
+    def "should queue error traces again when the workflows cannot be loaded"() {
+        given:
+        workflowRepository = Mock()
+        sink = new WorkflowLogSink(jdbcTemplate, workflowRepository, properties, Stub(ObjectProvider) {
+            getIfAvailable(_) >> meterRegistry
+        } as ObjectProvider<MeterRegistry>)
+        def error = trace(ExecutionStatus.ERROR)
+
+        when:
+        sink.flush([trace(ExecutionStatus.SUCCESS), error])
+
+        then:
+        1 * workflowRepository.findByIdInIgnoreTenant(_) >> { throw new DataAccessResourceFailureException("down") }
+        sink.@queue.toList() == [error]
+        jdbcTemplate.calls.isEmpty()
+    }
+
+    private static FlowTraceInfo trace(ExecutionStatus status) {
+        def traceInfo = new FlowTraceInfo()
+        traceInfo.flowId = "1001"
+        traceInfo.status = status
+        traceInfo.timeCost = 5
+        return traceInfo
+    }
+
+    private static WorkflowPO workflow(Long id) {
+        def workflowPO = new WorkflowPO()
+        workflowPO.id = id
+        workflowPO.version = 1
+        workflowPO.tenantId = "t1"
+        workflowPO.userId = 1L
+        return workflowPO
+    }
+
+    static class RecordingJdbcTemplate extends JdbcTemplate {
+
+        Closure<Exception> failure
+
+        List<Map> calls = []
+
+        Map<String, List<Long>> written = [:]
+
+        Map<String, List<List>> args = [:]
+
+        @Override
+        int update(String sql, Object... args) {
+            String table = sql.split(" ")[2]
+            int columns = table == "t_flow_log" ? 10 : 3
+            List<Long> ids = (0..<args.length.intdiv(columns)).collect { args[it * columns] as Long }
+            calls << [table: table, ids: ids]
+            def exception = failure?.call(table, ids, calls.size())
+            if (exception != null) {
+                throw exception
+            }
+            written.computeIfAbsent(table, { [] }).addAll(ids)
+            (0..<ids.size()).each { this.args.computeIfAbsent(table, { [] }) << args.toList().subList(it * columns, (it + 1) * columns) }
+            return ids.size()
+        }
+    }
+}
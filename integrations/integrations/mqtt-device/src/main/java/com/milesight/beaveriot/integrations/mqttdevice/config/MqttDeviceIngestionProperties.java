@@ -0,0 +1,44 @@
+package com.milesight.beaveriot.integrations.mqttdevice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "mqtt-device.ingestion")
+public class MqttDeviceIngestionProperties {
+    /**
+     * Number of worker threads, messages of a topic are always handled by the same worker in arrival order
+     */
+    private int workers = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * Maximum number of waiting messages per worker
+     */
+    private int queueCapacity = 1000;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * Time a message waits for free queue capacity with {@link OverflowPolicy#BLOCK} before it is dropped
+     */
+    private Duration offerTimeout = Duration.ofSeconds(1);
+
+    public enum OverflowPolicy {
+        /**
+         * Hold up the MQTT delivery thread until the worker has capacity, drop the message after the offer timeout
+         */
+        BLOCK,
+        /**
+         * Drop the incoming message
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest waiting message of the worker to make room for the incoming one
+         */
+        DROP_OLDEST
+    }
+}
@@ -6,14 +6,23 @@ import com.milesight.beaveriot.context.api.*;
 import com.milesight.beaveriot.context.integration.model.Device;
 import com.milesight.beaveriot.context.integration.model.ExchangePayload;
 import com.milesight.beaveriot.context.model.response.DeviceTemplateInputResult;
+import com.milesight.beaveriot.context.security.TenantContext;
+import com.milesight.beaveriot.integrations.mqttdevice.config.MqttDeviceIngestionProperties;
 import com.milesight.beaveriot.integrations.mqttdevice.support.DataCenter;
+import com.milesight.beaveriot.integrations.mqttdevice.support.KeyedOrderedExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * author: Luxb
@@ -22,53 +31,108 @@ import java.util.concurrent.Executors;
 @Slf4j
 @Service
 public class MqttDeviceMqttService {
+    private static final String METRIC_PREFIX = "mqtt_device.ingestion.";
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
     private final MqttPubSubServiceProvider mqttPubSubServiceProvider;
     private final DeviceTemplateParserProvider deviceTemplateParserProvider;
     private final DeviceServiceProvider deviceServiceProvider;
     private final EntityValueServiceProvider entityValueServiceProvider;
     private final DeviceStatusServiceProvider deviceStatusServiceProvider;
-    private final ExecutorService jsonDataHandleService;
+    private final MqttDeviceIngestionProperties ingestionProperties;
+    private final MeterRegistry meterRegistry;
+    private final Timer matchTimer;
+    private final Timer queueTimer;
+    private final Timer parseTimer;
+    private final Timer deviceTimer;
+    private final Timer saveTimer;
+    private final Timer onlineTimer;
+    private final Counter droppedCounter;
+    private volatile KeyedOrderedExecutor jsonDataHandleService;
 
-    public MqttDeviceMqttService(MqttPubSubServiceProvider mqttPubSubServiceProvider, DeviceTemplateParserProvider deviceTemplateParserProvider, DeviceServiceProvider deviceServiceProvider, EntityValueServiceProvider entityValueServiceProvider, DeviceStatusServiceProvider deviceStatusServiceProvider) {
+    public MqttDeviceMqttService(MqttPubSubServiceProvider mqttPubSubServiceProvider, DeviceTemplateParserProvider deviceTemplateParserProvider, DeviceServiceProvider deviceServiceProvider, EntityValueServiceProvider entityValueServiceProvider, DeviceStatusServiceProvider deviceStatusServiceProvider, MqttDeviceIngestionProperties ingestionProperties, ObjectProvider<MeterRegistry> meterRegistryProvider) {
         this.mqttPubSubServiceProvider = mqttPubSubServiceProvider;
         this.deviceTemplateParserProvider = deviceTemplateParserProvider;
         this.deviceServiceProvider = deviceServiceProvider;
         this.entityValueServiceProvider = entityValueServiceProvider;
         this.deviceStatusServiceProvider = deviceStatusServiceProvider;
-        this.jsonDataHandleService = Executors.newCachedThreadPool();
+        this.ingestionProperties = ingestionProperties;
+        this.meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        this.matchTimer = stageTimer("match");
+        this.queueTimer = stageTimer("queue");
+        this.parseTimer = stageTimer("parse");
+        this.deviceTimer = stageTimer("device");
+        this.saveTimer = stageTimer("save");
+        this.onlineTimer = stageTimer("online");
+        this.droppedCounter = meterRegistry.counter(METRIC_PREFIX + "dropped", "policy", ingestionProperties.getOverflowPolicy().name());
+        meterRegistry.gauge(METRIC_PREFIX + "queue.size", this, service -> {
+            KeyedOrderedExecutor executor = service.jsonDataHandleService;
+            return executor == null ? 0 : executor.getQueueSize();
+        });
+    }
+
+    private Timer stageTimer(String stage) {
+        return meterRegistry.timer(METRIC_PREFIX + "stage.latency", "stage", stage);
     }
 
     public void subscribe() {
+        KeyedOrderedExecutor executor = new KeyedOrderedExecutor("mqtt-device-ingestion", ingestionProperties);
+        jsonDataHandleService = executor;
         mqttPubSubServiceProvider.subscribe(DataCenter.INTEGRATION_ID + "/#", message -> {
             try {
                 String topic = message.getTopicSubPath().substring(DataCenter.INTEGRATION_ID.length());
-                Long deviceTemplateId = DataCenter.getTemplateIdByTopic(topic);
+                Long deviceTemplateId = matchTimer.record((Supplier<Long>) () -> DataCenter.getTemplateIdByTopic(topic));
                 if (deviceTemplateId == null) {
                     throw ServiceException.with(ErrorCode.SERVER_ERROR.getErrorCode(), MessageFormat.format("No device template related to the sub topic ''{0}''", topic)).build();
                 }
                 String jsonData = new String(message.getPayload(), StandardCharsets.UTF_8);
-                jsonDataHandleService.execute(() -> {
-                    DeviceTemplateInputResult result = deviceTemplateParserProvider.input(DataCenter.INTEGRATION_ID, deviceTemplateId, jsonData);
-                    Device device = result.getDevice();
-                    ExchangePayload payload = result.getPayload();
-                    if (device != null) {
-                        if (deviceServiceProvider.findByKey(device.getKey()) == null) {
-                            deviceServiceProvider.save(device);
-                        }
-                        if (payload != null) {
-                            entityValueServiceProvider.saveValuesAndPublishAsync(payload);
-                            deviceStatusServiceProvider.online(device);
-                        }
-                    }
+                String tenantId = TenantContext.tryGetTenantId().orElse(null);
+                long queuedAt = System.nanoTime();
+                // the device is only known after parsing, messages of a topic are kept in order instead
+                boolean accepted = executor.execute(topic, () -> {
+                    queueTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                    handleJsonData(tenantId, deviceTemplateId, jsonData);
                 });
+                if (!accepted) {
+                    droppedCounter.increment();
+                    log.warn("MqttDeviceMqttService dropped a message of the sub topic '{}', the ingestion queue is full", topic);
+                }
             } catch (Exception e) {
                 log.error("MqttDeviceMqttService.subscribe error: {}", e.getMessage());
             }
         });
     }
 
+    private void handleJsonData(String tenantId, Long deviceTemplateId, String jsonData) {
+        try {
+            if (tenantId != null) {
+                TenantContext.setTenantId(tenantId);
+            }
+            DeviceTemplateInputResult result = parseTimer.record(() -> deviceTemplateParserProvider.input(DataCenter.INTEGRATION_ID, deviceTemplateId, jsonData));
+            Device device = result.getDevice();
+            ExchangePayload payload = result.getPayload();
+            if (device != null) {
+                deviceTimer.record(() -> {
+                    if (deviceServiceProvider.findByKey(device.getKey()) == null) {
+                        deviceServiceProvider.save(device);
+                    }
+                });
+                if (payload != null) {
+                    saveTimer.record(() -> entityValueServiceProvider.saveValuesAndPublishAsync(payload));
+                    onlineTimer.record(() -> deviceStatusServiceProvider.online(device));
+                }
+            }
+        } catch (Exception e) {
+            log.error("MqttDeviceMqttService.handleJsonData error: {}", e.getMessage());
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
     public void unsubscribe() {
         mqttPubSubServiceProvider.unsubscribe(DataCenter.INTEGRATION_ID + "/#");
-        jsonDataHandleService.shutdown();
+        KeyedOrderedExecutor executor = jsonDataHandleService;
+        if (executor != null) {
+            executor.shutdown(SHUTDOWN_TIMEOUT);
+        }
     }
 }
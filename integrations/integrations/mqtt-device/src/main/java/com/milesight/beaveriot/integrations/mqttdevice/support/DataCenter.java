@@ -2,11 +2,13 @@ package com.milesight.beaveriot.integrations.mqttdevice.support;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.milesight.beaveriot.base.utils.JsonUtils;
+import com.milesight.beaveriot.context.security.TenantContext;
 import com.milesight.beaveriot.context.integration.wrapper.AnnotatedEntityWrapper;
 import com.milesight.beaveriot.integrations.mqttdevice.entity.MqttDeviceIntegrationEntities;
 import com.milesight.beaveriot.integrations.mqttdevice.model.DeviceTemplateAdditionalData;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * author: Luxb
@@ -16,6 +18,11 @@ public class DataCenter {
     public static final String INTEGRATION_ID = "mqtt-device";
     public static final String DEFAULT_DEVICE_KEY = "device_key";
     public static final String DEVICE_ID_PLACEHOLDER = "${device_id}";
+    private static final String EMPTY_TOPIC_MAP = "{}";
+    // changes of other nodes are only seen when the stored topic map is read again
+    private static final long TOPIC_MAP_RECHECK_MILLIS = 5000;
+    // compiled topic map of every tenant, recompiled when the stored topic map differs from the one it was compiled from
+    private static final Map<String, CheckedTopicMatcher> TOPIC_MATCHERS = new ConcurrentHashMap<>();
 
     public static void putTopic(String topic, Long deviceTemplateId) {
         Map<String, Long> topicMap = loadTopicMap();
@@ -28,14 +35,23 @@ public class DataCenter {
     }
 
     public static Long getTemplateIdByTopic(String topic) {
-        Map<String, Long> topicMap = loadTopicMap();
-        for (String eachTopic : topicMap.keySet()) {
-            String topicPattern = TopicSupporter.convert(eachTopic);
-            if (TopicSupporter.matches(topicPattern, topic)) {
-                return topicMap.get(eachTopic);
-            }
+        return getTopicMatcher().match(topic);
+    }
+
+    private static TopicTemplateMatcher getTopicMatcher() {
+        String tenantId = TenantContext.getTenantId();
+        long now = System.currentTimeMillis();
+        CheckedTopicMatcher checked = TOPIC_MATCHERS.get(tenantId);
+        if (checked != null && now - checked.checkedAt() < TOPIC_MAP_RECHECK_MILLIS) {
+            return checked.matcher();
         }
-        return null;
+
+        String topicMapStr = loadTopicMapStr();
+        TopicTemplateMatcher matcher = checked != null && checked.matcher().isCompiledFrom(topicMapStr)
+                ? checked.matcher()
+                : TopicTemplateMatcher.compile(topicMapStr, JsonUtils.fromJSON(topicMapStr, new TypeReference<Map<String, Long>>() {}));
+        TOPIC_MATCHERS.put(tenantId, new CheckedTopicMatcher(matcher, now));
+        return matcher;
     }
 
     public static void removeTopic(String topic) {
@@ -55,15 +71,19 @@ public class DataCenter {
     }
 
     public static Map<String, Long> loadTopicMap() {
+        return JsonUtils.fromJSON(loadTopicMapStr(), new TypeReference<>() {});
+    }
+
+    private static String loadTopicMapStr() {
         AnnotatedEntityWrapper<MqttDeviceIntegrationEntities> entitiesWrapper = new AnnotatedEntityWrapper<>();
-        String topicMapStr = (String) entitiesWrapper.getValue(MqttDeviceIntegrationEntities::getTopicMap).orElse("{}");
-        return JsonUtils.fromJSON(topicMapStr, new TypeReference<>() {});
+        return (String) entitiesWrapper.getValue(MqttDeviceIntegrationEntities::getTopicMap).orElse(EMPTY_TOPIC_MAP);
     }
 
     private static void saveTopicMap(Map<String, Long> topicMap) {
         String topicMapStr = JsonUtils.toJSON(topicMap);
         AnnotatedEntityWrapper<MqttDeviceIntegrationEntities> entitiesWrapper = new AnnotatedEntityWrapper<>();
         entitiesWrapper.saveValue(MqttDeviceIntegrationEntities::getTopicMap, topicMapStr).publishSync();
+        TOPIC_MATCHERS.remove(TenantContext.getTenantId());
     }
 
     public static Map<Long, DeviceTemplateAdditionalData> loadDeviceTemplateAdditionalDataMap() {
@@ -94,4 +114,7 @@ public class DataCenter {
         deviceTemplateAdditionalDataMap.remove(deviceTemplateId);
         saveDeviceTemplateAdditionalDataMap(deviceTemplateAdditionalDataMap);
     }
+
+    private record CheckedTopicMatcher(TopicTemplateMatcher matcher, long checkedAt) {
+    }
 }
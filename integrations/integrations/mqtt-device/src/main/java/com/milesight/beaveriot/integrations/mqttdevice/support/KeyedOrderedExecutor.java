@@ -0,0 +1,98 @@
+package com.milesight.beaveriot.integrations.mqttdevice.support;
+
+import com.milesight.beaveriot.integrations.mqttdevice.config.MqttDeviceIngestionProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed number of single thread workers with bounded queues. Tasks with the same key always run on the same worker,
+ * so they run one after another in submission order. A full queue is handled by the configured overflow policy.
+ */
+@Slf4j
+public class KeyedOrderedExecutor {
+    private final ThreadPoolExecutor[] workers;
+    private final MqttDeviceIngestionProperties.OverflowPolicy overflowPolicy;
+    private final long offerTimeoutNanos;
+
+    public KeyedOrderedExecutor(String name, MqttDeviceIngestionProperties properties) {
+        this.overflowPolicy = properties.getOverflowPolicy();
+        this.offerTimeoutNanos = properties.getOfferTimeout().toNanos();
+        this.workers = new ThreadPoolExecutor[Math.max(1, properties.getWorkers())];
+        for (int i = 0; i < workers.length; i++) {
+            String threadName = name + "-" + i;
+            workers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            // tasks may be put into the queue directly, the worker thread has to exist by then
+            workers[i].prestartCoreThread();
+        }
+    }
+
+    /**
+     * @return false if the task was dropped, or if the oldest waiting task of the worker was dropped in its place
+     */
+    public boolean execute(String key, Runnable task) {
+        ThreadPoolExecutor worker = workers[Math.floorMod(key.hashCode(), workers.length)];
+        try {
+            worker.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (worker.isShutdown()) {
+                return false;
+            }
+        }
+
+        BlockingQueue<Runnable> queue = worker.getQueue();
+        return switch (overflowPolicy) {
+            case BLOCK -> offer(queue, task);
+            case DROP_NEWEST -> false;
+            case DROP_OLDEST -> {
+                // other producers may take the freed slot, drop again until the task fits
+                while (!queue.offer(task)) {
+                    queue.poll();
+                }
+                yield false;
+            }
+        };
+    }
+
+    private boolean offer(BlockingQueue<Runnable> queue, Runnable task) {
+        try {
+            return queue.offer(task, offerTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public int getQueueSize() {
+        return Arrays.stream(workers).mapToInt(worker -> worker.getQueue().size()).sum();
+    }
+
+    public void shutdown(Duration timeout) {
+        Arrays.stream(workers).forEach(ThreadPoolExecutor::shutdown);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            for (ThreadPoolExecutor worker : workers) {
+                if (!worker.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    log.warn("{} waiting messages were not handled before shutdown", worker.shutdownNow().size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Arrays.stream(workers).forEach(ThreadPoolExecutor::shutdownNow);
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.milesight.beaveriot.integrations.mqttdevice.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Topic to device template mapping compiled once from the stored topic map. Patterns are converted and split when
+ * compiled and grouped by level count, a lookup only compares the patterns with as many levels as the topic. The
+ * first matching pattern in the order of the topic map wins, like {@link TopicSupporter#matches}.
+ */
+public class TopicTemplateMatcher {
+    private final String source;
+    private final Map<Integer, List<CompiledTopic>> topicsByLevelCount;
+
+    private TopicTemplateMatcher(String source, Map<Integer, List<CompiledTopic>> topicsByLevelCount) {
+        this.source = source;
+        this.topicsByLevelCount = topicsByLevelCount;
+    }
+
+    /**
+     * @param source   the serialized topic map the mapping was read from
+     * @param topicMap topics with the device id placeholder, in matching order
+     */
+    public static TopicTemplateMatcher compile(String source, Map<String, Long> topicMap) {
+        Map<Integer, List<CompiledTopic>> topicsByLevelCount = new HashMap<>();
+        topicMap.forEach((topic, deviceTemplateId) -> {
+            String[] levels = TopicSupporter.convert(topic).split("/");
+            topicsByLevelCount.computeIfAbsent(levels.length, k -> new ArrayList<>()).add(new CompiledTopic(levels, deviceTemplateId));
+        });
+        return new TopicTemplateMatcher(source, topicsByLevelCount);
+    }
+
+    public boolean isCompiledFrom(String source) {
+        return Objects.equals(this.source, source);
+    }
+
+    public Long match(String topic) {
+        String[] levels = topic.split("/");
+        List<CompiledTopic> candidates = topicsByLevelCount.get(levels.length);
+        if (candidates == null) {
+            return null;
+        }
+        for (CompiledTopic candidate : candidates) {
+            if (candidate.matches(levels)) {
+                return candidate.deviceTemplateId();
+            }
+        }
+        return null;
+    }
+
+    private record CompiledTopic(String[] levels, Long deviceTemplateId) {
+        private boolean matches(String[] topicLevels) {
+            for (int i = 0; i < levels.length; i++) {
+                if (!levels[i].equals("+") && !levels[i].equals(topicLevels[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.milesight.beaveriot.integrations.mqttdevice.support
+
+import com.milesight.beaveriot.integrations.mqttdevice.config.MqttDeviceIngestionProperties
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class KeyedOrderedExecutorTest extends Specification {
+
+    KeyedOrderedExecutor executor
+
+    def cleanup() {
+        executor?.shutdown(Duration.ofSeconds(5))
+    }
+
+    def "should run the tasks of a key in submission order"() {
+        given:
+        executor = new KeyedOrderedExecutor("test", new MqttDeviceIngestionProperties(workers: 4, queueCapacity: 10000))
+        def handled = new ConcurrentHashMap<String, List<Integer>>()
+        def producers = Executors.newFixedThreadPool(8)
+
+        when:
+        // every producer owns its keys, so the submission order of a key is the sequence number
+        def futures = (0..<8).collect { producer ->
+            producers.submit {
+                (0..<500).each { i ->
+                    def key = "topic-${producer}-${i % 5}" as String
+                    assert executor.execute(key) {
+                        handled.computeIfAbsent(key) { new CopyOnWriteArrayList<Integer>() } << i
+                    }
+                }
+            }
+        }
+        futures*.get(30, TimeUnit.SECONDS)
+        producers.shutdown()
+        executor.shutdown(Duration.ofSeconds(30))
+
+        then:
+        handled.size() == 40
+        handled.values().every { it.size() == 100 && it == it.toSorted() }
+    }
+
+    def "should handle a full queue by the overflow policy"() {
+        given:
+        executor = new KeyedOrderedExecutor("test", new MqttDeviceIngestionProperties(workers: 1, queueCapacity: 2,
+                overflowPolicy: policy, offerTimeout: Duration.ofMillis(10)))
+        def handled = new CopyOnWriteArrayList<Integer>()
+        def release = block()
+
+        when:
+        def accepted = (1..4).collect { i -> executor.execute("k") { handled << i } }
+        release.countDown()
+        executor.shutdown(Duration.ofSeconds(5))
+
+        then:
+        accepted == expectedAccepted
+        handled == expectedHandled
+
+        where:
+        policy                                                    || expectedAccepted             || expectedHandled
+        MqttDeviceIngestionProperties.OverflowPolicy.BLOCK        || [true, true, false, false]   || [1, 2]
+        MqttDeviceIngestionProperties.OverflowPolicy.DROP_NEWEST  || [true, true, false, false]   || [1, 2]
+        MqttDeviceIngestionProperties.OverflowPolicy.DROP_OLDEST  || [true, true, false, false]   || [3, 4]
+    }
+
+    def "should never exceed the queue capacity when dropping the oldest tasks concurrently"() {
+        given:
+        executor = new KeyedOrderedExecutor("test", new MqttDeviceIngestionProperties(workers: 1, queueCapacity: 10,
+                overflowPolicy: MqttDeviceIngestionProperties.OverflowPolicy.DROP_OLDEST))
+        def handled = new CopyOnWriteArrayList<Integer>()
+        def release = block()
+        def producers = Executors.newFixedThreadPool(8)
+
+        when:
+        def futures = (0..<8).collect { producer ->
+            producers.submit {
+                (0..<1000).each { i -> executor.execute("k") { handled << i } }
+            }
+        }
+        futures*.get(30, TimeUnit.SECONDS)
+        producers.shutdown()
+        def waiting = executor.queueSize
+        release.countDown()
+        executor.shutdown(Duration.ofSeconds(5))
+
+        then:
+        waiting == 10
+        handled.size() == 10
+    }
+
+    /**
+     * Occupy the worker of key "k" until the returned latch is released
+     */
+    private CountDownLatch block() {
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        executor.execute("k") {
+            started.countDown()
+            release.await()
+        }
+        started.await(5, TimeUnit.SECONDS)
+        return release
+    }
+}
@@ -0,0 +1,53 @@
+package com.milesight.beaveriot.integrations.mqttdevice.support
+
+import spock.lang.Specification
+
+class TopicTemplateMatcherTest extends Specification {
+
+    static final Map<String, Long> TOPIC_MAP = [
+            "device/\${device_id}/uplink"       : 1L,
+            "device/\${device_id}/+"            : 2L,
+            "site/a/\${device_id}"              : 3L,
+            "site/+/\${device_id}"              : 4L,
+            "\${device_id}"                     : 5L,
+            "gw/\${device_id}/node/\${device_id}": 6L,
+            "plain/topic"                       : 7L,
+    ]
+
+    def "should match the same template as testing every topic with TopicSupporter"() {
+        given:
+        def matcher = TopicTemplateMatcher.compile("{}", TOPIC_MAP)
+        def topics = ["device/d1/uplink", "device/d1/status", "device/d1", "device/d1/uplink/x", "site/a/d1", "site/b/d1",
+                      "site/a/b/d1", "d1", "", "gw/g1/node/n1", "gw/g1/other/n1", "plain/topic", "plain/other", "/",
+                      "device//uplink", "/device/d1/uplink"]
+
+        expect:
+        topics.each { topic ->
+            assert matcher.match(topic) == supporterMatch(topic): topic
+        }
+    }
+
+    def "should prefer the first matching topic of the topic map"() {
+        given:
+        def topicMap = new LinkedHashMap<String, Long>()
+        topicMap["a/+"] = 2L
+        topicMap["a/\${device_id}"] = 1L
+
+        expect:
+        TopicTemplateMatcher.compile("{}", topicMap).match("a/b") == 2L
+    }
+
+    def "should remember the topic map it was compiled from"() {
+        given:
+        def matcher = TopicTemplateMatcher.compile('{"a":1}', ["a": 1L])
+
+        expect:
+        matcher.isCompiledFrom('{"a":1}')
+        !matcher.isCompiledFrom('{"a":2}')
+        !matcher.isCompiledFrom(null)
+    }
+
+    private static Long supporterMatch(String topic) {
+        return TOPIC_MAP.find { pattern, id -> TopicSupporter.matches(TopicSupporter.convert(pattern), topic) }?.value
+    }
+}